@@ -4,6 +4,9 @@ in vec4 a_position;
 in vec4 a_color;
 
 uniform mat4 u_projView;
+// Retained lines carry their vertices in the frame of the data, and the transform in u_worldTransform.
+uniform bool u_retained;
+uniform mat4 u_worldTransform;
 uniform float u_vrScale;
 
 out vec4 v_col;
@@ -20,6 +23,9 @@ out vec4 v_col;
 
 void main() {
     vec4 pos = a_position;
+    if (u_retained) {
+        pos = u_worldTransform * vec4(pos.xyz, 1.0);
+    }
 
     #ifdef relativisticEffects
         pos.xyz = computeRelativisticAberration(pos.xyz, length(pos.xyz), u_velDir, u_vc);
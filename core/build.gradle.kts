@@ -185,6 +185,16 @@ tasks.register<JavaExec>("runI18nFormatter") {
     mainClass.set("gaiasky.desktop.util.I18nFormatter")
 }
 
+tasks.register<JavaExec>("benchmark") {
+    description = "Runs the headless CPU benchmark. Pass the options with -Pargs=\"...\", or -Pargs=--help to list them."
+    mainClass.set("gaiasky.util.bench.Benchmark")
+    systemProperty("assets.location", "./assets/")
+    classpath = project.sourceSets.main.get().runtimeClasspath + project.files(project.extra["assetsDir"] as File)
+    workingDir = project.extra["workDir"] as File
+    maxHeapSize = "6g"
+    (project.findProperty("args") as String?)?.let { args(it.trim().split(Regex("\\s+"))) }
+}
+
 tasks.register("createDistDir") {
     description = "Creates the dist/ directory."
     doLast {
@@ -688,6 +698,8 @@ tasks.register("pack") {
 tasks.named<Test>("test") {
     useJUnit()
     maxHeapSize = "1G"
+    // Timing runs in the tests are skipped unless -Pperf is given.
+    project.findProperty("perf")?.let { systemProperty("gaiasky.perf", "true") }
     testLogging {
         events("passed", "skipped", "failed", "standard_out", "standard_error")
         showExceptions = true
@@ -64,6 +64,8 @@ import gaiasky.util.*;
 import gaiasky.util.Logger;
 import gaiasky.util.Logger.Log;
 import gaiasky.util.camera.rec.Camcorder;
+import gaiasky.util.concurrent.PriorityTaskExecutor.Priority;
+import gaiasky.util.coord.FrameTimeContext;
 import gaiasky.util.coord.vsop87.VSOP87Binary;
 import gaiasky.util.coord.vsop87.VSOP87Loader;
 import gaiasky.util.ds.GaiaSkyExecutorService;
@@ -79,6 +81,7 @@ import gaiasky.render.gdx.shader.attribute.Attribute;
 import gaiasky.util.gravwaves.RelativisticEffectsManager;
 import gaiasky.util.i18n.I18n;
 import gaiasky.util.math.MathUtilsDouble;
+import gaiasky.util.profile.FrameProfiler;
 import gaiasky.util.screenshot.ScreenshotsManager;
 import gaiasky.util.time.GlobalClock;
 import gaiasky.util.time.ITimeFrameProvider;
@@ -103,6 +106,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public final class GaiaSky implements ApplicationListener, IObserver {
     private static final Log logger = Logger.getLogger(GaiaSky.class);
+    /** Stages of the whole frame and of the update in the {@link FrameProfiler}. **/
+    private static final int PROFILER_FRAME = FrameProfiler.stage("frame");
+    private static final int PROFILER_UPDATE = FrameProfiler.stage("frame/update");
 
     /**
      * Singleton instance.
@@ -195,9 +201,14 @@ public final class GaiaSky implements ApplicationListener, IObserver {
      */
     public GaiaSkyView gaiaSkyView = null;
     /**
-     * The scene graph update process.
+     * Runs the scene update, in line or overlapped with the rendering of the previous frame. See
+     * {@link #updateRenderPipelined(double)}.
      */
-    private Runnable updateProcess;
+    private FramePipeline scenePipeline;
+    /**
+     * In pipelined mode, whether the front render lists already hold the scene state of the next frame to render.
+     */
+    private boolean scenePipelinePrimed = false;
     /**
      * Current update-render implementation.
      * One of {@link #runnableInitialGui}, {@link #runnableLoadingGui} or {@link #mainUpdaterRenderer}.
@@ -283,48 +294,17 @@ public final class GaiaSky implements ApplicationListener, IObserver {
                 xrDriver.pollEvents();
             }
 
-            /*
-             * UPDATE SCENE.
-             */
-            update(graphics.getDeltaTime());
-
-            /*
-             * FRAME OUTPUT.
-             */
-            EventManager.publish(Event.RENDER_FRAME, this);
-
-            /*
-             * SCREEN OUTPUT.
-             */
-            if (settings.graphics.screenOutput) {
-                var tw = graphics.getWidth();
-                var th = graphics.getHeight();
-                if (tw == 0 || th == 0) {
-                    // Hack - on Windows the reported width and height is 0 when the window is minimized
-                    tw = settings.graphics.resolution[0];
-                    th = settings.graphics.resolution[1];
-                }
-                final var w = settings.runtime.openXr ? settings.graphics.backBufferResolution[0] : (int) (tw * settings.graphics.backBufferScale);
-                final var h = settings.runtime.openXr ? settings.graphics.backBufferResolution[1] : (int) (th * settings.graphics.backBufferScale);
-                /* RENDER THE SCENE. */
-                sceneRenderer.clearScreen();
-                var ppb = gaiaSkyAssets.postProcessor.getPostProcessBean(RenderType.screen);
-                if (ppb != null) sceneRenderer.render(cameraManager, t, w, h, tw, th, null, ppb);
-
-                // Render the GUI, setting the viewport.
-                if (settings.runtime.openXr) {
-                    guiRegistry.render(settings.graphics.backBufferResolution[0], settings.graphics.backBufferResolution[1]);
-                } else {
-                    guiRegistry.render(tw, th);
-                }
-
-                if (mainVRGui != null) {
-                    mainVRGui.render(0, 0);
-                }
+            scenePipeline.setPipelined(isPipelinedUpdate());
+            if (scenePipeline.isPipelined()) {
+                updateRenderPipelined(graphics.getDeltaTime());
+            } else {
+                updateRender();
             }
         }
-        // Clean lists.
-        sceneRenderer.resetRenderLists();
+        // Clean lists, unless they hold the next frame in pipelined mode.
+        if (!scenePipelinePrimed) {
+            sceneRenderer.resetRenderLists();
+        }
         // Number of frames.
         frames++;
 
@@ -413,6 +393,28 @@ public final class GaiaSky implements ApplicationListener, IObserver {
         else Gdx.app.postRunnable(r);
     }
 
+    /**
+     * Creates the services that the scene systems use, for runs without {@link #create()}, which needs a window and a
+     * graphics context. The caller sets up the time, the camera manager, the scene and the scene renderer, as the
+     * benchmark does.
+     */
+    public void createHeadless() {
+        initializeConstants();
+        this.executorService = new GaiaSkyExecutorService();
+    }
+
+    /**
+     * Advances the session time and the clock of runs without {@link #create()}, like {@link #render()} does before
+     * the scene update. The cameras and the scene are updated by the caller.
+     *
+     * @param dt Delta time in seconds.
+     */
+    public void updateHeadless(double dt) {
+        this.t += dt;
+        time.update(dt);
+        FrameTimeContext.update(time.getTime());
+    }
+
     @Override
     public void create() {
         startTime = TimeUtils.millis();
@@ -429,6 +431,7 @@ public final class GaiaSky implements ApplicationListener, IObserver {
 
         // Console logger.
         consoleLogger = new ConsoleLogger();
+        Logger.setAsynchronous(settings.performance.asyncLogging);
 
         if (cliArgs.debug) logger.debug("Logging level set to DEBUG");
 
@@ -482,6 +485,10 @@ public final class GaiaSky implements ApplicationListener, IObserver {
         assetManager.setLoader(ComputeShaderProgram.class, new ComputeShaderLoader(internalResolver));
         assetManager.setLoader(BitmapFont.class, new BitmapFontLoader(internalResolver));
         assetManager.setLoader(Texture.class, new OwnTextureLoader(internalResolver));
+        if (settings.performance.textureCache) {
+            TextureCache.setDirectory(SysUtils.getDataCacheDir(settings.data.location).resolve("textures"));
+            TextureCache.setMaxBytes(settings.performance.textureCacheSize * 1024L * 1024L);
+        }
         assetManager.setLoader(TextureArray.class, new TextureArrayLoader(internalResolver));
         assetManager.setLoader(VolumeTexture.class, new VolumeTextureLoader(internalResolver));
         assetManager.setLoader(AtmosphereShaderProvider.class, new AtmosphereShaderProviderLoader<>(internalResolver));
@@ -734,13 +741,15 @@ public final class GaiaSky implements ApplicationListener, IObserver {
         /*
          * Implement update process.
          */
-        updateProcess = () -> {
-            // Update scene.
-            scene.update(time);
-
-            // Swap proximity buffers.
-            cameraManager.swapBuffers();
-        };
+        scenePipeline = new FramePipeline(
+                // Update scene and extract render lists.
+                () -> scene.update(time),
+                () -> {
+                    // Swap render lists and proximity buffers.
+                    sceneRenderer.swapRenderLists();
+                    cameraManager.swapBuffers();
+                },
+                "gaiasky-scene-update");
 
         /*
          * Complete scene renderer loading.
@@ -832,6 +841,22 @@ public final class GaiaSky implements ApplicationListener, IObserver {
                     // Observed octants.
                     EventManager.publish(Event.DEBUG_QUEUE, this, OctreeNode.nOctantsObserved, OctreeLoader.instance.getLoadQueueSize());
                 }
+
+                // Background tasks.
+                if (executorService != null && executorService.getExecutor() != null) {
+                    var executor = executorService.getExecutor();
+                    var priorities = Priority.values();
+                    int[] depth = new int[priorities.length];
+                    double[] wait = new double[priorities.length];
+                    double[] run = new double[priorities.length];
+                    for (int i = 0; i < priorities.length; i++) {
+                        var stats = executor.getStats(priorities[i]);
+                        depth[i] = stats.getQueueDepth();
+                        wait[i] = stats.getMeanWaitMs();
+                        run[i] = stats.getMeanRunMs();
+                    }
+                    EventManager.publish(Event.DEBUG_TASKS, this, depth, wait, run);
+                }
             }
         };
 
@@ -936,6 +961,7 @@ public final class GaiaSky implements ApplicationListener, IObserver {
         scene.update(time);
 
         // Clear render lists.
+        sceneRenderer.swapRenderLists();
         sceneRenderer.resetRenderLists();
         // Time back to zero.
         time.update(0);
@@ -1075,9 +1101,17 @@ public final class GaiaSky implements ApplicationListener, IObserver {
             if (gaiaSkyAssets != null && gaiaSkyAssets.bookmarksManager != null) gaiaSkyAssets.bookmarksManager.persistBookmarks();
         }
 
+        // Stop the scene update pipeline.
+        if (scenePipeline != null) {
+            scenePipeline.dispose();
+        }
+
         // Dispose scripting server.
         ScriptingServer.dispose();
 
+        // Close camera sync channel.
+        SlaveManager.dispose();
+
         // Flush frames.
         EventManager.publish(Event.FLUSH_FRAMES, this);
 
@@ -1134,6 +1168,7 @@ public final class GaiaSky implements ApplicationListener, IObserver {
 
         // Write session log.
         CrashReporter.writeLastSessionLog(logger);
+        Logger.setAsynchronous(false);
 
         // GLFW crashes on glfwDestroyWindow() on Wayland.
         // TODO - this prevents the creation of the ErrorDialog, so error reporting is broken on Linux with Wayland!
@@ -1165,7 +1200,10 @@ public final class GaiaSky implements ApplicationListener, IObserver {
     public void render() {
         if (running.get() && !crashed.get() && updateRenderProcess != null) {
             // Run the render process.
+            long start = FrameProfiler.begin();
             updateRenderProcess.run();
+            FrameProfiler.end(PROFILER_FRAME, start);
+            FrameProfiler.endFrame();
         } else if (crashGui != null) {
             // Crash information.
             assetManager.update();
@@ -1222,6 +1260,145 @@ public final class GaiaSky implements ApplicationListener, IObserver {
      * @param dt Delta time in seconds.
      */
     public void update(double dt) {
+        long start = FrameProfiler.begin();
+        updateFrame(dt);
+        scenePipeline.join();
+
+        // Run parked update-scene runnables.
+        runParkedProcesses(parkedUpdateRunnables);
+        FrameProfiler.end(PROFILER_UPDATE, start);
+    }
+
+    /**
+     * Whether the scene update of the next frame may run on a separate thread while the current frame is being
+     * rendered. Frame output, OpenXR and off-screen modes always run serially, so that each frame is exactly
+     * determined by its own time step.
+     *
+     * @return Whether to use the pipelined mode.
+     */
+    private boolean isPipelinedUpdate() {
+        return settings.performance.pipelinedUpdate
+                && settings.graphics.screenOutput
+                && !settings.frame.active
+                && !settings.runtime.openXr
+                && !Camcorder.instance.isRecording();
+    }
+
+    /**
+     * Serial update and render of one frame.
+     */
+    private void updateRender() {
+        // Coming from pipelined mode, the front lists were extracted but not rendered.
+        if (scenePipelinePrimed) {
+            sceneRenderer.resetRenderLists();
+            scenePipelinePrimed = false;
+        }
+
+        /*
+         * UPDATE SCENE.
+         */
+        update(graphics.getDeltaTime());
+
+        /*
+         * FRAME OUTPUT.
+         */
+        EventManager.publish(Event.RENDER_FRAME, this);
+
+        /*
+         * SCREEN OUTPUT.
+         */
+        if (settings.graphics.screenOutput) {
+            var tw = graphics.getWidth();
+            var th = graphics.getHeight();
+            if (tw == 0 || th == 0) {
+                // Hack - on Windows the reported width and height is 0 when the window is minimized
+                tw = settings.graphics.resolution[0];
+                th = settings.graphics.resolution[1];
+            }
+            final var w = settings.runtime.openXr ? settings.graphics.backBufferResolution[0] : (int) (tw * settings.graphics.backBufferScale);
+            final var h = settings.runtime.openXr ? settings.graphics.backBufferResolution[1] : (int) (th * settings.graphics.backBufferScale);
+            /* RENDER THE SCENE. */
+            sceneRenderer.clearScreen();
+            var ppb = gaiaSkyAssets.postProcessor.getPostProcessBean(RenderType.screen);
+            if (ppb != null) sceneRenderer.render(cameraManager, t, w, h, tw, th, null, ppb);
+
+            // Render the GUI, setting the viewport.
+            if (settings.runtime.openXr) {
+                guiRegistry.render(settings.graphics.backBufferResolution[0], settings.graphics.backBufferResolution[1]);
+            } else {
+                guiRegistry.render(tw, th);
+            }
+
+            if (mainVRGui != null) {
+                mainVRGui.render(0, 0);
+            }
+        }
+    }
+
+    /**
+     * Pipelined update and render. The scene of this frame was updated during the previous frame, so here we render
+     * it, and then update the GUI, time and camera of the next frame and launch its scene update on the worker thread.
+     * <p>
+     * The update of the next frame starts before the scene of this frame is rendered: the positions of the next frame
+     * are computed from the ephemerides on the worker thread while the scene renders, as they only depend on the time,
+     * which can be predicted. See {@link Scene#prefetch(Instant)}. The rest of the scene update reads the camera and
+     * writes the state that the scene render reads, so it is launched after the scene render, and overlaps with the
+     * rendering of the GUI. The GUI only draws the state computed when it was updated, before the scene update was
+     * launched. The systems of the scene update do not publish events that reach the GUI directly, they post them to
+     * the main loop. The update is always joined before the end of the frame, so that runnables posted to the main
+     * loop never run concurrently with it.
+     *
+     * @param dt The last frame delta time, in seconds.
+     */
+    private void updateRenderPipelined(double dt) {
+        if (!scenePipelinePrimed) {
+            update(dt);
+            scenePipelinePrimed = true;
+        }
+
+        /* START THE UPDATE OF THE NEXT FRAME, overlapped with the scene render. */
+        final Instant next = time.predictTime(getDtGs(dt));
+        if (next != null && !next.equals(time.getTime())) {
+            scenePipeline.prepare(() -> scene.prefetch(next));
+        }
+
+        var tw = graphics.getWidth();
+        var th = graphics.getHeight();
+        if (tw == 0 || th == 0) {
+            tw = settings.graphics.resolution[0];
+            th = settings.graphics.resolution[1];
+        }
+        final var w = (int) (tw * settings.graphics.backBufferScale);
+        final var h = (int) (th * settings.graphics.backBufferScale);
+        /* RENDER THE SCENE. */
+        sceneRenderer.clearScreen();
+        var ppb = gaiaSkyAssets.postProcessor.getPostProcessBean(RenderType.screen);
+        if (ppb != null) sceneRenderer.render(cameraManager, t, w, h, tw, th, null, ppb);
+        /* SCREENSHOTS. */
+        EventManager.publish(Event.RENDER_FRAME, this);
+        // Clean lists, they are the back buffer of the next update.
+        sceneRenderer.resetRenderLists();
+
+        /* UPDATE NEXT FRAME. */
+        updateFrame(dt);
+
+        /* RENDER THE GUI, overlapped with the scene update. */
+        guiRegistry.render(tw, th);
+        if (mainVRGui != null) {
+            mainVRGui.render(0, 0);
+        }
+
+        scenePipeline.join();
+        runParkedProcesses(parkedUpdateRunnables);
+    }
+
+    /**
+     * Updates the GUI, time and cameras, and launches the scene update. In pipelined mode, the scene update
+     * is still running when this method returns.
+     *
+     * @param dt Delta time in seconds.
+     */
+    private void updateFrame(double dt) {
         // Resize if needed.
         updateResize();
 
@@ -1242,6 +1419,12 @@ public final class GaiaSky implements ApplicationListener, IObserver {
         // Update delayed events.
         EventManager.instance.dispatchDelayedMessages();
 
+        // SLAVE - apply camera state and time from the sync channel.
+        SlaveManager.applyCameraSync();
+
+        // Compute the time quantities of this frame, shared by all threads.
+        FrameTimeContext.update(time.getTime());
+
         // Update cameras.
         cameraManager.update(dtGs, time);
 
@@ -1264,12 +1447,8 @@ public final class GaiaSky implements ApplicationListener, IObserver {
         RelativisticEffectsManager.getInstance()
                 .update(time, cameraManager.current);
 
-        // Update scene graph in a thread (sync for now).
-        updateProcess.run();
-
-        // Run parked update-scene runnables.
-        runParkedProcesses(parkedUpdateRunnables);
-
+        // Update scene graph, in line or in the pipeline thread.
+        scenePipeline.launch();
     }
 
     /**
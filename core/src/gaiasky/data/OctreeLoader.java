@@ -8,6 +8,7 @@
 package gaiasky.data;
 
 import com.badlogic.ashley.core.Entity;
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.TimeUtils;
@@ -22,6 +23,7 @@ import gaiasky.scene.Archetype;
 import gaiasky.scene.Mapper;
 import gaiasky.scene.Scene;
 import gaiasky.scene.api.IParticleRecord;
+import gaiasky.scene.camera.ICamera;
 import gaiasky.scene.component.tag.TagOctreeObject;
 import gaiasky.scene.entity.SetUtils;
 import gaiasky.scene.system.initialize.BaseInitializer;
@@ -33,16 +35,21 @@ import gaiasky.util.DatasetCard.DatasetSourceType;
 import gaiasky.util.Logger;
 import gaiasky.util.Logger.Log;
 import gaiasky.util.Settings;
+import gaiasky.util.camera.rec.Camcorder;
 import gaiasky.util.concurrent.ServiceThread;
 import gaiasky.util.coord.AstroUtils;
 import gaiasky.util.i18n.I18n;
 import gaiasky.util.math.MathUtilsDouble;
+import gaiasky.util.math.Vector3D;
 import gaiasky.util.tree.IOctreeObject;
 import gaiasky.util.tree.LoadStatus;
+import gaiasky.util.tree.OctantPrefetcher;
 import gaiasky.util.tree.OctreeNode;
 import net.jafama.FastMath;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.PriorityBlockingQueue;
@@ -75,6 +82,8 @@ public class OctreeLoader extends AbstractSceneLoader implements IObserver, IOct
     protected static final int MAX_LOAD_CHUNK = 5;
     /** Default dataset name. **/
     private static final String DEFAULT_NAME = "LOD data";
+    /** Name index of the dataset, next to the metadata file. Optional. **/
+    public static final String NAMES_FILE = "names.bin";
     private static final Log logger = Logger.getLogger(OctreeLoader.class);
     public static OctreeLoader instance;
     /**
@@ -121,12 +130,22 @@ public class OctreeLoader extends AbstractSceneLoader implements IObserver, IOct
      * Daemon thread that gets the data loading requests and serves them.
      **/
     protected OctreeLoaderThread daemon;
+    /**
+     * Serve the load queue in the thread that flushes it, instead of in the daemon thread.
+     **/
+    private boolean synchronous;
     /**
      * The version of the data to load - before version 2, the data
      * format was not annotated with the version, so this info must come
      * from outside.
      */
     private int dataVersionHint;
+    /**
+     * Queues the octants the camera is likely to observe soon.
+     **/
+    private final OctantPrefetcher prefetcher = new OctantPrefetcher(this);
+    private final Vector3D prefetchPos = new Vector3D();
+    private long lastPrefetchLogMs;
 
     /**
      * The scene graph builder.
@@ -157,7 +176,9 @@ public class OctreeLoader extends AbstractSceneLoader implements IObserver, IOct
         maxLoadedStars = GaiaSky.settings().scene.octree.maxStars;
         logger.info("Maximum loaded stars setting: " + maxLoadedStars);
 
-        Comparator<OctreeNode> depthComparator = Comparator.comparingInt((OctreeNode o) -> o.depth);
+        // Observed octants go before prefetched ones, then shallower before deeper.
+        Comparator<OctreeNode> depthComparator = Comparator.comparing((OctreeNode o) -> o.prefetched)
+                .thenComparingInt(o -> o.depth);
         toLoadQueue = new PriorityBlockingQueue<>(LOAD_QUEUE_MAX_SIZE, depthComparator);
         toUnloadQueue = new ArrayBlockingQueue<>(LOAD_QUEUE_MAX_SIZE);
 
@@ -228,6 +249,12 @@ public class OctreeLoader extends AbstractSceneLoader implements IObserver, IOct
             var octree = Mapper.octree.get(entity);
             octree.roulette = new ArrayList<>(Math.min(10, (int) (rootOctant.numObjectsRec * 0.5)));
 
+            // Name index covering all octants, read lazily.
+            var namesFile = Path.of(GaiaSky.settings().data.dataFile(metadata)).resolveSibling(NAMES_FILE);
+            if (Files.exists(namesFile)) {
+                octree.namesFile = namesFile;
+            }
+
             var base = Mapper.base.get(entity);
             base.setName(name);
             base.opacity = 1;
@@ -310,20 +337,22 @@ public class OctreeLoader extends AbstractSceneLoader implements IObserver, IOct
         if (octreeWrapper != null) {
             // Initialize daemon loader thread.
             daemon = new OctreeLoaderThread(octreeWrapper, this);
-            daemon.setDaemon(true);
-            daemon.setName("gaiasky-new-octreeload");
-            daemon.setPriority(Thread.MIN_PRIORITY);
-            daemon.start();
-
-            // Initialize timer to flush the queue at regular intervals.
-            Timer timer = new Timer(true);
-            timer.schedule(new TimerTask() {
-                @Override
-                public void run() {
-                    flushLoadQueue();
-                }
+            if (!synchronous) {
+                daemon.setDaemon(true);
+                daemon.setName("gaiasky-new-octreeload");
+                daemon.setPriority(Thread.MIN_PRIORITY);
+                daemon.start();
+
+                // Initialize timer to flush the queue at regular intervals.
+                Timer timer = new Timer(true);
+                timer.schedule(new TimerTask() {
+                    @Override
+                    public void run() {
+                        flushLoadQueue();
+                    }
 
-            }, 1000, 1000);
+                }, 1000, 1000);
+            }
 
             // Add octreeWrapper to result list and return.
             Array<Entity> result = new Array<>(false, 1);
@@ -362,10 +391,71 @@ public class OctreeLoader extends AbstractSceneLoader implements IObserver, IOct
      */
     public void queue(OctreeNode octant) {
         if (daemon != null) {
+            if (octant.getStatus() == LoadStatus.NOT_LOADED) {
+                prefetcher.miss();
+            }
             addToQueue(octant);
         }
     }
 
+    /**
+     * Adds the octant to the load queue with a lower priority than the observed octants. Prefetched octants only take
+     * up to half of the queue.
+     */
+    @Override
+    public boolean prefetch(OctreeNode octant) {
+        if (daemon != null && !loadingPaused && octant.getStatus() == LoadStatus.NOT_LOADED && toLoadQueue.size() < LOAD_QUEUE_MAX_SIZE / 2) {
+            octant.prefetched = true;
+            toLoadQueue.add(octant);
+            octant.setStatus(LoadStatus.QUEUED);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes the prefetched octant from the load queue, if it is still there.
+     */
+    @Override
+    public void cancelPrefetch(OctreeNode octant) {
+        if (octant.prefetched && toLoadQueue.remove(octant)) {
+            octant.prefetched = false;
+            octant.setStatus(LoadStatus.NOT_LOADED);
+        }
+    }
+
+    /**
+     * Predicts the octants the camera is going to observe, and prefetches them. Called after the octree has been
+     * updated for the current frame.
+     *
+     * @param root   The root of the octree.
+     * @param camera The camera.
+     */
+    public void prefetch(OctreeNode root, ICamera camera) {
+        if (daemon == null || loadingPaused) {
+            return;
+        }
+        var cam = camera.getCamera();
+        prefetcher.observe(Gdx.graphics.getDeltaTime(), camera.getPos().put(prefetchPos), camera.getDirection(), cam.fieldOfView);
+
+        float cf = MathUtilsDouble.clamp(camera.getFovFactor() * 2.5f, 0.15f, 1f);
+        float th0 = GaiaSky.settings().scene.octree.threshold[0] * cf;
+        var camcorder = Camcorder.instance;
+        var path = camcorder != null && camcorder.isPlaying() ? camcorder.getPlayingPath() : null;
+        if (prefetcher.prefetch(root, path, th0) > 0) {
+            flushLoadQueue();
+        }
+
+        if (TimeUtils.millis() - lastPrefetchLogMs > 10000) {
+            logger.debug(prefetcher.toString());
+            lastPrefetchLogMs = TimeUtils.millis();
+        }
+    }
+
+    public OctantPrefetcher getPrefetcher() {
+        return prefetcher;
+    }
+
     /**
      * Clears the current load queue.
      */
@@ -414,9 +504,11 @@ public class OctreeLoader extends AbstractSceneLoader implements IObserver, IOct
         int n = toLoadQueue.size();
         if (n > 0) {
             for (OctreeNode octant : toLoadQueue) {
+                octant.prefetched = false;
                 octant.setStatus(LoadStatus.NOT_LOADED);
             }
             toLoadQueue.clear();
+            prefetcher.clear();
             //logger.info(I18n.txt("notif.loadingoctants.emtpied", n));
         }
     }
@@ -424,9 +516,30 @@ public class OctreeLoader extends AbstractSceneLoader implements IObserver, IOct
     public void addToQueue(OctreeNode octant) {
         // Add only if there is room.
         if (!loadingPaused) {
+            if (octant.prefetched) {
+                // Promote it, the flag is part of the ordering. If it is not in the queue anymore,
+                // the daemon has already taken it.
+                if (!toLoadQueue.remove(octant)) {
+                    return;
+                }
+                octant.prefetched = false;
+            }
             if (toLoadQueue.size() >= LOAD_QUEUE_MAX_SIZE) {
-                OctreeNode out = toLoadQueue.poll();
-                out.setStatus(LoadStatus.NOT_LOADED);
+                // Make room, dropping a prefetched octant first.
+                OctreeNode out = null;
+                for (OctreeNode o : toLoadQueue) {
+                    if (o.prefetched) {
+                        out = o;
+                        break;
+                    }
+                }
+                if (out == null || !toLoadQueue.remove(out)) {
+                    out = toLoadQueue.poll();
+                }
+                if (out != null) {
+                    out.prefetched = false;
+                    out.setStatus(LoadStatus.NOT_LOADED);
+                }
             }
             toLoadQueue.add(octant);
             octant.setStatus(LoadStatus.QUEUED);
@@ -448,10 +561,25 @@ public class OctreeLoader extends AbstractSceneLoader implements IObserver, IOct
     }
 
     /**
-     * Tells the loader to start loading the octants in the queue.
+     * Sets whether the load queue is served in the thread that calls {@link #flushLoadQueue()}, with no daemon thread
+     * and no flush timer. The octants are then loaded at fixed points of the frame, which makes runs reproducible, as
+     * in the benchmark. Must be set before {@link #loadData()}.
+     *
+     * @param synchronous Whether to load synchronously.
+     */
+    public void setSynchronous(boolean synchronous) {
+        this.synchronous = synchronous;
+    }
+
+    /**
+     * Tells the loader to start loading the octants in the queue. In synchronous mode, loads them right away.
      */
     public void flushLoadQueue() {
-        if (!daemon.isAwake() && !toLoadQueue.isEmpty() && !loadingPaused) {
+        if (synchronous) {
+            if (!toLoadQueue.isEmpty() && !loadingPaused) {
+                daemon.runTask();
+            }
+        } else if (!daemon.isAwake() && !toLoadQueue.isEmpty() && !loadingPaused) {
             synchronized (daemon.getThreadLock()) {
                 EventManager.publish(Event.BACKGROUND_LOADING_INFO, this);
                 daemon.getThreadLock()
@@ -634,6 +762,7 @@ public class OctreeLoader extends AbstractSceneLoader implements IObserver, IOct
                             unloaded += count;
                         }
                         objects.clear();
+                        octant.prefetched = false;
                         octant.setStatus(LoadStatus.NOT_LOADED);
                         octant.updateCountsWithNumber(unloaded);
                     } catch (Exception e) {
@@ -711,6 +840,12 @@ public class OctreeLoader extends AbstractSceneLoader implements IObserver, IOct
                     int i = 0;
                     while (loader.toLoadQueue.peek() != null && i <= MAX_LOAD_CHUNK) {
                         OctreeNode octant = loader.toLoadQueue.poll();
+                        if (octant == null) {
+                            break;
+                        }
+                        // Taken, so that it is neither promoted nor cancelled anymore.
+                        octant.setStatus(LoadStatus.LOADING);
+                        octant.prefetched = false;
                         toLoad.add(octant);
                         i++;
                     }
@@ -757,6 +892,13 @@ public class OctreeLoader extends AbstractSceneLoader implements IObserver, IOct
             this.abort.set(true);
         }
 
+        /**
+         * Runs the task in the calling thread.
+         */
+        public void runTask() {
+            task.run();
+        }
+
     }
 
 }
@@ -19,4 +19,24 @@ public interface IOctantLoader {
     int getLoadQueueSize();
 
     int getNLoadedStars();
+
+    /**
+     * Queues an octant that is not observed yet, but is likely to be soon, with a lower priority than the observed
+     * octants. Loaders that do not support prefetching ignore it.
+     *
+     * @param octant The octant.
+     *
+     * @return Whether the octant was queued.
+     */
+    default boolean prefetch(OctreeNode octant) {
+        return false;
+    }
+
+    /**
+     * Removes a prefetched octant from the queue, if it has not been loaded yet.
+     *
+     * @param octant The octant.
+     */
+    default void cancelPrefetch(OctreeNode octant) {
+    }
 }
@@ -252,4 +252,15 @@ public class BinaryDataProvider extends AbstractStarGroupDataProvider {
     public void setOutputFormatVersion(int version) {
         this.outputVersion = version;
     }
+
+    /**
+     * Gets the record reader/writer for the given format version, to read or write single records.
+     *
+     * @param version The format version.
+     *
+     * @return The binary IO object.
+     */
+    public BinaryIO getBinaryIO(int version) {
+        return binaryVersions[version];
+    }
 }
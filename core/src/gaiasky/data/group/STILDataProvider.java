@@ -21,6 +21,7 @@ import gaiasky.scene.system.render.draw.VariableSetInstancedRenderer;
 import gaiasky.util.Constants;
 import gaiasky.util.Logger;
 import gaiasky.util.Pair;
+import gaiasky.util.SysUtils;
 import gaiasky.util.TextUtils;
 import gaiasky.util.color.BVToTeffBallesteros;
 import gaiasky.util.color.ColorUtils;
@@ -46,8 +47,13 @@ import uk.ac.starlink.table.formats.CsvTableBuilder;
 import uk.ac.starlink.util.DataSource;
 import uk.ac.starlink.util.FileDataSource;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
 import java.util.logging.Level;
 
@@ -63,6 +69,10 @@ public class STILDataProvider extends AbstractStarGroupDataProvider {
 
     /** These names are not allowed **/
     private static final String[] forbiddenNameValues = {"-", "...", "nop", "nan", "?", "_", "x", "n/a"};
+    /** Minimum number of rows of a random-access table to decode it in parallel. **/
+    private static final long PARALLEL_MIN_ROWS = 100_000;
+    /** Number of rows of the blocks of the parallel decoder, whose numeric columns are read at once. **/
+    private static final int BLOCK_ROWS = 4096;
     private StarTableFactory factory;
     private long objectId = 1;
     /** Dataset options, may be null. **/
@@ -72,6 +82,12 @@ public class STILDataProvider extends AbstractStarGroupDataProvider {
 
     /** Do all particles have the same epoch? **/
     private boolean uniformEpoch = true;
+    /** Number of threads used to decode the rows of random-access tables. **/
+    private int numThreads = parallelism;
+    /** Whether star tables are cached in binary form. **/
+    private boolean cacheEnabled = true;
+    /** Directory of the binary cache. If null, the cache directory in the data location is used. **/
+    private Path cacheDir;
 
     public STILDataProvider() {
         super();
@@ -94,6 +110,36 @@ public class STILDataProvider extends AbstractStarGroupDataProvider {
         this.datasetOptions = datasetOptions;
     }
 
+    /**
+     * Sets the number of threads used to decode the rows of random-access tables (FITS, colfits, etc.). Tables
+     * that can only be read sequentially are always decoded in the calling thread.
+     *
+     * @param numThreads The number of threads.
+     */
+    public void setNumThreads(int numThreads) {
+        this.numThreads = FastMath.max(1, numThreads);
+    }
+
+    /**
+     * Enables or disables the binary cache of star tables. When enabled, star tables loaded from files are stored
+     * in binary form in the cache directory, and later loads of the same file with the same options read them
+     * from there.
+     *
+     * @param cacheEnabled Whether the cache is enabled.
+     */
+    public void setCacheEnabled(boolean cacheEnabled) {
+        this.cacheEnabled = cacheEnabled;
+    }
+
+    /**
+     * Sets the directory of the binary cache. Defaults to the cache directory in the data location.
+     *
+     * @param cacheDir The directory.
+     */
+    public void setCacheDir(Path cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
     @Override
     public List<IParticleRecord> loadData(String file,
                                           double factor,
@@ -126,7 +172,8 @@ public class STILDataProvider extends AbstractStarGroupDataProvider {
      */
     private Pair<UCD, Double> getDoubleUcd(Array<UCD> UCDs,
                                            Object[] row) {
-        for (UCD ucd : UCDs) {
+        for (int i = 0; i < UCDs.size; i++) {
+            UCD ucd = UCDs.get(i);
             try {
                 double num = ((Number) row[ucd.index]).doubleValue();
                 if (Double.isNaN(num)) {
@@ -159,7 +206,8 @@ public class STILDataProvider extends AbstractStarGroupDataProvider {
      */
     private Pair<UCD, double[]> getDoubleArrayUcd(Array<UCD> UCDs,
                                                   Object[] row) {
-        for (UCD ucd : UCDs) {
+        for (int i = 0; i < UCDs.size; i++) {
+            UCD ucd = UCDs.get(i);
             try {
                 double[] nums = (double[]) row[ucd.index];
                 return new Pair<>(ucd, nums);
@@ -186,7 +234,8 @@ public class STILDataProvider extends AbstractStarGroupDataProvider {
      */
     private Pair<UCD, String> getStringUcd(Array<UCD> UCDs,
                                            Object[] row) {
-        for (UCD ucd : UCDs) {
+        for (int i = 0; i < UCDs.size; i++) {
+            UCD ucd = UCDs.get(i);
             try {
                 String str = row[ucd.index].toString()
                         .strip();
@@ -198,27 +247,6 @@ public class STILDataProvider extends AbstractStarGroupDataProvider {
         return null;
     }
 
-    private Pair<UCD, String>[] getAllStringsUcd(Array<UCD> UCDs,
-                                                 Object[] row) {
-        Array<Pair<UCD, String>> strings = new Array<>(false, 2);
-        for (UCD ucd : UCDs) {
-            try {
-                String str = row[ucd.index].toString()
-                        .strip();
-                strings.add(new Pair<>(ucd, str));
-            } catch (Exception e) {
-                // not working, try next
-            }
-        }
-        Pair<UCD, String>[] result = (Pair<UCD, String>[]) new Pair[strings.size];
-        int i = 0;
-        for (Pair<UCD, String> value : strings) {
-            result[i++] = value;
-        }
-        return result;
-
-    }
-
     /**
      * Loads a dataset (from a data source object) into a list of particle records.
      *
@@ -247,6 +275,17 @@ public class STILDataProvider extends AbstractStarGroupDataProvider {
                 if (preCallback != null)
                     preCallback.run();
 
+                // Reloads of an unchanged star table come from the binary cache.
+                StarTableCache cache = openCache(ds, factor);
+                if (cache != null) {
+                    StarTableCache.Content content = cache.read();
+                    if (content != null) {
+                        restore(content);
+                        logger.info("Loaded " + content.records().size() + " stars from cache");
+                        return list;
+                    }
+                }
+
                 // Try to load
                 StarTable table = factory.makeStarTable(ds);
 
@@ -281,453 +320,47 @@ public class STILDataProvider extends AbstractStarGroupDataProvider {
                     datasetOptions.type = DatasetLoadType.KEPLER;
                 }
 
-                int resampledLightCurves = 0;
-                int noPeriods = 0;
-
                 if (ucdParser.hasPos) {
-                    BVToTeffBallesteros bvToTEff = new BVToTeffBallesteros();
-
-                    int nInvalidParallaxes = 0;
-                    long i = 0L;
-                    long step = FastMath.max(1L, FastMath.round(count / 100d));
-
-                    RowSequence rs = table.getRowSequence();
-                    while (rs.next()) {
-                        Object[] row = rs.getRow();
-                        try {
-                            // POSITION
-                            Pair<UCD, Double> a = getDoubleUcd(ucdParser.POS1, row);
-                            Pair<UCD, Double> b = getDoubleUcd(ucdParser.POS2, row);
-                            Pair<UCD, Double> c;
-                            String unitC;
-
-                            Pair<UCD, Double> pos3 = getDoubleUcd(ucdParser.POS3, row);
-                            // Check missing pos3 -> Use default parallax
-                            if (ucdParser.POS3.isEmpty() || pos3 == null || pos3.getSecond() == null || !Double.isFinite(pos3.getSecond())) {
-                                c = new Pair<>(null, Constants.DEFAULT_PARALLAX);
-                                unitC = "mas";
-                                nInvalidParallaxes++;
-                            } else {
-                                c = getDoubleUcd(ucdParser.POS3, row);
-                                assert c != null;
-                                unitC = c.getFirst().unit;
-                            }
-
-                            assert a != null;
-                            assert b != null;
-                            PositionType pt = ucdParser.getPositionType(a.getFirst(), b.getFirst(), c.getFirst());
-                            // Check negative parallaxes -> Use default for consistency
-                            if (pt.isParallax() && (c.getSecond() == null || c.getSecond()
-                                    .isNaN() || c.getSecond() <= 0)) {
-                                c.setSecond(Constants.DEFAULT_PARALLAX);
-                                unitC = "mas";
-                                nInvalidParallaxes++;
-                            }
-
-                            Position p = new Position(a.getSecond(), a.getFirst().unit, b.getSecond(), b.getFirst().unit, c.getSecond(), unitC, pt);
-                            p.realPosition.scl(factor);
-
-                            double distPc = p.realPosition.len();
-                            if ((pt.isParallax() && c.getSecond() <= 0) || !Double.isFinite(distPc) || distPc < 0) {
-                                // Next
-                                break;
-                            }
-
-                            p.realPosition.scl(Constants.PC_TO_U);
-                            // Transform if necessary
-                            if (transform != null) {
-                                p.realPosition.mul(transform);
-                            }
-
-                            // Find out RA/DEC/Dist
-                            Vector3D sph = new Vector3D();
-                            Coordinates.cartesianToSpherical(p.realPosition, sph);
-
-                            // PROPER MOTION
-                            Vector3D pm;
-                            double muAlphaStar = 0, muDelta = 0, radVel = 0;
-                            // Only supported if position is equatorial spherical coordinates (ra/dec)
-                            if (pt == PositionType.EQ_SPH_DIST || pt == PositionType.EQ_SPH_PLX) {
-                                Pair<UCD, Double> pma = getDoubleUcd(ucdParser.PMRA, row);
-                                Pair<UCD, Double> pmb = getDoubleUcd(ucdParser.PMDEC, row);
-                                Pair<UCD, Double> pmc = getDoubleUcd(ucdParser.RADVEL, row);
-
-                                muAlphaStar = pma != null ? pma.getSecond() : 0;
-                                muDelta = pmb != null ? pmb.getSecond() : 0;
-                                radVel = pmc != null ? pmc.getSecond() : Float.NaN;
-
-                                double radVelValue = Double.isFinite(radVel) ? radVel : 0;
-
-                                double raRad = new Angle(a.getSecond(), a.getFirst().unit).get(AngleUnit.RAD);
-                                double decRad = new Angle(b.getSecond(), b.getFirst().unit).get(AngleUnit.RAD);
-                                pm = Coordinates.properMotionsToCartesian(muAlphaStar, muDelta, radVelValue, raRad, decRad, distPc, new Vector3D());
-                            } else {
-                                pm = new Vector3D(Vector3D.Zero);
-                            }
-
-                            // MAGNITUDE
-                            double appMag;
-                            if (!ucdParser.MAG.isEmpty()) {
-                                Pair<UCD, Double> appMagPair = getDoubleUcd(ucdParser.MAG, row);
-                                if (appMagPair == null) {
-                                    // Default magnitude.
-                                    appMag = Constants.DEFAULT_MAG;
-                                } else {
-                                    appMag = appMagPair.getSecond();
-                                }
-                            } else {
-                                // Default magnitude.
-                                appMag = Constants.DEFAULT_MAG;
-                            }
-                            // Scale magnitude if needed.
-                            double magScl = isStars && datasetOptions != null ? datasetOptions.magnitudeScale : 0f;
-                            appMag = appMag - magScl;
-
-                            // Absolute magnitude to pseudo-size.
-                            double absMag = AstroUtils.apparentToAbsoluteMagnitude(distPc, appMag);
-                            double sizePc = AstroUtils.absoluteMagnitudeToPseudoSize(absMag);
-
-                            // SIZE (DIAMETER, not RADIUS!)
-                            if (!ucdParser.SIZE.isEmpty()) {
-                                // We have a size in the dataset.
-                                if (!isStars) {
-                                    // Only particles, star datasets do not have a size.
-                                    Pair<UCD, Double> sizePair = getDoubleUcd(ucdParser.SIZE, row);
-                                    UCD sizeUcd = sizePair.getFirst();
-                                    if (sizeUcd != null && sizeUcd.unit != null) {
-                                        if (Angle.isAngle(sizeUcd.unit)) {
-                                            // Solid angle in radians.
-                                            double sa = new Angle(sizePair.getSecond(), sizePair.getFirst().unit).get(AngleUnit.RAD);
-                                            // Size in parsecs = tan(sa) * distPc
-                                            sizePc = FastMath.tan(sa) * distPc;
-                                        } else if (Length.isLength(sizeUcd.unit)) {
-                                            // Size in parsecs, directly.
-                                            sizePc = new Length(sizePair.getSecond(), sizePair.getFirst().unit).get(LengthUnit.PC);
-                                        }
-                                    } else {
-                                        // We hope size is already in parsecs.
-                                        sizePc = sizePair.getSecond()
-                                                .floatValue();
-                                    }
-                                    if (TextUtils.containsOrMatches(UCDParser.RADIUS_NAMES, sizeUcd.colName, true)) {
-                                        // Radius, need to multiply by 2 to get diameter.
-                                        sizePc *= 2.0;
-                                    }
-                                }
-                            } else {
-                                if (!isStars) {
-                                    // We have particles without a size. We just clamp what we have.
-                                    double maxSizePc = 3.0;
-                                    if (params != null && params.containsKey("maxSizePc")) {
-                                        var value = params.get("maxSizePc");
-                                        if (value instanceof Number n) {
-                                            maxSizePc = n.doubleValue();
-                                        }
-                                    }
-                                    sizePc = MathUtilsDouble.clamp(sizePc, 1e-8, maxSizePc);
-                                }
+                    // Rows without a numeric identifier get ids derived from their index, so that they do not depend
+                    // on the order in which the rows are decoded.
+                    final long idBase = objectId;
+                    List<RowBatch> batches;
+                    if (numThreads > 1 && table.isRandom() && count >= PARALLEL_MIN_ROWS) {
+                        batches = decodeParallel(table, count, ucdParser, factor, isStars, idBase, updateCallback);
+                    } else {
+                        RowBatch batch = new RowBatch(ucdParser, factor, isStars, idBase, (int) FastMath.max(count, 0));
+                        long i = 0L;
+                        long step = FastMath.max(1L, FastMath.round(count / 100d));
+                        RowSequence rs = table.getRowSequence();
+                        while (rs.next()) {
+                            batch.decode(rs.getRow(), i);
+                            i++;
+                            if (updateCallback != null && i % step == 0) {
+                                updateCallback.accept(i, count);
                             }
-
-                            // COLOR INDEX
-                            float colorIndex;
-                            if (!ucdParser.COL.isEmpty()) {
-                                Pair<UCD, Double> colPair = getDoubleUcd(ucdParser.COL, row);
-                                if (colPair == null) {
-                                    colorIndex = (float) Constants.DEFAULT_COLOR;
-                                } else {
-                                    colorIndex = colPair.getSecond()
-                                            .floatValue();
-                                }
-                            } else {
-                                // Default color index for stars, NaN for others.
-                                colorIndex = isStars ? (float) Constants.DEFAULT_COLOR : Float.NaN;
-                            }
-
-                            // VARIABILITY
-                            float[] variMags = null;
-                            float[] variCols = null;
-                            double[] variTimes = null;
-                            double pf = 0.0;
-                            int nVari = 0;
-                            if (ucdParser.hasVariability) {
-                                Pair<UCD, Double> period = getDoubleUcd(ucdParser.PERIOD, row);
-                                if (!ucdParser.hasPeriod || period == null || !Double.isFinite(period.getSecond())) {
-                                    // Skip stars without period
-                                    noPeriods++;
-                                    continue;
-                                } else {
-                                    pf = period.getSecond();
-                                }
-                                // Magnitudes list
-                                Pair<UCD, double[]> variMagsPair = getDoubleArrayUcd(ucdParser.VARI_MAGS, row);
-                                assert variMagsPair != null;
-                                double[] variMagsDouble = variMagsPair.getSecond();
-                                nVari = variMagsDouble != null ? variMagsDouble.length : 0;
-                                variMags = new float[nVari];
-
-                                // Times list
-                                Pair<UCD, double[]> variTimesPair = getDoubleArrayUcd(ucdParser.VARI_TIMES, row);
-                                assert variTimesPair != null;
-                                variTimes = variTimesPair.getSecond();
-
-                                // Colors list (may not be present!)
-                                Pair<UCD, double[]> variColorsPair = getDoubleArrayUcd(ucdParser.VARI_COLS, row);
-                                var hasVariColors = variColorsPair != null;
-                                double[] variColorsDouble = hasVariColors ? variColorsPair.getSecond() : null;
-                                variCols = hasVariColors ? new float[nVari] : null;
-
-                                double[] auxMags = variMagsDouble;
-                                double[] auxTimes = variTimes;
-                                double[] auxColors = variColorsDouble;
-
-                                // SANITIZE (no NaNs)
-                                List<Double> magnitudesList = new ArrayList<>();
-                                List<Double> timesList = new ArrayList<>();
-                                List<Double> colorsList = hasVariColors ? new ArrayList<>() : null;
-                                int n = Math.max(auxMags.length, hasVariColors ? auxColors.length : 0);
-                                for (int idx = 0; idx < n; idx++) {
-                                    var mag = auxMags != null && auxMags.length > idx ? auxMags[idx] : Double.NaN;
-                                    var col = hasVariColors && auxColors.length > idx ? auxColors[idx] : Double.NaN;
-                                    if (Double.isFinite(mag) || Double.isFinite(col)) {
-                                        magnitudesList.add(Double.isFinite(mag) ? mag - magScl : mag);
-                                        timesList.add(auxTimes[idx]);
-                                        if (hasVariColors)
-                                            colorsList.add(col);
-                                    }
-
-                                }
-                                variMagsDouble = magnitudesList.stream()
-                                        .mapToDouble(Double::doubleValue)
-                                        .toArray();
-                                variTimes = timesList.stream()
-                                        .mapToDouble(Double::doubleValue)
-                                        .toArray();
-                                if (hasVariColors)
-                                    variColorsDouble = colorsList.stream()
-                                            .mapToDouble(Double::doubleValue)
-                                            .toArray();
-                                nVari = variTimes.length;
-
-                                // FOLD
-                                // x:time, y:mag, z:color, can be NaN
-                                List<Vector3D> list = new ArrayList<>(nVari);
-                                for (int k = 0; k < nVari; k++) {
-                                    double phase = ((variTimes[k] - variTimes[0]) % pf);
-                                    double mag = variMagsDouble.length > k ? variMagsDouble[k] : Double.NaN;
-                                    double col = hasVariColors && variColorsDouble.length > k ? variColorsDouble[k] : Double.NaN;
-                                    list.add(new Vector3D(phase, mag, col));
-                                }
-                                list.sort(Comparator.comparingDouble(o -> o.x));
-
-                                for (int k = 0; k < nVari; k++) {
-                                    Vector3D point = list.get(k);
-                                    variTimes[k] = point.x + variTimes[0];
-                                    variMagsDouble[k] = point.y;
-                                    if (hasVariColors)
-                                        variColorsDouble[k] = point.z;
-                                }
-
-                                // RESAMPLE (only if too many samples)
-                                final int MAX_VARI = VariableSetInstancedRenderer.MAX_VARI;
-                                if (nVari > MAX_VARI) {
-                                    nVari = MAX_VARI;
-                                    double t0 = variTimes[0];
-                                    double tn = variTimes[variTimes.length - 1];
-                                    double tStep = (tn - t0) / (nVari - 1);
-
-                                    var lintMags = new LinearInterpolator(variTimes, variMagsDouble);
-                                    var lintColors = hasVariColors ? new LinearInterpolator(variTimes, variColorsDouble) : null;
-
-                                    variMagsDouble = new double[nVari];
-                                    variTimes = new double[nVari];
-                                    variColorsDouble = hasVariColors ? new double[nVari] : null;
-
-                                    for (int idx = 0; idx < nVari; idx++) {
-                                        double t = t0 + tStep * idx;
-                                        variTimes[idx] = t;
-                                        variMagsDouble[idx] = lintMags.value(t);
-                                        if (hasVariColors)
-                                            variColorsDouble[idx] = lintColors.value(t);
-                                    }
-                                    resampledLightCurves++;
-                                }
-
-                                // Convert magnitudes to sizes
-                                assert variMags.length == variTimes.length;
-                                for (int j = 0; j < variMagsDouble.length; j++) {
-                                    double variAbsoluteMag = AstroUtils.apparentToAbsoluteMagnitude(distPc, variMagsDouble[j]);
-                                    variMags[j] = (float) AstroUtils.absoluteMagnitudeToPseudoSize(variAbsoluteMag);
-                                }
-                                // Convert B-V colors to packed RGB
-                                if (hasVariColors) {
-                                    for (int j = 0; j < variColorsDouble.length; j++) {
-                                        var bvColor = variColorsDouble[j];
-                                        var rgb = ColorUtils.BVtoRGB(bvColor);
-                                        variCols[j] = Color.toFloatBits(rgb[0], rgb[1], rgb[2], 1f);
-                                    }
-                                }
-                            }
-
-                            // EFFECTIVE TEMPERATURE
-                            float tEff;
-                            if (!ucdParser.TEFF.isEmpty()) {
-                                Pair<UCD, Double> tEffPair = getDoubleUcd(ucdParser.TEFF, row);
-                                if (tEffPair != null) {
-                                    // Use value from table.
-                                    tEff = tEffPair.getSecond()
-                                            .floatValue();
-                                } else {
-                                    // Use color index.
-                                    tEff = (float) bvToTEff.bvToTeff(colorIndex);
-                                }
-                            } else {
-                                // Convert B-V to T_eff using Ballesteros 2012
-                                tEff = (float) bvToTEff.bvToTeff(colorIndex);
-                            }
-
-                            // RGB COLOR (PACKED) from COLOR INDEX or effective temperature.
-                            float colorPacked;
-                            float[] rgb = null;
-                            if (Float.isFinite(colorIndex)) {
-                                // Convert color index to RGB.
-                                rgb = ColorUtils.BVtoRGB(colorIndex);
-                                colorPacked = Color.toFloatBits(rgb[0], rgb[1], rgb[2], 1.0f);
-                            } else if (Float.isFinite(tEff)) {
-                                rgb = ColorUtils.tEffToRGB_harre(tEff);
-                                colorPacked = Color.toFloatBits(rgb[0], rgb[1], rgb[2], 1.0f);
-                            } else {
-                                colorPacked = Float.NaN;
-                            }
-
-                            // IDENTIFIER
-                            long id;
-                            boolean idIsNotNumber = false;
-                            int hip = -1;
-                            if (!ucdParser.ID.isEmpty()) {
-                                // We have ID
-                                Pair<UCD, String> idPair = getStringUcd(ucdParser.ID, row);
-                                assert idPair != null;
-                                try {
-                                    id = Parser.parseLongException(idPair.getSecond());
-                                    if (isStars && idPair.getFirst().colName.equalsIgnoreCase("hip")) {
-                                        hip = (int) id;
-                                    }
-                                } catch (NumberFormatException e) {
-                                    // ID is not an integer.
-                                    id = ++objectId;
-                                    idIsNotNumber = true;
-                                }
-                            } else {
-                                // Empty ID
-                                id = ++objectId;
-                            }
-                            // Add hip numbers if present.
-                            if (hip < 0 && hasCol(ColId.hip)) {
-                                int hipIndex = idx(ColId.hip);
-                                var hipNum = row[hipIndex];
-                                if (hipNum instanceof Integer hn) {
-                                    hip = hn;
-                                }
-                            }
-
-                            // NAME(S)
-                            String[] names;
-                            if (ucdParser.NAME.isEmpty()) {
-                                // Name from ID.
-                                if (idIsNotNumber) {
-                                    Pair<UCD, String> idPair = getStringUcd(ucdParser.ID, row);
-                                    names = new String[]{idPair.getSecond()};
-                                } else {
-                                    names = new String[]{Long.toString(id)};
-                                }
-                            } else {
-                                // We have a name.
-                                Pair<UCD, String>[] namePairs = getAllStringsUcd(ucdParser.NAME, row);
-                                Array<String> namesArray = new Array<>(false, namePairs.length);
-                                for (Pair<UCD, String> pair : namePairs) {
-                                    String[] currNames = pair.getSecond()
-                                            .split(Constants.nameSeparatorRegex);
-                                    for (String actualName : currNames) {
-                                        if (actualName != null && !actualName.isEmpty()
-                                                && !TextUtils.contains(forbiddenNameValues, actualName, true)) {
-                                            namesArray.add(actualName);
-                                        }
-                                    }
-                                }
-                                names = new String[namesArray.size];
-                                int k = 0;
-                                for (String n : namesArray) {
-                                    names[k++] = n;
-                                }
-                                // Default to ID.
-                                if (names.length == 0) {
-                                    names = new String[]{Long.toString(id)};
-                                }
-                            }
-
-                            // Populate provider lists
-                            if (rgb != null) {
-                                colors.put(id, rgb);
-                            }
-                            sphericalPositions.put(id, new double[]{sph.x, sph.y, sph.z});
-
-                            if (datasetOptions == null || datasetOptions.type == DatasetOptions.DatasetLoadType.STARS
-                                    || datasetOptions.type == DatasetOptions.DatasetLoadType.VARIABLES) {
-
-                                // Extra attributes.
-                                ObjectMap<UCD, Object> extraAttributes = addExtraAttributes(ucdParser, row);
-                                if (ucdParser.TEFF.isEmpty()) {
-                                    UCD tEffUCD = new UCD("phys.temperature.effective", "teff", "K", -1);
-                                    extraAttributes = initExtraAttributes(extraAttributes);
-                                    extraAttributes.put(tEffUCD, tEff);
-                                } else {
-                                    extraAttributes = initExtraAttributes(extraAttributes);
-                                    extraAttributes.put(ucdParser.TEFF.first(), tEff);
-                                }
-
-                                // Construct record.
-                                IParticleRecord pr;
-                                if (datasetOptions != null && datasetOptions.type == DatasetLoadType.VARIABLES || variMags != null || variCols != null) {
-                                    pr = new ParticleVariable(id, names, p.realPosition.x, p.realPosition.y, p.realPosition.z, (float) muAlphaStar,
-                                                              (float) muDelta, (float) radVel, (float) pm.x, (float) pm.y, (float) pm.z,
-                                                              (float) appMag, (float) absMag, colorPacked, (float) sizePc, hip, tEff, nVari, pf,
-                                                              variMags, variCols, variTimes, extraAttributes);
-                                } else {
-                                    pr = new ParticleStar(id, names, p.realPosition.x, p.realPosition.y, p.realPosition.z, (float) muAlphaStar,
-                                                          (float) muDelta, (float) radVel, (float) pm.x, (float) pm.y, (float) pm.z, (float) appMag,
-                                                          (float) absMag, colorPacked, (float) sizePc, hip, tEff, extraAttributes);
-                                }
-
-                                list.add(pr);
-
-                                int appMagClamp = (int) MathUtilsDouble.clamp(appMag, 0, 21);
-                                countsPerMag[appMagClamp] += 1;
-                            } else if (datasetOptions.type == DatasetOptions.DatasetLoadType.PARTICLES) {
-                                // Extra attributes.
-                                ObjectMap<UCD, Object> extraAttributes = addExtraAttributes(ucdParser, row);
-                                // Record.
-                                var pr = new Particle(id, names, (float) p.realPosition.x, (float) p.realPosition.y, (float) p.realPosition.z,
-                                                      extraAttributes);
-                                list.add(pr);
-                            } else if (datasetOptions.type == DatasetOptions.DatasetLoadType.PARTICLES_EXT) {
-                                // Extra attributes.
-                                ObjectMap<UCD, Object> extraAttributes = addExtraAttributes(ucdParser, row);
-                                // Record.
-                                var pr = new ParticleExt(id, names, p.realPosition.x, p.realPosition.y, p.realPosition.z, (float) muAlphaStar,
-                                                         (float) muDelta, (float) radVel, (float) pm.x, (float) pm.y, (float) pm.z, (float) appMag,
-                                                         (float) absMag, colorPacked, (float) (sizePc * Constants.PC_TO_U), extraAttributes);
-                                list.add(pr);
-                            }
-
-                        } catch (Exception e) {
-                            logger.debug(e);
-                            logger.debug(I18n.msg("debug.parse.row.skip", i));
                         }
-                        i++;
-                        if (updateCallback != null && i % step == 0) {
-                            updateCallback.accept(i, count);
+                        batches = List.of(batch);
+                    }
+
+                    // Merge the batches, in row order.
+                    int nInvalidParallaxes = 0;
+                    int resampledLightCurves = 0;
+                    int noPeriods = 0;
+                    long rows = 0;
+                    for (RowBatch batch : batches) {
+                        list.addAll(batch.records);
+                        sphericalPositions.putAll(batch.sphericalPositions);
+                        colors.putAll(batch.colors);
+                        for (int m = 0; m < countsPerMag.length; m++) {
+                            countsPerMag[m] += batch.countsPerMag[m];
                         }
+                        nInvalidParallaxes += batch.nInvalidParallaxes;
+                        resampledLightCurves += batch.resampledLightCurves;
+                        noPeriods += batch.noPeriods;
+                        rows += batch.rows;
                     }
+                    objectId = idBase + rows;
+
                     if (nInvalidParallaxes > 0) {
                         logger.warn(I18n.msg("warn.star.parallax", nInvalidParallaxes, Constants.DEFAULT_PARALLAX));
                     }
@@ -737,6 +370,10 @@ public class STILDataProvider extends AbstractStarGroupDataProvider {
                     if (noPeriods > 0) {
                         logger.warn(I18n.msg("warn.star.vari.noperiod", noPeriods));
                     }
+
+                    if (cache != null) {
+                        cache.writeAsync(list, columnInfoList, countsPerMag);
+                    }
                 } else if (isKepler) {
                     long i = 0L;
                     long step = FastMath.max(1L, FastMath.round(count / 100d));
@@ -827,6 +464,770 @@ public class STILDataProvider extends AbstractStarGroupDataProvider {
         return list;
     }
 
+    /**
+     * Decodes the rows of a random-access table in parallel. The rows are split in contiguous ranges, and each range
+     * is decoded by a worker with its own {@link RowAccess}. Workers go through their range in blocks of rows. The
+     * numeric columns of each block are read into primitive arrays first, and only the other columns that the decoder
+     * uses are read as objects, so no whole rows are read.
+     *
+     * @return The batches, in row order.
+     */
+    private List<RowBatch> decodeParallel(StarTable table,
+                                          long count,
+                                          UCDParser ucdParser,
+                                          double factor,
+                                          boolean isStars,
+                                          long idBase,
+                                          BiConsumer<Long, Long> updateCallback) throws IOException {
+        // Split the columns that the decoder reads into numeric columns, which are read into primitive arrays, and
+        // the rest, which are read as objects.
+        final int numColumns = table.getColumnCount();
+        final boolean[] isNumeric = new boolean[numColumns];
+        final boolean[] isObject = new boolean[numColumns];
+        for (Array<UCD> ucds : List.of(ucdParser.POS1, ucdParser.POS2, ucdParser.POS3, ucdParser.PMRA, ucdParser.PMDEC,
+                                       ucdParser.RADVEL, ucdParser.MAG, ucdParser.SIZE, ucdParser.COL, ucdParser.PERIOD,
+                                       ucdParser.TEFF)) {
+            for (UCD ucd : ucds) {
+                if (Number.class.isAssignableFrom(table.getColumnInfo(ucd.index).getContentClass())) {
+                    isNumeric[ucd.index] = true;
+                } else {
+                    isObject[ucd.index] = true;
+                }
+            }
+        }
+        for (Array<UCD> ucds : List.of(ucdParser.ID, ucdParser.NAME, ucdParser.VARI_TIMES, ucdParser.VARI_MAGS,
+                                       ucdParser.VARI_COLS, ucdParser.extra)) {
+            for (UCD ucd : ucds) {
+                isObject[ucd.index] = true;
+            }
+        }
+        if (hasCol(ColId.hip)) {
+            isObject[idx(ColId.hip)] = true;
+        }
+        final int[] numericColumns = indices(isNumeric);
+        final int[] objectColumns = indices(isObject);
+
+        final long nRanges = FastMath.min(count, numThreads * 4L);
+        final long rangeSize = (count + nRanges - 1) / nRanges;
+        final AtomicLong done = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads, r -> {
+            Thread t = new Thread(r, "gaiasky-stil-loader");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<RowBatch>> futures = new ArrayList<>((int) nRanges);
+            for (long start = 0; start < count; start += rangeSize) {
+                final long lo = start;
+                final long hi = FastMath.min(count, start + rangeSize);
+                futures.add(pool.submit(() -> {
+                    RowBatch batch = new RowBatch(ucdParser, factor, isStars, idBase, (int) (hi - lo));
+                    double[][] numeric = new double[numColumns][];
+                    for (int col : numericColumns) {
+                        numeric[col] = new double[BLOCK_ROWS];
+                    }
+                    Object[] row = new Object[numColumns];
+                    try (RowAccess access = table.getRowAccess()) {
+                        for (long blockLo = lo; blockLo < hi; blockLo += BLOCK_ROWS) {
+                            int n = (int) FastMath.min(BLOCK_ROWS, hi - blockLo);
+                            for (int col : numericColumns) {
+                                readNumericColumn(table, access, col, blockLo, n, numeric[col]);
+                            }
+                            for (int j = 0; j < n; j++) {
+                                long i = blockLo + j;
+                                if (objectColumns.length > 0) {
+                                    access.setRowIndex(i);
+                                    for (int col : objectColumns) {
+                                        row[col] = access.getCell(col);
+                                    }
+                                }
+                                batch.decode(row, numeric, j, i);
+                            }
+                            done.addAndGet(n);
+                        }
+                    }
+                    return batch;
+                }));
+            }
+            List<RowBatch> batches = new ArrayList<>(futures.size());
+            for (Future<RowBatch> future : futures) {
+                RowBatch batch = null;
+                while (batch == null) {
+                    try {
+                        batch = future.get(100, TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException e) {
+                        if (updateCallback != null) {
+                            updateCallback.accept(done.get(), count);
+                        }
+                    }
+                }
+                batches.add(batch);
+            }
+            return batches;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Table loading interrupted");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ioe ? ioe : new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Gets the indices of the true elements of the given array. **/
+    private static int[] indices(boolean[] flags) {
+        int n = 0;
+        for (boolean flag : flags) {
+            n += flag ? 1 : 0;
+        }
+        int[] indices = new int[n];
+        for (int i = 0, j = 0; i < flags.length; i++) {
+            if (flags[i]) {
+                indices[j++] = i;
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Reads the values of a numeric column for a block of rows. Columns of in-memory tables that are backed by a
+     * primitive array and can't hold nulls are copied from the array. Otherwise, the cells are read one by one through
+     * the row access, as STIL only exposes cells as objects. Null cells are read as NaN.
+     *
+     * @param table  The table.
+     * @param access The row access of the table.
+     * @param col    The column index.
+     * @param lo     The index of the first row.
+     * @param n      The number of rows.
+     * @param out    The array to put the values in.
+     */
+    private static void readNumericColumn(StarTable table,
+                                          RowAccess access,
+                                          int col,
+                                          long lo,
+                                          int n,
+                                          double[] out) throws IOException {
+        if (table instanceof ColumnStarTable cst && cst.getColumnData(col) instanceof ArrayColumn ac
+                && !ac.getColumnInfo().isNullable()) {
+            int off = (int) lo;
+            switch (ac.getArray()) {
+            case double[] d -> {
+                System.arraycopy(d, off, out, 0, n);
+                return;
+            }
+            case float[] f -> {
+                for (int j = 0; j < n; j++) {
+                    out[j] = f[off + j];
+                }
+                return;
+            }
+            case long[] l -> {
+                for (int j = 0; j < n; j++) {
+                    out[j] = l[off + j];
+                }
+                return;
+            }
+            case int[] i -> {
+                for (int j = 0; j < n; j++) {
+                    out[j] = i[off + j];
+                }
+                return;
+            }
+            case short[] sh -> {
+                for (int j = 0; j < n; j++) {
+                    out[j] = sh[off + j];
+                }
+                return;
+            }
+            default -> {
+                // Not a primitive array, read the cells.
+            }
+            }
+        }
+        for (int j = 0; j < n; j++) {
+            access.setRowIndex(lo + j);
+            out[j] = access.getCell(col) instanceof Number num ? num.doubleValue() : Double.NaN;
+        }
+    }
+
+    /**
+     * Gets the binary cache entry for the given data source, if the data source is a file and the dataset is a star
+     * dataset.
+     *
+     * @return The cache entry, or null.
+     */
+    private StarTableCache openCache(DataSource ds, double factor) {
+        if (!cacheEnabled || !(ds instanceof FileDataSource fds)
+                || !(datasetOptions == null || datasetOptions.type == DatasetLoadType.STARS)) {
+            return null;
+        }
+        Path dir = cacheDir;
+        if (dir == null) {
+            if (GaiaSky.instance == null) {
+                return null;
+            }
+            dir = SysUtils.getDataCacheDir(GaiaSky.settings().data.location);
+        }
+        try {
+            return StarTableCache.open(dir, fds.getFile().toPath(), factor, transform, datasetOptions);
+        } catch (IOException e) {
+            logger.warn("Could not open cache for " + fds.getFile() + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Populates the provider lists from the contents of a cache entry.
+     */
+    private void restore(StarTableCache.Content content) {
+        columnInfoList = new ArrayList<>(content.columns());
+        list.addAll(content.records());
+        for (int m = 0; m < FastMath.min(countsPerMag.length, content.countsPerMag().length); m++) {
+            countsPerMag[m] += content.countsPerMag()[m];
+        }
+        Vector3D pos = new Vector3D();
+        for (IParticleRecord record : content.records()) {
+            Vector3D sph = Coordinates.cartesianToSpherical(pos.set(record.x(), record.y(), record.z()), new Vector3D());
+            sphericalPositions.put(record.id(), new double[]{sph.x, sph.y, sph.z});
+            if (Float.isFinite(record.color())) {
+                Color c = new Color();
+                Color.abgr8888ToColor(c, record.color());
+                colors.put(record.id(), new float[]{c.r, c.g, c.b});
+            }
+        }
+    }
+
+    /** Reusable holder of a UCD and its value, to read cells without allocating. **/
+    private static final class UcdValue {
+        UCD ucd;
+        double value;
+        String string;
+    }
+
+    /**
+     * Gets the first ucd that can be translated to a double from the set, and puts it and its value in the holder.
+     *
+     * @param UCDs    The array of UCDs. The UCDs which coincide with the names should be first.
+     * @param row     The row objects.
+     * @param numeric The values of the numeric columns of the block of the row, by column index, or null. Columns
+     *                with values here are not read from the row objects.
+     * @param local   The index of the row in the block.
+     * @param out     The holder.
+     *
+     * @return Whether a value was found.
+     */
+    private static boolean getDoubleUcd(Array<UCD> UCDs,
+                                        Object[] row,
+                                        double[][] numeric,
+                                        int local,
+                                        UcdValue out) {
+        for (int i = 0; i < UCDs.size; i++) {
+            UCD ucd = UCDs.get(i);
+            double[] column = numeric != null ? numeric[ucd.index] : null;
+            Object cell = column != null ? null : row[ucd.index];
+            double num;
+            if (column != null) {
+                num = column[local];
+            } else if (cell instanceof Number n) {
+                num = n.doubleValue();
+            } else if (cell instanceof String str) {
+                try {
+                    num = Parser.parseDouble(str);
+                } catch (Exception e) {
+                    continue;
+                }
+            } else {
+                continue;
+            }
+            if (!Double.isNaN(num)) {
+                out.ucd = ucd;
+                out.value = num;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the first ucd as a string from the set, and puts it and its value in the holder.
+     *
+     * @param UCDs The set of UCD objects.
+     * @param row  The row.
+     * @param out  The holder.
+     *
+     * @return Whether a value was found.
+     */
+    private static boolean getStringUcd(Array<UCD> UCDs,
+                                        Object[] row,
+                                        UcdValue out) {
+        for (int i = 0; i < UCDs.size; i++) {
+            UCD ucd = UCDs.get(i);
+            Object cell = row[ucd.index];
+            if (cell != null) {
+                out.ucd = ucd;
+                out.string = cell.toString()
+                        .strip();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decodes star rows into particle records. Each worker owns one batch, so batches need no synchronization.
+     */
+    private final class RowBatch {
+        private final UCDParser ucdParser;
+        private final double factor;
+        private final boolean isStars;
+        private final long idBase;
+        private final int hipIndex;
+        private final double magScl;
+        private final UCD tEffUCD;
+
+        final List<IParticleRecord> records;
+        final LongMap<double[]> sphericalPositions = new LongMap<>();
+        final LongMap<float[]> colors = new LongMap<>();
+        final long[] countsPerMag = new long[STILDataProvider.this.countsPerMag.length];
+        int nInvalidParallaxes, resampledLightCurves, noPeriods;
+        long rows;
+
+        private final BVToTeffBallesteros bvToTEff = new BVToTeffBallesteros();
+        private final UcdValue a = new UcdValue(), b = new UcdValue(), c = new UcdValue(), v = new UcdValue();
+        private final Array<String> namesArray = new Array<>(false, 4, String.class);
+        /** Numeric columns of the block of the current row, and the index of the row in the block. **/
+        private double[][] numeric;
+        private int local;
+
+        RowBatch(UCDParser ucdParser,
+                 double factor,
+                 boolean isStars,
+                 long idBase,
+                 int capacity) {
+            this.ucdParser = ucdParser;
+            this.factor = factor;
+            this.isStars = isStars;
+            this.idBase = idBase;
+            this.hipIndex = hasCol(ColId.hip) ? idx(ColId.hip) : -1;
+            this.magScl = isStars && datasetOptions != null ? datasetOptions.magnitudeScale : 0f;
+            this.tEffUCD = ucdParser.TEFF.isEmpty() ? new UCD("phys.temperature.effective", "teff", "K", -1) : ucdParser.TEFF.first();
+            this.records = new ArrayList<>(capacity);
+        }
+
+        /**
+         * Decodes a row. Rows that can't be decoded are skipped.
+         *
+         * @param row      The row cells.
+         * @param rowIndex The index of the row in the table.
+         */
+        void decode(Object[] row,
+                    long rowIndex) {
+            decode(row, null, 0, rowIndex);
+        }
+
+        /**
+         * Decodes a row of a block. Rows that can't be decoded are skipped.
+         *
+         * @param row      The cells of the row, except the ones in the numeric columns.
+         * @param numeric  The values of the numeric columns of the block, by column index, or null.
+         * @param local    The index of the row in the block.
+         * @param rowIndex The index of the row in the table.
+         */
+        void decode(Object[] row,
+                    double[][] numeric,
+                    int local,
+                    long rowIndex) {
+            rows++;
+            this.numeric = numeric;
+            this.local = local;
+            try {
+                decodeRow(row, rowIndex);
+            } catch (Exception e) {
+                logger.debug(e);
+                logger.debug(I18n.msg("debug.parse.row.skip", rowIndex));
+            }
+        }
+
+        private void decodeRow(Object[] row,
+                               long rowIndex) {
+            // POSITION
+            if (!getDoubleUcd(ucdParser.POS1, row, numeric, local, a) || !getDoubleUcd(ucdParser.POS2, row, numeric, local, b)) {
+                throw new IllegalArgumentException("Missing position");
+            }
+            String unitC;
+            // Check missing pos3 -> Use default parallax
+            if (ucdParser.POS3.isEmpty() || !getDoubleUcd(ucdParser.POS3, row, numeric, local, c) || !Double.isFinite(c.value)) {
+                c.ucd = null;
+                c.value = Constants.DEFAULT_PARALLAX;
+                unitC = "mas";
+                nInvalidParallaxes++;
+            } else {
+                unitC = c.ucd.unit;
+            }
+
+            PositionType pt = ucdParser.getPositionType(a.ucd, b.ucd, c.ucd);
+            // Check negative parallaxes -> Use default for consistency
+            if (pt.isParallax() && c.value <= 0) {
+                c.value = Constants.DEFAULT_PARALLAX;
+                unitC = "mas";
+                nInvalidParallaxes++;
+            }
+
+            Position p = new Position(a.value, a.ucd.unit, b.value, b.ucd.unit, c.value, unitC, pt);
+            p.realPosition.scl(factor);
+
+            double distPc = p.realPosition.len();
+            if ((pt.isParallax() && c.value <= 0) || !Double.isFinite(distPc) || distPc < 0) {
+                // Next
+                return;
+            }
+
+            p.realPosition.scl(Constants.PC_TO_U);
+            // Transform if necessary
+            if (transform != null) {
+                p.realPosition.mul(transform);
+            }
+
+            // Find out RA/DEC/Dist
+            Vector3D sph = new Vector3D();
+            Coordinates.cartesianToSpherical(p.realPosition, sph);
+
+            // PROPER MOTION
+            Vector3D pm;
+            double muAlphaStar = 0, muDelta = 0, radVel = 0;
+            // Only supported if position is equatorial spherical coordinates (ra/dec)
+            if (pt == PositionType.EQ_SPH_DIST || pt == PositionType.EQ_SPH_PLX) {
+                muAlphaStar = getDoubleUcd(ucdParser.PMRA, row, numeric, local, v) ? v.value : 0;
+                muDelta = getDoubleUcd(ucdParser.PMDEC, row, numeric, local, v) ? v.value : 0;
+                radVel = getDoubleUcd(ucdParser.RADVEL, row, numeric, local, v) ? v.value : Float.NaN;
+
+                double radVelValue = Double.isFinite(radVel) ? radVel : 0;
+
+                double raRad = new Angle(a.value, a.ucd.unit).get(AngleUnit.RAD);
+                double decRad = new Angle(b.value, b.ucd.unit).get(AngleUnit.RAD);
+                pm = Coordinates.properMotionsToCartesian(muAlphaStar, muDelta, radVelValue, raRad, decRad, distPc, new Vector3D());
+            } else {
+                pm = new Vector3D(Vector3D.Zero);
+            }
+
+            // MAGNITUDE
+            double appMag;
+            if (!ucdParser.MAG.isEmpty() && getDoubleUcd(ucdParser.MAG, row, numeric, local, v)) {
+                appMag = v.value;
+            } else {
+                // Default magnitude.
+                appMag = Constants.DEFAULT_MAG;
+            }
+            // Scale magnitude if needed.
+            appMag = appMag - magScl;
+
+            // Absolute magnitude to pseudo-size.
+            double absMag = AstroUtils.apparentToAbsoluteMagnitude(distPc, appMag);
+            double sizePc = AstroUtils.absoluteMagnitudeToPseudoSize(absMag);
+
+            // SIZE (DIAMETER, not RADIUS!)
+            if (!ucdParser.SIZE.isEmpty()) {
+                // We have a size in the dataset.
+                if (!isStars) {
+                    // Only particles, star datasets do not have a size.
+                    if (!getDoubleUcd(ucdParser.SIZE, row, numeric, local, v)) {
+                        throw new IllegalArgumentException("Missing size");
+                    }
+                    UCD sizeUcd = v.ucd;
+                    if (sizeUcd.unit != null) {
+                        if (Angle.isAngle(sizeUcd.unit)) {
+                            // Solid angle in radians.
+                            double sa = new Angle(v.value, sizeUcd.unit).get(AngleUnit.RAD);
+                            // Size in parsecs = tan(sa) * distPc
+                            sizePc = FastMath.tan(sa) * distPc;
+                        } else if (Length.isLength(sizeUcd.unit)) {
+                            // Size in parsecs, directly.
+                            sizePc = new Length(v.value, sizeUcd.unit).get(LengthUnit.PC);
+                        }
+                    } else {
+                        // We hope size is already in parsecs.
+                        sizePc = (float) v.value;
+                    }
+                    if (TextUtils.containsOrMatches(UCDParser.RADIUS_NAMES, sizeUcd.colName, true)) {
+                        // Radius, need to multiply by 2 to get diameter.
+                        sizePc *= 2.0;
+                    }
+                }
+            } else {
+                if (!isStars) {
+                    // We have particles without a size. We just clamp what we have.
+                    double maxSizePc = 3.0;
+                    if (params != null && params.containsKey("maxSizePc")) {
+                        var value = params.get("maxSizePc");
+                        if (value instanceof Number n) {
+                            maxSizePc = n.doubleValue();
+                        }
+                    }
+                    sizePc = MathUtilsDouble.clamp(sizePc, 1e-8, maxSizePc);
+                }
+            }
+
+            // COLOR INDEX
+            float colorIndex;
+            if (!ucdParser.COL.isEmpty()) {
+                colorIndex = getDoubleUcd(ucdParser.COL, row, numeric, local, v) ? (float) v.value : (float) Constants.DEFAULT_COLOR;
+            } else {
+                // Default color index for stars, NaN for others.
+                colorIndex = isStars ? (float) Constants.DEFAULT_COLOR : Float.NaN;
+            }
+
+            // VARIABILITY
+            float[] variMags = null;
+            float[] variCols = null;
+            double[] variTimes = null;
+            double pf = 0.0;
+            int nVari = 0;
+            if (ucdParser.hasVariability) {
+                if (!ucdParser.hasPeriod || !getDoubleUcd(ucdParser.PERIOD, row, numeric, local, v) || !Double.isFinite(v.value)) {
+                    // Skip stars without period
+                    noPeriods++;
+                    return;
+                } else {
+                    pf = v.value;
+                }
+                // Magnitudes list
+                Pair<UCD, double[]> variMagsPair = getDoubleArrayUcd(ucdParser.VARI_MAGS, row);
+                assert variMagsPair != null;
+                double[] variMagsDouble = variMagsPair.getSecond();
+                nVari = variMagsDouble != null ? variMagsDouble.length : 0;
+                variMags = new float[nVari];
+
+                // Times list
+                Pair<UCD, double[]> variTimesPair = getDoubleArrayUcd(ucdParser.VARI_TIMES, row);
+                assert variTimesPair != null;
+                variTimes = variTimesPair.getSecond();
+
+                // Colors list (may not be present!)
+                Pair<UCD, double[]> variColorsPair = getDoubleArrayUcd(ucdParser.VARI_COLS, row);
+                var hasVariColors = variColorsPair != null;
+                double[] variColorsDouble = hasVariColors ? variColorsPair.getSecond() : null;
+                variCols = hasVariColors ? new float[nVari] : null;
+
+                double[] auxMags = variMagsDouble;
+                double[] auxTimes = variTimes;
+                double[] auxColors = variColorsDouble;
+
+                // SANITIZE (no NaNs)
+                List<Double> magnitudesList = new ArrayList<>();
+                List<Double> timesList = new ArrayList<>();
+                List<Double> colorsList = hasVariColors ? new ArrayList<>() : null;
+                int n = Math.max(auxMags.length, hasVariColors ? auxColors.length : 0);
+                for (int idx = 0; idx < n; idx++) {
+                    var mag = auxMags != null && auxMags.length > idx ? auxMags[idx] : Double.NaN;
+                    var col = hasVariColors && auxColors.length > idx ? auxColors[idx] : Double.NaN;
+                    if (Double.isFinite(mag) || Double.isFinite(col)) {
+                        magnitudesList.add(Double.isFinite(mag) ? mag - magScl : mag);
+                        timesList.add(auxTimes[idx]);
+                        if (hasVariColors)
+                            colorsList.add(col);
+                    }
+
+                }
+                variMagsDouble = magnitudesList.stream()
+                        .mapToDouble(Double::doubleValue)
+                        .toArray();
+                variTimes = timesList.stream()
+                        .mapToDouble(Double::doubleValue)
+                        .toArray();
+                if (hasVariColors)
+                    variColorsDouble = colorsList.stream()
+                            .mapToDouble(Double::doubleValue)
+                            .toArray();
+                nVari = variTimes.length;
+
+                // FOLD
+                // x:time, y:mag, z:color, can be NaN
+                List<Vector3D> list = new ArrayList<>(nVari);
+                for (int k = 0; k < nVari; k++) {
+                    double phase = ((variTimes[k] - variTimes[0]) % pf);
+                    double mag = variMagsDouble.length > k ? variMagsDouble[k] : Double.NaN;
+                    double col = hasVariColors && variColorsDouble.length > k ? variColorsDouble[k] : Double.NaN;
+                    list.add(new Vector3D(phase, mag, col));
+                }
+                list.sort(Comparator.comparingDouble(o -> o.x));
+
+                for (int k = 0; k < nVari; k++) {
+                    Vector3D point = list.get(k);
+                    variTimes[k] = point.x + variTimes[0];
+                    variMagsDouble[k] = point.y;
+                    if (hasVariColors)
+                        variColorsDouble[k] = point.z;
+                }
+
+                // RESAMPLE (only if too many samples)
+                final int MAX_VARI = VariableSetInstancedRenderer.MAX_VARI;
+                if (nVari > MAX_VARI) {
+                    nVari = MAX_VARI;
+                    double t0 = variTimes[0];
+                    double tn = variTimes[variTimes.length - 1];
+                    double tStep = (tn - t0) / (nVari - 1);
+
+                    var lintMags = new LinearInterpolator(variTimes, variMagsDouble);
+                    var lintColors = hasVariColors ? new LinearInterpolator(variTimes, variColorsDouble) : null;
+
+                    variMagsDouble = new double[nVari];
+                    variTimes = new double[nVari];
+                    variColorsDouble = hasVariColors ? new double[nVari] : null;
+
+                    for (int idx = 0; idx < nVari; idx++) {
+                        double t = t0 + tStep * idx;
+                        variTimes[idx] = t;
+                        variMagsDouble[idx] = lintMags.value(t);
+                        if (hasVariColors)
+                            variColorsDouble[idx] = lintColors.value(t);
+                    }
+                    resampledLightCurves++;
+                }
+
+                // Convert magnitudes to sizes
+                assert variMags.length == variTimes.length;
+                for (int j = 0; j < variMagsDouble.length; j++) {
+                    double variAbsoluteMag = AstroUtils.apparentToAbsoluteMagnitude(distPc, variMagsDouble[j]);
+                    variMags[j] = (float) AstroUtils.absoluteMagnitudeToPseudoSize(variAbsoluteMag);
+                }
+                // Convert B-V colors to packed RGB
+                if (hasVariColors) {
+                    for (int j = 0; j < variColorsDouble.length; j++) {
+                        var bvColor = variColorsDouble[j];
+                        var rgb = ColorUtils.BVtoRGB(bvColor);
+                        variCols[j] = Color.toFloatBits(rgb[0], rgb[1], rgb[2], 1f);
+                    }
+                }
+            }
+
+            // EFFECTIVE TEMPERATURE
+            float tEff;
+            if (!ucdParser.TEFF.isEmpty() && getDoubleUcd(ucdParser.TEFF, row, numeric, local, v)) {
+                // Use value from table.
+                tEff = (float) v.value;
+            } else {
+                // Convert B-V to T_eff using Ballesteros 2012
+                tEff = (float) bvToTEff.bvToTeff(colorIndex);
+            }
+
+            // RGB COLOR (PACKED) from COLOR INDEX or effective temperature.
+            float colorPacked;
+            float[] rgb = null;
+            if (Float.isFinite(colorIndex)) {
+                // Convert color index to RGB.
+                rgb = ColorUtils.BVtoRGB(colorIndex);
+                colorPacked = Color.toFloatBits(rgb[0], rgb[1], rgb[2], 1.0f);
+            } else if (Float.isFinite(tEff)) {
+                rgb = ColorUtils.tEffToRGB_harre(tEff);
+                colorPacked = Color.toFloatBits(rgb[0], rgb[1], rgb[2], 1.0f);
+            } else {
+                colorPacked = Float.NaN;
+            }
+
+            // IDENTIFIER
+            long id;
+            String idString = null;
+            int hip = -1;
+            if (!ucdParser.ID.isEmpty() && getStringUcd(ucdParser.ID, row, v)) {
+                // We have ID
+                try {
+                    id = Parser.parseLongException(v.string);
+                    if (isStars && v.ucd.colName.equalsIgnoreCase("hip")) {
+                        hip = (int) id;
+                    }
+                } catch (NumberFormatException e) {
+                    // ID is not an integer.
+                    id = idBase + rowIndex + 1;
+                    idString = v.string;
+                }
+            } else {
+                // Empty ID
+                id = idBase + rowIndex + 1;
+            }
+            // Add hip numbers if present.
+            if (hip < 0 && hipIndex >= 0) {
+                var hipNum = row[hipIndex];
+                if (hipNum instanceof Integer hn) {
+                    hip = hn;
+                }
+            }
+
+            // NAME(S)
+            String[] names;
+            if (ucdParser.NAME.isEmpty()) {
+                // Name from ID.
+                names = new String[]{idString != null ? idString : Long.toString(id)};
+            } else {
+                // We have a name.
+                namesArray.clear();
+                for (int j = 0; j < ucdParser.NAME.size; j++) {
+                    Object cell = row[ucdParser.NAME.get(j).index];
+                    if (cell == null) {
+                        continue;
+                    }
+                    String[] currNames = cell.toString()
+                            .strip()
+                            .split(Constants.nameSeparatorRegex);
+                    for (String actualName : currNames) {
+                        if (actualName != null && !actualName.isEmpty()
+                                && !TextUtils.contains(forbiddenNameValues, actualName, true)) {
+                            namesArray.add(actualName);
+                        }
+                    }
+                }
+                // Default to ID.
+                names = namesArray.isEmpty() ? new String[]{Long.toString(id)} : namesArray.toArray();
+            }
+
+            // Populate batch lists
+            if (rgb != null) {
+                colors.put(id, rgb);
+            }
+            sphericalPositions.put(id, new double[]{sph.x, sph.y, sph.z});
+
+            if (datasetOptions == null || datasetOptions.type == DatasetOptions.DatasetLoadType.STARS
+                    || datasetOptions.type == DatasetOptions.DatasetLoadType.VARIABLES) {
+
+                // Extra attributes.
+                ObjectMap<UCD, Object> extraAttributes = initExtraAttributes(addExtraAttributes(ucdParser, row));
+                extraAttributes.put(tEffUCD, tEff);
+
+                // Construct record.
+                IParticleRecord pr;
+                if (datasetOptions != null && datasetOptions.type == DatasetLoadType.VARIABLES || variMags != null || variCols != null) {
+                    pr = new ParticleVariable(id, names, p.realPosition.x, p.realPosition.y, p.realPosition.z, (float) muAlphaStar,
+                                              (float) muDelta, (float) radVel, (float) pm.x, (float) pm.y, (float) pm.z,
+                                              (float) appMag, (float) absMag, colorPacked, (float) sizePc, hip, tEff, nVari, pf,
+                                              variMags, variCols, variTimes, extraAttributes);
+                } else {
+                    pr = new ParticleStar(id, names, p.realPosition.x, p.realPosition.y, p.realPosition.z, (float) muAlphaStar,
+                                          (float) muDelta, (float) radVel, (float) pm.x, (float) pm.y, (float) pm.z, (float) appMag,
+                                          (float) absMag, colorPacked, (float) sizePc, hip, tEff, extraAttributes);
+                }
+
+                records.add(pr);
+
+                int appMagClamp = (int) MathUtilsDouble.clamp(appMag, 0, 21);
+                countsPerMag[appMagClamp] += 1;
+            } else if (datasetOptions.type == DatasetOptions.DatasetLoadType.PARTICLES) {
+                // Extra attributes.
+                ObjectMap<UCD, Object> extraAttributes = addExtraAttributes(ucdParser, row);
+                // Record.
+                var pr = new Particle(id, names, (float) p.realPosition.x, (float) p.realPosition.y, (float) p.realPosition.z,
+                                      extraAttributes);
+                records.add(pr);
+            } else if (datasetOptions.type == DatasetOptions.DatasetLoadType.PARTICLES_EXT) {
+                // Extra attributes.
+                ObjectMap<UCD, Object> extraAttributes = addExtraAttributes(ucdParser, row);
+                // Record.
+                var pr = new ParticleExt(id, names, p.realPosition.x, p.realPosition.y, p.realPosition.z, (float) muAlphaStar,
+                                         (float) muDelta, (float) radVel, (float) pm.x, (float) pm.y, (float) pm.z, (float) appMag,
+                                         (float) absMag, colorPacked, (float) (sizePc * Constants.PC_TO_U), extraAttributes);
+                records.add(pr);
+            }
+        }
+    }
+
     protected boolean hasCol(ColId colId) {
         for (var ci : columnInfoList) {
             if (ci.getName()
@@ -860,7 +1261,8 @@ public class STILDataProvider extends AbstractStarGroupDataProvider {
                                                       Object[] row) {
         // Extra
         ObjectMap<UCD, Object> extraAttributes = null;
-        for (UCD extra : ucdParser.extra) {
+        for (int i = 0; i < ucdParser.extra.size; i++) {
+            UCD extra = ucdParser.extra.get(i);
             Object val = row[extra.index];
             if (extraAttributes == null)
                 extraAttributes = new ObjectMap<>((int) (ucdParser.extra.size * 1.25f), 0.8f);
@@ -0,0 +1,439 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.data.group;
+
+import com.badlogic.gdx.utils.ObjectMap;
+import gaiasky.scene.api.IParticleRecord;
+import gaiasky.scene.record.ParticleStar;
+import gaiasky.util.Constants;
+import gaiasky.util.Logger;
+import gaiasky.util.Logger.Log;
+import gaiasky.util.math.Matrix4D;
+import gaiasky.util.ucd.UCD;
+import uk.ac.starlink.table.ColumnInfo;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Binary cache of the star tables loaded by {@link STILDataProvider}. The records are stored in the version 3 format
+ * of {@link BinaryDataProvider}. A sidecar file holds what that format does not have: the HIP numbers, the extra
+ * attributes, the column metadata and the star counts per magnitude.
+ * <p>
+ * Entries are keyed by a fingerprint of the source file (path, size, modification time and its first and last
+ * bytes) and of the loading options. There is one entry per source path, so a modified source or different options
+ * miss the cache and overwrite the entry.
+ */
+final class StarTableCache {
+    private static final Log logger = Logger.getLogger(StarTableCache.class);
+
+    /** Bump when the layout of the cache files changes. **/
+    private static final int VERSION = 1;
+    /** Number of bytes from the start and the end of the source that go into the fingerprint. **/
+    private static final int SAMPLE_BYTES = 64 * 1024;
+
+    // Type tags of the extra attribute values.
+    private static final byte T_NULL = 0;
+    private static final byte T_DOUBLE = 1;
+    private static final byte T_FLOAT = 2;
+    private static final byte T_LONG = 3;
+    private static final byte T_INT = 4;
+    private static final byte T_SHORT = 5;
+    private static final byte T_BYTE = 6;
+    private static final byte T_BOOLEAN = 7;
+    private static final byte T_STRING = 8;
+
+    private final Path bin;
+    private final Path meta;
+    private final byte[] key;
+
+    /**
+     * The contents of a cache entry.
+     *
+     * @param records      The star records.
+     * @param columns      The columns of the source table.
+     * @param countsPerMag The number of stars per magnitude bin.
+     */
+    record Content(List<IParticleRecord> records, List<ColumnInfo> columns, long[] countsPerMag) {
+    }
+
+    private StarTableCache(Path bin, Path meta, byte[] key) {
+        this.bin = bin;
+        this.meta = meta;
+        this.key = key;
+    }
+
+    /**
+     * Creates the cache entry handle for the given source file and loading options. This reads the start and the end
+     * of the source to compute the fingerprint, but does not touch the cache directory.
+     *
+     * @param cacheDir The cache directory.
+     * @param source   The source file.
+     * @param factor   The length factor of the load.
+     * @param transform The transformation applied to the positions, or null.
+     * @param options  The dataset options, or null.
+     *
+     * @return The cache entry handle.
+     *
+     * @throws IOException If the source can't be read.
+     */
+    static StarTableCache open(Path cacheDir,
+                               Path source,
+                               double factor,
+                               Matrix4D transform,
+                               DatasetOptions options) throws IOException {
+        Path path = source.toAbsolutePath().normalize();
+        MessageDigest md = sha256();
+        String name = "stil-" + HexFormat.of().formatHex(md.digest(path.toString().getBytes(StandardCharsets.UTF_8)), 0, 12);
+
+        md.reset();
+        try (DataOutputStream out = new DataOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), md))) {
+            out.writeInt(VERSION);
+            out.writeUTF(path.toString());
+            long size = Files.size(path);
+            out.writeLong(size);
+            out.writeLong(Files.getLastModifiedTime(path).toMillis());
+            try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+                sample(fc, 0, size, out);
+                if (size > SAMPLE_BYTES) {
+                    sample(fc, size - SAMPLE_BYTES, size, out);
+                }
+            }
+            out.writeDouble(factor);
+            out.writeDouble(Constants.DISTANCE_SCALE_FACTOR);
+            out.writeBoolean(transform != null);
+            if (transform != null) {
+                for (double v : transform.val) {
+                    out.writeDouble(v);
+                }
+            }
+            out.writeBoolean(options != null);
+            if (options != null) {
+                out.writeUTF(options.type == null ? "" : options.type.name());
+                out.writeDouble(options.magnitudeScale);
+            }
+        }
+        return new StarTableCache(cacheDir.resolve(name + ".bin"), cacheDir.resolve(name + ".meta"), md.digest());
+    }
+
+    private static void sample(FileChannel fc, long from, long size, OutputStream out) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) Math.min(SAMPLE_BYTES, size - from));
+        while (buf.hasRemaining()) {
+            if (fc.read(buf, from + buf.position()) < 0) {
+                break;
+            }
+        }
+        out.write(buf.array(), 0, buf.position());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Checks whether the given records can be cached. Only plain star records whose extra attributes are numbers,
+     * booleans or strings can.
+     *
+     * @param records The records.
+     *
+     * @return Whether the records can be cached.
+     */
+    static boolean isCacheable(List<IParticleRecord> records) {
+        if (records.isEmpty()) {
+            return false;
+        }
+        for (IParticleRecord record : records) {
+            if (record.getClass() != ParticleStar.class) {
+                return false;
+            }
+            ObjectMap<UCD, Object> extra = record.getExtra();
+            if (extra != null) {
+                for (Object value : new ObjectMap.Values<>(extra)) {
+                    if (tag(value) < 0) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the cache entry.
+     *
+     * @return The contents, or null if the entry does not exist, belongs to a different source or options, or
+     * can't be read.
+     */
+    Content read() {
+        if (!Files.isRegularFile(meta) || !Files.isRegularFile(bin)) {
+            return null;
+        }
+        try (DataInputStream m = new DataInputStream(new BufferedInputStream(Files.newInputStream(meta)));
+             DataInputStream b = new DataInputStream(new BufferedInputStream(Files.newInputStream(bin), 1 << 16))) {
+            if (m.readInt() != VERSION) {
+                return null;
+            }
+            byte[] k = new byte[m.readInt()];
+            m.readFully(k);
+            if (!Arrays.equals(k, key)) {
+                return null;
+            }
+            int n = m.readInt();
+            long[] countsPerMag = new long[m.readInt()];
+            for (int i = 0; i < countsPerMag.length; i++) {
+                countsPerMag[i] = m.readLong();
+            }
+            int nColumns = m.readInt();
+            List<ColumnInfo> columns = new ArrayList<>(nColumns);
+            for (int i = 0; i < nColumns; i++) {
+                String name = readString(m);
+                Class<?> type = Class.forName(m.readUTF(), false, StarTableCache.class.getClassLoader());
+                ColumnInfo ci = new ColumnInfo(name, type, readString(m));
+                ci.setUnitString(readString(m));
+                ci.setUCD(readString(m));
+                columns.add(ci);
+            }
+            UCD[] ucds = new UCD[m.readInt()];
+            for (int i = 0; i < ucds.length; i++) {
+                ucds[i] = new UCD(readString(m), readString(m), readString(m), m.readInt());
+            }
+
+            // Header of the binary format.
+            if (b.readInt() != -1 || b.readInt() != 3 || b.readInt() != n) {
+                return null;
+            }
+            List<IParticleRecord> records = new ArrayList<>(n);
+            char[] chars = new char[64];
+            for (int i = 0; i < n; i++) {
+                double x = b.readDouble();
+                double y = b.readDouble();
+                double z = b.readDouble();
+                float vx = b.readFloat();
+                float vy = b.readFloat();
+                float vz = b.readFloat();
+                float muAlpha = b.readFloat();
+                float muDelta = b.readFloat();
+                float radVel = b.readFloat();
+                float appMag = b.readFloat();
+                float absMag = b.readFloat();
+                float color = b.readFloat();
+                float size = b.readFloat();
+                float tEff = b.readFloat();
+                long id = b.readLong();
+                int nameLength = b.readInt();
+                String[] names;
+                if (nameLength == 0) {
+                    names = new String[]{Long.toString(id)};
+                } else {
+                    if (chars.length < nameLength) {
+                        chars = new char[nameLength];
+                    }
+                    for (int j = 0; j < nameLength; j++) {
+                        chars[j] = b.readChar();
+                    }
+                    names = new String(chars, 0, nameLength).split(Constants.nameSeparatorRegex);
+                }
+
+                int hip = m.readInt();
+                ObjectMap<UCD, Object> extra = null;
+                int nExtra = m.readInt();
+                if (nExtra >= 0) {
+                    extra = new ObjectMap<>((int) (nExtra * 1.25f) + 1, 0.8f);
+                    for (int j = 0; j < nExtra; j++) {
+                        extra.put(ucds[m.readInt()], readValue(m));
+                    }
+                }
+                records.add(new ParticleStar(id, names, x, y, z, muAlpha, muDelta, radVel, vx, vy, vz, appMag, absMag, color, size, hip,
+                                             tEff, extra));
+            }
+            return new Content(records, columns, countsPerMag);
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            logger.warn("Could not read cache file " + meta + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the cache entry in a background thread. Nothing is written if the records can't be cached.
+     *
+     * @param records      The star records.
+     * @param columns      The columns of the source table.
+     * @param countsPerMag The number of stars per magnitude bin.
+     */
+    void writeAsync(List<IParticleRecord> records, List<ColumnInfo> columns, long[] countsPerMag) {
+        if (!isCacheable(records)) {
+            return;
+        }
+        final List<IParticleRecord> recordsCopy = new ArrayList<>(records);
+        final List<ColumnInfo> columnsCopy = new ArrayList<>(columns);
+        final long[] countsCopy = countsPerMag.clone();
+        Thread t = new Thread(() -> {
+            try {
+                write(recordsCopy, columnsCopy, countsCopy);
+            } catch (IOException e) {
+                logger.warn("Could not write cache file " + bin + ": " + e);
+            }
+        }, "gaiasky-stil-cache");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Writes the cache entry. The files are written to temporary files first, and then moved into place. The
+     * sidecar goes last, so that readers never see a key next to an incomplete record file.
+     */
+    void write(List<IParticleRecord> records, List<ColumnInfo> columns, long[] countsPerMag) throws IOException {
+        Path dir = bin.getParent();
+        Files.createDirectories(dir);
+        Path binTmp = Files.createTempFile(dir, bin.getFileName().toString(), ".tmp");
+        Path metaTmp = Files.createTempFile(dir, meta.getFileName().toString(), ".tmp");
+        try {
+            new BinaryDataProvider().writeData(records, new BufferedOutputStream(Files.newOutputStream(binTmp), 1 << 16), 3);
+
+            try (DataOutputStream m = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(metaTmp)))) {
+                m.writeInt(VERSION);
+                m.writeInt(key.length);
+                m.write(key);
+                m.writeInt(records.size());
+                m.writeInt(countsPerMag.length);
+                for (long c : countsPerMag) {
+                    m.writeLong(c);
+                }
+                m.writeInt(columns.size());
+                for (ColumnInfo ci : columns) {
+                    writeString(m, ci.getName());
+                    m.writeUTF(ci.getContentClass().getName());
+                    writeString(m, ci.getDescription());
+                    writeString(m, ci.getUnitString());
+                    writeString(m, ci.getUCD());
+                }
+                // The keys of the extra attributes, shared by all records. The maps may be in use by the scene
+                // already, so we iterate them with our own iterators.
+                Map<UCD, Integer> ucdIndex = new IdentityHashMap<>();
+                List<UCD> ucds = new ArrayList<>();
+                for (IParticleRecord record : records) {
+                    ObjectMap<UCD, Object> extra = record.getExtra();
+                    if (extra != null) {
+                        for (UCD ucd : new ObjectMap.Keys<>(extra)) {
+                            if (!ucdIndex.containsKey(ucd)) {
+                                ucdIndex.put(ucd, ucds.size());
+                                ucds.add(ucd);
+                            }
+                        }
+                    }
+                }
+                m.writeInt(ucds.size());
+                for (UCD ucd : ucds) {
+                    writeString(m, ucd.originalUCD);
+                    writeString(m, ucd.colName);
+                    writeString(m, ucd.unit);
+                    m.writeInt(ucd.index);
+                }
+                for (IParticleRecord record : records) {
+                    m.writeInt(record.hip());
+                    ObjectMap<UCD, Object> extra = record.getExtra();
+                    if (extra == null) {
+                        m.writeInt(-1);
+                    } else {
+                        m.writeInt(extra.size);
+                        for (ObjectMap.Entry<UCD, Object> e : new ObjectMap.Entries<>(extra)) {
+                            m.writeInt(ucdIndex.get(e.key));
+                            writeValue(m, e.value);
+                        }
+                    }
+                }
+            }
+            Files.move(binTmp, bin, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(metaTmp, meta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Cached " + records.size() + " stars in " + bin);
+        } finally {
+            Files.deleteIfExists(binTmp);
+            Files.deleteIfExists(metaTmp);
+        }
+    }
+
+    private static byte tag(Object value) {
+        if (value == null) {
+            return T_NULL;
+        } else if (value instanceof Double) {
+            return T_DOUBLE;
+        } else if (value instanceof Float) {
+            return T_FLOAT;
+        } else if (value instanceof Long) {
+            return T_LONG;
+        } else if (value instanceof Integer) {
+            return T_INT;
+        } else if (value instanceof Short) {
+            return T_SHORT;
+        } else if (value instanceof Byte) {
+            return T_BYTE;
+        } else if (value instanceof Boolean) {
+            return T_BOOLEAN;
+        } else if (value instanceof String) {
+            return T_STRING;
+        }
+        return -1;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        byte tag = tag(value);
+        out.writeByte(tag);
+        switch (tag) {
+            case T_DOUBLE -> out.writeDouble((Double) value);
+            case T_FLOAT -> out.writeFloat((Float) value);
+            case T_LONG -> out.writeLong((Long) value);
+            case T_INT -> out.writeInt((Integer) value);
+            case T_SHORT -> out.writeShort((Short) value);
+            case T_BYTE -> out.writeByte((Byte) value);
+            case T_BOOLEAN -> out.writeBoolean((Boolean) value);
+            case T_STRING -> out.writeUTF((String) value);
+            default -> {
+            }
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        return switch (in.readByte()) {
+            case T_DOUBLE -> in.readDouble();
+            case T_FLOAT -> in.readFloat();
+            case T_LONG -> in.readLong();
+            case T_INT -> in.readInt();
+            case T_SHORT -> in.readShort();
+            case T_BYTE -> in.readByte();
+            case T_BOOLEAN -> in.readBoolean();
+            case T_STRING -> in.readUTF();
+            case T_NULL -> null;
+            default -> throw new IOException("Unknown value type");
+        };
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.data.group;
+
+import gaiasky.GaiaSky;
+import gaiasky.data.api.IParticleGroupDataProvider;
+import gaiasky.scene.api.IParticleRecord;
+import gaiasky.scene.record.ParticleTLE;
+import gaiasky.util.Logger;
+import gaiasky.util.Logger.Log;
+import gaiasky.util.coord.SGP4Propagator;
+import gaiasky.util.coord.TLECatalog;
+import gaiasky.util.i18n.I18n;
+import gaiasky.util.math.Matrix4D;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Data provider for catalogs of two-line element sets, like the ones distributed by CelesTrak. The whole file is
+ * parsed into a {@link TLECatalog}, and each object becomes a {@link ParticleTLE} record backed by a shared
+ * {@link SGP4Propagator}, which the particle set updater propagates in batches as the simulation time changes.
+ * <p>
+ * Positions are geocentric, so the particle set should be a child of the Earth.
+ */
+public class TLEDataProvider implements IParticleGroupDataProvider {
+    private static final Log logger = Logger.getLogger(TLEDataProvider.class);
+
+    private SGP4Propagator propagator;
+
+    public List<IParticleRecord> loadData(String file,
+                                          Runnable preCallback,
+                                          BiConsumer<Long, Long> updateCallback,
+                                          Runnable postCallback) {
+        return loadData(file, 1d, preCallback, updateCallback, postCallback);
+    }
+
+    public List<IParticleRecord> loadData(String file,
+                                          double factor,
+                                          Runnable preCallback,
+                                          BiConsumer<Long, Long> updateCallback,
+                                          Runnable postCallback) {
+        InputStream is = GaiaSky.settings().data.dataFileHandle(file).read();
+        List<IParticleRecord> pointData = loadData(is, factor, preCallback, updateCallback, postCallback);
+
+        if (pointData != null)
+            logger.info(I18n.msg("notif.nodeloader", pointData.size(), file));
+
+        return pointData;
+    }
+
+    @Override
+    public List<IParticleRecord> loadData(InputStream is,
+                                          double factor,
+                                          Runnable preCallback,
+                                          BiConsumer<Long, Long> updateCallback,
+                                          Runnable postCallback) {
+        if (preCallback != null)
+            preCallback.run();
+
+        try (is) {
+            List<String> lines = new ArrayList<>();
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.ISO_8859_1))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    lines.add(line);
+                }
+            }
+
+            TLECatalog catalog = TLECatalog.parse(lines);
+            propagator = new SGP4Propagator(catalog);
+
+            // Initial positions at the most recent epoch. The updater moves them to the current time.
+            double jd = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < catalog.size; i++) {
+                jd = Math.max(jd, catalog.epochJD[i]);
+            }
+            int errors = propagator.propagateAll(jd, GaiaSky.instance.getExecutorService().getExecutor().getComputePool());
+            if (errors > 0) {
+                logger.warn(errors + " objects could not be propagated to the epoch " + jd);
+            }
+
+            List<IParticleRecord> pointData = new ArrayList<>(catalog.size);
+            for (int i = 0; i < catalog.size; i++) {
+                pointData.add(new ParticleTLE(catalog.catalogNumbers[i], new String[]{catalog.names[i]}, propagator, i, null));
+                if (updateCallback != null) {
+                    updateCallback.accept(i + 1L, (long) catalog.size);
+                }
+            }
+            return pointData;
+        } catch (IOException e) {
+            logger.error(e);
+            return null;
+        } finally {
+            if (postCallback != null)
+                postCallback.run();
+        }
+    }
+
+    /**
+     * Gets the propagator of the last loaded catalog.
+     *
+     * @return The propagator, or null if nothing has been loaded.
+     */
+    public SGP4Propagator getPropagator() {
+        return propagator;
+    }
+
+    public void setFileNumberCap(int cap) {
+    }
+
+    @Override
+    public void setStarNumberCap(int cap) {
+    }
+
+    @Override
+    public void setProviderParams(Map<String, Object> params) {
+    }
+
+    @Override
+    public void setTransformMatrix(Matrix4D matrix) {
+        if (matrix != null) {
+            logger.warn("Transform matrices are not supported for TLE catalogs, ignoring it");
+        }
+    }
+
+    @Override
+    public List<IParticleRecord> loadDataMapped(String file,
+                                                double factor,
+                                                Runnable preCallback,
+                                                BiConsumer<Long, Long> updateCallback,
+                                                Runnable postCallback) {
+        logger.warn("loadDataMapped(file, factor, pre, update, post): This method should not be used!");
+        return null;
+    }
+
+    @Override
+    public boolean isUniformEpoch() {
+        // All objects are propagated to the same time.
+        return true;
+    }
+}
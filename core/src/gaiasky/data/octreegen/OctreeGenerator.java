@@ -0,0 +1,1268 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.data.octreegen;
+
+import gaiasky.data.OctreeLoader;
+import gaiasky.data.api.BinaryIO;
+import gaiasky.data.group.BinaryDataProvider;
+import gaiasky.data.group.MetadataBinaryIO;
+import gaiasky.data.group.STILDataProvider;
+import gaiasky.scene.api.IParticleRecord;
+import gaiasky.util.Logger;
+import gaiasky.util.Logger.Log;
+import gaiasky.util.NameIndex;
+import gaiasky.util.tree.OctreeNode;
+import org.kamranzafar.jtar.TarEntry;
+import org.kamranzafar.jtar.TarOutputStream;
+import uk.ac.starlink.util.FileDataSource;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Builds level-of-detail octree datasets (a metadata file plus one <code>particles_*.bin</code> page per node, as read
+ * by {@link gaiasky.data.OctreeLoader}) from star catalogs of arbitrary size, with bounded memory.
+ * <p>
+ * Each node holds the brightest stars of its octant that are not already in one of its ancestors, and nodes with
+ * more than {@link #setMaxPart(int)} stars are split. The generator works in the following passes:
+ * <ol>
+ *     <li>The input files are read in parallel with {@link BinaryDataProvider} (<code>.bin</code>) or
+ *     {@link STILDataProvider} (anything else), and their records are spilled to temporary chunks.</li>
+ *     <li>The chunks are sorted in parallel by Morton code, and then merged into a single sorted stream. The merge
+ *     also counts the stars per octant, which determines the octants that are too large to be built in memory.</li>
+ *     <li>The stream is partitioned into the largest octants that fit in memory. The nodes above them are filled with
+ *     the brightest candidates of each partition, which are spilled to disk and streamed once per upper node, and the
+ *     partitions are then built in parallel.</li>
+ * </ol>
+ * Finally, the names of all the stars are indexed in <code>names.bin</code>, next to the metadata, so that they can be
+ * found in octants that are not loaded. The output can optionally be packed into a <code>tar.gz</code> archive next
+ * to the output directory.
+ */
+public class OctreeGenerator {
+    private static final Log logger = Logger.getLogger(OctreeGenerator.class);
+
+    /** Maximum depth of the octree. Morton codes use this many bits per axis. **/
+    public static final int MAX_DEPTH = 20;
+    /** Record format version of the particle pages. **/
+    private static final int OUTPUT_VERSION = 3;
+    /** Maximum number of sorted runs merged at once. **/
+    private static final int MERGE_FAN_IN = 128;
+    private static final int IO_BUFFER = 1 << 16;
+    /** Size of a candidate record on disk. **/
+    private static final int CANDIDATE_SIZE = Long.BYTES + Integer.BYTES;
+
+    private final List<Path> inputs;
+    private final Path outDir;
+    private final BinaryIO recordIO = new BinaryDataProvider().getBinaryIO(OUTPUT_VERSION);
+
+    private int maxPart = 100_000;
+    private int maxInMemory = 2_000_000;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean archive = false;
+    private Path tempDir;
+
+    private final AtomicLong nextPageId = new AtomicLong();
+    private final AtomicInteger nextTemp = new AtomicInteger();
+    private double[] bounds;
+    private double[] rootMin;
+    private double rootSize;
+
+    /**
+     * Creates a new generator.
+     *
+     * @param inputs The input catalog files.
+     * @param outDir The output directory. The metadata is written to <code>metadata.bin</code>, and the particle
+     *               pages to the <code>particles</code> subdirectory.
+     */
+    public OctreeGenerator(List<Path> inputs, Path outDir) {
+        this.inputs = inputs;
+        this.outDir = outDir;
+    }
+
+    /**
+     * @param maxPart Maximum number of stars per node.
+     */
+    public void setMaxPart(int maxPart) {
+        this.maxPart = Math.max(1, maxPart);
+    }
+
+    /**
+     * @param maxInMemory Maximum number of records per sorted run and per partition built in memory. Peak memory
+     *                    usage is roughly this times the number of threads times the record size.
+     */
+    public void setMaxInMemory(int maxInMemory) {
+        this.maxInMemory = Math.max(1, maxInMemory);
+    }
+
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * @param archive Whether to pack the output into a <code>tar.gz</code> archive.
+     */
+    public void setArchive(boolean archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * @param tempDir Directory for the temporary files. Defaults to the output directory.
+     */
+    public void setTempDir(Path tempDir) {
+        this.tempDir = tempDir;
+    }
+
+    /**
+     * Runs the generator.
+     *
+     * @return The result.
+     *
+     * @throws IOException If reading the input or writing the output fails.
+     */
+    public Result run() throws IOException {
+        final int budget = Math.max(maxInMemory, maxPart);
+        final long start = System.nanoTime();
+        final Path particlesDir = outDir.resolve("particles");
+        Files.createDirectories(particlesDir);
+        cleanParticles(particlesDir);
+        final Path tmp = Files.createTempDirectory(tempDir != null ? tempDir : outDir, "octreegen");
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "octreegen-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            nextPageId.set(0);
+            // Pass 1: read and spill.
+            long t0 = System.nanoTime();
+            List<Run> spills = spill(pool, tmp, budget);
+            long rows = spills.stream().mapToLong(Run::count).sum();
+            if (rows == 0) {
+                throw new IOException("No valid records found in the input files");
+            }
+            computeRoot();
+            logRate("Read", rows, t0);
+
+            // Pass 2: sort and merge, counting the stars per octant.
+            t0 = System.nanoTime();
+            List<Run> runs = invokeAll(pool, spills.stream().map(s -> (Callable<Run>) () -> sortRun(s, tmp)).toList());
+            OctantCounter counter = new OctantCounter(budget);
+            Run merged = merge(pool, runs, tmp, counter);
+            logRate("Sorted", rows, t0);
+
+            // Pass 3: partition, select the upper nodes and build the partitions.
+            t0 = System.nanoTime();
+            Map<Long, Long> large = counter.large;
+            Path candidates = tmp.resolve("candidates");
+            List<Partition> partitions = partition(merged, large, candidates);
+            List<Node> upper = new ArrayList<>();
+            Node root = large.containsKey(key(0, 0L)) ?
+                    selectUpper(candidates, partitions, large, upper, new ArrayList<>(), 0, 0L, 0, partitions.size()) :
+                    null;
+            Files.deleteIfExists(candidates);
+            Map<Long, Node> partitionRoots = build(pool, merged, partitions, new Picks(upper), upper, particlesDir);
+            for (Node u : upper) {
+                for (int i = 0; i < 8; i++) {
+                    if (u.children[i] == null) {
+                        u.children[i] = partitionRoots.get(key(u.depth + 1, (u.prefix << 3) | i));
+                    }
+                }
+            }
+            if (root == null) {
+                root = partitionRoots.get(key(0, 0L));
+            }
+            logRate("Built", rows, t0);
+
+            // Metadata.
+            OctreeNode octreeRoot = toOctreeNode(root, null);
+            try (var out = new BufferedOutputStream(Files.newOutputStream(outDir.resolve("metadata.bin")), IO_BUFFER)) {
+                new MetadataBinaryIO().writeMetadata(octreeRoot, out);
+            }
+            // Name index of the whole dataset, so that objects can be found in octants that are not loaded.
+            t0 = System.nanoTime();
+            writeNames(octreeRoot, particlesDir);
+            logRate("Indexed", rows, t0);
+
+            long nodes = octreeRoot.numNodesRec();
+            int depth = octreeRoot.getMaxDepth() - 1;
+
+            Path packed = archive ? pack() : null;
+            double seconds = (System.nanoTime() - start) * 1e-9;
+            Result result = new Result(rows, nodes, depth, seconds, packed);
+            logger.info(String.format("Octree generated: %d rows, %d nodes, depth %d, in %.1f s (%.0f rows/s)", rows, nodes, depth,
+                                      seconds, result.rowsPerSecond()));
+            return result;
+        } finally {
+            pool.shutdownNow();
+            deleteRecursive(tmp);
+        }
+    }
+
+    /*
+     * PASS 1: read the input files in parallel, and spill the records to temporary chunks of at most 'budget' records.
+     * Spill record: x, y, z (double), magnitude (float), payload length (int), payload.
+     * The payload is the record in the output format, so it is serialized only once.
+     */
+
+    private List<Run> spill(ExecutorService pool, Path tmp, int budget) throws IOException {
+        bounds = new double[] { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+        List<List<Run>> perFile = invokeAll(pool, inputs.stream().map(in -> (Callable<List<Run>>) () -> spillFile(in, tmp, budget)).toList());
+        List<Run> spills = new ArrayList<>();
+        perFile.forEach(spills::addAll);
+        return spills;
+    }
+
+    private List<Run> spillFile(Path input, Path tmp, int budget) throws IOException {
+        List<IParticleRecord> records = load(input);
+        if (records == null) {
+            throw new IOException("Could not read input file: " + input);
+        }
+        List<Run> spills = new ArrayList<>();
+        double[] local = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream payload = new DataOutputStream(bytes);
+        DataOutputStream out = null;
+        Path current = null;
+        long count = 0, skipped = 0;
+        try {
+            for (IParticleRecord r : records) {
+                double x = r.x(), y = r.y(), z = r.z();
+                if (!Double.isFinite(x) || !Double.isFinite(y) || !Double.isFinite(z)) {
+                    skipped++;
+                    continue;
+                }
+                if (out == null || count == budget) {
+                    if (out != null) {
+                        out.close();
+                        spills.add(new Run(current, count));
+                    }
+                    current = tmp.resolve("spill-" + nextTemp.getAndIncrement());
+                    out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(current), IO_BUFFER));
+                    count = 0;
+                }
+                bytes.reset();
+                recordIO.writeParticleRecord(r, payload);
+                out.writeDouble(x);
+                out.writeDouble(y);
+                out.writeDouble(z);
+                out.writeFloat(r.appMag());
+                out.writeInt(bytes.size());
+                bytes.writeTo(out);
+                count++;
+
+                local[0] = Math.min(local[0], x);
+                local[1] = Math.min(local[1], y);
+                local[2] = Math.min(local[2], z);
+                local[3] = Math.max(local[3], x);
+                local[4] = Math.max(local[4], y);
+                local[5] = Math.max(local[5], z);
+            }
+        } finally {
+            if (out != null) {
+                out.close();
+                spills.add(new Run(current, count));
+            }
+        }
+        if (skipped > 0) {
+            logger.warn(skipped + " records with invalid positions skipped in " + input.getFileName());
+        }
+        synchronized (this) {
+            for (int i = 0; i < 3; i++) {
+                bounds[i] = Math.min(bounds[i], local[i]);
+                bounds[i + 3] = Math.max(bounds[i + 3], local[i + 3]);
+            }
+        }
+        logger.info("Spilled " + (records.size() - skipped) + " records from " + input.getFileName());
+        return spills;
+    }
+
+    private List<IParticleRecord> load(Path input) throws IOException {
+        if (input.getFileName().toString().endsWith(".bin")) {
+            try (var in = new BufferedInputStream(Files.newInputStream(input), IO_BUFFER)) {
+                return new BinaryDataProvider().readData(in, 1.0);
+            }
+        } else {
+            // Files are already read in parallel, and inputs are read only once.
+            STILDataProvider provider = new STILDataProvider();
+            provider.setNumThreads(1);
+            provider.setCacheEnabled(false);
+            return provider.loadData(new FileDataSource(input.toFile()), 1.0, null, null, null);
+        }
+    }
+
+    /**
+     * Computes the root cube, centred on the bounding box of the data.
+     */
+    private void computeRoot() {
+        double size = 0;
+        for (int i = 0; i < 3; i++) {
+            size = Math.max(size, bounds[i + 3] - bounds[i]);
+        }
+        // Pad slightly, so that the maximum lies strictly inside the root.
+        rootSize = size > 0 ? size * (1 + 1e-9) : 1.0;
+        rootMin = new double[3];
+        for (int i = 0; i < 3; i++) {
+            rootMin[i] = (bounds[i] + bounds[i + 3]) / 2.0 - rootSize / 2.0;
+        }
+    }
+
+    /*
+     * PASS 2: sort the chunks by Morton code, and merge them.
+     * Run record: Morton code (long), magnitude (float), payload length (int), payload.
+     */
+
+    private Run sortRun(Run spill, Path tmp) throws IOException {
+        RecordBuffer buffer = new RecordBuffer((int) spill.count);
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(spill.path), IO_BUFFER))) {
+            for (long i = 0; i < spill.count; i++) {
+                long morton = morton(in.readDouble(), in.readDouble(), in.readDouble());
+                float mag = in.readFloat();
+                buffer.add(morton, mag, in, in.readInt());
+            }
+        }
+        Files.delete(spill.path);
+
+        int[] order = identity(buffer.size);
+        sortIndices(buffer.morton, order, 0, order.length);
+
+        Path path = tmp.resolve("run-" + nextTemp.getAndIncrement());
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), IO_BUFFER))) {
+            for (int i : order) {
+                buffer.write(i, out);
+            }
+        }
+        return new Run(path, spill.count);
+    }
+
+    private Run merge(ExecutorService pool, List<Run> runs, Path tmp, OctantCounter counter) throws IOException {
+        while (runs.size() > MERGE_FAN_IN) {
+            List<Callable<Run>> tasks = new ArrayList<>();
+            for (int i = 0; i < runs.size(); i += MERGE_FAN_IN) {
+                List<Run> group = runs.subList(i, Math.min(runs.size(), i + MERGE_FAN_IN));
+                tasks.add(() -> mergeGroup(group, tmp, null));
+            }
+            runs = invokeAll(pool, tasks);
+        }
+        return mergeGroup(runs, tmp, counter);
+    }
+
+    private Run mergeGroup(List<Run> group, Path tmp, OctantCounter counter) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(group.size(),
+                                                             Comparator.comparingLong((RunReader r) -> r.morton).thenComparingInt(r -> r.order));
+        Path path = tmp.resolve("run-" + nextTemp.getAndIncrement());
+        long count = 0;
+        List<RunReader> readers = new ArrayList<>(group.size());
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), IO_BUFFER))) {
+            for (Run run : group) {
+                RunReader reader = new RunReader(run, readers.size());
+                readers.add(reader);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+            RunReader r;
+            while ((r = queue.poll()) != null) {
+                r.write(out);
+                if (counter != null) {
+                    counter.accept(r.morton);
+                }
+                count++;
+                if (r.next()) {
+                    queue.add(r);
+                }
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+        if (counter != null) {
+            counter.finish();
+        }
+        for (Run run : group) {
+            Files.delete(run.path);
+        }
+        return new Run(path, count);
+    }
+
+    /*
+     * PASS 3: partition the merged stream, fill the upper nodes, and build the partitions.
+     */
+
+    /**
+     * Splits the sorted stream into partitions, the shallowest octants that are not too large to be built in
+     * memory. For each partition, it keeps the brightest stars that may end up in any of its ancestors. A star
+     * goes to an ancestor at depth d only if all the brighter stars of its partition went to ancestors at depth
+     * at most d, so the brightest <code>maxPart * depth</code> stars of each partition are enough. Only the
+     * candidates of the current partition are in memory, the rest are written to the given file in stream order.
+     * Candidate record: sequence number (long), magnitude key (int).
+     */
+    private List<Partition> partition(Run merged, Map<Long, Long> large, Path candidates) throws IOException {
+        List<Partition> partitions = new ArrayList<>();
+        Brightest brightest = new Brightest();
+        try (RunReader r = new RunReader(merged, 0);
+             var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(candidates), IO_BUFFER))) {
+            Partition current = null;
+            long seq = 0, written = 0;
+            while (r.next()) {
+                long m = r.morton;
+                if (current == null || prefix(m, current.depth) != current.prefix) {
+                    if (current != null) {
+                        written += writeCandidates(current, brightest, written, out);
+                    }
+                    int depth = 0;
+                    while (depth < MAX_DEPTH && large.containsKey(key(depth, prefix(m, depth)))) {
+                        depth++;
+                    }
+                    current = new Partition(depth, prefix(m, depth), seq);
+                    brightest.reset((int) Math.min((long) maxPart * depth, Integer.MAX_VALUE - 8));
+                    partitions.add(current);
+                }
+                current.count++;
+                brightest.offer(magKey(r.mag), seq);
+                seq++;
+            }
+            if (current != null) {
+                writeCandidates(current, brightest, written, out);
+            }
+        }
+        int tooLarge = 0;
+        for (Partition p : partitions) {
+            if (p.count > Math.max(maxInMemory, maxPart)) {
+                tooLarge++;
+            }
+        }
+        if (tooLarge > 0) {
+            logger.warn(tooLarge + " partitions exceed the memory budget because their stars can't be separated at depth " + MAX_DEPTH);
+        }
+        return partitions;
+    }
+
+    private static int writeCandidates(Partition p, Brightest b, long start, DataOutputStream out) throws IOException {
+        p.candidateStart = start;
+        p.candidateCount = b.size;
+        for (int i : b.bySeq()) {
+            out.writeLong(b.seq[i]);
+            out.writeInt(b.mag[i]);
+        }
+        return b.size;
+    }
+
+    /**
+     * Fills the node at the given depth and prefix, which is too large to be built in memory, with the brightest
+     * candidates of the partitions in [lo, hi) that have not been taken by an ancestor, and recurses into the
+     * children that are also too large. The candidates are streamed from disk, and only the ones taken are kept.
+     */
+    private Node selectUpper(Path candidates,
+                             List<Partition> partitions,
+                             Map<Long, Long> large,
+                             List<Node> upper,
+                             List<Node> ancestors,
+                             int depth,
+                             long prefix,
+                             int lo,
+                             int hi) throws IOException {
+        Node node = new Node(nextPageId.getAndIncrement(), depth, prefix);
+        upper.add(node);
+
+        Brightest brightest = new Brightest();
+        brightest.reset(maxPart);
+        long first = partitions.get(lo).candidateStart;
+        long last = partitions.get(hi - 1).candidateStart + partitions.get(hi - 1).candidateCount;
+        long taken = 0;
+        try (var ch = FileChannel.open(candidates, StandardOpenOption.READ)) {
+            ch.position(first * CANDIDATE_SIZE);
+            var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(ch), IO_BUFFER));
+            for (long i = first; i < last; i++) {
+                long seq = in.readLong();
+                int mag = in.readInt();
+                if (takenBy(ancestors, seq)) {
+                    taken++;
+                } else {
+                    brightest.offer(mag, seq);
+                }
+            }
+        }
+        // Stars taken by the ancestors are not in this subtree.
+        node.numObjectsRec = large.get(key(depth, prefix)) - taken;
+        node.picks = Arrays.copyOf(brightest.seq, brightest.size);
+        Arrays.sort(node.picks);
+        node.numObjects = node.picks.length;
+
+        if (depth + 1 < MAX_DEPTH) {
+            ancestors.add(node);
+            for (int i = 0; i < 8; i++) {
+                long childPrefix = (prefix << 3) | i;
+                if (large.containsKey(key(depth + 1, childPrefix))) {
+                    int clo = lowerBound(partitions, childPrefix << shift(depth + 1), lo, hi);
+                    int chi = lowerBound(partitions, (childPrefix + 1) << shift(depth + 1), clo, hi);
+                    node.children[i] = selectUpper(candidates, partitions, large, upper, ancestors, depth + 1, childPrefix, clo, chi);
+                }
+            }
+            ancestors.remove(ancestors.size() - 1);
+        }
+        return node;
+    }
+
+    private static boolean takenBy(List<Node> nodes, long seq) {
+        for (Node n : nodes) {
+            if (Arrays.binarySearch(n.picks, seq) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** First partition in [lo, hi) that starts at a Morton code not lower than the given one. **/
+    private static int lowerBound(List<Partition> partitions, long code, int lo, int hi) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            Partition p = partitions.get(mid);
+            if (p.prefix << shift(p.depth) < code) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Streams the merged run once more. Stars taken by the upper nodes are written to their pages directly, and the
+     * rest are collected per partition and built in parallel.
+     *
+     * @return The root nodes of the partitions, by key.
+     */
+    private Map<Long, Node> build(ExecutorService pool,
+                                  Run merged,
+                                  List<Partition> partitions,
+                                  Picks picks,
+                                  List<Node> upper,
+                                  Path particlesDir) throws IOException {
+        Map<Long, Node> roots = new ConcurrentHashMap<>();
+        List<Future<?>> futures = new ArrayList<>();
+        // Bound the number of partitions in memory.
+        Semaphore permits = new Semaphore(threads + 1);
+        DataOutputStream[] upperOut = new DataOutputStream[upper.size()];
+        int[] upperWritten = new int[upper.size()];
+
+        try (RunReader r = new RunReader(merged, 0)) {
+            int ci = 0;
+            int pi = 0;
+            Partition p = partitions.get(pi);
+            RecordBuffer buffer = null;
+            for (long seq = 0; r.next(); seq++) {
+                if (ci < picks.seq.length && picks.seq[ci] == seq) {
+                    // Upper node.
+                    int u = picks.owner[ci];
+                    if (upperOut[u] == null) {
+                        upperOut[u] = openPage(particlesDir, upper.get(u).pageId, upper.get(u).numObjects);
+                    }
+                    upperOut[u].write(r.payload, 0, r.length);
+                    if (++upperWritten[u] == upper.get(u).numObjects) {
+                        upperOut[u].close();
+                        upperOut[u] = null;
+                    }
+                    ci++;
+                } else {
+                    if (buffer == null) {
+                        permits.acquire();
+                        buffer = new RecordBuffer((int) Math.min(p.count, Math.max(maxInMemory, maxPart)));
+                    }
+                    buffer.add(r.morton, r.mag, r.payload, r.length);
+                }
+
+                if (seq == p.start + p.count - 1) {
+                    if (buffer != null) {
+                        final RecordBuffer b = buffer;
+                        final Partition part = p;
+                        futures.add(pool.submit(() -> {
+                            try {
+                                roots.put(key(part.depth, part.prefix), buildPartition(b, part, particlesDir));
+                            } finally {
+                                permits.release();
+                            }
+                            return null;
+                        }));
+                        buffer = null;
+                    }
+                    if (++pi < partitions.size()) {
+                        p = partitions.get(pi);
+                    }
+                }
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+            // Upper nodes that got no stars still need a page.
+            for (Node u : upper) {
+                if (u.numObjects == 0) {
+                    openPage(particlesDir, u.pageId, 0).close();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Octree generation interrupted");
+        } catch (ExecutionException e) {
+            throw asIOException(e);
+        } finally {
+            for (DataOutputStream out : upperOut) {
+                if (out != null) {
+                    out.close();
+                }
+            }
+        }
+        return roots;
+    }
+
+    private Node buildPartition(RecordBuffer buffer, Partition partition, Path particlesDir) throws IOException {
+        int[] all = new int[buffer.size];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        return buildNode(buffer, all, partition.depth, partition.prefix, particlesDir);
+    }
+
+    /**
+     * Builds a node in memory with the given records, in Morton order, and recurses into its children.
+     */
+    private Node buildNode(RecordBuffer b, int[] records, int depth, long prefix, Path particlesDir) throws IOException {
+        Node node = new Node(nextPageId.getAndIncrement(), depth, prefix);
+        node.numObjectsRec = records.length;
+
+        int[] own, rest;
+        if (records.length <= maxPart || depth == MAX_DEPTH) {
+            own = records;
+            rest = new int[0];
+        } else {
+            // Brightest first, ties in Morton order.
+            long[] keys = new long[records.length];
+            for (int j = 0; j < records.length; j++) {
+                keys[j] = ((long) magKey(b.mag[records[j]]) << 32) | j;
+            }
+            Arrays.sort(keys);
+            own = new int[maxPart];
+            boolean[] taken = new boolean[records.length];
+            for (int j = 0; j < maxPart; j++) {
+                int k = (int) keys[j];
+                own[j] = records[k];
+                taken[k] = true;
+            }
+            rest = new int[records.length - maxPart];
+            for (int j = 0, k = 0; j < records.length; j++) {
+                if (!taken[j]) {
+                    rest[k++] = records[j];
+                }
+            }
+        }
+        node.numObjects = own.length;
+        try (DataOutputStream out = openPage(particlesDir, node.pageId, own.length)) {
+            for (int i : own) {
+                out.write(b.data, b.offset[i], b.length[i]);
+            }
+        }
+
+        // Children are contiguous in Morton order.
+        int shift = shift(depth + 1);
+        for (int start = 0; start < rest.length; ) {
+            int digit = (int) ((b.morton[rest[start]] >>> shift) & 7);
+            int end = start + 1;
+            while (end < rest.length && (int) ((b.morton[rest[end]] >>> shift) & 7) == digit) {
+                end++;
+            }
+            node.children[digit] = buildNode(b, Arrays.copyOfRange(rest, start, end), depth + 1, (prefix << 3) | digit, particlesDir);
+            start = end;
+        }
+        return node;
+    }
+
+    /**
+     * Writes the name index of the dataset, mapping every lower-case name to the page identifier of its octant.
+     */
+    private void writeNames(OctreeNode root, Path particlesDir) throws IOException {
+        var names = new NameIndex((int) Math.min(Integer.MAX_VALUE - 8, root.numObjectsRec));
+        var reader = new BinaryDataProvider();
+        Deque<OctreeNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            var node = stack.pop();
+            Path page = particlesDir.resolve("particles_" + String.format("%06d", node.pageId) + ".bin");
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(page), IO_BUFFER)) {
+                for (var record : reader.readData(in, 1.0)) {
+                    if (record.names() != null) {
+                        for (var name : record.names()) {
+                            names.put(name.toLowerCase(Locale.ROOT), (int) node.pageId);
+                        }
+                    }
+                }
+            }
+            if (node.children != null) {
+                for (var child : node.children) {
+                    if (child != null) {
+                        stack.push(child);
+                    }
+                }
+            }
+        }
+        Path file = outDir.resolve(OctreeLoader.NAMES_FILE);
+        if (names.size() > 0) {
+            names.trim();
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), IO_BUFFER))) {
+                names.write(out);
+            }
+        } else {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private DataOutputStream openPage(Path particlesDir, long pageId, int count) throws IOException {
+        Path file = particlesDir.resolve("particles_" + String.format("%06d", pageId) + ".bin");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), IO_BUFFER));
+        out.writeInt(-1);
+        out.writeInt(OUTPUT_VERSION);
+        out.writeInt(count);
+        return out;
+    }
+
+    private OctreeNode toOctreeNode(Node node, OctreeNode parent) {
+        double cell = rootSize / (1L << node.depth);
+        long ix = 0, iy = 0, iz = 0;
+        for (int level = 0; level < node.depth; level++) {
+            int digit = (int) ((node.prefix >>> (3 * (node.depth - 1 - level))) & 7);
+            ix = (ix << 1) | (digit & 1);
+            iz = (iz << 1) | ((digit >> 1) & 1);
+            iy = (iy << 1) | ((digit >> 2) & 1);
+        }
+        int childrenCount = 0;
+        for (Node child : node.children) {
+            if (child != null) {
+                childrenCount++;
+            }
+        }
+        OctreeNode octant = new OctreeNode(node.pageId,
+                                           rootMin[0] + (ix + 0.5) * cell,
+                                           rootMin[1] + (iy + 0.5) * cell,
+                                           rootMin[2] + (iz + 0.5) * cell,
+                                           cell / 2.0, cell / 2.0, cell / 2.0,
+                                           childrenCount,
+                                           (int) Math.min(Integer.MAX_VALUE, node.numObjectsRec),
+                                           node.numObjects,
+                                           node.depth);
+        octant.parent = parent;
+        for (int i = 0; i < 8; i++) {
+            if (node.children[i] != null) {
+                octant.children[i] = toOctreeNode(node.children[i], octant);
+            }
+        }
+        return octant;
+    }
+
+    private Path pack() throws IOException {
+        Path archive = outDir.resolveSibling(outDir.getFileName() + ".tar.gz");
+        String base = outDir.getFileName().toString();
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(outDir)) {
+            files = walk.filter(Files::isRegularFile).sorted().toList();
+        }
+        try (var tos = new TarOutputStream(new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(archive), IO_BUFFER)))) {
+            for (Path file : files) {
+                String name = base + "/" + outDir.relativize(file).toString().replace('\\', '/');
+                tos.putNextEntry(new TarEntry(file.toFile(), name));
+                Files.copy(file, tos);
+            }
+        }
+        logger.info("Packed " + files.size() + " files into " + archive);
+        return archive;
+    }
+
+    private void cleanParticles(Path particlesDir) throws IOException {
+        try (Stream<Path> list = Files.list(particlesDir)) {
+            List<Path> old = list.filter(p -> p.getFileName().toString().matches("particles_\\d+\\.bin")).toList();
+            if (!old.isEmpty()) {
+                logger.warn("Removing " + old.size() + " existing particle files from " + particlesDir);
+                for (Path p : old) {
+                    Files.delete(p);
+                }
+            }
+        }
+    }
+
+    private static void deleteRecursive(Path dir) {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            logger.warn("Could not delete temporary directory " + dir + ": " + e.getMessage());
+        }
+    }
+
+    private void logRate(String what, long rows, long startNs) {
+        double seconds = (System.nanoTime() - startNs) * 1e-9;
+        logger.info(String.format("%s %d rows in %.1f s (%.0f rows/s)", what, rows, seconds, rows / Math.max(seconds, 1e-9)));
+    }
+
+    private static <T> List<T> invokeAll(ExecutorService pool, List<Callable<T>> tasks) throws IOException {
+        try {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> f : pool.invokeAll(tasks)) {
+                results.add(f.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Octree generation interrupted");
+        } catch (ExecutionException e) {
+            throw asIOException(e);
+        }
+    }
+
+    private static IOException asIOException(ExecutionException e) {
+        return e.getCause() instanceof IOException ioe ? ioe : new IOException(e.getCause());
+    }
+
+    /*
+     * Morton codes. The three bits of each level are y, z, x, from most to least significant, which matches the
+     * child index convention of OctreeNode.
+     */
+
+    private long morton(double x, double y, double z) {
+        return (spread(quantize(y, 1)) << 2) | (spread(quantize(z, 2)) << 1) | spread(quantize(x, 0));
+    }
+
+    private long quantize(double v, int axis) {
+        long q = (long) Math.floor((v - rootMin[axis]) / rootSize * (1L << MAX_DEPTH));
+        return Math.max(0, Math.min((1L << MAX_DEPTH) - 1, q));
+    }
+
+    /** Spreads the lower 21 bits of the given value so that there are two zero bits between each of them. **/
+    private static long spread(long v) {
+        v &= 0x1fffffL;
+        v = (v | v << 32) & 0x1f00000000ffffL;
+        v = (v | v << 16) & 0x1f0000ff0000ffL;
+        v = (v | v << 8) & 0x100f00f00f00f00fL;
+        v = (v | v << 4) & 0x10c30c30c30c30c3L;
+        v = (v | v << 2) & 0x1249249249249249L;
+        return v;
+    }
+
+    private static int shift(int depth) {
+        return 3 * (MAX_DEPTH - depth);
+    }
+
+    /** The prefix of the given Morton code at the given depth, which identifies its octant at that depth. **/
+    private static long prefix(long morton, int depth) {
+        return depth == 0 ? 0L : morton >>> shift(depth);
+    }
+
+    /** Unique key of the octant with the given depth and prefix. **/
+    private static long key(int depth, long prefix) {
+        return (1L << (3 * depth)) | prefix;
+    }
+
+    /** Maps a magnitude to an int that sorts in the same order. Invalid magnitudes go last. **/
+    private static int magKey(float mag) {
+        if (Float.isNaN(mag)) {
+            mag = Float.POSITIVE_INFINITY;
+        }
+        int bits = Float.floatToIntBits(mag);
+        return bits ^ ((bits >> 31) & 0x7fffffff);
+    }
+
+    private static int[] identity(int n) {
+        int[] indices = new int[n];
+        for (int i = 0; i < n; i++) {
+            indices[i] = i;
+        }
+        return indices;
+    }
+
+    /**
+     * Sorts the indices in [lo, hi) by their keys, and equal keys by index, so that identity indices end up in the
+     * order of a stable sort. Quicksort with a median-of-three pivot, on primitives.
+     */
+    private static void sortIndices(long[] keys, int[] indices, int lo, int hi) {
+        while (hi - lo > 16) {
+            int a = indices[lo], b = indices[(lo + hi) >>> 1], c = indices[hi - 1];
+            int pivot = less(keys, a, b) ? (less(keys, b, c) ? b : (less(keys, a, c) ? c : a)) : (less(keys, a, c) ? a : (less(keys, b, c) ? c : b));
+            int i = lo, j = hi - 1;
+            while (i <= j) {
+                while (less(keys, indices[i], pivot)) {
+                    i++;
+                }
+                while (less(keys, pivot, indices[j])) {
+                    j--;
+                }
+                if (i <= j) {
+                    int t = indices[i];
+                    indices[i++] = indices[j];
+                    indices[j--] = t;
+                }
+            }
+            // Recurse into the smaller side, so that the stack stays logarithmic.
+            if (j + 1 - lo < hi - i) {
+                sortIndices(keys, indices, lo, j + 1);
+                lo = i;
+            } else {
+                sortIndices(keys, indices, i, hi);
+                hi = j + 1;
+            }
+        }
+        for (int i = lo + 1; i < hi; i++) {
+            int v = indices[i];
+            int j = i - 1;
+            while (j >= lo && less(keys, v, indices[j])) {
+                indices[j + 1] = indices[j];
+                j--;
+            }
+            indices[j + 1] = v;
+        }
+    }
+
+    private static boolean less(long[] keys, int a, int b) {
+        return keys[a] < keys[b] || (keys[a] == keys[b] && a < b);
+    }
+
+    /**
+     * The result of a generation.
+     *
+     * @param rows     Number of rows processed.
+     * @param nodes    Number of octree nodes.
+     * @param maxDepth Maximum depth of the octree.
+     * @param seconds  Total time, in seconds.
+     * @param archive  The packed archive, or null.
+     */
+    public record Result(long rows, long nodes, int maxDepth, double seconds, Path archive) {
+        public double rowsPerSecond() {
+            return rows / Math.max(seconds, 1e-9);
+        }
+    }
+
+    private record Run(Path path, long count) {
+    }
+
+    private static final class Node {
+        final long pageId;
+        final int depth;
+        final long prefix;
+        final Node[] children = new Node[8];
+        long numObjectsRec;
+        int numObjects;
+        /** Sequence numbers of the stars of an upper node, sorted, until they are written. **/
+        long[] picks;
+
+        Node(long pageId, int depth, long prefix) {
+            this.pageId = pageId;
+            this.depth = depth;
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * Counts the stars per octant at all depths while the sorted stream goes by, and keeps the octants with more
+     * than the given number of stars. Octants are contiguous in Morton order, so only one count per depth is open.
+     */
+    private static final class OctantCounter {
+        final long limit;
+        final long[] prefix = new long[MAX_DEPTH + 1];
+        final long[] count = new long[MAX_DEPTH + 1];
+        final Map<Long, Long> large = new HashMap<>();
+        boolean first = true;
+
+        OctantCounter(long limit) {
+            this.limit = limit;
+        }
+
+        void accept(long morton) {
+            int depth = 0;
+            if (!first) {
+                while (depth <= MAX_DEPTH && prefix(morton, depth) == prefix[depth]) {
+                    depth++;
+                }
+            }
+            for (int d = depth; d <= MAX_DEPTH; d++) {
+                if (!first) {
+                    flush(d);
+                }
+                prefix[d] = prefix(morton, d);
+                count[d] = 0;
+            }
+            first = false;
+            for (int d = 0; d <= MAX_DEPTH; d++) {
+                count[d]++;
+            }
+        }
+
+        void flush(int depth) {
+            if (count[depth] > limit) {
+                large.put(key(depth, prefix[depth]), count[depth]);
+            }
+        }
+
+        void finish() {
+            if (!first) {
+                for (int d = 0; d <= MAX_DEPTH; d++) {
+                    flush(d);
+                }
+            }
+        }
+    }
+
+    private static final class Partition {
+        final int depth;
+        final long prefix;
+        final long start;
+        long count;
+        /** Range of the candidates of this partition in the candidate file. **/
+        long candidateStart;
+        int candidateCount;
+
+        Partition(int depth, long prefix, long start) {
+            this.depth = depth;
+            this.prefix = prefix;
+            this.start = start;
+        }
+    }
+
+    /**
+     * The brightest stars offered, up to a capacity, in a binary heap with the faintest on top. Of two stars
+     * equally bright, the one offered first is kept.
+     */
+    private static final class Brightest {
+        int capacity;
+        int size;
+        int[] mag = new int[16];
+        long[] seq = new long[16];
+
+        void reset(int capacity) {
+            this.capacity = capacity;
+            this.size = 0;
+        }
+
+        void offer(int m, long s) {
+            if (size < capacity) {
+                if (size == mag.length) {
+                    int length = (int) Math.min(capacity, size + (long) (size >> 1));
+                    mag = Arrays.copyOf(mag, length);
+                    seq = Arrays.copyOf(seq, length);
+                }
+                mag[size] = m;
+                seq[size] = s;
+                siftUp(size++);
+            } else if (size > 0 && before(m, s, 0)) {
+                mag[0] = m;
+                seq[0] = s;
+                siftDown(0);
+            }
+        }
+
+        /** Indices of the stars in stream order. **/
+        int[] bySeq() {
+            int[] order = identity(size);
+            sortIndices(seq, order, 0, size);
+            return order;
+        }
+
+        /** Whether the given star is brighter than the one at i, or as bright and offered before. **/
+        private boolean before(int m, long s, int i) {
+            return m < mag[i] || (m == mag[i] && s < seq[i]);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (before(mag[i], seq[i], parent)) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && before(mag[child], seq[child], child + 1)) {
+                    child++;
+                }
+                if (!before(mag[i], seq[i], child)) {
+                    break;
+                }
+                swap(i, child);
+                i = child;
+            }
+        }
+
+        private void swap(int i, int j) {
+            int m = mag[i];
+            mag[i] = mag[j];
+            mag[j] = m;
+            long s = seq[i];
+            seq[i] = seq[j];
+            seq[j] = s;
+        }
+    }
+
+    /**
+     * The stars taken by the upper nodes, sorted by sequence number, with the index of the upper node that took them.
+     */
+    private static final class Picks {
+        final long[] seq;
+        final int[] owner;
+
+        Picks(List<Node> upper) {
+            long total = 0;
+            for (Node u : upper) {
+                total += u.picks.length;
+            }
+            if (total > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Too many stars in the upper nodes: " + total);
+            }
+            long[] s = new long[(int) total];
+            int[] o = new int[s.length];
+            int n = 0;
+            for (int u = 0; u < upper.size(); u++) {
+                for (long p : upper.get(u).picks) {
+                    s[n] = p;
+                    o[n++] = u;
+                }
+                upper.get(u).picks = null;
+            }
+            int[] order = identity(n);
+            sortIndices(s, order, 0, n);
+            seq = new long[n];
+            owner = new int[n];
+            for (int i = 0; i < n; i++) {
+                seq[i] = s[order[i]];
+                owner[i] = o[order[i]];
+            }
+        }
+    }
+
+    /**
+     * Records of a run or partition, in columns, with the payloads in a single array.
+     */
+    private static final class RecordBuffer {
+        long[] morton;
+        float[] mag;
+        int[] offset;
+        int[] length;
+        byte[] data;
+        int size;
+        int dataSize;
+
+        RecordBuffer(int capacity) {
+            capacity = Math.max(capacity, 16);
+            morton = new long[capacity];
+            mag = new float[capacity];
+            offset = new int[capacity];
+            length = new int[capacity];
+            data = new byte[capacity * 96];
+        }
+
+        private int reserve(long m, float mg, int len) {
+            if (size == morton.length) {
+                int capacity = size + (size >> 1);
+                morton = Arrays.copyOf(morton, capacity);
+                mag = Arrays.copyOf(mag, capacity);
+                offset = Arrays.copyOf(offset, capacity);
+                length = Arrays.copyOf(length, capacity);
+            }
+            if ((long) dataSize + len > data.length) {
+                long capacity = Math.max((long) dataSize + len, (long) data.length + (data.length >> 1));
+                if (capacity > Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("Record buffer too large, reduce the number of records in memory");
+                }
+                data = Arrays.copyOf(data, (int) capacity);
+            }
+            morton[size] = m;
+            mag[size] = mg;
+            offset[size] = dataSize;
+            length[size] = len;
+            dataSize += len;
+            return size++;
+        }
+
+        void add(long m, float mg, DataInputStream in, int len) throws IOException {
+            int i = reserve(m, mg, len);
+            in.readFully(data, offset[i], len);
+        }
+
+        void add(long m, float mg, byte[] payload, int len) {
+            int i = reserve(m, mg, len);
+            System.arraycopy(payload, 0, data, offset[i], len);
+        }
+
+        void write(int i, DataOutputStream out) throws IOException {
+            out.writeLong(morton[i]);
+            out.writeFloat(mag[i]);
+            out.writeInt(length[i]);
+            out.write(data, offset[i], length[i]);
+        }
+    }
+
+    /**
+     * Sequential reader of a sorted run.
+     */
+    private static final class RunReader implements Closeable {
+        final DataInputStream in;
+        final int order;
+        long remaining;
+        long morton;
+        float mag;
+        int length;
+        byte[] payload = new byte[256];
+
+        RunReader(Run run, int order) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run.path), IO_BUFFER));
+            this.order = order;
+            this.remaining = run.count;
+        }
+
+        boolean next() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            morton = in.readLong();
+            mag = in.readFloat();
+            length = in.readInt();
+            if (payload.length < length) {
+                payload = new byte[Math.max(length, payload.length * 2)];
+            }
+            in.readFully(payload, 0, length);
+            return true;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeLong(morton);
+            out.writeFloat(mag);
+            out.writeInt(length);
+            out.write(payload, 0, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.data.orbit;
+
+import gaiasky.util.math.Vector3D;
+import net.jafama.FastMath;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Samples a curve adaptively, so that the polyline through the samples follows it within an error tolerance.
+ * <p>
+ * The parameter interval is first split into {@link #MIN_SEGMENTS} uniform segments. Then, the segment with the
+ * largest error is split in two at its midpoint, until no segment exceeds the tolerance or the sample budget is
+ * used up. The error of a segment is measured at its midpoint, and it has two parts:
+ * <ul>
+ *     <li>the distance from the curve to the chord, relative to the size of the curve, and</li>
+ *     <li>the turning angle of the curve between the ends of the segment.</li>
+ * </ul>
+ * Samples concentrate where the curvature is high, like the pericenter of eccentric orbits, while near-circular
+ * orbits get few samples.
+ */
+public final class AdaptiveOrbitSampler {
+    /** Default maximum distance from the curve to the polyline, relative to the size of the curve. **/
+    public static final double DEFAULT_TOLERANCE = 5.0e-4;
+    /** Default maximum turning angle of the curve within a segment, in degrees. **/
+    public static final double DEFAULT_MAX_ANGLE = 2.0;
+    /** Default maximum number of samples. **/
+    public static final int DEFAULT_MAX_SAMPLES = 4096;
+    /** Number of uniform segments to start with. **/
+    public static final int MIN_SEGMENTS = 16;
+
+    /** A curve parameterized by a scalar. **/
+    public interface Curve {
+        /**
+         * Computes the point of the curve at the given parameter.
+         *
+         * @param u   The parameter.
+         * @param out The vector to store the point.
+         */
+        void point(double u, Vector3D out);
+    }
+
+    /** Receives the samples, in order. **/
+    public interface Sink {
+        /**
+         * Receives a sample.
+         *
+         * @param u     The parameter.
+         * @param point The point of the curve. Owned by the sampler.
+         */
+        void sample(double u, Vector3D point);
+    }
+
+    private final Curve curve;
+    private final double tolerance;
+    private final double maxAngle;
+    private final int maxSamples;
+    private final Vector3D aux0 = new Vector3D(), aux1 = new Vector3D();
+
+    /**
+     * Creates a sampler.
+     *
+     * @param curve      The curve.
+     * @param tolerance  The maximum distance from the curve to the polyline, relative to the diagonal of the bounding box
+     *                   of the curve.
+     * @param maxAngle   The maximum turning angle of the curve within a segment, in degrees.
+     * @param maxSamples The maximum number of samples.
+     */
+    public AdaptiveOrbitSampler(Curve curve, double tolerance, double maxAngle, int maxSamples) {
+        this.curve = curve;
+        this.tolerance = tolerance > 0 ? tolerance : DEFAULT_TOLERANCE;
+        this.maxAngle = FastMath.toRadians(maxAngle > 0 ? maxAngle : DEFAULT_MAX_ANGLE);
+        this.maxSamples = Math.max(MIN_SEGMENTS + 1, maxSamples);
+    }
+
+    /** A segment of the curve, with its error at the midpoint. **/
+    private static final class Segment {
+        final double u0, u1;
+        final Vector3D p0, p1, mid;
+        double error;
+
+        Segment(double u0, double u1, Vector3D p0, Vector3D p1, Vector3D mid) {
+            this.u0 = u0;
+            this.u1 = u1;
+            this.p0 = p0;
+            this.p1 = p1;
+            this.mid = mid;
+        }
+    }
+
+    /**
+     * Samples the curve in the given parameter interval.
+     *
+     * @param u0   The start of the interval.
+     * @param u1   The end of the interval.
+     * @param sink Receives the samples in order of the parameter, including both ends of the interval.
+     *
+     * @return The number of samples.
+     */
+    public int sample(double u0, double u1, Sink sink) {
+        // Uniform start.
+        var points = new Vector3D[MIN_SEGMENTS + 1];
+        double xMin = Double.POSITIVE_INFINITY, yMin = xMin, zMin = xMin, xMax = Double.NEGATIVE_INFINITY, yMax = xMax, zMax = xMax;
+        for (int i = 0; i <= MIN_SEGMENTS; i++) {
+            points[i] = point(u0 + (u1 - u0) * i / MIN_SEGMENTS);
+            xMin = Math.min(xMin, points[i].x);
+            yMin = Math.min(yMin, points[i].y);
+            zMin = Math.min(zMin, points[i].z);
+            xMax = Math.max(xMax, points[i].x);
+            yMax = Math.max(yMax, points[i].y);
+            zMax = Math.max(zMax, points[i].z);
+        }
+        double size = FastMath.sqrt((xMax - xMin) * (xMax - xMin) + (yMax - yMin) * (yMax - yMin) + (zMax - zMin) * (zMax - zMin));
+        double maxDistance = tolerance * (size > 0 ? size : 1);
+
+        var queue = new PriorityQueue<Segment>((a, b) -> Double.compare(b.error, a.error));
+        for (int i = 0; i < MIN_SEGMENTS; i++) {
+            queue.add(segment(u0 + (u1 - u0) * i / MIN_SEGMENTS, u0 + (u1 - u0) * (i + 1) / MIN_SEGMENTS, points[i], points[i + 1],
+                              maxDistance));
+        }
+
+        // Refine the worst segment while it is over the tolerance and there is budget left.
+        int samples = MIN_SEGMENTS + 1;
+        while (samples < maxSamples && queue.peek().error > 1) {
+            var s = queue.poll();
+            double um = (s.u0 + s.u1) / 2;
+            if (um <= s.u0 || um >= s.u1) {
+                // No more resolution in the parameter.
+                s.error = 0;
+                queue.add(s);
+                continue;
+            }
+            queue.add(segment(s.u0, um, s.p0, s.mid, maxDistance));
+            queue.add(segment(um, s.u1, s.mid, s.p1, maxDistance));
+            samples++;
+        }
+
+        var segments = queue.toArray(new Segment[0]);
+        Arrays.sort(segments, Comparator.comparingDouble(s -> s.u0));
+        for (var s : segments) {
+            sink.sample(s.u0, s.p0);
+        }
+        sink.sample(u1, points[MIN_SEGMENTS]);
+        return samples;
+    }
+
+    private Vector3D point(double u) {
+        var p = new Vector3D();
+        curve.point(u, p);
+        return p;
+    }
+
+    /** Creates a segment, and computes its error relative to the tolerance. Values over 1 exceed it. **/
+    private Segment segment(double u0, double u1, Vector3D p0, Vector3D p1, double maxDistance) {
+        var mid = point((u0 + u1) / 2);
+        var s = new Segment(u0, u1, p0, p1, mid);
+
+        // Distance from the midpoint to the chord.
+        var chord = aux0.set(p1).sub(p0);
+        var toMid = aux1.set(mid).sub(p0);
+        double chordLen2 = chord.len2();
+        double distance;
+        if (chordLen2 > 0) {
+            double t = Math.max(0, Math.min(1, toMid.dot(chord) / chordLen2));
+            distance = toMid.sub(chord.scl(t)).len();
+        } else {
+            distance = toMid.len();
+        }
+
+        // Turning angle between both halves.
+        var a = aux0.set(mid).sub(p0);
+        var b = aux1.set(p1).sub(mid);
+        double la = a.len(), lb = b.len();
+        double angle = la > 0 && lb > 0 ? FastMath.acos(Math.max(-1, Math.min(1, a.dot(b) / (la * lb)))) : 0;
+
+        s.error = Math.max(distance / maxDistance, angle / maxAngle);
+        return s;
+    }
+}
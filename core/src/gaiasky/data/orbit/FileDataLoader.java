@@ -10,18 +10,17 @@ package gaiasky.data.orbit;
 import gaiasky.data.util.PointCloudData;
 import gaiasky.util.Constants;
 import gaiasky.util.coord.AstroUtils;
-import gaiasky.util.math.Vector3D;
 import gaiasky.util.parse.Parser;
 
-import java.io.BufferedReader;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
 import java.time.temporal.ChronoField;
+import java.util.Arrays;
 
 /**
  * Loads orbit data from an ASCII text file.
@@ -52,9 +51,27 @@ import java.time.temporal.ChronoField;
  * and subsequent ones are ignored to prevent duplicate data points at the same time.
  * Any additional tokens beyond the first four in a line are ignored.
  * </p>
+ * <p>
+ * The file is tokenized directly on its bytes, without creating strings. Times in the format above with a four-digit
+ * year are parsed directly too. Lines with characters other than printable ASCII, and times in any other format, go
+ * through the string parsers, so the result is the same in all cases.
+ * </p>
  */
 public class FileDataLoader {
 
+    /** Initial size of the read buffer. It grows if a line does not fit. **/
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** Returned by {@link #parseTime(byte[], int, int)} when the time must be parsed as a string. **/
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final int[] DAYS_IN_MONTH = { 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+
+    /** Time of the last point added. **/
+    private long last;
+    /** Start and end of the tokens of the current line. **/
+    private final int[] tokenStart = new int[4], tokenEnd = new int[4];
+    /** View of the read buffer, for the number parser. **/
+    private final Parser.AsciiView ascii = new Parser.AsciiView();
+
     public FileDataLoader() {
         super();
     }
@@ -95,37 +112,184 @@ public class FileDataLoader {
      */
     public PointCloudData load(InputStream data) throws Exception {
         PointCloudData orbitData = new PointCloudData();
+        last = 0L;
 
-        BufferedReader br = new BufferedReader(new InputStreamReader(data));
-        String line;
-
-        long last = 0L;
-        while ((line = br.readLine()) != null) {
-            line = line.trim();
-            if (!line.isBlank() && !line.startsWith("#")) {
-                // Read line
-                String[] tokens = line.split("\\s+");
-                if (tokens.length >= 4) {
-                    // Valid data line.
-                    long t = parseTime(tokens[0].trim());
-                    if (t != last) {
-                        Vector3D pos = new Vector3D(parsed(tokens[1]), parsed(tokens[2]), parsed(tokens[3]));
-                        // Kilometers to internal units.
-                        pos.scl(Constants.KM_TO_U);
-
-                        orbitData.addPoint(pos, Instant.ofEpochMilli(t));
-
-                        last = t;
+        byte[] buf = new byte[BUFFER_SIZE];
+        // Bytes in the buffer.
+        int len = 0;
+        try (data) {
+            int read;
+            while ((read = data.read(buf, len, buf.length - len)) >= 0) {
+                len += read;
+                int lineStart = 0;
+                for (int i = 0; i < len; i++) {
+                    byte b = buf[i];
+                    if (b == '\n' || b == '\r') {
+                        parseLine(buf, lineStart, i, orbitData);
+                        lineStart = i + 1;
                     }
                 }
+                // Move the incomplete line to the start, and grow the buffer if it is full.
+                len -= lineStart;
+                System.arraycopy(buf, lineStart, buf, 0, len);
+                if (len == buf.length) {
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                }
             }
+            parseLine(buf, 0, len, orbitData);
         }
 
-        br.close();
-
         return orbitData;
     }
 
+    /**
+     * Parses a line without line terminators, and adds its point to the data.
+     */
+    private void parseLine(byte[] b, int from, int to, PointCloudData orbitData) {
+        // Trim, like String.trim().
+        while (from < to && (b[from] & 0xff) <= ' ') {
+            from++;
+        }
+        while (to > from && (b[to - 1] & 0xff) <= ' ') {
+            to--;
+        }
+        if (from == to || b[from] == '#') {
+            return;
+        }
+        int nTokens = 0;
+        int i = from;
+        while (i < to) {
+            int c = b[i] & 0xff;
+            if (c >= 0x7f || (c < ' ' && !isSeparator(c))) {
+                // Not plain ASCII, use the string parsers.
+                parseLine(new String(b, from, to - from, StandardCharsets.UTF_8), orbitData);
+                return;
+            }
+            if (isSeparator(c)) {
+                i++;
+            } else {
+                int start = i;
+                while (i < to && !isSeparator(b[i] & 0xff)) {
+                    i++;
+                }
+                if (nTokens < 4) {
+                    tokenStart[nTokens] = start;
+                    tokenEnd[nTokens] = i;
+                }
+                nTokens++;
+            }
+        }
+        if (nTokens >= 4) {
+            long t = parseTime(b, tokenStart[0], tokenEnd[0]);
+            if (t == NO_TIME) {
+                t = parseTime(new String(b, tokenStart[0], tokenEnd[0] - tokenStart[0], StandardCharsets.US_ASCII));
+            }
+            var chars = ascii.of(b);
+            addPoint(orbitData,
+                     t,
+                     Parser.parseDouble(chars, tokenStart[1], tokenEnd[1]),
+                     Parser.parseDouble(chars, tokenStart[2], tokenEnd[2]),
+                     Parser.parseDouble(chars, tokenStart[3], tokenEnd[3]));
+        }
+    }
+
+    /**
+     * Parses a line with the string parsers.
+     */
+    private void parseLine(String line, PointCloudData orbitData) {
+        line = line.trim();
+        if (!line.isBlank() && !line.startsWith("#")) {
+            // Read line
+            String[] tokens = line.split("\\s+");
+            if (tokens.length >= 4) {
+                // Valid data line.
+                addPoint(orbitData, parseTime(tokens[0].trim()), parsed(tokens[1]), parsed(tokens[2]), parsed(tokens[3]));
+            }
+        }
+    }
+
+    private void addPoint(PointCloudData orbitData, long t, double x, double y, double z) {
+        if (t != last) {
+            // Kilometers to internal units.
+            orbitData.addPoint(x * Constants.KM_TO_U,
+                               y * Constants.KM_TO_U,
+                               z * Constants.KM_TO_U,
+                               Math.floorDiv(t, 1000L),
+                               (int) Math.floorMod(t, 1000L) * 1_000_000);
+            last = t;
+        }
+    }
+
+    /** Separators of {@code \\s}, without the line terminators. **/
+    private static boolean isSeparator(int c) {
+        return c == ' ' || c == '\t' || c == 0x0b || c == '\f';
+    }
+
+    /**
+     * Parses a time with the format {@link #FORMAT} and a four-digit year, in UTC, from a range of bytes.
+     *
+     * @return The time as milliseconds since epoch, or {@link #NO_TIME} if the token is not a valid time in that
+     *         format, and must be parsed by {@link #parseTime(String)}.
+     */
+    private static long parseTime(byte[] b, int from, int to) {
+        int len = to - from;
+        // yyyy-MM-dd_HH:mm:ss, with an optional fraction of up to three digits.
+        if (len < 19 || len == 20 || len > 23
+                || b[from + 4] != '-' || b[from + 7] != '-' || b[from + 10] != '_' || b[from + 13] != ':' || b[from + 16] != ':') {
+            return NO_TIME;
+        }
+        int year = digits(b, from, 4);
+        int month = digits(b, from + 5, 2);
+        int day = digits(b, from + 8, 2);
+        int hour = digits(b, from + 11, 2);
+        int minute = digits(b, from + 14, 2);
+        int second = digits(b, from + 17, 2);
+        if (year < 1 || month < 1 || month > 12 || day < 1 || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return NO_TIME;
+        }
+        boolean leap = (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+        if (day > DAYS_IN_MONTH[month - 1] + (month == 2 && leap ? 1 : 0)) {
+            // Out of range days are adjusted by the formatter.
+            return NO_TIME;
+        }
+        int millis = 0;
+        if (len > 19) {
+            if (b[from + 19] != '.') {
+                return NO_TIME;
+            }
+            int nDigits = len - 20;
+            millis = digits(b, from + 20, nDigits);
+            if (millis < 0) {
+                return NO_TIME;
+            }
+            millis *= nDigits == 1 ? 100 : (nDigits == 2 ? 10 : 1);
+        }
+        return (epochDay(year, month, day) * 86400L + hour * 3600L + minute * 60L + second) * 1000L + millis;
+    }
+
+    /** Parses a fixed number of decimal digits, or returns -1 if there is anything else. **/
+    private static int digits(byte[] b, int from, int n) {
+        int v = 0;
+        for (int i = from; i < from + n; i++) {
+            int d = b[i] - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    /** Days since 1970-01-01 of a date in the proleptic Gregorian calendar, like {@code LocalDate.toEpochDay()}. **/
+    private static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
     protected float parsef(String str) {
         return Parser.parseFloat(str);
     }
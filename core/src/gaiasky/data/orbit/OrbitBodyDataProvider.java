@@ -14,6 +14,7 @@ import gaiasky.data.util.PointCloudData;
 import gaiasky.render.ComponentTypes;
 import gaiasky.scene.Mapper;
 import gaiasky.scene.component.Trajectory;
+import gaiasky.scene.component.Trajectory.OrbitSamplingStrategy;
 import gaiasky.util.Logger;
 import gaiasky.util.Nature;
 import gaiasky.util.coord.Coordinates;
@@ -100,28 +101,43 @@ public class OrbitBodyDataProvider implements IOrbitDataProvider {
                     d = Instant.ofEpochMilli(parameter.ini.getTime());
                 }
 
-                // Load orbit data.
-                long t = 0;
-                for (int i = 0; i <= numSamples; i++) {
-                    coordinates.coordinates.getEclipticCartesianCoordinates(d, aux1);
-                    Coordinates.cartesianToSpherical(aux1, aux2);
-                    double eclX = aux2.x;
-
-                    if (last == 0) {
+                if (parameter.sampling == OrbitSamplingStrategy.ADAPTIVE) {
+                    // Adaptive sampling in time over one revolution.
+                    final long startMs = d.toEpochMilli();
+                    var sampler = new AdaptiveOrbitSampler((u, out) -> {
+                        coordinates.coordinates.getEclipticCartesianCoordinates(Instant.ofEpochMilli(startMs + (long) u), aux1);
+                        aux1.mul(Coordinates.eclToEq()).put(out);
+                    }, parameter.tolerance, parameter.maxAngle, AdaptiveOrbitSampler.DEFAULT_MAX_SAMPLES);
+                    sampler.sample(0, orbitalMs, (u, p) -> {
+                        if (u < orbitalMs) {
+                            data.addPoint(p.x, p.y, p.z, Instant.ofEpochMilli(startMs + (long) u));
+                        }
+                    });
+                    d = Instant.ofEpochMilli(startMs + orbitalMs);
+                } else {
+                    // Load orbit data.
+                    long t = 0;
+                    for (int i = 0; i <= numSamples; i++) {
+                        coordinates.coordinates.getEclipticCartesianCoordinates(d, aux1);
+                        Coordinates.cartesianToSpherical(aux1, aux2);
+                        double eclX = aux2.x;
+
+                        if (last == 0) {
+                            last = FastMath.toDegrees(eclX);
+                        }
+
+                        cumulative += FastMath.toDegrees(eclX) - last;
                         last = FastMath.toDegrees(eclX);
-                    }
 
-                    cumulative += FastMath.toDegrees(eclX) - last;
-                    last = FastMath.toDegrees(eclX);
+                        if (cumulative > 359 || t + stepMs > period * Nature.D_TO_MS) {
+                            break;
+                        }
+                        aux1.mul(Coordinates.eclToEq());
+                        data.addPoint(aux1.x.doubleValue(), aux1.y.doubleValue(), aux1.z.doubleValue(), d);
 
-                    if (cumulative > 359 || t + stepMs > period * Nature.D_TO_MS) {
-                        break;
+                        d = Instant.ofEpochMilli(d.toEpochMilli() + stepMs);
+                        t += stepMs;
                     }
-                    aux1.mul(Coordinates.eclToEq());
-                    data.addPoint(aux1.x.doubleValue(), aux1.y.doubleValue(), aux1.z.doubleValue(), d);
-
-                    d = Instant.ofEpochMilli(d.toEpochMilli() + stepMs);
-                    t += stepMs;
                 }
                 // Close the circle.
                 var f = data.samples.getFirst();
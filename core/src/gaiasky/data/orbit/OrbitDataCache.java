@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.data.orbit;
+
+import gaiasky.data.util.PointCloudData;
+import gaiasky.util.Constants;
+import gaiasky.util.Logger;
+import gaiasky.util.Logger.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * Binary cache of the orbit files loaded by {@link FileDataLoader}. The points are stored as primitive columns, the
+ * positions in internal units and the times as seconds and nanoseconds since epoch. To read them back, the file is
+ * mapped into memory, the columns are copied in bulk into primitive arrays, and the samples of the
+ * {@link PointCloudData} are created from those, so the load is a copy, but it does not parse or convert anything.
+ * <p>
+ * Entries are keyed by the path of the source file, and validated with its size and modification time, and with the
+ * kilometers to internal units factor, so that a modified source or a different scale miss the cache and overwrite the
+ * entry.
+ */
+public final class OrbitDataCache {
+    private static final Log logger = Logger.getLogger(OrbitDataCache.class);
+
+    private static final int MAGIC = 0x4f524243;
+    /** Bump when the layout of the cache files changes. **/
+    private static final int VERSION = 1;
+    /** Magic, version, source size, modification time, factor, number of points, padding and path hash. **/
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 8 + 4 + 4 + 32;
+    /** Bytes per point: three doubles, a long and an int. **/
+    private static final int POINT_BYTES = 3 * 8 + 8 + 4;
+
+    private final Path file;
+    private final byte[] key;
+    private final long size;
+    private final long lastModified;
+
+    private OrbitDataCache(Path file, byte[] key, long size, long lastModified) {
+        this.file = file;
+        this.key = key;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Creates the cache entry handle for the given source file. This does not touch the cache directory.
+     *
+     * @param cacheDir The cache directory.
+     * @param source   The source file.
+     *
+     * @return The cache entry handle.
+     *
+     * @throws IOException If the attributes of the source can't be read.
+     */
+    public static OrbitDataCache open(Path cacheDir, Path source) throws IOException {
+        Path path = source.toAbsolutePath().normalize();
+        byte[] key = sha256().digest(path.toString().getBytes(StandardCharsets.UTF_8));
+        String name = "orbit-" + HexFormat.of().formatHex(key, 0, 12) + ".bin";
+        return new OrbitDataCache(cacheDir.resolve(name), key, Files.size(path), Files.getLastModifiedTime(path).toMillis());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Reads the cache entry.
+     *
+     * @return The data, or null if the entry does not exist, belongs to a different or modified source, or can't be
+     * read.
+     */
+    public PointCloudData read() {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = fc.size();
+            if (length < HEADER_BYTES) {
+                return null;
+            }
+            MappedByteBuffer map = fc.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            if (map.getInt() != MAGIC || map.getInt() != VERSION || map.getLong() != size || map.getLong() != lastModified
+                    || map.getLong() != Double.doubleToLongBits(Constants.KM_TO_U)) {
+                return null;
+            }
+            int n = map.getInt();
+            map.getInt();
+            byte[] k = new byte[key.length];
+            map.get(k);
+            if (!Arrays.equals(k, key) || n < 0 || length != HEADER_BYTES + (long) n * POINT_BYTES) {
+                return null;
+            }
+
+            // Columns of x, y, z, seconds and nanoseconds, copied in bulk from the mapped file.
+            double[] x = new double[n], y = new double[n], z = new double[n];
+            long[] seconds = new long[n];
+            int[] nanos = new int[n];
+            int xPos = HEADER_BYTES, yPos = xPos + n * 8, zPos = yPos + n * 8, sPos = zPos + n * 8, nPos = sPos + n * 8;
+            column(map, xPos, n * 8).asDoubleBuffer().get(x);
+            column(map, yPos, n * 8).asDoubleBuffer().get(y);
+            column(map, zPos, n * 8).asDoubleBuffer().get(z);
+            column(map, sPos, n * 8).asLongBuffer().get(seconds);
+            column(map, nPos, n * 4).asIntBuffer().get(nanos);
+            PointCloudData data = new PointCloudData(n);
+            data.addPoints(x, y, z, seconds, nanos);
+            return data;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not read cache file " + file + ": " + e);
+            return null;
+        }
+    }
+
+    /** Little-endian view of a column of the file. **/
+    private static ByteBuffer column(ByteBuffer buf, int position, int length) {
+        return buf.slice(position, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Writes the cache entry. The file is written to a temporary file first, and then moved into place.
+     *
+     * @param data The data, as loaded from the source.
+     */
+    public void write(PointCloudData data) throws IOException {
+        int n = data.samples.size();
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + n * POINT_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION).putLong(size).putLong(lastModified).putLong(Double.doubleToLongBits(Constants.KM_TO_U));
+        buf.putInt(n).putInt(0).put(key);
+        for (var p : data.samples) {
+            buf.putDouble(p.x());
+        }
+        for (var p : data.samples) {
+            buf.putDouble(p.y());
+        }
+        for (var p : data.samples) {
+            buf.putDouble(p.z());
+        }
+        for (var p : data.samples) {
+            buf.putLong(p.seconds());
+        }
+        for (var p : data.samples) {
+            buf.putInt(p.nanos());
+        }
+        buf.flip();
+
+        Path dir = file.getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel fc = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                while (buf.hasRemaining()) {
+                    fc.write(buf);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.debug("Cached " + n + " orbit points in " + file);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
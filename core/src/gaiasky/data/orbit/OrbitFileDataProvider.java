@@ -8,6 +8,7 @@
 package gaiasky.data.orbit;
 
 import com.badlogic.ashley.core.Entity;
+import com.badlogic.gdx.Files.FileType;
 import com.badlogic.gdx.files.FileHandle;
 import gaiasky.GaiaSky;
 import gaiasky.data.api.IOrbitDataProvider;
@@ -17,16 +18,21 @@ import gaiasky.event.Event;
 import gaiasky.event.EventManager;
 import gaiasky.scene.component.Trajectory;
 import gaiasky.util.Logger;
+import gaiasky.util.SysUtils;
 import gaiasky.util.io.GzipUtils;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.zip.GZIPInputStream;
 
 /**
  * Orbit data provider that loads orbit/trajectory data from a file as a sequence of points.
- * The actual loading of data is implemented in {@link FileDataLoader}.
+ * The actual loading of data is implemented in {@link FileDataLoader}. If the orbit cache is enabled, the
+ * loaded points of files on disk are kept in an {@link OrbitDataCache}, which is used in later loads.
  */
 public class OrbitFileDataProvider implements IOrbitDataProvider {
+    private static final Logger.Log logger = Logger.getLogger(OrbitFileDataProvider.class);
+
     private PointCloudData data;
 
     @Override
@@ -42,18 +48,29 @@ public class OrbitFileDataProvider implements IOrbitDataProvider {
             FileDataLoader odl = new FileDataLoader();
             FileHandle f = GaiaSky.settings().data.dataFileHandle(file);
             try {
-                InputStream is;
-                var isGzip = false;
-                try (var fis = f.read()){
-                    isGzip = GzipUtils.isGZipped(fis);
-                }
-                var fis = f.read();
-                if (isGzip) {
-                    is = new GZIPInputStream(fis);
-                } else {
-                    is = fis;
+                OrbitDataCache cache = openCache(f);
+                data = cache != null ? cache.read() : null;
+                if (data == null) {
+                    InputStream is;
+                    var isGzip = false;
+                    try (var fis = f.read()) {
+                        isGzip = GzipUtils.isGZipped(fis);
+                    }
+                    var fis = f.read();
+                    if (isGzip) {
+                        is = new GZIPInputStream(fis);
+                    } else {
+                        is = fis;
+                    }
+                    data = odl.load(is);
+                    if (cache != null && !data.isEmpty()) {
+                        try {
+                            cache.write(data);
+                        } catch (IOException e) {
+                            logger.warn("Could not write cache file " + cache.getFile() + ": " + e);
+                        }
+                    }
                 }
-                data = odl.load(is);
                 if (parameter.multiplier != 1f) {
                     int n = data.samples.size();
                     for (int i = 0; i < n; i++) {
@@ -68,11 +85,28 @@ public class OrbitFileDataProvider implements IOrbitDataProvider {
                 }
                 EventManager.publish(Event.ORBIT_DATA_LOADED, this, data, file);
             } catch (Exception e) {
-                Logger.getLogger(this.getClass()).error(e);
+                logger.error(e);
             }
         }
     }
 
+    /**
+     * Gets the binary cache entry for the given file, if the cache is enabled and the file is on disk.
+     *
+     * @return The cache entry, or null.
+     */
+    private OrbitDataCache openCache(FileHandle f) {
+        if (!GaiaSky.settings().performance.orbitCache || f.type() == FileType.Classpath || !f.file().isFile()) {
+            return null;
+        }
+        try {
+            return OrbitDataCache.open(SysUtils.getDataCacheDir(GaiaSky.settings().data.location).resolve("orbits"), f.file().toPath());
+        } catch (IOException e) {
+            logger.warn("Could not open cache for " + f.path() + ": " + e);
+            return null;
+        }
+    }
+
     @Override
     public void load(String file,
                      OrbitDataLoaderParameters parameter,
@@ -51,6 +51,7 @@ public class OrbitalParametersProvider implements IOrbitDataProvider {
                 switch (parameter.sampling) {
                     case TIME -> sampleOrbitInTime(parameter);
                     case NU -> sampleOrbitInNu(parameter);
+                    case ADAPTIVE -> sampleOrbitAdaptive(parameter);
                 }
             } catch (Exception e) {
                 Logger.getLogger(this.getClass()).error(e);
@@ -141,6 +142,49 @@ public class OrbitalParametersProvider implements IOrbitDataProvider {
         data.samples.sort(Comparator.comparing(PointCloudData.PointSample::seconds));
     }
 
+    /**
+     * Samples points in the orbit adaptively in true anomaly (nu), with {@link AdaptiveOrbitSampler}, so that the
+     * error of the polyline stays within {@link OrbitDataLoaderParameters#tolerance} and
+     * {@link OrbitDataLoaderParameters#maxAngle}. Samples are ordered in time, from the epoch to a full period later.
+     *
+     * @param parameter The orbital parameters.
+     */
+    private void sampleOrbitAdaptive(OrbitDataLoaderParameters parameter) {
+        OrbitComponent params = parameter.orbitalParamaters;
+        double period = params.period; // in days
+
+        data = new PointCloudData();
+        data.period = period;
+
+        // True anomaly at epoch.
+        double nu0 = params.timeToTrueAnomaly(0);
+        // Time grows with nu, so we unwrap the times given by the mean anomaly.
+        double t0 = params.trueAnomalyToTime(nu0) % period;
+        if (t0 > period / 2) {
+            t0 -= period;
+        } else if (t0 < -period / 2) {
+            t0 += period;
+        }
+        double[] t = { t0 };
+        double nu1 = nu0 + PI2;
+        var sampler = new AdaptiveOrbitSampler((nu, out) -> params.loadDataPointNu(out, nu), parameter.tolerance, parameter.maxAngle,
+                                               AdaptiveOrbitSampler.DEFAULT_MAX_SAMPLES);
+        sampler.sample(nu0, nu1, (nu, p) -> {
+            if (nu > nu0 && nu < nu1) {
+                double ti = params.trueAnomalyToTime(nu);
+                while (ti < t[0]) {
+                    ti += period;
+                }
+                t[0] = ti;
+            }
+            if (nu < nu1) {
+                data.addPoint(p.x, p.y, p.z, AstroUtils.julianDateToInstant(params.epoch + t[0]));
+            }
+        });
+        // Close orbit.
+        data.addPoint(data.getX(0), data.getY(0), data.getZ(0), AstroUtils.julianDateToInstant(params.epoch + t0 + period));
+    }
+
     public void loadOld(String file, OrbitDataLoaderParameters parameter) {
         OrbitComponent params = parameter.orbitalParamaters;
         if (params == null)
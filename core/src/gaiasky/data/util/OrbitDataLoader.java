@@ -17,6 +17,7 @@ import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.reflect.ClassReflection;
 import gaiasky.data.api.IOrbitDataProvider;
+import gaiasky.data.orbit.AdaptiveOrbitSampler;
 import gaiasky.scene.component.Trajectory.OrbitSamplingStrategy;
 import gaiasky.scene.record.OrbitComponent;
 import gaiasky.util.Logger;
@@ -60,6 +61,10 @@ public class OrbitDataLoader extends AsynchronousAssetLoader<PointCloudData, Orb
         public double multiplier = 1;
         public int numSamples;
         public OrbitSamplingStrategy sampling;
+        /** Error tolerance of the adaptive sampling, see {@link AdaptiveOrbitSampler}. **/
+        public double tolerance = AdaptiveOrbitSampler.DEFAULT_TOLERANCE;
+        /** Maximum turning angle within a segment of the adaptive sampling, in degrees. **/
+        public double maxAngle = AdaptiveOrbitSampler.DEFAULT_MAX_ANGLE;
         public String name;
         public OrbitComponent orbitalParamaters;
         public Entity entity;
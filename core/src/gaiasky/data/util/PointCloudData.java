@@ -188,6 +188,22 @@ public class PointCloudData implements Cloneable {
         }
     }
 
+    /**
+     * Adds the points given as columns of coordinates and times.
+     *
+     * @param x       The x coordinates.
+     * @param y       The y coordinates.
+     * @param z       The z coordinates.
+     * @param seconds The seconds since {@link Instant#EPOCH} of each point.
+     * @param nanos   The nanoseconds in the second of each point.
+     */
+    public void addPoints(double[] x, double[] y, double[] z, long[] seconds, int[] nanos) {
+        samples.ensureCapacity(samples.size() + x.length);
+        for (int i = 0; i < x.length; i++) {
+            samples.add(new PointSample(x[i], y[i], z[i], seconds[i], nanos[i]));
+        }
+    }
+
     public void addPoint(Vector3D point, Instant t) {
         samples.add(new PointSample(point, t));
     }
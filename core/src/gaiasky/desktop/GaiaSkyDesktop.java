@@ -32,6 +32,7 @@ import gaiasky.util.*;
 import gaiasky.util.Logger.Log;
 import gaiasky.util.Logger.LoggerLevel;
 import gaiasky.util.Settings.ElevationType;
+import gaiasky.util.bench.Benchmark;
 import gaiasky.util.camera.rec.Camcorder;
 import gaiasky.util.i18n.I18n;
 import net.jafama.FastMath;
@@ -43,6 +44,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Map;
 
 /**
@@ -137,6 +139,12 @@ public class GaiaSkyDesktop implements IObserver {
         // Set main thread name.
         Thread.currentThread().setName(Constants.MAIN_THREAD_NAME);
 
+        // Headless benchmark, which takes its own arguments and needs neither settings nor a window.
+        if (args.length > 0 && args[0].equals("--benchmark")) {
+            Benchmark.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         out = new PrintStream(System.out, true, StandardCharsets.UTF_8);
         cliArgs = new CLIArgs();
         JCommander jc = JCommander.newBuilder().addObject(cliArgs).build();
@@ -706,5 +714,9 @@ public class GaiaSkyDesktop implements IObserver {
                         "may report window width/height and mouse coordinates in a logical coordinate system at a lower resolution than the actual " +
                         "physical resolution. This setting allows you to specify whether you want to work in logical or raw pixel units.", order = 14)
         public HdpiMode hdpiMode = HdpiMode.Pixels;
+
+        @Parameter(names = {
+                "--benchmark"}, description = "Run the headless CPU benchmark instead of Gaia Sky. Must be the first argument, the rest are the benchmark options. Use '--benchmark --help' to list them.", order = 15)
+        public boolean benchmark;
     }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.desktop.util;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Files;
+import com.badlogic.gdx.files.FileHandle;
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import gaiasky.GaiaSky;
+import gaiasky.data.octreegen.OctreeGenerator;
+import gaiasky.desktop.GaiaSkyDesktop;
+import gaiasky.gui.main.ConsoleLogger;
+import gaiasky.util.Logger;
+import gaiasky.util.SettingsManager;
+import gaiasky.util.i18n.I18n;
+
+import java.io.FileInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Generates a level-of-detail octree dataset from star catalog files with {@link OctreeGenerator}.
+ */
+public class OctreeGeneratorRun {
+    private static final Logger.Log logger = Logger.getLogger(OctreeGeneratorRun.class);
+
+    /** CLI arguments. **/
+    private static CLIArgs cliArgs;
+
+    private static class CLIArgs {
+        @Parameter(names = {"-h", "--help"}, description = "Show program options and usage information.", help = true, order = 0)
+        private boolean help;
+
+        @Parameter(names = {"-i", "--input"}, description = "Input catalog file or directory. Binary files (.bin) are read with the binary provider, everything else with STIL.", required = true, order = 1)
+        private String input;
+
+        @Parameter(names = {"-o", "--output"}, description = "The output directory.", required = true, order = 2)
+        private String output;
+
+        @Parameter(names = {"--maxpart"}, description = "Maximum number of stars per octree node.", order = 3)
+        private int maxPart = 100_000;
+
+        @Parameter(names = {"--maxmem"}, description = "Maximum number of records per sorted run and per partition built in memory.", order = 4)
+        private int maxInMemory = 2_000_000;
+
+        @Parameter(names = {"-t", "--threads"}, description = "Number of worker threads.", order = 5)
+        private int threads = Runtime.getRuntime().availableProcessors();
+
+        @Parameter(names = {"--tmp"}, description = "Directory for temporary files. Defaults to the output directory.", order = 6)
+        private String tempDir;
+
+        @Parameter(names = {"-a", "--archive"}, description = "Pack the output into a tar.gz archive next to the output directory.", order = 7)
+        private boolean archive;
+    }
+
+    public static void main(String[] args) {
+        try {
+            Gdx.files = new Lwjgl3Files();
+            cliArgs = new CLIArgs();
+            JCommander jc = JCommander.newBuilder().addObject(cliArgs).build();
+            jc.setProgramName("octree-generator");
+            try {
+                jc.parse(args);
+
+                if (cliArgs.help) {
+                    jc.usage();
+                    return;
+                }
+            } catch (Exception e) {
+                logger.error("octree-generator: bad program arguments\n\n");
+                jc.usage();
+                return;
+            }
+
+            // Initialize settings
+            var manager = new SettingsManager();
+            var settings = manager.loadSettings(new FileInputStream("assets/conf/config.yaml"), new FileInputStream("assets/dummyversion"));
+            new GaiaSky(new GaiaSkyDesktop.CLIArgs(), settings);
+
+            I18n.initialize(settings, new FileHandle("assets/i18n/gsbundle"), new FileHandle("assets/i18n/objects"));
+
+            // Add notifications watch
+            new ConsoleLogger();
+
+            Path input = Path.of(cliArgs.input);
+            List<Path> inputs = new ArrayList<>();
+            if (Files.isDirectory(input)) {
+                try (Stream<Path> list = Files.list(input)) {
+                    list.filter(Files::isRegularFile).sorted().forEach(inputs::add);
+                }
+            } else {
+                inputs.add(input);
+            }
+            logger.info("Generating octree from " + inputs.size() + " files into " + cliArgs.output);
+
+            OctreeGenerator generator = new OctreeGenerator(inputs, Path.of(cliArgs.output));
+            generator.setMaxPart(cliArgs.maxPart);
+            generator.setMaxInMemory(cliArgs.maxInMemory);
+            generator.setThreads(cliArgs.threads);
+            generator.setArchive(cliArgs.archive);
+            if (cliArgs.tempDir != null) {
+                generator.setTempDir(Path.of(cliArgs.tempDir));
+            }
+            generator.run();
+        } catch (Exception e) {
+            logger.error(e);
+        }
+    }
+}
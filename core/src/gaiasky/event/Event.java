@@ -374,6 +374,11 @@ public enum Event {
     DEBUG_VRAM,
     /** Contains the current dynamic resolution level and the corresponding back buffer scale **/
     DEBUG_DYN_RES,
+    /**
+     * Contains the state of the background task executor, with an int array with the number of queued tasks, and two
+     * double arrays with the mean wait and run times of the tasks in milliseconds, indexed by priority class.
+     **/
+    DEBUG_TASKS,
     /**
      * Toggles whole GUI display. Contains the a boolean
      * with the state (display/no display) and the localised name.
@@ -46,6 +46,7 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.filefilter.WildcardFileFilter;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.FileAlreadyExistsException;
@@ -58,6 +59,7 @@ import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.zip.ZipException;
 
 /**
  * The dataset manager. Download, enable, disable and remove datasets.
@@ -1127,7 +1129,7 @@ public class DatasetManagerWindow extends GenericDialog {
                     @Override
                     public void changed(ChangeEvent event, Actor actor) {
                         if (request != null) {
-                            GaiaSky.postRunnable(() -> Gdx.net.cancelHttpRequest(request));
+                            GaiaSky.postRunnable(() -> DownloadHelper.cancelRequest(request));
                         }
                     }
                 });
@@ -1228,13 +1230,13 @@ public class DatasetManagerWindow extends GenericDialog {
                 logger.warn(I18n.msg("gui.download.error.progress"));
             }
         };
-        ProgressRunnable progressHashResume = (read, total, progress, speed) -> {
+        ProgressRunnable progressExtract = (read, total, progress, speed) -> {
             double readMb = (double) read / 1e6d;
             double totalMb = (double) total / 1e6d;
-            String progressString = progress >= 100 ? I18n.msg("gui.done") : I18n.msg("gui.download.checksum.check", nf.format(progress));
+            String progressString = progress >= 100 ? I18n.msg("gui.done") : I18n.msg("gui.download.extracting", nf.format(progress) + "%");
             double mbPerSecond = speed / 1000d;
             String speedString = nf.format(readMb) + "/" + nf.format(totalMb) + " MB (" + nf.format(mbPerSecond) + " MB/s)";
-            // Since we are downloading on a background thread, post a runnable to touch UI.
+            // Since we are extracting on a background thread, post a runnable to touch UI.
             GaiaSky.postRunnable(() -> EventManager.publish(Event.DATASET_DOWNLOAD_PROGRESS_INFO,
                                                             this,
                                                             dataset.key,
@@ -1244,127 +1246,95 @@ public class DatasetManagerWindow extends GenericDialog {
         };
 
         Consumer<String> finish = (digest) -> {
-            String errorMsg = null;
-            // Unpack.
-            int errors = 0;
-            logger.info(I18n.msg("gui.download.extracting", tempDownload.path()));
-            String dataLocation = GaiaSky.settings().data.location + File.separatorChar;
-            // Checksum.
-            if (digest != null && dataset.sha256 != null) {
-                String serverDigest = dataset.sha256;
-                try {
-                    boolean ok = serverDigest.equals(digest);
-                    if (ok) {
-                        logger.info(I18n.msg("gui.download.checksum.ok", name));
-                    } else {
-                        logger.error(I18n.msg("gui.download.checksum.fail", name));
-                        errorMsg = I18n.msg("gui.download.checksum.fail.msg");
-                        errors++;
-                        EventManager.publish(Event.POST_POPUP_NOTIFICATION, this, I18n.msg("gui.download.checksum.error", name), -1f);
-                    }
-                } catch (Exception e) {
-                    logger.info(I18n.msg("gui.download.checksum.error", name));
-                    errorMsg = I18n.msg("gui.download.checksum.fail.msg");
-                    errors++;
-                    EventManager.publish(Event.POST_POPUP_NOTIFICATION, this, I18n.msg("gui.download.checksum.error", name), -1f);
-                }
+            // The package is only installed if the digest matches, so at this point everything is done.
+            if (dataset.sha256 != null && !dataset.sha256.isBlank() && dataset.sha256.equalsIgnoreCase(digest)) {
+                logger.info(I18n.msg("gui.download.checksum.ok", name));
             } else {
                 logger.info(I18n.msg("gui.download.checksum.notfound", name));
                 EventManager.publish(Event.POST_POPUP_NOTIFICATION, this, I18n.msg("gui.download.checksum.notfound", name), -1f);
             }
+            // Remove archive.
+            DatasetDownloadUtils.cleanupTempFile(tempDownload.path());
 
-            if (errors == 0) {
-                try {
-                    // Extract.
-                    DatasetDownloadUtils.decompress(tempDownload.path(), new File(dataLocation), dataset);
-                } catch (Exception e) {
-                    logger.error(e, I18n.msg("gui.download.decompress.error", name));
-                    errorMsg = I18n.msg("gui.download.decompress.error.msg");
-                    errors++;
-                } finally {
-                    // Remove archive.
-                    DatasetDownloadUtils.cleanupTempFile(tempDownload.path());
-                }
-            }
-
-            String errorMessage = errorMsg;
-            int numErrors = errors;
             // Done.
             GaiaSky.postRunnable(() -> {
                 currentDownloads.remove(dataset.key);
 
-                if (numErrors == 0) {
-                    // Ok message.
-                    EventManager.publish(Event.DATASET_DOWNLOAD_FINISH_INFO, this, dataset.key, 0);
-                    dataset.exists = true;
-                    actionEnableDataset(dataset, null);
-                    if (successRunnable != null) {
-                        successRunnable.run();
-                    }
-                    resetSelectedDataset();
-                    EventManager.publish(Event.POST_POPUP_NOTIFICATION, this, I18n.msg("gui.download.finished", name), -1f);
-                    Timer.schedule(new Timer.Task() {
-                        @Override
-                        public void run() {
-                            reloadAll();
-                        }
-                    }, 0.5f);
-                } else {
-                    logger.error(I18n.msg("gui.download.failed", name + " - " + url));
-                    tempDownload.delete();
-                    setStatusError(dataset, errorMessage);
-                    currentDownloads.remove(dataset.key);
-                    resetSelectedDataset();
-                    EventManager.publish(Event.POST_POPUP_NOTIFICATION, this, I18n.msg("gui.download.failed", name), -1f);
-                    Timer.schedule(new Timer.Task() {
-                        @Override
-                        public void run() {
-                            reloadAll();
-                        }
-                    }, 1.5f);
+                // Ok message.
+                EventManager.publish(Event.DATASET_DOWNLOAD_FINISH_INFO, this, dataset.key, 0);
+                dataset.exists = true;
+                actionEnableDataset(dataset, null);
+                if (successRunnable != null) {
+                    successRunnable.run();
                 }
+                resetSelectedDataset();
+                EventManager.publish(Event.POST_POPUP_NOTIFICATION, this, I18n.msg("gui.download.finished", name), -1f);
+                Timer.schedule(new Timer.Task() {
+                    @Override
+                    public void run() {
+                        reloadAll();
+                    }
+                }, 0.5f);
             });
 
         };
 
-        Runnable fail = () -> {
+        Consumer<Exception> fail = (e) -> {
+            String errorMessage;
+            if (e instanceof DatasetInstallPipeline.DigestMismatchException) {
+                logger.error(I18n.msg("gui.download.checksum.fail", name));
+                errorMessage = I18n.msg("gui.download.checksum.fail.msg");
+                EventManager.publish(Event.POST_POPUP_NOTIFICATION, this, I18n.msg("gui.download.checksum.error", name), -1f);
+            } else if (e instanceof ZipException || e instanceof EOFException) {
+                logger.error(e, I18n.msg("gui.download.decompress.error", name));
+                errorMessage = I18n.msg("gui.download.decompress.error.msg");
+            } else {
+                errorMessage = null;
+            }
             logger.error(I18n.msg("gui.download.failed", name + " - " + url));
             tempDownload.delete();
-            setStatusError(dataset);
-            currentDownloads.remove(dataset.key);
-            resetSelectedDataset();
-            EventManager.publish(Event.POST_POPUP_NOTIFICATION, this, I18n.msg("gui.download.failed", name), -1f);
-            Timer.schedule(new Timer.Task() {
-                @Override
-                public void run() {
-                    reloadAll();
-                }
-            }, 1.5f);
+            GaiaSky.postRunnable(() -> {
+                setStatusError(dataset, errorMessage);
+                currentDownloads.remove(dataset.key);
+                resetSelectedDataset();
+                EventManager.publish(Event.POST_POPUP_NOTIFICATION, this, I18n.msg("gui.download.failed", name), -1f);
+                Timer.schedule(new Timer.Task() {
+                    @Override
+                    public void run() {
+                        reloadAll();
+                    }
+                }, 1.5f);
+            });
         };
 
         Runnable cancel = () -> {
             logger.error(I18n.msg("gui.download.cancelled", name + " - " + url));
-            setStatusCancelled(dataset);
-            currentDownloads.remove(dataset.key);
-            resetSelectedDataset();
-            EventManager.publish(Event.POST_POPUP_NOTIFICATION, this, I18n.msg("gui.download.cancelled", name), 10f);
-            Timer.schedule(new Timer.Task() {
-                @Override
-                public void run() {
-                    reloadAll();
-                }
-            }, 0.5f);
+            GaiaSky.postRunnable(() -> {
+                setStatusCancelled(dataset);
+                currentDownloads.remove(dataset.key);
+                resetSelectedDataset();
+                EventManager.publish(Event.POST_POPUP_NOTIFICATION, this, I18n.msg("gui.download.cancelled", name), 10f);
+                Timer.schedule(new Timer.Task() {
+                    @Override
+                    public void run() {
+                        reloadAll();
+                    }
+                }, 0.5f);
+            });
         };
 
-        // Download.
-        Net.HttpRequest request = DownloadHelper.downloadFile(url,
-                                                              tempDownload,
-                                                              GaiaSky.settings().program.offlineMode,
-                                                              progressDownload,
-                                                              progressHashResume,
-                                                              finish,
-                                                              fail,
-                                                              cancel);
+        // Download and extract.
+        String dataLocation = GaiaSky.settings().data.location + File.separatorChar;
+        Net.HttpRequest request = DownloadHelper.downloadAndExtract(url,
+                                                                    tempDownload,
+                                                                    new File(dataLocation),
+                                                                    dataset.sha256,
+                                                                    GaiaSky.settings().program.offlineMode,
+                                                                    progressDownload,
+                                                                    progressExtract,
+                                                                    finish,
+                                                                    fail,
+                                                                    cancel);
         GaiaSky.postRunnable(() -> EventManager.publish(Event.DATASET_DOWNLOAD_START_INFO, this, dataset.key, request));
         currentDownloads.put(dataset.key, new Pair<>(dataset, request));
 
@@ -1413,7 +1383,7 @@ public class DatasetManagerWindow extends GenericDialog {
                     Set<String> keys = copy.keySet();
                     for (String key : keys) {
                         Net.HttpRequest request = copy.get(key).getSecond();
-                        Gdx.net.cancelHttpRequest(request);
+                        DownloadHelper.cancelRequest(request);
                     }
                     if (this.acceptListener != null) {
                         this.acceptListener.run();
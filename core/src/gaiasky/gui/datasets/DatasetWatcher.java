@@ -7,7 +7,6 @@
 
 package gaiasky.gui.datasets;
 
-import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Net;
 import com.badlogic.gdx.scenes.scene2d.Actor;
 import com.badlogic.gdx.scenes.scene2d.ui.Skin;
@@ -17,6 +16,7 @@ import gaiasky.GaiaSky;
 import gaiasky.event.Event;
 import gaiasky.event.EventManager;
 import gaiasky.event.IObserver;
+import gaiasky.util.DownloadHelper;
 import gaiasky.util.datadesc.Dataset;
 import gaiasky.util.i18n.I18n;
 import gaiasky.util.scene2d.OwnLabel;
@@ -86,7 +86,7 @@ public class DatasetWatcher implements IObserver {
                                 @Override
                                 public void changed(ChangeEvent event, Actor actor) {
                                     if (request != null) {
-                                        GaiaSky.postRunnable(() -> Gdx.net.cancelHttpRequest(request));
+                                        GaiaSky.postRunnable(() -> DownloadHelper.cancelRequest(request));
                                     }
                                 }
                             });
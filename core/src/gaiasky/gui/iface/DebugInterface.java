@@ -21,6 +21,7 @@ import gaiasky.event.EventManager;
 import gaiasky.event.IObserver;
 import gaiasky.util.TextUtils;
 import gaiasky.util.color.ColorUtils;
+import gaiasky.util.concurrent.PriorityTaskExecutor.Priority;
 import gaiasky.util.i18n.I18n;
 import gaiasky.util.scene2d.Link;
 import gaiasky.util.scene2d.OwnImageButton;
@@ -28,6 +29,7 @@ import gaiasky.util.scene2d.OwnLabel;
 import gaiasky.util.scene2d.OwnTextTooltip;
 
 import java.text.DecimalFormat;
+import java.util.Locale;
 
 /**
  * Displays system metrics (runtime, frame rate, RAM usage, etc.) that are passed down through the
@@ -45,6 +47,7 @@ public class DebugInterface extends TableGuiInterface implements IObserver {
     private OwnLabel debugObjectsLoaded;
     private OwnLabel debugOcObserved;
     private OwnLabel debugOcQueue;
+    private OwnLabel[] debugTasks;
     private OwnLabel fps;
     private OwnLabel spf;
     private OwnLabel debugSamp;
@@ -86,6 +89,7 @@ public class DebugInterface extends TableGuiInterface implements IObserver {
                                         Event.DEBUG_OBJECTS,
                                         Event.DEBUG_QUEUE,
                                         Event.DEBUG_DYN_RES,
+                                        Event.DEBUG_TASKS,
                                         Event.FPS_INFO,
                                         Event.SHOW_DEBUG_CMD,
                                         Event.SAMP_INFO);
@@ -296,6 +300,24 @@ public class DebugInterface extends TableGuiInterface implements IObserver {
         extra.add(lodLabel).left().padBottom(groupSeparation);
         extra.row();
 
+        /* TASKS */
+        var priorities = Priority.values();
+        debugTasks = new OwnLabel[priorities.length];
+        Table tasksTable = new Table(skin);
+        for (int i = 0; i < priorities.length; i++) {
+            debugTasks[i] = new OwnLabel("", skin, "hud");
+            var name = I18n.msg("gui.debug.tasks." + priorities[i].name().toLowerCase(Locale.ROOT));
+            tasksTable.add(new OwnLabel(name, skin, "hud")).right().padRight(pad10);
+            tasksTable.add(debugTasks[i]).right().row();
+        }
+
+        Label tasksLabel = new OwnLabel(I18n.msg("gui.debug.tasks"), skin, "hud-big");
+        tasksLabel.addListener(new OwnTextTooltip(I18n.msg("gui.debug.tasks.info"), skin));
+        tasksLabel.setColor(skin.getColor("theme"));
+        extra.add(tasksTable).right().padRight(pad10).padBottom(groupSeparation);
+        extra.add(tasksLabel).left().padBottom(groupSeparation);
+        extra.row();
+
         /* DYN RES */
         debugDynRes = new OwnLabel("", skin, "hud");
         Label dynResLabel = new OwnLabel(I18n.msg("gui.debug.dynres.short"), skin, "hud-big");
@@ -398,6 +420,17 @@ public class DebugInterface extends TableGuiInterface implements IObserver {
                         debugOcQueue.setText(queueSize);
                     }
                 }
+                case DEBUG_TASKS -> {
+                    if (debug && data.length > 2) {
+                        int[] depth = (int[]) data[0];
+                        double[] wait = (double[]) data[1];
+                        double[] run = (double[]) data[2];
+                        String unit = " " + I18n.msg("gui.debug.ms");
+                        for (int i = 0; i < debugTasks.length && i < depth.length; i++) {
+                            debugTasks[i].setText(depth[i] + " | " + fpsFormatter.format(wait[i]) + unit + " | " + fpsFormatter.format(run[i]) + unit);
+                        }
+                    }
+                }
                 case DEBUG_DYN_RES -> {
                     if (debug && data.length > 0) {
                         debugDynRes.setText("L" + data[0] + ": " + fpsFormatter.format(data[1]));
@@ -42,6 +42,7 @@ import gaiasky.util.*;
 import gaiasky.util.Logger;
 import gaiasky.util.Logger.Log;
 import gaiasky.util.color.ColorUtils;
+import gaiasky.util.concurrent.PriorityTaskExecutor.Priority;
 import gaiasky.util.datadesc.Dataset;
 import gaiasky.util.datadesc.DatasetGroup;
 import gaiasky.util.datadesc.DatasetUtils;
@@ -130,7 +131,7 @@ public class WelcomeGui extends AbstractGui {
             fsCheck.setAcceptListener(() -> {
                 // Clean old datasets in a thread in the background.
                 GaiaSky.instance.getExecutorService()
-                        .execute(DatasetUtils::cleanDataLocationOldDatasets);
+                        .execute(DatasetUtils::cleanDataLocationOldDatasets, Priority.BULK);
                 // Continue immediately.
                 continueWelcomeGui01();
             });
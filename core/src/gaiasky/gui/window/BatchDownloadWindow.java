@@ -20,17 +20,20 @@ import gaiasky.gui.datasets.DatasetWatcher;
 import gaiasky.util.*;
 import gaiasky.util.datadesc.Dataset;
 import gaiasky.util.datadesc.DatasetDownloadUtils;
+import gaiasky.util.datadesc.DatasetInstallPipeline;
 import gaiasky.util.i18n.I18n;
 import gaiasky.util.scene2d.OwnLabel;
 import gaiasky.util.scene2d.OwnProgressBar;
 import org.apache.commons.io.FilenameUtils;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.text.DecimalFormat;
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.zip.ZipException;
 
 /**
  * A window that downloads a list of datasets ({@link Dataset}) sequentially.
@@ -167,112 +170,80 @@ public class BatchDownloadWindow extends GenericDialog {
                 logger.warn(I18n.msg("gui.download.error.progress"));
             }
         };
-        ProgressRunnable progressHashResume = (read, total, progress, speed) -> {
+        ProgressRunnable progressExtract = (read, total, progress, speed) -> {
             double readMb = (double) read / 1e6d;
             double totalMb = (double) total / 1e6d;
-            String progressString = progress >= 100 ? I18n.msg("gui.done") : I18n.msg("gui.download.checksum.check", nf.format(progress));
+            String progressString = progress >= 100 ? I18n.msg("gui.done") : I18n.msg("gui.download.extracting", nf.format(progress) + "%");
             double mbPerSecond = speed / 1000d;
             String speedString = nf.format(readMb) + "/" + nf.format(totalMb) + " MB (" + nf.format(mbPerSecond) + " MB/s)";
-            // Since we are downloading on a background thread, post a runnable to touch UI.
+            // Since we are extracting on a background thread, post a runnable to touch UI.
             GaiaSky.postRunnable(() -> {
                 EventManager.publish(Event.DATASET_DOWNLOAD_PROGRESS_INFO, this, dataset.key, (float) progress, progressString, speedString);
             });
         };
 
         Consumer<String> finish = (digest) -> {
-            String errorMsg = null;
-            // Unpack.
-            int errors = 0;
-            logger.info(I18n.msg("gui.download.extracting", tempDownload.path()));
-            String dataLocation = GaiaSky.settings().data.location + File.separatorChar;
-            // Checksum.
-            if (digest != null && dataset.sha256 != null) {
-                String serverDigest = dataset.sha256;
-                try {
-                    var ok = serverDigest.equals(digest);
-                    if (ok) {
-                        logger.info(I18n.msg("gui.download.checksum.ok", name));
-                    } else {
-                        logger.error(I18n.msg("gui.download.checksum.fail", name));
-                        errorMsg = I18n.msg("gui.download.checksum.fail.msg");
-                        errors++;
-                        EventManager.publish(Event.POST_POPUP_NOTIFICATION, this, I18n.msg("gui.download.checksum.error", name), -1f);
-                    }
-                } catch (Exception e) {
-                    logger.info(I18n.msg("gui.download.checksum.error", name));
-                    errorMsg = I18n.msg("gui.download.checksum.fail.msg");
-                    errors++;
-                    EventManager.publish(Event.POST_POPUP_NOTIFICATION, this, I18n.msg("gui.download.checksum.error", name), -1f);
-                }
+            // The package is only installed if the digest matches, so at this point everything is done.
+            if (dataset.sha256 != null && !dataset.sha256.isBlank() && dataset.sha256.equalsIgnoreCase(digest)) {
+                logger.info(I18n.msg("gui.download.checksum.ok", name));
             } else {
                 logger.info(I18n.msg("gui.download.checksum.notfound", name));
                 EventManager.publish(Event.POST_POPUP_NOTIFICATION, this, I18n.msg("gui.download.checksum.notfound", name), -1f);
             }
+            // Set to 100% completion.
+            EventManager.publish(Event.DATASET_DOWNLOAD_PROGRESS_INFO, this, dataset.key, (float) 100, "complete", "-");
+            // Remove archive.
+            DatasetDownloadUtils.cleanupTempFile(tempDownload.path());
 
-            if (errors == 0) {
-                try {
-                    // Extract.
-                    DatasetDownloadUtils.decompress(tempDownload.path(), new File(dataLocation), dataset);
-                } catch (Exception e) {
-                    logger.error(e, I18n.msg("gui.download.decompress.error", name));
-                    errorMsg = I18n.msg("gui.download.decompress.error.msg");
-                    errors++;
-                } finally {
-                    // Set to 100% completion.
-                    EventManager.publish(Event.DATASET_DOWNLOAD_PROGRESS_INFO, this, dataset.key, (float) 100, "complete", "-");
-                    // Remove archive.
-                    DatasetDownloadUtils.cleanupTempFile(tempDownload.path());
-                }
-            }
-
-            String errorMessage = errorMsg;
-            int numErrors = errors;
             // Done.
             GaiaSky.postRunnable(() -> {
                 currentDownloads.remove(dataset.key);
-
-                if (numErrors == 0) {
-                    // Ok message.
-                    EventManager.publish(Event.DATASET_DOWNLOAD_FINISH_INFO, this, dataset.key, 0);
-                    dataset.exists = true;
-                    actionEnableDataset(dataset);
-                    if (successRunnable != null) {
-                        successRunnable.run();
-                    }
-                    EventManager.publish(Event.POST_POPUP_NOTIFICATION, this, I18n.msg("gui.download.finished", name), -1f);
-                } else {
-                    logger.error(I18n.msg("gui.download.failed", name + " - " + url));
-                    tempDownload.delete();
-                    setStatusError(dataset, errorMessage);
-                    currentDownloads.remove(dataset.key);
-                    EventManager.publish(Event.POST_POPUP_NOTIFICATION, this, I18n.msg("gui.download.failed", name), -1f);
-                    // Main error runnable.
-                    if (error != null) {
-                        error.run();
-                    }
+                // Ok message.
+                EventManager.publish(Event.DATASET_DOWNLOAD_FINISH_INFO, this, dataset.key, 0);
+                dataset.exists = true;
+                actionEnableDataset(dataset);
+                if (successRunnable != null) {
+                    successRunnable.run();
                 }
+                EventManager.publish(Event.POST_POPUP_NOTIFICATION, this, I18n.msg("gui.download.finished", name), -1f);
             });
 
         };
 
-        Runnable fail = () -> {
+        Consumer<Exception> fail = (e) -> {
+            String errorMessage;
+            if (e instanceof DatasetInstallPipeline.DigestMismatchException) {
+                logger.error(I18n.msg("gui.download.checksum.fail", name));
+                errorMessage = I18n.msg("gui.download.checksum.fail.msg");
+                EventManager.publish(Event.POST_POPUP_NOTIFICATION, this, I18n.msg("gui.download.checksum.error", name), -1f);
+            } else if (e instanceof ZipException || e instanceof EOFException) {
+                logger.error(e, I18n.msg("gui.download.decompress.error", name));
+                errorMessage = I18n.msg("gui.download.decompress.error.msg");
+            } else {
+                errorMessage = null;
+            }
             logger.error(I18n.msg("gui.download.failed", name + " - " + url));
             tempDownload.delete();
-            setStatusError(dataset);
-            currentDownloads.remove(dataset.key);
-            EventManager.publish(Event.POST_POPUP_NOTIFICATION, this, I18n.msg("gui.download.failed", name), -1f);
-            // Run main error runnable.
-            if (error != null) {
-                error.run();
-            }
+            GaiaSky.postRunnable(() -> {
+                setStatusError(dataset, errorMessage);
+                currentDownloads.remove(dataset.key);
+                EventManager.publish(Event.POST_POPUP_NOTIFICATION, this, I18n.msg("gui.download.failed", name), -1f);
+                // Run main error runnable.
+                if (error != null) {
+                    error.run();
+                }
+            });
         };
 
-        // Download.
-        Net.HttpRequest request = DownloadHelper.downloadFile(url,
+        // Download and extract.
+        String dataLocation = GaiaSky.settings().data.location + File.separatorChar;
+        Net.HttpRequest request = DownloadHelper.downloadAndExtract(url,
                                                                     tempDownload,
+                                                                    new File(dataLocation),
+                                                                    dataset.sha256,
                                                                     GaiaSky.settings().program.offlineMode,
                                                                     progressDownload,
-                                                                    progressHashResume,
+                                                                    progressExtract,
                                                                     finish,
                                                                     fail,
                                                                     null);
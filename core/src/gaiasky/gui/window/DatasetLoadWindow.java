@@ -27,6 +27,7 @@ import gaiasky.util.DatasetCard;
 import gaiasky.util.Logger;
 import gaiasky.util.Settings;
 import gaiasky.util.SysUtils;
+import gaiasky.util.concurrent.PriorityTaskExecutor.Priority;
 import gaiasky.util.datadesc.DatasetDownloadUtils;
 import gaiasky.util.datadesc.Dataset;
 import gaiasky.util.datadesc.DatasetGroup;
@@ -290,7 +291,7 @@ public class DatasetLoadWindow extends GenericDialog {
                                                          this,
                                                          I18n.msg("gui.dsload.success", result.toAbsolutePath()));
                                 }
-                            });
+                            }, Priority.BULK);
                         } else {
                             DatasetLoadDialog dld = new DatasetLoadDialog(I18n.msg("gui.dsload.title") + ": " + fileName,
                                                                                 fileName,
@@ -331,7 +332,7 @@ public class DatasetLoadWindow extends GenericDialog {
                                 } else {
                                     EventManager.publish(Event.POST_POPUP_NOTIFICATION, this, I18n.msg("gui.dsload.fail", result.toAbsolutePath()));
                                 }
-                            });
+                            }, Priority.BULK);
                             dld.setAcceptListener(doLoad);
                             dld.show(stage);
                         }
@@ -381,7 +382,7 @@ public class DatasetLoadWindow extends GenericDialog {
                                              this,
                                              I18n.msg("gui.dsload.success", selectedDataset.checkPath.toAbsolutePath()));
                     }
-                });
+                }, Priority.BULK);
             } else {
                 logger.warn("Nothing to load. Accept button should be disabled!");
             }
@@ -37,6 +37,7 @@ import gaiasky.util.Logger;
 import gaiasky.util.Logger.Log;
 import gaiasky.util.TextUtils;
 import gaiasky.util.color.ColorUtils;
+import gaiasky.util.concurrent.PriorityTaskExecutor.Priority;
 import gaiasky.util.i18n.I18n;
 import gaiasky.util.scene2d.OwnLabel;
 import gaiasky.util.scene2d.OwnTextField;
@@ -45,6 +46,7 @@ import java.util.Locale;
 import java.util.Optional;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class SearchDialog extends GenericDialog {
     private static final Log logger = Logger.getLogger(SearchDialog.class);
@@ -56,7 +58,8 @@ public class SearchDialog extends GenericDialog {
     private final FilterView filterView;
     private final Vector2 aux;
     private final boolean suggestions;
-    private final Array<Task> tasks;
+    /** Abort flag of the running search, if any. **/
+    private AtomicBoolean searchAbort;
     private OwnTextField searchInput;
     private String currentInputText = "";
     private Cell<?> infoCell;
@@ -70,7 +73,6 @@ public class SearchDialog extends GenericDialog {
         this.aux = new Vector2();
         this.matching = new TreeSet<>();
         this.matchingLabels = new Array<>(10);
-        this.tasks = new Array<>(20);
         this.view = new FocusView();
         this.filterView = new FilterView();
 
@@ -118,6 +120,8 @@ public class SearchDialog extends GenericDialog {
                     if (code == Keys.ESCAPE || code == Keys.ENTER) {
                         if (cIdx >= 0) {
                             checkString(searchInput.getText(), scene);
+                        } else if (code == Keys.ENTER) {
+                            focusWhenLoaded(searchInput.getText());
                         }
                         removeCandidates();
                         me.remove();
@@ -136,66 +140,39 @@ public class SearchDialog extends GenericDialog {
                             currentInputText = searchInput.getText();
                             String name = currentInputText.toLowerCase(Locale.ROOT).trim();
 
-                            // New task
-                            Task task = new Task() {
-                                public void run() {
-                                    synchronized (matching) {
-                                        matchingNodes(name, scene);
-
-                                        if (!matching.isEmpty()) {
-                                            cIdx = -1;
-                                            candidates.clear();
-                                            matching.forEach(match -> {
-                                                OwnLabel m = new OwnLabel(match, skin);
-                                                m.addListener((evt) -> {
-                                                    if (evt instanceof InputEvent iEvt) {
-                                                        if (iEvt.getType() == Type.touchDown) {
-                                                            checkString(match, scene);
-                                                            searchInput.setText(match);
-                                                            accept();
-                                                            return true;
-                                                        }
-                                                    }
-                                                    return false;
-                                                });
-                                                matchingLabels.add(m);
-                                                m.setWidth(searchInput.getWidth());
-                                                Cell<?> c = candidates.add(m).left().padBottom(pad10);
-                                                c.row();
-                                            });
-                                            candidates.pack();
-                                            searchInput.localToStageCoordinates(aux.set(0, 0));
-                                            candidates.setPosition(aux.x, aux.y, Align.topLeft);
-                                            stage.addActor(candidates);
-                                        } else {
-                                            removeCandidates();
-                                        }
+                            // New search, which supersedes the queued one, and aborts the running one.
+                            if (searchAbort != null) {
+                                searchAbort.set(true);
+                            }
+                            var abort = new AtomicBoolean();
+                            searchAbort = abort;
+                            GaiaSky.instance.getExecutorService().supersede(SearchDialog.this, () -> {
+                                SortedSet<String> results = new TreeSet<>();
+                                scene.matchingFocusableNodes(name, results, 10, abort);
+                                GaiaSky.postRunnable(() -> {
+                                    if (!abort.get()) {
+                                        showMatches(results);
                                     }
-                                }
-                            };
-                            // Cancel others
-                            cancelTasks();
-                            tasks.add(task);
-                            // Schedule with delay
-                            Timer.schedule(task, 0.5f);
+                                });
+                            }, Priority.INTERACTIVE);
 
                             // Actually check and select
                             if (!checkString(name, scene)) {
                                 if (name.matches("[0-9]+")) {
                                     // Check with 'HIP '
                                     if (checkString("hip " + name, scene)) {
-                                        cancelTasks();
+                                        cancelSearch();
                                         removeCandidates();
                                     }
                                 } else if (name.matches("hip [0-9]+") || name.matches("HIP [0-9]+")) {
                                     // Check without 'HIP '
                                     if (checkString(name.substring(4), scene)) {
-                                        cancelTasks();
+                                        cancelSearch();
                                         removeCandidates();
                                     }
                                 }
                             } else {
-                                cancelTasks();
+                                cancelSearch();
                                 removeCandidates();
                             }
                             return true;
@@ -219,7 +196,7 @@ public class SearchDialog extends GenericDialog {
 
     @Override
     public boolean accept() {
-        cancelTasks();
+        cancelSearch();
         removeCandidates();
         info(null);
         return true;
@@ -230,14 +207,48 @@ public class SearchDialog extends GenericDialog {
         // Unused
     }
 
-    private void cancelTasks() {
-        // Cancel tasks
-        if (!tasks.isEmpty()) {
-            for (Task t : tasks) {
-                t.cancel();
-            }
+    /** Cancels the queued search, and aborts the running one. **/
+    private void cancelSearch() {
+        GaiaSky.instance.getExecutorService().cancel(this);
+        if (searchAbort != null) {
+            searchAbort.set(true);
+            searchAbort = null;
+        }
+    }
+
+    /** Shows the candidates of the last search. **/
+    private void showMatches(SortedSet<String> results) {
+        matching.clear();
+        matching.addAll(results);
+        matchingLabels.clear();
+        if (!matching.isEmpty()) {
+            cIdx = -1;
+            candidates.clear();
+            matching.forEach(match -> {
+                OwnLabel m = new OwnLabel(match, skin);
+                m.addListener((evt) -> {
+                    if (evt instanceof InputEvent iEvt) {
+                        if (iEvt.getType() == Type.touchDown) {
+                            checkString(match, scene);
+                            searchInput.setText(match);
+                            accept();
+                            return true;
+                        }
+                    }
+                    return false;
+                });
+                matchingLabels.add(m);
+                m.setWidth(searchInput.getWidth());
+                Cell<?> c = candidates.add(m).left().padBottom(pad10);
+                c.row();
+            });
+            candidates.pack();
+            searchInput.localToStageCoordinates(aux.set(0, 0));
+            candidates.setPosition(aux.x, aux.y, Align.topLeft);
+            stage.addActor(candidates);
+        } else {
+            removeCandidates();
         }
-        tasks.clear();
     }
 
     private void removeCandidates() {
@@ -260,12 +271,6 @@ public class SearchDialog extends GenericDialog {
         }
     }
 
-    private void matchingNodes(String text, Scene scene) {
-        matching.clear();
-        matchingLabels.clear();
-        scene.matchingFocusableNodes(text, matching, 10, null);
-    }
-
     private Array<ComponentTypes.ComponentType> getInvisible(ComponentTypes ct) {
         Array<ComponentTypes.ComponentType> invisible = new Array<>();
         var values = ComponentTypes.ComponentType.values();
@@ -340,6 +345,27 @@ public class SearchDialog extends GenericDialog {
         return false;
     }
 
+    /**
+     * If the object with the given name is in an octant of an octree dataset that is not loaded, loads the octant and
+     * selects the object once it is in the index.
+     *
+     * @param text The text to look up.
+     */
+    private void focusWhenLoaded(String text) {
+        var name = text.toLowerCase(Locale.ROOT).trim();
+        if (!name.isEmpty() && !scene.index().containsEntity(name) && scene.index().loadOctant(name)) {
+            Timer.schedule(new Task() {
+                @Override
+                public void run() {
+                    if (scene.index().containsEntity(name)) {
+                        checkString(name, scene);
+                        cancel();
+                    }
+                }
+            }, 0.5f, 0.5f, 20);
+        }
+    }
+
     private void info(String info) {
         if (info == null) {
             infoMessage.setText("");
@@ -102,4 +102,12 @@ public interface ISceneRenderer {
      * @param full Whether to return the render lists for the full- or the half-resolution buffer.
      **/
     List<List<IRenderable>> getRenderLists(boolean full);
+
+    /**
+     * Returns the render lists that the extract systems fill for the next frame. They become the render lists in
+     * the next swap.
+     *
+     * @param full Whether to return the lists for the full- or the half-resolution buffer.
+     **/
+    List<List<IRenderable>> getExtractLists(boolean full);
 }
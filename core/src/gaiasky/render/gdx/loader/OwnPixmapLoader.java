@@ -29,6 +29,19 @@ public class OwnPixmapLoader extends PixmapLoader {
         super(resolver);
     }
 
+    /**
+     * Decodes the given image file, in the calling thread.
+     *
+     * @param file The image file.
+     *
+     * @return The pixmap.
+     */
+    public static Pixmap load(FileHandle file) {
+        var loader = new OwnPixmapLoader(null);
+        loader.loadAsync(null, file.name(), file, new PixmapParameter());
+        return loader.loadSync(null, null, null, null);
+    }
+
     @Override
     public void loadAsync(AssetManager manager, String fileName, FileHandle file, PixmapParameter parameter) {
         if (file.extension().equalsIgnoreCase("jxl")) {
@@ -11,7 +11,6 @@ import com.badlogic.gdx.assets.AssetDescriptor;
 import com.badlogic.gdx.assets.AssetManager;
 import com.badlogic.gdx.assets.loaders.AsynchronousAssetLoader;
 import com.badlogic.gdx.assets.loaders.FileHandleResolver;
-import com.badlogic.gdx.assets.loaders.PixmapLoader.PixmapParameter;
 import com.badlogic.gdx.assets.loaders.TextureLoader;
 import com.badlogic.gdx.assets.loaders.TextureLoader.TextureParameter;
 import com.badlogic.gdx.files.FileHandle;
@@ -131,14 +130,16 @@ public class OwnTextureLoader extends AsynchronousAssetLoader<Texture, TexturePa
             } else if (file.name().endsWith(".jxl")) {
                 return new BufferedImageTextureData(file, useMipMaps);
             } else {
+                var cached = TextureCache.load(file, format, useMipMaps);
+                if (cached != null) {
+                    return cached;
+                }
                 return new FileTextureData(file, loadPixmap(file), format, useMipMaps);
             }
         }
 
         private static Pixmap loadPixmap(FileHandle file) {
-            var pixLoader = new OwnPixmapLoader(null);
-            pixLoader.loadAsync(null, file.name(), file, new PixmapParameter());
-            return pixLoader.loadSync(null, null, null, null);
+            return OwnPixmapLoader.load(file);
         }
 
     }
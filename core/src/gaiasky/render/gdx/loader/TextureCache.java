@@ -0,0 +1,520 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.render.gdx.loader;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import gaiasky.util.Logger;
+import gaiasky.util.Logger.Log;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * On-disk cache of decoded textures for {@link OwnTextureLoader}. Each entry holds the raw pixels of a source image
+ * (JPG, PNG, etc.) in its final pixel format, with all its mipmap levels, so that later loads skip the image decoding
+ * and the mipmap generation. Entries are memory-mapped and uploaded level by level.
+ * <p>
+ * Entries are keyed by a fingerprint of the source file (path, size, modification time and its first and last bytes)
+ * and of the pixel format and mipmap flag. There is one entry per source and options, so a modified source misses the
+ * cache and overwrites the entry. Entries for cache misses are written by a pool of background workers, which decode
+ * the source again, so that the load in progress is not delayed.
+ * <p>
+ * Entries are not compressed. Raw levels can be mapped and uploaded without copying, and decompressing large textures
+ * would cost about as much as decoding the source again.
+ * <p>
+ * The cache is kept under a size budget, see {@link #setMaxBytes(long)}. The modification time of an entry is set
+ * when it is read, and after each write the least recently used entries are evicted until the cache fits. Entries
+ * that do not match their source anymore are deleted when they are read.
+ */
+public final class TextureCache {
+    private static final Log logger = Logger.getLogger(TextureCache.class);
+
+    /** Bump when the layout of the cache files changes. **/
+    private static final int VERSION = 1;
+    private static final int MAGIC = 0x47535458;
+    /** Number of bytes from the start and the end of the source that go into the fingerprint. **/
+    private static final int SAMPLE_BYTES = 64 * 1024;
+    /** Key length, SHA-256. **/
+    private static final int KEY_LENGTH = 32;
+    /** Temporary files older than this, in milliseconds, are leftovers of interrupted writes. **/
+    private static final long STALE_TMP_MS = 60 * 60 * 1000;
+
+    /** Size budget of the cache, in bytes. **/
+    private static volatile long maxBytes = 2L * 1024 * 1024 * 1024;
+
+    /** The cache directory. Null if the cache is disabled. **/
+    private static volatile Path directory;
+    private static ExecutorService workers;
+    /** Entries being written. **/
+    private static final Set<Path> pending = ConcurrentHashMap.newKeySet();
+
+    private final Path file;
+    private final byte[] key;
+    private final Format format;
+    private final boolean mipmaps;
+
+    private TextureCache(Path file, byte[] key, Format format, boolean mipmaps) {
+        this.file = file;
+        this.key = key;
+        this.format = format;
+        this.mipmaps = mipmaps;
+    }
+
+    /**
+     * Enables the cache in the given directory, or disables it if the directory is null.
+     *
+     * @param dir The cache directory, or null.
+     */
+    public static void setDirectory(Path dir) {
+        directory = dir;
+    }
+
+    public static Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Sets the size budget of the cache.
+     *
+     * @param bytes The maximum size of all the entries, in bytes.
+     */
+    public static void setMaxBytes(long bytes) {
+        maxBytes = Math.max(0, bytes);
+    }
+
+    /**
+     * Creates the cache entry handle for the given source and options. This reads the start and the end of the
+     * source to compute the fingerprint, but does not touch the cache directory.
+     *
+     * @param cacheDir The cache directory.
+     * @param source   The source image.
+     * @param format   The pixel format of the texture, or null to use the format of the source.
+     * @param mipmaps  Whether the texture has mipmaps.
+     *
+     * @return The cache entry handle.
+     *
+     * @throws IOException If the source can't be read.
+     */
+    public static TextureCache open(Path cacheDir, Path source, Format format, boolean mipmaps) throws IOException {
+        Path path = source.toAbsolutePath().normalize();
+        MessageDigest md = sha256();
+        String name = "tex-" + HexFormat.of().formatHex(md.digest(path.toString().getBytes(StandardCharsets.UTF_8)), 0, 12)
+                + "-" + (format == null ? "src" : format.name().toLowerCase()) + (mipmaps ? "-mip" : "");
+
+        md.reset();
+        try (DataOutputStream out = new DataOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), md))) {
+            out.writeInt(VERSION);
+            out.writeUTF(path.toString());
+            long size = Files.size(path);
+            out.writeLong(size);
+            out.writeLong(Files.getLastModifiedTime(path).toMillis());
+            try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+                sample(fc, 0, size, out);
+                if (size > SAMPLE_BYTES) {
+                    sample(fc, size - SAMPLE_BYTES, size, out);
+                }
+            }
+            out.writeUTF(format == null ? "" : format.name());
+            out.writeBoolean(mipmaps);
+        }
+        return new TextureCache(cacheDir.resolve(name + ".tex"), md.digest(), format, mipmaps);
+    }
+
+    private static void sample(FileChannel fc, long from, long size, OutputStream out) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) Math.min(SAMPLE_BYTES, size - from));
+        while (buf.hasRemaining()) {
+            if (fc.read(buf, from + buf.position()) < 0) {
+                break;
+            }
+        }
+        out.write(buf.array(), 0, buf.position());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Loads the texture data of the given source from the cache, if the cache is enabled. On a miss, the entry is
+     * scheduled to be written in the background.
+     *
+     * @param file    The source image.
+     * @param format  The pixel format, or null.
+     * @param mipmaps Whether the texture has mipmaps.
+     *
+     * @return The texture data, or null if the cache is disabled or does not have the entry.
+     */
+    static TextureData load(FileHandle file, Format format, boolean mipmaps) {
+        Path dir = directory;
+        if (dir == null || file == null) {
+            return null;
+        }
+        try {
+            Path source = file.file().toPath();
+            if (!Files.isRegularFile(source)) {
+                return null;
+            }
+            TextureCache cache = open(dir, source, format, mipmaps);
+            Data data = cache.read();
+            if (data == null) {
+                cache.writeAsync(source);
+            }
+            return data;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Texture cache unavailable for " + file.path() + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the cache entry.
+     *
+     * @return The texture data, or null if the entry does not exist, belongs to a different source or options, or
+     * can't be read.
+     */
+    public Data read() {
+        if (!Files.isRegularFile(file) || pending.contains(file)) {
+            return null;
+        }
+        Data data = null;
+        try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mem = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+            mem.order(ByteOrder.BIG_ENDIAN);
+            if (mem.getInt() == MAGIC && mem.getInt() == VERSION) {
+                byte[] k = new byte[KEY_LENGTH];
+                mem.get(k);
+                if (Arrays.equals(k, key)) {
+                    data = readLevels(mem);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Error reading texture cache entry " + file + ": " + e);
+        }
+        try {
+            if (data == null) {
+                // Older layout, modified source or corrupt entry.
+                Files.deleteIfExists(file);
+            } else {
+                // Recently used.
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            }
+        } catch (IOException e) {
+            logger.debug("Could not update texture cache entry " + file + ": " + e);
+        }
+        return data;
+    }
+
+    private Data readLevels(MappedByteBuffer mem) {
+        Format fmt = Format.values()[mem.getInt()];
+        int levels = mem.getInt();
+        int[] widths = new int[levels], heights = new int[levels];
+        ByteBuffer[] pixels = new ByteBuffer[levels];
+        for (int l = 0; l < levels; l++) {
+            widths[l] = mem.getInt();
+            heights[l] = mem.getInt();
+            int length = mem.getInt();
+            pixels[l] = mem.slice(mem.position(), length).order(ByteOrder.nativeOrder());
+            mem.position(mem.position() + length);
+        }
+        return new Data(fmt, widths, heights, pixels, mipmaps);
+    }
+
+    private synchronized static ExecutorService workers() {
+        if (workers == null) {
+            int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+            workers = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "texture-cache-writer");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            });
+        }
+        return workers;
+    }
+
+    /**
+     * Decodes the source and writes the entry in a background worker.
+     *
+     * @param source The source image.
+     *
+     * @return The future of the write, or null if the entry is already being written.
+     */
+    public Future<?> writeAsync(Path source) {
+        if (!pending.add(file)) {
+            return null;
+        }
+        return workers().submit(() -> {
+            try {
+                Pixmap pixmap = OwnPixmapLoader.load(new FileHandle(source.toFile()));
+                try {
+                    write(pixmap);
+                } finally {
+                    pixmap.dispose();
+                }
+            } catch (IOException | GdxRuntimeException e) {
+                logger.warn("Could not cache texture " + source + ": " + e);
+            } finally {
+                pending.remove(file);
+            }
+        });
+    }
+
+    /**
+     * Writes the entry with the given decoded source. The pixmap is converted to the pixel format of the entry, and
+     * the mipmap levels are generated by successive halving with bilinear filtering.
+     *
+     * @param source The decoded source image. It is not disposed.
+     *
+     * @throws IOException If the entry can't be written.
+     */
+    public void write(Pixmap source) throws IOException {
+        Path dir = file.getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            Pixmap level = source;
+            if (format != null && format != source.getFormat()) {
+                level = convert(source, format);
+            }
+            int levels = mipmaps ? levels(level.getWidth(), level.getHeight()) : 1;
+            try (FileChannel fc = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer header = ByteBuffer.allocate(4 * 4 + KEY_LENGTH).order(ByteOrder.BIG_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).put(key).putInt(level.getFormat().ordinal()).putInt(levels).flip();
+                writeFully(fc, header);
+                for (int l = 0; l < levels; l++) {
+                    ByteBuffer pixels = level.getPixels().duplicate();
+                    pixels.clear();
+                    ByteBuffer levelHeader = ByteBuffer.allocate(12).order(ByteOrder.BIG_ENDIAN);
+                    levelHeader.putInt(level.getWidth()).putInt(level.getHeight()).putInt(pixels.remaining()).flip();
+                    writeFully(fc, levelHeader);
+                    writeFully(fc, pixels);
+                    if (l < levels - 1) {
+                        Pixmap next = halve(level);
+                        if (level != source) {
+                            level.dispose();
+                        }
+                        level = next;
+                    }
+                }
+            } finally {
+                if (level != source) {
+                    level.dispose();
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.debug("Cached texture in " + file);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        trim(dir, maxBytes);
+    }
+
+    /**
+     * Evicts the least recently used entries of the given directory until their total size is within the budget,
+     * and deletes the leftovers of interrupted writes. Entries being written are kept.
+     *
+     * @param dir      The cache directory.
+     * @param maxBytes The size budget, in bytes.
+     */
+    static synchronized void trim(Path dir, long maxBytes) {
+        record Entry(Path path, long size, long time) {
+        }
+        List<Entry> entries = new ArrayList<>();
+        long total = 0;
+        long now = System.currentTimeMillis();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path p : stream) {
+                String name = p.getFileName().toString();
+                long time = Files.getLastModifiedTime(p).toMillis();
+                if (name.endsWith(".tmp")) {
+                    if (now - time > STALE_TMP_MS) {
+                        Files.deleteIfExists(p);
+                    }
+                } else if (name.endsWith(".tex")) {
+                    long size = Files.size(p);
+                    entries.add(new Entry(p, size, time));
+                    total += size;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not list the texture cache " + dir + ": " + e);
+            return;
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        entries.sort(Comparator.comparingLong(Entry::time));
+        for (Entry e : entries) {
+            if (total <= maxBytes) {
+                break;
+            }
+            if (pending.contains(e.path)) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(e.path);
+                total -= e.size;
+            } catch (IOException ex) {
+                // Mapped by a texture on some platforms, try again next time.
+                logger.debug("Could not evict texture cache entry " + e.path + ": " + ex);
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel fc, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            fc.write(buf);
+        }
+    }
+
+    private static int levels(int width, int height) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(width, height));
+    }
+
+    private static Pixmap convert(Pixmap pixmap, Format format) {
+        Pixmap converted = new Pixmap(pixmap.getWidth(), pixmap.getHeight(), format);
+        converted.setBlending(Pixmap.Blending.None);
+        converted.drawPixmap(pixmap, 0, 0);
+        return converted;
+    }
+
+    private static Pixmap halve(Pixmap pixmap) {
+        int w = Math.max(1, pixmap.getWidth() / 2), h = Math.max(1, pixmap.getHeight() / 2);
+        Pixmap half = new Pixmap(w, h, pixmap.getFormat());
+        half.setBlending(Pixmap.Blending.None);
+        half.setFilter(Pixmap.Filter.BiLinear);
+        half.drawPixmap(pixmap, 0, 0, pixmap.getWidth(), pixmap.getHeight(), 0, 0, w, h);
+        return half;
+    }
+
+    /**
+     * Texture data backed by a mapped cache entry. All levels are uploaded directly from the mapping.
+     */
+    public static final class Data implements TextureData {
+        private final Format format;
+        private final int[] widths, heights;
+        private final ByteBuffer[] pixels;
+        private final boolean mipmaps;
+
+        Data(Format format, int[] widths, int[] heights, ByteBuffer[] pixels, boolean mipmaps) {
+            this.format = format;
+            this.widths = widths;
+            this.heights = heights;
+            this.pixels = pixels;
+            this.mipmaps = mipmaps;
+        }
+
+        public int getLevels() {
+            return pixels.length;
+        }
+
+        /**
+         * @param level The mipmap level.
+         *
+         * @return The pixels of the given level, read-only.
+         */
+        public ByteBuffer getPixels(int level) {
+            return pixels[level].duplicate();
+        }
+
+        public int getWidth(int level) {
+            return widths[level];
+        }
+
+        public int getHeight(int level) {
+            return heights[level];
+        }
+
+        @Override
+        public TextureDataType getType() {
+            return TextureDataType.Custom;
+        }
+
+        @Override
+        public boolean isPrepared() {
+            return true;
+        }
+
+        @Override
+        public void prepare() {
+        }
+
+        @Override
+        public Pixmap consumePixmap() {
+            throw new GdxRuntimeException("This TextureData implementation does not return a Pixmap");
+        }
+
+        @Override
+        public boolean disposePixmap() {
+            return false;
+        }
+
+        @Override
+        public void consumeCustomData(int target) {
+            int glFormat = Format.toGlFormat(format);
+            int glType = Format.toGlType(format);
+            Gdx.gl.glPixelStorei(GL20.GL_UNPACK_ALIGNMENT, 1);
+            for (int l = 0; l < pixels.length; l++) {
+                Gdx.gl.glTexImage2D(target, l, glFormat, widths[l], heights[l], 0, glFormat, glType, pixels[l].duplicate());
+            }
+        }
+
+        @Override
+        public int getWidth() {
+            return widths[0];
+        }
+
+        @Override
+        public int getHeight() {
+            return heights[0];
+        }
+
+        @Override
+        public Format getFormat() {
+            return format;
+        }
+
+        @Override
+        public boolean useMipMaps() {
+            return mipmaps;
+        }
+
+        @Override
+        public boolean isManaged() {
+            return true;
+        }
+    }
+}
@@ -7,6 +7,7 @@
 
 package gaiasky.render.gdx.model.gltf.loaders.glb;
 
+import com.badlogic.gdx.Files.FileType;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Pixmap;
@@ -21,14 +22,21 @@ import gaiasky.render.gdx.model.gltf.loaders.exceptions.GLTFRuntimeException;
 import gaiasky.render.gdx.model.gltf.loaders.shared.GLTFLoaderBase;
 import gaiasky.render.gdx.model.gltf.loaders.shared.data.DataFileResolver;
 import gaiasky.render.gdx.model.gltf.loaders.shared.texture.PixmapBinaryLoaderHack;
-import net.jafama.FastMath;
 
-import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 
+/**
+ * Resolves the data of binary glTF (GLB) files. Files on disk are mapped into memory, and the binary chunks are
+ * exposed as slices of the mapping, so that the data is never copied to the heap. Embedded images are decoded
+ * directly from their buffer views, and can be loaded concurrently.
+ */
 public class BinaryDataFileResolver implements DataFileResolver
 {
 	private final ObjectMap<Integer, ByteBuffer> bufferMap = new ObjectMap<>();
@@ -36,60 +44,63 @@ public class BinaryDataFileResolver implements DataFileResolver
 	
 	@Override
 	public void load(FileHandle file) {
-		load(file.read());
+		File f = file.type() != FileType.Classpath ? file.file() : null;
+		if(f != null && f.isFile()){
+			try(FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)){
+				if(channel.size() > Integer.MAX_VALUE) throw new GLTFIllegalException("GLB file too large: " + file);
+				// The mapping stays valid after the channel is closed.
+				load(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+			}catch(IOException e){
+				throw new GLTFRuntimeException(e);
+			}
+		}else{
+			load(file.readBytes());
+		}
 	}
 	
 	public void load(byte[] bytes){
-		load(new ByteArrayInputStream(bytes));
+		load(ByteBuffer.wrap(bytes));
 	}
 
 	public void load(InputStream stream) {
-		load(new LittleEndianInputStream(stream));
-	}
-	
-	public void load(LittleEndianInputStream stream) {
 		try {
-			loadInternal(stream);
-			
+			load(stream.readAllBytes());
 		} catch (IOException e) {
 			throw new GLTFRuntimeException(e);
 		}
 	}
 	
-	private void loadInternal(LittleEndianInputStream stream) throws IOException {
-		long magic = stream.readInt(); // & 0xFFFFFFFFL;
+	public void load(LittleEndianInputStream stream) {
+		load((InputStream) stream);
+	}
+	
+	/**
+	 * Parses the GLB in the given buffer. The binary chunks are slices of the buffer, so it must not be modified
+	 * afterwards.
+	 * @param data the contents of the GLB file, from its position to its limit.
+	 */
+	public void load(ByteBuffer data) {
+		ByteBuffer glb = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+		if(glb.remaining() < 12) throw new GLTFIllegalException("premature end of file");
+		long magic = glb.getInt(); // & 0xFFFFFFFFL;
 		if(magic != 0x46546C67) throw new GLTFIllegalException("bad magic");
-		int version = stream.readInt();
+		int version = glb.getInt();
 		if(version != 2) throw new GLTFIllegalException("bad version");
-		long length = stream.readInt();// & 0xFFFFFFFFL;
+		long length = glb.getInt() & 0xFFFFFFFFL;
+		if(length > glb.limit()) throw new GLTFIllegalException("premature end of file");
 		
-		byte[] buffer = new byte[1024 * 1024]; // 1MB buffer
 		String jsonData = null;
 		for(int i=12 ; i<length ; ){
-			int chunkLen = stream.readInt();
-			int chunkType = stream.readInt();
+			int chunkLen = glb.getInt(i);
+			int chunkType = glb.getInt(i + 4);
 			i += 8;			// chunkLen % 4;
+			if(chunkLen < 0 || i + chunkLen > length) throw new GLTFIllegalException("premature end of file");
 			if(chunkType == 0x4E4F534A){
-				byte[] data = new byte[(int)chunkLen];
-				stream.readFully(data, 0, chunkLen);
-				jsonData = new String(data);
+				jsonData = StandardCharsets.UTF_8.decode(glb.slice(i, chunkLen)).toString();
 			}else if(chunkType == 0x004E4942){
-				ByteBuffer bufferData = ByteBuffer.allocate(chunkLen);
-				bufferData.order(ByteOrder.LITTLE_ENDIAN);
-				int bytesToRead = chunkLen;
-				int bytesRead;
-				while (bytesToRead > 0 && (bytesRead = stream.read(buffer, 0, FastMath.min(buffer.length, bytesToRead))) != -1) {
-					bufferData.put(buffer, 0, bytesRead);
-					bytesToRead -= bytesRead;
-				}
-				if(bytesToRead > 0) throw new GLTFIllegalException("premature end of file");
-				bufferData.flip();
-				bufferMap.put(bufferMap.size, bufferData);
+				bufferMap.put(bufferMap.size, glb.slice(i, chunkLen).order(ByteOrder.LITTLE_ENDIAN));
 			}else{
 				Gdx.app.log(GLTFLoaderBase.TAG, "skip buffer type " + chunkType);
-				if(chunkLen > 0){
-					stream.skip(chunkLen);
-				}
 			}
 			i += chunkLen;
 		}
@@ -107,17 +118,18 @@ public class BinaryDataFileResolver implements DataFileResolver
 		return bufferMap.get(buffer);
 	}
 	
+	/**
+	 * Decodes an embedded image from its buffer view. This does not change the state of the buffers, so that several
+	 * images can be decoded concurrently.
+	 */
 	@Override
 	public Pixmap load(GLTFImage glImage) {
 		if(glImage.bufferView != null){
 			GLTFBufferView bufferView = glModel.bufferViews.get(glImage.bufferView);
 			ByteBuffer buffer = bufferMap.get(bufferView.buffer);
-			buffer.position(bufferView.byteOffset);
-			byte [] data = new byte[bufferView.byteLength];
-			buffer.get(data);
-			return PixmapBinaryLoaderHack.load(data, 0, data.length);
+			return PixmapBinaryLoaderHack.load(buffer, bufferView.byteOffset, bufferView.byteLength);
 		}else{
 			throw new GLTFIllegalException("GLB image should have bufferView");
 		}
 	}
-}
\ No newline at end of file
+}
@@ -95,11 +95,8 @@ public class SeparatedDataFileResolver implements DataFileResolver {
             if (glImage.mimeType.equals("image/png") || glImage.mimeType.equals("image/jpeg")) {
                 GLTFBufferView bufferView = glModel.bufferViews.get(glImage.bufferView);
                 ByteBuffer data = bufferMap.get(bufferView.buffer, null);
-                byte[] bytes = new byte[bufferView.byteLength];
-                data.position(bufferView.byteOffset);
-                data.get(bytes, 0, bufferView.byteLength);
-                data.rewind();
-                return PixmapBinaryLoaderHack.load(bytes, 0, bytes.length);
+                // does not change the position, so that images can be loaded concurrently
+                return PixmapBinaryLoaderHack.load(data, bufferView.byteOffset, bufferView.byteLength);
             } else {
                 throw new GLTFIllegalException("GLTF image: unexpected mimeType: " + glImage.mimeType);
             }
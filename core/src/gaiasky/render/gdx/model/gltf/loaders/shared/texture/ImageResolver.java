@@ -11,10 +11,21 @@ import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
 import gaiasky.render.gdx.model.gltf.data.texture.GLTFImage;
+import gaiasky.render.gdx.model.gltf.loaders.exceptions.GLTFRuntimeException;
 import gaiasky.render.gdx.model.gltf.loaders.shared.data.DataFileResolver;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 public class ImageResolver implements Disposable {
 	
+	/** Decodes the images of all loaders. **/
+	private static ExecutorService workers;
+
 	private final Array<Pixmap> pixmaps = new Array<Pixmap>();
 	
 	private final DataFileResolver dataFileResolver;
@@ -24,14 +35,57 @@ public class ImageResolver implements Disposable {
 		this.dataFileResolver = dataFileResolver;
 	}
 
+	private synchronized static ExecutorService workers() {
+		if(workers == null){
+			int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+			workers = Executors.newFixedThreadPool(threads, r -> {
+				Thread t = new Thread(r, "gltf-image-decoder");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return workers;
+	}
+
+	/**
+	 * Decodes the images, concurrently in the worker pool if there are several of them. The pixmaps are added in
+	 * the order of the images.
+	 */
 	public void load(Array<GLTFImage> glImages) {
-		if(glImages != null){
-			for(int i=0 ; i<glImages.size ; i++){
-				GLTFImage glImage = glImages.get(i);
-				Pixmap pixmap = dataFileResolver.load(glImage);
-				pixmaps.add(pixmap);
+		if(glImages == null || glImages.size == 0){
+			return;
+		}
+		if(glImages.size == 1){
+			pixmaps.add(dataFileResolver.load(glImages.first()));
+			return;
+		}
+		List<Future<Pixmap>> futures = new ArrayList<>(glImages.size);
+		for(GLTFImage glImage : glImages){
+			futures.add(workers().submit(() -> dataFileResolver.load(glImage)));
+		}
+		RuntimeException error = null;
+		for(Future<Pixmap> future : futures){
+			try{
+				Pixmap pixmap = future.get();
+				if(error == null){
+					pixmaps.add(pixmap);
+				}else{
+					pixmap.dispose();
+				}
+			}catch(ExecutionException e){
+				if(error == null){
+					error = e.getCause() instanceof RuntimeException re ? re : new GLTFRuntimeException(e.getCause());
+				}
+			}catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+				if(error == null){
+					error = new GLTFRuntimeException(e);
+				}
 			}
 		}
+		if(error != null){
+			throw error;
+		}
 	}
 	
 	public Pixmap get(int index) {
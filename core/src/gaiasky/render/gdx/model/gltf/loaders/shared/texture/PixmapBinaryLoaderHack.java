@@ -15,10 +15,12 @@ import com.badlogic.gdx.utils.reflect.ReflectionException;
 import gaiasky.render.gdx.model.gltf.loaders.exceptions.GLTFRuntimeException;
 import gaiasky.render.gdx.model.gltf.loaders.exceptions.GLTFUnsupportedException;
 
+import java.nio.ByteBuffer;
+
 public class PixmapBinaryLoaderHack {
 
 	public static Pixmap load(byte [] encodedData, int offset, int len){
-		if(Gdx.app.getType() == ApplicationType.WebGL){
+		if(Gdx.app != null && Gdx.app.getType() == ApplicationType.WebGL){
 			throw new GLTFUnsupportedException("load pixmap from bytes not supported for WebGL");
 		}else{
 			// call new Pixmap(encodedData, offset, len); via reflection to
@@ -30,4 +32,24 @@ public class PixmapBinaryLoaderHack {
 			}
 		}
 	}
+
+	/**
+	 * Decodes a pixmap from a region of the buffer, without changing its position. Direct buffers, like mapped
+	 * files, are decoded in place.
+	 */
+	public static Pixmap load(ByteBuffer encodedData, int offset, int len){
+		if(encodedData.isDirect() && (Gdx.app == null || Gdx.app.getType() != ApplicationType.WebGL)){
+			try {
+				return (Pixmap)ClassReflection.getConstructor(Pixmap.class, ByteBuffer.class, int.class, int.class).newInstance(encodedData, offset, len);
+			} catch (ReflectionException e) {
+				throw new GLTFRuntimeException(e);
+			}
+		}else if(encodedData.hasArray()){
+			return load(encodedData.array(), encodedData.arrayOffset() + offset, len);
+		}else{
+			byte[] data = new byte[len];
+			encodedData.get(offset, data);
+			return load(data, 0, len);
+		}
+	}
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.render.system;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Keeps track of the line geometry that stays resident in video memory between frames. It holds no GL state itself,
+ * only the bookkeeping: which keys have geometry, whether it is up-to-date, and when it was last used.
+ * <p>
+ * The geometry of a key is described by its source data object, its number of points and a state word that packs
+ * any other attribute baked into the vertices (color, flags). The geometry is marked dirty when any of these change,
+ * or explicitly with {@link #markDirty(Object)}. Anything that changes every frame (the transform, the opacity) must
+ * not be baked into the vertices, but passed as uniforms.
+ * <p>
+ * Entries that are not used for {@link #getMaxIdleFrames()} frames are evicted, and their handle is passed to the
+ * disposer.
+ *
+ * @param <K> The key type, compared by identity.
+ * @param <H> The type of the handle to the resident geometry (e.g. the mesh).
+ */
+public class RetainedLineStore<K, H> {
+    /** Default number of frames an entry is kept without being used. **/
+    public static final int DEFAULT_MAX_IDLE_FRAMES = 600;
+
+    /** The retained geometry of a key. **/
+    public static final class Entry<H> {
+        private Object source;
+        private int count = -1;
+        private long state;
+        private boolean dirty = true;
+        private long lastFrame;
+        /** The handle to the resident geometry, or null if it has not been created yet. **/
+        public H handle;
+
+        /** Whether the geometry must be built and uploaded again before rendering. **/
+        public boolean isDirty() {
+            return dirty;
+        }
+
+        /** The number of points of the geometry. **/
+        public int getCount() {
+            return count;
+        }
+    }
+
+    private final Map<K, Entry<H>> entries = new IdentityHashMap<>();
+    private final Consumer<H> disposer;
+    private final int maxIdleFrames;
+    private long frame;
+    private long uploads;
+
+    /**
+     * Creates a store.
+     *
+     * @param disposer      Disposes the handles of evicted or cleared entries. May be null.
+     * @param maxIdleFrames Number of frames an entry is kept without being used.
+     */
+    public RetainedLineStore(Consumer<H> disposer, int maxIdleFrames) {
+        this.disposer = disposer;
+        this.maxIdleFrames = maxIdleFrames > 0 ? maxIdleFrames : DEFAULT_MAX_IDLE_FRAMES;
+    }
+
+    public RetainedLineStore(Consumer<H> disposer) {
+        this(disposer, DEFAULT_MAX_IDLE_FRAMES);
+    }
+
+    /**
+     * Gets the entry of the given key for the current frame, creating it if needed. The entry is marked dirty if the
+     * source, the number of points or the state differ from the ones of its current geometry.
+     *
+     * @param key    The key.
+     * @param source The source data object, compared by identity.
+     * @param count  The number of points.
+     * @param state  Packed attributes baked into the vertices.
+     *
+     * @return The entry.
+     */
+    public Entry<H> acquire(K key, Object source, int count, long state) {
+        var entry = entries.computeIfAbsent(key, k -> new Entry<>());
+        if (entry.source != source || entry.count != count || entry.state != state) {
+            entry.source = source;
+            entry.count = count;
+            entry.state = state;
+            entry.dirty = true;
+        }
+        entry.lastFrame = frame;
+        return entry;
+    }
+
+    /**
+     * Marks the entry as up-to-date, once its geometry has been built and uploaded.
+     *
+     * @param entry The entry.
+     */
+    public void uploaded(Entry<H> entry) {
+        entry.dirty = false;
+        uploads++;
+    }
+
+    /**
+     * Marks the geometry of the given key dirty, so that it is built again the next time it is acquired.
+     *
+     * @param key The key.
+     */
+    public void markDirty(K key) {
+        var entry = entries.get(key);
+        if (entry != null) {
+            entry.dirty = true;
+        }
+    }
+
+    /**
+     * Ends the current frame, and evicts the entries that have not been used for too long.
+     *
+     * @return The number of evicted entries.
+     */
+    public int endFrame() {
+        int evicted = 0;
+        Iterator<Entry<H>> it = entries.values().iterator();
+        while (it.hasNext()) {
+            var entry = it.next();
+            if (frame - entry.lastFrame >= maxIdleFrames) {
+                dispose(entry);
+                it.remove();
+                evicted++;
+            }
+        }
+        frame++;
+        return evicted;
+    }
+
+    /**
+     * Removes all entries and disposes their handles.
+     */
+    public void clear() {
+        entries.values().forEach(this::dispose);
+        entries.clear();
+    }
+
+    private void dispose(Entry<H> entry) {
+        if (disposer != null && entry.handle != null) {
+            disposer.accept(entry.handle);
+        }
+        entry.handle = null;
+    }
+
+    public boolean contains(K key) {
+        return entries.containsKey(key);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getMaxIdleFrames() {
+        return maxIdleFrames;
+    }
+
+    /** Total number of geometry uploads, for statistics. **/
+    public long getUploads() {
+        return uploads;
+    }
+}
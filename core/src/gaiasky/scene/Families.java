@@ -49,7 +49,8 @@ public class Families {
             perimeters,
             verts,
             volumes,
-            vrdevices;
+            vrdevices,
+            coordinates;
 
     public Families() {
         roots = Family.all(GraphRoot.class).exclude(TagNoProcess.class, TagNoProcessGraph.class).get();
@@ -92,6 +93,7 @@ public class Families {
         verts = Family.all(Verts.class).exclude(Keyframes.class, Trajectory.class, TagNoProcess.class).get();
         volumes = Family.all(Volume.class).exclude(TagNoProcess.class).get();
         vrdevices = Family.all(VRDevice.class).exclude(TagNoProcess.class).get();
+        coordinates = Family.all(Body.class, Coordinates.class).exclude(TagNoProcess.class).get();
     }
 
 }
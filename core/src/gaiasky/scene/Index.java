@@ -15,12 +15,18 @@ import gaiasky.scene.record.Position;
 import gaiasky.scene.view.PositionView;
 import gaiasky.util.FastStringObjectMap;
 import gaiasky.util.Logger;
+import gaiasky.util.MultiNameIndex;
+import gaiasky.util.NameIndex;
 import gaiasky.util.i18n.I18n;
+import gaiasky.util.tree.LoadStatus;
 import gaiasky.util.tree.IPosition;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -32,6 +38,24 @@ public class Index {
     /** Quick lookup map. Name to node. **/
     protected final FastStringObjectMap<Entity> index;
 
+    /**
+     * Particle and star sets whose names are in the index. Their names stay in their own {@link ParticleSet#index},
+     * instead of being copied to {@link #index}.
+     */
+    protected final List<SetNames> sets;
+
+    /** Hash table over the names of all the {@link #sets}, resolving each name to the first set that has it. **/
+    protected final MultiNameIndex<SetNames> setNames;
+
+    /**
+     * Every name that has been put in {@link #index}, to check the names of particle sets against it without creating
+     * strings. Names are not removed, so a hit must be confirmed in {@link #index}.
+     */
+    protected final NameIndex mainNames;
+
+    /** Octree datasets with a name index covering all their octants, loaded or not. **/
+    protected final List<Entity> octrees;
+
     /**
      * Index name conflicts for the current session, stored as pairs of entities with additional metadata.
      */
@@ -64,6 +88,11 @@ public class Index {
 
         // Conflicts array.
         conflicts = new Array<>();
+
+        sets = new CopyOnWriteArrayList<>();
+        setNames = new MultiNameIndex<>();
+        mainNames = new NameIndex((int) (numberEntities * 1.25));
+        octrees = new CopyOnWriteArrayList<>();
     }
 
     /**
@@ -78,12 +107,47 @@ public class Index {
         name = name.toLowerCase(Locale.ROOT)
                 .strip();
         try {
-            return index.get(name);
+            return lookup(name);
         } catch (ArrayIndexOutOfBoundsException ignored) {
         }
         return null;
     }
 
+    /**
+     * Looks up the given lower-case name in the main map, and then in the particle sets.
+     */
+    private Entity lookup(String name) {
+        var entity = index.get(name);
+        if (entity == null && setNames.size() > 0) {
+            var s = setNames.get(name);
+            if (s != null) {
+                return s.entity;
+            }
+        }
+        return entity;
+    }
+
+    /**
+     * Gets the entity of the main map with the name of the given entry of a name index. The name is only
+     * materialized if it has been in the main map.
+     */
+    private Entity lookupMain(NameIndex names, int entry) {
+        synchronized (mainNames) {
+            if (!mainNames.containsKey(names, entry)) {
+                return null;
+            }
+        }
+        return index.get(names.key(entry));
+    }
+
+    /** Puts the given lower-case name in the main map. **/
+    private void put(String name, Entity entity) {
+        index.put(name, entity);
+        synchronized (mainNames) {
+            mainNames.put(name, 0);
+        }
+    }
+
     /**
      * Checks whether the index contains an entity with the given name.
      *
@@ -92,8 +156,52 @@ public class Index {
      * @return True if the index contains an entity with the given name. False otherwise.
      */
     public boolean containsEntity(String name) {
-        return index.containsKey(name.toLowerCase(Locale.ROOT)
-                                         .trim());
+        return lookup(name.toLowerCase(Locale.ROOT)
+                              .trim()) != null;
+    }
+
+    /**
+     * Locates the given name in the octree datasets, including the octants that are not currently loaded.
+     * Only octree datasets that ship a name index are searched.
+     *
+     * @param name The name.
+     *
+     * @return The location of the object, or null if it is not found.
+     */
+    public NameLocation locate(String name) {
+        if (!octrees.isEmpty()) {
+            var key = NameIndex.Key.of(name.toLowerCase(Locale.ROOT)
+                                               .strip());
+            for (var entity : octrees) {
+                var names = Mapper.octree.get(entity).getNames();
+                int pageId;
+                if (names != null && (pageId = names.get(key, -1)) >= 0) {
+                    return new NameLocation(entity, pageId);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Queues for loading the octant that holds the object with the given name, if the name is in the name index of
+     * an octree dataset and its octant is not loaded. Once the octant is loaded, the object is in this index.
+     *
+     * @param name The name.
+     *
+     * @return True if the octant has been queued for loading.
+     */
+    public boolean loadOctant(String name) {
+        var location = locate(name);
+        if (location != null && Mapper.octant.has(location.octree())) {
+            var root = Mapper.octant.get(location.octree()).octant;
+            var octant = root != null ? root.findOctant(location.pageId()) : null;
+            if (octant != null && octant.loader != null && octant.getStatus() == LoadStatus.NOT_LOADED) {
+                octant.loader.queue(octant);
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -117,14 +225,14 @@ public class Index {
                     for (String name : base.names) {
                         String nameLowerCase = name.toLowerCase(Locale.ROOT)
                                 .trim();
-                        if (!index.containsKey(nameLowerCase)) {
+                        Entity conflict = lookup(nameLowerCase);
+                        if (conflict == null) {
                             // Add to index.
-                            index.put(nameLowerCase, entity);
+                            put(nameLowerCase, entity);
                             added = true;
 
                         } else if (!nameLowerCase.isEmpty()) {
                             // Conflict!
-                            Entity conflict = index.get(nameLowerCase);
                             var conflictBase = Mapper.base.get(conflict);
                             var conflictArchetype = conflictBase.archetype;
                             var conflictParent = Mapper.graph.has(conflict) ? Mapper.graph.get(conflict).parentName : "-";
@@ -151,11 +259,16 @@ public class Index {
                     Id id = Mapper.id.get(entity);
                     if (id != null && id.id > 0) {
                         String idString = String.valueOf(id.id);
-                        index.put(idString, entity);
+                        put(idString, entity);
                         added = true;
                     }
                 }
 
+                // Octree datasets with a name index.
+                if (Mapper.octree.has(entity) && Mapper.octree.get(entity).namesFile != null && !octrees.contains(entity)) {
+                    octrees.add(entity);
+                }
+
                 // Special cases: Stars, PG and SG.
 
                 // HIP stars add "HIP + hipID"
@@ -165,7 +278,7 @@ public class Index {
                     Hip hip = Mapper.hip.get(entity);
                     if (hip.hip > 0) {
                         String hipID = "hip " + hip.hip;
-                        index.put(hipID, entity);
+                        put(hipID, entity);
                         added = true;
                     }
                 }
@@ -181,52 +294,67 @@ public class Index {
     }
 
     /**
-     * Adds a particle set to the index.
+     * Adds a particle set to the index. The names stay in the index of the set, and are only checked for conflicts
+     * here. The first one added is kept.
      *
      * @param entity The particle set entity.
      * @param set    The particle set component.
      */
     private void addParticleSet(Entity entity, ParticleSet set) {
         if (set != null && set.index != null && !set.addedToMainIndex) {
-            var pgBase = Mapper.base.get(entity);
-            var pgName = pgBase.getName();
-            var pgArchetype = pgBase.archetype;
-            var pgParent = Mapper.graph.get(entity).parentName;
-            String[] keys = set.index.keys();
-            for (String key : keys) {
-                if (key != null) {
-                    if (index.containsKey(key)) {
-                        // Conflict!
-                        Entity conflict = index.get(key);
-                        var conflictBase = Mapper.base.get(conflict);
-                        var conflictArchetype = conflictBase.archetype;
-                        var conflictParent = Mapper.graph.has(conflict) ? Mapper.graph.get(conflict).parentName : "-";
-
-                        // Add conflict to list.
-                        var nc = new NameConflict(key,
-                                                  conflict,
-                                                  conflictParent,
-                                                  conflictArchetype,
-                                                  entity,
-                                                  pgParent,
-                                                  pgArchetype);
-                        conflicts.add(nc);
-
-                        // Log.
-                        logger.warn(I18n.msg("error.name.conflict",
-                                             conflictBase.getName() + " [" + conflictArchetype.getName()
-                                                     .toLowerCase(Locale.ROOT) + ", " + conflictParent + "]",
-                                             key + " [" + pgArchetype.getName().toLowerCase(Locale.ROOT) + ", " + pgName + "]"));
-                    } else {
-                        // Add to main index.
-                        index.put(key, entity);
-                    }
+            var names = set.index;
+            // Conflicts with the main map.
+            for (int i = 0; i < names.size(); i++) {
+                Entity conflict = lookupMain(names, i);
+                if (conflict != null) {
+                    addConflict(names.key(i), conflict, entity);
                 }
             }
+            // Conflicts with the other sets.
+            var setNames = new SetNames(entity, set);
+            this.setNames.add(setNames, names, (conflict, i) -> {
+                if (lookupMain(names, i) == null) {
+                    addConflict(names.key(i), conflict.entity, entity);
+                }
+            });
+            sets.add(setNames);
             set.addedToMainIndex = true;
         }
     }
 
+    /**
+     * Records and logs a conflict of a name of a particle set.
+     *
+     * @param key      The name.
+     * @param conflict The entity that keeps the name.
+     * @param entity   The particle set entity.
+     */
+    private void addConflict(String key, Entity conflict, Entity entity) {
+        var pgBase = Mapper.base.get(entity);
+        var pgName = pgBase.getName();
+        var pgArchetype = pgBase.archetype;
+        var pgParent = Mapper.graph.get(entity).parentName;
+        var conflictBase = Mapper.base.get(conflict);
+        var conflictArchetype = conflictBase.archetype;
+        var conflictParent = Mapper.graph.has(conflict) ? Mapper.graph.get(conflict).parentName : "-";
+
+        // Add conflict to list.
+        var nc = new NameConflict(key,
+                                  conflict,
+                                  conflictParent,
+                                  conflictArchetype,
+                                  entity,
+                                  pgParent,
+                                  pgArchetype);
+        conflicts.add(nc);
+
+        // Log.
+        logger.warn(I18n.msg("error.name.conflict",
+                             conflictBase.getName() + " [" + conflictArchetype.getName()
+                                     .toLowerCase(Locale.ROOT) + ", " + conflictParent + "]",
+                             key + " [" + pgArchetype.getName().toLowerCase(Locale.ROOT) + ", " + pgName + "]"));
+    }
+
     public IntMap<IPosition> getHipMap() {
         return hipMap;
     }
@@ -309,6 +437,9 @@ public class Index {
                 index.remove(id);
             }
 
+            // Octree name index
+            octrees.remove(entity);
+
             // HIP
             if (Mapper.hip.has(entity)) {
                 var hip = Mapper.hip.get(entity);
@@ -329,13 +460,13 @@ public class Index {
 
     /** Removes the entities in the given particle set from this index. **/
     public void removeFromIndex(ParticleSet set) {
-        if (set.index != null) {
-            String[] keys = set.index.keys();
-            for (String key : keys) {
-                if (key != null)
-                    index.remove(key);
+        for (var s : sets) {
+            if (s.set == set) {
+                setNames.remove(s);
+                sets.remove(s);
             }
         }
+        set.addedToMainIndex = false;
     }
 
     /**
@@ -370,6 +501,7 @@ public class Index {
                     return;
             }
         }
+        matchingSetNames(name, results, i, maxResults, abort, true);
     }
 
     /**
@@ -400,6 +532,29 @@ public class Index {
                     return;
             }
         }
+        matchingSetNames(name, results, i, maxResults, abort, false);
+    }
+
+    /**
+     * Adds the names of the particle sets that contain the given lower-case string. Only matching names are
+     * materialized.
+     */
+    private void matchingSetNames(String name, SortedSet<String> results, int i, int maxResults, AtomicBoolean abort, boolean focusable) {
+        var needle = name.getBytes(StandardCharsets.UTF_8);
+        for (var s : sets) {
+            var names = s.set.index;
+            if (names == null || (focusable && (!Mapper.focus.has(s.entity) || !Mapper.focus.get(s.entity).focusable))) {
+                continue;
+            }
+            for (int entry = 0; entry < names.size(); entry++) {
+                if (i >= maxResults || (abort != null && abort.get()))
+                    return;
+                if (names.keyContains(entry, needle)) {
+                    results.add(names.key(entry));
+                    i++;
+                }
+            }
+        }
     }
 
     /**
@@ -411,6 +566,19 @@ public class Index {
         return conflicts;
     }
 
+    /** A particle set in the index. **/
+    protected record SetNames(Entity entity, ParticleSet set) {
+    }
+
+    /**
+     * Location of a name in an octree dataset.
+     *
+     * @param octree The octree wrapper entity.
+     * @param pageId The page identifier of the octant that contains the object.
+     */
+    public record NameLocation(Entity octree, long pageId) {
+    }
+
     /**
      * Represents a name conflict.
      */
@@ -32,6 +32,7 @@ import gaiasky.util.tree.OctreeNode;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -63,8 +64,12 @@ public class Scene {
     private Array<AbstractInitSystem> initializers;
     /** Holds all update systems. **/
     private Array<EntityUpdater> updaters;
+    /** Runs the update systems, possibly in parallel. **/
+    private UpdateScheduler updateScheduler;
     /** Holds all extract systems. **/
     private Array<AbstractExtractSystem> extractors;
+    /** Computes the positions of the next frame ahead of the update. **/
+    private CoordinatesPrefetcher coordinatesPrefetcher;
 
     /** Number of actual objects in the scene. **/
     private int numberObjects = -1;
@@ -358,11 +363,23 @@ public class Scene {
             // Remove all remaining systems.
             engine.removeAllSystems();
 
-            // Add updater systems.
-            addSystemsToEngine(updaters);
+            // Add updater systems, run by the scheduler.
+            updateScheduler = new UpdateScheduler(updaters, 0);
+            var performance = GaiaSky.settings().performance;
+            if (performance.parallelUpdateSystems && performance.multithreading) {
+                updateScheduler.setParallel(null, performance.getNumberOfThreads());
+            }
+            engine.addSystem(updateScheduler);
 
             // Add extractors.
+            if (performance.parallelExtraction && performance.multithreading) {
+                for (var extractor : extractors) {
+                    extractor.setParallelism(performance.getNumberOfThreads());
+                }
+            }
             addSystemsToEngine(extractors);
+
+            coordinatesPrefetcher = new CoordinatesPrefetcher(engine.getEntitiesFor(families.coordinates));
         }
     }
 
@@ -515,6 +532,27 @@ public class Scene {
         engine.update((float) time.getDt());
     }
 
+    /**
+     * Computes the positions of the entities at the time of the next frame, ahead of its update. See
+     * {@link CoordinatesPrefetcher}.
+     *
+     * @param instant The time of the next frame.
+     */
+    public void prefetch(Instant instant) {
+        if (coordinatesPrefetcher != null) {
+            coordinatesPrefetcher.prefetch(instant);
+        }
+    }
+
+    /**
+     * Gets the scheduler of the update systems, which keeps their timings.
+     *
+     * @return The update scheduler, or null if the systems are not set up yet.
+     */
+    public UpdateScheduler getUpdateScheduler() {
+        return updateScheduler;
+    }
+
     /**
      * Insert the given entity to the scene, possibly adding it to the index as well.
      *
@@ -319,6 +319,18 @@ public interface IFocus {
      */
     double getElevationAt(Vector3Q camPos, Vector3Q nextPos);
 
+    /**
+     * Same as {@link #getElevationAt(Vector3Q, Vector3Q)}, but gets the highest elevation of the surface within the
+     * given distance of the projected position of the camera, so that the camera clears the terrain around it.
+     *
+     * @param camPos    The camera position.
+     * @param nextPos   The future position of this body to use.
+     * @param footprint The distance around the projected position, in internal units.
+     *
+     * @return The highest elevation of the surface around the projected position of the current camera.
+     */
+    double getElevationAt(Vector3Q camPos, Vector3Q nextPos, double footprint);
+
     /**
      * Return the height scale of this focus, or 0 if it has no height info.
      *
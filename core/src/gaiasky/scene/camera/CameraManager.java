@@ -36,20 +36,20 @@ public class CameraManager implements ICamera, IObserver {
     /**
      * Last position, for working out velocity
      **/
-    private final Vector3D out;
-    private final Vector3D in;
-    private final Vector3Q inb;
-    private final Vector3 vec;
-    private final Vector3 v0;
-    private final Vector3 v1;
-    private final Vector3 intersection;
-    private final Matrix4 localTransformInv;
+    private final Vector3D out = new Vector3D();
+    private final Vector3D in = new Vector3D();
+    private final Vector3Q inb = new Vector3Q();
+    private final Vector3 vec = new Vector3();
+    private final Vector3 v0 = new Vector3();
+    private final Vector3 v1 = new Vector3();
+    private final Vector3 intersection = new Vector3();
+    private final Matrix4 localTransformInv = new Matrix4();
     public CameraMode mode;
     public ICamera current;
     public NaturalCamera naturalCamera;
     public SpacecraftCamera spacecraftCamera;
     public RelativisticCamera relativisticCamera;
-    private final FocusView focusView;
+    private final FocusView focusView = new FocusView();
     public IFocus previousClosest;
     /**
      * Current velocity in km/h
@@ -58,7 +58,7 @@ public class CameraManager implements ICamera, IObserver {
     /**
      * Velocity vector
      **/
-    protected Vector3D velocity, velocityNormalized;
+    protected Vector3D velocity = new Vector3D(), velocityNormalized = new Vector3D();
     private BackupProjectionCamera backupCamera;
 
     public CameraManager(AssetManager manager, CameraMode mode, boolean vr, GlobalResources globalResources) {
@@ -69,25 +69,27 @@ public class CameraManager implements ICamera, IObserver {
         this.relativisticCamera = new RelativisticCamera(manager, this);
 
         this.cameras = new ICamera[]{naturalCamera, spacecraftCamera};
-        this.focusView = new FocusView();
 
         this.mode = mode;
-        this.in = new Vector3D();
-        this.inb = new Vector3Q();
-        this.out = new Vector3D();
-        this.vec = new Vector3();
-        this.v0 = new Vector3();
-        this.v1 = new Vector3();
-        this.intersection = new Vector3();
-        this.velocity = new Vector3D();
-        this.velocityNormalized = new Vector3D();
-        this.localTransformInv = new Matrix4();
 
         updateCurrentCamera();
 
         EventManager.instance.subscribe(this, Event.CAMERA_MODE_CMD, Event.FOV_CMD);
     }
 
+    /**
+     * Creates a camera manager with a single camera, which is always the current one, in free mode. It does not
+     * listen to camera mode changes. The natural and spacecraft cameras need a graphics context, so this is meant for
+     * headless runs, like the benchmark.
+     *
+     * @param camera The camera.
+     */
+    public CameraManager(ICamera camera) {
+        this.cameras = new ICamera[]{camera};
+        this.current = camera;
+        this.mode = CameraMode.FREE_MODE;
+    }
+
     public void doneLoading(AssetManager manager) {
         for (var cam : cameras) {
             cam.doneLoading(manager);
@@ -1088,9 +1088,10 @@ public class NaturalCamera extends AbstractCamera implements IObserver {
             // Future position of closest object.
             aux5b.set(nextClosestPosition);
 
-            double elevation =
-                    closestBody.getElevationAt(pos, aux5b) + closestBody.getHeightScale() / FastMath.max(4.0,
-                                                                                                         20.0 - GaiaSky.settings().scene.renderer.elevation.multiplier);
+            // Keep the camera above the highest terrain within the clearance distance.
+            double clearance = closestBody.getHeightScale() / FastMath.max(4.0,
+                                                                           20.0 - GaiaSky.settings().scene.renderer.elevation.multiplier);
+            double elevation = closestBody.getElevationAt(pos, aux5b, clearance) + clearance;
             double newDist = aux5b.scl(-1)
                     .add(pos)
                     .lenDouble();
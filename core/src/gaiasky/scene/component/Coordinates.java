@@ -10,6 +10,9 @@ package gaiasky.scene.component;
 import com.badlogic.ashley.core.Component;
 import com.badlogic.ashley.core.Engine;
 import gaiasky.util.coord.IBodyCoordinates;
+import gaiasky.util.math.Vector3Q;
+
+import java.time.Instant;
 
 public class Coordinates implements Component, ICopy {
 
@@ -23,8 +26,51 @@ public class Coordinates implements Component, ICopy {
      */
     public boolean timeOverflow;
 
+    /**
+     * Time of {@link #prefetchPos}, or null if there is no prefetched position. Written after the position.
+     **/
+    private volatile Instant prefetchTime;
+    /**
+     * Equatorial cartesian position computed ahead of the update by
+     * {@link gaiasky.scene.system.update.CoordinatesPrefetcher}.
+     **/
+    private final Vector3Q prefetchPos = new Vector3Q();
+    /**
+     * Whether the prefetched time is out of the time range of the provider.
+     **/
+    private boolean prefetchOverflow;
+
     public void setCoordinatesProvider(IBodyCoordinates coordinates) {
         this.coordinates = coordinates;
+        this.prefetchTime = null;
+    }
+
+    /**
+     * Computes the position at the given time, and keeps it for {@link #getEquatorialCartesianCoordinates(Instant,
+     * Vector3Q)}.
+     *
+     * @param instant The instant.
+     */
+    public void prefetch(Instant instant) {
+        prefetchTime = null;
+        prefetchOverflow = coordinates.getEquatorialCartesianCoordinates(instant, prefetchPos) == null;
+        prefetchTime = instant;
+    }
+
+    /**
+     * Gets the equatorial cartesian coordinates at the given time. If they were prefetched for that time, they are
+     * copied, otherwise they are computed by the provider.
+     *
+     * @param instant The instant.
+     * @param out     The out vector.
+     *
+     * @return The out vector, or null if the time is out of the time range of the provider.
+     */
+    public Vector3Q getEquatorialCartesianCoordinates(Instant instant, Vector3Q out) {
+        if (instant.equals(prefetchTime)) {
+            return prefetchOverflow ? null : out.set(prefetchPos);
+        }
+        return coordinates.getEquatorialCartesianCoordinates(instant, out);
     }
 
     public void setCoordinates(IBodyCoordinates coordinates) {
@@ -23,8 +23,13 @@ import gaiasky.util.Functions.Function3;
 import gaiasky.util.math.Matrix4D;
 import gaiasky.util.math.Vector3Q;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public class GraphNode implements Component, ICopy {
 
+    /** Number of parent changes in all graph nodes, so that the structure of the scene graph can be cached. **/
+    private static final AtomicLong structureVersion = new AtomicLong();
+
     /** Reference to the method to update the position of this object. **/
     public Consumer4<GraphUpdater, Entity, Body, GraphNode> positionUpdaterConsumer = GraphUpdater::updatePositionDefault;
 
@@ -117,6 +122,7 @@ public class GraphNode implements Component, ICopy {
         }
         // Set new parent.
         childGraph.parent = me;
+        structureChanged();
         this.numChildren++;
 
         if (updateAncestorCount) {
@@ -141,6 +147,7 @@ public class GraphNode implements Component, ICopy {
             this.children.removeValue(child, true);
             var childGraph = Mapper.graph.get(child);
             childGraph.parent = null;
+            structureChanged();
             numChildren--;
             if (updateAncestorCount) {
                 // Update num children in ancestors
@@ -154,6 +161,20 @@ public class GraphNode implements Component, ICopy {
         }
     }
 
+    /**
+     * Signals that the parent of some graph node has changed.
+     */
+    public static void structureChanged() {
+        structureVersion.incrementAndGet();
+    }
+
+    /**
+     * @return A number that changes whenever the parent of some graph node changes.
+     */
+    public static long getStructureVersion() {
+        return structureVersion.get();
+    }
+
     public Entity getRoot(Entity me) {
         if (this.parent == null) {
             return me;
@@ -22,6 +22,7 @@ import gaiasky.util.i18n.I18n;
 import gaiasky.util.math.Vector3Q;
 
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -78,6 +79,24 @@ public class Label implements Component {
     /** The label rendering code. **/
     public Consumer7<LabelEntityRenderSystem, LabelView, ExtSpriteBatch, ExtShaderProgram, TextRenderer, RenderingContext, ICamera> renderConsumer;
 
+    /** Source of the declutter ids. **/
+    private static final AtomicInteger declutterIds = new AtomicInteger();
+    /** Id of the label in the declutter, or 0 if it has not been assigned yet. **/
+    private int declutterId;
+
+    /**
+     * Gets the id of this label in the screen-space declutter, which is unique and stable for the life of the
+     * component. It is assigned the first time it is requested.
+     *
+     * @return The id, greater than zero.
+     */
+    public int getDeclutterId() {
+        if (declutterId == 0) {
+            declutterId = declutterIds.incrementAndGet();
+        }
+        return declutterId;
+    }
+
     public boolean isDisplayAuto() {
         return display == LabelDisplay.AUTO;
     }
@@ -9,14 +9,22 @@ package gaiasky.scene.component;
 
 import com.badlogic.ashley.core.Component;
 import com.badlogic.ashley.core.Entity;
+import gaiasky.util.Logger;
+import gaiasky.util.NameIndex;
 import gaiasky.util.tree.IOctreeObject;
 import gaiasky.util.tree.OctreeNode;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class Octree implements Component {
+    private static final Logger.Log logger = Logger.getLogger(Octree.class);
 
     /** The list with the currently observed objects. **/
     public List<IOctreeObject> roulette;
@@ -27,11 +35,38 @@ public class Octree implements Component {
     /** Is this just a copy? */
     public boolean copy = false;
 
+    /**
+     * File with the name index of the whole dataset, mapping each name to the page identifier of its octant.
+     * Null if the dataset does not have one.
+     **/
+    public Path namesFile;
+    /** The name index, loaded on first use. **/
+    private NameIndex names;
+    private boolean namesLoaded;
+
     /** Creates an empty octree. **/
     public Octree() {
         this.parenthood = new ConcurrentHashMap<>();
     }
 
+    /**
+     * Gets the name index of the whole dataset, which covers the octants that are not loaded. It is read from
+     * {@link #namesFile} the first time it is needed.
+     *
+     * @return The name index, or null if the dataset does not have one.
+     */
+    public synchronized NameIndex getNames() {
+        if (!namesLoaded && namesFile != null) {
+            namesLoaded = true;
+            try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(namesFile)))) {
+                names = NameIndex.read(in);
+            } catch (IOException e) {
+                logger.error(e, "Error reading name index: " + namesFile);
+            }
+        }
+        return names;
+    }
+
     public void removeParenthood(Entity child) {
         if (child != null) {
             parenthood.remove(child);
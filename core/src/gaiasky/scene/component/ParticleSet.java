@@ -23,6 +23,7 @@ import gaiasky.scene.api.IParticleRecord;
 import gaiasky.scene.camera.ICamera;
 import gaiasky.scene.component.Label.LabelDisplay;
 import gaiasky.scene.record.ParticleKepler;
+import gaiasky.scene.record.ParticleTLE;
 import gaiasky.scene.task.ParticleSetUpdaterTask;
 import gaiasky.scene.view.FilterView;
 import gaiasky.util.*;
@@ -30,6 +31,7 @@ import gaiasky.util.camera.Proximity;
 import gaiasky.util.coord.AstroUtils;
 import gaiasky.util.coord.Coordinates;
 import gaiasky.util.coord.KeplerianElements;
+import gaiasky.util.coord.SGP4Propagator;
 import gaiasky.render.gdx.model.IntModel;
 import gaiasky.util.i18n.I18n;
 import gaiasky.util.math.*;
@@ -90,6 +92,14 @@ public class ParticleSet implements Component, IDisposable {
      */
     public boolean isElements;
 
+    /**
+     * Propagator of the two-line element sets, if the particle set holds a TLE catalog (type {@link ParticleTLE}).
+     * The updater propagates all the objects in a batch whenever the time moves away from {@link #epochJd}.
+     */
+    public SGP4Propagator propagator;
+    /** Wall-clock time of the last batch propagation, in milliseconds. **/
+    public long propagationTimeMs;
+
     /**
      * Whether to render the global set label or not.
      **/
@@ -366,7 +376,7 @@ public class ParticleSet implements Component, IDisposable {
     /** Set has been disposed. **/
     public boolean disposed;
     /** Name to array index. **/
-    public FastObjectIntMap<String> index;
+    public NameIndex index;
     /** Flag that flips when the particle set has been added to the main index. **/
     public boolean addedToMainIndex;
     /** Index synchronization object. **/
@@ -466,11 +476,11 @@ public class ParticleSet implements Component, IDisposable {
      *
      * @param pointData The data
      *
-     * @return A map{string,int} mapping names to indices
+     * @return A compact map{string,int} mapping names to indices
      */
-    public FastObjectIntMap<String> generateIndex(List<IParticleRecord> pointData) {
+    public NameIndex generateIndex(List<IParticleRecord> pointData) {
         var update = new UpdaterHelper("Index", pointData.size());
-        FastObjectIntMap<String> index = new FastObjectIntMap<>((int) (pointData.size() * 1.25f), String.class);
+        NameIndex index = new NameIndex(pointData.size());
         synchronized (indexSync) {
             update.start();
             int n = pointData.size();
@@ -490,6 +500,7 @@ public class ParticleSet implements Component, IDisposable {
                 }
                 update.update(idx);
             }
+            index.trim();
             update.end();
         }
         return index;
@@ -10,7 +10,9 @@ package gaiasky.scene.component;
 import com.badlogic.ashley.core.Component;
 import com.badlogic.ashley.core.Entity;
 import com.badlogic.gdx.math.MathUtils;
+import gaiasky.GaiaSky;
 import gaiasky.data.api.IOrbitDataProvider;
+import gaiasky.data.orbit.AdaptiveOrbitSampler;
 import gaiasky.data.util.OrbitDataLoader.OrbitDataLoaderParameters;
 import gaiasky.scene.record.OrbitComponent;
 import gaiasky.util.Constants;
@@ -75,11 +77,20 @@ public class Trajectory implements Component {
         /** Orbit sampling is done uniformly in time. **/
         TIME,
         /** Orbit sampling is done uniformly in nu (true anomaly). **/
-        NU
+        NU,
+        /**
+         * Orbit sampling is adaptive: segments are subdivided until the error tolerance is met, so that samples
+         * concentrate where the curvature is high. {@link #numSamples} is not used.
+         **/
+        ADAPTIVE
     }
 
     /** Strategy to use to sample the orbit. **/
     public OrbitSamplingStrategy sampling = OrbitSamplingStrategy.TIME;
+    /** Maximum distance from the orbit to its line in the adaptive sampling, relative to the size of the orbit. **/
+    public double samplingTolerance = AdaptiveOrbitSampler.DEFAULT_TOLERANCE;
+    /** Maximum turning angle of the orbit within a line segment in the adaptive sampling, in degrees. **/
+    public double samplingAngle = AdaptiveOrbitSampler.DEFAULT_MAX_ANGLE;
 
     public long orbitStartMs, orbitEndMs;
     /**
@@ -289,6 +300,35 @@ public class Trajectory implements Component {
         this.numSamples = FastMath.toIntExact(numSamples);
     }
 
+    public void setSamplingTolerance(Double samplingTolerance) {
+        this.samplingTolerance = samplingTolerance;
+    }
+
+    public void setSamplingAngle(Double samplingAngle) {
+        this.samplingAngle = samplingAngle;
+    }
+
+    /**
+     * Gets the strategy to sample the orbit with. Uniform strategies are replaced by
+     * {@link OrbitSamplingStrategy#ADAPTIVE} if the adaptive orbit sampling is on in the performance settings.
+     *
+     * @return The sampling strategy.
+     */
+    public OrbitSamplingStrategy getSampling() {
+        return GaiaSky.settings().performance.adaptiveOrbitSampling ? OrbitSamplingStrategy.ADAPTIVE : sampling;
+    }
+
+    /**
+     * Copies the sampling settings of this trajectory to the given orbit data loader parameters.
+     *
+     * @param parameters The parameters.
+     */
+    public void applySampling(OrbitDataLoaderParameters parameters) {
+        parameters.sampling = getSampling();
+        parameters.tolerance = samplingTolerance;
+        parameters.maxAngle = samplingAngle;
+    }
+
     public void setSampling(String sampling) {
         try {
             this.sampling = OrbitSamplingStrategy.valueOf(sampling.toUpperCase(Locale.ROOT));
@@ -56,6 +56,11 @@ public class BillboardDataset {
      * List of particle records with the particles of this dataset. Ignored if this dataset is in a procedural billboard group.
      */
     public List<IParticleRecord> data;
+    /**
+     * Particles generated in the CPU for procedural billboard groups, packed with {@link CPUGalGenFallback#STRIDE} values
+     * per particle. Null otherwise.
+     */
+    public float[] proceduralData;
     /**
      * Type of particle.
      */
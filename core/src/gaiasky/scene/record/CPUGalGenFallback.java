@@ -8,20 +8,13 @@
 package gaiasky.scene.record;
 
 import gaiasky.scene.api.IParticleRecord;
-import gaiasky.scene.record.BillboardDataset.Distribution;
 import gaiasky.util.Constants;
 import gaiasky.util.Logger;
-import gaiasky.util.Pair;
 import gaiasky.util.math.MathUtilsDouble;
 import net.jafama.FastMath;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.stream.IntStream;
 
 import static gaiasky.scene.record.BillboardDataset.ChannelType.DUST;
@@ -30,19 +23,27 @@ import static gaiasky.scene.record.BillboardDataset.Distribution.SPIRAL_LOG;
 
 /**
  * CPU equivalent of the GLSL compute shader for procedural billboard particle generation.
- * Produces a {@link List} where each ParticleVector contains:
- * [x, y, z, size, r, g, b]
+ * Produces, for each particle:
+ * [x, y, z, r, g, b, size, type, layer]
+ * <p>
+ * The particles are either packed in a primitive float array ready for upload ({@link #generateArray(BillboardDataset, int)}),
+ * or wrapped in {@link ParticleVector} records ({@link #generate(BillboardDataset, int)}).
  * <p>
  * This is not bit-for-bit identical to the GPU shader, but replicates distributions,
- * RNG style (uint state), gaussian/fbm approximations and the main logic.
+ * RNG style (uint state), gaussian/fbm approximations and the main logic. Each particle seeds
+ * the RNG from its index, so the output does not depend on how the work is split among threads.
  */
 public class CPUGalGenFallback {
     protected static final Logger.Log logger = Logger.getLogger(CPUGalGenFallback.class);
-    private final ThreadLocal<RNG> rngHolder;
+
+    /** Number of values per particle: position (3), color (3), size, type and layer. **/
+    public static final int STRIDE = 9;
+    /** Number of particles generated by each parallel task. **/
+    private static final int CHUNK_SIZE = 8192;
+
     private final double sizeFactor;
 
     public CPUGalGenFallback(double bodySize) {
-        this.rngHolder = ThreadLocal.withInitial(RNG::new);
         this.sizeFactor = (100 * bodySize / (26000.0 * Constants.PC_TO_U));
     }
 
@@ -94,24 +95,26 @@ public class CPUGalGenFallback {
         };
     }
 
-    double[] transformPoint(double[] mat4, double x, double y, double z) {
+    /**
+     * Transforms the point with the given matrix, and writes the result to the first three elements of out.
+     */
+    void transformPoint(double[] mat4, double x, double y, double z, double[] out) {
         double nx = mat4[0] * x + mat4[1] * y + mat4[2] * z + mat4[3];
         double ny = mat4[4] * x + mat4[5] * y + mat4[6] * z + mat4[7];
         double nz = mat4[8] * x + mat4[9] * y + mat4[10] * z + mat4[11];
-        return new double[]{nx, ny, nz};
+        out[0] = nx;
+        out[1] = ny;
+        out[2] = nz;
     }
 
     /**
-     * Precomputes the transformation matrix and the base colors for a given dataset.
+     * Precomputes the base colors for a given dataset.
      *
      * @param ds The dataset.
      *
-     * @return A pair with the transform matrix and the base colors.
+     * @return The base colors.
      */
-    private Pair<double[], float[][]> prepare(BillboardDataset ds) {
-        // precompute transform matrix
-        double[] mat = makeTransform(ds);
-
+    private float[][] prepareColors(BillboardDataset ds) {
         // Colors: baseColors is float[] length 12 (4 * 3) expected
         float[][] baseColors = new float[4][3];
         if (ds.baseColors != null) {
@@ -129,7 +132,109 @@ public class CPUGalGenFallback {
             for (int i = 0; i < 4; i++) baseColors[i][0] = baseColors[i][1] = baseColors[i][2] = 1.0f;
         }
 
-        return new Pair<>(mat, baseColors);
+        return baseColors;
+    }
+
+    /**
+     * Per-thread state of the generator: the RNG and the scratch arrays, so that generating a particle does not
+     * allocate.
+     */
+    private final class Worker {
+        private final BillboardDataset ds;
+        private final int globalSeed;
+        private final double[] mat;
+        private final float[][] baseColors;
+        private final double type;
+
+        private final RNG rng = new RNG();
+        private final double[] pos = new double[3];
+        private final double[] color = new double[3];
+        /** The values of the last generated particle. **/
+        final double[] out = new double[STRIDE];
+
+        Worker(BillboardDataset ds, int globalSeed, double[] mat, float[][] baseColors) {
+            this.ds = ds;
+            this.globalSeed = globalSeed;
+            this.mat = mat;
+            this.baseColors = baseColors;
+            this.type = ds.type.ordinal();
+        }
+
+        /**
+         * Generates the particle with the given index into {@link #out}.
+         */
+        void particle(int i) {
+            // For each particle, seed the RNG similarly to shader:
+            // shader: uint state = (i * 747796405u + 2891336453u) * u_seed;
+            rng.setSeed(seed(i, globalSeed));
+
+            // Choose distribution and compute position in dataset local coordinates.
+            switch (ds.distribution) {
+                case SPIRAL_LOG -> positionLogSpiral(rng, ds, pos);
+                case SPIRAL -> positionDensityWave(rng, ds, pos);
+                case BAR -> positionBar(rng, ds, pos);
+                case ELLIPSOID -> positionEllipsoid(rng, ds, pos);
+                case SPHERE, IRREGULAR -> positionSphere(rng, ds, pos);
+                case DISK_GAUSS -> positionDiskGauss(rng, ds, pos);
+                case SPHERE_GAUSS -> positionSphereGauss(rng, ds, pos);
+                case CONE -> positionCone(rng, ds, pos);
+                default -> positionDisk(rng, ds, pos);
+            }
+
+            double size = generateSize(rng, pos, ds);
+            generateColor(rng, ds.colorNoise, baseColors, color);
+            transformPoint(mat, pos[0], pos[1], pos[2], out);
+            double layer = pickLayer(rng, ds);
+
+            out[3] = color[0];
+            out[4] = color[1];
+            out[5] = color[2];
+            out[6] = size;
+            out[7] = type;
+            out[8] = layer;
+        }
+    }
+
+    /**
+     * Computes the initial RNG state of a particle by mixing its index and the global seed.
+     * Uses the same constants as the shader, but in signed ints.
+     */
+    static int seed(int i, int globalSeed) {
+        long a = Integer.toUnsignedLong(747796405);
+        long b = Integer.toUnsignedLong(289133645);
+        long s = ((Integer.toUnsignedLong(i) * a + b) * Integer.toUnsignedLong(globalSeed)) & 0xFFFFFFFFL;
+        return (int) s;
+    }
+
+    /**
+     * Generates the particles of a given {@link BillboardDataset} in parallel, and packs them in a float array with
+     * {@link #STRIDE} values per particle: [x, y, z, r, g, b, size, type, layer].
+     *
+     * @param ds         BillboardDataset instance.
+     * @param globalSeed integer seed (u_seed)
+     *
+     * @return The packed particles.
+     */
+    public float[] generateArray(BillboardDataset ds, int globalSeed) {
+        logger.info("CPU dataset generation: " + ds.type + "/" + ds.distribution);
+        final int count = FastMath.max(0, ds.particleCount);
+        final float[] data = new float[count * STRIDE];
+        final double[] mat = makeTransform(ds);
+        final float[][] baseColors = prepareColors(ds);
+
+        int chunks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            Worker w = new Worker(ds, globalSeed, mat, baseColors);
+            int end = FastMath.min(count, (chunk + 1) * CHUNK_SIZE);
+            for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+                w.particle(i);
+                int off = i * STRIDE;
+                for (int j = 0; j < STRIDE; j++) {
+                    data[off + j] = (float) w.out[j];
+                }
+            }
+        });
+        return data;
     }
 
     /**
@@ -146,55 +251,10 @@ public class CPUGalGenFallback {
         if (count <= 0) return Collections.emptyList();
 
         IParticleRecord[] array = new IParticleRecord[count];
-        var pair = prepare(ds);
-        var mat = pair.getFirst();
-        var baseColors = pair.getSecond();
-
-        // For each particle, create RNG seeded similarly to shader:
-        // shader: uint state = (i * 747796405u + 2891336453u) * u_seed;
+        Worker w = new Worker(ds, globalSeed, makeTransform(ds), prepareColors(ds));
         for (int i = 0; i < count; i++) {
-            // compute initial state: mix i and globalSeed
-            // Use same constants but in signed ints
-            long a = Integer.toUnsignedLong(747796405);
-            long b = Integer.toUnsignedLong(289133645);
-            long s = ((Integer.toUnsignedLong(i) * a + b) * Integer.toUnsignedLong(globalSeed)) & 0xFFFFFFFFL;
-            int seed = (int) s;
-
-            var rng = rngHolder.get();
-            rng.setSeed(seed);
-
-            // Choose distribution and compute position in dataset local coordinates.
-            Distribution distribution = ds.distribution;
-            double[] pos = switch (distribution) {
-                case SPIRAL_LOG -> positionLogSpiral(rng, ds);
-                case SPIRAL -> positionDensityWave(rng, ds);
-                case BAR -> positionBar(rng, ds);
-                case ELLIPSOID -> positionEllipsoid(rng, ds);
-                case SPHERE, IRREGULAR -> positionSphere(rng, ds);
-                case DISK_GAUSS -> positionDiskGauss(rng, ds);
-                case SPHERE_GAUSS -> positionSphereGauss(rng, ds);
-                case CONE -> positionCone(rng, ds);
-                default -> positionDisk(rng, ds);
-            }; // double version
-
-            double size = generateSize(rng, pos, ds);
-            double[] color = generateColor(rng, ds.colorNoise, baseColors);
-            double[] tp = transformPoint(mat, pos[0], pos[1], pos[2]);
-            double layer = pickLayer(rng, ds);
-            double type = ds.type.ordinal();
-
-            var data = new double[]{
-                    tp[0],
-                    tp[1],
-                    tp[2],
-                    color[0],
-                    color[1],
-                    color[2],
-                    size,
-                    type,
-                    layer
-            };
-            array[i] = new ParticleVector(data);
+            w.particle(i);
+            array[i] = new ParticleVector(w.out.clone());
         }
 
         return List.of(array);
@@ -212,79 +272,20 @@ public class CPUGalGenFallback {
         int count = ds.particleCount;
         if (count <= 0) return Collections.emptyList();
 
-        var pair = prepare(ds);
-        var mat = pair.getFirst();
-        var baseColors = pair.getSecond();
-
-        AtomicReferenceArray<IParticleRecord> out = new AtomicReferenceArray<>(count);
-
-        // Default chunk size. Possibly needs tuning.
-        final int chunkSize = 512;
-
-        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
-            List<Callable<Void>> tasks = new ArrayList<>();
-
-            for (int start = 0; start < count; start += chunkSize) {
-                int chunkStart = start;
-                int chunkEnd = Math.min(start + chunkSize, count);
-
-                tasks.add(() -> {
-                    for (int i = chunkStart; i < chunkEnd; i++) {
-                        long a = Integer.toUnsignedLong(747796405);
-                        long b = Integer.toUnsignedLong(289133645);
-                        long s = ((Integer.toUnsignedLong(i) * a + b) * Integer.toUnsignedLong(globalSeed)) & 0xFFFFFFFFL;
-                        int seed = (int) s;
-
-                        var rng = rngHolder.get();
-                        rng.setSeed(seed);
-
-                        // Compute particle position
-                        double[] pos = switch (ds.distribution) {
-                            case SPIRAL_LOG -> positionLogSpiral(rng, ds);
-                            case SPIRAL -> positionDensityWave(rng, ds);
-                            case BAR -> positionBar(rng, ds);
-                            case ELLIPSOID -> positionEllipsoid(rng, ds);
-                            case SPHERE, IRREGULAR -> positionSphere(rng, ds);
-                            case DISK_GAUSS -> positionDiskGauss(rng, ds);
-                            case SPHERE_GAUSS -> positionSphereGauss(rng, ds);
-                            case CONE -> positionCone(rng, ds);
-                            default -> positionDisk(rng, ds);
-                        };
-
-                        double size = generateSize(rng, pos, ds);
-                        double[] color = generateColor(rng, ds.colorNoise, baseColors);
-                        double[] tp = transformPoint(mat, pos[0], pos[1], pos[2]);
-                        double layer = pickLayer(rng, ds);
-                        double type = ds.type.ordinal();
-
-                        var data = new double[]{
-                                tp[0],
-                                tp[1],
-                                tp[2],
-                                color[0],
-                                color[1],
-                                color[2],
-                                size,
-                                type,
-                                layer
-                        };
-
-                        out.set(i, new ParticleVector(data));
-                    }
-                    return null;
-                });
+        final IParticleRecord[] array = new IParticleRecord[count];
+        final double[] mat = makeTransform(ds);
+        final float[][] baseColors = prepareColors(ds);
+
+        int chunks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            Worker w = new Worker(ds, globalSeed, mat, baseColors);
+            int end = FastMath.min(count, (chunk + 1) * CHUNK_SIZE);
+            for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+                w.particle(i);
+                array[i] = new ParticleVector(w.out.clone());
             }
-
-            executor.invokeAll(tasks);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException(e);
-        }
-
-        // Convert AtomicReferenceArray back to List
-        return IntStream.range(0, count)
-                .mapToObj(out::get)
-                .toList();
+        });
+        return List.of(array);
     }
 
     /**
@@ -339,8 +340,15 @@ public class CPUGalGenFallback {
     }
 
     // Position generators — approximate the GLSL ones. Use RNG methods to match behaviour.
+    // They write the position to out, to avoid allocating.
 
-    private double[] positionSphere(RNG rng, BillboardDataset ds) {
+    private static void set(double[] out, double x, double y, double z) {
+        out[0] = x;
+        out[1] = y;
+        out[2] = z;
+    }
+
+    private void positionSphere(RNG rng, BillboardDataset ds, double[] out) {
         double r0 = (ds.baseRadius - ds.minRadius);
         double r = ds.minRadius + (r0 + (rng.rand() - 0.5) * 0.3) * FastMath.sqrt(rng.rand());
         double theta = rng.rand() * (2.0 * FastMath.PI);
@@ -348,20 +356,20 @@ public class CPUGalGenFallback {
         double x = r * FastMath.sin(phi) * FastMath.cos(theta);
         double y = r * FastMath.sin(phi) * FastMath.sin(theta);
         double z = r * FastMath.cos(phi);
-        return new double[]{x, y, z};
+        set(out, x, y, z);
     }
 
-    private double[] positionSphereGauss(RNG rng, BillboardDataset ds) {
+    private void positionSphereGauss(RNG rng, BillboardDataset ds, double[] out) {
         double r = ds.minRadius + (ds.baseRadius - ds.minRadius) * FastMath.sqrt(rng.ggaussian(1.0f) * 0.15);
         double theta = rng.rand() * (2.0 * FastMath.PI);
         double phi = FastMath.acos(rng.rand() * 2.0 - 1.0);
         double x = r * FastMath.sin(phi) * FastMath.cos(theta);
         double y = r * FastMath.sin(phi) * FastMath.sin(theta);
         double z = r * FastMath.cos(phi);
-        return new double[]{x, y, z};
+        set(out, x, y, z);
     }
 
-    private double[] positionCone(RNG rng, BillboardDataset ds) {
+    private void positionCone(RNG rng, BillboardDataset ds, double[] out) {
         double coneAngle = FastMath.toRadians(ds.baseAngle);
         double cosCone = FastMath.cos(coneAngle);
         double cosPhi = cosCone + (1f - cosCone) * rng.rand();
@@ -372,28 +380,28 @@ public class CPUGalGenFallback {
         double dirZ = FastMath.sin(phi) * FastMath.sin(theta);
         double r = ds.minRadius + (ds.baseRadius - ds.minRadius) * FastMath.pow(rng.rand(), 1.0 / 3.0);
         r += (rng.rand() - 0.5) * 0.1 * ds.baseRadius;
-        return new double[]{r * dirX, r * dirY - 0.5, r * dirZ};
+        set(out, r * dirX, r * dirY - 0.5, r * dirZ);
     }
 
-    private double[] positionDisk(RNG rng, BillboardDataset ds) {
+    private void positionDisk(RNG rng, BillboardDataset ds, double[] out) {
         double theta = rng.rand() * (2.0 * FastMath.PI);
         double r = ds.minRadius + (ds.baseRadius - ds.minRadius + (rng.rand() - 0.5f) * 0.3f) * FastMath.sqrt(rng.rand());
         double z = r * FastMath.cos(theta);
         double x = r * FastMath.sin(theta);
         double y = computeY(rng, ds, x, z);
-        return new double[]{x, y, z};
+        set(out, x, y, z);
     }
 
-    private double[] positionDiskGauss(RNG rng, BillboardDataset ds) {
+    private void positionDiskGauss(RNG rng, BillboardDataset ds, double[] out) {
         double theta = rng.rand() * (2.0 * FastMath.PI);
         double r = ds.minRadius + (ds.baseRadius - ds.minRadius) * FastMath.sqrt(rng.ggaussian(1.0f) * 0.15f);
         double z = r * FastMath.cos(theta);
         double x = r * FastMath.sin(theta);
         double y = computeY(rng, ds, x, z);
-        return new double[]{x, y, z};
+        set(out, x, y, z);
     }
 
-    private double[] positionEllipsoid(RNG rng, BillboardDataset ds) {
+    private void positionEllipsoid(RNG rng, BillboardDataset ds, double[] out) {
         double u1 = rng.rand();
         double u2 = rng.rand();
         double z = 2.0f * u1 - 1.0f;
@@ -412,21 +420,21 @@ public class CPUGalGenFallback {
         double x = a * dirX * rFrac;
         double y = c * dirY * rFrac;
         double zOut = b * dirZ * rFrac;
-        return new double[]{x, y, zOut};
+        set(out, x, y, zOut);
     }
 
-    private double[] positionBar(RNG rng, BillboardDataset ds) {
+    private void positionBar(RNG rng, BillboardDataset ds, double[] out) {
         double x = (rng.rand() * 2.0 - 1.0) * ds.baseRadius * ds.aspect;
         double y = computeY(rng, ds, x, 0.0) * ds.baseRadius;
         double z = computeY(rng, ds, x, 0.0) * ds.baseRadius;
         double falloff = FastMath.exp(-0.5 * (x * x + z * z) / (ds.baseRadius * ds.baseRadius));
         x *= falloff;
         z *= falloff;
-        return new double[]{x, y, z};
+        set(out, x, y, z);
     }
 
     // density wave -> "spiral" approximation
-    private double[] positionDensityWave(RNG rng, BillboardDataset ds) {
+    private void positionDensityWave(RNG rng, BillboardDataset ds, double[] out) {
         final int numEllipses = 200;
         int ellipseIndex = (int) (rng.rand() * numEllipses);
         double t = (ellipseIndex + 0.5f) / numEllipses;
@@ -447,18 +455,17 @@ public class CPUGalGenFallback {
         x += rng.gaussian() * (ds.baseRadius * 0.015);
         z += rng.gaussian() * (ds.baseRadius * 0.015);
         if (rng.rand() > 0.7f) {
-            double[] v = new double[]{x, z};
-            double r = FastMath.hypot(v[0], v[1]);
-            double nnx = v[0] / (r + 1e-9) * (r + (rng.rand() * 2.0 - 1.0) * 0.2);
-            double nnz = v[1] / (r + 1e-9) * (r + (rng.rand() * 2.0 - 1.0) * 0.2);
+            double r = FastMath.hypot(x, z);
+            double nnx = x / (r + 1e-9) * (r + (rng.rand() * 2.0 - 1.0) * 0.2);
+            double nnz = z / (r + 1e-9) * (r + (rng.rand() * 2.0 - 1.0) * 0.2);
             x = nnx;
             z = nnz;
         }
         double y = computeY(rng, ds, x, z);
-        return new double[]{x, y, z};
+        set(out, x, y, z);
     }
 
-    private double[] positionDensityWaveOne(RNG rng, BillboardDataset ds) {
+    private void positionDensityWaveOne(RNG rng, BillboardDataset ds, double[] out) {
         final int numLayers = 200;
         int layerIndex = (int) (rng.rand() * numLayers);
         double t = (layerIndex + 0.5f) / numLayers;
@@ -478,19 +485,18 @@ public class CPUGalGenFallback {
         x += rng.gaussian() * (ds.baseRadius * 0.015);
         z += rng.gaussian() * (ds.baseRadius * 0.015);
         if (rng.rand() > 0.7f) {
-            double[] v = new double[]{x, z};
-            double r = FastMath.hypot(v[0], v[1]);
-            double nnx = v[0] / (r + 1e-9) * (r + (rng.rand() * 2.0 - 1.0) * 0.2);
-            double nnz = v[1] / (r + 1e-9) * (r + (rng.rand() * 2.0 - 1.0) * 0.2);
+            double r = FastMath.hypot(x, z);
+            double nnx = x / (r + 1e-9) * (r + (rng.rand() * 2.0 - 1.0) * 0.2);
+            double nnz = z / (r + 1e-9) * (r + (rng.rand() * 2.0 - 1.0) * 0.2);
             x = nnx;
             z = nnz;
         }
         double y = computeY(rng, ds, x, z);
-        return new double[]{x, y, z};
+        set(out, x, y, z);
     }
 
     // Logarithmic spiral (approximate)
-    private double[] positionLogSpiral(RNG rng, BillboardDataset ds) {
+    private void positionLogSpiral(RNG rng, BillboardDataset ds, double[] out) {
         double r_min = ds.minRadius;
         double r_max = ds.baseRadius;
         double pitchDeg = MathUtilsDouble.clamp(ds.baseAngle * 0.1, 0.0, 100.0);
@@ -522,15 +528,15 @@ public class CPUGalGenFallback {
                 }
                 double sigma = ds.armSigma;
                 double gaussianSpread = rng.gaussian() * sigma;
-                double[] armSpread = new double[]{gaussianSpread * armWidth * tangentX, gaussianSpread * armWidth * tangentY};
-                double x = r * FastMath.cos(spiralAngle) + armSpread[0];
-                double z = r * FastMath.sin(spiralAngle) + armSpread[1];
+                double x = r * FastMath.cos(spiralAngle) + gaussianSpread * armWidth * tangentX;
+                double z = r * FastMath.sin(spiralAngle) + gaussianSpread * armWidth * tangentY;
                 double y = computeY(rng, ds, x, z);
-                return new double[]{x, y, z};
+                set(out, x, y, z);
+                return;
             }
         }
         // fallback
-        return positionDisk(rng, ds);
+        positionDisk(rng, ds, out);
     }
 
     private int pickLayer(RNG rng, BillboardDataset ds) {
@@ -571,22 +577,16 @@ public class CPUGalGenFallback {
         }
     }
 
-    private double[] generateColor(RNG rng, double colorNoise, float[][] baseColors) {
+    private void generateColor(RNG rng, double colorNoise, float[][] baseColors, double[] out) {
         int idx = (int) (rng.rand() * 4.0f);
         if (idx < 0) idx = 0;
         if (idx > 3) idx = 3;
         float[] base = baseColors[idx];
-        double[] noise = new double[]{
-                colorNoise * ((rng.rand() * 2.0f) - 1.0f),
-                colorNoise * ((rng.rand() * 2.0f) - 1.0f),
-                colorNoise * ((rng.rand() * 2.0f) - 1.0f)
-        };
-        double[] out = new double[3];
+        // Noise for r, g and b, in this order.
         for (int i = 0; i < 3; i++) {
-            double v = base[i] + noise[i];
+            double v = base[i] + colorNoise * ((rng.rand() * 2.0f) - 1.0f);
             out[i] = FastMath.max(0f, FastMath.min(1f, v));
         }
-        return out;
     }
 
     /** Random number generator with some utility functions that mimic the GLSL implementation. **/
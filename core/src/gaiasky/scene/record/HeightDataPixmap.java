@@ -8,86 +8,94 @@
 package gaiasky.scene.record;
 
 import com.badlogic.gdx.files.FileHandle;
-import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.glutils.FileTextureData;
 import com.badlogic.gdx.graphics.glutils.GLOnlyTextureData;
 import com.badlogic.gdx.graphics.glutils.PixmapTextureData;
 import gaiasky.GaiaSky;
-import gaiasky.scene.record.BilinearInterpolator.GridModel;
 import gaiasky.data.util.GlobalResources;
 import gaiasky.util.SysUtils;
 
 public final class HeightDataPixmap implements IHeightData {
 
-    private final Pixmap heightPixmap;
-    private GridModel model;
+    private final HeightField field;
 
     public HeightDataPixmap(Pixmap heightPixmap, Runnable finished) {
-        this.heightPixmap = heightPixmap;
+        this(HeightField.of(heightPixmap, true), finished);
+    }
+
+    public HeightDataPixmap(String heightTexturePacked, Runnable finished) {
+        this(load(new FileHandle(GlobalResources.unpackAssetPath(heightTexturePacked))), finished);
+    }
+
+    private HeightDataPixmap(HeightField field, Runnable finished) {
+        this.field = field;
 
         if (finished != null) {
             GaiaSky.postRunnable(finished);
         }
-        initModel();
-    }
-
-    public HeightDataPixmap(String heightTexturePacked, Runnable finished) {
-        this(new Pixmap(new FileHandle(GlobalResources.unpackAssetPath(heightTexturePacked))), finished);
     }
 
     public HeightDataPixmap(Texture texture, Runnable finished) {
         if (texture != null && texture.getTextureData() instanceof PixmapTextureData) {
             // Directly get pixmap texture data.
-            heightPixmap = texture.getTextureData().consumePixmap();
-            initModel();
+            field = HeightField.of(texture.getTextureData().consumePixmap(), true);
         } else if (texture != null && texture.getTextureData() instanceof FileTextureData fileTextureData) {
             // Load it.
-            heightPixmap = new Pixmap(fileTextureData.getFileHandle());
-            initModel();
+            field = load(fileTextureData.getFileHandle());
         } else if (texture != null && texture.getTextureData() instanceof GLOnlyTextureData) {
             // GL data.
-            heightPixmap = SysUtils.pixmapFromGLTexture(texture);
-            initModel();
+            var heightPixmap = SysUtils.pixmapFromGLTexture(texture);
+            field = HeightField.of(heightPixmap, true);
+            heightPixmap.dispose();
         } else {
             // Nothing.
-            heightPixmap = null;
+            field = null;
         }
         if (finished != null) {
             GaiaSky.postRunnable(finished);
         }
     }
 
-    private void initModel(){
-        this.model = new GridModel() {
-            private final Color color = new Color();
-            @Override
-            public int getWidth() {
-                assert heightPixmap != null;
-                return heightPixmap.getWidth();
-            }
+    private static HeightField load(FileHandle file) {
+        var heightPixmap = new Pixmap(file);
+        try {
+            return HeightField.of(heightPixmap, true);
+        } finally {
+            heightPixmap.dispose();
+        }
+    }
 
-            @Override
-            public int getHeight() {
-                assert heightPixmap != null;
-                return heightPixmap.getHeight();
-            }
+    @Override
+    public double getNormalizedHeight(double u, double v) {
+        if (field == null) {
+            return 0;
+        }
 
-            @Override
-            public double getValue(int x, int y) {
-                assert heightPixmap != null;
-                return color.set(heightPixmap.getPixel(x, y)).r;
-            }
-        };
+        return field.sample(u, v, false);
     }
 
     @Override
-    public double getNormalizedHeight(double u, double v) {
-        if (heightPixmap == null) {
+    public double getMaxNormalizedHeight() {
+        return field == null ? 0 : field.getMax();
+    }
+
+    @Override
+    public double getMaxNormalizedHeight(double u0, double v0, double u1, double v1) {
+        if (field == null) {
             return 0;
         }
+        // V grows upwards, y downwards.
+        return field.minMax(field.toX(u0), field.toY(v1), field.toX(u1), field.toY(v0), new float[2])[1];
+    }
 
-        return BilinearInterpolator.interpolate(u, v, model, true, false);
+    @Override
+    public double intersect(double u0, double v0, double h0, double u1, double v1, double h1) {
+        if (field == null) {
+            return -1;
+        }
+        double x0 = field.toX(u0), y0 = field.toY(v0);
+        return field.intersect(x0, y0, h0, field.toX(u1) - x0, field.toY(v1) - y0, h1 - h0, 1);
     }
 }
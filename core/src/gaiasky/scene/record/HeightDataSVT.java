@@ -8,74 +8,201 @@
 package gaiasky.scene.record;
 
 import com.badlogic.gdx.assets.AssetManager;
-import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.Pixmap;
-import gaiasky.scene.record.BilinearInterpolator.GridModel;
 import gaiasky.util.svt.SVTQuadtree;
 import net.jafama.FastMath;
 
 import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+/**
+ * Height data of a sparse virtual texture. The tiles that the asset manager has loaded are copied and decoded into
+ * {@link HeightField}s in a background thread, and kept in an LRU cache with a budget in bytes. Queries use the finest
+ * decoded tile that covers the point, and request the decoding of the finer tiles that are loaded but not decoded yet.
+ */
 public final class HeightDataSVT implements IHeightData {
 
+    /** Maximum size of the decoded tiles, in bytes. **/
+    private static final long MAX_BYTES = 64L * 1024L * 1024L;
+
+    /** Decodes the tiles of all instances. **/
+    private static ExecutorService decoder;
+
     private final SVTQuadtree<Path> svt;
     private final AssetManager manager;
-    private final PixmapGridModel model;
+    /** Decoded tiles by file, in access order. Guarded by itself. **/
+    private final LinkedHashMap<Path, HeightField> fields = new LinkedHashMap<>(16, 0.75f, true);
+    /** Tiles being decoded. Guarded by {@link #fields}. **/
+    private final Set<Path> pending = new HashSet<>();
+    /** Size of the decoded tiles, in bytes. Guarded by {@link #fields}. **/
+    private long bytes;
 
     public HeightDataSVT(SVTQuadtree<Path> svt, AssetManager manager) {
         this.svt = svt;
         this.manager = manager;
-        this.model = new PixmapGridModel();
     }
 
     @Override
     public double getNormalizedHeight(double u, double v) {
+        var frame = new double[4];
+        var field = decodedTile(u, v, u, v, frame);
+        return field == null ? 0 : field.sample(tileU(u, frame), tileV(v, frame), false);
+    }
+
+    @Override
+    public double getMaxNormalizedHeight(double u0, double v0, double u1, double v1) {
+        double k = FastMath.floor(u0);
+        var frame = new double[4];
+        var field = decodedTile(u0 - k, v0, u1 - k, v1, frame);
+        if (field == null) {
+            // No decoded tile covers the whole rectangle.
+            return getMaxNormalizedHeight();
+        }
+        double x0 = field.toX(tileU(u0 - k, frame)), x1 = field.toX(tileU(u1 - k, frame));
+        double y0 = field.toY(tileV(v0, frame)), y1 = field.toY(tileV(v1, frame));
+        return field.minMax(Math.min(x0, x1), Math.min(y0, y1), Math.max(x0, x1), Math.max(y0, y1), new float[2])[1];
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The segment is tested against the finest decoded tile that contains it. If there is none, it is tested against
+     * the tiles of its ends.
+     */
+    @Override
+    public double intersect(double u0, double v0, double h0, double u1, double v1, double h1) {
+        var frame = new double[4];
+        double k = FastMath.floor(u0);
+        var field = decodedTile(u0 - k, v0, u1 - k, v1, frame);
+        if (field != null) {
+            return intersect(field, frame, u0 - k, v0, h0, u1 - k, v1, h1);
+        }
+        double t = -1;
+        field = decodedTile(u0 - k, v0, u0 - k, v0, frame);
+        if (field != null) {
+            t = intersect(field, frame, u0 - k, v0, h0, u1 - k, v1, h1);
+        }
+        if (t < 0) {
+            k = FastMath.floor(u1);
+            field = decodedTile(u1 - k, v1, u1 - k, v1, frame);
+            if (field != null) {
+                t = intersect(field, frame, u0 - k, v0, h0, u1 - k, v1, h1);
+            }
+        }
+        return t;
+    }
+
+    private static double intersect(HeightField field,
+                                    double[] frame,
+                                    double u0,
+                                    double v0,
+                                    double h0,
+                                    double u1,
+                                    double v1,
+                                    double h1) {
+        double x0 = field.toX(tileU(u0, frame)), y0 = field.toY(tileV(v0, frame));
+        double x1 = field.toX(tileU(u1, frame)), y1 = field.toY(tileV(v1, frame));
+        return field.intersect(x0, y0, h0, x1 - x0, y1 - y0, h1 - h0, 1);
+    }
+
+    /** Converts a U coordinate to the texture coordinates of the tile with the given frame. **/
+    private static double tileU(double u, double[] frame) {
+        return (u - frame[0]) * frame[2];
+    }
+
+    /** Converts a V coordinate to the texture coordinates of the tile with the given frame. **/
+    private static double tileV(double v, double[] frame) {
+        return (1.0 - v - frame[1]) * frame[3];
+    }
+
+    /**
+     * Gets the finest decoded tile that contains the two given points.
+     *
+     * @param u0    The U coordinate of the first point, in [0,1].
+     * @param v0    The V coordinate of the first point, in [0,1].
+     * @param u1    The U coordinate of the second point, in [0,1].
+     * @param v1    The V coordinate of the second point, in [0,1].
+     * @param frame Array to put the U and V offsets, and the U and V scales of the tile in.
+     *
+     * @return The height field of the tile, or null if there is no such tile.
+     */
+    private HeightField decodedTile(double u0, double v0, double u1, double v1, double[] frame) {
         if (svt != null) {
-            v = 1.0 - v;
+            int[] cr0 = new int[2], cr1 = new int[2];
             for (int level = svt.depth; level >= 0; level--) {
-                int[] cr = svt.getColRow(level, u, v);
-                if (svt.contains(level, cr[0], cr[1])) {
-                    // Hit! Query this, if loaded!
-                    var tile = svt.getTile(level, cr[0], cr[1]);
-                    if (manager.contains(tile.object.toString())) {
-                        Pixmap pm = manager.get(tile.object.toString());
+                svt.getColRow(level, u0, 1.0 - v0, cr0);
+                svt.getColRow(level, u1, 1.0 - v1, cr1);
+                if (cr0[0] == cr1[0] && cr0[1] == cr1[1] && svt.contains(level, cr0[0], cr0[1])) {
+                    // Hit! Query this, if decoded!
+                    var tile = svt.getTile(level, cr0[0], cr0[1]);
+                    var field = getField(tile.object);
+                    if (field != null) {
                         double[] tileUV = tile.getUV();
                         double tilesPerLevel = FastMath.pow(2.0, level);
-                        double tileU = (u - tileUV[0]) * tilesPerLevel * svt.root.length;
-                        double tileV = (v - tileUV[1]) * tilesPerLevel;
-                        model.setPixmap(pm);
-                        return BilinearInterpolator.interpolate(tileU, tileV, model, false, false);
+                        frame[0] = tileUV[0];
+                        frame[1] = tileUV[1];
+                        frame[2] = tilesPerLevel * svt.root.length;
+                        frame[3] = tilesPerLevel;
+                        return field;
                     }
                 }
             }
         }
-        return 0;
+        return null;
     }
 
-    private static class PixmapGridModel implements GridModel {
-        private Pixmap pixmap;
-        private final Color color;
-
-        public PixmapGridModel() {
-            this.color = new Color();
-        }
-
-        public void setPixmap(Pixmap pixmap) {
-            this.pixmap = pixmap;
-        }
-        @Override
-        public int getWidth() {
-            return pixmap.getWidth();
+    /**
+     * Gets the decoded height field of the given tile. If it is not decoded, and the tile is loaded, its heights are
+     * copied from the pixmap held by the asset manager, and decoded in the background. This must be called in the
+     * main thread, where the asset manager disposes the pixmaps.
+     *
+     * @param file The tile file.
+     *
+     * @return The height field, or null if it is not decoded yet.
+     */
+    private HeightField getField(Path file) {
+        synchronized (fields) {
+            var field = fields.get(file);
+            if (field == null && !pending.contains(file) && manager.isLoaded(file.toString())) {
+                Pixmap pixmap = manager.get(file.toString(), Pixmap.class);
+                byte[] red = HeightField.redChannel(pixmap);
+                int w = pixmap.getWidth(), h = pixmap.getHeight();
+                pending.add(file);
+                decoder().execute(() -> decode(file, red, w, h));
+            }
+            return field;
         }
+    }
 
-        @Override
-        public int getHeight() {
-            return pixmap.getHeight();
+    private void decode(Path file, byte[] red, int w, int h) {
+        HeightField field = HeightField.of(red, w, h, false);
+        synchronized (fields) {
+            pending.remove(file);
+            fields.put(file, field);
+            bytes += field.getSizeBytes();
+            // Evict the least recently used tiles, but never the one just added.
+            Iterator<HeightField> it = fields.values().iterator();
+            while (bytes > MAX_BYTES && fields.size() > 1) {
+                bytes -= it.next().getSizeBytes();
+                it.remove();
+            }
         }
+    }
 
-        @Override
-        public double getValue(int x, int y) {
-            return color.set(pixmap.getPixel(x, y)).r;
+    private synchronized static ExecutorService decoder() {
+        if (decoder == null) {
+            decoder = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "height-tile-decoder");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            });
         }
+        return decoder;
     }
 }
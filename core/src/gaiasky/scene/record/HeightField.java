@@ -0,0 +1,494 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.scene.record;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import gaiasky.scene.record.BilinearInterpolator.GridModel;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Decoded height map tile, with normalized float heights and a min/max quadtree over blocks of its cells.
+ * <p>
+ * The field space has the sample (i, j) at the point (i, j), with i growing to the right and j growing downwards as
+ * in the source image, and the height in z. Cells are the squares between four neighboring samples, and the surface
+ * is bilinear in each cell. If the field wraps in x, there is an extra column of cells between the last and the first
+ * columns of samples. The leaves of the quadtree hold the minimum and the maximum height of blocks of
+ * {@link #BLOCK} x {@link #BLOCK} cells, and level k holds the ones of blocks of 2^k leaves, which bound the surface
+ * in the block. Range queries and ray intersections use them to skip whole blocks, and visit the cells of the leaves
+ * they can not skip. With blocks instead of single cells, the quadtree takes a fraction of the size of the heights.
+ */
+public final class HeightField implements GridModel {
+    /** Cells per side of the leaves of the quadtree. **/
+    public static final int BLOCK = 4;
+    private static final int BLOCK_SHIFT = 2;
+
+    private final float[] heights;
+    private final int width, height;
+    private final boolean wrapX;
+    /** Number of cells in x and in y. **/
+    private final int cellsX, cellsY;
+    /** Number of nodes in each level of the quadtree. **/
+    private final int[] levelWidth, levelHeight;
+    /** Minimum and maximum heights of each node, per level. **/
+    private final float[][] mins, maxs;
+
+    /**
+     * Creates a height field with the given samples.
+     *
+     * @param heights The normalized heights, row by row, starting at the top.
+     * @param width   The number of samples per row.
+     * @param height  The number of rows.
+     * @param wrapX   Whether the field wraps in x.
+     */
+    public HeightField(float[] heights, int width, int height, boolean wrapX) {
+        if (heights.length != width * height) {
+            throw new IllegalArgumentException("Expected " + width * height + " heights, got " + heights.length);
+        }
+        this.heights = heights;
+        this.width = width;
+        this.height = height;
+        this.wrapX = wrapX && width > 1;
+        this.cellsX = Math.max(1, this.wrapX ? width : width - 1);
+        this.cellsY = Math.max(1, height - 1);
+
+        int w0 = (cellsX + BLOCK - 1) >> BLOCK_SHIFT;
+        int h0 = (cellsY + BLOCK - 1) >> BLOCK_SHIFT;
+        int levels = 1;
+        while ((w0 - 1 >> levels - 1) > 0 || (h0 - 1 >> levels - 1) > 0) {
+            levels++;
+        }
+        levelWidth = new int[levels];
+        levelHeight = new int[levels];
+        mins = new float[levels][];
+        maxs = new float[levels][];
+
+        // Leaves, the blocks of cells.
+        levelWidth[0] = w0;
+        levelHeight[0] = h0;
+        var min = mins[0] = new float[w0 * h0];
+        var max = maxs[0] = new float[w0 * h0];
+        Arrays.fill(min, Float.MAX_VALUE);
+        Arrays.fill(max, -Float.MAX_VALUE);
+        for (int j = 0; j < cellsY; j++) {
+            for (int i = 0; i < cellsX; i++) {
+                int k = (j >> BLOCK_SHIFT) * w0 + (i >> BLOCK_SHIFT);
+                min[k] = Math.min(min[k], cellMin(i, j));
+                max[k] = Math.max(max[k], cellMax(i, j));
+            }
+        }
+        // Upper levels.
+        for (int l = 1; l < levels; l++) {
+            int pw = levelWidth[l - 1], ph = levelHeight[l - 1];
+            int w = (pw + 1) / 2, h = (ph + 1) / 2;
+            levelWidth[l] = w;
+            levelHeight[l] = h;
+            float[] pMin = mins[l - 1], pMax = maxs[l - 1];
+            min = mins[l] = new float[w * h];
+            max = maxs[l] = new float[w * h];
+            for (int j = 0; j < h; j++) {
+                for (int i = 0; i < w; i++) {
+                    float mn = Float.MAX_VALUE, mx = -Float.MAX_VALUE;
+                    for (int cj = 2 * j; cj < Math.min(2 * j + 2, ph); cj++) {
+                        for (int ci = 2 * i; ci < Math.min(2 * i + 2, pw); ci++) {
+                            mn = Math.min(mn, pMin[cj * pw + ci]);
+                            mx = Math.max(mx, pMax[cj * pw + ci]);
+                        }
+                    }
+                    min[j * w + i] = mn;
+                    max[j * w + i] = mx;
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes the red channel of the given pixmap, as {@link com.badlogic.gdx.graphics.Color#r}.
+     *
+     * @param pixmap The height pixmap.
+     * @param wrapX  Whether the field wraps in x.
+     *
+     * @return The height field.
+     */
+    public static HeightField of(Pixmap pixmap, boolean wrapX) {
+        return of(redChannel(pixmap), pixmap.getWidth(), pixmap.getHeight(), wrapX);
+    }
+
+    /**
+     * Creates a height field from the red bytes of a height image.
+     *
+     * @param red    The red bytes, row by row, starting at the top.
+     * @param width  The number of samples per row.
+     * @param height The number of rows.
+     * @param wrapX  Whether the field wraps in x.
+     *
+     * @return The height field.
+     */
+    public static HeightField of(byte[] red, int width, int height, boolean wrapX) {
+        var heights = new float[red.length];
+        for (int k = 0; k < heights.length; k++) {
+            heights[k] = (red[k] & 0xff) / 255f;
+        }
+        return new HeightField(heights, width, height, wrapX);
+    }
+
+    /**
+     * Copies the red channel of the given pixmap, row by row, starting at the top.
+     *
+     * @param pixmap The pixmap.
+     *
+     * @return The red bytes.
+     */
+    public static byte[] redChannel(Pixmap pixmap) {
+        int w = pixmap.getWidth(), h = pixmap.getHeight();
+        var red = new byte[w * h];
+        var format = pixmap.getFormat();
+        if (format == Pixmap.Format.RGBA8888 || format == Pixmap.Format.RGB888) {
+            // Read the red bytes directly.
+            ByteBuffer pixels = pixmap.getPixels();
+            int stride = format == Pixmap.Format.RGBA8888 ? 4 : 3;
+            for (int k = 0; k < red.length; k++) {
+                red[k] = pixels.get(k * stride);
+            }
+        } else {
+            for (int j = 0; j < h; j++) {
+                for (int i = 0; i < w; i++) {
+                    red[j * w + i] = (byte) (pixmap.getPixel(i, j) >>> 24);
+                }
+            }
+        }
+        return red;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public double getValue(int x, int y) {
+        return heights[y * width + x];
+    }
+
+    public float get(int x, int y) {
+        return heights[y * width + x];
+    }
+
+    public boolean isWrapX() {
+        return wrapX;
+    }
+
+    /**
+     * Samples the field with the texture coordinates of the source image, as {@link BilinearInterpolator} does.
+     *
+     * @param u     The U coordinate.
+     * @param v     The V coordinate.
+     * @param wrapY Whether to wrap the interpolation in the Y coordinate.
+     *
+     * @return The interpolated height.
+     */
+    public double sample(double u, double v, boolean wrapY) {
+        return BilinearInterpolator.interpolate(u, v, this, wrapX, wrapY);
+    }
+
+    /**
+     * Converts a U texture coordinate to the x of the field space, with the samples at the centers of their texels.
+     *
+     * @param u The U coordinate.
+     *
+     * @return The x coordinate.
+     */
+    public double toX(double u) {
+        return u * width - 0.5;
+    }
+
+    /**
+     * Converts a V texture coordinate, which grows upwards, to the y of the field space.
+     *
+     * @param v The V coordinate.
+     *
+     * @return The y coordinate.
+     */
+    public double toY(double v) {
+        return (1.0 - v) * height - 0.5;
+    }
+
+    /**
+     * Samples the bilinear surface at the given point of the field space.
+     *
+     * @param x The x coordinate, in [0, width - 1], or [0, width) if the field wraps in x.
+     * @param y The y coordinate, in [0, height - 1].
+     *
+     * @return The height of the surface.
+     */
+    public double heightAt(double x, double y) {
+        x = Math.max(0, Math.min(x, cellsX));
+        y = Math.max(0, Math.min(y, height - 1));
+        int i = Math.min((int) x, cellsX - 1);
+        int j = Math.min((int) y, cellsY - 1);
+        double s = x - i, r = y - j;
+        int i2 = right(i);
+        int j2 = Math.min(j + 1, height - 1);
+        double h00 = get(i, j), h10 = get(i2, j), h01 = get(i, j2), h11 = get(i2, j2);
+        return h00 + (h10 - h00) * s + (h01 - h00) * r + (h00 - h10 - h01 + h11) * s * r;
+    }
+
+    /** @return The minimum height of the field. **/
+    public float getMin() {
+        return mins[mins.length - 1][0];
+    }
+
+    /** @return The maximum height of the field. **/
+    public float getMax() {
+        return maxs[maxs.length - 1][0];
+    }
+
+    /** @return The size of the decoded heights and of the quadtree, in bytes. **/
+    public long getSizeBytes() {
+        long n = heights.length;
+        for (var m : mins) {
+            n += 2L * m.length;
+        }
+        return n * Float.BYTES;
+    }
+
+    /** Index of the column of samples to the right of the given one. **/
+    private int right(int i) {
+        return i + 1 >= width ? (wrapX ? 0 : i) : i + 1;
+    }
+
+    private float cellMin(int i, int j) {
+        int i2 = right(i), j2 = Math.min(j + 1, height - 1);
+        return Math.min(Math.min(get(i, j), get(i2, j)), Math.min(get(i, j2), get(i2, j2)));
+    }
+
+    private float cellMax(int i, int j) {
+        int i2 = right(i), j2 = Math.min(j + 1, height - 1);
+        return Math.max(Math.max(get(i, j), get(i2, j)), Math.max(get(i, j2), get(i2, j2)));
+    }
+
+    /**
+     * Computes the minimum and maximum heights of the surface over the cells that overlap the given rectangle of the
+     * field space. If the field wraps in x, the rectangle wraps too.
+     *
+     * @param x0  The minimum x.
+     * @param y0  The minimum y.
+     * @param x1  The maximum x.
+     * @param y1  The maximum y.
+     * @param out Array to put the minimum and the maximum in.
+     *
+     * @return The out array.
+     */
+    public float[] minMax(double x0, double y0, double x1, double y1, float[] out) {
+        out[0] = Float.MAX_VALUE;
+        out[1] = -Float.MAX_VALUE;
+        int cj0 = clamp((int) Math.floor(y0), cellsY), cj1 = clamp((int) Math.floor(y1), cellsY);
+        if (wrapX) {
+            int ci0 = (int) Math.floor(x0), ci1 = (int) Math.floor(x1);
+            if (ci1 - ci0 + 1 >= cellsX) {
+                minMax(mins.length - 1, 0, 0, 0, cj0, cellsX - 1, cj1, out);
+            } else {
+                ci0 = Math.floorMod(ci0, cellsX);
+                ci1 = Math.floorMod(ci1, cellsX);
+                if (ci0 <= ci1) {
+                    minMax(mins.length - 1, 0, 0, ci0, cj0, ci1, cj1, out);
+                } else {
+                    // Across the seam.
+                    minMax(mins.length - 1, 0, 0, ci0, cj0, cellsX - 1, cj1, out);
+                    minMax(mins.length - 1, 0, 0, 0, cj0, ci1, cj1, out);
+                }
+            }
+        } else {
+            int ci0 = clamp((int) Math.floor(x0), cellsX), ci1 = clamp((int) Math.floor(x1), cellsX);
+            minMax(mins.length - 1, 0, 0, ci0, cj0, ci1, cj1, out);
+        }
+        return out;
+    }
+
+    private static int clamp(int c, int n) {
+        return Math.max(0, Math.min(c, n - 1));
+    }
+
+    private void minMax(int level, int i, int j, int ci0, int cj0, int ci1, int cj1, float[] out) {
+        int shift = level + BLOCK_SHIFT;
+        int n0i = i << shift, n0j = j << shift;
+        int n1i = Math.min(((i + 1) << shift) - 1, cellsX - 1), n1j = Math.min(((j + 1) << shift) - 1, cellsY - 1);
+        if (n0i > ci1 || n1i < ci0 || n0j > cj1 || n1j < cj0) {
+            return;
+        }
+        int k = j * levelWidth[level] + i;
+        if (mins[level][k] >= out[0] && maxs[level][k] <= out[1]) {
+            return;
+        }
+        if (n0i >= ci0 && n1i <= ci1 && n0j >= cj0 && n1j <= cj1) {
+            out[0] = Math.min(out[0], mins[level][k]);
+            out[1] = Math.max(out[1], maxs[level][k]);
+            return;
+        }
+        if (level == 0) {
+            // Partially covered leaf, visit its cells.
+            for (int cj = Math.max(n0j, cj0); cj <= Math.min(n1j, cj1); cj++) {
+                for (int ci = Math.max(n0i, ci0); ci <= Math.min(n1i, ci1); ci++) {
+                    out[0] = Math.min(out[0], cellMin(ci, cj));
+                    out[1] = Math.max(out[1], cellMax(ci, cj));
+                }
+            }
+            return;
+        }
+        int l = level - 1;
+        for (int cj = 2 * j; cj < Math.min(2 * j + 2, levelHeight[l]); cj++) {
+            for (int ci = 2 * i; ci < Math.min(2 * i + 2, levelWidth[l]); ci++) {
+                minMax(l, ci, cj, ci0, cj0, ci1, cj1, out);
+            }
+        }
+    }
+
+    /**
+     * Intersects a ray with the surface, in the field space. If the field wraps in x, the ray crosses the seam.
+     *
+     * @param ox   The x of the origin.
+     * @param oy   The y of the origin.
+     * @param oz   The z (height) of the origin.
+     * @param dx   The x of the direction.
+     * @param dy   The y of the direction.
+     * @param dz   The z of the direction.
+     * @param tMax The maximum ray parameter.
+     *
+     * @return The ray parameter of the closest intersection, or -1 if the ray does not hit the surface in [0, tMax].
+     */
+    public double intersect(double ox, double oy, double oz, double dx, double dy, double dz, double tMax) {
+        if (!wrapX) {
+            return trace(ox, oy, oz, dx, dy, dz, tMax);
+        }
+        // Trace each period of x that the ray crosses, in order along the ray, with the origin shifted to it.
+        double xEnd = ox + dx * tMax;
+        long p0 = (long) Math.floor(ox / cellsX), p1 = (long) Math.floor(xEnd / cellsX);
+        long step = p1 >= p0 ? 1 : -1;
+        for (long p = p0; ; p += step) {
+            double t = trace(ox - p * cellsX, oy, oz, dx, dy, dz, tMax);
+            if (t >= 0 || p == p1) {
+                return t;
+            }
+        }
+    }
+
+    private double trace(double ox, double oy, double oz, double dx, double dy, double dz, double tMax) {
+        var ray = new Ray(ox, oy, oz, dx, dy, dz, tMax);
+        intersect(mins.length - 1, 0, 0, ray);
+        return ray.hit ? ray.best : -1;
+    }
+
+    private static final class Ray {
+        final double ox, oy, oz, dx, dy, dz;
+        final double idx, idy, idz;
+        double best;
+        boolean hit;
+        /** Parameter range of the ray within the current box. **/
+        double t0, t1;
+
+        Ray(double ox, double oy, double oz, double dx, double dy, double dz, double tMax) {
+            this.ox = ox;
+            this.oy = oy;
+            this.oz = oz;
+            this.dx = dx;
+            this.dy = dy;
+            this.dz = dz;
+            this.idx = 1.0 / dx;
+            this.idy = 1.0 / dy;
+            this.idz = 1.0 / dz;
+            this.best = tMax;
+        }
+
+        /** Clips [t0, t1] to the slab [lo, hi] of one axis, and returns whether it is not empty. **/
+        boolean clip(double o, double inv, double lo, double hi) {
+            double a = (lo - o) * inv, b = (hi - o) * inv;
+            if (!Double.isNaN(a) && !Double.isNaN(b)) {
+                t0 = Math.max(t0, Math.min(a, b));
+                t1 = Math.min(t1, Math.max(a, b));
+            }
+            // NaN if the ray is parallel to the slab, on its boundary.
+            return t0 <= t1;
+        }
+
+        /** Sets [t0, t1] to the part of the ray, up to the closest hit, within the given box. **/
+        boolean box(double x0, double x1, double y0, double y1, double z0, double z1) {
+            t0 = 0;
+            t1 = best;
+            return clip(ox, idx, x0, x1) && clip(oy, idy, y0, y1) && clip(oz, idz, z0, z1);
+        }
+    }
+
+    private void intersect(int level, int i, int j, Ray ray) {
+        int shift = level + BLOCK_SHIFT;
+        int k = j * levelWidth[level] + i;
+        int n0i = i << shift, n0j = j << shift;
+        int n1i = Math.min((i + 1) << shift, cellsX), n1j = Math.min((j + 1) << shift, cellsY);
+        // Slab test with the bounding box of the node.
+        if (!ray.box(n0i, n1i, n0j, n1j, mins[level][k], maxs[level][k])) {
+            return;
+        }
+        if (level == 0) {
+            for (int cj = n0j; cj < n1j; cj++) {
+                for (int ci = n0i; ci < n1i; ci++) {
+                    if (ray.box(ci, ci + 1, cj, cj + 1, cellMin(ci, cj), cellMax(ci, cj))) {
+                        intersectCell(ci, cj, ray.t0, ray.t1, ray);
+                    }
+                }
+            }
+            return;
+        }
+        int l = level - 1;
+        for (int cj = 2 * j; cj < Math.min(2 * j + 2, levelHeight[l]); cj++) {
+            for (int ci = 2 * i; ci < Math.min(2 * i + 2, levelWidth[l]); ci++) {
+                intersect(l, ci, cj, ray);
+            }
+        }
+    }
+
+    /** Intersects the ray with the bilinear patch of the given cell, within [t0, t1]. **/
+    private void intersectCell(int i, int j, double t0, double t1, Ray ray) {
+        int i2 = right(i);
+        int j2 = Math.min(j + 1, height - 1);
+        double h00 = get(i, j), h10 = get(i2, j), h01 = get(i, j2), h11 = get(i2, j2);
+        double b = h10 - h00, c = h01 - h00, d = h00 - h10 - h01 + h11;
+        double s0 = ray.ox - i, r0 = ray.oy - j;
+        // h(s, r) - z along the ray is a quadratic in t.
+        double qa = d * ray.dx * ray.dy;
+        double qb = b * ray.dx + c * ray.dy + d * (s0 * ray.dy + r0 * ray.dx) - ray.dz;
+        double qc = h00 + b * s0 + c * r0 + d * s0 * r0 - ray.oz;
+        double eps = 1e-9 * Math.max(1.0, t1);
+        double root = Double.NaN;
+        if (Math.abs(qa) < 1e-12) {
+            if (qb != 0) {
+                root = -qc / qb;
+            } else if (qc == 0) {
+                root = t0;
+            }
+        } else {
+            double disc = qb * qb - 4 * qa * qc;
+            if (disc >= 0) {
+                double sq = Math.sqrt(disc);
+                // Numerically stable roots.
+                double q = -0.5 * (qb + Math.copySign(sq, qb));
+                double ra = q / qa, rb = q != 0 ? qc / q : ra;
+                double lo = Math.min(ra, rb), hi = Math.max(ra, rb);
+                root = lo >= t0 - eps ? lo : hi;
+            }
+        }
+        if (root >= t0 - eps && root <= t1 + eps && (root < ray.best || !ray.hit)) {
+            ray.best = Math.max(root, t0);
+            ray.hit = true;
+        }
+    }
+}
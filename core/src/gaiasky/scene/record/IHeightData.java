@@ -17,4 +17,39 @@ public sealed interface IHeightData permits HeightDataPixmap, HeightDataSVT {
      */
     double getNormalizedHeight(double u, double v);
 
+    /**
+     * Gets an upper bound of the normalized height over the whole surface.
+     * @return The maximum height value in [0,1].
+     */
+    default double getMaxNormalizedHeight() {
+        return 1;
+    }
+
+    /**
+     * Gets an upper bound of the normalized height over the given UV rectangle. The U range may go beyond [0,1], as
+     * the surface wraps around in U.
+     * @param u0 The minimum U.
+     * @param v0 The minimum V.
+     * @param u1 The maximum U.
+     * @param v1 The maximum V.
+     * @return The maximum height value in [0,1].
+     */
+    default double getMaxNormalizedHeight(double u0, double v0, double u1, double v1) {
+        return getMaxNormalizedHeight();
+    }
+
+    /**
+     * Intersects the segment between two points above the surface, given by their UV coordinates and their
+     * normalized heights, with the surface. The segment is linear in UV and height, so it should be short compared
+     * to the curvature of the body. The U coordinates may go beyond [0,1] so that the segment does not jump at the seam.
+     * @param u0 The U coordinate of the start.
+     * @param v0 The V coordinate of the start.
+     * @param h0 The normalized height of the start.
+     * @param u1 The U coordinate of the end.
+     * @param v1 The V coordinate of the end.
+     * @param h1 The normalized height of the end.
+     * @return The fraction of the segment in [0,1] where it first hits the surface, or -1 if it does not.
+     */
+    double intersect(double u0, double v0, double h0, double u1, double v1, double h1);
+
 }
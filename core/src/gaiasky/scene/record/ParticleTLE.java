@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.scene.record;
+
+import com.badlogic.gdx.utils.ObjectMap;
+import gaiasky.scene.api.IParticleRecord;
+import gaiasky.util.Constants;
+import gaiasky.util.Nature;
+import gaiasky.util.TextUtils;
+import gaiasky.util.coord.SGP4Propagator;
+import gaiasky.util.ucd.UCD;
+
+/**
+ * Record class for the objects of a two-line element set catalog. It holds no position itself, but reads the results
+ * of the last batch propagation of its {@link SGP4Propagator}, so that the whole catalog is updated at once. Positions
+ * are geocentric, and the TEME frame of SGP4 is taken as the equatorial frame. The velocity is used as the proper
+ * motion, so that positions are extrapolated linearly between two batch propagations.
+ *
+ * @param id         The particle identifier.
+ * @param names      The name array.
+ * @param propagator The propagator.
+ * @param index      The index of the object in the propagator.
+ * @param extra      Map with extra attributes.
+ */
+public record ParticleTLE(long id,
+                          String[] names,
+                          SGP4Propagator propagator,
+                          int index,
+                          ObjectMap<UCD, Object> extra) implements IParticleRecord {
+
+    /** Kilometers per second to internal units per year. **/
+    private static final double KMS_TO_UY = Constants.KM_TO_U * Nature.Y_TO_S;
+
+    @Override
+    public ParticleType getType() {
+        return ParticleType.PARTICLE_EXT;
+    }
+
+    @Override
+    public double x() {
+        return propagator.y[index] * Constants.KM_TO_U;
+    }
+
+    @Override
+    public double y() {
+        return propagator.z[index] * Constants.KM_TO_U;
+    }
+
+    @Override
+    public double z() {
+        return propagator.x[index] * Constants.KM_TO_U;
+    }
+
+    @Override
+    public boolean hasProperMotion() {
+        return propagator.error[index] == SGP4Propagator.OK;
+    }
+
+    @Override
+    public float vx() {
+        return (float) (propagator.vy[index] * KMS_TO_UY);
+    }
+
+    @Override
+    public float vy() {
+        return (float) (propagator.vz[index] * KMS_TO_UY);
+    }
+
+    @Override
+    public float vz() {
+        return (float) (propagator.vx[index] * KMS_TO_UY);
+    }
+
+    @Override
+    public String[] names() {
+        return names;
+    }
+
+    @Override
+    public String namesConcat() {
+        return TextUtils.concatenate(Constants.nameSeparator,
+                                     names);
+    }
+
+    @Override
+    public boolean hasName(String candidate) {
+        return hasName(candidate,
+                       false);
+    }
+
+    @Override
+    public boolean hasName(String candidate,
+                           boolean matchCase) {
+        if (names == null) {
+            return false;
+        } else {
+            for (String name : names) {
+                if (matchCase) {
+                    if (name.equals(candidate))
+                        return true;
+                } else {
+                    if (name.equalsIgnoreCase(candidate))
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public double epoch() {
+        return propagator.getCatalog().epochJD[index];
+    }
+
+    @Override
+    public double eccentricity() {
+        return propagator.getCatalog().eccentricity[index];
+    }
+
+    @Override
+    public double inclination() {
+        return Math.toDegrees(propagator.getCatalog().inclination[index]);
+    }
+
+    @Override
+    public double ascendingNode() {
+        return Math.toDegrees(propagator.getCatalog().ascendingNode[index]);
+    }
+
+    @Override
+    public double argOfPericenter() {
+        return Math.toDegrees(propagator.getCatalog().argOfPerigee[index]);
+    }
+
+    @Override
+    public double meanAnomaly() {
+        return Math.toDegrees(propagator.getCatalog().meanAnomaly[index]);
+    }
+
+    @Override
+    public void setExtraAttributes(ObjectMap<UCD, Object> e) {
+        extra.clear();
+        extra.putAll(e);
+    }
+
+    @Override
+    public boolean hasExtra() {
+        return extra != null;
+    }
+
+    @Override
+    public boolean hasExtra(String name) {
+        if (extra != null) {
+            ObjectMap.Keys<UCD> ucds = extra.keys();
+            for (UCD ucd : ucds) {
+                if ((ucd.originalUCD != null && ucd.originalUCD.equals(name)) || (ucd.colName != null && ucd.colName.equals(name))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean hasExtra(UCD ucd) {
+        return extra != null && extra.containsKey(ucd);
+    }
+
+    @Override
+    public ObjectMap<UCD, Object> getExtra() {
+        return extra;
+    }
+
+    @Override
+    public Object getExtra(String name) {
+        return IParticleRecord.getExtraAttribute(name, extra);
+    }
+
+    @Override
+    public Object getExtra(UCD ucd) {
+        if (hasExtra(ucd)) {
+            return extra.get(ucd);
+        }
+        return null;
+    }
+
+    @Override
+    public double getExtraNumber(String name) {
+        var value = getExtra(name);
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        } else {
+            return Double.NaN;
+        }
+    }
+
+    @Override
+    public double getExtraNumber(UCD ucd) {
+        var value = getExtra(ucd);
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        } else {
+            return Double.NaN;
+        }
+    }
+
+    @Override
+    public ObjectMap.Keys<UCD> extraKeys() {
+        return extra.keys();
+    }
+
+    /* UNUSED METHODS BELOW */
+
+    @Override
+    public float appMag() {
+        return 0;
+    }
+
+    @Override
+    public float absMag() {
+        return 0;
+    }
+
+    @Override
+    public boolean hasColor() {
+        return false;
+    }
+
+    @Override
+    public float color() {
+        return 0;
+    }
+
+    @Override
+    public double[] rgb() {
+        return new double[0];
+    }
+
+    @Override
+    public boolean hasSize() {
+        return false;
+    }
+
+    @Override
+    public float size() {
+        return 0;
+    }
+
+    @Override
+    public double radius() {
+        return 0;
+    }
+
+    @Override
+    public long id() {
+        return id;
+    }
+
+}
@@ -18,6 +18,7 @@ import gaiasky.data.AssetBean;
 import gaiasky.data.api.IParticleGroupDataProvider;
 import gaiasky.data.api.IStarGroupDataProvider;
 import gaiasky.data.group.STILDataProvider;
+import gaiasky.data.group.TLEDataProvider;
 import gaiasky.data.util.ParticleSetData;
 import gaiasky.data.util.ParticleSetLoader;
 import gaiasky.scene.Mapper;
@@ -233,6 +234,10 @@ public class ParticleSetInitializer extends AbstractInitSystem {
             if (provider instanceof STILDataProvider stil) {
                 set.setColumnInfoList(stil.getColumnInfoList());
             }
+            if (provider instanceof TLEDataProvider tle && tle.getPropagator() != null) {
+                set.propagator = tle.getPropagator();
+                set.epochJd = set.propagator.getTime();
+            }
         } else {
             set.pointData = null;
         }
@@ -78,6 +78,7 @@ public class SceneGraphBuilderSystem extends AbstractInitSystem {
             parentGraph.children.add(child);
             graph.parent = parent;
         }
+        GraphNode.structureChanged();
         parentGraph.numChildren += children.length;
     }
 }
@@ -19,6 +19,7 @@ import gaiasky.scene.Scene;
 import gaiasky.scene.component.TLESource;
 import gaiasky.util.SysUtils;
 import gaiasky.util.TextUtils;
+import gaiasky.util.concurrent.PriorityTaskExecutor.Priority;
 import gaiasky.util.coord.TLEParser;
 import gaiasky.util.coord.TLEParser.OrbitalElements;
 
@@ -52,9 +53,9 @@ public class TLEInitializer extends AbstractInitSystem {
 
     @Override
     public void setUpEntity(Entity entity) {
-        // Run update in background thread.
+        // Run update in background thread. A new update of the same entity replaces the queued one.
         var executorService = GaiaSky.instance.getExecutorService();
-        executorService.execute(() -> {
+        executorService.supersede(entity, () -> {
             synchronized (lock) {
                 var base = Mapper.base.get(entity);
 
@@ -162,7 +163,7 @@ public class TLEInitializer extends AbstractInitSystem {
                 }
             }
 
-        });
+        }, Priority.BULK);
     }
 
     private void writeElements(Path filePath, Instant now, OrbitalElements elements) throws IOException {
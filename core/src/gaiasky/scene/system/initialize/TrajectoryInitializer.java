@@ -85,13 +85,14 @@ public class TrajectoryInitializer extends AbstractInitSystem {
                     try {
                         trajectory.providerInstance = ClassReflection.newInstance(trajectory.providerClass);
                         trajectory.providerInstance.initialize(entity, trajectory);
-                        trajectory.providerInstance.load(trajectory.oc.source, new OrbitDataLoaderParameters(base.names[0],
-                                                                                                             trajectory.providerClass,
-                                                                                                             trajectory.oc,
-                                                                                                             trajectory.multiplier,
-                                                                                                             trajectory.numSamples,
-                                                                                                             trajectory.sampling),
-                                                         trajectory.newMethod);
+                        var parameters = new OrbitDataLoaderParameters(base.names[0],
+                                                                       trajectory.providerClass,
+                                                                       trajectory.oc,
+                                                                       trajectory.multiplier,
+                                                                       trajectory.numSamples,
+                                                                       trajectory.sampling);
+                        trajectory.applySampling(parameters);
+                        trajectory.providerInstance.load(trajectory.oc.source, parameters, trajectory.newMethod);
                         verts.pointCloudData = trajectory.providerInstance.getData();
 
                         // Transform data using affine transformations.
@@ -145,6 +146,7 @@ public class TrajectoryInitializer extends AbstractInitSystem {
         if (trajectory.body != null) {
             var bodyBase = Mapper.base.get(trajectory.body);
             trajectory.params = new OrbitDataLoaderParameters(bodyBase.names[0], null, trajectory.oc.period, 600, trajectory.sampling);
+            trajectory.applySampling(trajectory.params);
             trajectory.params.entity = entity;
         }
     }
@@ -51,6 +51,7 @@ import gaiasky.util.Logger.Log;
 import gaiasky.render.gdx.IntModelBatch;
 import gaiasky.render.gdx.shader.ExtShaderProgram;
 import gaiasky.util.math.MathUtilsDouble;
+import gaiasky.util.profile.FrameProfiler;
 import gaiasky.vr.openxr.XrDriver;
 import gaiasky.vr.openxr.input.XrControllerDevice;
 import net.jafama.FastMath;
@@ -92,9 +93,15 @@ public class SceneRenderer implements ISceneRenderer, IObserver {
     public float[] alphas;
     private final ModelEntityRenderSystem modelEntityRenderSystem = new ModelEntityRenderSystem(this);
     /**
-     * Render lists for all render groups, for full and half resolution.
+     * Render lists for all render groups, for full and half resolution. These are the front buffers, read by the
+     * render systems.
      **/
     private List<List<IRenderable>> renderListsFull, renderListsHalf;
+    /**
+     * Back buffers of the render lists, written by the extract systems. They are exchanged with the front buffers
+     * in {@link #swapRenderLists()}.
+     **/
+    private List<List<IRenderable>> extractListsFull, extractListsHalf;
     private Map<RenderGroup, IRenderSystem> renderSystems;
     private List<RenderGroup> renderGroups;
     private RenderSystemRunnable depthTestR, additiveBlendR, noDepthTestR, regularBlendR, depthTestNoWritesR, depthWritesR, clearDepthR;
@@ -121,6 +128,10 @@ public class SceneRenderer implements ISceneRenderer, IObserver {
      */
     private final RenderGroup[] autonomousGroups = new RenderGroup[]{PARTICLE_EFFECTS};
 
+    /** Stages of the scene and of each render group in the {@link FrameProfiler}. **/
+    private final int profilerScene;
+    private final int[] profilerGroups;
+
     public SceneRenderer(XrDriver xrDriver,
                          GlobalResources globalResources) {
         super();
@@ -144,6 +155,13 @@ public class SceneRenderer implements ISceneRenderer, IObserver {
         this.renderPasses.add(shadowMapPass);
         this.renderPasses.add(cascadedShadowMapRenderPass);
         this.renderPasses.add(svtPass);
+
+        this.profilerScene = FrameProfiler.stage("frame/render");
+        var groups = values();
+        this.profilerGroups = new int[groups.length];
+        for (var rg : groups) {
+            profilerGroups[rg.ordinal()] = FrameProfiler.stage("frame/render/" + rg.name());
+        }
     }
 
     @Override
@@ -207,28 +225,8 @@ public class SceneRenderer implements ISceneRenderer, IObserver {
             renderPass.doneLoading(manager);
         }
 
-        // Initialize render lists.
-        renderListsFull = newRenderLists();
-        renderListsHalf = newRenderLists();
-
-        // Set reference
-        visible = new ComponentTypes();
-        ComponentType[] types = ComponentType.values();
-        for (int i = 0; i < GaiaSky.settings().scene.visibility.size(); i++) {
-            if (GaiaSky.settings().scene.visibility.get(types[i].toString())) {
-                visible.set(ComponentType.values()[i].ordinal());
-            }
-        }
-        // Invisible are always visible :_D
-        visible.set(ComponentType.Invisible.ordinal());
-
-        ComponentType[] comps = ComponentType.values();
-        times = new long[comps.length];
-        alphas = new float[comps.length];
-        for (int i = 0; i < comps.length; i++) {
-            times[i] = -20000L;
-            alphas[i] = 0f;
-        }
+        // Render lists and visibility.
+        initializeRenderLists();
 
         /*
          * INITIALIZE SGRs
@@ -255,6 +253,38 @@ public class SceneRenderer implements ISceneRenderer, IObserver {
 
     }
 
+    /**
+     * Creates the render and extract lists, and sets the visibility of the component types from the settings. This
+     * needs no graphics context, so that scenes can be updated and extracted headless, as in the benchmark.
+     */
+    public void initializeRenderLists() {
+        renderListsFull = newRenderLists();
+        renderListsHalf = newRenderLists();
+        extractListsFull = newRenderLists();
+        extractListsHalf = newRenderLists();
+        resetRenderLists(extractListsFull, true);
+        resetRenderLists(extractListsHalf, false);
+
+        // Set reference
+        visible = new ComponentTypes();
+        ComponentType[] types = ComponentType.values();
+        for (int i = 0; i < GaiaSky.settings().scene.visibility.size(); i++) {
+            if (GaiaSky.settings().scene.visibility.get(types[i].toString())) {
+                visible.set(ComponentType.values()[i].ordinal());
+            }
+        }
+        // Invisible are always visible :_D
+        visible.set(ComponentType.Invisible.ordinal());
+
+        ComponentType[] comps = ComponentType.values();
+        times = new long[comps.length];
+        alphas = new float[comps.length];
+        for (int i = 0; i < comps.length; i++) {
+            times[i] = -20000L;
+            alphas[i] = 0f;
+        }
+    }
+
     private AbstractRenderSystem initializeRenderSystem(RenderGroup rg) {
         AbstractRenderSystem system = null;
         switch (rg) {
@@ -463,6 +493,24 @@ public class SceneRenderer implements ISceneRenderer, IObserver {
         return full ? renderListsFull : renderListsHalf;
     }
 
+    @Override
+    public List<List<IRenderable>> getExtractLists(boolean full) {
+        return full ? extractListsFull : extractListsHalf;
+    }
+
+    /**
+     * Exchanges the render lists filled by the last extraction with the ones that have just been rendered, which
+     * must have been reset already.
+     */
+    public void swapRenderLists() {
+        var full = renderListsFull;
+        renderListsFull = extractListsFull;
+        extractListsFull = full;
+        var half = renderListsHalf;
+        renderListsHalf = extractListsHalf;
+        extractListsHalf = half;
+    }
+
     public List<List<IRenderable>> getRenderListsFull() {
         return renderListsFull;
     }
@@ -564,6 +612,7 @@ public class SceneRenderer implements ISceneRenderer, IObserver {
     public void renderScene(ICamera camera,
                             double t,
                             RenderingContext renderContext) {
+        long sceneStart = FrameProfiler.begin();
         try {
             var pp = renderContext.ppb.pp;
 
@@ -578,7 +627,9 @@ public class SceneRenderer implements ISceneRenderer, IObserver {
                 if (l != null && !l.isEmpty()) {
                     var renderSystem = getOrInitializeRenderSystem(renderGroup);
                     if (renderSystem != null) {
+                        long start = FrameProfiler.begin();
                         renderSystem.render(l, camera, t, renderContext);
+                        FrameProfiler.end(profilerGroups[renderGroup.ordinal()], start);
                     }
                 }
             }
@@ -598,7 +649,9 @@ public class SceneRenderer implements ISceneRenderer, IObserver {
                 if (l != null && !l.isEmpty()) {
                     var renderSystem = getOrInitializeRenderSystem(renderGroup);
                     if (renderSystem != null) {
+                        long start = FrameProfiler.begin();
                         renderSystem.render(l, camera, t, renderContext);
+                        FrameProfiler.end(profilerGroups[renderGroup.ordinal()], start);
                     }
                 }
             }
@@ -617,6 +670,8 @@ public class SceneRenderer implements ISceneRenderer, IObserver {
         } catch (Exception e) {
             // Maybe we can live with this, only log.
             logger.error(e);
+        } finally {
+            FrameProfiler.end(profilerScene, sceneStart);
         }
 
     }
@@ -635,6 +690,9 @@ public class SceneRenderer implements ISceneRenderer, IObserver {
         resetRenderLists(renderListsHalf, false);
     }
 
+    /**
+     * Clears the render lists that have just been rendered.
+     */
     public void resetRenderLists() {
         resetRenderListsFull();
         resetRenderListsHalf();
@@ -27,7 +27,6 @@ import gaiasky.scene.component.RefSysTransform;
 import gaiasky.scene.component.Render;
 import gaiasky.scene.record.BillboardDataset;
 import gaiasky.scene.record.CPUGalGenFallback;
-import gaiasky.scene.record.ParticleVector;
 import gaiasky.scene.system.render.SceneRenderer;
 import gaiasky.util.Logger;
 import gaiasky.util.Logger.Log;
@@ -128,8 +127,9 @@ public class BillboardProceduralCPURenderer extends InstancedRenderSystem implem
      *
      */
     private void prepareGPUData(IRenderable render, BillboardDataset bd) {
-        // Particle count after applying completion factor.
-        int count = bd.data.size();
+        final int stride = CPUGalGenFallback.STRIDE;
+        float[] data = bd.proceduralData;
+        int count = data.length / stride;
 
         var model = getModel(null, "quad", null, GL41.GL_TRIANGLES, -1);
         int offset = addMeshData(model, model.numVertices, count, model.numIndices, null, "quad",
@@ -138,26 +138,17 @@ public class BillboardProceduralCPURenderer extends InstancedRenderSystem implem
         curr = meshes.get(offset);
         model.ensureInstanceAttribsSize(count * curr.instanceSize);
 
+        float[] attribs = model.instanceAttributes;
         for (int i = 0; i < count; i++) {
-            var particle = bd.data.get(i);
-            var pv = (ParticleVector) particle;
+            int in = i * stride;
+            int out = curr.instanceIdx;
 
+            // OBJECT POSITION
+            System.arraycopy(data, in, attribs, out + model.particlePosOffset, 3);
             // COLOR
-            double[] dd = pv.data();
-            model.instanceAttributes[curr.instanceIdx + curr.colorOffset] = (float) dd[3];
-            model.instanceAttributes[curr.instanceIdx + curr.colorOffset + 1] = (float) dd[4];
-            model.instanceAttributes[curr.instanceIdx + curr.colorOffset + 2] = (float) dd[5];
-
+            System.arraycopy(data, in + 3, attribs, out + curr.colorOffset, 3);
             // SIZE, TYPE, TEX LAYER
-            double starSize = particle.size();
-            model.instanceAttributes[curr.instanceIdx + model.additionalOffset] = (float) dd[6];
-            model.instanceAttributes[curr.instanceIdx + model.additionalOffset + 1] = (float) dd[7];
-            model.instanceAttributes[curr.instanceIdx + model.additionalOffset + 2] = (float) dd[8];
-
-            // OBJECT POSITION
-            model.instanceAttributes[curr.instanceIdx + model.particlePosOffset] = (float) dd[0];
-            model.instanceAttributes[curr.instanceIdx + model.particlePosOffset + 1] = (float) dd[1];
-            model.instanceAttributes[curr.instanceIdx + model.particlePosOffset + 2] = (float) dd[2];
+            System.arraycopy(data, in + 6, attribs, out + model.additionalOffset, 3);
 
             curr.instanceIdx += curr.instanceSize;
             curr.numVertices++;
@@ -200,14 +191,13 @@ public class BillboardProceduralCPURenderer extends InstancedRenderSystem implem
                     Runnable genTask = () -> {
                         try {
                             var generator = new CPUGalGenFallback(body.size);
-                            var data = generator.generate(bd, (int) set.seed + index);
-                            bd.data = data;
+                            bd.proceduralData = generator.generateArray(bd, (int) set.seed + index);
+                            // Done.
+                            bd.setGenStatus(GenStatus.DONE);
                         } catch (Exception e) {
                             bd.setGenStatus(GenStatus.FAILED);
                             logger.error(e);
                         }
-                        // Done.
-                        bd.setGenStatus(GenStatus.DONE);
                     };
                     GaiaSky.instance.getExecutorService().execute(genTask);
                 } else if (bd.getGenStatus() == GenStatus.DONE &&
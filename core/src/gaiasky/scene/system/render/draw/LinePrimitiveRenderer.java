@@ -8,12 +8,19 @@
 package gaiasky.scene.system.render.draw;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.math.Vector3;
 import gaiasky.GaiaSky;
+import gaiasky.event.Event;
+import gaiasky.event.EventManager;
+import gaiasky.event.IObserver;
 import gaiasky.render.RenderGroup;
 import gaiasky.render.api.ILineRenderable;
 import gaiasky.render.api.IRenderable;
+import gaiasky.render.gdx.mesh.IntMesh;
 import gaiasky.render.system.LineRenderSystem;
+import gaiasky.render.system.RetainedLineStore;
 import gaiasky.scene.Mapper;
 import gaiasky.scene.camera.ICamera;
 import gaiasky.scene.component.Render;
@@ -21,6 +28,8 @@ import gaiasky.scene.system.render.SceneRenderer;
 import gaiasky.scene.view.LineView;
 import gaiasky.util.Logger;
 import gaiasky.util.Logger.Log;
+import gaiasky.util.math.Matrix4D;
+import gaiasky.util.math.Vector3D;
 import gaiasky.render.gdx.shader.ExtShaderProgram;
 import org.lwjgl.opengl.GL30;
 
@@ -29,7 +38,7 @@ import java.util.List;
 /**
  * Render system for line primitive entities. It uses basic OpenGL line primitives for rendering.
  */
-public class LinePrimitiveRenderer extends LineRenderSystem {
+public class LinePrimitiveRenderer extends LineRenderSystem implements IObserver {
     protected static final Log logger = Logger.getLogger(LinePrimitiveRenderer.class);
 
     protected ICamera camera;
@@ -39,10 +48,16 @@ public class LinePrimitiveRenderer extends LineRenderSystem {
 
     protected ExtShaderProgram shaderProgram;
 
+    /** Lines that stay resident in video memory, with their origin and number of vertices. **/
+    private final RetainedLineStore<Render, RetainedMesh> retained = new RetainedLineStore<>(h -> h.mesh.dispose());
+    private final Matrix4D transformD = new Matrix4D();
+    private final Matrix4 transform = new Matrix4();
+
     public LinePrimitiveRenderer(SceneRenderer sceneRenderer, RenderGroup rg, float[] alphas, ExtShaderProgram[] shaders) {
         super(sceneRenderer, rg, alphas, shaders);
         view = new LineView();
         aux2 = new Vector3();
+        EventManager.instance.subscribe(this, Event.GPU_DISPOSE_VERTS_OBJECT);
     }
 
     @Override
@@ -51,19 +66,27 @@ public class LinePrimitiveRenderer extends LineRenderSystem {
         shaderProgram.begin();
         shaderProgram.setUniformMatrix("u_projView", camera.getCamera().combined);
         shaderProgram.setUniformf("u_alpha", 1f);
+        shaderProgram.setUniformi("u_retained", 0);
 
         // Rel, grav, z-buffer
         addEffectsUniforms(shaderProgram, camera);
 
+        boolean retain = GaiaSky.settings().performance.retainedLines;
         this.camera = camera;
         renderables.forEach(r -> {
             Render render = (Render) r;
             view.setEntity(render.entity);
 
-            view.render(this, camera, getAlpha(render));
-
+            float alpha = getAlpha(render);
             Gdx.gl.glLineWidth(view.getLineWidth() * 1.5f * GaiaSky.settings().scene.renderer.line.width * camera.getFovFactor() + GaiaSky.settings().scene.renderer.line.glWidthBias);
 
+            if (retain && view.getRenderSystem().isRetainable(render.entity)) {
+                renderRetained(render, alpha);
+                return;
+            }
+
+            view.render(this, camera, alpha);
+
             for (int md = 0; md < meshIdx; md++) {
                 MeshData meshDouble = meshes.get(md);
                 meshDouble.mesh.setVertices(meshDouble.vertices, 0, meshDouble.vertexIdx);
@@ -74,11 +97,70 @@ public class LinePrimitiveRenderer extends LineRenderSystem {
         });
         shaderProgram.end();
 
+        // Evict the lines that are not rendered anymore.
+        retained.endFrame();
+
         // Reset indices
         meshIdx = 1;
         curr = meshes.get(0);
     }
 
+    /**
+     * Renders the line of the given entity from its resident mesh, which is only built and uploaded again when the
+     * entity data or color change. The transform and the opacity are passed as uniforms.
+     *
+     * @param render The render component of the entity.
+     * @param alpha  The alpha of this render system.
+     */
+    private void renderRetained(Render render, float alpha) {
+        var lines = view.getRenderSystem();
+        var entry = retained.acquire(render, view.verts.pointCloudData, view.verts.pointCloudData.getNumPoints(), lines.getRetainedState());
+        if (entry.isDirty()) {
+            int nVertices = lines.getRetainedVertexCount();
+            if (entry.handle == null) {
+                entry.handle = new RetainedMesh();
+            }
+            var handle = entry.handle;
+            if (handle.mesh == null || handle.mesh.getMaxVertices() < nVertices) {
+                if (handle.mesh != null) {
+                    handle.mesh.dispose();
+                }
+                handle.mesh = new IntMesh(true, nVertices, 0, buildVertexAttributes());
+            }
+            int vertexSize = handle.mesh.getVertexAttributes().vertexSize / 4;
+            int colorOffset = handle.mesh.getVertexAttribute(Usage.ColorPacked).offset / 4;
+            ensureTempVertsSize(nVertices * vertexSize);
+            handle.count = lines.buildRetained(tempVerts, vertexSize, colorOffset, handle.origin);
+            handle.mesh.setVertices(tempVerts, 0, handle.count * vertexSize);
+            retained.uploaded(entry);
+        }
+        var handle = entry.handle;
+        float opacity = lines.getRetainedTransform(render.entity, alpha, handle.origin, transformD);
+
+        shaderProgram.setUniformi("u_retained", 1);
+        shaderProgram.setUniformMatrix("u_worldTransform", transformD.putIn(transform));
+        shaderProgram.setUniformf("u_alpha", opacity);
+        handle.mesh.render(shaderProgram, getGLPrimitive(render), 0, handle.count);
+        shaderProgram.setUniformi("u_retained", 0);
+        shaderProgram.setUniformf("u_alpha", 1f);
+    }
+
+    @Override
+    public void notify(Event event, Object source, Object... data) {
+        if (event == Event.GPU_DISPOSE_VERTS_OBJECT) {
+            RenderGroup rg = (RenderGroup) data[0];
+            if ((rg == RenderGroup.LINE || rg == RenderGroup.LINE_LATE) && source instanceof Render render) {
+                retained.markDirty(render);
+            }
+        }
+    }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+        retained.clear();
+    }
+
     protected int getGLPrimitive(Render r) {
         if (Mapper.verts.has(r.entity)) {
             return Mapper.verts.get(r.entity).glPrimitive;
@@ -91,4 +173,11 @@ public class LinePrimitiveRenderer extends LineRenderSystem {
         addLinePostproc(x0, y0, z0, x1, y1, z1, r0, g0, b0, a0, r1, g1, b1, a1);
     }
 
+    /** Resident mesh of a retained line. **/
+    private static final class RetainedMesh {
+        IntMesh mesh;
+        int count;
+        final Vector3D origin = new Vector3D();
+    }
+
 }
@@ -7,6 +7,7 @@
 
 package gaiasky.scene.system.render.draw;
 
+import gaiasky.GaiaSky;
 import gaiasky.render.ComponentTypes.ComponentType;
 import gaiasky.render.RenderGroup;
 import gaiasky.render.api.IRenderable;
@@ -15,6 +16,7 @@ import gaiasky.scene.Mapper;
 import gaiasky.scene.camera.ICamera;
 import gaiasky.scene.component.Render;
 import gaiasky.scene.system.render.SceneRenderer;
+import gaiasky.scene.system.render.draw.text.LabelDeclutter;
 import gaiasky.scene.view.LabelView;
 import gaiasky.render.gdx.g2d.BitmapFont;
 import gaiasky.render.gdx.g2d.ExtSpriteBatch;
@@ -30,6 +32,10 @@ public class TextRenderer extends AbstractRenderSystem {
     private final ExtSpriteBatch batch;
     private final LabelView view;
     public BitmapFont fontDistanceField;
+    /** Resolves overlaps between the labels of this system, and limits their number. **/
+    public final LabelDeclutter declutter = new LabelDeclutter();
+    /** Whether the labels go through {@link #declutter} in the current frame. **/
+    public boolean declutterActive;
 
     public TextRenderer(SceneRenderer sceneRenderer, RenderGroup rg, float[] alphas, ExtSpriteBatch batch, ExtShaderProgram program) {
         super(sceneRenderer, rg, alphas, new ExtShaderProgram[] { program });
@@ -49,10 +55,22 @@ public class TextRenderer extends AbstractRenderSystem {
 
     @Override
     public void renderStud(List<IRenderable> renderables, ICamera camera, double t) {
+        // The decisions of a frame are used in the next one, so all the frames must share the same view.
+        var settings = GaiaSky.settings();
+        declutterActive = settings.performance.labelDeclutter && !settings.program.isStereoOrCubemap() && !settings.runtime.openXr;
+        if (declutterActive) {
+            declutter.setBudget(settings.performance.labelBudget);
+            declutter.setViewport(rc.w(), rc.h());
+        }
+
         batch.begin();
         ExtShaderProgram program = programs[0];
         renderFont3D(renderables, program, camera, alphas[ComponentType.Labels.ordinal()]);
         batch.end();
+
+        if (declutterActive) {
+            declutter.resolve();
+        }
     }
 
     private void renderFont3D(List<IRenderable> renderables, ExtShaderProgram program, ICamera camera, float alpha) {
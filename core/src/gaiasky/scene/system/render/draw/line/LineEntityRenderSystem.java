@@ -9,6 +9,7 @@ package gaiasky.scene.system.render.draw.line;
 
 import com.badlogic.ashley.core.Entity;
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.math.MathUtils;
 import gaiasky.GaiaSky;
@@ -28,6 +29,7 @@ import gaiasky.util.Constants;
 import gaiasky.util.Nature;
 import gaiasky.util.color.ColorUtils;
 import gaiasky.util.math.MathUtilsDouble;
+import gaiasky.util.math.Matrix4D;
 import gaiasky.util.math.Vector3D;
 import gaiasky.util.math.Vector3Q;
 import gaiasky.util.tree.IPosition;
@@ -145,6 +147,117 @@ public class LineEntityRenderSystem {
         }
     }
 
+    /**
+     * Checks whether the line of the current entity can stay resident in video memory between frames. Its vertices
+     * may only depend on the data and the color of the entity, and not on the camera or the time. This is the case
+     * for trajectories without trail, and for polylines without arrow cap.
+     *
+     * @param entity The entity.
+     *
+     * @return Whether the line can be retained.
+     */
+    public boolean isRetainable(Entity entity) {
+        var verts = lineView.verts;
+        if (verts == null || verts.pointCloudData == null || verts.pointCloudData.getNumPoints() < 2 || lineView.line == null) {
+            return false;
+        }
+        var trajectory = lineView.trajectory;
+        if (trajectory != null) {
+            return trajectory.bodyRepresentation.isOrbit() && !trajectory.orbitTrail;
+        }
+        var arrow = Mapper.arrow.get(entity);
+        return arrow == null || !arrow.arrowCap;
+    }
+
+    /**
+     * Gets the state baked into the retained vertices of the current entity, other than its points. This is the
+     * color, quantized as it is in the vertices.
+     *
+     * @return The state.
+     */
+    public long getRetainedState() {
+        float[] cc = lineView.body.color;
+        return Color.toIntBits((int) (cc[0] * 255), (int) (cc[1] * 255), (int) (cc[2] * 255), (int) (cc[3] * 255));
+    }
+
+    /**
+     * Builds the retained vertices of the current entity, relative to its first point, which is put in the origin
+     * vector. The positions are in the frame of the points, the transform is in {@link #getRetainedTransform(Entity,
+     * float, Vector3D, Matrix4D)}. The opacity in the vertices is the one of the color only.
+     *
+     * @param vertices    The vertex array, with enough room for {@link #getRetainedVertexCount()} vertices.
+     * @param vertexSize  The size of a vertex, in floats.
+     * @param colorOffset The offset of the packed color in a vertex, in floats.
+     * @param origin      The vector to store the origin of the vertices.
+     *
+     * @return The number of vertices.
+     */
+    public int buildRetained(float[] vertices, int vertexSize, int colorOffset, Vector3D origin) {
+        var pointCloudData = lineView.verts.pointCloudData;
+        float[] cc = lineView.body.color;
+        float color = Color.toFloatBits(cc[0], cc[1], cc[2], cc[3]);
+        pointCloudData.loadPoint(origin, 0);
+        // Trajectories are drawn as line pairs, unless they use a strip.
+        boolean pairs = lineView.trajectory != null && lineView.verts.glPrimitive == GL20.GL_LINES;
+        int n = pointCloudData.getNumPoints();
+        int idx = 0;
+        for (int i = 0; i < n; i++) {
+            pointCloudData.loadPoint(curr, i);
+            curr.sub(origin);
+            int copies = pairs && i > 0 && i < n - 1 ? 2 : 1;
+            for (int c = 0; c < copies; c++) {
+                vertices[idx] = (float) curr.x;
+                vertices[idx + 1] = (float) curr.y;
+                vertices[idx + 2] = (float) curr.z;
+                vertices[idx + colorOffset] = color;
+                idx += vertexSize;
+            }
+        }
+        return idx / vertexSize;
+    }
+
+    /**
+     * Gets the number of retained vertices of the current entity.
+     *
+     * @return The number of vertices.
+     */
+    public int getRetainedVertexCount() {
+        int n = lineView.verts.pointCloudData.getNumPoints();
+        boolean pairs = lineView.trajectory != null && lineView.verts.glPrimitive == GL20.GL_LINES;
+        return pairs ? 2 * (n - 1) : n;
+    }
+
+    /**
+     * Computes the transform and the opacity of the retained line of the current entity for this frame. The
+     * transform takes the retained vertices, relative to the given origin, to the camera-relative position. It is
+     * composed in double precision, so that the origin and the parent position cancel out before the conversion to
+     * floats.
+     *
+     * @param entity The entity.
+     * @param alpha  The alpha of the render system.
+     * @param origin The origin of the retained vertices.
+     * @param out    The matrix to store the transform.
+     *
+     * @return The factor to apply to the opacity of the vertices.
+     */
+    public float getRetainedTransform(Entity entity, float alpha, Vector3D origin, Matrix4D out) {
+        var trajectory = lineView.trajectory;
+        var graph = Mapper.graph.get(entity);
+        if (trajectory != null) {
+            var parentPos = Mapper.orientation.has(graph.parent) ? Mapper.orientation.get(graph.parent).getNonRotatedPos() : null;
+            var offset = D32.set(origin);
+            if (parentPos != null) {
+                offset.sub(parentPos);
+            }
+            out.set(trajectory.localTransformD).translate(offset);
+            float baseOpacity = (float) (alpha * trajectory.alpha * lineView.base.opacity);
+            return alpha * baseOpacity;
+        } else {
+            out.idt().translate(D32.set(origin).add(graph.translation));
+            return alpha;
+        }
+    }
+
     public void renderPerimeter(Entity entity, LinePrimitiveRenderer renderer, ICamera camera, float alpha) {
         var perimeter = Mapper.perimeter.get(entity);
         var cc = lineView.body.color;
@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.scene.system.render.draw.text;
+
+import java.util.Arrays;
+
+/**
+ * Resolves overlaps between labels in screen space, and limits the number of labels per frame.
+ * <p>
+ * The labels that would be drawn in a frame are registered as candidates with {@link #test(long, float, float, float,
+ * float, float, boolean)}, together with their projected rectangle and their priority. At the end of the frame,
+ * {@link #resolve()} visits the candidates from highest to lowest priority, and accepts each one that does not overlap
+ * an already accepted rectangle, until the budget is used up. The accepted labels are the ones drawn in the next
+ * frame, so that the labels are not deferred to the end of the frame. Labels accepted in the previous frame get a
+ * bonus to their priority, which avoids flickering when two labels have similar priorities.
+ * <p>
+ * The accepted rectangles are binned in a uniform grid, so that each test only visits the cells the rectangle covers.
+ * Rectangles that cover too many cells are kept in a separate list and tested linearly. All the storage is allocated
+ * up front or when the viewport changes, and the work per frame is bounded by the capacity and the budget.
+ */
+public class LabelDeclutter {
+    /** Default maximum number of labels per frame. **/
+    public static final int DEFAULT_BUDGET = 500;
+    /** Maximum number of candidates per frame. Candidates over this number are not drawn. **/
+    public static final int MAX_CANDIDATES = 1 << 14;
+    /** Size of the cells of the grid, in pixels. **/
+    public static final int CELL_SIZE = 32;
+    /** Rectangles that cover more cells than this go to the list of large rectangles. **/
+    private static final int MAX_CELLS = 16;
+    /** Priority bonus of the labels accepted in the previous frame. **/
+    private static final float STICKY_BONUS = 1.5f;
+    /** Padding around rectangles, in pixels. **/
+    private static final float PADDING = 2f;
+
+    private int budget = DEFAULT_BUDGET;
+
+    // Candidates of the current frame.
+    private final long[] keys = new long[MAX_CANDIDATES];
+    private final float[] x0 = new float[MAX_CANDIDATES], y0 = new float[MAX_CANDIDATES];
+    private final float[] x1 = new float[MAX_CANDIDATES], y1 = new float[MAX_CANDIDATES];
+    private final float[] priorities = new float[MAX_CANDIDATES];
+    private final boolean[] forced = new boolean[MAX_CANDIDATES];
+    private final long[] order = new long[MAX_CANDIDATES];
+    private int nCandidates;
+
+    // Grid of accepted rectangles, with linked lists of entries per cell.
+    private int width, height, cols, rows;
+    private int[] cellHead = new int[0];
+    private int[] entryRect = new int[0];
+    private int[] entryNext = new int[0];
+    private int nEntries;
+    private int[] accepted = new int[0];
+    private int nAccepted;
+    private int[] large = new int[0];
+    private int nLarge;
+
+    // Keys accepted in the last resolution, and in the one before.
+    private KeySet current, previous;
+
+    public LabelDeclutter() {
+        setBudget(DEFAULT_BUDGET);
+    }
+
+    /**
+     * Sets the maximum number of labels per frame, forced labels included.
+     *
+     * @param budget The budget.
+     */
+    public void setBudget(int budget) {
+        budget = Math.max(1, Math.min(budget, MAX_CANDIDATES));
+        if (budget != this.budget || accepted.length == 0) {
+            this.budget = budget;
+            accepted = new int[budget];
+            large = new int[budget];
+            entryRect = new int[budget * MAX_CELLS];
+            entryNext = new int[budget * MAX_CELLS];
+            current = new KeySet(budget * 2);
+            previous = new KeySet(budget * 2);
+        }
+    }
+
+    public int getBudget() {
+        return budget;
+    }
+
+    /**
+     * Sets the size of the viewport. The grid is only reallocated when the size changes.
+     *
+     * @param width  The width, in pixels.
+     * @param height The height, in pixels.
+     */
+    public void setViewport(int width, int height) {
+        if (width != this.width || height != this.height) {
+            this.width = width;
+            this.height = height;
+            cols = Math.max(1, (width + CELL_SIZE - 1) / CELL_SIZE);
+            rows = Math.max(1, (height + CELL_SIZE - 1) / CELL_SIZE);
+            cellHead = new int[cols * rows];
+        }
+    }
+
+    /**
+     * Registers a label as candidate for the next frame, and returns whether it is drawn in this one.
+     *
+     * @param key      Key of the label, stable across frames.
+     * @param x        The left of the rectangle, in pixels.
+     * @param y        The bottom of the rectangle, in pixels.
+     * @param w        The width of the rectangle, in pixels.
+     * @param h        The height of the rectangle, in pixels.
+     * @param priority The priority. Labels with priority zero or less are not candidates.
+     * @param force    Whether the label is always drawn. Forced labels still take up space and budget.
+     *
+     * @return Whether the label must be drawn.
+     */
+    public boolean test(long key, float x, float y, float w, float h, float priority, boolean force) {
+        if ((priority > 0 || force) && nCandidates < MAX_CANDIDATES && x + w >= 0 && y + h >= 0 && x <= width && y <= height) {
+            int i = nCandidates++;
+            keys[i] = key;
+            x0[i] = x - PADDING;
+            y0[i] = y - PADDING;
+            x1[i] = x + w + PADDING;
+            y1[i] = y + h + PADDING;
+            priorities[i] = priority;
+            forced[i] = force;
+        }
+        return force || current.contains(key);
+    }
+
+    /**
+     * Resolves the candidates registered since the last call, and decides the labels drawn in the next frame.
+     *
+     * @return The number of accepted labels.
+     */
+    public int resolve() {
+        // Keep the previous decisions for the bonus, and reuse the older set.
+        var tmp = previous;
+        previous = current;
+        current = tmp;
+        current.clear();
+
+        // Sort by decreasing priority. Priorities are positive, so the bits of the float sort like the float. Forced
+        // labels go first.
+        for (int i = 0; i < nCandidates; i++) {
+            float p = priorities[i];
+            if (forced[i]) {
+                p = Float.MAX_VALUE;
+            } else if (previous.contains(keys[i])) {
+                p = Math.min(p * STICKY_BONUS, Float.MAX_VALUE / 2);
+            }
+            order[i] = (long) Float.floatToRawIntBits(Math.max(p, Float.MIN_VALUE)) << 32 | i;
+        }
+        Arrays.sort(order, 0, nCandidates);
+
+        Arrays.fill(cellHead, -1);
+        nEntries = 0;
+        nAccepted = 0;
+        nLarge = 0;
+        for (int k = nCandidates - 1; k >= 0 && nAccepted < budget; k--) {
+            int i = (int) order[k];
+            if (!overlaps(i)) {
+                accept(i);
+                current.add(keys[i]);
+            }
+        }
+        nCandidates = 0;
+        return nAccepted;
+    }
+
+    private int col(float x) {
+        return Math.max(0, Math.min(cols - 1, (int) (x / CELL_SIZE)));
+    }
+
+    private int row(float y) {
+        return Math.max(0, Math.min(rows - 1, (int) (y / CELL_SIZE)));
+    }
+
+    private boolean overlaps(int i, int j) {
+        return x0[i] < x1[j] && x0[j] < x1[i] && y0[i] < y1[j] && y0[j] < y1[i];
+    }
+
+    private boolean overlaps(int i) {
+        for (int l = 0; l < nLarge; l++) {
+            if (overlaps(i, large[l])) {
+                return true;
+            }
+        }
+        int c0 = col(x0[i]), c1 = col(x1[i]), r0 = row(y0[i]), r1 = row(y1[i]);
+        if ((c1 - c0 + 1) * (r1 - r0 + 1) > MAX_CELLS) {
+            // Large rectangle, test against all accepted ones.
+            for (int a = 0; a < nAccepted; a++) {
+                if (overlaps(i, accepted[a])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                for (int e = cellHead[r * cols + c]; e >= 0; e = entryNext[e]) {
+                    if (overlaps(i, entryRect[e])) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void accept(int i) {
+        accepted[nAccepted++] = i;
+        int c0 = col(x0[i]), c1 = col(x1[i]), r0 = row(y0[i]), r1 = row(y1[i]);
+        if ((c1 - c0 + 1) * (r1 - r0 + 1) > MAX_CELLS) {
+            large[nLarge++] = i;
+            return;
+        }
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * cols + c;
+                entryRect[nEntries] = i;
+                entryNext[nEntries] = cellHead[cell];
+                cellHead[cell] = nEntries++;
+            }
+        }
+    }
+
+    /**
+     * Checks whether the label with the given key was accepted in the last resolution.
+     *
+     * @param key The key.
+     *
+     * @return Whether the label is drawn.
+     */
+    public boolean isAccepted(long key) {
+        return current.contains(key);
+    }
+
+    /** Set of long keys with open addressing, cleared without allocating. **/
+    private static final class KeySet {
+        private static final long EMPTY = Long.MIN_VALUE;
+        private final long[] table;
+        private final int mask;
+        private boolean hasEmpty;
+
+        KeySet(int capacity) {
+            table = new long[Integer.highestOneBit(Math.max(2, capacity) - 1) << 1];
+            mask = table.length - 1;
+            clear();
+        }
+
+        private int slot(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        void add(long key) {
+            if (key == EMPTY) {
+                hasEmpty = true;
+                return;
+            }
+            int s = slot(key);
+            while (table[s] != EMPTY && table[s] != key) {
+                s = (s + 1) & mask;
+            }
+            table[s] = key;
+        }
+
+        boolean contains(long key) {
+            if (key == EMPTY) {
+                return hasEmpty;
+            }
+            int s = slot(key);
+            while (table[s] != EMPTY) {
+                if (table[s] == key) {
+                    return true;
+                }
+                s = (s + 1) & mask;
+            }
+            return false;
+        }
+
+        void clear() {
+            Arrays.fill(table, EMPTY);
+            hasEmpty = false;
+        }
+    }
+}
@@ -19,6 +19,7 @@ import gaiasky.scene.api.IFocus;
 import gaiasky.scene.api.IParticleRecord;
 import gaiasky.scene.camera.ICamera;
 import gaiasky.scene.component.Keyframes;
+import gaiasky.scene.component.Label;
 import gaiasky.scene.component.ParticleSet;
 import gaiasky.scene.component.StarSet;
 import gaiasky.scene.system.render.draw.TextRenderer;
@@ -161,13 +162,14 @@ public class LabelEntityRenderSystem {
 
         Vector3D labelPosition = D31;
         view.textPosition(camera, labelPosition);
-        shader.setUniformf("u_viewAngle",
-                           view.label.forceLabel() ? 2f : (float) (body.solidAngleApparent * scaffolding.locVaMultiplier * Constants.U_TO_KM));
+        float viewAngle = view.label.forceLabel() ? 2f : (float) (body.solidAngleApparent * scaffolding.locVaMultiplier * Constants.U_TO_KM);
+        float thLabel = view.label.forceLabel() ? 1f : scaffolding.locThresholdLabel / (float) Constants.DISTANCE_SCALE_FACTOR;
+        shader.setUniformf("u_viewAngle", viewAngle);
         shader.setUniformf("u_viewAnglePow", 1f);
-        shader.setUniformf("u_thLabel", view.label.forceLabel() ? 1f : scaffolding.locThresholdLabel / (float) Constants.DISTANCE_SCALE_FACTOR);
+        shader.setUniformf("u_thLabel", thLabel);
         render3DLabel(view, batch, shader, sys.fontDistanceField, camera, rc, view.text(), labelPosition, body.distToCamera,
                       view.textScale() * camera.getFovFactor(), view.textSize() * camera.getFovFactor(), view.getRadius(), 0.025f, 0.1f,
-                      view.label.forceLabel());
+                      view.label.forceLabel(), sys, declutterKey(view.label, -1), labelPriority(viewAngle, 1f, thLabel));
     }
 
     public void renderShape(LabelView view, ExtSpriteBatch batch, ExtShaderProgram shader, TextRenderer sys, RenderingContext rc, ICamera camera) {
@@ -322,12 +324,16 @@ public class LabelEntityRenderSystem {
         // 3D distance font
         Vector3D pos = D31;
         view.textPosition(camera, pos);
-        shader.setUniformf("u_viewAngle", view.label.forceLabel() ? 2f : (float) view.body.solidAngleApparent);
-        shader.setUniformf("u_viewAnglePow", view.label.forceLabel() ? 1f : view.label.solidAnglePow);
-        shader.setUniformf("u_thLabel", view.label.forceLabel() ? 1f : (float) view.sa.thresholdLabel / view.label.labelBias);
+        float viewAngle = view.label.forceLabel() ? 2f : (float) view.body.solidAngleApparent;
+        float viewAnglePow = view.label.forceLabel() ? 1f : view.label.solidAnglePow;
+        float thLabel = view.label.forceLabel() ? 1f : (float) view.sa.thresholdLabel / view.label.labelBias;
+        shader.setUniformf("u_viewAngle", viewAngle);
+        shader.setUniformf("u_viewAnglePow", viewAnglePow);
+        shader.setUniformf("u_thLabel", thLabel);
 
         render3DLabel(view, batch, shader, sys.fontDistanceField, camera, rc, view.text(), pos, view.body.distToCamera,
-                      view.textScale() * camera.getFovFactor(), view.textSize() * camera.getFovFactor(), view.getRadius(), view.label.forceLabel());
+                      view.textScale() * camera.getFovFactor(), view.textSize() * camera.getFovFactor(), view.getRadius(), -1, -1,
+                      view.label.forceLabel(), sys, declutterKey(view.label, -1), labelPriority(viewAngle, viewAnglePow, thLabel));
     }
 
     public void renderCluster(LabelView view, ExtSpriteBatch batch, ExtShaderProgram shader, TextRenderer sys, RenderingContext rc, ICamera camera) {
@@ -410,9 +416,10 @@ public class LabelEntityRenderSystem {
                              0);
             }
 
+            float thLabel = forceLabel ? 1f : thresholdLabel * camera.getFovFactor();
             shader.setUniformf("u_viewAngle", solidAngle);
             shader.setUniformf("u_viewAnglePow", 1f);
-            shader.setUniformf("u_thLabel", forceLabel ? 1f : thresholdLabel * camera.getFovFactor());
+            shader.setUniformf("u_thLabel", thLabel);
             float textSize = (float) FastMath.tanh(solidAngle) * distToCamera * 1e5f;
             float alpha = FastMath.min((float) FastMath.atan(textSize / distToCamera), 1.e-3f);
 
@@ -437,7 +444,12 @@ public class LabelEntityRenderSystem {
                           view.textScale() * camera.getFovFactor(),
                           textSize * camera.getFovFactor(),
                           view.getRadius(),
-                          forceLabel);
+                          -1,
+                          -1,
+                          forceLabel,
+                          sys,
+                          declutterKey(view.label, idx),
+                          labelPriority(solidAngle, 1f, thLabel));
         }
     }
 
@@ -518,9 +530,10 @@ public class LabelEntityRenderSystem {
             Vector3D labelPosition = D32.set(starPosition);
             textPosition(camera, labelPosition, distToCamera, solidAngle / 100f, radius);
 
+            float thLabel = forceLabel ? 1f : thresholdLabel * camera.getFovFactor();
             shader.setUniformf("u_viewAngle", solidAngle);
             shader.setUniformf("u_viewAnglePow", 1f);
-            shader.setUniformf("u_thLabel", forceLabel ? 1f : thresholdLabel * camera.getFovFactor());
+            shader.setUniformf("u_thLabel", thLabel);
             // Override object color
             shader.setUniform4fv("u_color", view.textColour(star.names()[0]), 0, 4);
 
@@ -535,7 +548,8 @@ public class LabelEntityRenderSystem {
             var textSize = alpha * distToCamera * 0.5f;
             var name = star.names()[0];
             render3DLabel(view, batch, shader, sys.fontDistanceField, camera, rc, I18n.localize(name.toLowerCase(), name), labelPosition, distToCamera,
-                          view.textScale() * camera.getFovFactor(), textSize * camera.getFovFactor(), radius, forceLabel);
+                          view.textScale() * camera.getFovFactor(), textSize * camera.getFovFactor(), radius, -1, -1, forceLabel, sys,
+                          declutterKey(view.label, idx), labelPriority(solidAngle, 1f, thLabel));
         }
     }
 
@@ -828,6 +842,21 @@ public class LabelEntityRenderSystem {
     protected void render3DLabel(LabelView view, ExtSpriteBatch batch, ExtShaderProgram shader, BitmapFont font, ICamera camera,
                                  RenderingContext rc, String labelText, Vector3D labelPosition, double distToCamera, float scale, double size,
                                  double radius, float minSizeDegrees, float maxSizeDegrees, boolean forceLabel) {
+        render3DLabel(view, batch, shader, font, camera, rc, labelText, labelPosition, distToCamera, scale, size, radius, minSizeDegrees,
+                      maxSizeDegrees, forceLabel, null, 0, 0);
+    }
+
+    /**
+     * Renders a label that goes through the screen-space declutter of the given text renderer, if it is active.
+     *
+     * @param sys      The text renderer, or null to skip the declutter.
+     * @param key      Key of the label, stable across frames. See {@link #declutterKey(Label, int)}.
+     * @param priority Priority of the label. See {@link #labelPriority(float, float, float)}.
+     */
+    protected void render3DLabel(LabelView view, ExtSpriteBatch batch, ExtShaderProgram shader, BitmapFont font, ICamera camera,
+                                 RenderingContext rc, String labelText, Vector3D labelPosition, double distToCamera, float scale, double size,
+                                 double radius, float minSizeDegrees, float maxSizeDegrees, boolean forceLabel, TextRenderer sys, long key,
+                                 float priority) {
         if (!checkRegex(labelText)) {
             return;
         }
@@ -839,6 +868,12 @@ public class LabelEntityRenderSystem {
 
             size *= GaiaSky.settings().scene.label.size;
 
+            if (sys != null && sys.declutterActive
+                    && !declutter(sys.declutter, font, camera, rc, labelText, labelPosition, size, minSizeDegrees, maxSizeDegrees, key, priority,
+                                  forceLabel)) {
+                return;
+            }
+
             shader.setUniformf("u_pos", labelPosition);
 
             // Enable or disable blending
@@ -848,4 +883,61 @@ public class LabelEntityRenderSystem {
                                   camera, !rc.isCubemap(), minSizeDegrees, maxSizeDegrees);
         }
     }
+
+    /**
+     * Projects the rectangle of a label to the screen, and tests it in the declutter.
+     *
+     * @return Whether the label must be drawn.
+     */
+    private boolean declutter(LabelDeclutter declutter, BitmapFont font, ICamera camera, RenderingContext rc, String text, Vector3D pos,
+                              double size, float minSizeDegrees, float maxSizeDegrees, long key, float priority, boolean force) {
+        var cam = camera.getCamera();
+        double dist = pos.len();
+        if (dist <= 0 || pos.x * cam.direction.x + pos.y * cam.direction.y + pos.z * cam.direction.z <= 0) {
+            // Behind the camera.
+            return force;
+        }
+        // Same clamping as in DecalUtils#drawFont3D.
+        if (minSizeDegrees > 0) {
+            size = FastMath.max(size, FastMath.tan(FastMath.toRadians(minSizeDegrees)) * dist);
+        }
+        if (maxSizeDegrees > 0) {
+            size = FastMath.min(size, FastMath.tan(FastMath.toRadians(maxSizeDegrees)) * dist);
+        }
+        // Pixels per unit of the text at the distance of the label.
+        double pixels = size * rc.h() / (2.0 * dist * FastMath.tan(FastMath.toRadians(cam.fieldOfView / 2.0)));
+        var data = font.getData();
+        int advance = 0;
+        for (int i = 0; i < text.length(); i++) {
+            var glyph = data.getGlyph(text.charAt(i));
+            if (glyph != null) {
+                advance += glyph.xadvance;
+            }
+        }
+        float w = (float) (advance * data.scaleX * pixels);
+        float h = (float) (font.getCapHeight() * pixels);
+        var p = cam.project(F31.set((float) pos.x, (float) pos.y, (float) pos.z), 0, 0, rc.w(), rc.h());
+        return declutter.test(key, p.x, p.y, w, h, priority, force);
+    }
+
+    /**
+     * Gets the key of a label for the declutter, from the id of the label component of the entity, which is unique.
+     *
+     * @param label The label component of the entity.
+     * @param index The index of the particle in the set of the entity, or -1 for the label of the entity itself.
+     *
+     * @return The key.
+     */
+    private static long declutterKey(Label label, int index) {
+        return (long) label.getDeclutterId() << 32 | (index & 0xffffffffL);
+    }
+
+    /**
+     * Gets the priority of a label for the declutter, which is its visibility as computed in the font shader. Labels
+     * with zero or less are not visible.
+     */
+    private static float labelPriority(float viewAngle, float viewAnglePow, float thLabel) {
+        float va = viewAnglePow == 1f ? viewAngle : (float) FastMath.pow(viewAngle, viewAnglePow);
+        return thLabel > 0 ? (va - thLabel) / thLabel : va;
+    }
 }
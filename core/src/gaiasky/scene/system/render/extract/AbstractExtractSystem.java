@@ -10,28 +10,142 @@ package gaiasky.scene.system.render.extract;
 import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.Family;
 import com.badlogic.ashley.systems.IteratingSystem;
+import com.badlogic.ashley.utils.ImmutableArray;
 import gaiasky.GaiaSky;
 import gaiasky.render.RenderGroup;
 import gaiasky.render.api.IRenderable;
 import gaiasky.render.api.ISceneRenderer;
 import gaiasky.scene.camera.ICamera;
 import gaiasky.scene.component.Base;
+import gaiasky.scene.view.FocusView;
 import gaiasky.scene.view.LabelView;
+import gaiasky.util.profile.FrameProfiler;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Common utilities to all extract systems. Mostly contains methods that compute
  * whether a specific entity should be extracted for rendering or not.
+ * <p>
+ * Systems that return true in {@link #isParallelizable()} can extract large families in parallel
+ * (see {@link #setParallelism(int)}). In that case, the family is split into contiguous ranges, each
+ * range is extracted into its own {@link ExtractBuffer}, and the buffers are flushed in range order
+ * on the calling thread, so that the render lists and the closest body and particle of the camera
+ * are the same as in serial extraction.
  */
 public abstract class AbstractExtractSystem extends IteratingSystem {
+    /** Minimum number of entities in the family to extract it in parallel. **/
+    private static final int PARALLEL_MIN_ENTITIES = 4096;
+    /** Minimum number of entities per range. **/
+    private static final int MIN_RANGE_SIZE = 1024;
+    /** The buffer of the range being extracted in the current thread, if any. **/
+    private static final ThreadLocal<ExtractBuffer> currentBuffer = new ThreadLocal<>();
 
     protected final ICamera camera;
     protected ISceneRenderer renderer;
     protected LabelView view;
 
+    private int parallelism = 1;
+    private ExtractBuffer[] buffers;
+    private FocusView candidateView;
+    /** Stage of this system in the {@link FrameProfiler}. **/
+    private final int profilerStage;
+
     public AbstractExtractSystem(Family family, int priority) {
+        this(family, priority, GaiaSky.instance.cameraManager);
+    }
+
+    public AbstractExtractSystem(Family family, int priority, ICamera camera) {
         super(family, priority);
-        this.camera = GaiaSky.instance.cameraManager;
+        this.camera = camera;
         this.view = new LabelView();
+        this.profilerStage = FrameProfiler.stage("frame/update/extract/" + getClass().getSimpleName());
+    }
+
+    /**
+     * Whether {@link #processEntity(Entity, float)} can run concurrently for different entities of the family.
+     * This requires that it only writes to the components of the entity being processed, that it does not use
+     * per-instance scratch objects, and that it goes through {@link #addToRender(IRenderable, RenderGroup)},
+     * {@link #checkClosestBody(Entity)} and {@link #checkClosestParticle(Entity)} instead of using the renderer
+     * lists and the camera directly.
+     *
+     * @return Whether the family of this system can be extracted in parallel.
+     */
+    protected boolean isParallelizable() {
+        return false;
+    }
+
+    /**
+     * Sets the number of threads to use to extract large families, if this system is parallelizable.
+     *
+     * @param parallelism The number of threads. 1 or less extracts serially.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    @Override
+    public void update(float deltaTime) {
+        long start = FrameProfiler.begin();
+        var entities = getEntities();
+        if (parallelism > 1 && isParallelizable() && entities.size() >= PARALLEL_MIN_ENTITIES && currentBuffer.get() == null) {
+            updateParallel(entities, deltaTime);
+        } else {
+            super.update(deltaTime);
+        }
+        FrameProfiler.end(profilerStage, start);
+    }
+
+    private void updateParallel(ImmutableArray<Entity> entities, float deltaTime) {
+        final int size = entities.size();
+        final int ranges = Math.max(1, Math.min(parallelism * 2, size / MIN_RANGE_SIZE));
+        if (buffers == null || buffers.length < ranges) {
+            var newBuffers = new ExtractBuffer[ranges];
+            for (int i = 0; i < ranges; i++) {
+                newBuffers[i] = buffers != null && i < buffers.length ? buffers[i] : new ExtractBuffer();
+            }
+            buffers = newBuffers;
+        }
+
+        var futures = new CompletableFuture<?>[ranges];
+        for (int r = 0; r < ranges; r++) {
+            final var buffer = buffers[r];
+            final int from = (int) ((long) size * r / ranges);
+            final int to = (int) ((long) size * (r + 1) / ranges);
+            futures[r] = CompletableFuture.runAsync(() -> {
+                currentBuffer.set(buffer);
+                try {
+                    for (int i = from; i < to; i++) {
+                        processEntity(entities.get(i), deltaTime);
+                    }
+                } finally {
+                    currentBuffer.remove();
+                }
+            }, ForkJoinPool.commonPool());
+        }
+        try {
+            CompletableFuture.allOf(futures).join();
+            for (int r = 0; r < ranges; r++) {
+                buffers[r].flush(renderer, this);
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            } else if (e.getCause() instanceof Error err) {
+                throw err;
+            }
+            throw e;
+        } finally {
+            for (int r = 0; r < ranges; r++) {
+                buffers[r].clear();
+            }
+        }
     }
 
     public void extract(Entity entity) {
@@ -85,21 +199,70 @@ public abstract class AbstractExtractSystem extends IteratingSystem {
      * @return True if added, false otherwise.
      */
     protected boolean addToRender(IRenderable renderable, RenderGroup rg, boolean fullResolution) {
+        var buffer = currentBuffer.get();
+        if (buffer != null) {
+            return buffer.add(renderable, rg, fullResolution);
+        }
         try {
-            return renderer.getRenderLists(fullResolution).get(rg.ordinal()).add(renderable);
+            return renderer.getExtractLists(fullResolution).get(rg.ordinal()).add(renderable);
         } catch (Exception e) {
             return false;
         }
     }
 
     protected boolean isInRender(IRenderable renderable, RenderGroup rg) {
-        return renderer.getRenderLists(!renderable.isHalfResolutionBuffer()).get(rg.ordinal()).contains(renderable);
+        boolean full = !renderable.isHalfResolutionBuffer();
+        var buffer = currentBuffer.get();
+        return renderer.getExtractLists(full).get(rg.ordinal()).contains(renderable)
+                || (buffer != null && buffer.contains(renderable, rg, full));
     }
 
     protected boolean isInRender(IRenderable renderable, RenderGroup... rgs) {
         boolean is = false;
         for (RenderGroup rg : rgs)
-            is = is || renderer.getRenderLists(!renderable.isHalfResolutionBuffer()).get(rg.ordinal()).contains(renderable);
+            is = is || isInRender(renderable, rg);
         return is;
     }
+
+    /**
+     * Submits the given entity as a closest body candidate to the camera. When extracting in parallel,
+     * the candidate is buffered and submitted later, in entity order.
+     *
+     * @param entity The entity.
+     */
+    protected void checkClosestBody(Entity entity) {
+        var buffer = currentBuffer.get();
+        if (buffer != null) {
+            buffer.checkClosestBody(entity);
+        } else {
+            submitClosestBody(entity);
+        }
+    }
+
+    /**
+     * Submits the given entity as a closest particle candidate to the camera. When extracting in parallel,
+     * the candidate is buffered and submitted later, in entity order.
+     *
+     * @param entity The entity.
+     */
+    protected void checkClosestParticle(Entity entity) {
+        var buffer = currentBuffer.get();
+        if (buffer != null) {
+            buffer.checkClosestParticle(entity);
+        } else {
+            submitClosestParticle(entity);
+        }
+    }
+
+    protected void submitClosestBody(Entity entity) {
+        camera.checkClosestBody(entity);
+    }
+
+    protected void submitClosestParticle(Entity entity) {
+        if (candidateView == null) {
+            candidateView = new FocusView();
+        }
+        candidateView.setEntity(entity);
+        camera.checkClosestParticle(candidateView);
+    }
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.scene.system.render.extract;
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.BooleanArray;
+import gaiasky.render.RenderGroup;
+import gaiasky.render.api.IRenderable;
+import gaiasky.render.api.ISceneRenderer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thread-local output of the extraction of a range of entities. It holds the renderables added to each render group,
+ * for the full and half resolution lists, and the closest body and particle candidates, in the order in which they
+ * were produced. Flushing the buffers of all the ranges in range order produces the same render lists and camera
+ * state as extracting the entities serially.
+ */
+final class ExtractBuffer {
+    private static final int GROUPS = RenderGroup.values().length;
+
+    private final List<List<IRenderable>> full, half;
+    /** Closest candidates, with a flag that tells particles from bodies. **/
+    private final Array<Entity> candidates = new Array<>(false, 64);
+    private final BooleanArray particle = new BooleanArray(false, 64);
+
+    ExtractBuffer() {
+        full = new ArrayList<>(GROUPS);
+        half = new ArrayList<>(GROUPS);
+        for (int i = 0; i < GROUPS; i++) {
+            full.add(new ArrayList<>());
+            half.add(new ArrayList<>());
+        }
+    }
+
+    boolean add(IRenderable renderable, RenderGroup rg, boolean fullResolution) {
+        return (fullResolution ? full : half).get(rg.ordinal()).add(renderable);
+    }
+
+    boolean contains(IRenderable renderable, RenderGroup rg, boolean fullResolution) {
+        return (fullResolution ? full : half).get(rg.ordinal()).contains(renderable);
+    }
+
+    void checkClosestBody(Entity entity) {
+        candidates.add(entity);
+        particle.add(false);
+    }
+
+    void checkClosestParticle(Entity entity) {
+        candidates.add(entity);
+        particle.add(true);
+    }
+
+    /**
+     * Appends the buffered renderables to the extract lists of the renderer, and submits the buffered closest
+     * candidates to the camera through the given system. Must be called from the thread that owns the renderer lists
+     * and the camera.
+     *
+     * @param renderer The scene renderer.
+     * @param system   The system that produced this buffer.
+     */
+    void flush(ISceneRenderer renderer, AbstractExtractSystem system) {
+        flush(full, renderer.getExtractLists(true));
+        flush(half, renderer.getExtractLists(false));
+        for (int i = 0; i < candidates.size; i++) {
+            var entity = candidates.get(i);
+            if (particle.get(i)) {
+                system.submitClosestParticle(entity);
+            } else {
+                system.submitClosestBody(entity);
+            }
+        }
+        candidates.clear();
+        particle.clear();
+    }
+
+    private void flush(List<List<IRenderable>> source, List<List<IRenderable>> target) {
+        for (int i = 0; i < GROUPS; i++) {
+            var list = source.get(i);
+            if (!list.isEmpty()) {
+                target.get(i).addAll(list);
+                list.clear();
+            }
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < GROUPS; i++) {
+            full.get(i).clear();
+            half.get(i).clear();
+        }
+        candidates.clear();
+        particle.clear();
+    }
+}
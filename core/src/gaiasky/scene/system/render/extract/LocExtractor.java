@@ -18,17 +18,22 @@ import gaiasky.scene.view.LabelView;
  */
 public class LocExtractor extends AbstractExtractSystem {
 
-    private final LabelView view;
+    private final ThreadLocal<LabelView> views = ThreadLocal.withInitial(LabelView::new);
 
     public LocExtractor(Family family, int priority) {
         super(family, priority);
-        this.view = new LabelView();
+    }
+
+    @Override
+    protected boolean isParallelizable() {
+        return true;
     }
 
     @Override
     protected void processEntity(Entity entity, float deltaTime) {
         var base = Mapper.base.get(entity);
         if (mustRender(base)) {
+            var view = views.get();
             view.setEntity(entity);
             if (!view.renderTextLocation()) {
                 return;
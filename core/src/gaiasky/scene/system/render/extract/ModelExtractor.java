@@ -27,6 +27,11 @@ public class ModelExtractor extends AbstractExtractSystem {
         super(family, priority);
     }
 
+    @Override
+    protected boolean isParallelizable() {
+        return true;
+    }
+
     @Override
     protected void processEntity(Entity entity,
                                  float deltaTime) {
@@ -58,7 +63,7 @@ public class ModelExtractor extends AbstractExtractSystem {
             var label = Mapper.label.get(entity);
             var renderFlags = Mapper.renderFlags.get(entity);
 
-            camera.checkClosestBody(entity);
+            checkClosestBody(entity);
 
             if (Mapper.volume.has(entity)) {
                 // Volume models.
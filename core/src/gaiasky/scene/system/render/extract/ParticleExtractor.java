@@ -15,18 +15,19 @@ import gaiasky.render.RenderGroup;
 import gaiasky.scene.Mapper;
 import gaiasky.scene.camera.ICamera;
 import gaiasky.scene.component.*;
-import gaiasky.scene.view.FocusView;
 
 /**
  * Extracts data for particle set entities.
  */
 public class ParticleExtractor extends AbstractExtractSystem {
 
-    private final FocusView view;
-
     public ParticleExtractor(Family family, int priority) {
         super(family, priority);
-        view = new FocusView();
+    }
+
+    @Override
+    protected boolean isParallelizable() {
+        return true;
     }
 
     @Override
@@ -36,8 +37,7 @@ public class ParticleExtractor extends AbstractExtractSystem {
 
     private void addToRenderLists(Entity entity, ICamera camera) {
         // Does this need to be outside the 'mustRender' case?
-        view.setEntity(entity);
-        camera.checkClosestParticle(view);
+        checkClosestParticle(entity);
 
         var base = Mapper.base.get(entity);
         if (mustRender(base)) {
@@ -73,7 +73,7 @@ public class ParticleExtractor extends AbstractExtractSystem {
         if (body.solidAngleApparent >= GaiaSky.settings().scene.star.threshold.point) {
             addToRender(render, RenderGroup.BILLBOARD_STAR);
             if (GaiaSky.settings().scene.star.renderStarSpheres && body.distToCamera < Mapper.distance.get(entity).distance * Mapper.modelScaffolding.get(entity).sizeScaleFactor) {
-                camera.checkClosestBody(entity);
+                checkClosestBody(entity);
                 addToRender(render, RenderGroup.MODEL_VERT_STAR);
             }
         }
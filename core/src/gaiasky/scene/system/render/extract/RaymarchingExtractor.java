@@ -11,6 +11,7 @@ import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.Family;
 import com.badlogic.gdx.utils.ObjectFloatMap;
 import com.badlogic.gdx.utils.ObjectSet;
+import gaiasky.GaiaSky;
 import gaiasky.event.Event;
 import gaiasky.event.EventManager;
 import gaiasky.render.RenderGroup;
@@ -64,7 +65,7 @@ public class RaymarchingExtractor extends AbstractExtractSystem {
                                   Body body,
                                   Raymarching rm) {
         if (rm != null && rm.raymarchingShader != null) {
-            camera.checkClosestBody(entity);
+            checkClosestBody(entity);
             var mustRender = mustRender(base);
 
             if (mustRender) {
@@ -79,8 +80,9 @@ public class RaymarchingExtractor extends AbstractExtractSystem {
                 // Alpha.
                 var alpha = renderer.alpha(base.ct);
                 if (lastAlpha.get(rm, 1f) != alpha) {
-                    // Update opacity via event.
-                    EventManager.publish(Event.RAYMARCHING_OPACITY_CMD, rm, base.getName(), alpha);
+                    // Update opacity via event, in the main loop.
+                    var name = base.getName();
+                    GaiaSky.postRunnable(() -> EventManager.publish(Event.RAYMARCHING_OPACITY_CMD, rm, name, alpha));
                 }
 
                 // Update last alpha.
@@ -105,7 +107,8 @@ public class RaymarchingExtractor extends AbstractExtractSystem {
         if (!rm.isOn) {
             // Turn on
             logger.debug("Ray marching effect enabled: " + base.getName());
-            EventManager.publish(Event.RAYMARCHING_CMD, this, base.getName(), true, entity);
+            var name = base.getName();
+            GaiaSky.postRunnable(() -> EventManager.publish(Event.RAYMARCHING_CMD, this, name, true, entity));
             rm.isOn = true;
         }
     }
@@ -116,7 +119,8 @@ public class RaymarchingExtractor extends AbstractExtractSystem {
         if (rm.isOn) {
             // Turn off
             logger.debug("Ray marching effect disabled: " + base.getName());
-            EventManager.publish(Event.RAYMARCHING_CMD, this, base.getName(), false, entity);
+            var name = base.getName();
+            GaiaSky.postRunnable(() -> EventManager.publish(Event.RAYMARCHING_CMD, this, name, false, entity));
             rm.isOn = false;
         }
     }
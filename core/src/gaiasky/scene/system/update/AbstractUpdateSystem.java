@@ -9,14 +9,40 @@ package gaiasky.scene.system.update;
 
 import com.badlogic.ashley.core.Family;
 import com.badlogic.ashley.systems.IteratingSystem;
+import gaiasky.util.profile.FrameProfiler;
 
 /**
  * Base class for all update systems in the Gaia Sky scene graph.
  */
 public abstract class AbstractUpdateSystem extends IteratingSystem implements EntityUpdater {
 
+    /** Stage of this system in the {@link FrameProfiler}. **/
+    private final int profilerStage;
+
     protected AbstractUpdateSystem(Family family, int priority) {
         super(family, priority);
+        this.profilerStage = FrameProfiler.stage("frame/update/" + getClass().getSimpleName());
+    }
+
+    @Override
+    public void update(float deltaTime) {
+        long start = FrameProfiler.begin();
+        super.update(deltaTime);
+        FrameProfiler.end(profilerStage, start);
+    }
+
+    public int getProfilerStage() {
+        return profilerStage;
+    }
+
+    /**
+     * Declares what this system reads and writes, so that the {@link UpdateScheduler} can run it concurrently with
+     * other systems. Systems are exclusive unless they override this method.
+     *
+     * @return The access declaration.
+     */
+    public SystemAccess getAccess() {
+        return SystemAccess.EXCLUSIVE;
     }
 
 }
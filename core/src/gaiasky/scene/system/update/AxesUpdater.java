@@ -11,6 +11,9 @@ import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.Family;
 import gaiasky.GaiaSky;
 import gaiasky.scene.Mapper;
+import gaiasky.scene.camera.ICamera;
+import gaiasky.scene.component.Axis;
+import gaiasky.scene.component.Body;
 import net.jafama.FastMath;
 
 /**
@@ -23,6 +26,11 @@ public class AxesUpdater extends AbstractUpdateSystem {
         super(family, priority);
     }
 
+    @Override
+    public SystemAccess getAccess() {
+        return SystemAccess.of().writes(Body.class, Axis.class).readsAny(ICamera.class).splittable();
+    }
+
     @Override
     protected void processEntity(Entity entity, float deltaTime) {
         updateEntity(entity, deltaTime);
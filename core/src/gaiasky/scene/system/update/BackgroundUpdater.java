@@ -16,6 +16,8 @@ import com.badlogic.gdx.utils.reflect.ReflectionException;
 import gaiasky.scene.Mapper;
 import gaiasky.scene.component.Body;
 import gaiasky.scene.component.GraphNode;
+import gaiasky.scene.component.Model;
+import gaiasky.scene.component.RefSysTransform;
 import gaiasky.util.Logger;
 import gaiasky.util.coord.Coordinates;
 import gaiasky.util.math.Matrix4D;
@@ -29,6 +31,11 @@ public class BackgroundUpdater extends AbstractUpdateSystem {
         super(family, priority);
     }
 
+    @Override
+    public SystemAccess getAccess() {
+        return SystemAccess.of().reads(Body.class, RefSysTransform.class, Model.class).writes(GraphNode.class).splittable();
+    }
+
     @Override
     public void updateEntity(Entity entity, float deltaTime) {
         processEntity(entity, deltaTime);
@@ -11,6 +11,9 @@ import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.Family;
 import com.badlogic.gdx.math.Matrix4;
 import gaiasky.scene.Mapper;
+import gaiasky.scene.component.Body;
+import gaiasky.scene.component.GraphNode;
+import gaiasky.scene.component.RefSysTransform;
 
 /**
  * Updates billboard set entities, including their procedural generation and movement.
@@ -24,6 +27,11 @@ public class BillboardSetUpdater extends AbstractUpdateSystem {
         M41 = new Matrix4();
     }
 
+    @Override
+    public SystemAccess getAccess() {
+        return SystemAccess.of().reads(Body.class, RefSysTransform.class).writes(GraphNode.class);
+    }
+
     @Override
     protected void processEntity(Entity entity, float deltaTime) {
         updateEntity(entity, deltaTime);
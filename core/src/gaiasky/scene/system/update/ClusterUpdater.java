@@ -11,6 +11,11 @@ import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.Family;
 import com.badlogic.gdx.math.Vector3;
 import gaiasky.scene.Mapper;
+import gaiasky.scene.component.Base;
+import gaiasky.scene.component.Body;
+import gaiasky.scene.component.Cluster;
+import gaiasky.scene.component.GraphNode;
+import gaiasky.scene.component.SolidAngle;
 import gaiasky.util.math.MathUtilsDouble;
 
 /**
@@ -18,11 +23,15 @@ import gaiasky.util.math.MathUtilsDouble;
  */
 public class ClusterUpdater extends AbstractUpdateSystem {
 
-    private final Vector3 F31;
+    private static final ThreadLocal<Vector3> F31 = ThreadLocal.withInitial(Vector3::new);
 
     public ClusterUpdater(Family family, int priority) {
         super(family, priority);
-        F31 = new Vector3();
+    }
+
+    @Override
+    public SystemAccess getAccess() {
+        return SystemAccess.of().reads(SolidAngle.class).writes(Base.class, Body.class, Cluster.class, GraphNode.class).splittable();
     }
 
     @Override
@@ -44,7 +53,7 @@ public class ClusterUpdater extends AbstractUpdateSystem {
             body.labelColor[3] = 8.0f * cluster.fadeAlpha;
 
             // Compute local transform.
-            graph.localTransform.idt().translate(graph.translation.put(F31)).scl(body.size);
+            graph.localTransform.idt().translate(graph.translation.put(F31.get())).scl(body.size);
         }
     }
 }
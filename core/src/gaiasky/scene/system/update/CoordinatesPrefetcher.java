@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.scene.system.update;
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.utils.ImmutableArray;
+import gaiasky.scene.Mapper;
+import gaiasky.scene.component.Coordinates;
+
+import java.time.Instant;
+
+/**
+ * Computes the positions of the entities with time-dependent coordinates at the time of the next frame, ahead of its
+ * update. This is the part of the update that does not depend on the camera, so it can start before the current frame
+ * is rendered, and overlap with it. The positions are only written to the {@link Coordinates} components, which the
+ * render does not read, and {@link GraphUpdater} uses them if the time of the update is the prefetched one.
+ * <p>
+ * Only the coordinates that are {@link gaiasky.util.coord.IBodyCoordinates#isThreadSafe() thread-safe} are computed,
+ * as the render and the camera may query the same providers meanwhile.
+ */
+public class CoordinatesPrefetcher {
+
+    private final ImmutableArray<Entity> entities;
+
+    /**
+     * Creates a new prefetcher.
+     *
+     * @param entities The entities with coordinates.
+     */
+    public CoordinatesPrefetcher(ImmutableArray<Entity> entities) {
+        this.entities = entities;
+    }
+
+    /**
+     * Computes the positions at the given time.
+     *
+     * @param instant The time of the next frame.
+     */
+    public void prefetch(Instant instant) {
+        for (int i = 0; i < entities.size(); i++) {
+            var coordinates = Mapper.coordinates.get(entities.get(i));
+            if (coordinates.coordinates != null && coordinates.coordinates.isThreadSafe()) {
+                coordinates.prefetch(instant);
+            }
+        }
+    }
+}
@@ -323,7 +323,7 @@ public class GraphUpdater extends AbstractUpdateSystem {
             var coordinates = Mapper.coordinates.get(entity);
             if (coordinates != null && coordinates.coordinates != null) {
                 // Load this object's equatorial cartesian coordinates into pos.
-                coordinates.timeOverflow = coordinates.coordinates.getEquatorialCartesianCoordinates(time.getTime(), body.pos) == null;
+                coordinates.timeOverflow = coordinates.getEquatorialCartesianCoordinates(time.getTime(), body.pos) == null;
             } else if (!body.positionSetInScript) {
                 // Just set the original position.
                 body.pos.set(body.posEpoch);
@@ -411,7 +411,7 @@ public class GraphUpdater extends AbstractUpdateSystem {
                     engine.yawv = 0;
                     engine.pitchv = 0;
                     engine.rollv = 0;
-                    EventManager.publish(Event.SPACECRAFT_STABILISE_CMD, this, false);
+                    GaiaSky.postRunnable(() -> EventManager.publish(Event.SPACECRAFT_STABILISE_CMD, this, false));
                 }
             }
 
@@ -15,7 +15,10 @@ import gaiasky.scene.Mapper;
 import gaiasky.scene.api.IFocus;
 import gaiasky.scene.camera.ICamera;
 import gaiasky.scene.camera.NaturalCamera;
+import gaiasky.scene.component.Base;
 import gaiasky.scene.component.Body;
+import gaiasky.scene.component.Coordinates;
+import gaiasky.scene.component.Fade;
 import gaiasky.scene.component.GraphNode;
 import gaiasky.scene.component.GridRecursive;
 import gaiasky.scene.component.RefSysTransform;
@@ -49,6 +52,14 @@ public class GridRecUpdater extends AbstractUpdateSystem {
         mat4 = new Matrix4D();
     }
 
+    @Override
+    public SystemAccess getAccess() {
+        return SystemAccess.of().reads(RefSysTransform.class)
+                .writes(Base.class, Body.class, GraphNode.class, Fade.class, GridRecursive.class)
+                .readsAny(ICamera.class, Body.class, GraphNode.class)
+                .writesAny(Coordinates.class);
+    }
+
     @Override
     protected void processEntity(Entity entity, float deltaTime) {
         updateEntity(entity, deltaTime);
@@ -12,8 +12,14 @@ import com.badlogic.ashley.core.Family;
 import gaiasky.GaiaSky;
 import gaiasky.scene.Mapper;
 import gaiasky.scene.camera.ICamera;
+import gaiasky.scene.component.AffineTransformations;
+import gaiasky.scene.component.Body;
 import gaiasky.scene.component.GraphNode;
+import gaiasky.scene.component.Label;
 import gaiasky.scene.component.LocationMark;
+import gaiasky.scene.component.ModelScaffolding;
+import gaiasky.scene.component.MotorEngine;
+import gaiasky.scene.component.Orientation;
 
 /**
  * Updates location mark entities, managing their positions on celestial bodies.
@@ -27,6 +33,14 @@ public class LocUpdater extends AbstractUpdateSystem {
         this.updater = new ModelUpdater(null, 0);
     }
 
+    @Override
+    public SystemAccess getAccess() {
+        return SystemAccess.of().writes(GraphNode.class, LocationMark.class, Label.class)
+                .readsParent(Body.class, ModelScaffolding.class, AffineTransformations.class)
+                .writesParent(GraphNode.class, Orientation.class, MotorEngine.class)
+                .readsAny(ICamera.class);
+    }
+
     @Override
     protected void processEntity(Entity entity, float deltaTime) {
         updateEntity(entity, deltaTime);
@@ -10,6 +10,10 @@ package gaiasky.scene.system.update;
 import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.Family;
 import gaiasky.scene.Mapper;
+import gaiasky.scene.component.Body;
+import gaiasky.scene.component.GraphNode;
+import gaiasky.scene.component.Mesh;
+import gaiasky.scene.component.Model;
 
 /**
  * Updates mesh entities, managing their transformations and animations.
@@ -23,6 +27,11 @@ public class MeshUpdater extends AbstractUpdateSystem {
         auxArray = new float[3];
     }
 
+    @Override
+    public SystemAccess getAccess() {
+        return SystemAccess.of().reads(Body.class, Mesh.class).writes(Model.class, GraphNode.class);
+    }
+
     @Override
     protected void processEntity(Entity entity, float deltaTime) {
         updateEntity(entity, deltaTime);
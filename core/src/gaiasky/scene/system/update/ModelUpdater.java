@@ -19,8 +19,8 @@ import gaiasky.scene.camera.ICamera;
 import gaiasky.scene.component.*;
 import gaiasky.scene.entity.LightingUtils;
 import gaiasky.util.DecalUtils;
-import gaiasky.util.coord.AstroUtils;
 import gaiasky.util.coord.Coordinates;
+import gaiasky.util.coord.FrameTimeContext;
 import gaiasky.util.math.MathUtilsDouble;
 import gaiasky.util.math.Matrix4D;
 import gaiasky.util.math.QuaternionDouble;
@@ -48,6 +48,13 @@ public class ModelUpdater extends AbstractUpdateSystem {
         this.MD4 = new Matrix4D();
     }
 
+    @Override
+    public SystemAccess getAccess() {
+        return SystemAccess.of().reads(Body.class, ModelScaffolding.class, AffineTransformations.class)
+                .writes(GraphNode.class, Model.class, Orientation.class, Atmosphere.class, Cloud.class, MotorEngine.class)
+                .readsAny(ICamera.class);
+    }
+
     @Override
     protected void processEntity(Entity entity,
                                  float deltaTime) {
@@ -81,17 +88,17 @@ public class ModelUpdater extends AbstractUpdateSystem {
         }
         // Spacecraft.
         if (engine != null && engine.render) {
-            EventManager.publish(Event.SPACECRAFT_INFO,
-                                 this,
-                                 engine.yaw % 360,
-                                 engine.pitch % 360,
-                                 engine.roll % 360,
-                                 engine.vel.len(),
-                                 MotorEngine.thrustFactor[engine.thrustFactorIndex],
-                                 engine.currentEnginePower,
-                                 engine.yawp,
-                                 engine.pitchp,
-                                 engine.rollp);
+            // The update runs off the main thread, the GUI gets the values in the main loop.
+            Object[] info = {engine.yaw % 360,
+                    engine.pitch % 360,
+                    engine.roll % 360,
+                    engine.vel.len(),
+                    MotorEngine.thrustFactor[engine.thrustFactorIndex],
+                    engine.currentEnginePower,
+                    engine.yawp,
+                    engine.pitchp,
+                    engine.rollp};
+            GaiaSky.postRunnable(() -> EventManager.publish(Event.SPACECRAFT_INFO, this, info));
         }
     }
 
@@ -142,7 +149,7 @@ public class ModelUpdater extends AbstractUpdateSystem {
                 quaternionOrientation.nonRotatedPos.set(body.pos);
                 // Undo rotation.
                 quaternionOrientation.nonRotatedPos.mul(Coordinates.eqToEcl())
-                        .rotate(-AstroUtils.getSunLongitude(time.getTime()) - 180, 0, 1, 0);
+                        .rotate(-FrameTimeContext.sunLongitude(time.getTime()) - 180, 0, 1, 0);
                 // Update attitude from server if needed.
                 if (quaternionOrientation.orientationServer != null) {
                     quaternionOrientation.orientationServer.updateOrientation(time.getTime());
@@ -194,7 +201,7 @@ public class ModelUpdater extends AbstractUpdateSystem {
                     QF.set((float) QD.x, (float) QD.y, (float) QD.z, (float) QD.w);
                 } else {
                     // Use solar longitude.
-                    QD.setFromAxis(0, 1, 0, AstroUtils.getSunLongitude(GaiaSky.instance.time.getTime()));
+                    QD.setFromAxis(0, 1, 0, FrameTimeContext.sunLongitude(GaiaSky.instance.time.getTime()));
                 }
 
                 // Update orientation
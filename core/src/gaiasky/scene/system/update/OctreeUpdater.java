@@ -10,6 +10,7 @@ package gaiasky.scene.system.update;
 import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.Family;
 import gaiasky.GaiaSky;
+import gaiasky.data.OctreeLoader;
 import gaiasky.scene.Mapper;
 import gaiasky.scene.Scene;
 import gaiasky.scene.camera.ICamera;
@@ -65,6 +66,11 @@ public class OctreeUpdater extends AbstractUpdateSystem {
                 // Update root node, add all objects to roulette in cascade.
                 root.octant.update(graph.translation, camera, octree.roulette, base.opacity, root.octant.numChildrenRec > 4);
 
+                // Queue the octants that are about to be observed.
+                if (GaiaSky.settings().performance.octantPrefetch && root.octant.loader instanceof OctreeLoader loader) {
+                    loader.prefetch(root.octant, camera);
+                }
+
                 // Call the update method of all entities in the roulette list.
                 updateOctreeObjects(base, graph, octree, deltaTime);
 
@@ -27,12 +27,25 @@ import net.jafama.FastMath;
 
 import java.nio.file.Files;
 import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Updates particle set entities, including their positions and visual properties.
  */
 public class ParticleSetUpdater extends AbstractUpdateSystem implements IObserver {
 
+    /**
+     * Simulation time, in seconds, after which TLE catalogs are propagated again. In between, positions are
+     * extrapolated linearly with the velocities, which is off by a few meters in low Earth orbit.
+     */
+    private static final double TLE_PROPAGATION_STEP_S = 1.0;
+    /**
+     * Minimum wall-clock time, in milliseconds, between two propagations of a TLE catalog. Under time warp, the
+     * simulation time moves more than {@link #TLE_PROPAGATION_STEP_S} every frame, so this caps the number of
+     * propagations and GPU data rebuilds per second.
+     */
+    private static final long TLE_PROPAGATION_INTERVAL_MS = 100;
+
     private final ParticleUtils utils;
 
     public ParticleSetUpdater(Family family,
@@ -131,6 +144,10 @@ public class ParticleSetUpdater extends AbstractUpdateSystem implements IObserve
 
     private void updateParticleSet(ICamera camera,
                                    ParticleSet particleSet) {
+        if (particleSet.propagator != null) {
+            propagate(particleSet);
+        }
+
         // Delta years
         particleSet.currDeltaYears = AstroUtils.getMsSince(GaiaSky.instance.time.getTime(), particleSet.epochJd) * Nature.MS_TO_Y;
 
@@ -149,6 +166,28 @@ public class ParticleSetUpdater extends AbstractUpdateSystem implements IObserve
         }
     }
 
+    /**
+     * Propagates all the objects of a TLE catalog to the current time, in parallel chunks, if the time has moved away
+     * from the last propagation and the last propagation is not too recent. The epoch of the set is moved to that
+     * time, and the GPU data is rebuilt.
+     * <p>
+     * The chunks run in the common pool, like the other per-frame work, and not in the pool of the executor
+     * service, where they would wait behind the loading tasks.
+     *
+     * @param set The set.
+     */
+    private void propagate(ParticleSet set) {
+        double jd = AstroUtils.getJulianDateCache(GaiaSky.instance.time.getTime());
+        long now = System.currentTimeMillis();
+        if (!(Math.abs(jd - set.propagator.getTime()) * Nature.D_TO_S < TLE_PROPAGATION_STEP_S)
+                && now - set.propagationTimeMs >= TLE_PROPAGATION_INTERVAL_MS) {
+            set.propagator.propagateAll(jd, ForkJoinPool.commonPool());
+            set.propagationTimeMs = now;
+            set.epochJd = jd;
+            set.markForUpdate(Mapper.render.get(set.entity));
+        }
+    }
+
     private void updateStarSet(ICamera camera,
                                StarSet set,
                                DatasetDescription datasetDesc) {
@@ -13,9 +13,16 @@ import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.math.Vector3;
 import gaiasky.GaiaSky;
 import gaiasky.scene.Mapper;
+import gaiasky.scene.camera.ICamera;
+import gaiasky.scene.component.AffineTransformations;
+import gaiasky.scene.component.Base;
 import gaiasky.scene.component.Body;
 import gaiasky.scene.component.GraphNode;
+import gaiasky.scene.component.ModelScaffolding;
+import gaiasky.scene.component.MotorEngine;
+import gaiasky.scene.component.Orientation;
 import gaiasky.scene.component.Perimeter;
+import gaiasky.scene.component.SolidAngle;
 import gaiasky.util.math.MathUtilsDouble;
 import net.jafama.FastMath;
 
@@ -32,6 +39,14 @@ public class PerimeterUpdater extends AbstractUpdateSystem {
         updater = new ModelUpdater(null, 0);
     }
 
+    @Override
+    public SystemAccess getAccess() {
+        return SystemAccess.of().writes(GraphNode.class, Base.class, Body.class, Perimeter.class)
+                .readsParent(SolidAngle.class, Body.class, ModelScaffolding.class, AffineTransformations.class)
+                .writesParent(GraphNode.class, Orientation.class, MotorEngine.class)
+                .readsAny(ICamera.class);
+    }
+
     @Override
     protected void processEntity(Entity entity, float deltaTime) {
         updateEntity(entity, deltaTime);
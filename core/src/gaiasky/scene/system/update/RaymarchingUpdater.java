@@ -22,6 +22,11 @@ public class RaymarchingUpdater extends AbstractUpdateSystem {
         super(family, priority);
     }
 
+    @Override
+    public SystemAccess getAccess() {
+        return SystemAccess.of().splittable();
+    }
+
     @Override
     protected void processEntity(Entity entity, float deltaTime) {
         updateEntity(entity, deltaTime);
@@ -10,10 +10,14 @@ package gaiasky.scene.system.update;
 import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.Family;
 import gaiasky.GaiaSky;
+import gaiasky.data.util.GlobalResources;
 import gaiasky.event.Event;
 import gaiasky.event.EventManager;
 import gaiasky.scene.Mapper;
-import gaiasky.data.util.GlobalResources;
+import gaiasky.scene.component.Body;
+import gaiasky.scene.component.Coordinates;
+import gaiasky.scene.component.GraphNode;
+import gaiasky.scene.component.Ruler;
 import gaiasky.util.Pair;
 
 /**
@@ -25,6 +29,14 @@ public class RulerUpdater extends AbstractUpdateSystem {
         super(family, priority);
     }
 
+    @Override
+    public SystemAccess getAccess() {
+        return SystemAccess.of().writes(Body.class, GraphNode.class, Ruler.class)
+                .readsParent(GraphNode.class)
+                .readsAny(Body.class, GraphNode.class)
+                .writesAny(Coordinates.class);
+    }
+
     @Override
     protected void processEntity(Entity entity, float deltaTime) {
         updateEntity(entity, deltaTime);
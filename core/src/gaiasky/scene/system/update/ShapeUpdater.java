@@ -12,6 +12,12 @@ import com.badlogic.ashley.core.Family;
 import com.badlogic.gdx.math.Vector3;
 import gaiasky.GaiaSky;
 import gaiasky.scene.Mapper;
+import gaiasky.scene.camera.ICamera;
+import gaiasky.scene.component.AffineTransformations;
+import gaiasky.scene.component.Body;
+import gaiasky.scene.component.GraphNode;
+import gaiasky.scene.component.Model;
+import gaiasky.scene.component.RefSysTransform;
 import gaiasky.scene.entity.LightingUtils;
 
 /**
@@ -25,6 +31,13 @@ public class ShapeUpdater extends AbstractUpdateSystem {
         super(family, priority);
     }
 
+    @Override
+    public SystemAccess getAccess() {
+        return SystemAccess.of().reads(Body.class, RefSysTransform.class, AffineTransformations.class)
+                .writes(Model.class, GraphNode.class)
+                .readsAny(ICamera.class);
+    }
+
     @Override
     protected void processEntity(Entity entity, float deltaTime) {
         updateEntity(entity, deltaTime);
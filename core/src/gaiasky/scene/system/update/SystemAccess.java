@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.scene.system.update;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Declares the data an update system reads and writes, so that the {@link UpdateScheduler} can run systems that do not
+ * interfere concurrently. Types are usually component classes, but any class that stands for a shared resource (for
+ * instance, the camera) can be used.
+ * <p>
+ * Accesses come in three scopes:
+ * <ul>
+ *     <li>Own: components of the entities in the family of the system.</li>
+ *     <li>Parent: components of the scene graph parents of those entities.</li>
+ *     <li>Any: components of arbitrary entities, or global resources.</li>
+ * </ul>
+ * Systems that do anything else (adding or removing components or entities, updating other systems' entities, loading
+ * data) must stay {@link #EXCLUSIVE}, which is the default.
+ */
+public final class SystemAccess {
+    /** The system can't run concurrently with any other system. **/
+    public static final SystemAccess EXCLUSIVE = new SystemAccess(true);
+
+    final boolean exclusive;
+    final Set<Class<?>> reads = new HashSet<>(), writes = new HashSet<>();
+    final Set<Class<?>> parentReads = new HashSet<>(), parentWrites = new HashSet<>();
+    final Set<Class<?>> anyReads = new HashSet<>(), anyWrites = new HashSet<>();
+    boolean splittable;
+
+    private SystemAccess(boolean exclusive) {
+        this.exclusive = exclusive;
+    }
+
+    /**
+     * @return A new, empty, non-exclusive access declaration.
+     */
+    public static SystemAccess of() {
+        return new SystemAccess(false);
+    }
+
+    public SystemAccess reads(Class<?>... types) {
+        Collections.addAll(reads, types);
+        return this;
+    }
+
+    public SystemAccess writes(Class<?>... types) {
+        Collections.addAll(writes, types);
+        return this;
+    }
+
+    public SystemAccess readsParent(Class<?>... types) {
+        Collections.addAll(parentReads, types);
+        return this;
+    }
+
+    public SystemAccess writesParent(Class<?>... types) {
+        Collections.addAll(parentWrites, types);
+        return this;
+    }
+
+    public SystemAccess readsAny(Class<?>... types) {
+        Collections.addAll(anyReads, types);
+        return this;
+    }
+
+    public SystemAccess writesAny(Class<?>... types) {
+        Collections.addAll(anyWrites, types);
+        return this;
+    }
+
+    /**
+     * Declares that {@link EntityUpdater#updateEntity(com.badlogic.ashley.core.Entity, float)} may be called
+     * concurrently for different entities of the family, so that large families can be split into ranges. The system
+     * must not write to parents or to arbitrary entities, and must not use per-instance scratch objects.
+     *
+     * @return This access.
+     */
+    public SystemAccess splittable() {
+        this.splittable = true;
+        return this;
+    }
+
+    public boolean isExclusive() {
+        return exclusive;
+    }
+
+    public boolean isSplittable() {
+        return splittable && !exclusive && parentWrites.isEmpty() && anyWrites.isEmpty();
+    }
+
+    static boolean intersects(Set<Class<?>> a, Set<Class<?>> b) {
+        for (var type : a) {
+            if (b.contains(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -11,14 +11,16 @@ import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.Family;
 import gaiasky.GaiaSky;
 import gaiasky.scene.Mapper;
+import gaiasky.scene.component.Body;
 import gaiasky.scene.component.GraphNode;
 import gaiasky.scene.component.RefSysTransform;
-import gaiasky.scene.component.Trajectory;
 import gaiasky.scene.component.Trajectory.OrbitOrientationModel;
+import gaiasky.scene.component.Trajectory;
+import gaiasky.scene.component.Verts;
 import gaiasky.scene.entity.TrajectoryUtils;
 import gaiasky.scene.record.OrbitComponent;
-import gaiasky.util.coord.AstroUtils;
 import gaiasky.util.coord.Coordinates;
+import gaiasky.util.coord.FrameTimeContext;
 import gaiasky.util.math.Matrix4D;
 import gaiasky.util.time.ITimeFrameProvider;
 
@@ -39,6 +41,15 @@ public class TrajectoryUpdater extends AbstractUpdateSystem {
         this.utils = new TrajectoryUtils();
     }
 
+    @Override
+    public SystemAccess getAccess() {
+        return SystemAccess.of().reads(Verts.class)
+                .writes(GraphNode.class, Trajectory.class, RefSysTransform.class)
+                .readsParent(GraphNode.class)
+                .readsAny(Body.class, GraphNode.class)
+                .writesAny(gaiasky.scene.component.Coordinates.class);
+    }
+
     @Override
     protected void processEntity(Entity entity,
                                  float deltaTime) {
@@ -92,7 +103,7 @@ public class TrajectoryUpdater extends AbstractUpdateSystem {
                                                    Trajectory trajectory) {
         Matrix4D localTransformD = trajectory.localTransformD;
 
-        double sunLongitude = AstroUtils.getSunLongitude(date);
+        double sunLongitude = FrameTimeContext.sunLongitude(date);
         graph.translation.setToTranslation(localTransformD)
                 .mul(Coordinates.eclToEq())
                 .rotate(0, 1, 0, sunLongitude + 180);
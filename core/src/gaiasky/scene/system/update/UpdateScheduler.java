@@ -0,0 +1,408 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.scene.system.update;
+
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.EntityListener;
+import com.badlogic.ashley.core.EntitySystem;
+import com.badlogic.ashley.utils.ImmutableArray;
+import com.badlogic.gdx.utils.Array;
+import gaiasky.scene.Mapper;
+import gaiasky.scene.component.GraphNode;
+import gaiasky.util.Logger;
+import gaiasky.util.profile.FrameProfiler;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs the update systems of the scene in their priority order, as a single system of the engine. When parallel
+ * execution is enabled, systems whose {@link SystemAccess} declarations do not conflict run concurrently, and large
+ * families of {@link SystemAccess#splittable()} systems are split into entity ranges.
+ * <p>
+ * Exclusive systems act as barriers: every system before them has finished when they start, and they run on the
+ * calling thread. Between barriers, a system only starts when all the earlier systems it conflicts with have finished,
+ * so the result is the same as running them in order. Since the scheduler runs inside {@link Engine#update(float)},
+ * entity operations requested by the systems are delayed until the end of the update, as usual.
+ * <p>
+ * The conflicts between all pairs of systems are computed once, and again only when the members of their families or
+ * the structure of the scene graph change, so that scheduling a frame does not depend on the number of entities.
+ * <p>
+ * The scheduler also keeps smoothed per-system timings, see {@link #getTimings()}.
+ */
+public class UpdateScheduler extends EntitySystem {
+    private static final Logger.Log logger = Logger.getLogger(UpdateScheduler.class);
+
+    /** Minimum number of entities per range when splitting a family. **/
+    private static final int MIN_RANGE = 256;
+    /** Smoothing factor of the timings. **/
+    private static final double TIMING_ALPHA = 0.05;
+    /** Frames between timing reports in the debug log. **/
+    private static final int REPORT_FRAMES = 3600;
+
+    private final AbstractUpdateSystem[] systems;
+    private final SystemAccess[] access;
+    private final long[] nanos;
+    private final double[] timings;
+    private Executor executor;
+    private int parallelism;
+    private long frames;
+
+    /** Whether system a must wait for the earlier system b, at [a * n + b]. **/
+    private final boolean[] conflicts;
+    /** Whether the families have changed since the conflicts were computed. **/
+    private volatile boolean familiesChanged = true;
+    /** Structure version of the scene graph when the conflicts were computed. **/
+    private long structureVersion = -1;
+    private final EntityListener familyListener = new EntityListener() {
+        @Override
+        public void entityAdded(Entity entity) {
+            familiesChanged = true;
+        }
+
+        @Override
+        public void entityRemoved(Entity entity) {
+            familiesChanged = true;
+        }
+    };
+
+    /** Scratch arrays of the phases, reused across frames. **/
+    private final int[] phase;
+    private final CompletableFuture<?>[] futures;
+    private final CompletableFuture<?>[] dependencies;
+
+    /**
+     * Creates a new scheduler for the given systems, in serial mode.
+     *
+     * @param systems  The update systems, sorted by priority.
+     * @param priority The priority of the scheduler in the engine.
+     */
+    public UpdateScheduler(Array<? extends EntityUpdater> systems, int priority) {
+        super(priority);
+        this.systems = new AbstractUpdateSystem[systems.size];
+        this.access = new SystemAccess[systems.size];
+        for (int i = 0; i < systems.size; i++) {
+            this.systems[i] = (AbstractUpdateSystem) systems.get(i);
+            this.access[i] = this.systems[i].getAccess();
+        }
+        this.nanos = new long[systems.size];
+        this.timings = new double[systems.size];
+        this.conflicts = new boolean[systems.size * systems.size];
+        this.phase = new int[systems.size];
+        this.futures = new CompletableFuture[systems.size];
+        this.dependencies = new CompletableFuture[systems.size];
+    }
+
+    /**
+     * Enables or disables parallel execution.
+     *
+     * @param executor    The executor to run systems on, or null to use the common pool.
+     * @param parallelism The number of threads. Values lower than 2 make the scheduler run all systems in order in
+     *                    the calling thread.
+     */
+    public void setParallel(Executor executor, int parallelism) {
+        this.executor = executor != null ? executor : ForkJoinPool.commonPool();
+        this.parallelism = parallelism;
+    }
+
+    public boolean isParallel() {
+        return parallelism > 1;
+    }
+
+    @Override
+    public void addedToEngine(Engine engine) {
+        for (var system : systems) {
+            system.addedToEngine(engine);
+            engine.addEntityListener(system.getFamily(), familyListener);
+        }
+        familiesChanged = true;
+    }
+
+    @Override
+    public void removedFromEngine(Engine engine) {
+        engine.removeEntityListener(familyListener);
+        for (var system : systems) {
+            system.removedFromEngine(engine);
+        }
+    }
+
+    @Override
+    public void update(float deltaTime) {
+        Arrays.fill(nanos, 0L);
+        if (isParallel()) {
+            updateParallel(deltaTime);
+        } else {
+            for (int i = 0; i < systems.length; i++) {
+                if (systems[i].checkProcessing()) {
+                    runWhole(i, deltaTime);
+                }
+            }
+        }
+        for (int i = 0; i < timings.length; i++) {
+            timings[i] = timings[i] + TIMING_ALPHA * (nanos[i] * 1e-6 - timings[i]);
+        }
+        if (++frames % REPORT_FRAMES == 0 && Logger.level == Logger.LoggerLevel.DEBUG) {
+            logger.debug(timingReport());
+        }
+    }
+
+    private void updateParallel(float deltaTime) {
+        long version = GraphNode.getStructureVersion();
+        if (familiesChanged || version != structureVersion) {
+            // Entities added or removed from now on invalidate the new conflicts.
+            familiesChanged = false;
+            structureVersion = version;
+            computeConflicts();
+        }
+        int n = 0;
+        for (int i = 0; i < systems.length; i++) {
+            var system = systems[i];
+            if (!system.checkProcessing() || system.getEntities().size() == 0) {
+                continue;
+            }
+            if (access[i].isExclusive()) {
+                runPhase(n, deltaTime);
+                n = 0;
+                runWhole(i, deltaTime);
+            } else {
+                phase[n++] = i;
+            }
+        }
+        runPhase(n, deltaTime);
+    }
+
+    private void computeConflicts() {
+        int n = systems.length;
+        Map<Integer, Set<Entity>> parents = new HashMap<>();
+        for (int b = 0; b < n; b++) {
+            for (int a = 0; a < b; a++) {
+                conflicts[b * n + a] = conflicts(a, b, parents);
+            }
+        }
+    }
+
+    /**
+     * Runs the first n systems of the phase, which are not exclusive, respecting the order of conflicting ones.
+     */
+    private void runPhase(int n, float deltaTime) {
+        if (n == 0) {
+            return;
+        }
+        if (n == 1 && !isSplit(phase[0])) {
+            runWhole(phase[0], deltaTime);
+            return;
+        }
+        try {
+            for (int j = 0; j < n; j++) {
+                int index = phase[j];
+                int d = 0;
+                for (int k = 0; k < j; k++) {
+                    if (conflicts[index * systems.length + phase[k]]) {
+                        dependencies[d++] = futures[k];
+                    }
+                }
+                if (d == 0) {
+                    futures[j] = start(index, deltaTime);
+                } else {
+                    var ready = d == 1 ? dependencies[0] : CompletableFuture.allOf(Arrays.copyOf(dependencies, d));
+                    futures[j] = ready.thenCompose(v -> start(index, deltaTime));
+                }
+            }
+            CompletableFuture.allOf(Arrays.copyOf(futures, n)).join();
+        } catch (CompletionException e) {
+            var cause = e.getCause();
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            } else if (cause instanceof Error err) {
+                throw err;
+            }
+            throw e;
+        } finally {
+            Arrays.fill(futures, null);
+            Arrays.fill(dependencies, null);
+        }
+    }
+
+    private boolean isSplit(int index) {
+        return access[index].isSplittable() && systems[index].getEntities().size() >= 2 * MIN_RANGE;
+    }
+
+    private CompletableFuture<Void> start(int index, float deltaTime) {
+        if (!isSplit(index)) {
+            return CompletableFuture.runAsync(() -> runWhole(index, deltaTime), executor);
+        }
+        var system = systems[index];
+        var entities = system.getEntities();
+        int size = entities.size();
+        int ranges = Math.min(parallelism * 2, size / MIN_RANGE);
+        @SuppressWarnings("unchecked") CompletableFuture<Void>[] parts = new CompletableFuture[ranges];
+        // The stage takes the wall time from the start of the ranges to the end of the last one, not their sum.
+        long start = System.nanoTime();
+        long profile = FrameProfiler.begin();
+        for (int r = 0; r < ranges; r++) {
+            int from = (int) ((long) size * r / ranges);
+            int to = (int) ((long) size * (r + 1) / ranges);
+            parts[r] = CompletableFuture.runAsync(() -> runRange(index, entities, from, to, deltaTime), executor);
+        }
+        return CompletableFuture.allOf(parts).thenRun(() -> {
+            FrameProfiler.end(system.getProfilerStage(), profile);
+            addTime(index, System.nanoTime() - start);
+        });
+    }
+
+    private void runWhole(int index, float deltaTime) {
+        long start = System.nanoTime();
+        systems[index].update(deltaTime);
+        addTime(index, System.nanoTime() - start);
+    }
+
+    private void runRange(int index, ImmutableArray<Entity> entities, int from, int to, float deltaTime) {
+        var system = systems[index];
+        for (int i = from; i < to; i++) {
+            system.updateEntity(entities.get(i), deltaTime);
+        }
+    }
+
+    private void addTime(int index, long time) {
+        synchronized (nanos) {
+            nanos[index] += time;
+        }
+    }
+
+    /**
+     * Checks whether system {@code b} must wait for the earlier system {@code a}.
+     */
+    boolean conflicts(int a, int b, Map<Integer, Set<Entity>> parents) {
+        var sa = access[a];
+        var sb = access[b];
+        if (sa.isExclusive() || sb.isExclusive()) {
+            return true;
+        }
+        // Arbitrary entities and global resources.
+        if (writesAnyConflict(sa, sb) || writesAnyConflict(sb, sa)) {
+            return true;
+        }
+        // Entities of both families.
+        if ((SystemAccess.intersects(sa.writes, sb.reads) || SystemAccess.intersects(sa.writes, sb.writes)
+                || SystemAccess.intersects(sb.writes, sa.reads)) && overlap(systems[a].getEntities(), systems[b].getEntities())) {
+            return true;
+        }
+        // Parents of one against the entities of the other.
+        if (parentOwnConflict(a, b, parents) || parentOwnConflict(b, a, parents)) {
+            return true;
+        }
+        // Parents of both.
+        return (SystemAccess.intersects(sa.parentWrites, sb.parentReads) || SystemAccess.intersects(sa.parentWrites, sb.parentWrites)
+                || SystemAccess.intersects(sb.parentWrites, sa.parentReads))
+                && intersects(parents(a, parents), parents(b, parents));
+    }
+
+    private static boolean writesAnyConflict(SystemAccess w, SystemAccess o) {
+        if (w.anyWrites.isEmpty() && w.writes.isEmpty() && w.parentWrites.isEmpty()) {
+            return false;
+        }
+        // Anything written by w, in any scope, is visible to the 'any' readers and writers of o.
+        var written = new HashSet<>(w.writes);
+        written.addAll(w.parentWrites);
+        written.addAll(w.anyWrites);
+        if (SystemAccess.intersects(written, o.anyReads) || SystemAccess.intersects(written, o.anyWrites)) {
+            return true;
+        }
+        // The 'any' writes of w may touch any entity, o included.
+        return SystemAccess.intersects(w.anyWrites, o.reads) || SystemAccess.intersects(w.anyWrites, o.writes)
+                || SystemAccess.intersects(w.anyWrites, o.parentReads) || SystemAccess.intersects(w.anyWrites, o.parentWrites);
+    }
+
+    private boolean parentOwnConflict(int p, int o, Map<Integer, Set<Entity>> parents) {
+        var sp = access[p];
+        var so = access[o];
+        if (SystemAccess.intersects(sp.parentWrites, so.reads) || SystemAccess.intersects(sp.parentWrites, so.writes)
+                || SystemAccess.intersects(sp.parentReads, so.writes)) {
+            var ps = parents(p, parents);
+            var entities = systems[o].getEntities();
+            for (int i = 0; i < entities.size(); i++) {
+                if (ps.contains(entities.get(i))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private Set<Entity> parents(int index, Map<Integer, Set<Entity>> cache) {
+        return cache.computeIfAbsent(index, i -> {
+            Set<Entity> result = new HashSet<>();
+            var entities = systems[i].getEntities();
+            for (int j = 0; j < entities.size(); j++) {
+                var graph = Mapper.graph.get(entities.get(j));
+                if (graph != null && graph.parent != null) {
+                    result.add(graph.parent);
+                }
+            }
+            return result;
+        });
+    }
+
+    private static boolean overlap(ImmutableArray<Entity> a, ImmutableArray<Entity> b) {
+        if (a.size() > b.size()) {
+            var t = a;
+            a = b;
+            b = t;
+        }
+        if (a.size() == 0) {
+            return false;
+        }
+        Set<Entity> set = new HashSet<>(b.size() * 2);
+        for (int i = 0; i < b.size(); i++) {
+            set.add(b.get(i));
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (set.contains(a.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean intersects(Set<Entity> a, Set<Entity> b) {
+        var small = a.size() <= b.size() ? a : b;
+        var large = small == a ? b : a;
+        for (var e : small) {
+            if (large.contains(e)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the smoothed time spent in each system per frame, in milliseconds, in priority order. For split
+     * systems, this is the wall time from the start of their ranges to the end of the last one.
+     *
+     * @return A map from system name to time.
+     */
+    public Map<String, Double> getTimings() {
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (int i = 0; i < systems.length; i++) {
+            result.put(systems[i].getClass().getSimpleName(), timings[i]);
+        }
+        return result;
+    }
+
+    private String timingReport() {
+        var sb = new StringBuilder("Update system timings (ms/frame, ").append(isParallel() ? "parallel" : "serial").append("):");
+        for (var entry : getTimings().entrySet()) {
+            sb.append(String.format(Locale.ROOT, " %s=%.3f", entry.getKey(), entry.getValue()));
+        }
+        return sb.toString();
+    }
+}
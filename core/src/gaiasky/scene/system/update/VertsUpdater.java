@@ -11,6 +11,8 @@ import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.Family;
 import gaiasky.GaiaSky;
 import gaiasky.scene.Mapper;
+import gaiasky.scene.camera.ICamera;
+import gaiasky.scene.component.GraphNode;
 
 /**
  * Updates entities defined by vertices, such as polylines or point sets.
@@ -20,6 +22,11 @@ public class VertsUpdater extends AbstractUpdateSystem {
         super(family, priority);
     }
 
+    @Override
+    public SystemAccess getAccess() {
+        return SystemAccess.of().writes(GraphNode.class).readsAny(ICamera.class).splittable();
+    }
+
     @Override
     protected void processEntity(Entity entity, float deltaTime) {
         updateEntity(entity, deltaTime);
@@ -34,6 +34,7 @@ import gaiasky.util.math.*;
 import gaiasky.util.time.ITimeFrameProvider;
 import gaiasky.util.tree.IOctreeObject;
 import gaiasky.util.tree.OctreeNode;
+import net.jafama.FastMath;
 
 /**
  * A view of a focusable entity in the Gaia Sky scene.
@@ -758,6 +759,13 @@ public class FocusView extends BaseView implements IFocus, IVisibilitySwitch {
     @Override
     public double getElevationAt(Vector3Q camPos,
                                  Vector3Q nextPos) {
+        return getElevationAt(camPos, nextPos, 0);
+    }
+
+    @Override
+    public double getElevationAt(Vector3Q camPos,
+                                 Vector3Q nextPos,
+                                 double footprint) {
         if (isBillboard()) {
             return 0;
         } else if (isModel()) {
@@ -776,7 +784,7 @@ public class FocusView extends BaseView implements IFocus, IVisibilitySwitch {
                     dCam = getDistToCamera();
                 }
                 // Only when we have height map, and we are below the highest point in the surface.
-                if (dCam < getRadius() + mc.mtc.heightScale * multiplier) {
+                if (dCam < getRadius() + mc.mtc.heightData.getMaxNormalizedHeight() * mc.mtc.heightScale * multiplier) {
                     // Object-camera normalised vector
                     cart.scl(-1).add(camPos).nor();
 
@@ -790,8 +798,20 @@ public class FocusView extends BaseView implements IFocus, IVisibilitySwitch {
 
                     double u = (((sph.x * Nature.TO_DEG) + 270.0) % 360.0) / 360.0;
                     double v = (sph.y * Nature.TO_DEG + 90.0) / 180.0;
-                    // Get the height at the given UV position, and scale it properly.
-                    double heightNormalized = mc.mtc.heightData.getNormalizedHeight(u, v);
+                    double heightNormalized;
+                    if (footprint > 0) {
+                        // Highest point within the footprint, which spans a wider range of U at high latitudes.
+                        double angle = footprint / getRadius();
+                        double du = FastMath.min(0.5, angle / (2.0 * FastMath.PI * FastMath.max(FastMath.cos(sph.y), 1.0e-3)));
+                        double dv = angle / FastMath.PI;
+                        heightNormalized = mc.mtc.heightData.getMaxNormalizedHeight(u - du,
+                                                                                    FastMath.max(0.0, v - dv),
+                                                                                    u + du,
+                                                                                    FastMath.min(1.0, v + dv));
+                    } else {
+                        // Get the height at the given UV position, and scale it properly.
+                        heightNormalized = mc.mtc.heightData.getNormalizedHeight(u, v);
+                    }
                     height = heightNormalized * mc.mtc.heightScale;
 
                     // Debug by painting on diffuse texture at same position.
@@ -70,6 +70,15 @@ public class LineView extends BaseView implements ILineRenderable {
         }
     }
 
+    /**
+     * Gets the system that produces the lines of the entities of this view.
+     *
+     * @return The line entity render system.
+     */
+    public LineEntityRenderSystem getRenderSystem() {
+        return renderSystem;
+    }
+
     @Override
     public int getGlPrimitive() {
         return verts != null ? verts.glPrimitive : GL30.GL_LINES;
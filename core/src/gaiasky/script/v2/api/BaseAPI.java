@@ -12,6 +12,8 @@ import gaiasky.script.v2.impl.DataModule;
 import gaiasky.script.v2.impl.OutputModule;
 import gaiasky.util.Constants;
 
+import java.util.Map;
+
 /**
  * Public API definition for the {@link BaseModule}, which contains methods and functions that
  * perform essential or basic functionality.
@@ -317,6 +319,51 @@ public interface BaseAPI {
      */
     void error(String msg);
 
+    /**
+     * Enable or disable the frame-time profiler. When enabled, the time spent in the update, extraction and render
+     * stages of each frame is recorded for the last frames. Stages are named hierarchically, e.g.
+     * <code>frame/update/OrbitUpdater</code> or <code>frame/render/MODEL_PIX</code>. The profiler is disabled by
+     * default.
+     *
+     * @param enabled Whether to enable the profiler.
+     */
+    void set_profiler(boolean enabled);
+
+    /**
+     * Clear all the frames recorded by the frame-time profiler.
+     */
+    void reset_profiler();
+
+    /**
+     * Get the statistics of each stage of the frame-time profiler over the recorded frames. The result maps each
+     * stage name to an array with the number of frames, and the mean, minimum, median, 95th percentile, 99th
+     * percentile and maximum times per frame, in milliseconds.
+     *
+     * @return The statistics of each stage.
+     */
+    Map<String, double[]> get_profiler_stats();
+
+    /**
+     * Get the histogram of frame times of the given stage of the frame-time profiler. Bucket <code>k</code> counts
+     * the frames whose time in the stage is in [2^k, 2^(k+1)) microseconds. The first bucket also counts the frames
+     * with shorter times.
+     *
+     * @param stage The stage name.
+     *
+     * @return The histogram, or null if the stage does not exist.
+     */
+    int[] get_profiler_histogram(String stage);
+
+    /**
+     * Write the statistics and histograms of the frame-time profiler to a CSV file. They are also committed as
+     * Java Flight Recorder events (<code>gaiasky.StageStatistics</code>) if a recording is active.
+     *
+     * @param path The path of the output file.
+     *
+     * @return True if the file was written.
+     */
+    boolean dump_profiler(String path);
+
     /**
      * Initiate the quit action to terminate the program. This call causes Gaia Sky to exit.
      */
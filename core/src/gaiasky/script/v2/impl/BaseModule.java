@@ -16,10 +16,15 @@ import gaiasky.util.Constants;
 import gaiasky.util.Settings;
 import gaiasky.util.SysUtils;
 import gaiasky.util.camera.rec.Camcorder;
+import gaiasky.util.profile.FrameProfiler;
 import net.jafama.FastMath;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedDeque;
 
 /**
@@ -284,6 +289,47 @@ public class BaseModule extends APIModule implements BaseAPI {
         logger.error(msg);
     }
 
+    @Override
+    public void set_profiler(boolean enabled) {
+        FrameProfiler.setEnabled(enabled);
+    }
+
+    @Override
+    public void reset_profiler() {
+        FrameProfiler.reset();
+    }
+
+    @Override
+    public Map<String, double[]> get_profiler_stats() {
+        Map<String, double[]> result = new LinkedHashMap<>();
+        for (var s : FrameProfiler.stats()) {
+            result.put(s.stage(), new double[] { s.frames(), s.mean(), s.min(), s.p50(), s.p95(), s.p99(), s.max() });
+        }
+        return result;
+    }
+
+    @Override
+    public int[] get_profiler_histogram(String stage) {
+        if (api.validator.checkString(stage, "stage")) {
+            var s = FrameProfiler.stats(stage);
+            return s != null ? s.histogram() : null;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean dump_profiler(String path) {
+        if (api.validator.checkString(path, "path")) {
+            try {
+                FrameProfiler.dump(Path.of(path));
+                return true;
+            } catch (IOException e) {
+                logger.error(e, "Could not write profiler data to " + path);
+            }
+        }
+        return false;
+    }
+
     @Override
     public void quit() {
         Gdx.app.exit();
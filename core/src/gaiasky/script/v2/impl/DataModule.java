@@ -32,6 +32,7 @@ import gaiasky.util.Constants;
 import gaiasky.util.DatasetCard;
 import gaiasky.util.Pair;
 import gaiasky.util.color.ColorUtils;
+import gaiasky.util.concurrent.PriorityTaskExecutor.Priority;
 import gaiasky.util.filter.attrib.AttributeUCD;
 import gaiasky.util.filter.attrib.IAttribute;
 import gaiasky.util.i18n.I18n;
@@ -606,7 +607,7 @@ public class DataModule extends APIModule implements IObserver, DataAPI {
                             // Update constellations
                             api.base.post_runnable(() -> EventManager.publish(Event.CONSTELLATION_UPDATE_CMD, this, GaiaSky.instance.scene));
                         });
-                    });
+                    }, Priority.BULK);
                 });
             }
 
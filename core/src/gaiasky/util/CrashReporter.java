@@ -120,6 +120,8 @@ public class CrashReporter {
      * @return The path to the created log file.
      */
     private static Path writeLog(Log logger, Path dir, String suffixString) {
+        // Publish the pending messages first.
+        Logger.flush();
         if (Files.exists(dir) && Files.isWritable(dir)) {
             // LOG FILE
             List<MessageBean> logMessages = ConsoleLogger.getHistory();
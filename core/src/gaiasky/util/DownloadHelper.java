@@ -17,8 +17,10 @@ import com.badlogic.gdx.net.HttpStatus;
 import com.badlogic.gdx.net.NetJavaImpl;
 import com.badlogic.gdx.utils.TimeUtils;
 import gaiasky.util.Logger.Log;
+import gaiasky.util.datadesc.DatasetInstallPipeline;
 import gaiasky.util.i18n.I18n;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -28,6 +30,9 @@ import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -41,6 +46,10 @@ public class DownloadHelper {
     private static final int TIMEOUT = 10_000;
     /** Modification of {@link NetJavaImpl} to never set doInput to false, as we want to read status codes. **/
     private static final ModifiedNetJavaImpl net = new ModifiedNetJavaImpl();
+    /** Maximum number of parallel range requests used to download dataset packages. **/
+    private static final int DATASET_CONNECTIONS = 4;
+    /** Install pipelines in flight, by the request handle given to the caller. **/
+    private static final Map<HttpRequest, DatasetInstallPipeline> pipelines = new ConcurrentHashMap<>();
 
     /**
      * Checks for an internet connection and runs the appropriate callback depending on the outcome.
@@ -173,6 +182,93 @@ public class DownloadHelper {
         }
     }
 
+    /**
+     * Downloads a {@code .tar.gz} dataset package and extracts it to the given directory, hashing and
+     * extracting the bytes as they arrive instead of doing it after the download has finished. Uses
+     * parallel range requests if the server supports them, and resumes interrupted downloads from the
+     * existing part file. A new thread is spawned to run the {@link DatasetInstallPipeline}.
+     *
+     * @param url              The URL of the package, or a local file path prefixed with 'file://'.
+     * @param to               The part file to download to.
+     * @param outDir           The directory to extract the package to.
+     * @param sha256           The expected SHA-256 digest of the package, or null to skip the check.
+     * @param offlineMode      If true, the download is skipped, and the {@code fail} callback is executed.
+     * @param progressDownload Reports the progress of the download (may be null).
+     * @param progressExtract  Reports the progress of the extraction (may be null).
+     * @param finish           Invoked with the digest of the package after it has been fully extracted.
+     * @param fail             Invoked with the cause if the download, the extraction or the checksum check fail.
+     *                         The cause is a {@link DatasetInstallPipeline.DigestMismatchException} in the latter case.
+     * @param cancel           Invoked if the download is cancelled with {@link #cancelRequest(HttpRequest)}.
+     *
+     * @return A handle to cancel the download with {@link #cancelRequest(HttpRequest)}.
+     */
+    public static HttpRequest downloadAndExtract(String url,
+                                                 FileHandle to,
+                                                 File outDir,
+                                                 String sha256,
+                                                 boolean offlineMode,
+                                                 ProgressRunnable progressDownload,
+                                                 ProgressRunnable progressExtract,
+                                                 Consumer<String> finish,
+                                                 Consumer<Exception> fail,
+                                                 Runnable cancel) {
+        HttpRequest request = new HttpRequest(HttpMethods.GET);
+        request.setUrl(url);
+        if (offlineMode) {
+            if (fail != null) {
+                fail.accept(new IOException("Offline mode"));
+            }
+            return request;
+        }
+
+        var pipeline = new DatasetInstallPipeline(url, to.file().toPath(), outDir);
+        pipeline.setConnections(DATASET_CONNECTIONS);
+        pipeline.setExpectedSha256(sha256);
+        pipeline.setProgressDownload(progressDownload);
+        pipeline.setProgressExtract(progressExtract);
+        pipelines.put(request, pipeline);
+
+        Thread t = new Thread(() -> {
+            try {
+                logger.info(I18n.msg("gui.download.starting", url));
+                var result = pipeline.run();
+                logger.info(I18n.msg("gui.download.finished", to.file().toPath()));
+                if (finish != null) {
+                    finish.accept(result.digest());
+                }
+            } catch (CancellationException e) {
+                logger.error(I18n.msg("gui.download.cancelled", url));
+                if (cancel != null) {
+                    cancel.run();
+                }
+            } catch (Exception e) {
+                logger.error(e);
+                if (fail != null) {
+                    fail.accept(e);
+                }
+            } finally {
+                pipelines.remove(request);
+            }
+        }, "gaiasky-install-" + to.name());
+        t.setDaemon(true);
+        t.start();
+        return request;
+    }
+
+    /**
+     * Cancels a request created by any of the download methods of this class.
+     *
+     * @param request The request handle.
+     */
+    public static void cancelRequest(HttpRequest request) {
+        var pipeline = pipelines.remove(request);
+        if (pipeline != null) {
+            pipeline.cancel();
+        } else {
+            Gdx.net.cancelHttpRequest(request);
+        }
+    }
+
     /**
      * Tests if the provided URL is reachable. If reachable, runs the finish callback.
      * If not reachable, runs the fail callback. This method handles both files and directories.
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.util;
+
+import com.badlogic.gdx.utils.Disposable;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Two-stage update/render pipeline over double-buffered frame state.
+ * <p>
+ * The update stage always writes into the back buffer, and the render stage always reads the front buffer. The
+ * buffers are exchanged by the swap action, which the pipeline only calls when no update is in flight.
+ * <ul>
+ *     <li>In serial mode, {@link #launch()} runs the update on the calling thread and swaps right away.</li>
+ *     <li>In pipelined mode, {@link #launch()} submits the update of the next frame to a worker thread and
+ *     returns immediately, so that it overlaps with whatever the caller does next. {@link #join()} waits for it and
+ *     swaps.</li>
+ * </ul>
+ * Both modes run the same stages in the same order on the same state, so they produce the same results as long as
+ * the code running between {@link #launch()} and {@link #join()} does not touch the back buffer.
+ * <p>
+ * In pipelined mode, part of the update of the next frame can also be started before the current frame is rendered,
+ * with {@link #prepare(Runnable)}. The task runs on the worker thread, before the update stage, and must only write
+ * state that the render does not read.
+ */
+public class FramePipeline implements Disposable {
+    private static final Logger.Log logger = Logger.getLogger(FramePipeline.class);
+
+    private final Runnable update;
+    private final Runnable swap;
+    private final String name;
+    private ExecutorService worker;
+    private Future<?> inFlight;
+    private Future<?> preparing;
+    private boolean pipelined;
+
+    /**
+     * Creates a new pipeline, in serial mode.
+     *
+     * @param update The update stage. Writes the back buffer.
+     * @param swap   Exchanges the front and back buffers.
+     * @param name   The name of the worker thread.
+     */
+    public FramePipeline(Runnable update, Runnable swap, String name) {
+        this.update = update;
+        this.swap = swap;
+        this.name = name;
+    }
+
+    /**
+     * Switches between serial and pipelined mode. Any update in flight is completed first.
+     *
+     * @param pipelined Whether to run the update stage on the worker thread.
+     */
+    public void setPipelined(boolean pipelined) {
+        if (this.pipelined != pipelined) {
+            join();
+            this.pipelined = pipelined;
+        }
+    }
+
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    /**
+     * @return Whether an update is currently running on the worker thread.
+     */
+    public boolean isInFlight() {
+        return inFlight != null;
+    }
+
+    /**
+     * In pipelined mode, starts a task of the next frame on the worker thread and returns immediately, so that it
+     * overlaps with the rendering of the current frame. The update stage launched next runs after it. In serial mode,
+     * this does nothing, as the task would not overlap with anything.
+     *
+     * @param task The task. Must only write state that the render stage does not read.
+     */
+    public void prepare(Runnable task) {
+        if (pipelined) {
+            join();
+            preparing = worker().submit(task);
+        }
+    }
+
+    /**
+     * Starts the update stage of the next frame. In serial mode, the update runs to completion and the buffers are
+     * swapped before this method returns. A task started with {@link #prepare(Runnable)} is not waited for, the
+     * update runs after it on the worker thread.
+     */
+    public void launch() {
+        if (inFlight != null || !pipelined) {
+            join();
+        }
+        if (pipelined) {
+            inFlight = worker().submit(update);
+        } else {
+            update.run();
+            swap.run();
+        }
+    }
+
+    /**
+     * Waits for the prepared task and the update in flight, if any, and swaps the buffers. Errors in the task or the
+     * update stage are re-thrown on the calling thread.
+     */
+    public void join() {
+        if (preparing != null) {
+            var future = preparing;
+            preparing = null;
+            await(future);
+        }
+        if (inFlight != null) {
+            var future = inFlight;
+            inFlight = null;
+            await(future);
+            swap.run();
+        }
+    }
+
+    private ExecutorService worker() {
+        if (worker == null) {
+            worker = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return worker;
+    }
+
+    private static void await(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            } else if (cause instanceof Error err) {
+                throw err;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        try {
+            join();
+        } catch (RuntimeException e) {
+            logger.error(e);
+        }
+        if (worker != null) {
+            worker.shutdownNow();
+            worker = null;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.util;
+
+import gaiasky.util.Logger.LoggerLevel;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded, lock-free, multiple-producer single-consumer ring buffer of log records, with its consumer thread.
+ * <p>
+ * Producers claim a slot with a compare-and-set on the tail cursor, fill it in and publish it by updating the sequence
+ * number of the slot, so they never wait for each other or for the consumer. The consumer thread takes the records in
+ * order and hands them to a {@link Sink}, which formats and dispatches them. If the buffer is full, errors wait for a
+ * free slot and other records are dropped. The number of dropped records is reported to the sink.
+ */
+final class LogQueue {
+
+    /** Receives the records in the consumer thread. **/
+    interface Sink {
+        void message(LoggerLevel level, Object[] messages);
+
+        void exception(Throwable t, String tag);
+
+        void dropped(long count);
+    }
+
+    private static final class Record {
+        LoggerLevel level;
+        Object[] messages;
+        Throwable throwable;
+        String tag;
+    }
+
+    private final Record[] slots;
+    /** Sequence number of each slot. The slot at the position p is free if it is p, and full if it is p + 1. **/
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    /** Position of the next record to consume. Only written by the consumer. **/
+    private volatile long head;
+    private volatile boolean waiting;
+    private volatile boolean running = true;
+    private final Sink sink;
+    private final Thread consumer;
+
+    /**
+     * Creates the queue and starts its consumer thread.
+     *
+     * @param capacity The capacity, rounded up to a power of two.
+     * @param sink     The sink.
+     */
+    LogQueue(int capacity, Sink sink) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new Record[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Record();
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.sink = sink;
+        this.consumer = new Thread(this::consume, "gaiasky-logger");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    boolean isConsumerThread() {
+        return Thread.currentThread() == consumer;
+    }
+
+    /**
+     * Adds a message record.
+     *
+     * @param level    The level.
+     * @param messages The messages, not formatted yet.
+     *
+     * @return Whether the record was taken, either added or dropped because the queue is full. False if the queue is
+     * stopped.
+     */
+    boolean offer(LoggerLevel level, Object[] messages) {
+        return offer(level, messages, null, null);
+    }
+
+    /**
+     * Adds an exception record.
+     *
+     * @param t   The exception.
+     * @param tag The tag, or null.
+     *
+     * @return Whether the record was taken.
+     */
+    boolean offer(Throwable t, String tag) {
+        return offer(LoggerLevel.ERROR, null, t, tag);
+    }
+
+    private boolean offer(LoggerLevel level, Object[] messages, Throwable t, String tag) {
+        if (!running) {
+            return false;
+        }
+        boolean block = level == LoggerLevel.ERROR && !isConsumerThread();
+        long pos;
+        int idx;
+        while (true) {
+            pos = tail.get();
+            idx = (int) pos & mask;
+            long diff = sequences.get(idx) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+            } else if (diff < 0) {
+                // Full.
+                if (!running) {
+                    return false;
+                } else if (!block) {
+                    dropped.incrementAndGet();
+                    return true;
+                }
+                wakeUp();
+                Thread.yield();
+            }
+        }
+        var r = slots[idx];
+        r.level = level;
+        r.messages = messages;
+        r.throwable = t;
+        r.tag = tag;
+        sequences.set(idx, pos + 1);
+        if (waiting) {
+            wakeUp();
+        }
+        return true;
+    }
+
+    private void wakeUp() {
+        LockSupport.unpark(consumer);
+    }
+
+    /**
+     * Takes and dispatches the available records.
+     *
+     * @return Whether there were any records.
+     */
+    private boolean drain() {
+        boolean any = false;
+        long pos = head;
+        while (true) {
+            int idx = (int) pos & mask;
+            if (sequences.get(idx) != pos + 1) {
+                break;
+            }
+            var r = slots[idx];
+            var level = r.level;
+            var messages = r.messages;
+            var throwable = r.throwable;
+            var tag = r.tag;
+            r.messages = null;
+            r.throwable = null;
+            r.tag = null;
+            sequences.set(idx, pos + mask + 1);
+            head = ++pos;
+            any = true;
+            try {
+                if (throwable != null) {
+                    sink.exception(throwable, tag);
+                } else {
+                    sink.message(level, messages);
+                }
+            } catch (Throwable e) {
+                // Never let a faulty observer kill the consumer.
+                e.printStackTrace(System.err);
+            }
+        }
+        long d = dropped.getAndSet(0);
+        if (d > 0) {
+            sink.dropped(d);
+        }
+        return any;
+    }
+
+    private void consume() {
+        while (running) {
+            if (!drain()) {
+                waiting = true;
+                // Check again after announcing that we are waiting, so that no wake-up is lost.
+                if (!drain()) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(50));
+                }
+                waiting = false;
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Waits until the consumer has dispatched all the records added before this call. Returns immediately if
+     * called from the consumer thread.
+     *
+     * @param timeoutMs Maximum time to wait, in milliseconds.
+     *
+     * @return Whether all the records were dispatched.
+     */
+    boolean flush(long timeoutMs) {
+        long target = tail.get();
+        if (isConsumerThread()) {
+            return head >= target;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (head < target) {
+            if (!consumer.isAlive() || System.nanoTime() > deadline) {
+                return false;
+            }
+            wakeUp();
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        return true;
+    }
+
+    /**
+     * Dispatches the pending records and stops the consumer thread. Records added afterward are rejected.
+     *
+     * @param timeoutMs Maximum time to wait, in milliseconds.
+     */
+    void stop(long timeoutMs) {
+        flush(timeoutMs);
+        running = false;
+        wakeUp();
+        if (!isConsumerThread()) {
+            try {
+                consumer.join(timeoutMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
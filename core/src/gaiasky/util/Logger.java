@@ -10,38 +10,111 @@ package gaiasky.util;
 import gaiasky.event.Event;
 import gaiasky.event.EventManager;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The Gaia Sky logger.
+ * <p>
+ * By default, messages are formatted and published on the thread that logs them. In asynchronous mode (see
+ * {@link #setAsynchronous(boolean)}), they are added unformatted to a lock-free ring buffer, and a dedicated thread
+ * formats and publishes them, so that logging threads never wait for the observers.
+ * <p>
+ * Repetitive warnings are rate-limited per logger and message template: at most {@link #MAX_REPEATS} of them are
+ * published every {@link #REPEAT_WINDOW_MS} milliseconds, and the number of suppressed ones is reported afterward.
  */
 public class Logger {
 
-    private static final Map<String, Log> logObjects;
+    /** Maximum number of equal warnings per window. **/
+    public static final int MAX_REPEATS = 10;
+    /** Length of the rate-limiting window, in milliseconds. **/
+    public static final long REPEAT_WINDOW_MS = 10_000;
+    /** Capacity of the ring buffer in asynchronous mode. **/
+    private static final int QUEUE_CAPACITY = 8192;
+    /** Time to wait for the pending messages to be published on flush and shutdown, in milliseconds. **/
+    private static final long FLUSH_TIMEOUT_MS = 2000;
+
+    private static final Map<String, Log> logObjects = new ConcurrentHashMap<>();
     public static LoggerLevel level = LoggerLevel.INFO;
 
-    static {
-        logObjects = new HashMap<>();
+    /** The ring buffer, if in asynchronous mode. **/
+    private static volatile LogQueue queue;
+    private static Thread shutdownHook;
+
+    private static final LogQueue.Sink sink = new LogQueue.Sink() {
+        @Override
+        public void message(LoggerLevel level, Object[] messages) {
+            publish(level, messages);
+        }
+
+        @Override
+        public void exception(Throwable t, String tag) {
+            publish(t, tag);
+        }
+
+        @Override
+        public void dropped(long count) {
+            publish(LoggerLevel.WARN, new Object[] { "Logger", count + " log messages dropped, the queue was full" });
+        }
+    };
+
+    /**
+     * Enables or disables the asynchronous mode. Disabling it publishes the pending messages first.
+     *
+     * @param asynchronous Whether to publish messages in a dedicated thread.
+     */
+    public static synchronized void setAsynchronous(boolean asynchronous) {
+        if (asynchronous && queue == null) {
+            queue = new LogQueue(QUEUE_CAPACITY, sink);
+            if (shutdownHook == null) {
+                shutdownHook = new Thread(Logger::flush, "gaiasky-logger-flush");
+                Runtime.getRuntime().addShutdownHook(shutdownHook);
+            }
+        } else if (!asynchronous && queue != null) {
+            var q = queue;
+            queue = null;
+            q.stop(FLUSH_TIMEOUT_MS);
+        }
+    }
+
+    public static boolean isAsynchronous() {
+        return queue != null;
+    }
+
+    /**
+     * Waits until all the messages logged so far are published. Does nothing in synchronous mode.
+     */
+    public static void flush() {
+        var q = queue;
+        if (q != null) {
+            q.flush(FLUSH_TIMEOUT_MS);
+        }
     }
 
     private static void error(Throwable t, String tag) {
-        if (inLevel(LoggerLevel.ERROR))
-            if (EventManager.instance.hasSubscriptors(Event.JAVA_EXCEPTION)) {
-                EventManager.publish(Event.JAVA_EXCEPTION, null, t, tag);
-            } else {
-                System.err.println(tag);
-                t.printStackTrace(System.err);
+        if (inLevel(LoggerLevel.ERROR)) {
+            var q = queue;
+            if (q == null || !q.offer(t, tag)) {
+                publish(t, tag);
             }
+        }
     }
 
-    private static void error(Throwable t) {
-        if (inLevel(LoggerLevel.ERROR))
-            if (EventManager.instance.hasSubscriptors(Event.JAVA_EXCEPTION)) {
-                EventManager.publish(Event.JAVA_EXCEPTION, null, t);
+    private static void publish(Throwable t, String tag) {
+        if (EventManager.instance.hasSubscriptors(Event.JAVA_EXCEPTION)) {
+            if (tag != null) {
+                EventManager.publish(Event.JAVA_EXCEPTION, null, t, tag);
             } else {
-                t.printStackTrace(System.err);
+                EventManager.publish(Event.JAVA_EXCEPTION, null, t);
+            }
+        } else {
+            if (tag != null) {
+                System.err.println(tag);
             }
+            t.printStackTrace(System.err);
+        }
     }
 
     private static void error(Object... messages) {
@@ -66,6 +139,14 @@ public class Logger {
     }
 
     public static void log(LoggerLevel level, Object... messages) {
+        var q = queue;
+        if (q == null || !q.offer(level, messages)) {
+            publish(level, messages);
+        }
+    }
+
+    /** Formats the messages and publishes them. **/
+    private static void publish(LoggerLevel level, Object[] messages) {
         int idx = -1;
         for (int i = 0; i < messages.length; i++) {
             Object msg = messages[i];
@@ -149,13 +230,7 @@ public class Logger {
      * @return The logger
      */
     public static Log getLogger(String tag) {
-        if (logObjects.containsKey(tag)) {
-            return logObjects.get(tag);
-        } else {
-            Log log = new Log(tag);
-            logObjects.put(tag, log);
-            return log;
-        }
+        return logObjects.computeIfAbsent(tag, Log::new);
     }
 
     public enum LoggerLevel {
@@ -176,8 +251,19 @@ public class Logger {
 
     }
 
+    /** Rate-limiting state of a message template. **/
+    private static final class Repeats {
+        final AtomicLong windowStart = new AtomicLong(System.currentTimeMillis());
+        final AtomicInteger count = new AtomicInteger();
+        final AtomicInteger suppressed = new AtomicInteger();
+    }
+
     public static class Log {
+        /** Maximum number of templates tracked for rate limiting. **/
+        private static final int MAX_TEMPLATES = 256;
+
         private final String tag;
+        private final Map<String, Repeats> repeats = new ConcurrentHashMap<>();
 
         private Log(Class<?> clazz) {
             super();
@@ -202,7 +288,43 @@ public class Logger {
         }
 
         public void warn(Object... messages) {
-            Logger.warn(prependTag(messages));
+            if (inLevel(LoggerLevel.WARN) && allow(messages)) {
+                Logger.warn(prependTag(messages));
+            }
+        }
+
+        /**
+         * Checks the rate limit of the template of the given warning, which is its first message.
+         *
+         * @param messages The messages.
+         *
+         * @return Whether the warning can be published.
+         */
+        private boolean allow(Object[] messages) {
+            if (messages.length == 0 || !(messages[0] instanceof String template)) {
+                return true;
+            }
+            var r = repeats.get(template);
+            if (r == null) {
+                if (repeats.size() >= MAX_TEMPLATES) {
+                    repeats.clear();
+                }
+                r = repeats.computeIfAbsent(template, k -> new Repeats());
+            }
+            long now = System.currentTimeMillis();
+            long start = r.windowStart.get();
+            if (now - start >= REPEAT_WINDOW_MS && r.windowStart.compareAndSet(start, now)) {
+                r.count.set(0);
+                int suppressed = r.suppressed.getAndSet(0);
+                if (suppressed > 0) {
+                    Logger.warn(prependTag(new Object[] { suppressed + " repetitions of this warning were suppressed: " + template }));
+                }
+            }
+            if (r.count.incrementAndGet() <= MAX_REPEATS) {
+                return true;
+            }
+            r.suppressed.incrementAndGet();
+            return false;
         }
 
         public void debug(Object... messages) {
@@ -17,14 +17,18 @@ import gaiasky.util.Logger.Log;
 import gaiasky.util.math.MathUtilsDouble;
 import gaiasky.util.math.Vector3D;
 import gaiasky.util.math.Vector3Q;
+import gaiasky.util.sync.CameraSyncSender;
 import gaiasky.util.time.ITimeFrameProvider;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandler;
 import java.net.http.HttpResponse.BodySubscriber;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Function;
 
@@ -59,6 +63,9 @@ public class MasterManager implements IObserver {
     // Handlers
     private ResponseHandler[] responseHandlers;
     private ExceptHandler[] exceptHandlers;
+    /** Binary camera sync channel, if enabled. **/
+    private CameraSyncSender syncSender;
+    private final Vector3D auxPos = new Vector3D();
 
     private MasterManager() {
         super();
@@ -88,6 +95,17 @@ public class MasterManager implements IObserver {
         // Initialize http client
         http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
 
+        // Initialize binary camera sync channel
+        var master = GaiaSky.settings().program.net.master;
+        if (master.syncPort >= 0 && slaves != null && !slaves.isEmpty()) {
+            try {
+                syncSender = new CameraSyncSender(syncTargets(slaves, master.syncGroup, master.syncPort));
+                logger.info("Camera sync channel enabled on port " + master.syncPort);
+            } catch (IOException e) {
+                logger.error(e, "Could not open camera sync channel, falling back to REST API");
+            }
+        }
+
         // Subscribe to events that need to be broadcast
         EventManager.instance.subscribe(this, Event.TOGGLE_VISIBILITY_CMD, Event.STAR_BRIGHTNESS_CMD, Event.STAR_BASE_LEVEL_CMD, Event.STAR_POINT_SIZE_CMD, Event.DISPOSE);
     }
@@ -126,6 +144,33 @@ public class MasterManager implements IObserver {
         return slaveStates;
     }
 
+    /**
+     * Computes the target addresses of the camera sync channel. If a multicast group is given, it is the only target.
+     * Otherwise, the hosts of the slave URLs are used.
+     *
+     * @param slaves The slave URLs.
+     * @param group  The multicast group, or null.
+     * @param port   The sync port.
+     *
+     * @return The list of target addresses.
+     */
+    public static List<InetSocketAddress> syncTargets(List<String> slaves, String group, int port) {
+        List<InetSocketAddress> targets = new ArrayList<>();
+        if (group != null && !group.isBlank()) {
+            targets.add(new InetSocketAddress(group, port));
+        } else {
+            for (String slave : slaves) {
+                var host = URI.create(slave).getHost();
+                if (host != null) {
+                    targets.add(new InetSocketAddress(host, port));
+                } else {
+                    logger.warn("Could not get host of slave URL: " + slave);
+                }
+            }
+        }
+        return targets;
+    }
+
     /**
      * Broadcasts the given camera state and time to all the slaves.
      *
@@ -135,6 +180,11 @@ public class MasterManager implements IObserver {
      * @param time Current time.
      */
     public void boardcastCameraAndTime(Vector3Q pos, Vector3D dir, Vector3D up, ITimeFrameProvider time) {
+        if (syncSender != null) {
+            // Binary sync channel, one fixed-size datagram per frame.
+            syncSender.send(pos.put(auxPos), dir, up, time.getTime().toEpochMilli());
+            return;
+        }
         String spos = TextUtils.surround(pos.toString(), "[", "]");
         String sdir = TextUtils.surround(dir.toString(), "[", "]");
         String sup = TextUtils.surround(up.toString(), "[", "]");
@@ -303,6 +353,9 @@ public class MasterManager implements IObserver {
             }
             break;
         case DISPOSE:
+            if (syncSender != null) {
+                syncSender.dispose();
+            }
             i = 0;
             for (String slave : slaves) {
                 if (slaveStates[i] == 0) {
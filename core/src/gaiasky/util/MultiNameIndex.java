@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.util;
+
+import java.util.Arrays;
+
+/**
+ * Single hash table over the names of several {@link NameIndex} instances, each with an owner. A name resolves to the
+ * owner of the first index, in the order in which they were added, that contains it.
+ * <p>
+ * The table holds (index, entry) pairs packed in a long, and compares names on the encoded bytes of their
+ * {@link NameIndex}, so that no strings are created either to add an index or to look up a name. Adding and removing
+ * an index costs time proportional to its number of names, regardless of the number of indices in the table. Names
+ * present in several indices are all kept in the table, so that removing an index uncovers the next owner of its
+ * names.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @param <T> The type of the owners.
+ */
+public class MultiNameIndex<T> {
+    private static final float LOAD_FACTOR = 0.6f;
+
+    /**
+     * Receives the names of an index that are already in the table.
+     *
+     * @param <T> The type of the owners.
+     */
+    public interface ConflictHandler<T> {
+        /**
+         * @param owner The owner the name resolves to.
+         * @param entry The entry of the name in the index being added.
+         */
+        void conflict(T owner, int entry);
+    }
+
+    /** Owners and indices, by index number. Removed indices leave a null. **/
+    private Object[] owners;
+    private NameIndex[] indices;
+    private int numIndices;
+    /** Open addressing table with linear probing. Slots hold ((index + 1) << 32) | entry, or 0 if empty. **/
+    private long[] table;
+    private int mask;
+    private int size;
+
+    public MultiNameIndex() {
+        owners = new Object[8];
+        indices = new NameIndex[8];
+        table = new long[16];
+        mask = table.length - 1;
+    }
+
+    /**
+     * Adds all the names of the given index.
+     *
+     * @param owner   The owner of the index.
+     * @param names   The index.
+     * @param handler Gets the names that are already in the table, may be null.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void add(T owner, NameIndex names, ConflictHandler<T> handler) {
+        if (numIndices == indices.length) {
+            compact();
+        }
+        int index = numIndices++;
+        owners[index] = owner;
+        indices[index] = names;
+        ensureCapacity(size + names.size());
+        for (int e = 0; e < names.size(); e++) {
+            int slot = names.hash(e) & mask;
+            int first = Integer.MAX_VALUE;
+            long v;
+            while ((v = table[slot]) != 0) {
+                int i = index(v);
+                if (i < first && indices[i].keyEquals(entry(v), names, e)) {
+                    first = i;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = pack(index, e);
+            size++;
+            if (first != Integer.MAX_VALUE && handler != null) {
+                handler.conflict((T) owners[first], e);
+            }
+        }
+    }
+
+    /**
+     * Removes all the names of the indices of the given owner.
+     *
+     * @param owner The owner.
+     */
+    public synchronized void remove(T owner) {
+        for (int i = 0; i < numIndices; i++) {
+            if (owners[i] == owner) {
+                var names = indices[i];
+                for (int e = 0; e < names.size(); e++) {
+                    long packed = pack(i, e);
+                    int slot = names.hash(e) & mask;
+                    while (table[slot] != packed) {
+                        slot = (slot + 1) & mask;
+                    }
+                    delete(slot);
+                }
+                owners[i] = null;
+                indices[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the owner of the first index that contains the given name.
+     *
+     * @param key The encoded name.
+     *
+     * @return The owner, or null if no index contains the name.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized T get(NameIndex.Key key) {
+        int slot = key.hash & mask;
+        int first = Integer.MAX_VALUE;
+        long v;
+        while ((v = table[slot]) != 0) {
+            int i = index(v);
+            if (i < first && indices[i].keyEquals(entry(v), key)) {
+                first = i;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return first == Integer.MAX_VALUE ? null : (T) owners[first];
+    }
+
+    public T get(String name) {
+        return get(NameIndex.Key.of(name));
+    }
+
+    /** @return The number of names in the table, counting the ones present in several indices. **/
+    public synchronized int size() {
+        return size;
+    }
+
+    /** Removes the empty index numbers, keeping the order of the indices. **/
+    private void compact() {
+        int[] renumber = new int[numIndices];
+        int n = 0;
+        for (int i = 0; i < numIndices; i++) {
+            renumber[i] = n;
+            if (indices[i] != null) {
+                owners[n] = owners[i];
+                indices[n] = indices[i];
+                n++;
+            }
+        }
+        Arrays.fill(owners, n, numIndices, null);
+        Arrays.fill(indices, n, numIndices, null);
+        if (n > indices.length / 2) {
+            owners = Arrays.copyOf(owners, indices.length * 2);
+            indices = Arrays.copyOf(indices, indices.length * 2);
+        }
+        numIndices = n;
+        for (int slot = 0; slot < table.length; slot++) {
+            long v = table[slot];
+            if (v != 0) {
+                table[slot] = pack(renumber[index(v)], entry(v));
+            }
+        }
+    }
+
+    private void ensureCapacity(int entries) {
+        if (entries > table.length * LOAD_FACTOR) {
+            int capacity = Integer.highestOneBit((int) (entries / LOAD_FACTOR)) << 1;
+            var old = table;
+            table = new long[capacity];
+            mask = capacity - 1;
+            for (long v : old) {
+                if (v != 0) {
+                    int slot = hash(v) & mask;
+                    while (table[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    table[slot] = v;
+                }
+            }
+        }
+    }
+
+    /** Empties the given slot, shifting back the following entries of its cluster. **/
+    private void delete(int slot) {
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            long v = table[next];
+            if (v == 0) {
+                break;
+            }
+            int home = hash(v) & mask;
+            // Move it if its home slot is not cyclically in (slot, next].
+            if (slot <= next ? (home <= slot || home > next) : (home <= slot && home > next)) {
+                table[slot] = v;
+                slot = next;
+            }
+        }
+        table[slot] = 0;
+        size--;
+    }
+
+    private int hash(long v) {
+        return indices[index(v)].hash(entry(v));
+    }
+
+    private static long pack(int index, int entry) {
+        return ((long) (index + 1) << 32) | entry;
+    }
+
+    private static int index(long v) {
+        return (int) (v >>> 32) - 1;
+    }
+
+    private static int entry(long v) {
+        return (int) v;
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compact map from names to unboxed int values, meant for the names of the objects in large datasets.
+ * <p>
+ * Keys are not kept as {@link String} objects. They are stored back-to-back as UTF-8 bytes in a single arena, and the
+ * hash table only holds entry numbers, so the memory per name is its encoded length plus 16 bytes or so, instead of
+ * the ~60 bytes of overhead of a {@link String} with its backing array. Keys are materialized only when asked for
+ * with {@link #key(int)}. Lookups of the same name in many indices can encode it once with {@link Key}.
+ * <p>
+ * Entries can't be removed. The index can be persisted with {@link #write(DataOutputStream)} and
+ * {@link #read(DataInputStream)}.
+ */
+public class NameIndex {
+    private static final int MAGIC = 0x4e414d45;
+    private static final int VERSION = 1;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    /** UTF-8 bytes of all keys. **/
+    private byte[] arena;
+    private int arenaSize;
+    /** Start of each entry in the arena. The entry i ends at starts[i + 1]. **/
+    private int[] starts;
+    private int[] hashes;
+    private int[] values;
+    private int size;
+    /** Open addressing table with linear probing. Slots hold entry + 1, or 0 if empty. **/
+    private int[] table;
+    private int mask;
+
+    /**
+     * Encoded name, to look it up in several indices.
+     */
+    public static final class Key {
+        final byte[] bytes;
+        final int hash;
+
+        private Key(byte[] bytes) {
+            this.bytes = bytes;
+            this.hash = hash(bytes, 0, bytes.length);
+        }
+
+        public static Key of(String name) {
+            return new Key(name.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Creates an empty index sized for the given number of names.
+     *
+     * @param expectedSize The expected number of names.
+     */
+    public NameIndex(int expectedSize) {
+        expectedSize = Math.max(expectedSize, 8);
+        arena = new byte[expectedSize * 12];
+        starts = new int[expectedSize + 1];
+        hashes = new int[expectedSize];
+        values = new int[expectedSize];
+        allocateTable(expectedSize);
+    }
+
+    private void allocateTable(int entries) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (entries / LOAD_FACTOR)) - 1) << 1;
+        table = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = hashes[i] & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+    }
+
+    /**
+     * Associates the given value with the given name. If the name already exists, its value is overwritten.
+     *
+     * @param name  The name.
+     * @param value The value.
+     */
+    public void put(String name, int value) {
+        var bytes = name.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(bytes, 0, bytes.length);
+        int slot = hash & mask;
+        int e;
+        while ((e = table[slot]) != 0) {
+            if (equals(e - 1, bytes, 0, bytes.length, hash)) {
+                values[e - 1] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == values.length) {
+            int newCapacity = values.length * 2;
+            starts = Arrays.copyOf(starts, newCapacity + 1);
+            hashes = Arrays.copyOf(hashes, newCapacity);
+            values = Arrays.copyOf(values, newCapacity);
+        }
+        if (arenaSize + bytes.length > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + bytes.length));
+        }
+        System.arraycopy(bytes, 0, arena, arenaSize, bytes.length);
+        starts[size] = arenaSize;
+        arenaSize += bytes.length;
+        starts[size + 1] = arenaSize;
+        hashes[size] = hash;
+        values[size] = value;
+        table[slot] = size + 1;
+        size++;
+        if (size > table.length * LOAD_FACTOR) {
+            allocateTable(size * 2);
+        }
+    }
+
+    /**
+     * Returns the value of the given name.
+     *
+     * @param name The name.
+     *
+     * @return The value, or -1 if the name is not in the index.
+     */
+    public int get(String name) {
+        return get(name, -1);
+    }
+
+    public int get(String name, int defaultValue) {
+        int e = find(name);
+        return e >= 0 ? values[e] : defaultValue;
+    }
+
+    public int get(Key key, int defaultValue) {
+        int e = find(key);
+        return e >= 0 ? values[e] : defaultValue;
+    }
+
+    public boolean containsKey(String name) {
+        return find(name) >= 0;
+    }
+
+    public boolean containsKey(Key key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Checks whether the name of the given entry of another index is in this index, without materializing it.
+     *
+     * @param other The other index.
+     * @param entry The entry of the other index.
+     *
+     * @return Whether this index contains the name.
+     */
+    public boolean containsKey(NameIndex other, int entry) {
+        int from = other.starts[entry];
+        return find(other.arena, from, other.starts[entry + 1] - from, other.hashes[entry]) >= 0;
+    }
+
+    /**
+     * @param name The name.
+     *
+     * @return The entry of the given name, or -1 if it is not in the index.
+     */
+    public int find(String name) {
+        var bytes = name.getBytes(StandardCharsets.UTF_8);
+        return find(bytes, 0, bytes.length, hash(bytes, 0, bytes.length));
+    }
+
+    public int find(Key key) {
+        return find(key.bytes, 0, key.bytes.length, key.hash);
+    }
+
+    private int find(byte[] bytes, int from, int length, int hash) {
+        int slot = hash & mask;
+        int e;
+        while ((e = table[slot]) != 0) {
+            if (equals(e - 1, bytes, from, length, hash)) {
+                return e - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /** Hash of the name of the given entry. **/
+    int hash(int entry) {
+        return hashes[entry];
+    }
+
+    /** Checks whether the given entry has the same name as the given entry of another index. **/
+    boolean keyEquals(int entry, NameIndex other, int otherEntry) {
+        int from = other.starts[otherEntry];
+        return equals(entry, other.arena, from, other.starts[otherEntry + 1] - from, other.hashes[otherEntry]);
+    }
+
+    /** Checks whether the given entry has the name of the given key. **/
+    boolean keyEquals(int entry, Key key) {
+        return equals(entry, key.bytes, 0, key.bytes.length, key.hash);
+    }
+
+    private boolean equals(int entry, byte[] bytes, int from, int length, int hash) {
+        int start = starts[entry];
+        return hashes[entry] == hash
+                && starts[entry + 1] - start == length
+                && Arrays.equals(arena, start, start + length, bytes, from, from + length);
+    }
+
+    /**
+     * Checks whether the name of the given entry contains the given UTF-8 encoded string.
+     *
+     * @param entry  The entry.
+     * @param needle The UTF-8 bytes to look for.
+     *
+     * @return Whether the name contains the needle.
+     */
+    public boolean keyContains(int entry, byte[] needle) {
+        int start = starts[entry], end = starts[entry + 1];
+        int last = end - needle.length;
+        outer:
+        for (int i = start; i <= last; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (arena[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Materializes the name of the given entry.
+     *
+     * @param entry The entry, in [0, {@link #size()}).
+     *
+     * @return The name.
+     */
+    public String key(int entry) {
+        int start = starts[entry];
+        return new String(arena, start, starts[entry + 1] - start, StandardCharsets.UTF_8);
+    }
+
+    public int value(int entry) {
+        return values[entry];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Releases the unused capacity of the backing arrays. To call after the index is fully built.
+     */
+    public void trim() {
+        arena = Arrays.copyOf(arena, arenaSize);
+        starts = Arrays.copyOf(starts, size + 1);
+        hashes = Arrays.copyOf(hashes, size);
+        values = Arrays.copyOf(values, size);
+        allocateTable(size);
+    }
+
+    /**
+     * @return Approximate size of this index in the heap, in bytes.
+     */
+    public long sizeBytes() {
+        return arena.length + 4L * (starts.length + hashes.length + values.length + table.length);
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(size);
+        out.writeInt(arenaSize);
+        out.write(arena, 0, arenaSize);
+        for (int i = 0; i < size; i++) {
+            out.writeInt(starts[i + 1] - starts[i]);
+            out.writeInt(values[i]);
+        }
+    }
+
+    public static NameIndex read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a name index");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported name index version: " + version);
+        }
+        int size = in.readInt();
+        int arenaSize = in.readInt();
+        var index = new NameIndex(0);
+        index.arena = new byte[arenaSize];
+        in.readFully(index.arena);
+        index.arenaSize = arenaSize;
+        index.starts = new int[size + 1];
+        index.hashes = new int[size];
+        index.values = new int[size];
+        for (int i = 0; i < size; i++) {
+            int start = index.starts[i];
+            int length = in.readInt();
+            index.starts[i + 1] = start + length;
+            index.values[i] = in.readInt();
+            index.hashes[i] = hash(index.arena, start, length);
+        }
+        index.size = size;
+        index.allocateTable(size);
+        return index;
+    }
+
+    /** FNV-1a with a final avalanche, so that the low bits used by the table are well mixed. **/
+    private static int hash(byte[] bytes, int from, int length) {
+        int h = 0x811c9dc5;
+        for (int i = from; i < from + length; i++) {
+            h = (h ^ bytes[i]) * 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+}
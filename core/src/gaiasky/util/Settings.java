@@ -1051,6 +1051,72 @@ public class Settings extends SettingsObject {
         public boolean multithreading;
         /** Number of threads in the background thread pool. If negative, the number of CPU cores is used. **/
         public int numberThreads;
+        /**
+         * Run the scene update of the next frame in a separate thread while the GUI of the current frame is rendered.
+         * Experimental. Frame output, OpenXR and the camcorder always run serially.
+         **/
+        public boolean pipelinedUpdate = false;
+        /**
+         * Run independent update systems of the scene concurrently, according to the components they declare to read
+         * and write. Experimental. Only used if multithreading is on.
+         **/
+        public boolean parallelUpdateSystems = false;
+        /**
+         * Extract large families of particles, models and locations in parallel into per-thread render lists, which
+         * are merged in order afterward. Experimental. Only used if multithreading is on.
+         **/
+        public boolean parallelExtraction = false;
+        /**
+         * Keep decoded textures, with all their mipmap levels, in the data cache directory, so that they are not
+         * decoded again in later sessions. Experimental.
+         **/
+        public boolean textureCache = false;
+        /** Maximum size of the texture cache, in MB. The least recently used textures are evicted beyond it. **/
+        public int textureCacheSize = 2048;
+        /**
+         * Publish log messages from a dedicated thread, so that the logging threads do not format them nor wait for
+         * the observers. Experimental.
+         **/
+        public boolean asyncLogging = false;
+        /**
+         * Sample all the orbits adaptively, subdividing them until an error tolerance is met, instead of uniformly in
+         * time or true anomaly. Experimental.
+         **/
+        public boolean adaptiveOrbitSampling = false;
+        /**
+         * Keep the integrated segments of the Gaia attitude given by the modified scanning law in the data cache
+         * directory, so that they are not integrated again in later sessions. Experimental.
+         **/
+        public boolean attitudeCache = false;
+        /**
+         * Keep the vertices of orbits without trail and of polylines in video memory, and upload them again only
+         * when their data or color change. Experimental.
+         **/
+        public boolean retainedLines = false;
+        /**
+         * Hide the labels that overlap others with a higher priority in screen space, and draw at most
+         * {@link #labelBudget} labels per frame. Experimental.
+         **/
+        public boolean labelDeclutter = false;
+        /**
+         * Maximum number of labels per frame, if {@link #labelDeclutter} is on.
+         **/
+        public int labelBudget = 500;
+        /**
+         * Predict the motion of the camera, or read ahead in the camera path being played, and queue the octants it
+         * is going to observe before they are observed. Experimental.
+         **/
+        public boolean octantPrefetch = false;
+        /**
+         * Cull the octree nodes by testing their bounding boxes against the view frustum, instead of their bounding
+         * spheres against the field of view. Experimental.
+         **/
+        public boolean octreeFrustumCulling = false;
+        /**
+         * Keep the points of the orbit files in a binary cache in the data cache directory, and use it instead of
+         * parsing the files again while they are unchanged. Experimental.
+         **/
+        public boolean orbitCache = false;
 
         /**
          * Returns the actual number of threads. It accounts for the number of
@@ -3241,6 +3307,8 @@ public class Settings extends SettingsObject {
             public static class MasterSettings extends SettingsObject {
                 public boolean active;
                 public List<String> slaves;
+                public int syncPort = -1;
+                public String syncGroup;
 
                 @Override
                 public MasterSettings clone() {
@@ -3275,6 +3343,9 @@ public class Settings extends SettingsObject {
                 public float yaw;
                 public float pitch;
                 public float roll;
+                public int syncPort = -1;
+                public String syncGroup;
+                public long syncDelay = 0;
 
                 @Override
                 public SlaveSettings clone() {
@@ -13,11 +13,16 @@ import com.badlogic.gdx.graphics.Cursor.SystemCursor;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.Texture;
 import gaiasky.GaiaSky;
+import gaiasky.event.Event;
+import gaiasky.event.EventManager;
 import gaiasky.util.Logger.Log;
 import gaiasky.render.gdx.loader.OwnTextureLoader.OwnTextureParameter;
 import gaiasky.render.gdx.loader.PFMData;
 import gaiasky.render.gdx.loader.PFMDataLoader.PFMDataParameter;
 import gaiasky.util.i18n.I18n;
+import gaiasky.util.sync.CameraSyncPacket;
+import gaiasky.util.sync.CameraSyncReceiver;
+import gaiasky.util.sync.CameraSyncSender;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -31,6 +36,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Instant;
 
 /**
  * Manager for slave Gaia Sky instances that connect to master instances.
@@ -45,6 +51,10 @@ public class SlaveManager {
     public float yaw, pitch, roll, upAngle, downAngle, rightAngle, leftAngle;
     public float cameraFov;
     private boolean initialized;
+    /** Binary camera sync channel, if enabled. **/
+    private CameraSyncReceiver syncReceiver;
+    private final CameraSyncPacket syncPacket = new CameraSyncPacket();
+    private long lastSyncTimeMs = Long.MIN_VALUE;
 
     public SlaveManager() {
         super();
@@ -97,6 +107,49 @@ public class SlaveManager {
     public static void initialize(Settings settings) {
         if (instance == null && settings.program.net.slave.active) {
             instance = new SlaveManager();
+            instance.initializeSync(settings.program.net.slave);
+        }
+    }
+
+    private void initializeSync(Settings.ProgramSettings.NetSettings.SlaveSettings slave) {
+        if (slave.syncPort >= 0) {
+            try {
+                syncReceiver = new CameraSyncReceiver(slave.syncPort, slave.syncGroup, slave.syncDelay);
+                syncReceiver.start();
+            } catch (IOException e) {
+                logger.error(e, "Could not open camera sync channel on port " + slave.syncPort);
+            }
+        }
+    }
+
+    /**
+     * Applies the camera state and time received through the binary camera sync channel, if any.
+     * Must be called from the main thread once per frame, before the camera is updated.
+     */
+    public static void applyCameraSync() {
+        if (instance != null && instance.syncReceiver != null) {
+            var p = instance.syncPacket;
+            if (instance.syncReceiver.sample(CameraSyncSender.nowUs(), p)) {
+                EventManager.publish(Event.CAMERA_PROJECTION_CMD, instance, p.pos, p.dir, p.up);
+                if (p.simTimeMs != instance.lastSyncTimeMs) {
+                    EventManager.publish(Event.TIME_CHANGE_CMD, instance, Instant.ofEpochMilli(p.simTimeMs));
+                    instance.lastSyncTimeMs = p.simTimeMs;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The statistics of the camera sync channel, or null if it is not enabled.
+     */
+    public static CameraSyncReceiver.Statistics getCameraSyncStatistics() {
+        return instance != null && instance.syncReceiver != null ? instance.syncReceiver.getStatistics() : null;
+    }
+
+    public static void dispose() {
+        if (instance != null && instance.syncReceiver != null) {
+            instance.syncReceiver.dispose();
+            instance.syncReceiver = null;
         }
     }
 
@@ -0,0 +1,654 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.util.bench;
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Graphics;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.resolvers.InternalFileHandleResolver;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Files;
+import com.badlogic.gdx.graphics.GL32;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import gaiasky.GaiaSky;
+import gaiasky.data.AssetBean;
+import gaiasky.data.OctreeLoader;
+import gaiasky.data.group.BinaryDataProvider;
+import gaiasky.data.octreegen.OctreeGenerator;
+import gaiasky.desktop.GaiaSkyDesktop;
+import gaiasky.event.EventManager;
+import gaiasky.scene.Mapper;
+import gaiasky.scene.Scene;
+import gaiasky.scene.api.IParticleRecord;
+import gaiasky.scene.camera.CameraManager;
+import gaiasky.scene.record.ParticleStar;
+import gaiasky.scene.system.render.SceneRenderer;
+import gaiasky.util.Logger;
+import gaiasky.util.Logger.Log;
+import gaiasky.util.SettingsManager;
+import gaiasky.util.camera.rec.CameraPath;
+import gaiasky.util.i18n.I18n;
+import gaiasky.util.profile.FrameProfiler;
+import gaiasky.util.time.GlobalClock;
+import gaiasky.util.tree.LoadStatus;
+import gaiasky.util.tree.OctreeNode;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+
+/**
+ * Headless, GPU-free benchmark of the CPU side of a frame. It loads a scene with synthetic bodies and an octree
+ * dataset, either a real one or a synthetic one generated with {@link OctreeGenerator}, and replays a camera path over
+ * it with a fixed time step. The scene is run by its own update and extraction systems, the octants are selected by
+ * {@link OctreeNode} and loaded by the {@link OctreeLoader}, and the render lists are those of the
+ * {@link SceneRenderer}, so that only the OpenGL work is left out. Every frame,
+ * <ol>
+ *     <li>the scene is updated, and the render lists are extracted,</li>
+ *     <li>the octree loader serves its queue synchronously, and the runnables posted to the main loop are run,</li>
+ *     <li>the render lists are swapped and consumed.</li>
+ * </ol>
+ * The octants are loaded at fixed points of the frame, and the camera manager, which tracks the pointer and clears
+ * the load queue based on the wall clock, is not updated, so that runs are deterministic.
+ * <p>
+ * The stages are measured with the {@link FrameProfiler}, and the wall time, the CPU time of the main thread and the
+ * bytes allocated by all threads are sampled every frame. The results are written to <code>frames.csv</code>,
+ * <code>stages.csv</code> and <code>summary.json</code> in the output directory.
+ * <p>
+ * Run it with <code>gradlew core:benchmark -Pargs="..."</code>, or with <code>gaiasky --benchmark ...</code>.
+ */
+public final class Benchmark {
+    private static final Log logger = Logger.getLogger(Benchmark.class);
+
+    private static final int STAGE_FRAME = FrameProfiler.stage("frame");
+    private static final int STAGE_UPDATE = FrameProfiler.stage("frame/update");
+    private static final int STAGE_OCTREE = FrameProfiler.stage("frame/octree");
+    private static final int STAGE_RENDER = FrameProfiler.stage("frame/render");
+
+    /** Number of frames of the synthetic camera path. **/
+    private static final int SYNTHETIC_PATH_FRAMES = 600;
+    /** Scale of the core of the synthetic scene and catalog, in internal units. **/
+    private static final double CORE_SCALE = 100;
+    /** Scale of the halo of the synthetic scene and catalog, in internal units. **/
+    private static final double HALO_SCALE = 2000;
+    /** Size of the viewport, in pixels. **/
+    private static final int WIDTH = 1920, HEIGHT = 1080;
+
+    /**
+     * Benchmark options, also parsed from the command line.
+     */
+    public static class Options {
+        @Parameter(names = {"-h", "--help"}, description = "Show the benchmark options.", help = true, order = 0)
+        public boolean help;
+
+        @Parameter(names = {"-p", "--path"}, description = "Camera path file (.gsc) to replay. If not given, a synthetic path flies into the catalog.", order = 1)
+        public String path;
+
+        @Parameter(names = {"-c", "--catalog"}, description = "Directory of an octree dataset, with 'metadata.bin' and 'particles/'. If not given, a synthetic one is generated.", order = 2)
+        public String catalog;
+
+        @Parameter(names = {"-o", "--out"}, description = "Output directory of the reports.", order = 3)
+        public String out = "benchmark";
+
+        @Parameter(names = {"-f", "--frames"}, description = "Number of measured frames. If 0, the length of the camera path.", order = 4)
+        public int frames = 0;
+
+        @Parameter(names = {"-w", "--warmup"}, description = "Number of warm-up frames, which are not measured.", order = 5)
+        public int warmup = 60;
+
+        @Parameter(names = {"-b", "--bodies"}, description = "Number of synthetic bodies in the scene.", order = 6)
+        public int bodies = 100_000;
+
+        @Parameter(names = {"-s", "--stars"}, description = "Number of stars of the synthetic octree dataset.", order = 7)
+        public int stars = 500_000;
+
+        @Parameter(names = {"--fov"}, description = "Field of view, in degrees.", order = 8)
+        public double fov = 45;
+
+        @Parameter(names = {"--threshold"}, description = "View angle, in radians, above which octants are observed. See 'scene.octree.threshold'.", order = 9)
+        public double threshold = 1.5;
+
+        @Parameter(names = {"--max-stars"}, description = "Maximum number of loaded stars. The least recently observed octants are unloaded beyond it.", order = 10)
+        public int maxStars = 7_000_000;
+
+        @Parameter(names = {"--parallelism"}, description = "Number of threads of the update and extraction systems. If 1, they run in the main thread.", order = 11)
+        public int parallelism = 1;
+
+        @Parameter(names = {"--seed"}, description = "Seed of the synthetic scene, path and catalog.", order = 12)
+        public long seed = 1;
+
+        @Parameter(names = {"--assets"}, description = "Location of the assets, with the default configuration and the archetypes.", order = 13)
+        public String assets = "assets";
+    }
+
+    /**
+     * Results of a benchmark run. Times in milliseconds.
+     *
+     * @param frames                 The number of measured frames.
+     * @param meanMs                 The mean wall time per frame.
+     * @param p50Ms                  The median wall time.
+     * @param p95Ms                  The 95th percentile of the wall time.
+     * @param p99Ms                  The 99th percentile of the wall time.
+     * @param maxMs                  The maximum wall time.
+     * @param cpuMs                  The mean CPU time of the main thread per frame.
+     * @param allocatedBytesPerFrame The mean number of bytes allocated by all threads per frame.
+     * @param allocationRate         The number of bytes allocated per second of wall time.
+     * @param octantsLoaded          The number of octants loaded.
+     * @param starsLoaded            The number of stars loaded.
+     * @param bytesLoaded            The number of bytes of the loaded octant files.
+     * @param loadSeconds            The time spent loading octants, in seconds.
+     * @param rendered               The mean number of renderables per frame.
+     */
+    public record Report(int frames, double meanMs, double p50Ms, double p95Ms, double p99Ms, double maxMs, double cpuMs,
+                         double allocatedBytesPerFrame, double allocationRate, int octantsLoaded, long starsLoaded,
+                         long bytesLoaded, double loadSeconds, double rendered) {
+        public double loaderBytesPerSecond() {
+            return loadSeconds > 0 ? bytesLoaded / loadSeconds : 0;
+        }
+
+        public double loaderStarsPerSecond() {
+            return loadSeconds > 0 ? starsLoaded / loadSeconds : 0;
+        }
+    }
+
+    private final Options options;
+    private final BinaryDataProvider writer = new BinaryDataProvider();
+    /** Runnables posted to the main loop, run at the end of the octree stage. **/
+    private final Queue<Runnable> posted = new ConcurrentLinkedQueue<>();
+
+    private Application app;
+    private AssetManager assetManager;
+    private Graphics graphics;
+    private GL32 gl;
+    private com.badlogic.gdx.Files files;
+    private float dt;
+
+    private CameraPath path;
+    private Path syntheticDir;
+    private GaiaSky gaiaSky;
+    private Scene scene;
+    private SceneRenderer sceneRenderer;
+    private BenchmarkCamera camera;
+    private MeasuredOctreeLoader loader;
+    private OctreeNode root;
+
+    private int octantsLoadedFrame;
+    private int octantsLoaded;
+    private long starsLoaded, bytesLoaded, loadNanos;
+
+    public Benchmark(Options options) {
+        this.options = options;
+    }
+
+    /**
+     * Sets up the scene, the camera path and the dataset, runs the benchmark and writes the reports.
+     *
+     * @return The results.
+     *
+     * @throws IOException If the settings, the camera path or the dataset can't be read, or the reports can't be
+     *                     written.
+     */
+    public Report run() throws IOException {
+        boolean profilerEnabled = FrameProfiler.isEnabled();
+        app = Gdx.app;
+        graphics = Gdx.graphics;
+        gl = Gdx.gl32;
+        files = Gdx.files;
+        assetManager = AssetBean.manager();
+        try {
+            setUp();
+            return measure();
+        } finally {
+            FrameProfiler.setEnabled(profilerEnabled);
+            tearDown();
+            if (syntheticDir != null) {
+                delete(syntheticDir);
+            }
+        }
+    }
+
+    private void setUp() throws IOException {
+        var rnd = new Random(options.seed);
+        if (options.path != null) {
+            try (InputStream in = Files.newInputStream(Path.of(options.path))) {
+                path = new CameraPath(in);
+            }
+            if (path.n == 0) {
+                throw new IOException("Camera path is empty: " + options.path);
+            }
+        } else {
+            path = syntheticPath(rnd);
+        }
+        dt = (float) (1.0 / (path.frameRate > 0 ? path.frameRate : 60.0));
+
+        initializeHeadless();
+
+        Path catalog;
+        if (options.catalog != null) {
+            catalog = Path.of(options.catalog);
+        } else {
+            syntheticDir = Files.createTempDirectory("gaiasky-benchmark");
+            catalog = syntheticCatalog(syntheticDir, rnd);
+        }
+        if (!Files.isRegularFile(catalog.resolve("metadata.bin"))) {
+            throw new IOException("Could not find the octree metadata in " + catalog);
+        }
+
+        loadScene(catalog, rnd);
+        logger.info("Benchmark scene: " + options.bodies + " bodies, " + root.numNodesRec() + " octants with " + root.numObjectsRec
+                            + " stars, " + path.n + " camera path steps");
+    }
+
+    /**
+     * Loads the libGDX natives, and creates the settings, the Gaia Sky instance and its services, the camera, the clock
+     * and the scene renderer, with stubs of the libGDX application, graphics and GL, so that no window nor graphics context is needed.
+     */
+    private void initializeHeadless() throws IOException {
+        GdxNativesLoader.load();
+        Gdx.files = new Lwjgl3Files();
+        Gdx.app = stub(Application.class, (method, args) -> {
+            if (method.getName().equals("postRunnable")) {
+                posted.add((Runnable) args[0]);
+            }
+            return null;
+        });
+        // Meshes and textures get buffers and handles that do nothing.
+        Gdx.gl = Gdx.gl20 = Gdx.gl30 = Gdx.gl31 = Gdx.gl32 = stub(GL32.class, (method, args) -> null);
+        Gdx.graphics = stub(Graphics.class, (method, args) -> switch (method.getName()) {
+            case "getWidth", "getBackBufferWidth" -> WIDTH;
+            case "getHeight", "getBackBufferHeight" -> HEIGHT;
+            case "getDeltaTime" -> dt;
+            default -> null;
+        });
+
+        var assets = Path.of(options.assets);
+        var settings = new SettingsManager().loadSettings(new FileInputStream(assets.resolve("conf/config.yaml").toFile()),
+                                                          new FileInputStream(assets.resolve("dummyversion").toFile()));
+        if (settings == null) {
+            throw new IOException("Could not load the default settings in " + assets);
+        }
+        settings.runtime.octreeLoadActive = true;
+        settings.runtime.timeOn = true;
+        settings.scene.camera.fov = (float) options.fov;
+        settings.scene.octree.threshold[0] = (float) options.threshold;
+        settings.scene.octree.maxStars = options.maxStars;
+        var performance = settings.performance;
+        performance.multithreading = options.parallelism > 1;
+        performance.numberThreads = options.parallelism;
+        performance.parallelUpdateSystems = options.parallelism > 1;
+        performance.parallelExtraction = options.parallelism > 1;
+
+        gaiaSky = new GaiaSky(new GaiaSkyDesktop.CLIArgs(), settings);
+        I18n.initialize(settings, new FileHandle(assets.resolve("i18n/gsbundle").toFile()), new FileHandle(assets.resolve("i18n/objects").toFile()));
+        gaiaSky.createHeadless();
+        // Without loaders, nothing is loaded, and the systems that look up assets find none.
+        AssetBean.setAssetManager(new AssetManager(new InternalFileHandleResolver(), false));
+
+        // Fixed start time, so that time-dependent positions are the same in every run.
+        gaiaSky.time = new GlobalClock(1, path.times.isEmpty() ? Instant.EPOCH : path.times.get(0));
+        camera = new BenchmarkCamera(WIDTH, HEIGHT);
+        var cameraManager = new CameraManager(camera);
+        camera.setManager(cameraManager);
+        gaiaSky.cameraManager = cameraManager;
+        sceneRenderer = new SceneRenderer(null, null);
+        sceneRenderer.initializeRenderLists();
+        gaiaSky.sceneRenderer = sceneRenderer;
+    }
+
+    /**
+     * Loads the scene like the scene loader does: the bodies and the octree wrapper are created, added to the engine,
+     * indexed, initialized and linked in the scene graph, and then set up, and the update and extraction systems are
+     * prepared.
+     */
+    private void loadScene(Path catalog, Random rnd) {
+        scene = new Scene();
+        scene.initialize();
+        gaiaSky.scene = scene;
+
+        List<Entity> entities = new ArrayList<>(options.bodies + 1);
+        var particle = scene.archetypes().get("Particle");
+        for (int i = 0; i < options.bodies; i++) {
+            var entity = particle.createEntity();
+            double scale = rnd.nextDouble() < 0.9 ? CORE_SCALE : HALO_SCALE;
+            Mapper.base.get(entity).setName("Body " + (i + 1));
+            var body = Mapper.body.get(entity);
+            body.pos.set(rnd.nextGaussian() * scale, rnd.nextGaussian() * scale, rnd.nextGaussian() * scale);
+            body.updatePosEpoch();
+            body.size = (float) (0.001 + rnd.nextDouble() * rnd.nextDouble() * 0.5);
+            Mapper.magnitude.get(entity).absMag = (float) (rnd.nextDouble() * 10.0 - 5.0);
+            Mapper.graph.get(entity).parentName = Scene.ROOT_NAME;
+            entities.add(entity);
+        }
+
+        loader = new MeasuredOctreeLoader();
+        loader.setName("benchmark");
+        loader.setParams(new HashMap<>());
+        loader.setSynchronous(true);
+        loader.initialize(new String[]{catalog.resolve("particles").toAbsolutePath() + File.separator,
+                catalog.resolve("metadata.bin").toAbsolutePath().toString()}, scene);
+        var wrappers = loader.loadData();
+        for (var wrapper : wrappers) {
+            entities.add(wrapper);
+        }
+        root = Mapper.octant.get(wrappers.first()).octant;
+
+        for (var entity : entities) {
+            scene.engine.addEntity(entity);
+        }
+        scene.initializeIndex();
+        scene.initializeEntities();
+        scene.buildSceneGraph();
+        scene.setUpEntities();
+        scene.prepareUpdateSystems(sceneRenderer);
+        runPosted();
+    }
+
+    private void tearDown() {
+        if (loader != null) {
+            EventManager.instance.removeAllSubscriptions(loader);
+        }
+        if (gaiaSky != null && gaiaSky.getExecutorService() != null) {
+            gaiaSky.getExecutorService().shutDownThreadPool();
+        }
+        posted.clear();
+        Gdx.app = app;
+        Gdx.graphics = graphics;
+        Gdx.gl = Gdx.gl20 = Gdx.gl30 = Gdx.gl31 = Gdx.gl32 = gl;
+        Gdx.files = files;
+        AssetBean.setAssetManager(assetManager);
+    }
+
+    /** A path that spirals from the halo into the core of the synthetic catalog, looking at its centre. **/
+    private CameraPath syntheticPath(Random rnd) {
+        var p = new CameraPath(60);
+        double phase = rnd.nextDouble() * Math.PI * 2;
+        for (int i = 0; i < SYNTHETIC_PATH_FRAMES; i++) {
+            double t = (double) i / (SYNTHETIC_PATH_FRAMES - 1);
+            double r = HALO_SCALE * 1.5 * Math.pow(0.05 * CORE_SCALE / (HALO_SCALE * 1.5), t);
+            double a = phase + t * Math.PI * 4;
+            double x = r * Math.cos(a), y = r * Math.sin(a), z = r * 0.3 * Math.sin(a * 0.5);
+            double len = Math.sqrt(x * x + y * y + z * z);
+            p.add(Instant.ofEpochMilli(i * 1000L / 60), x, y, z, -x / len, -y / len, -z / len, 0, 0, 1);
+        }
+        return p;
+    }
+
+    /** Generates an octree dataset with a clustered core and a sparse halo. **/
+    private Path syntheticCatalog(Path dir, Random rnd) throws IOException {
+        List<IParticleRecord> records = new ArrayList<>(options.stars);
+        for (int i = 0; i < options.stars; i++) {
+            double scale = rnd.nextDouble() < 0.9 ? CORE_SCALE : HALO_SCALE;
+            float mag = (float) (rnd.nextDouble() * 20.0 - 1.0);
+            records.add(new ParticleStar(i + 1, new String[] { "Star " + (i + 1) }, rnd.nextGaussian() * scale, rnd.nextGaussian() * scale,
+                                         rnd.nextGaussian() * scale, 0, 0, 0, 0, 0, 0, mag, mag, 0.5f, 1e5f, -1, 5000f, null));
+        }
+        Path input = dir.resolve("catalog.bin");
+        try (OutputStream out = Files.newOutputStream(input)) {
+            writer.writeData(records, out, BinaryDataProvider.DEFAULT_OUTPUT_VERSION);
+        }
+
+        Path octree = dir.resolve("octree");
+        var generator = new OctreeGenerator(List.of(input), octree);
+        generator.setMaxPart(Math.max(1000, options.stars / 200));
+        var result = generator.run();
+        Files.delete(input);
+        logger.info(String.format(Locale.ROOT, "Synthetic catalog: %d stars in %d octants, generated in %.2f s", result.rows(), result.nodes(),
+                                  result.seconds()));
+        return octree;
+    }
+
+    private Report measure() throws IOException {
+        int frames = options.frames > 0 ? options.frames : (int) path.n;
+        int total = options.warmup + frames;
+
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        boolean allocation = threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled();
+        boolean cpu = threads.isCurrentThreadCpuTimeSupported();
+
+        long[] wall = new long[frames], cpuTime = new long[frames], allocated = new long[frames];
+        int[] observed = new int[frames], loadedOctants = new int[frames], rendered = new int[frames];
+        long[] stars = new long[frames];
+
+        var time = gaiaSky.time;
+        FrameProfiler.setEnabled(true);
+        for (int f = 0; f < total; f++) {
+            if (f == options.warmup) {
+                FrameProfiler.reset();
+                octantsLoaded = 0;
+                starsLoaded = bytesLoaded = loadNanos = 0;
+            }
+            octantsLoadedFrame = 0;
+            setCamera((int) (f % path.n));
+
+            long a0 = allocation ? threads.getTotalThreadAllocatedBytes() : 0;
+            long c0 = cpu ? threads.getCurrentThreadCpuTime() : 0;
+            long t0 = System.nanoTime();
+
+            long start = FrameProfiler.begin();
+            gaiaSky.updateHeadless(dt);
+            camera.update(dt, time);
+            scene.update(time);
+            FrameProfiler.end(STAGE_UPDATE, start);
+
+            start = FrameProfiler.begin();
+            loader.flushLoadQueue();
+            runPosted();
+            FrameProfiler.end(STAGE_OCTREE, start);
+
+            start = FrameProfiler.begin();
+            int count = render();
+            FrameProfiler.end(STAGE_RENDER, start);
+
+            FrameProfiler.end(STAGE_FRAME, t0);
+            FrameProfiler.endFrame();
+
+            int i = f - options.warmup;
+            if (i >= 0) {
+                wall[i] = System.nanoTime() - t0;
+                cpuTime[i] = cpu ? threads.getCurrentThreadCpuTime() - c0 : 0;
+                allocated[i] = allocation ? threads.getTotalThreadAllocatedBytes() - a0 : 0;
+                observed[i] = OctreeNode.nOctantsObserved;
+                loadedOctants[i] = octantsLoadedFrame;
+                stars[i] = loader.getNLoadedStars();
+                rendered[i] = count;
+            }
+        }
+
+        var out = Path.of(options.out);
+        Files.createDirectories(out);
+        try (BufferedWriter w = Files.newBufferedWriter(out.resolve("frames.csv"))) {
+            w.write("frame,wall_ms,cpu_ms,allocated_bytes,observed_octants,loaded_octants,loaded_stars,rendered");
+            w.newLine();
+            for (int i = 0; i < frames; i++) {
+                w.write(String.format(Locale.ROOT, "%d,%.4f,%.4f,%d,%d,%d,%d,%d", i, wall[i] * 1e-6, cpuTime[i] * 1e-6, allocated[i], observed[i],
+                                      loadedOctants[i], stars[i], rendered[i]));
+                w.newLine();
+            }
+        }
+        FrameProfiler.dump(out.resolve("stages.csv"));
+
+        long[] sorted = wall.clone();
+        Arrays.sort(sorted);
+        long wallSum = 0, cpuSum = 0, allocatedSum = 0, renderedSum = 0;
+        for (int i = 0; i < frames; i++) {
+            wallSum += wall[i];
+            cpuSum += cpuTime[i];
+            allocatedSum += allocated[i];
+            renderedSum += rendered[i];
+        }
+        var report = new Report(frames, wallSum * 1e-6 / frames, percentile(sorted, 0.5), percentile(sorted, 0.95), percentile(sorted, 0.99),
+                                sorted[frames - 1] * 1e-6, cpuSum * 1e-6 / frames, (double) allocatedSum / frames,
+                                wallSum > 0 ? allocatedSum / (wallSum * 1e-9) : 0, octantsLoaded, starsLoaded, bytesLoaded, loadNanos * 1e-9,
+                                (double) renderedSum / frames);
+        writeSummary(out.resolve("summary.json"), report);
+        return report;
+    }
+
+    /** Nearest-rank percentile of sorted nanosecond times, in milliseconds. **/
+    private static double percentile(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, rank - 1)] * 1e-6;
+    }
+
+    private void writeSummary(Path file, Report r) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(file)) {
+            w.write("{\n");
+            w.write("  \"path\": " + quote(options.path != null ? options.path : "synthetic") + ",\n");
+            w.write("  \"catalog\": " + quote(options.catalog != null ? options.catalog : "synthetic") + ",\n");
+            w.write("  \"bodies\": " + options.bodies + ",\n");
+            w.write("  \"octants\": " + root.numNodesRec() + ",\n");
+            w.write("  \"stars\": " + root.numObjectsRec + ",\n");
+            w.write("  \"cpus\": " + Runtime.getRuntime().availableProcessors() + ",\n");
+            w.write("  \"java\": " + quote(System.getProperty("java.vm.version")) + ",\n");
+            w.write(String.format(Locale.ROOT, """
+                      "frames": %d,
+                      "frame_ms": { "mean": %.4f, "p50": %.4f, "p95": %.4f, "p99": %.4f, "max": %.4f },
+                      "cpu_ms_mean": %.4f,
+                      "allocated_bytes_per_frame": %.1f,
+                      "allocation_mb_per_s": %.3f,
+                      "rendered_per_frame": %.1f,
+                      "loader": { "octants": %d, "stars": %d, "bytes": %d, "seconds": %.4f, "mb_per_s": %.3f, "stars_per_s": %.1f }
+                    }
+                    """, r.frames, r.meanMs, r.p50Ms, r.p95Ms, r.p99Ms, r.maxMs, r.cpuMs, r.allocatedBytesPerFrame, r.allocationRate / 1e6,
+                                  r.rendered, r.octantsLoaded, r.starsLoaded, r.bytesLoaded, r.loadSeconds, r.loaderBytesPerSecond() / 1e6,
+                                  r.loaderStarsPerSecond()));
+        }
+    }
+
+    private static String quote(String s) {
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private void setCamera(int step) {
+        var data = path.data;
+        int i = step * 9;
+        camera.set(data.get(i), data.get(i + 1), data.get(i + 2), data.get(i + 3), data.get(i + 4), data.get(i + 5), data.get(i + 6),
+                   data.get(i + 7), data.get(i + 8));
+    }
+
+    /** Runs the runnables posted to the main loop, including the ones they post. **/
+    private void runPosted() {
+        Runnable r;
+        while ((r = posted.poll()) != null) {
+            r.run();
+        }
+    }
+
+    /** Swaps the render lists and consumes them, like the scene renderer does after the extraction. **/
+    private int render() {
+        sceneRenderer.swapRenderLists();
+        int count = 0;
+        for (var list : sceneRenderer.getRenderListsFull()) {
+            count += list.size();
+        }
+        for (var list : sceneRenderer.getRenderListsHalf()) {
+            count += list.size();
+        }
+        sceneRenderer.resetRenderLists();
+        return count;
+    }
+
+    /**
+     * Creates a stub of the given interface. The handler gets the method and its arguments, and returns null for the
+     * default value of the return type.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, BiFunction<Method, Object[], Object> handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class[]{type}, (proxy, method, args) -> {
+            if (method.getName().equals("equals")) {
+                return proxy == args[0];
+            }
+            if (method.getName().equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            Object result = handler.apply(method, args);
+            var returnType = method.getReturnType();
+            return result != null || !returnType.isPrimitive() || returnType == void.class ? result : Array.get(Array.newInstance(returnType, 1), 0);
+        });
+    }
+
+    /** Octree loader that measures the octants it loads. **/
+    private final class MeasuredOctreeLoader extends OctreeLoader {
+        @Override
+        public boolean loadOctant(OctreeNode octant, Entity octreeWrapper, boolean progress, boolean fullInit, boolean immediate) {
+            long t0 = System.nanoTime();
+            boolean loaded = super.loadOctant(octant, octreeWrapper, progress, fullInit, immediate);
+            if (loaded) {
+                loadNanos += System.nanoTime() - t0;
+                octantsLoadedFrame++;
+                octantsLoaded++;
+                bytesLoaded += GaiaSky.settings().data.dataFileHandle(particles + "particles_" + String.format("%06d", octant.pageId) + ".bin").length();
+            }
+            return loaded;
+        }
+
+        @Override
+        public void touch(OctreeNode octant) {
+            // Loaded octants are touched when they are populated, before they are marked as loaded.
+            if (octant.getStatus() != LoadStatus.LOADED && octant.objects != null && !octant.objects.isEmpty()) {
+                starsLoaded += octant.objects.getLast().getStarCount();
+            }
+            super.touch(octant);
+        }
+    }
+
+    private static void delete(Path dir) {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            logger.warn("Could not delete " + dir + ": " + e.getMessage());
+        }
+    }
+
+    public static void main(String[] args) {
+        var options = new Options();
+        JCommander jc = JCommander.newBuilder().addObject(options).build();
+        jc.setProgramName("gaiasky --benchmark");
+        try {
+            jc.parse(args);
+            if (options.help) {
+                jc.usage();
+                return;
+            }
+        } catch (Exception e) {
+            System.out.print("bad benchmark arguments\n\n");
+            jc.usage();
+            return;
+        }
+        try {
+            var r = new Benchmark(options).run();
+            System.out.printf(Locale.ROOT, "%d frames: mean %.3f ms, p50 %.3f ms, p95 %.3f ms, p99 %.3f ms, max %.3f ms, cpu %.3f ms%n", r.frames,
+                              r.meanMs, r.p50Ms, r.p95Ms, r.p99Ms, r.maxMs, r.cpuMs);
+            System.out.printf(Locale.ROOT, "Allocation: %.1f KB/frame, %.1f MB/s%n", r.allocatedBytesPerFrame / 1024.0, r.allocationRate / 1e6);
+            System.out.printf(Locale.ROOT, "Octree loader: %d octants, %d stars, %.1f MB/s, %.0f stars/s%n", r.octantsLoaded, r.starsLoaded,
+                              r.loaderBytesPerSecond() / 1e6, r.loaderStarsPerSecond());
+            System.out.println("Reports written to " + Path.of(options.out).toAbsolutePath());
+        } catch (IOException e) {
+            System.err.println("Benchmark failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
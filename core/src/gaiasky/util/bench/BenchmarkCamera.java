@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.util.bench;
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import gaiasky.GaiaSky;
+import gaiasky.scene.api.IFocus;
+import gaiasky.scene.camera.AbstractCamera;
+import gaiasky.scene.camera.CameraManager;
+import gaiasky.scene.camera.CameraManager.CameraMode;
+import gaiasky.scene.camera.ICamera;
+import gaiasky.util.math.Vector3D;
+import gaiasky.util.time.ITimeFrameProvider;
+
+/**
+ * Camera of the benchmark, which follows the states of a camera path instead of the user input. It has no focus, and
+ * it needs no graphics context.
+ */
+final class BenchmarkCamera extends AbstractCamera {
+    private final Vector3D direction = new Vector3D(0, 0, 1);
+    private final Vector3D up = new Vector3D(0, 1, 0);
+
+    BenchmarkCamera(int width, int height) {
+        super(null);
+        camera = new PerspectiveCamera(GaiaSky.settings().scene.camera.fov, width, height);
+        camera.near = (float) CAM_NEAR;
+        camera.far = (float) CAM_FAR;
+        cameras = new PerspectiveCamera[]{camera, camLeft, camRight};
+        updateFovFactor();
+        updateAngleEdge(width, height);
+    }
+
+    /**
+     * Sets the parent camera manager, which is created with this camera.
+     *
+     * @param parent The camera manager.
+     */
+    void setManager(CameraManager parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Moves the camera to the given state.
+     *
+     * @param x  The position.
+     * @param y  The position.
+     * @param z  The position.
+     * @param dx The direction.
+     * @param dy The direction.
+     * @param dz The direction.
+     * @param ux The up vector.
+     * @param uy The up vector.
+     * @param uz The up vector.
+     */
+    void set(double x, double y, double z, double dx, double dy, double dz, double ux, double uy, double uz) {
+        pos.set(x, y, z);
+        direction.set(dx, dy, dz).nor();
+        up.set(ux, uy, uz).nor();
+    }
+
+    @Override
+    public void update(double dt, ITimeFrameProvider time) {
+        distance = pos.lenDouble();
+        camera.position.set(0f, 0f, 0f);
+        camera.direction.set(direction.valuesF());
+        camera.up.set(up.valuesF());
+        camera.update();
+        posInv.set(pos).scl(-1);
+    }
+
+    @Override
+    public void doneLoading(AssetManager manager) {
+    }
+
+    @Override
+    public PerspectiveCamera getCamera() {
+        return camera;
+    }
+
+    @Override
+    public void setCamera(PerspectiveCamera perspectiveCamera) {
+        this.camera = perspectiveCamera;
+    }
+
+    @Override
+    public PerspectiveCamera[] getFrontCameras() {
+        return new PerspectiveCamera[]{camera};
+    }
+
+    @Override
+    public Vector3D getDirection() {
+        return direction;
+    }
+
+    @Override
+    public void setDirection(Vector3D dir) {
+        direction.set(dir);
+    }
+
+    @Override
+    public Vector3D getUp() {
+        return up;
+    }
+
+    @Override
+    public Vector3D[] getDirections() {
+        return new Vector3D[]{direction};
+    }
+
+    @Override
+    public int getNCameras() {
+        return 1;
+    }
+
+    @Override
+    public double speedScaling() {
+        return 1;
+    }
+
+    @Override
+    public void updateMode(ICamera previousCam, CameraMode previousMode, CameraMode newMode, boolean centerFocus) {
+    }
+
+    @Override
+    public CameraMode getMode() {
+        return CameraMode.FREE_MODE;
+    }
+
+    @Override
+    public double getSpeed() {
+        return 0;
+    }
+
+    @Override
+    public IFocus getFocus() {
+        return null;
+    }
+
+    @Override
+    public boolean hasFocus() {
+        return false;
+    }
+
+    @Override
+    public boolean isFocus(Entity entity) {
+        return false;
+    }
+
+    @Override
+    public void resize(int width, int height) {
+    }
+}
@@ -13,6 +13,7 @@ import com.badlogic.gdx.math.Intersector;
 import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.math.collision.Ray;
+import gaiasky.GaiaSky;
 import gaiasky.scene.Mapper;
 import gaiasky.scene.api.IFocus;
 import gaiasky.scene.camera.ICamera;
@@ -21,10 +22,13 @@ import gaiasky.scene.view.FocusView;
 import gaiasky.util.Nature;
 import gaiasky.util.coord.Coordinates;
 import gaiasky.util.math.Vector3D;
+import net.jafama.FastMath;
 
 public class CameraUtils {
 
     private static final ModelUpdater updater = new ModelUpdater(null, 0);
+    /** Number of segments of the ray that are tested against the terrain. **/
+    private static final int TERRAIN_SEGMENTS = 16;
 
     /**
      * Checks if the entity e is hit by the screen position x and y.
@@ -52,6 +56,8 @@ public class CameraUtils {
             // We found an intersection point.
             updater.setToLocalTransform(e, f.getBody(), f.getGraph(), 1, localTransformInv, false);
             localTransformInv.inv();
+            // Refine it with the terrain, if any. Here, v0 is the ray origin, v1 its direction and vec the center.
+            intersectTerrain(f, e, v0, v1, vec, localTransformInv, intersection);
             // We use v0 because we need the unmodified intersection position in the camera manager.
             v0.set(intersection);
             v0.mul(localTransformInv);
@@ -67,6 +73,93 @@ public class CameraUtils {
         }
     }
 
+    /**
+     * Intersects the ray with the terrain of the given body, if it has height data, and puts the closest hit in the
+     * intersection vector. The part of the ray between the sphere that contains the highest terrain and the surface
+     * sphere is split in segments, which are tested in order against the height data.
+     *
+     * @param f                 The focus view of the body.
+     * @param e                 The entity of the body.
+     * @param origin            The origin of the ray.
+     * @param direction         The normalized direction of the ray.
+     * @param center            The center of the body.
+     * @param localTransformInv The inverse of the local transform of the body.
+     * @param intersection      The intersection with the surface sphere, overwritten with the terrain hit, if any.
+     *
+     * @return Whether the ray hits the terrain.
+     */
+    private static boolean intersectTerrain(FocusView f,
+                                            Entity e,
+                                            Vector3 origin,
+                                            Vector3 direction,
+                                            Vector3 center,
+                                            Matrix4 localTransformInv,
+                                            Vector3 intersection) {
+        var model = Mapper.model.get(e);
+        if (model == null || model.model == null || model.model.mtc == null || model.model.mtc.heightData == null) {
+            return false;
+        }
+        var heightData = model.model.mtc.heightData;
+        double scale = model.model.mtc.heightScale * GaiaSky.settings().scene.renderer.elevation.multiplier;
+        double radius = f.getRadius();
+        if (scale <= 0) {
+            return false;
+        }
+        // Ray parameters where it enters the shell with the highest terrain, and where it hits the surface sphere.
+        double ox = origin.x - center.x, oy = origin.y - center.y, oz = origin.z - center.z;
+        double b = ox * direction.x + oy * direction.y + oz * direction.z;
+        double c = ox * ox + oy * oy + oz * oz;
+        double outer = radius + heightData.getMaxNormalizedHeight() * scale;
+        double discOuter = b * b - c + outer * outer;
+        if (discOuter < 0) {
+            return false;
+        }
+        double tStart = FastMath.max(0.0, -b - FastMath.sqrt(discOuter));
+        double tEnd = origin.dst(intersection);
+
+        Vector3 p = new Vector3();
+        double[] prev = new double[4];
+        double[] next = new double[4];
+        terrainCoordinates(origin, direction, center, tStart, radius, scale, localTransformInv, p, prev);
+        for (int k = 1; k <= TERRAIN_SEGMENTS; k++) {
+            double t = tStart + (tEnd - tStart) * k / TERRAIN_SEGMENTS;
+            terrainCoordinates(origin, direction, center, t, radius, scale, localTransformInv, p, next);
+            // Keep U continuous across the seam.
+            next[0] += FastMath.rint(prev[0] - next[0]);
+            double frac = heightData.intersect(prev[0], prev[1], prev[2], next[0], next[1], next[2]);
+            if (frac >= 0) {
+                double tHit = prev[3] + (t - prev[3]) * frac;
+                intersection.set(direction).scl((float) tHit).add(origin);
+                return true;
+            }
+            System.arraycopy(next, 0, prev, 0, next.length);
+        }
+        return false;
+    }
+
+    /**
+     * Computes the UV coordinates and the normalized height of the point of the ray at the given parameter, and puts
+     * them in out, followed by the parameter.
+     */
+    private static void terrainCoordinates(Vector3 origin,
+                                           Vector3 direction,
+                                           Vector3 center,
+                                           double t,
+                                           double radius,
+                                           double scale,
+                                           Matrix4 localTransformInv,
+                                           Vector3 p,
+                                           double[] out) {
+        p.set(direction).scl((float) t).add(origin);
+        double height = (p.dst(center) - radius) / scale;
+        p.mul(localTransformInv);
+        Vector3D sph = Coordinates.cartesianToSpherical(new Vector3D(p.x, p.y, p.z), new Vector3D());
+        out[0] = (((sph.x * Nature.TO_DEG) + 270.0) % 360.0) / 360.0;
+        out[1] = (sph.y * Nature.TO_DEG + 90.0) / 180.0;
+        out[2] = height;
+        out[3] = t;
+    }
+
     public static void unproject(Camera camera, Vector3 screenCoords, float viewportX, float viewportY, float viewportWidth, float viewportHeight, int screenHeight) {
         float x = screenCoords.x - viewportX, y = screenHeight - screenCoords.y - viewportY;
         screenCoords.x = (2 * x) / viewportWidth - 1;
@@ -481,6 +481,11 @@ public class Proximity {
             return 0;
         }
 
+        @Override
+        public double getElevationAt(Vector3Q camPos, Vector3Q nextPos, double footprint) {
+            return 0;
+        }
+
         @Override
         public double getHeightScale() {
             return 0;
@@ -333,6 +333,15 @@ public class Camcorder implements IObserver {
         return mode.get() == RecorderState.PLAYING;
     }
 
+    /**
+     * Gets the camera path being played.
+     *
+     * @return The path, or null if no path is being played.
+     */
+    public CameraPath getPlayingPath() {
+        return playingPath.get();
+    }
+
     public enum RecorderState {
         // Recording in classical mode (one state per frame)
         RECORDING,
@@ -61,7 +61,7 @@ public class ColorUtils {
      * Highlight color array for datasets
      **/
     public static float[][] colorArray = new float[][]{gBlue, gRed, gYellow, gGreen, gPink, aOrange, tPurple, ddBrown, ddMagenta, oCyan};
-    private static float[][] teffToRGB_harre;
+    private static volatile float[][] teffToRGB_harre;
 
     private static Color getCol(float[] c) {
         return new Color(c[0], c[1], c[2], c[3]);
@@ -290,7 +290,17 @@ public class ColorUtils {
      */
     private static void initHarreData() {
         if (teffToRGB_harre == null) {
-            teffToRGB_harre = new float[105][];
+            loadHarreData();
+        }
+    }
+
+    /**
+     * Loads the table into a local array and publishes it only when complete, so that concurrent
+     * callers never see a partially filled table.
+     */
+    private static synchronized void loadHarreData() {
+        if (teffToRGB_harre == null) {
+            float[][] table = new float[105][];
             FileHandle fh = Gdx.files.internal("data/teff-rgb.csv.gz");
             try (var gzipStream = new GZIPInputStream(fh.read());
                  var reader = new BufferedReader(new InputStreamReader(gzipStream))) {
@@ -305,10 +315,11 @@ public class ColorUtils {
                     data[1] = Parser.parseFloat(tokens[1]);
                     data[2] = Parser.parseFloat(tokens[2]);
                     data[3] = Parser.parseFloat(tokens[3]);
-                    teffToRGB_harre[i] = data;
+                    table[i] = data;
 
                     i++;
                 }
+                teffToRGB_harre = table;
             } catch (Exception e) {
                 Logger.getLogger("ColorUtils").error("Error parsing teff-rgb.csv file");
                 Logger.getLogger("ColorUtils").error(e);
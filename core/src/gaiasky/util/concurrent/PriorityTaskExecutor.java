@@ -0,0 +1,380 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.util.concurrent;
+
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Executor with priority classes, which runs its queued tasks and its fork/join jobs in two separate pools.
+ * <p>
+ * Tasks are kept in one queue per {@link Priority}. For each task, a pump is given to the task pool, which runs the task
+ * with the highest priority queued at the time the pump runs, so that interactive tasks overtake the bulk ones already
+ * queued. A lower class whose oldest task has waited longer than the maximum wait is served first, so that bulk tasks
+ * are not starved.
+ * <p>
+ * Queued tasks are indexed by key in a hash map. The key of a plain task is the task itself, and a task that is
+ * already queued is not queued again. Tasks submitted with {@link #supersede(Object, Runnable, Priority)} use an
+ * explicit key, and cancel the queued task with the same key, if any, which has been superseded.
+ * <p>
+ * Queued tasks may block on I/O, so fork/join jobs do not run with them. They are run with
+ * {@link #invoke(ForkJoinTask)} in the compute pool of the executor, which only runs computations and uses work
+ * stealing. Queued tasks may invoke jobs too, and wait for them.
+ * <p>
+ * The queue depth, and the number, wait time and run time of the tasks of each class are kept in {@link Stats}.
+ */
+public class PriorityTaskExecutor implements Executor {
+    /** Priority classes, from highest to lowest. **/
+    public enum Priority {
+        /** Work the user waits for, like search suggestions. **/
+        INTERACTIVE,
+        /** Default priority. **/
+        NORMAL,
+        /** Long-running jobs, like dataset loads or downloads. **/
+        BULK
+    }
+
+    /** Default time after which a task of a lower class is served before the higher ones, in milliseconds. **/
+    public static final long DEFAULT_MAX_WAIT_MS = 2000;
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    /** Runs the pumps of the queued tasks. **/
+    private final ForkJoinPool pool;
+    /** Runs the fork/join jobs. **/
+    private final ForkJoinPool computePool;
+    private final Queue<Task<?>>[] queues;
+    private final ConcurrentHashMap<Object, Task<?>> queued = new ConcurrentHashMap<>();
+    private final Stats[] stats;
+    private final long maxWaitNs;
+    private final Consumer<Throwable> errorHandler;
+
+    /**
+     * Creates an executor.
+     *
+     * @param nThreads     The number of threads.
+     * @param threadName   The prefix of the names of the threads.
+     * @param maxWaitMs    The time after which a task of a lower class is served first, in milliseconds.
+     * @param errorHandler Receives the exceptions thrown by tasks run with {@link #execute(Runnable)}. May be null.
+     */
+    @SuppressWarnings("unchecked")
+    public PriorityTaskExecutor(int nThreads, String threadName, long maxWaitMs, Consumer<Throwable> errorHandler) {
+        this.pool = new ForkJoinPool(Math.max(1, nThreads), threadFactory(threadName), null, false);
+        this.computePool = new ForkJoinPool(Math.max(1, nThreads), threadFactory(threadName + "compute-"), null, false);
+        this.queues = new Queue[PRIORITIES.length];
+        this.stats = new Stats[PRIORITIES.length];
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            queues[i] = new ConcurrentLinkedQueue<>();
+            stats[i] = new Stats();
+        }
+        this.maxWaitNs = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.errorHandler = errorHandler;
+    }
+
+    public PriorityTaskExecutor(int nThreads, String threadName, Consumer<Throwable> errorHandler) {
+        this(nThreads, threadName, DEFAULT_MAX_WAIT_MS, errorHandler);
+    }
+
+    private static ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory(String threadName) {
+        var sequence = new AtomicInteger();
+        return p -> {
+            var t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            t.setName(threadName + sequence.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Executes the task with normal priority, unless it is already queued.
+     *
+     * @param task The task.
+     */
+    @Override
+    public void execute(Runnable task) {
+        execute(task, Priority.NORMAL);
+    }
+
+    /**
+     * Executes the task with the given priority, unless it is already queued.
+     *
+     * @param task     The task.
+     * @param priority The priority.
+     *
+     * @return Whether the task was queued.
+     */
+    public boolean execute(Runnable task, Priority priority) {
+        return enqueue(task, task, priority, false, true) != null;
+    }
+
+    /**
+     * Submits the task with the given priority, unless it is already queued.
+     *
+     * @param task     The task.
+     * @param priority The priority.
+     *
+     * @return The future of the task, or null if it was already queued or the executor is shut down.
+     */
+    public Future<?> submit(Runnable task, Priority priority) {
+        return enqueue(task, task, priority, false, false);
+    }
+
+    /**
+     * Submits the task with the given priority, and cancels the queued task with the same key, if any. Tasks that are
+     * already running are not interrupted.
+     *
+     * @param key      The key of the task, for instance the object the task updates.
+     * @param task     The task.
+     * @param priority The priority.
+     *
+     * @return The future of the task, or null if the executor is shut down.
+     */
+    public Future<?> supersede(Object key, Runnable task, Priority priority) {
+        return enqueue(key, task, priority, true, true);
+    }
+
+    /**
+     * Runs a fork/join job in the compute pool, and waits for its result. The subtasks it forks run in the compute
+     * pool too, never behind the queued tasks.
+     *
+     * @param task The job.
+     *
+     * @return The result.
+     */
+    public <T> T invoke(ForkJoinTask<T> task) {
+        return computePool.invoke(task);
+    }
+
+    private Task<?> enqueue(Object key, Runnable runnable, Priority priority, boolean supersede, boolean reportErrors) {
+        if (pool.isShutdown()) {
+            return null;
+        }
+        var task = new Task<>(key, runnable, priority, reportErrors);
+        if (supersede) {
+            var old = queued.put(key, task);
+            if (old != null && old.cancelQueued()) {
+                stats[old.priority.ordinal()].cancelled.increment();
+            }
+        } else if (queued.putIfAbsent(key, task) != null) {
+            return null;
+        }
+        var s = stats[priority.ordinal()];
+        s.submitted.increment();
+        s.depth.incrementAndGet();
+        queues[priority.ordinal()].add(task);
+        try {
+            pool.execute(this::pump);
+        } catch (RejectedExecutionException e) {
+            queued.remove(key, task);
+            task.cancelQueued();
+            return null;
+        }
+        return task;
+    }
+
+    /**
+     * Runs the queued task with the highest priority. There is one pump per queued task, and superseded tasks are
+     * skipped, so all the tasks that are not cancelled are run.
+     */
+    private void pump() {
+        Task<?> task;
+        while ((task = poll()) != null) {
+            if (task.dequeue()) {
+                queued.remove(task.key, task);
+                var s = stats[task.priority.ordinal()];
+                long start = System.nanoTime();
+                s.waitNs.add(start - task.enqueuedNs);
+                task.run();
+                s.runNs.add(System.nanoTime() - start);
+                s.completed.increment();
+                return;
+            }
+        }
+    }
+
+    /** Polls the next task, from the highest class, unless a lower class has waited too long. **/
+    private Task<?> poll() {
+        long now = System.nanoTime();
+        for (int i = queues.length - 1; i > 0; i--) {
+            var head = queues[i].peek();
+            if (head != null && now - head.enqueuedNs > maxWaitNs) {
+                var task = queues[i].poll();
+                if (task != null) {
+                    return task;
+                }
+            }
+        }
+        for (var queue : queues) {
+            var task = queue.poll();
+            if (task != null) {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether a task is queued and not running yet. Constant time.
+     *
+     * @param task The task, or the key it was superseded with.
+     *
+     * @return Whether it is queued.
+     */
+    public boolean inQueue(Object task) {
+        return queued.containsKey(task);
+    }
+
+    /**
+     * Cancels the queued task with the given key, if it has not started yet.
+     *
+     * @param key The task, or the key it was superseded with.
+     *
+     * @return Whether a task was cancelled.
+     */
+    public boolean cancel(Object key) {
+        var task = queued.remove(key);
+        if (task != null && task.cancelQueued()) {
+            stats[task.priority.ordinal()].cancelled.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Shuts the executor down, and waits at most the given time for the running tasks. The queued tasks are dropped.
+     *
+     * @param timeoutMs The time to wait, in milliseconds.
+     *
+     * @return Whether all tasks finished in time.
+     */
+    public boolean shutdown(long timeoutMs) throws InterruptedException {
+        pool.shutdown();
+        computePool.shutdown();
+        for (var key : queued.keySet()) {
+            cancel(key);
+        }
+        for (var queue : queues) {
+            queue.clear();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        boolean terminated = pool.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+        return computePool.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS) && terminated;
+    }
+
+    public boolean isShutdown() {
+        return pool.isShutdown();
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Gets the pool that runs the fork/join jobs, for the code that forks its own tasks. Tasks that block on I/O
+     * must be queued instead.
+     *
+     * @return The compute pool.
+     */
+    public ForkJoinPool getComputePool() {
+        return computePool;
+    }
+
+    /**
+     * Gets the statistics of a priority class.
+     *
+     * @param priority The class.
+     *
+     * @return The statistics, updated live.
+     */
+    public Stats getStats(Priority priority) {
+        return stats[priority.ordinal()];
+    }
+
+    /** Statistics of a priority class. Times are totals since the executor was created. **/
+    public static final class Stats {
+        private final AtomicInteger depth = new AtomicInteger();
+        private final LongAdder submitted = new LongAdder(), completed = new LongAdder(), cancelled = new LongAdder();
+        private final LongAdder waitNs = new LongAdder(), runNs = new LongAdder();
+
+        /** Number of tasks queued and not started yet. **/
+        public int getQueueDepth() {
+            return depth.get();
+        }
+
+        public long getSubmitted() {
+            return submitted.sum();
+        }
+
+        public long getCompleted() {
+            return completed.sum();
+        }
+
+        /** Number of tasks cancelled, or superseded, before they started. **/
+        public long getCancelled() {
+            return cancelled.sum();
+        }
+
+        /** Mean time between the submission and the start of the tasks, in milliseconds. **/
+        public double getMeanWaitMs() {
+            long n = completed.sum();
+            return n > 0 ? waitNs.sum() / (n * 1e6) : 0;
+        }
+
+        /** Mean run time of the tasks, in milliseconds. **/
+        public double getMeanRunMs() {
+            long n = completed.sum();
+            return n > 0 ? runNs.sum() / (n * 1e6) : 0;
+        }
+    }
+
+    /** A queued task. **/
+    private final class Task<T> extends FutureTask<T> {
+        final Object key;
+        final Priority priority;
+        final boolean reportErrors;
+        final long enqueuedNs = System.nanoTime();
+        /** Set by whoever takes the task out of the queue, the pump that runs it or the one that cancels it. **/
+        final AtomicBoolean dequeued = new AtomicBoolean();
+
+        Task(Object key, Runnable runnable, Priority priority, boolean reportErrors) {
+            super(runnable, null);
+            this.key = key;
+            this.priority = priority;
+            this.reportErrors = reportErrors;
+        }
+
+        boolean dequeue() {
+            if (dequeued.compareAndSet(false, true)) {
+                stats[priority.ordinal()].depth.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        /** Cancels the task if it has not started yet. The task stays in its queue, and is skipped by the pumps. **/
+        boolean cancelQueued() {
+            if (dequeue()) {
+                cancel(false);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            super.setException(t);
+            if (reportErrors && errorHandler != null) {
+                errorHandler.accept(t);
+            }
+        }
+    }
+}
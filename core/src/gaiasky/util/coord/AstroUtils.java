@@ -10,7 +10,6 @@ package gaiasky.util.coord;
 
 import com.badlogic.gdx.utils.Array;
 import gaiasky.util.Constants;
-import gaiasky.util.LruCacheLong;
 import gaiasky.util.Nature;
 import gaiasky.util.Pair;
 import gaiasky.util.math.Vector3Q;
@@ -59,19 +58,42 @@ public class AstroUtils {
     public static final long J2000_MS;
 
     /**
-     * Julian date cache, since most dates are used more than once. We use an LRU so that the least recently
-     * used Julian date is moved out of the cache on insertion.
+     * Last Julian date computed by {@link #getJulianDateCache(Instant)} in each thread, for the dates that are not the
+     * time of the current frame (see {@link FrameTimeContext}).
      **/
-    private static final LruCacheLong<Double> julianDateCache = new LruCacheLong<>(10);
+    private static final ThreadLocal<double[]> lastJulianDate = ThreadLocal.withInitial(() -> new double[]{Double.NaN, 0});
     /**
-     * Initialize nsl Sun
+     * Sun ecliptic longitude computer and last computed value, per thread, for the dates that are not the time of the
+     * current frame.
      **/
-    private static final NslSun nslSun = new NslSun();
-    private static Instant cacheSunLongitudeDate = Instant.now();
-    private static double cacheSunLongitude;
+    private static final ThreadLocal<NslSun> nslSun = ThreadLocal.withInitial(NslSun::new);
+    private static final ThreadLocal<double[]> lastSunLongitude = ThreadLocal.withInitial(() -> new double[]{Double.NaN, 0});
 
     private static final Instant gregorianSwitch = Instant.parse("1582-10-15T00:00:00.000Z");
 
+    /** TT - TAI, in seconds. **/
+    private static final double TT_MINUS_TAI = 32.184;
+    /** TAI - UTC at the start of 1972, in seconds. Each later leap second adds one. **/
+    private static final int TAI_MINUS_UTC_1972 = 10;
+    /** Instants of 1972-01-01 and of the leap seconds after it, in seconds since the epoch. **/
+    private static final long[] LEAP_SECONDS = leapSeconds("1972-01-01", "1972-07-01", "1973-01-01", "1974-01-01",
+            "1975-01-01", "1976-01-01", "1977-01-01", "1978-01-01", "1979-01-01", "1980-01-01", "1981-07-01",
+            "1982-07-01", "1983-07-01", "1985-07-01", "1988-01-01", "1990-01-01", "1991-01-01", "1992-07-01",
+            "1993-07-01", "1994-07-01", "1996-01-01", "1997-07-01", "1999-01-01", "2006-01-01", "2009-01-01",
+            "2012-07-01", "2015-07-01", "2017-01-01");
+    /** Rate of TCB with respect to TDB, and TDB - TCB at {@link #JD_TCB_T0}, in seconds. **/
+    private static final double L_B = 1.550519768e-8, TDB_0 = -6.55e-5;
+    /** Julian date of 1977-01-01T00:00:32.184 TT, where TT, TCB and TCG coincide. **/
+    private static final double JD_TCB_T0 = 2443144.5003725;
+
+    private static long[] leapSeconds(String... dates) {
+        long[] seconds = new long[dates.length];
+        for (int i = 0; i < dates.length; i++) {
+            seconds[i] = LocalDate.parse(dates[i]).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+        }
+        return seconds;
+    }
+
     static {
         Instant d = (LocalDateTime.of(2000, 1, 1, 0, 0, 0)).toInstant(ZoneOffset.UTC);
         J2000_MS = d.toEpochMilli();
@@ -92,23 +114,29 @@ public class AstroUtils {
 
     /**
      * Returns the Sun's ecliptic longitude in degrees for the given time.
-     * Caches the last Sun's longitude for future use.
+     * Uses the {@link FrameTimeContext} of the current frame if the time matches, and otherwise
+     * caches the last Sun's longitude of each thread for future use.
      *
      * @param date The time for which the longitude must be calculated.
      *
      * @return The Sun's longitude in [deg].
      */
     public static double getSunLongitude(Instant date) {
-        if (!date.equals(cacheSunLongitudeDate)) {
-            double julianDate = getJulianDateCache(date);
-
-            nslSun.setTime(julianDate);
-            double aux = FastMath.toDegrees(nslSun.getSolarLongitude()) % 360;
-
-            cacheSunLongitudeDate = Instant.ofEpochMilli(date.toEpochMilli());
-            cacheSunLongitude = aux % 360;
+        long time = date.toEpochMilli();
+        var context = FrameTimeContext.current(time);
+        if (context != null) {
+            return context.sunLongitude;
+        }
+        var last = lastSunLongitude.get();
+        if (last[0] != time) {
+            var sun = nslSun.get();
+            sun.setTime(getJulianDateCache(date));
+            double aux = FastMath.toDegrees(sun.getSolarLongitude()) % 360;
+
+            last[0] = time;
+            last[1] = aux % 360;
         }
-        return cacheSunLongitude;
+        return last[1];
     }
 
     /**
@@ -165,21 +193,26 @@ public class AstroUtils {
     }
 
     /**
-     * Gets the Julian Date for the given {@link Instant}. It uses a cache.
+     * Gets the Julian Date for the given {@link Instant}, with millisecond resolution. The time of the current frame
+     * comes from the {@link FrameTimeContext}, and other dates from a one-entry cache per thread, so this
+     * method never locks.
      *
      * @param instant The date.
      *
      * @return The Julian Date.
      */
-    public static synchronized double getJulianDateCache(Instant instant) {
+    public static double getJulianDateCache(Instant instant) {
         long time = instant.toEpochMilli();
-        if (julianDateCache.containsKey(time)) {
-            return julianDateCache.get(time);
-        } else {
-            double jd = getJulianDate(instant);
-            julianDateCache.put(time, jd);
-            return jd;
+        var context = FrameTimeContext.current(time);
+        if (context != null) {
+            return context.jd;
+        }
+        var last = lastJulianDate.get();
+        if (last[0] != time) {
+            last[0] = time;
+            last[1] = getJulianDate(instant);
         }
+        return last[1];
     }
 
     /**
@@ -424,6 +457,35 @@ public class AstroUtils {
      *
      * @return The time in julian centuries.
      */
+    /**
+     * Gets the difference between Terrestrial Time and UTC at the given instant, which is the difference between TAI
+     * and UTC, from the table of leap seconds, plus 32.184 seconds. Instants before 1972 use the offset of 1972.
+     *
+     * @param instant The instant.
+     *
+     * @return TT - UTC, in seconds.
+     */
+    public static double getTTMinusUTC(Instant instant) {
+        long seconds = instant.getEpochSecond();
+        int i = LEAP_SECONDS.length - 1;
+        while (i > 0 && seconds < LEAP_SECONDS[i]) {
+            i--;
+        }
+        return TAI_MINUS_UTC_1972 + i + TT_MINUS_TAI;
+    }
+
+    /**
+     * Gets the difference between Barycentric Coordinate Time and Terrestrial Time at the given Julian date in TT, with
+     * the linear drift of IAU 2006 Resolution B3. The periodic terms, below two milliseconds, are ignored.
+     *
+     * @param julianDateTT The Julian date, in TT.
+     *
+     * @return TCB - TT, in seconds.
+     */
+    public static double getTCBMinusTT(double julianDateTT) {
+        return L_B * (julianDateTT - JD_TCB_T0) * Nature.D_TO_S - TDB_0;
+    }
+
     public static double T(double julianDate) {
         return (julianDate - 2451545.0) / 36525.0;
     }
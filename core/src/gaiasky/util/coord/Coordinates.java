@@ -194,6 +194,10 @@ public class Coordinates {
      * @return The transformation matrix.
      */
     public static Matrix4D eclToEq(double julianDate) {
+        var context = FrameTimeContext.currentAtJulianDate(julianDate);
+        if (context != null) {
+            return context.eclToEq(new Matrix4D());
+        }
         return getRotationMatrix(0, AstroUtils.obliquity(julianDate), 0);
     }
 
@@ -239,6 +243,10 @@ public class Coordinates {
      * coordinates.
      */
     public static Matrix4D eqToEcl(double julianDate) {
+        var context = FrameTimeContext.currentAtJulianDate(julianDate);
+        if (context != null) {
+            return context.eqToEcl(new Matrix4D());
+        }
         return getRotationMatrix(0, -AstroUtils.obliquity(julianDate), 0);
     }
 
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.util.coord;
+
+import gaiasky.util.Nature;
+import gaiasky.util.math.Matrix4D;
+import net.jafama.FastMath;
+
+import java.time.Instant;
+
+/**
+ * Immutable set of time quantities for one frame. The context of the current frame is computed once, on the main
+ * thread, via {@link #update(Instant)}, and published so that any thread can read it without locking.
+ * <p>
+ * The static getters, like {@link #jdTT(Instant)} or {@link #sunLongitude(Instant)}, are used by the coordinate
+ * providers. They return the quantities of the context if the given time is the time of the current frame, and
+ * compute them otherwise. The {@link AstroUtils} methods that take an {@link Instant} also use the context whenever
+ * they get the time of the current frame.
+ */
+public final class FrameTimeContext {
+
+    /** The context of the current frame. Null until the first frame. **/
+    private static volatile FrameTimeContext current;
+
+    /** The instant. **/
+    public final Instant instant;
+    /** The instant, in milliseconds since the Unix epoch. **/
+    public final long epochMs;
+    /** Julian date, in UTC. **/
+    public final double jd;
+    /** Terrestrial Time minus UTC, in seconds. **/
+    public final double ttMinusUtc;
+    /** Barycentric Coordinate Time minus Terrestrial Time, in seconds. **/
+    public final double tcbMinusTt;
+    /** Julian date, in TT. **/
+    public final double jdTT;
+    /** Julian date, in TCB. **/
+    public final double jdTCB;
+    /** Julian millennia since J2000.0, in TT. **/
+    public final double tau;
+    /** Ecliptic longitude of the Sun, in degrees. **/
+    public final double sunLongitude;
+    /** Rotation from the ecliptic to the equator of date, with the obliquity of date. Must not be modified. **/
+    private final Matrix4D eclToEq;
+    /** Rotation from the equator to the ecliptic of date. Must not be modified. **/
+    private final Matrix4D eqToEcl;
+
+    private FrameTimeContext(Instant instant) {
+        this.instant = instant;
+        this.epochMs = instant.toEpochMilli();
+        this.jd = AstroUtils.getJulianDate(instant);
+        this.ttMinusUtc = AstroUtils.getTTMinusUTC(instant);
+        this.jdTT = jd + ttMinusUtc * Nature.S_TO_D;
+        this.tcbMinusTt = AstroUtils.getTCBMinusTT(jdTT);
+        this.jdTCB = jdTT + tcbMinusTt * Nature.S_TO_D;
+        this.tau = AstroUtils.tau(jdTT);
+        var sun = new NslSun();
+        sun.setTime(jd);
+        this.sunLongitude = (FastMath.toDegrees(sun.getSolarLongitude()) % 360) % 360;
+        double obliquity = AstroUtils.obliquity(jd);
+        this.eclToEq = Coordinates.getRotationMatrix(0, obliquity, 0);
+        this.eqToEcl = Coordinates.getRotationMatrix(0, -obliquity, 0);
+    }
+
+    /**
+     * Creates a new context for the given instant. Prefer {@link #current()} for the time of the current frame.
+     *
+     * @param instant The instant.
+     *
+     * @return A new time context.
+     */
+    public static FrameTimeContext of(Instant instant) {
+        return new FrameTimeContext(instant);
+    }
+
+    /**
+     * Sets the time of the current frame. A new context is only computed when the time changes.
+     *
+     * @param instant The time of the current frame.
+     *
+     * @return The context of the current frame.
+     */
+    public static FrameTimeContext update(Instant instant) {
+        var c = current;
+        if (c == null || !c.instant.equals(instant)) {
+            c = new FrameTimeContext(instant);
+            current = c;
+        }
+        return c;
+    }
+
+    /**
+     * @return The context of the current frame, or null if no frame has been updated yet.
+     */
+    public static FrameTimeContext current() {
+        return current;
+    }
+
+    /**
+     * Returns the context of the current frame if it corresponds to the given time, in milliseconds since the epoch.
+     *
+     * @param epochMs The time, in milliseconds since the epoch.
+     *
+     * @return The current context, or null if it does not match.
+     */
+    static FrameTimeContext current(long epochMs) {
+        var c = current;
+        return c != null && c.epochMs == epochMs ? c : null;
+    }
+
+    /**
+     * Returns the context of the current frame if it corresponds to exactly the given instant.
+     *
+     * @param instant The instant.
+     *
+     * @return The current context, or null if it does not match.
+     */
+    public static FrameTimeContext current(Instant instant) {
+        var c = current;
+        return c != null && c.instant.equals(instant) ? c : null;
+    }
+
+    /**
+     * Gets the Julian date in Terrestrial Time, which the analytical ephemerides use as an approximation of TDB.
+     *
+     * @param instant The instant.
+     *
+     * @return The Julian date, in TT.
+     */
+    public static double jdTT(Instant instant) {
+        var c = current(instant);
+        return c != null ? c.jdTT : AstroUtils.getJulianDateCache(instant) + AstroUtils.getTTMinusUTC(instant) * Nature.S_TO_D;
+    }
+
+    /**
+     * Gets the Julian date in Barycentric Coordinate Time.
+     *
+     * @param instant The instant.
+     *
+     * @return The Julian date, in TCB.
+     */
+    public static double jdTCB(Instant instant) {
+        var c = current(instant);
+        if (c != null) {
+            return c.jdTCB;
+        }
+        double jdTT = jdTT(instant);
+        return jdTT + AstroUtils.getTCBMinusTT(jdTT) * Nature.S_TO_D;
+    }
+
+    /**
+     * Gets the Julian millennia since J2000.0 in Terrestrial Time, the time argument of VSOP87.
+     *
+     * @param instant The instant.
+     *
+     * @return The Julian millennia since J2000.0.
+     */
+    public static double tau(Instant instant) {
+        var c = current(instant);
+        return c != null ? c.tau : AstroUtils.tau(jdTT(instant));
+    }
+
+    /**
+     * Gets the ecliptic longitude of the Sun.
+     *
+     * @param instant The instant.
+     *
+     * @return The longitude, in degrees.
+     */
+    public static double sunLongitude(Instant instant) {
+        var c = current(instant);
+        return c != null ? c.sunLongitude : AstroUtils.getSunLongitude(instant);
+    }
+
+    /**
+     * Returns the context of the current frame if its Julian date, in UTC, is the given one.
+     *
+     * @param julianDate The Julian date.
+     *
+     * @return The current context, or null if it does not match.
+     */
+    static FrameTimeContext currentAtJulianDate(double julianDate) {
+        var c = current;
+        return c != null && c.jd == julianDate ? c : null;
+    }
+
+    /**
+     * Puts the rotation from the ecliptic to the equator of date in the given matrix.
+     *
+     * @param out The matrix.
+     *
+     * @return The out matrix.
+     */
+    public Matrix4D eclToEq(Matrix4D out) {
+        return out.set(eclToEq);
+    }
+
+    /**
+     * Puts the rotation from the equator to the ecliptic of date in the given matrix.
+     *
+     * @param out The matrix.
+     *
+     * @return The out matrix.
+     */
+    public Matrix4D eqToEcl(Matrix4D out) {
+        return out.set(eqToEcl);
+    }
+}
@@ -36,7 +36,7 @@ public class HeliotropicOrbitCoordinates extends AbstractOrbitCoordinates {
             return null;
         }
         // Rotate by solar longitude, and convert to equatorial.
-        return out.rotate(AstroUtils.getSunLongitude(date) + 180, 0, 1, 0).mul(Coordinates.eclToEq()).scl(scaling);
+        return out.rotate(FrameTimeContext.sunLongitude(date) + 180, 0, 1, 0).mul(Coordinates.eclToEq()).scl(scaling);
     }
 
     @Override
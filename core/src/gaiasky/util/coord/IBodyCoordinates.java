@@ -72,4 +72,15 @@ public interface IBodyCoordinates {
      */
     IBodyCoordinates getCopy();
 
+    /**
+     * Whether {@link #getEquatorialCartesianCoordinates(Instant, Vector3Q)} can be called from several threads at
+     * once. Only thread-safe coordinates are computed ahead of the scene update, see
+     * {@link gaiasky.scene.system.update.CoordinatesPrefetcher}.
+     *
+     * @return Whether the coordinates are thread-safe.
+     */
+    default boolean isThreadSafe() {
+        return false;
+    }
+
 }
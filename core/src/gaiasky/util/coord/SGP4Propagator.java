@@ -0,0 +1,1066 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.util.coord;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * SGP4/SDP4 propagator for all the objects of a {@link TLECatalog}.
+ * <p>
+ * This follows the revised SGP4 of Vallado et al. (2006), <i>Revisiting Spacetrack Report #3</i>, in its improved
+ * operation mode. Objects with periods of 225 minutes or more use the deep-space (SDP4) terms: lunar and solar
+ * perturbations, and the resonances of 12-hour and geosynchronous orbits.
+ * <p>
+ * The coefficients computed at initialization are packed per object, so that propagating an object reads one block
+ * of memory. The results of {@link #propagateAll(double, ForkJoinPool)} are stored as a structure of arrays, with
+ * positions and velocities in the TEME frame, in kilometers and kilometers per second. Objects are propagated in
+ * parallel chunks. The integrator of the resonant orbits keeps its state per object, so an object must not be
+ * propagated by two threads at once.
+ */
+public class SGP4Propagator {
+
+    /** Gravity models. **/
+    public enum Gravity {
+        /** WGS-72, the model the element sets are generated with. **/
+        WGS72(398600.8, 6378.135, 0.001082616, -0.00000253881, -0.00000165597),
+        /** WGS-84. **/
+        WGS84(398600.5, 6378.137, 0.00108262998905, -0.00000253215306, -0.00000161098761);
+
+        /** Gravitational parameter, in km³/s². **/
+        public final double mu;
+        /** Equatorial radius of the Earth, in km. **/
+        public final double radius;
+        /** Square root of mu, in Earth radii^1.5 per minute. **/
+        public final double xke;
+        public final double j2, j3, j4, j3oj2;
+
+        Gravity(double mu, double radius, double j2, double j3, double j4) {
+            this.mu = mu;
+            this.radius = radius;
+            this.xke = 60.0 / Math.sqrt(radius * radius * radius / mu);
+            this.j2 = j2;
+            this.j3 = j3;
+            this.j4 = j4;
+            this.j3oj2 = j3 / j2;
+        }
+    }
+
+    /** Propagation succeeded. **/
+    public static final int OK = 0;
+    /** Mean eccentricity out of range. **/
+    public static final int ERROR_ECCENTRICITY = 1;
+    /** Mean motion is negative. **/
+    public static final int ERROR_MEAN_MOTION = 2;
+    /** Perturbed eccentricity out of range. **/
+    public static final int ERROR_PERTURBED_ECCENTRICITY = 3;
+    /** Semi-latus rectum is negative. **/
+    public static final int ERROR_SEMI_LATUS_RECTUM = 4;
+    /** The orbit has decayed. **/
+    public static final int ERROR_DECAYED = 6;
+
+    /** Number of objects propagated per task. **/
+    private static final int CHUNK = 256;
+
+    private static final double TWO_PI = 2.0 * Math.PI;
+    private static final double X2O3 = 2.0 / 3.0;
+    private static final double TEMP4 = 1.5e-12;
+
+    // Packed near-earth coefficients.
+    private static final int NO = 0, ECCO = 1, INCLO = 2, NODEO = 3, ARGPO = 4, MO = 5, BSTAR = 6, MDOT = 7, ARGPDOT = 8,
+            NODEDOT = 9, NODECF = 10, CC1 = 11, CC4 = 12, CC5 = 13, T2COF = 14, T3COF = 15, T4COF = 16, T5COF = 17, OMGCOF = 18,
+            ETA = 19, XMCOF = 20, DELMO = 21, D2 = 22, D3 = 23, D4 = 24, SINMAO = 25, CON41 = 26, X1MTH2 = 27, X7THM1 = 28,
+            AYCOF = 29, XLCOF = 30, ISIMP = 31;
+    private static final int N_NEAR = 32;
+
+    // Packed deep-space coefficients.
+    private static final int IREZ = 0, GSTO = 1, D2201 = 2, D2211 = 3, D3210 = 4, D3222 = 5, D4410 = 6, D4422 = 7, D5220 = 8,
+            D5232 = 9, D5421 = 10, D5433 = 11, DEDT = 12, DEL1 = 13, DEL2 = 14, DEL3 = 15, DIDT = 16, DMDT = 17, DNODT = 18,
+            DOMDT = 19, XFACT = 20, XLAMO = 21, E3 = 22, EE2 = 23, SE2 = 24, SE3 = 25, SGH2 = 26, SGH3 = 27, SGH4 = 28, SH2 = 29,
+            SH3 = 30, SI2 = 31, SI3 = 32, SL2 = 33, SL3 = 34, SL4 = 35, XGH2 = 36, XGH3 = 37, XGH4 = 38, XH2 = 39, XH3 = 40,
+            XI2 = 41, XI3 = 42, XL2 = 43, XL3 = 44, XL4 = 45, ZMOL = 46, ZMOS = 47,
+    // State of the resonance integrator.
+    ATIME = 48, XLI = 49, XNI = 50;
+    private static final int N_DEEP = 51;
+
+    private final TLECatalog catalog;
+    private final Gravity gravity;
+    private final double[] near;
+    /** Offset of the deep-space coefficients of each object, or -1 for near-earth objects. **/
+    private final int[] deepOffset;
+    private final double[] deep;
+
+    /** Positions of the last batch propagation, in km. **/
+    public final double[] x, y, z;
+    /** Velocities of the last batch propagation, in km/s. **/
+    public final double[] vx, vy, vz;
+    /** Error codes of the last batch propagation, {@link #OK} if the object was propagated. **/
+    public final int[] error;
+    /** Time of the last batch propagation, as a Julian date in UTC, or NaN if there was none. **/
+    private volatile double time = Double.NaN;
+
+    /**
+     * Creates a propagator for the given catalog, with the WGS-72 gravity model.
+     *
+     * @param catalog The catalog.
+     */
+    public SGP4Propagator(TLECatalog catalog) {
+        this(catalog, Gravity.WGS72);
+    }
+
+    /**
+     * Creates a propagator for the given catalog, and initializes all the objects.
+     *
+     * @param catalog The catalog.
+     * @param gravity The gravity model.
+     */
+    public SGP4Propagator(TLECatalog catalog, Gravity gravity) {
+        this.catalog = catalog;
+        this.gravity = gravity;
+        int n = catalog.size;
+        near = new double[n * N_NEAR];
+        deepOffset = new int[n];
+        int nDeep = 0;
+        for (int i = 0; i < n; i++) {
+            deepOffset[i] = isDeepSpace(catalog.meanMotion[i], catalog.eccentricity[i], catalog.inclination[i]) ? nDeep++ * N_DEEP : -1;
+        }
+        deep = new double[nDeep * N_DEEP];
+        x = new double[n];
+        y = new double[n];
+        z = new double[n];
+        vx = new double[n];
+        vy = new double[n];
+        vz = new double[n];
+        error = new int[n];
+        for (int i = 0; i < n; i++) {
+            init(i);
+        }
+    }
+
+    public TLECatalog getCatalog() {
+        return catalog;
+    }
+
+    public int size() {
+        return catalog.size;
+    }
+
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * Checks whether an object uses the deep-space terms.
+     *
+     * @param i The index of the object.
+     *
+     * @return Whether its period is 225 minutes or longer.
+     */
+    public boolean isDeepSpace(int i) {
+        return deepOffset[i] >= 0;
+    }
+
+    /** Un-Kozais the mean motion, as in the initialization, to decide whether the object is deep-space. **/
+    private boolean isDeepSpace(double no, double ecco, double inclo) {
+        double cosio = Math.cos(inclo);
+        double omeosq = 1.0 - ecco * ecco;
+        double ak = Math.pow(gravity.xke / no, X2O3);
+        double d1 = 0.75 * gravity.j2 * (3.0 * cosio * cosio - 1.0) / (Math.sqrt(omeosq) * omeosq);
+        double del = d1 / (ak * ak);
+        double adel = ak * (1.0 - del * del - del * (1.0 / 3.0 + 134.0 * del * del / 81.0));
+        del = d1 / (adel * adel);
+        no = no / (1.0 + del);
+        return TWO_PI / no >= 225.0;
+    }
+
+    /**
+     * Propagates all the objects to the given time, in parallel chunks, and stores the results in {@link #x},
+     * {@link #y}, {@link #z}, {@link #vx}, {@link #vy}, {@link #vz} and {@link #error}.
+     *
+     * @param jd   The time, as a Julian date in UTC.
+     * @param pool The pool to run the chunks in, or null to run them in the calling thread.
+     *
+     * @return The number of objects that could not be propagated.
+     */
+    public int propagateAll(double jd, ForkJoinPool pool) {
+        var task = new Chunk(jd, 0, catalog.size);
+        if (pool == null) {
+            task.compute();
+        } else {
+            pool.invoke(task);
+        }
+        time = jd;
+        int errors = 0;
+        for (int e : error) {
+            if (e != OK) {
+                errors++;
+            }
+        }
+        return errors;
+    }
+
+    private final class Chunk extends RecursiveAction {
+        private final double jd;
+        private final int from, to;
+
+        Chunk(double jd, int from, int to) {
+            this.jd = jd;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK) {
+                for (int i = from; i < to; i++) {
+                    double tsince = (jd - catalog.epochJD[i]) * 1440.0;
+                    error[i] = propagate(i, tsince, x, y, z, vx, vy, vz, i);
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Chunk(jd, from, mid), new Chunk(jd, mid, to));
+            }
+        }
+    }
+
+    /**
+     * Propagates one object.
+     *
+     * @param i      The index of the object.
+     * @param tsince The time since the epoch of the element set, in minutes.
+     * @param r      The position, in km. Must have three elements.
+     * @param v      The velocity, in km/s. Must have three elements.
+     *
+     * @return The error code, {@link #OK} if the object was propagated.
+     */
+    public int propagate(int i, double tsince, double[] r, double[] v) {
+        double[] rx = new double[1], ry = new double[1], rz = new double[1], ux = new double[1], uy = new double[1], uz = new double[1];
+        int err = propagate(i, tsince, rx, ry, rz, ux, uy, uz, 0);
+        r[0] = rx[0];
+        r[1] = ry[0];
+        r[2] = rz[0];
+        v[0] = ux[0];
+        v[1] = uy[0];
+        v[2] = uz[0];
+        return err;
+    }
+
+    /**
+     * Initializes the coefficients of an object. This is sgp4init, for the improved operation mode.
+     */
+    private void init(int i) {
+        final double radius = gravity.radius, xke = gravity.xke, j2 = gravity.j2, j4 = gravity.j4, j3oj2 = gravity.j3oj2;
+        final int o = i * N_NEAR;
+        final double epoch = catalog.epoch1950[i];
+        final double ecco = catalog.eccentricity[i], inclo = catalog.inclination[i], nodeo = catalog.ascendingNode[i];
+        final double argpo = catalog.argOfPerigee[i], mo = catalog.meanAnomaly[i], bstar = catalog.bstar[i];
+        double no = catalog.meanMotion[i];
+
+        final double ss = 78.0 / radius + 1.0;
+        final double qzms2t = Math.pow((120.0 - 78.0) / radius, 4);
+
+        // initl.
+        double eccsq = ecco * ecco;
+        double omeosq = 1.0 - eccsq;
+        double rteosq = Math.sqrt(omeosq);
+        double cosio = Math.cos(inclo);
+        double cosio2 = cosio * cosio;
+        double ak = Math.pow(xke / no, X2O3);
+        double d1 = 0.75 * j2 * (3.0 * cosio2 - 1.0) / (rteosq * omeosq);
+        double del = d1 / (ak * ak);
+        double adel = ak * (1.0 - del * del - del * (1.0 / 3.0 + 134.0 * del * del / 81.0));
+        del = d1 / (adel * adel);
+        no = no / (1.0 + del);
+        double ao = Math.pow(xke / no, X2O3);
+        double sinio = Math.sin(inclo);
+        double po = ao * omeosq;
+        double con42 = 1.0 - 5.0 * cosio2;
+        double con41 = -con42 - cosio2 - cosio2;
+        double posq = po * po;
+        double rp = ao * (1.0 - ecco);
+        double gsto = gstime(epoch + 2433281.5);
+
+        near[o + NO] = no;
+        near[o + ECCO] = ecco;
+        near[o + INCLO] = inclo;
+        near[o + NODEO] = nodeo;
+        near[o + ARGPO] = argpo;
+        near[o + MO] = mo;
+        near[o + BSTAR] = bstar;
+        near[o + CON41] = con41;
+
+        if (omeosq >= 0.0 || no >= 0.0) {
+            boolean isimp = rp < (220.0 / radius + 1.0);
+            double sfour = ss;
+            double qzms24 = qzms2t;
+            double perige = (rp - 1.0) * radius;
+            // For perigees below 156 km, s and qoms2t are altered.
+            if (perige < 156.0) {
+                sfour = perige - 78.0;
+                if (perige < 98.0) {
+                    sfour = 20.0;
+                }
+                qzms24 = Math.pow((120.0 - sfour) / radius, 4);
+                sfour = sfour / radius + 1.0;
+            }
+            double pinvsq = 1.0 / posq;
+
+            double tsi = 1.0 / (ao - sfour);
+            double eta = ao * ecco * tsi;
+            double etasq = eta * eta;
+            double eeta = ecco * eta;
+            double psisq = Math.abs(1.0 - etasq);
+            double coef = qzms24 * Math.pow(tsi, 4.0);
+            double coef1 = coef / Math.pow(psisq, 3.5);
+            double cc2 = coef1 * no * (ao * (1.0 + 1.5 * etasq + eeta * (4.0 + etasq)) + 0.375 * j2 * tsi / psisq * con41 * (8.0 + 3.0 * etasq * (8.0 + etasq)));
+            double cc1 = bstar * cc2;
+            double cc3 = 0.0;
+            if (ecco > 1.0e-4) {
+                cc3 = -2.0 * coef * tsi * j3oj2 * no * sinio / ecco;
+            }
+            double x1mth2 = 1.0 - cosio2;
+            double cc4 = 2.0 * no * coef1 * ao * omeosq * (eta * (2.0 + 0.5 * etasq) + ecco * (0.5 + 2.0 * etasq) - j2 * tsi / (ao * psisq) * (-3.0 * con41 * (1.0 - 2.0 * eeta + etasq * (1.5 - 0.5 * eeta)) + 0.75 * x1mth2 * (2.0 * etasq - eeta * (1.0 + etasq)) * Math.cos(2.0 * argpo)));
+            double cc5 = 2.0 * coef1 * ao * omeosq * (1.0 + 2.75 * (etasq + eeta) + eeta * etasq);
+            double cosio4 = cosio2 * cosio2;
+            double temp1 = 1.5 * j2 * pinvsq * no;
+            double temp2 = 0.5 * temp1 * j2 * pinvsq;
+            double temp3 = -0.46875 * j4 * pinvsq * pinvsq * no;
+            double mdot = no + 0.5 * temp1 * rteosq * con41 + 0.0625 * temp2 * rteosq * (13.0 - 78.0 * cosio2 + 137.0 * cosio4);
+            double argpdot = -0.5 * temp1 * con42 + 0.0625 * temp2 * (7.0 - 114.0 * cosio2 + 395.0 * cosio4) + temp3 * (3.0 - 36.0 * cosio2 + 49.0 * cosio4);
+            double xhdot1 = -temp1 * cosio;
+            double nodedot = xhdot1 + (0.5 * temp2 * (4.0 - 19.0 * cosio2) + 2.0 * temp3 * (3.0 - 7.0 * cosio2)) * cosio;
+            double xpidot = argpdot + nodedot;
+            double omgcof = bstar * cc3 * Math.cos(argpo);
+            double xmcof = 0.0;
+            if (ecco > 1.0e-4) {
+                xmcof = -X2O3 * coef * bstar / eeta;
+            }
+            double nodecf = 3.5 * omeosq * xhdot1 * cc1;
+            double t2cof = 1.5 * cc1;
+            double xlcof;
+            if (Math.abs(cosio + 1.0) > 1.5e-12) {
+                xlcof = -0.25 * j3oj2 * sinio * (3.0 + 5.0 * cosio) / (1.0 + cosio);
+            } else {
+                xlcof = -0.25 * j3oj2 * sinio * (3.0 + 5.0 * cosio) / TEMP4;
+            }
+            double aycof = -0.5 * j3oj2 * sinio;
+            double delmotemp = 1.0 + eta * Math.cos(mo);
+            double delmo = delmotemp * delmotemp * delmotemp;
+            double sinmao = Math.sin(mo);
+            double x7thm1 = 7.0 * cosio2 - 1.0;
+
+            near[o + MDOT] = mdot;
+            near[o + ARGPDOT] = argpdot;
+            near[o + NODEDOT] = nodedot;
+            near[o + NODECF] = nodecf;
+            near[o + CC1] = cc1;
+            near[o + CC4] = cc4;
+            near[o + CC5] = cc5;
+            near[o + T2COF] = t2cof;
+            near[o + OMGCOF] = omgcof;
+            near[o + ETA] = eta;
+            near[o + XMCOF] = xmcof;
+            near[o + DELMO] = delmo;
+            near[o + SINMAO] = sinmao;
+            near[o + X1MTH2] = x1mth2;
+            near[o + X7THM1] = x7thm1;
+            near[o + AYCOF] = aycof;
+            near[o + XLCOF] = xlcof;
+
+            // Deep space initialization.
+            int d = deepOffset[i];
+            if (d >= 0) {
+                isimp = true;
+                initDeepSpace(d, epoch, ecco, eccsq, inclo, nodeo, argpo, mo, no, mdot, nodedot, xpidot, gsto);
+            }
+
+            // Higher order terms, only for perigees above 220 km.
+            if (!isimp) {
+                double cc1sq = cc1 * cc1;
+                double d2 = 4.0 * ao * tsi * cc1sq;
+                double temp = d2 * tsi * cc1 / 3.0;
+                double d3 = (17.0 * ao + sfour) * temp;
+                double d4 = 0.5 * temp * ao * tsi * (221.0 * ao + 31.0 * sfour) * cc1;
+                near[o + D2] = d2;
+                near[o + D3] = d3;
+                near[o + D4] = d4;
+                near[o + T3COF] = d2 + 2.0 * cc1sq;
+                near[o + T4COF] = 0.25 * (3.0 * d3 + cc1 * (12.0 * d2 + 10.0 * cc1sq));
+                near[o + T5COF] = 0.2 * (3.0 * d4 + 12.0 * cc1 * d3 + 6.0 * d2 * d2 + 15.0 * cc1sq * (2.0 * d2 + cc1sq));
+            }
+            near[o + ISIMP] = isimp ? 1.0 : 0.0;
+        }
+    }
+
+    /**
+     * Initializes the deep-space coefficients. These are dscom and dsinit.
+     */
+    private void initDeepSpace(int d,
+                               double epoch,
+                               double ecco,
+                               double eccsq,
+                               double inclo,
+                               double nodeo,
+                               double argpo,
+                               double mo,
+                               double no,
+                               double mdot,
+                               double nodedot,
+                               double xpidot,
+                               double gsto) {
+        final double xke = gravity.xke;
+
+        // dscom, at t = 0.
+        final double zes = 0.01675, zel = 0.05490, c1ss = 2.9864797e-6, c1l = 4.7968065e-7, zsinis = 0.39785416, zcosis = 0.91744867,
+                zcosgs = 0.1945905, zsings = -0.98088458;
+
+        double nm = no;
+        double em = ecco;
+        double snodm = Math.sin(nodeo);
+        double cnodm = Math.cos(nodeo);
+        double sinomm = Math.sin(argpo);
+        double cosomm = Math.cos(argpo);
+        double sinim = Math.sin(inclo);
+        double cosim = Math.cos(inclo);
+        double emsq = em * em;
+        double betasq = 1.0 - emsq;
+        double rtemsq = Math.sqrt(betasq);
+
+        double day = epoch + 18261.5;
+        double xnodce = (4.5236020 - 9.2422029e-4 * day) % TWO_PI;
+        double stem = Math.sin(xnodce);
+        double ctem = Math.cos(xnodce);
+        double zcosil = 0.91375164 - 0.03568096 * ctem;
+        double zsinil = Math.sqrt(1.0 - zcosil * zcosil);
+        double zsinhl = 0.089683511 * stem / zsinil;
+        double zcoshl = Math.sqrt(1.0 - zsinhl * zsinhl);
+        double gam = 5.8351514 + 0.0019443680 * day;
+        double zx = 0.39785416 * stem / zsinil;
+        double zy = zcoshl * ctem + 0.91744867 * zsinhl * stem;
+        zx = Math.atan2(zx, zy);
+        zx = gam + zx - xnodce;
+        double zcosgl = Math.cos(zx);
+        double zsingl = Math.sin(zx);
+
+        double zcosg = zcosgs, zsing = zsings, zcosi = zcosis, zsini = zsinis, zcosh = cnodm, zsinh = snodm, cc = c1ss;
+        double xnoi = 1.0 / nm;
+
+        double s1 = 0, s2 = 0, s3 = 0, s4 = 0, s5 = 0, s6 = 0, s7 = 0;
+        double ss1 = 0, ss2 = 0, ss3 = 0, ss4 = 0, ss5 = 0, ss6 = 0, ss7 = 0;
+        double z1 = 0, z2 = 0, z3 = 0, z11 = 0, z12 = 0, z13 = 0, z21 = 0, z22 = 0, z23 = 0, z31 = 0, z32 = 0, z33 = 0;
+        double sz1 = 0, sz2 = 0, sz3 = 0, sz11 = 0, sz12 = 0, sz13 = 0, sz21 = 0, sz22 = 0, sz23 = 0, sz31 = 0, sz32 = 0, sz33 = 0;
+
+        // Solar terms first, then lunar.
+        for (int lsflg = 1; lsflg <= 2; lsflg++) {
+            double a1 = zcosg * zcosh + zsing * zcosi * zsinh;
+            double a3 = -zsing * zcosh + zcosg * zcosi * zsinh;
+            double a7 = -zcosg * zsinh + zsing * zcosi * zcosh;
+            double a8 = zsing * zsini;
+            double a9 = zsing * zsinh + zcosg * zcosi * zcosh;
+            double a10 = zcosg * zsini;
+            double a2 = cosim * a7 + sinim * a8;
+            double a4 = cosim * a9 + sinim * a10;
+            double a5 = -sinim * a7 + cosim * a8;
+            double a6 = -sinim * a9 + cosim * a10;
+
+            double x1 = a1 * cosomm + a2 * sinomm;
+            double x2 = a3 * cosomm + a4 * sinomm;
+            double x3 = -a1 * sinomm + a2 * cosomm;
+            double x4 = -a3 * sinomm + a4 * cosomm;
+            double x5 = a5 * sinomm;
+            double x6 = a6 * sinomm;
+            double x7 = a5 * cosomm;
+            double x8 = a6 * cosomm;
+
+            z31 = 12.0 * x1 * x1 - 3.0 * x3 * x3;
+            z32 = 24.0 * x1 * x2 - 6.0 * x3 * x4;
+            z33 = 12.0 * x2 * x2 - 3.0 * x4 * x4;
+            z1 = 3.0 * (a1 * a1 + a2 * a2) + z31 * emsq;
+            z2 = 6.0 * (a1 * a3 + a2 * a4) + z32 * emsq;
+            z3 = 3.0 * (a3 * a3 + a4 * a4) + z33 * emsq;
+            z11 = -6.0 * a1 * a5 + emsq * (-24.0 * x1 * x7 - 6.0 * x3 * x5);
+            z12 = -6.0 * (a1 * a6 + a3 * a5) + emsq * (-24.0 * (x2 * x7 + x1 * x8) - 6.0 * (x3 * x6 + x4 * x5));
+            z13 = -6.0 * a3 * a6 + emsq * (-24.0 * x2 * x8 - 6.0 * x4 * x6);
+            z21 = 6.0 * a2 * a5 + emsq * (24.0 * x1 * x5 - 6.0 * x3 * x7);
+            z22 = 6.0 * (a4 * a5 + a2 * a6) + emsq * (24.0 * (x2 * x5 + x1 * x6) - 6.0 * (x4 * x7 + x3 * x8));
+            z23 = 6.0 * a4 * a6 + emsq * (24.0 * x2 * x6 - 6.0 * x4 * x8);
+            z1 = z1 + z1 + betasq * z31;
+            z2 = z2 + z2 + betasq * z32;
+            z3 = z3 + z3 + betasq * z33;
+            s3 = cc * xnoi;
+            s2 = -0.5 * s3 / rtemsq;
+            s4 = s3 * rtemsq;
+            s1 = -15.0 * em * s4;
+            s5 = x1 * x3 + x2 * x4;
+            s6 = x2 * x3 + x1 * x4;
+            s7 = x2 * x4 - x1 * x3;
+
+            if (lsflg == 1) {
+                ss1 = s1;
+                ss2 = s2;
+                ss3 = s3;
+                ss4 = s4;
+                ss5 = s5;
+                ss6 = s6;
+                ss7 = s7;
+                sz1 = z1;
+                sz2 = z2;
+                sz3 = z3;
+                sz11 = z11;
+                sz12 = z12;
+                sz13 = z13;
+                sz21 = z21;
+                sz22 = z22;
+                sz23 = z23;
+                sz31 = z31;
+                sz32 = z32;
+                sz33 = z33;
+                zcosg = zcosgl;
+                zsing = zsingl;
+                zcosi = zcosil;
+                zsini = zsinil;
+                zcosh = zcoshl * cnodm + zsinhl * snodm;
+                zsinh = snodm * zcoshl - cnodm * zsinhl;
+                cc = c1l;
+            }
+        }
+
+        deep[d + ZMOL] = (4.7199672 + 0.22997150 * day - gam) % TWO_PI;
+        deep[d + ZMOS] = (6.2565837 + 0.017201977 * day) % TWO_PI;
+
+        // Solar terms.
+        deep[d + SE2] = 2.0 * ss1 * ss6;
+        deep[d + SE3] = 2.0 * ss1 * ss7;
+        deep[d + SI2] = 2.0 * ss2 * sz12;
+        deep[d + SI3] = 2.0 * ss2 * (sz13 - sz11);
+        deep[d + SL2] = -2.0 * ss3 * sz2;
+        deep[d + SL3] = -2.0 * ss3 * (sz3 - sz1);
+        deep[d + SL4] = -2.0 * ss3 * (-21.0 - 9.0 * emsq) * zes;
+        deep[d + SGH2] = 2.0 * ss4 * sz32;
+        deep[d + SGH3] = 2.0 * ss4 * (sz33 - sz31);
+        deep[d + SGH4] = -18.0 * ss4 * zes;
+        deep[d + SH2] = -2.0 * ss2 * sz22;
+        deep[d + SH3] = -2.0 * ss2 * (sz23 - sz21);
+
+        // Lunar terms.
+        deep[d + EE2] = 2.0 * s1 * s6;
+        deep[d + E3] = 2.0 * s1 * s7;
+        deep[d + XI2] = 2.0 * s2 * z12;
+        deep[d + XI3] = 2.0 * s2 * (z13 - z11);
+        deep[d + XL2] = -2.0 * s3 * z2;
+        deep[d + XL3] = -2.0 * s3 * (z3 - z1);
+        deep[d + XL4] = -2.0 * s3 * (-21.0 - 9.0 * emsq) * zel;
+        deep[d + XGH2] = 2.0 * s4 * z32;
+        deep[d + XGH3] = 2.0 * s4 * (z33 - z31);
+        deep[d + XGH4] = -18.0 * s4 * zel;
+        deep[d + XH2] = -2.0 * s2 * z22;
+        deep[d + XH3] = -2.0 * s2 * (z23 - z21);
+
+        // dsinit, at t = 0.
+        final double q22 = 1.7891679e-6, q31 = 2.1460748e-6, q33 = 2.2123015e-7, root22 = 1.7891679e-6, root44 = 7.3636953e-9,
+                root54 = 2.1765803e-9, rptim = 4.37526908801129966e-3, root32 = 3.7393792e-7, root52 = 1.1428639e-7,
+                znl = 1.5835218e-4, zns = 1.19459e-5;
+
+        int irez = 0;
+        if (nm < 0.0052359877 && nm > 0.0034906585) {
+            irez = 1;
+        }
+        if (nm >= 8.26e-3 && nm <= 9.24e-3 && em >= 0.5) {
+            irez = 2;
+        }
+
+        // Solar terms.
+        double ses = ss1 * zns * ss5;
+        double sis = ss2 * zns * (sz11 + sz13);
+        double sls = -zns * ss3 * (sz1 + sz3 - 14.0 - 6.0 * emsq);
+        double sghs = ss4 * zns * (sz31 + sz33 - 6.0);
+        double shs = -zns * ss2 * (sz21 + sz23);
+        if (inclo < 5.2359877e-2 || inclo > Math.PI - 5.2359877e-2) {
+            shs = 0.0;
+        }
+        if (sinim != 0.0) {
+            shs = shs / sinim;
+        }
+        double sgs = sghs - cosim * shs;
+
+        // Lunar terms.
+        double dedt = ses + s1 * znl * s5;
+        double didt = sis + s2 * znl * (z11 + z13);
+        double dmdt = sls - znl * s3 * (z1 + z3 - 14.0 - 6.0 * emsq);
+        double sghl = s4 * znl * (z31 + z33 - 6.0);
+        double shll = -znl * s2 * (z21 + z23);
+        if (inclo < 5.2359877e-2 || inclo > Math.PI - 5.2359877e-2) {
+            shll = 0.0;
+        }
+        double domdt = sgs + sghl;
+        double dnodt = shs;
+        if (sinim != 0.0) {
+            domdt = domdt - cosim / sinim * shll;
+            dnodt = dnodt + shll / sinim;
+        }
+
+        deep[d + IREZ] = irez;
+        deep[d + GSTO] = gsto;
+        deep[d + DEDT] = dedt;
+        deep[d + DIDT] = didt;
+        deep[d + DMDT] = dmdt;
+        deep[d + DNODT] = dnodt;
+        deep[d + DOMDT] = domdt;
+
+        // Deep space resonance effects.
+        double theta = gsto % TWO_PI;
+        if (irez != 0) {
+            double aonv = Math.pow(nm / xke, X2O3);
+
+            if (irez == 2) {
+                // Geopotential resonance for 12-hour orbits.
+                double cosisq = cosim * cosim;
+                em = ecco;
+                emsq = eccsq;
+                double eoc = em * emsq;
+                double g201 = -0.306 - (em - 0.64) * 0.440;
+                double g211, g310, g322, g410, g422, g520, g521, g532, g533;
+                if (em <= 0.65) {
+                    g211 = 3.616 - 13.2470 * em + 16.2900 * emsq;
+                    g310 = -19.302 + 117.3900 * em - 228.4190 * emsq + 156.5910 * eoc;
+                    g322 = -18.9068 + 109.7927 * em - 214.6334 * emsq + 146.5816 * eoc;
+                    g410 = -41.122 + 242.6940 * em - 471.0940 * emsq + 313.9530 * eoc;
+                    g422 = -146.407 + 841.8800 * em - 1629.014 * emsq + 1083.4350 * eoc;
+                    g520 = -532.114 + 3017.977 * em - 5740.032 * emsq + 3708.2760 * eoc;
+                } else {
+                    g211 = -72.099 + 331.819 * em - 508.738 * emsq + 266.724 * eoc;
+                    g310 = -346.844 + 1582.851 * em - 2415.925 * emsq + 1246.113 * eoc;
+                    g322 = -342.585 + 1554.908 * em - 2366.899 * emsq + 1215.972 * eoc;
+                    g410 = -1052.797 + 4758.686 * em - 7193.992 * emsq + 3651.957 * eoc;
+                    g422 = -3581.690 + 16178.110 * em - 24462.770 * emsq + 12422.520 * eoc;
+                    if (em > 0.715) {
+                        g520 = -5149.66 + 29936.92 * em - 54087.36 * emsq + 31324.56 * eoc;
+                    } else {
+                        g520 = 1464.74 - 4664.75 * em + 3763.64 * emsq;
+                    }
+                }
+                if (em < 0.7) {
+                    g533 = -919.22770 + 4988.6100 * em - 9064.7700 * emsq + 5542.21 * eoc;
+                    g521 = -822.71072 + 4568.6173 * em - 8491.4146 * emsq + 5337.524 * eoc;
+                    g532 = -853.66600 + 4690.2500 * em - 8624.7700 * emsq + 5341.4 * eoc;
+                } else {
+                    g533 = -37995.780 + 161616.52 * em - 229838.20 * emsq + 109377.94 * eoc;
+                    g521 = -51752.104 + 218913.95 * em - 309468.16 * emsq + 146349.42 * eoc;
+                    g532 = -40023.880 + 170470.89 * em - 242699.48 * emsq + 115605.82 * eoc;
+                }
+
+                double sini2 = sinim * sinim;
+                double f220 = 0.75 * (1.0 + 2.0 * cosim + cosisq);
+                double f221 = 1.5 * sini2;
+                double f321 = 1.875 * sinim * (1.0 - 2.0 * cosim - 3.0 * cosisq);
+                double f322 = -1.875 * sinim * (1.0 + 2.0 * cosim - 3.0 * cosisq);
+                double f441 = 35.0 * sini2 * f220;
+                double f442 = 39.3750 * sini2 * sini2;
+                double f522 = 9.84375 * sinim * (sini2 * (1.0 - 2.0 * cosim - 5.0 * cosisq) + 0.33333333 * (-2.0 + 4.0 * cosim + 6.0 * cosisq));
+                double f523 = sinim * (4.92187512 * sini2 * (-2.0 - 4.0 * cosim + 10.0 * cosisq) + 6.56250012 * (1.0 + 2.0 * cosim - 3.0 * cosisq));
+                double f542 = 29.53125 * sinim * (2.0 - 8.0 * cosim + cosisq * (-12.0 + 8.0 * cosim + 10.0 * cosisq));
+                double f543 = 29.53125 * sinim * (-2.0 - 8.0 * cosim + cosisq * (12.0 + 8.0 * cosim - 10.0 * cosisq));
+                double xno2 = nm * nm;
+                double ainv2 = aonv * aonv;
+                double temp1 = 3.0 * xno2 * ainv2;
+                double temp = temp1 * root22;
+                deep[d + D2201] = temp * f220 * g201;
+                deep[d + D2211] = temp * f221 * g211;
+                temp1 = temp1 * aonv;
+                temp = temp1 * root32;
+                deep[d + D3210] = temp * f321 * g310;
+                deep[d + D3222] = temp * f322 * g322;
+                temp1 = temp1 * aonv;
+                temp = 2.0 * temp1 * root44;
+                deep[d + D4410] = temp * f441 * g410;
+                deep[d + D4422] = temp * f442 * g422;
+                temp1 = temp1 * aonv;
+                temp = temp1 * root52;
+                deep[d + D5220] = temp * f522 * g520;
+                deep[d + D5232] = temp * f523 * g532;
+                temp = 2.0 * temp1 * root54;
+                deep[d + D5421] = temp * f542 * g521;
+                deep[d + D5433] = temp * f543 * g533;
+                deep[d + XLAMO] = (mo + nodeo + nodeo - theta - theta) % TWO_PI;
+                deep[d + XFACT] = mdot + dmdt + 2.0 * (nodedot + dnodt - rptim) - no;
+            } else {
+                // Synchronous resonance terms.
+                double g200 = 1.0 + emsq * (-2.5 + 0.8125 * emsq);
+                double g310 = 1.0 + 2.0 * emsq;
+                double g300 = 1.0 + emsq * (-6.0 + 6.60937 * emsq);
+                double f220 = 0.75 * (1.0 + cosim) * (1.0 + cosim);
+                double f311 = 0.9375 * sinim * sinim * (1.0 + 3.0 * cosim) - 0.75 * (1.0 + cosim);
+                double f330 = 1.0 + cosim;
+                f330 = 1.875 * f330 * f330 * f330;
+                double del1 = 3.0 * nm * nm * aonv * aonv;
+                deep[d + DEL2] = 2.0 * del1 * f220 * g200 * q22;
+                deep[d + DEL3] = 3.0 * del1 * f330 * g300 * q33 * aonv;
+                deep[d + DEL1] = del1 * f311 * g310 * q31 * aonv;
+                deep[d + XLAMO] = (mo + nodeo + argpo - theta) % TWO_PI;
+                deep[d + XFACT] = mdot + xpidot - rptim + dmdt + domdt + dnodt - no;
+            }
+            deep[d + XLI] = deep[d + XLAMO];
+            deep[d + XNI] = no;
+            deep[d + ATIME] = 0.0;
+        }
+    }
+
+    /**
+     * Propagates one object, and stores the results at the given index of the output arrays. This is sgp4.
+     *
+     * @return The error code.
+     */
+    private int propagate(int i,
+                          double t,
+                          double[] rx,
+                          double[] ry,
+                          double[] rz,
+                          double[] ux,
+                          double[] uy,
+                          double[] uz,
+                          int k) {
+        final double radius = gravity.radius, xke = gravity.xke, j2 = gravity.j2, j3oj2 = gravity.j3oj2;
+        final double vkmpersec = radius * xke / 60.0;
+        final int o = i * N_NEAR;
+        final double[] c = near;
+
+        final double no = c[o + NO];
+        final double bstar = c[o + BSTAR];
+        double con41 = c[o + CON41], x1mth2 = c[o + X1MTH2], x7thm1 = c[o + X7THM1];
+
+        // Update for secular gravity and atmospheric drag.
+        double xmdf = c[o + MO] + c[o + MDOT] * t;
+        double argpdf = c[o + ARGPO] + c[o + ARGPDOT] * t;
+        double nodedf = c[o + NODEO] + c[o + NODEDOT] * t;
+        double argpm = argpdf;
+        double mm = xmdf;
+        double t2 = t * t;
+        double nodem = nodedf + c[o + NODECF] * t2;
+        double tempa = 1.0 - c[o + CC1] * t;
+        double tempe = bstar * c[o + CC4] * t;
+        double templ = c[o + T2COF] * t2;
+
+        if (c[o + ISIMP] == 0.0) {
+            double delomg = c[o + OMGCOF] * t;
+            double delmtemp = 1.0 + c[o + ETA] * Math.cos(xmdf);
+            double delm = c[o + XMCOF] * (delmtemp * delmtemp * delmtemp - c[o + DELMO]);
+            double temp = delomg + delm;
+            mm = xmdf + temp;
+            argpm = argpdf - temp;
+            double t3 = t2 * t;
+            double t4 = t3 * t;
+            tempa = tempa - c[o + D2] * t2 - c[o + D3] * t3 - c[o + D4] * t4;
+            tempe = tempe + bstar * c[o + CC5] * (Math.sin(mm) - c[o + SINMAO]);
+            templ = templ + c[o + T3COF] * t3 + t4 * (c[o + T4COF] + t * c[o + T5COF]);
+        }
+
+        double nm = no;
+        double em = c[o + ECCO];
+        double inclm = c[o + INCLO];
+        final int d = deepOffset[i];
+        if (d >= 0) {
+            // dspace.
+            final double[] s = deep;
+            final double rptim = 4.37526908801129966e-3;
+            em = em + s[d + DEDT] * t;
+            inclm = inclm + s[d + DIDT] * t;
+            argpm = argpm + s[d + DOMDT] * t;
+            nodem = nodem + s[d + DNODT] * t;
+            mm = mm + s[d + DMDT] * t;
+
+            int irez = (int) s[d + IREZ];
+            if (irez != 0) {
+                final double fasx2 = 0.13130908, fasx4 = 2.8843198, fasx6 = 0.37448087, g22 = 5.7686396, g32 = 0.95240898,
+                        g44 = 1.8014998, g52 = 1.0508330, g54 = 4.4108898, stepp = 720.0, stepn = -720.0, step2 = 259200.0;
+                double theta = (s[d + GSTO] + t * rptim) % TWO_PI;
+                double atime = s[d + ATIME], xli = s[d + XLI], xni = s[d + XNI];
+                // Restart the integration from the epoch if needed.
+                if (atime == 0.0 || t * atime <= 0.0 || Math.abs(t) < Math.abs(atime)) {
+                    atime = 0.0;
+                    xni = no;
+                    xli = s[d + XLAMO];
+                }
+                double delt = t > 0.0 ? stepp : stepn;
+                double ft;
+                double xndt, xldot, xnddt;
+                while (true) {
+                    if (irez != 2) {
+                        // Near-synchronous resonance terms.
+                        xndt = s[d + DEL1] * Math.sin(xli - fasx2) + s[d + DEL2] * Math.sin(2.0 * (xli - fasx4)) + s[d + DEL3] * Math.sin(3.0 * (xli - fasx6));
+                        xldot = xni + s[d + XFACT];
+                        xnddt = s[d + DEL1] * Math.cos(xli - fasx2) + 2.0 * s[d + DEL2] * Math.cos(2.0 * (xli - fasx4)) + 3.0 * s[d + DEL3] * Math.cos(3.0 * (xli - fasx6));
+                        xnddt = xnddt * xldot;
+                    } else {
+                        // Near half-day resonance terms.
+                        double xomi = c[o + ARGPO] + c[o + ARGPDOT] * atime;
+                        double x2omi = xomi + xomi;
+                        double x2li = xli + xli;
+                        xndt = s[d + D2201] * Math.sin(x2omi + xli - g22) + s[d + D2211] * Math.sin(xli - g22)
+                                + s[d + D3210] * Math.sin(xomi + xli - g32) + s[d + D3222] * Math.sin(-xomi + xli - g32)
+                                + s[d + D4410] * Math.sin(x2omi + x2li - g44) + s[d + D4422] * Math.sin(x2li - g44)
+                                + s[d + D5220] * Math.sin(xomi + xli - g52) + s[d + D5232] * Math.sin(-xomi + xli - g52)
+                                + s[d + D5421] * Math.sin(xomi + x2li - g54) + s[d + D5433] * Math.sin(-xomi + x2li - g54);
+                        xldot = xni + s[d + XFACT];
+                        xnddt = s[d + D2201] * Math.cos(x2omi + xli - g22) + s[d + D2211] * Math.cos(xli - g22)
+                                + s[d + D3210] * Math.cos(xomi + xli - g32) + s[d + D3222] * Math.cos(-xomi + xli - g32)
+                                + s[d + D5220] * Math.cos(xomi + xli - g52) + s[d + D5232] * Math.cos(-xomi + xli - g52)
+                                + 2.0 * (s[d + D4410] * Math.cos(x2omi + x2li - g44) + s[d + D4422] * Math.cos(x2li - g44)
+                                + s[d + D5421] * Math.cos(xomi + x2li - g54) + s[d + D5433] * Math.cos(-xomi + x2li - g54));
+                        xnddt = xnddt * xldot;
+                    }
+                    if (Math.abs(t - atime) >= stepp) {
+                        xli = xli + xldot * delt + xndt * step2;
+                        xni = xni + xndt * delt + xnddt * step2;
+                        atime = atime + delt;
+                    } else {
+                        ft = t - atime;
+                        break;
+                    }
+                }
+                s[d + ATIME] = atime;
+                s[d + XLI] = xli;
+                s[d + XNI] = xni;
+
+                nm = xni + xndt * ft + xnddt * ft * ft * 0.5;
+                double xl = xli + xldot * ft + xnddt * ft * ft * 0.5;
+                if (irez != 1) {
+                    mm = xl - 2.0 * nodem + 2.0 * theta;
+                } else {
+                    mm = xl - nodem - argpm + theta;
+                }
+                double dndt = nm - no;
+                nm = no + dndt;
+            }
+        }
+
+        if (nm <= 0.0) {
+            return ERROR_MEAN_MOTION;
+        }
+        double am = Math.pow(xke / nm, X2O3) * tempa * tempa;
+        nm = xke / Math.pow(am, 1.5);
+        em = em - tempe;
+
+        if (em >= 1.0 || em < -0.001) {
+            return ERROR_ECCENTRICITY;
+        }
+        if (em < 1.0e-6) {
+            em = 1.0e-6;
+        }
+        mm = mm + no * templ;
+        double xlm = mm + argpm + nodem;
+
+        nodem = nodem % TWO_PI;
+        argpm = argpm % TWO_PI;
+        xlm = xlm % TWO_PI;
+        mm = (xlm - argpm - nodem) % TWO_PI;
+
+        // Lunar-solar periodics.
+        double sinim = Math.sin(inclm);
+        double cosim = Math.cos(inclm);
+        double ep = em;
+        double xincp = inclm;
+        double argpp = argpm;
+        double nodep = nodem;
+        double mp = mm;
+        double sinip = sinim;
+        double cosip = cosim;
+        double aycof = c[o + AYCOF];
+        double xlcof = c[o + XLCOF];
+        if (d >= 0) {
+            // dpper.
+            final double[] s = deep;
+            final double zns = 1.19459e-5, zes = 0.01675, znl = 1.5835218e-4, zel = 0.05490;
+            double zm = s[d + ZMOS] + zns * t;
+            double zf = zm + 2.0 * zes * Math.sin(zm);
+            double sinzf = Math.sin(zf);
+            double f2 = 0.5 * sinzf * sinzf - 0.25;
+            double f3 = -0.5 * sinzf * Math.cos(zf);
+            double ses = s[d + SE2] * f2 + s[d + SE3] * f3;
+            double sis = s[d + SI2] * f2 + s[d + SI3] * f3;
+            double sls = s[d + SL2] * f2 + s[d + SL3] * f3 + s[d + SL4] * sinzf;
+            double sghs = s[d + SGH2] * f2 + s[d + SGH3] * f3 + s[d + SGH4] * sinzf;
+            double shs = s[d + SH2] * f2 + s[d + SH3] * f3;
+            zm = s[d + ZMOL] + znl * t;
+            zf = zm + 2.0 * zel * Math.sin(zm);
+            sinzf = Math.sin(zf);
+            f2 = 0.5 * sinzf * sinzf - 0.25;
+            f3 = -0.5 * sinzf * Math.cos(zf);
+            double sel = s[d + EE2] * f2 + s[d + E3] * f3;
+            double sil = s[d + XI2] * f2 + s[d + XI3] * f3;
+            double sll = s[d + XL2] * f2 + s[d + XL3] * f3 + s[d + XL4] * sinzf;
+            double sghl = s[d + XGH2] * f2 + s[d + XGH3] * f3 + s[d + XGH4] * sinzf;
+            double shll = s[d + XH2] * f2 + s[d + XH3] * f3;
+            double pe = ses + sel;
+            double pinc = sis + sil;
+            double pl = sls + sll;
+            double pgh = sghs + sghl;
+            double ph = shs + shll;
+
+            xincp = xincp + pinc;
+            ep = ep + pe;
+            sinip = Math.sin(xincp);
+            cosip = Math.cos(xincp);
+
+            if (xincp >= 0.2) {
+                // Apply periodics directly.
+                ph = ph / sinip;
+                pgh = pgh - cosip * ph;
+                argpp = argpp + pgh;
+                nodep = nodep + ph;
+                mp = mp + pl;
+            } else {
+                // Apply periodics with the Lyddane modification.
+                double sinop = Math.sin(nodep);
+                double cosop = Math.cos(nodep);
+                double alfdp = sinip * sinop;
+                double betdp = sinip * cosop;
+                double dalf = ph * cosop + pinc * cosip * sinop;
+                double dbet = -ph * sinop + pinc * cosip * cosop;
+                alfdp = alfdp + dalf;
+                betdp = betdp + dbet;
+                nodep = nodep % TWO_PI;
+                double xls = mp + argpp + cosip * nodep;
+                double dls = pl + pgh - pinc * nodep * sinip;
+                xls = xls + dls;
+                double xnoh = nodep;
+                nodep = Math.atan2(alfdp, betdp);
+                if (Math.abs(xnoh - nodep) > Math.PI) {
+                    if (nodep < xnoh) {
+                        nodep = nodep + TWO_PI;
+                    } else {
+                        nodep = nodep - TWO_PI;
+                    }
+                }
+                mp = mp + pl;
+                argpp = xls - mp - cosip * nodep;
+            }
+
+            if (xincp < 0.0) {
+                xincp = -xincp;
+                nodep = nodep + Math.PI;
+                argpp = argpp - Math.PI;
+            }
+            if (ep < 0.0 || ep > 1.0) {
+                return ERROR_PERTURBED_ECCENTRICITY;
+            }
+            sinip = Math.sin(xincp);
+            cosip = Math.cos(xincp);
+            aycof = -0.5 * j3oj2 * sinip;
+            if (Math.abs(cosip + 1.0) > 1.5e-12) {
+                xlcof = -0.25 * j3oj2 * sinip * (3.0 + 5.0 * cosip) / (1.0 + cosip);
+            } else {
+                xlcof = -0.25 * j3oj2 * sinip * (3.0 + 5.0 * cosip) / TEMP4;
+            }
+        }
+
+        // Long period periodics.
+        double axnl = ep * Math.cos(argpp);
+        double temp = 1.0 / (am * (1.0 - ep * ep));
+        double aynl = ep * Math.sin(argpp) + temp * aycof;
+        double xl = mp + argpp + nodep + temp * xlcof * axnl;
+
+        // Solve Kepler's equation.
+        double u = (xl - nodep) % TWO_PI;
+        double eo1 = u;
+        double tem5 = 9999.9;
+        double sineo1 = 0, coseo1 = 0;
+        int ktr = 1;
+        while (Math.abs(tem5) >= 1.0e-12 && ktr <= 10) {
+            sineo1 = Math.sin(eo1);
+            coseo1 = Math.cos(eo1);
+            tem5 = 1.0 - coseo1 * axnl - sineo1 * aynl;
+            tem5 = (u - aynl * coseo1 + axnl * sineo1 - eo1) / tem5;
+            if (Math.abs(tem5) >= 0.95) {
+                tem5 = tem5 > 0.0 ? 0.95 : -0.95;
+            }
+            eo1 = eo1 + tem5;
+            ktr++;
+        }
+
+        // Short period preliminary quantities.
+        double ecose = axnl * coseo1 + aynl * sineo1;
+        double esine = axnl * sineo1 - aynl * coseo1;
+        double el2 = axnl * axnl + aynl * aynl;
+        double pl = am * (1.0 - el2);
+        if (pl < 0.0) {
+            return ERROR_SEMI_LATUS_RECTUM;
+        }
+        double rl = am * (1.0 - ecose);
+        double rdotl = Math.sqrt(am) * esine / rl;
+        double rvdotl = Math.sqrt(pl) / rl;
+        double betal = Math.sqrt(1.0 - el2);
+        temp = esine / (1.0 + betal);
+        double sinu = am / rl * (sineo1 - aynl - axnl * temp);
+        double cosu = am / rl * (coseo1 - axnl + aynl * temp);
+        double su = Math.atan2(sinu, cosu);
+        double sin2u = (cosu + cosu) * sinu;
+        double cos2u = 1.0 - 2.0 * sinu * sinu;
+        temp = 1.0 / pl;
+        double temp1 = 0.5 * j2 * temp;
+        double temp2 = temp1 * temp;
+
+        if (d >= 0) {
+            double cosisq = cosip * cosip;
+            con41 = 3.0 * cosisq - 1.0;
+            x1mth2 = 1.0 - cosisq;
+            x7thm1 = 7.0 * cosisq - 1.0;
+        }
+        double mrt = rl * (1.0 - 1.5 * temp2 * betal * con41) + 0.5 * temp1 * x1mth2 * cos2u;
+        su = su - 0.25 * temp2 * x7thm1 * sin2u;
+        double xnode = nodep + 1.5 * temp2 * cosip * sin2u;
+        double xinc = xincp + 1.5 * temp2 * cosip * sinip * cos2u;
+        double mvt = rdotl - nm * temp1 * x1mth2 * sin2u / xke;
+        double rvdot = rvdotl + nm * temp1 * (x1mth2 * cos2u + 1.5 * con41) / xke;
+
+        // Orientation vectors.
+        double sinsu = Math.sin(su);
+        double cossu = Math.cos(su);
+        double snod = Math.sin(xnode);
+        double cnod = Math.cos(xnode);
+        double sini = Math.sin(xinc);
+        double cosi = Math.cos(xinc);
+        double xmx = -snod * cosi;
+        double xmy = cnod * cosi;
+        double uxv = xmx * sinsu + cnod * cossu;
+        double uyv = xmy * sinsu + snod * cossu;
+        double uzv = sini * sinsu;
+        double vxv = xmx * cossu - cnod * sinsu;
+        double vyv = xmy * cossu - snod * sinsu;
+        double vzv = sini * cossu;
+
+        // Position and velocity, in km and km/s.
+        rx[k] = mrt * uxv * radius;
+        ry[k] = mrt * uyv * radius;
+        rz[k] = mrt * uzv * radius;
+        ux[k] = (mvt * uxv + rvdot * vxv) * vkmpersec;
+        uy[k] = (mvt * uyv + rvdot * vyv) * vkmpersec;
+        uz[k] = (mvt * uzv + rvdot * vzv) * vkmpersec;
+
+        if (mrt < 1.0) {
+            return ERROR_DECAYED;
+        }
+        return OK;
+    }
+
+    /**
+     * Greenwich sidereal time, as in the IAU-82 model.
+     *
+     * @param jdut1 The Julian date in UT1.
+     *
+     * @return The sidereal time, in radians, in [0, 2π).
+     */
+    static double gstime(double jdut1) {
+        double tut1 = (jdut1 - 2451545.0) / 36525.0;
+        double temp = -6.2e-6 * tut1 * tut1 * tut1 + 0.093104 * tut1 * tut1 + (876600.0 * 3600.0 + 8640184.812866) * tut1 + 67310.54841;
+        temp = (Math.toRadians(temp) / 240.0) % TWO_PI;
+        if (temp < 0.0) {
+            temp += TWO_PI;
+        }
+        return temp;
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.util.coord;
+
+import gaiasky.util.Logger;
+import gaiasky.util.Logger.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A whole file of two-line element sets, stored as a structure of arrays, with one entry per object in each array.
+ * <p>
+ * Element sets may come with a name line before them (three-line format) or not, in which case the object is named
+ * after its catalog number. Malformed element sets, and lines that are not part of an element set, are skipped.
+ * Angles are stored in radians and the mean motion in radians per minute, as used by {@link SGP4Propagator}.
+ */
+public class TLECatalog {
+    private static final Log logger = Logger.getLogger(TLECatalog.class);
+
+    /** Minutes per day. **/
+    private static final double MIN_PER_DAY = 1440.0;
+
+    /** Number of objects. **/
+    public final int size;
+    /** Names of the objects. **/
+    public final String[] names;
+    /** Catalog numbers. Alpha-5 numbers are decoded, so that 'A0000' is 100000. **/
+    public final int[] catalogNumbers;
+    /** Epochs, as Julian dates in UTC. **/
+    public final double[] epochJD;
+    /** Epochs, as days since 1949 December 31 00:00 UTC, the time origin of SGP4. **/
+    public final double[] epoch1950;
+    /** Drag terms (B*), in inverse Earth radii. **/
+    public final double[] bstar;
+    /** Inclinations, in radians. **/
+    public final double[] inclination;
+    /** Right ascensions of the ascending node, in radians. **/
+    public final double[] ascendingNode;
+    /** Eccentricities. **/
+    public final double[] eccentricity;
+    /** Arguments of perigee, in radians. **/
+    public final double[] argOfPerigee;
+    /** Mean anomalies, in radians. **/
+    public final double[] meanAnomaly;
+    /** Kozai mean motions, in radians per minute. **/
+    public final double[] meanMotion;
+
+    private TLECatalog(int size) {
+        this.size = size;
+        names = new String[size];
+        catalogNumbers = new int[size];
+        epochJD = new double[size];
+        epoch1950 = new double[size];
+        bstar = new double[size];
+        inclination = new double[size];
+        ascendingNode = new double[size];
+        eccentricity = new double[size];
+        argOfPerigee = new double[size];
+        meanAnomaly = new double[size];
+        meanMotion = new double[size];
+    }
+
+    /**
+     * Reads a TLE file from disk.
+     *
+     * @param file The file.
+     *
+     * @return The catalog.
+     *
+     * @throws IOException If the file can't be read.
+     */
+    public static TLECatalog read(Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return parse(lines);
+    }
+
+    /**
+     * Parses the lines of a TLE file.
+     *
+     * @param lines The lines.
+     *
+     * @return The catalog.
+     */
+    public static TLECatalog parse(List<String> lines) {
+        TLECatalog catalog = new TLECatalog(lines.size() / 2);
+        int n = 0, skipped = 0;
+        String name = null;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.startsWith("1 ") && i + 1 < lines.size() && lines.get(i + 1).startsWith("2 ")) {
+                if (catalog.set(n, name, line, lines.get(i + 1))) {
+                    n++;
+                } else {
+                    skipped++;
+                }
+                name = null;
+                i++;
+            } else if (!line.isBlank()) {
+                // Name line, with or without the '0 ' prefix.
+                name = line.startsWith("0 ") ? line.substring(2).trim() : line.trim();
+            }
+        }
+        if (skipped > 0) {
+            logger.warn("Skipped " + skipped + " malformed element sets");
+        }
+        return n == catalog.size ? catalog : catalog.trim(n);
+    }
+
+    private boolean set(int i, String name, String line1, String line2) {
+        try {
+            if (line1.length() < 61 || line2.length() < 63) {
+                return false;
+            }
+            int number = parseCatalogNumber(line1.substring(2, 7));
+            if (number != parseCatalogNumber(line2.substring(2, 7))) {
+                return false;
+            }
+            int year = Integer.parseInt(line1.substring(18, 20).trim());
+            year += year < 57 ? 2000 : 1900;
+            double days = Double.parseDouble(line1.substring(20, 32).trim());
+            double jan1 = julianDate(year, 1, 1);
+
+            catalogNumbers[i] = number;
+            names[i] = name == null || name.isEmpty() ? Integer.toString(number) : name;
+            // Day one is January 1, 00:00.
+            epochJD[i] = jan1 + days - 1.0;
+            epoch1950[i] = (jan1 - 2433281.5) + days - 1.0;
+            bstar[i] = parseExponent(line1.substring(53, 61));
+            inclination[i] = Math.toRadians(Double.parseDouble(line2.substring(8, 16).trim()));
+            ascendingNode[i] = Math.toRadians(Double.parseDouble(line2.substring(17, 25).trim()));
+            eccentricity[i] = Double.parseDouble("0." + line2.substring(26, 33).trim());
+            argOfPerigee[i] = Math.toRadians(Double.parseDouble(line2.substring(34, 42).trim()));
+            meanAnomaly[i] = Math.toRadians(Double.parseDouble(line2.substring(43, 51).trim()));
+            meanMotion[i] = Double.parseDouble(line2.substring(52, 63).trim()) * 2.0 * Math.PI / MIN_PER_DAY;
+            return true;
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return false;
+        }
+    }
+
+    /** Parses a catalog number, possibly in the alpha-5 format, where the first digit is a letter other than I or O. **/
+    static int parseCatalogNumber(String s) {
+        s = s.trim();
+        char c = s.charAt(0);
+        if (Character.isLetter(c)) {
+            c = Character.toUpperCase(c);
+            if (c == 'I' || c == 'O') {
+                throw new NumberFormatException(s);
+            }
+            int value = c - 'A' + 10 - (c > 'I' ? 1 : 0) - (c > 'O' ? 1 : 0);
+            return value * 10000 + Integer.parseInt(s.substring(1));
+        }
+        return Integer.parseInt(s);
+    }
+
+    /** Parses a number with an implied leading decimal point and an exponent, like ' 12345-3', which is 0.12345e-3. **/
+    static double parseExponent(String s) {
+        s = s.trim();
+        if (s.isEmpty()) {
+            return 0;
+        }
+        int e = Math.max(s.lastIndexOf('-'), s.lastIndexOf('+'));
+        if (e <= 0) {
+            return Double.parseDouble(s.startsWith("-") || s.startsWith("+") ? s.charAt(0) + "0." + s.substring(1) : "0." + s);
+        }
+        String mantissa = s.substring(0, e);
+        String sign = "";
+        if (mantissa.startsWith("-") || mantissa.startsWith("+")) {
+            sign = mantissa.substring(0, 1);
+            mantissa = mantissa.substring(1);
+        }
+        return Double.parseDouble(sign + "0." + mantissa.trim() + "e" + s.substring(e));
+    }
+
+    /** Julian date of a date of the Gregorian calendar, at 00:00 UTC. Valid from 1900 to 2100. **/
+    static double julianDate(int year, int month, int day) {
+        return 367.0 * year - Math.floor(7 * (year + Math.floor((month + 9) / 12.0)) * 0.25) + Math.floor(275 * month / 9.0) + day + 1721013.5;
+    }
+
+    private TLECatalog trim(int n) {
+        TLECatalog c = new TLECatalog(n);
+        System.arraycopy(names, 0, c.names, 0, n);
+        System.arraycopy(catalogNumbers, 0, c.catalogNumbers, 0, n);
+        System.arraycopy(epochJD, 0, c.epochJD, 0, n);
+        System.arraycopy(epoch1950, 0, c.epoch1950, 0, n);
+        System.arraycopy(bstar, 0, c.bstar, 0, n);
+        System.arraycopy(inclination, 0, c.inclination, 0, n);
+        System.arraycopy(ascendingNode, 0, c.ascendingNode, 0, n);
+        System.arraycopy(eccentricity, 0, c.eccentricity, 0, n);
+        System.arraycopy(argOfPerigee, 0, c.argOfPerigee, 0, n);
+        System.arraycopy(meanAnomaly, 0, c.meanAnomaly, 0, n);
+        System.arraycopy(meanMotion, 0, c.meanMotion, 0, n);
+        return c;
+    }
+
+    /**
+     * Gets the index of the object with the given catalog number.
+     *
+     * @param catalogNumber The catalog number.
+     *
+     * @return The index, or -1 if it is not in the catalog.
+     */
+    public int indexOf(int catalogNumber) {
+        for (int i = 0; i < size; i++) {
+            if (catalogNumbers[i] == catalogNumber) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -5,6 +5,7 @@ import gaiasky.util.Nature;
 import gaiasky.util.coord.AbstractOrbitCoordinates;
 import gaiasky.util.coord.AstroUtils;
 import gaiasky.util.coord.Coordinates;
+import gaiasky.util.coord.FrameTimeContext;
 import gaiasky.util.math.Vector3Q;
 
 import java.nio.file.Path;
@@ -47,6 +48,12 @@ public class ChebyshevEphemeris extends AbstractOrbitCoordinates {
         }
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        // Once loaded, the coefficients are only read.
+        return data != null;
+    }
+
     /**
      * Returns a vector with the ephemeris
      * at the given date. The position is given in internal units.
@@ -61,7 +68,7 @@ public class ChebyshevEphemeris extends AbstractOrbitCoordinates {
             return null;
         }
 
-        double jd = AstroUtils.getJulianDateCache(date) - AstroUtils.JD_J2010;
+        double jd = FrameTimeContext.jdTCB(date) - AstroUtils.JD_J2010;
         long nanosecondsTcb = (long) (jd * Nature.D_TO_NS);
 
         final int positionTypeIndex = 0;
@@ -10,8 +10,8 @@ package gaiasky.util.coord.vsop2000;
 import gaiasky.GaiaSky;
 import gaiasky.util.Constants;
 import gaiasky.util.coord.AbstractOrbitCoordinates;
-import gaiasky.util.coord.AstroUtils;
 import gaiasky.util.coord.Coordinates;
+import gaiasky.util.coord.FrameTimeContext;
 import gaiasky.util.coord.vsop2000.VSOP2000Reader.VSOP2000Coordinate;
 import gaiasky.util.math.Vector3Q;
 import net.jafama.FastMath;
@@ -115,7 +115,7 @@ public class VSOP2000 extends AbstractOrbitCoordinates {
         // Maximum number of terms to use. Depends on high accuracy setting.
         int maxTerms = GaiaSky.settings().data.highAccuracy ? 2000 : 500;
 
-        double t = time(AstroUtils.getJulianDateCache(date));
+        double t = time(FrameTimeContext.jdTT(date));
 
         VSOP2000Coordinate[] d = data;
 
@@ -11,8 +11,8 @@ import gaiasky.GaiaSky;
 import gaiasky.data.AssetBean;
 import gaiasky.util.Constants;
 import gaiasky.util.coord.AbstractOrbitCoordinates;
-import gaiasky.util.coord.AstroUtils;
 import gaiasky.util.coord.Coordinates;
+import gaiasky.util.coord.FrameTimeContext;
 import gaiasky.util.math.Vector3Q;
 
 import java.time.Instant;
@@ -47,6 +47,12 @@ public abstract class AbstractVSOP87 extends AbstractOrbitCoordinates implements
 
     public abstract double[] getData(double tau);
 
+    @Override
+    public boolean isThreadSafe() {
+        // The series are read-only, and every evaluation gets its own result array.
+        return vsop87 != null;
+    }
+
     @Override
     public Vector3Q getEclipticSphericalCoordinates(Instant date, Vector3Q out) {
         return versionA ? getEclipticSphericalCoordinatesA(date, out) : getEclipticSphericalCoordinatesB(date, out);
@@ -63,7 +69,7 @@ public abstract class AbstractVSOP87 extends AbstractOrbitCoordinates implements
         if (Constants.notWithinVSOPTime(date.toEpochMilli()))
             return null;
 
-        double tau = AstroUtils.tau(AstroUtils.getJulianDateCache(date));
+        double tau = FrameTimeContext.tau(date);
         // For some reason, this returns BLR instead of the more common LBR.
         double[] BLR = getData(tau);
 
@@ -87,7 +93,7 @@ public abstract class AbstractVSOP87 extends AbstractOrbitCoordinates implements
         if (Constants.notWithinVSOPTime(date.toEpochMilli()))
             return null;
 
-        double tau = AstroUtils.tau(AstroUtils.getJulianDateCache(date));
+        double tau = FrameTimeContext.tau(date);
         // For some reason, this returns BLR instead of the more common LBR.
         double[] XYZ = getData(tau);
 
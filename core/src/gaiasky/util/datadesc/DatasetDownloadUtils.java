@@ -7,26 +7,17 @@
 
 package gaiasky.util.datadesc;
 
-import com.badlogic.gdx.utils.Array;
 import gaiasky.GaiaSky;
-import gaiasky.event.Event;
-import gaiasky.event.EventManager;
 import gaiasky.util.Logger;
 import gaiasky.util.SysUtils;
-import gaiasky.util.i18n.I18n;
-import gaiasky.util.io.FileInfoInputStream;
-import org.kamranzafar.jtar.TarEntry;
-import org.kamranzafar.jtar.TarInputStream;
 
 import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.text.DecimalFormat;
 import java.util.List;
 import java.util.stream.Stream;
-import java.util.zip.GZIPInputStream;
 
 /**
  * Utilities to fetch and uncompress datasets.
@@ -119,74 +110,6 @@ public class DatasetDownloadUtils {
         }
     }
 
-    private final static DecimalFormat nf = new DecimalFormat("##0.0");
-
-    public static void decompress(String in, File out, Dataset dataset) throws Exception {
-        FileInfoInputStream fIs = new FileInfoInputStream(in);
-        GZIPInputStream gzIs = new GZIPInputStream(fIs);
-        TarInputStream tarIs = new TarInputStream(gzIs);
-        double sizeKb = DatasetDownloadUtils.fileSize(in) / 1000d;
-        String sizeKbStr = nf.format(sizeKb);
-        TarEntry entry;
-        long last = 0;
-        boolean error = false;
-        Exception errorException = null;
-        Array<File> processedFiles = new Array<>();
-        while (null != (entry = tarIs.getNextEntry())) {
-            if (entry.isDirectory()) {
-                continue;
-            }
-            File curFile = new File(out, entry.getName());
-            File parent = curFile.getParentFile();
-            if (!parent.exists()) {
-                if (!parent.mkdirs()) {
-                    logger.info("Parent directory not created, already exists: " + parent.toPath());
-                }
-            }
-
-            try (FileOutputStream fos = new FileOutputStream(curFile); BufferedOutputStream dest = new BufferedOutputStream(fos)) {
-                processedFiles.add(curFile);
-
-                int count;
-                byte[] data = new byte[2048];
-
-                while ((count = tarIs.read(data)) != -1) {
-                    dest.write(data, 0, count);
-                }
-
-            } catch (IOException e) {
-                errorException = e;
-                error = true;
-                break;
-            }
-
-            // Every 250 ms we update the view.
-            long current = System.currentTimeMillis();
-            long elapsed = current - last;
-            if (elapsed > 250) {
-                var source = entry;
-                GaiaSky.postRunnable(() -> {
-                    float val = (float) ((fIs.getBytesRead() / 1000d) / sizeKb) * 100f;
-                    String progressString = I18n.msg("gui.download.extracting", nf.format(fIs.getBytesRead() / 1000d) + "/" + sizeKbStr + " Kb");
-                    EventManager.publish(Event.DATASET_DOWNLOAD_PROGRESS_INFO, source, dataset.key, val, progressString, null);
-                });
-                last = current;
-            }
-
-        }
-
-        if (error) {
-            String msg = I18n.msg("gui.download.extracting.error", errorException);
-            logger.error(errorException, msg);
-            EventManager.publish(Event.POST_POPUP_NOTIFICATION, entry, msg, -1f);
-            // Delete uncompressed files.
-            for (File f : processedFiles) {
-                DatasetDownloadUtils.deleteFile(f.toPath());
-            }
-
-        }
-    }
-
     public static  boolean isEnabled(Dataset dataset) {
         return isPathIn(GaiaSky.settings().data.dataFile(dataset.checkStr), GaiaSky.settings().data.dataFiles);
     }
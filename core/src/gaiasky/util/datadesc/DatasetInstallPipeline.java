@@ -0,0 +1,649 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.util.datadesc;
+
+import gaiasky.util.Constants;
+import gaiasky.util.Logger;
+import gaiasky.util.Logger.Log;
+import gaiasky.util.ProgressRunnable;
+import gaiasky.util.io.GrowingFileInputStream;
+import gaiasky.util.io.GrowingFileInputStream.Watermark;
+import org.kamranzafar.jtar.TarEntry;
+import org.kamranzafar.jtar.TarInputStream;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Downloads a {@code .tar.gz} dataset package and installs it in a single pass. The bytes are written to a
+ * {@code .part} file as they arrive, and two consumers follow the contiguous downloaded prefix of that file
+ * concurrently: one computes the SHA-256 digest, and the other gunzips and untars the contents into a
+ * staging directory next to the output directory. The extracted files are moved into the output directory
+ * only once the digest matches, so that a corrupt or tampered package never replaces the files of an
+ * existing installation. Optionally, the download is split into several parallel HTTP range requests.
+ * <p>
+ * Interrupted downloads are resumed from the contiguous prefix of the part file. In parallel mode, the
+ * length of this prefix is kept in a side-car file next to the part file, since the part file itself
+ * may contain holes.
+ */
+public class DatasetInstallPipeline {
+    private static final Log logger = Logger.getLogger(DatasetInstallPipeline.class);
+
+    /** Suffix of the side-car file that holds the contiguous prefix length of the part file. **/
+    public static final String WATERMARK_SUFFIX = ".wm";
+    /** Suffix of the staging directory the package is extracted to before it is verified. **/
+    public static final String STAGING_SUFFIX = ".staging";
+    /** Default minimum size of a range request segment, 16 MB. **/
+    public static final long DEFAULT_MIN_SEGMENT_SIZE = 16L * 1024L * 1024L;
+
+    /** Default timeout is 10 seconds. **/
+    private static final int TIMEOUT = 10_000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** Progress is reported (and the side-car file persisted) with this period. **/
+    private static final long PROGRESS_PERIOD_MS = 250;
+    private static final AtomicInteger threadSequence = new AtomicInteger(0);
+
+    private final String url;
+    private final Path partFile;
+    private final Path watermarkFile;
+    private final File outDir;
+    private final Path stagingDir;
+
+    private int connections = 1;
+    private long minSegmentSize = DEFAULT_MIN_SEGMENT_SIZE;
+    private String expectedSha256;
+    private ProgressRunnable progressDownload;
+    private ProgressRunnable progressExtract;
+
+    private final List<HttpURLConnection> openConnections = new CopyOnWriteArrayList<>();
+    private volatile boolean cancelled;
+    private Watermark watermark;
+    private List<Segment> segments;
+
+    /**
+     * Creates a new pipeline.
+     *
+     * @param url      The URL of the {@code .tar.gz} package. {@code file://} URLs are hashed and
+     *                 extracted in place, without copying.
+     * @param partFile The partial download file. If it exists, the download is resumed.
+     * @param outDir   The directory to extract the package contents to.
+     */
+    public DatasetInstallPipeline(String url, Path partFile, File outDir) {
+        this.url = url;
+        this.partFile = partFile;
+        this.watermarkFile = partFile.resolveSibling(partFile.getFileName() + WATERMARK_SUFFIX);
+        this.outDir = outDir;
+        Path root = outDir.toPath().toAbsolutePath().normalize();
+        this.stagingDir = root.resolveSibling("." + root.getFileName() + "-" + partFile.getFileName() + STAGING_SUFFIX);
+    }
+
+    /**
+     * Sets the maximum number of parallel range requests. Only used if the server accepts range requests
+     * and the package is large enough to be split in segments of at least the minimum segment size.
+     *
+     * @param connections The number of connections, 1 to disable parallel downloads.
+     */
+    public void setConnections(int connections) {
+        this.connections = Math.max(1, connections);
+    }
+
+    public void setMinSegmentSize(long minSegmentSize) {
+        this.minSegmentSize = Math.max(1, minSegmentSize);
+    }
+
+    /**
+     * Sets the expected SHA-256 digest of the package. If set and the computed digest does not match, the
+     * staged files are removed without touching the output directory, and {@link #run()} throws a
+     * {@link DigestMismatchException}.
+     *
+     * @param expectedSha256 The hexadecimal digest, or null to skip the check.
+     */
+    public void setExpectedSha256(String expectedSha256) {
+        this.expectedSha256 = expectedSha256;
+    }
+
+    public void setProgressDownload(ProgressRunnable progressDownload) {
+        this.progressDownload = progressDownload;
+    }
+
+    public void setProgressExtract(ProgressRunnable progressExtract) {
+        this.progressExtract = progressExtract;
+    }
+
+    public Path getPartFile() {
+        return partFile;
+    }
+
+    public Path getStagingDir() {
+        return stagingDir;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Cancels the pipeline. The part file is kept so that the download can be resumed, but the
+     * files staged so far are removed. {@link #run()} throws a {@link CancellationException}.
+     */
+    public void cancel() {
+        cancelled = true;
+        abort(new IOException("Download cancelled: " + url));
+    }
+
+    /**
+     * Runs the pipeline in the calling thread, which also reports the progress. Blocks until the package has
+     * been fully downloaded, hashed and extracted, or until an error occurs.
+     *
+     * @return The result.
+     *
+     * @throws IOException           If the download or the extraction failed.
+     * @throws CancellationException If the pipeline was cancelled.
+     */
+    public Result run() throws IOException {
+        final boolean local = url.startsWith("file://");
+        final Path source;
+        final long total;
+        if (local) {
+            source = Path.of(url.replaceFirst("file://", ""));
+            if (!Files.isRegularFile(source) || !Files.isReadable(source)) {
+                throw new FileNotFoundException(source.toString());
+            }
+            total = Files.size(source);
+            watermark = new Watermark(total);
+            watermark.finish();
+            segments = List.of();
+        } else {
+            source = partFile;
+            total = startDownload();
+        }
+        // Leftovers of an interrupted installation.
+        deleteTree(stagingDir);
+
+        final ExecutorService pool = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "gaiasky-install-" + threadSequence.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        final long startTime = System.currentTimeMillis();
+        final List<Future<?>> writers = new ArrayList<>();
+        final Future<String> hasher;
+        final Future<List<Path>> extractor;
+        final GrowingFileInputStream extractIn;
+        try {
+            for (Segment segment : segments) {
+                writers.add(pool.submit(() -> {
+                    download(segment);
+                    return null;
+                }));
+            }
+            hasher = pool.submit(() -> hash(source));
+            extractIn = new GrowingFileInputStream(source, watermark);
+            extractor = pool.submit(() -> extract(extractIn));
+
+            // Monitor until the download finishes.
+            long lastTime = startTime, lastBytes = watermark.get();
+            double speed = 0;
+            while (!writers.stream().allMatch(Future::isDone)) {
+                await(writers, PROGRESS_PERIOD_MS);
+                surface(writers);
+                surface(List.of(hasher, extractor));
+                long now = System.currentTimeMillis();
+                long downloaded = downloadedBytes();
+                if (now - lastTime >= 1000) {
+                    speed = (double) (downloaded - lastBytes) / (now - lastTime);
+                    lastTime = now;
+                    lastBytes = downloaded;
+                }
+                if (progressDownload != null) {
+                    progressDownload.run(downloaded, total, percent(downloaded, total), speed);
+                }
+                reportExtract(extractIn, total, startTime);
+                persistWatermark();
+            }
+            surface(writers);
+            long available = watermark.get();
+            if (total >= 0 && available < total) {
+                throw new IOException("Incomplete download: got " + available + " of " + total + " bytes: " + url);
+            }
+            watermark.finish();
+            if (progressDownload != null) {
+                progressDownload.run(available, available, 100, speed);
+            }
+
+            // Wait for the consumers.
+            while (!hasher.isDone() || !extractor.isDone()) {
+                await(List.of(hasher, extractor), PROGRESS_PERIOD_MS);
+                surface(List.of(hasher, extractor));
+                reportExtract(extractIn, total, startTime);
+            }
+            String digest = hasher.get();
+            List<Path> staged = extractor.get();
+            reportExtract(extractIn, total, startTime);
+
+            if (expectedSha256 != null && !expectedSha256.isBlank() && !expectedSha256.equalsIgnoreCase(digest)) {
+                throw new DigestMismatchException(expectedSha256, digest);
+            }
+            List<File> files = install(staged);
+            if (!local) {
+                DatasetDownloadUtils.deleteFile(watermarkFile);
+            }
+            logger.info("Installed " + files.size() + " files from " + url + " in " + (System.currentTimeMillis() - startTime) + " ms");
+            return new Result(digest, files, watermark.get());
+        } catch (ExecutionException e) {
+            abort(asIOException(e.getCause()));
+            throw rethrow(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+            throw new CancellationException("Interrupted: " + url);
+        } catch (IOException | RuntimeException e) {
+            abort(asIOException(e));
+            if (cancelled) {
+                throw new CancellationException("Download cancelled: " + url);
+            }
+            throw e;
+        } finally {
+            pool.shutdownNow();
+            try {
+                if (!pool.awaitTermination(TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    logger.warn("Install threads did not terminate in time: " + url);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            deleteTree(stagingDir);
+            if (!local) {
+                persistWatermark();
+            }
+        }
+    }
+
+    /**
+     * Sends the first request, resolves the resume offset and plans the segments.
+     *
+     * @return The total size of the package, or -1 if unknown.
+     */
+    private long startDownload() throws IOException {
+        long start = resumeOffset();
+        HttpURLConnection first = open(start, -1);
+        int status = first.getResponseCode();
+        if (status == 416 && start > 0) {
+            // Range not satisfiable, clean and try again.
+            first.disconnect();
+            logger.info("Range not satisfiable, restarting download: " + url);
+            truncate(0);
+            start = 0;
+            first = open(0, -1);
+            status = first.getResponseCode();
+        }
+        if (status >= 400) {
+            first.disconnect();
+            throw new IOException("HTTP status " + status + ": " + url);
+        }
+        if (start > 0 && status != HttpURLConnection.HTTP_PARTIAL) {
+            logger.info("Server ignored range request, restarting download: " + url);
+            truncate(0);
+            start = 0;
+        } else if (start > 0) {
+            logger.info("Resuming download from byte " + start + ": " + url);
+        }
+
+        long remaining = first.getContentLengthLong();
+        long total = remaining >= 0 ? start + remaining : -1;
+        boolean acceptsRanges = status == HttpURLConnection.HTTP_PARTIAL || "bytes".equalsIgnoreCase(first.getHeaderField("Accept-Ranges"));
+
+        int n = 1;
+        if (connections > 1 && acceptsRanges && remaining > 0) {
+            n = (int) Math.max(1, Math.min(connections, remaining / minSegmentSize));
+        }
+        segments = new ArrayList<>(n);
+        long segmentSize = n > 1 ? (remaining + n - 1) / n : remaining;
+        for (int i = 0; i < n; i++) {
+            long s = start + i * segmentSize;
+            long e = i == n - 1 ? total : Math.min(total, s + segmentSize);
+            segments.add(new Segment(s, e, i == 0 ? first : null));
+        }
+        if (!Files.exists(partFile)) {
+            Files.createFile(partFile);
+        }
+        watermark = new Watermark(start);
+        if (n > 1) {
+            logger.info("Downloading " + url + " using " + n + " parallel range requests");
+        }
+        persistWatermark();
+        return total;
+    }
+
+    /**
+     * Computes the offset to resume the download from, which is the contiguous prefix of the part
+     * file. The part file is truncated to that length.
+     */
+    private long resumeOffset() throws IOException {
+        if (!Files.exists(partFile)) {
+            DatasetDownloadUtils.deleteFile(watermarkFile);
+            return 0;
+        }
+        long age = System.currentTimeMillis() - Files.getLastModifiedTime(partFile).toMillis();
+        if (age > Constants.getPartFileMaxAgeMs()) {
+            truncate(0);
+            return 0;
+        }
+        long length = Files.size(partFile);
+        long offset = length;
+        if (Files.exists(watermarkFile)) {
+            try {
+                offset = Math.min(length, Long.parseLong(Files.readString(watermarkFile, StandardCharsets.UTF_8).trim()));
+            } catch (NumberFormatException e) {
+                offset = 0;
+            }
+        }
+        if (offset < length) {
+            truncate(offset);
+        }
+        return offset;
+    }
+
+    private void truncate(long size) throws IOException {
+        try (FileChannel ch = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ch.truncate(size);
+        }
+        DatasetDownloadUtils.deleteFile(watermarkFile);
+    }
+
+    private void persistWatermark() {
+        if (watermark == null || segments == null || segments.size() <= 1) {
+            // The part file has no holes, its length is the watermark.
+            return;
+        }
+        try {
+            Files.writeString(watermarkFile, Long.toString(watermark.get()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.warn("Could not persist download state: " + watermarkFile);
+        }
+    }
+
+    private HttpURLConnection open(long from, long toExclusive) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) URI.create(url).toURL().openConnection();
+        connection.setInstanceFollowRedirects(true);
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        if (from > 0 || toExclusive >= 0) {
+            connection.setRequestProperty("Range", "bytes=" + from + "-" + (toExclusive >= 0 ? toExclusive - 1 : ""));
+        }
+        openConnections.add(connection);
+        if (cancelled) {
+            connection.disconnect();
+            throw new IOException("Download cancelled: " + url);
+        }
+        return connection;
+    }
+
+    /**
+     * Downloads a segment into its position of the part file.
+     */
+    private void download(Segment segment) throws IOException {
+        HttpURLConnection connection = segment.connection;
+        if (connection == null) {
+            connection = open(segment.start, segment.end);
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+                throw new IOException("Range request refused with HTTP status " + connection.getResponseCode() + ": " + url);
+            }
+        }
+        try (InputStream is = connection.getInputStream();
+             FileChannel ch = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            byte[] bytes = new byte[BUFFER_SIZE];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            int count;
+            while (!cancelled && (segment.end < 0 || segment.next < segment.end)) {
+                int max = segment.end < 0 ? bytes.length : (int) Math.min(bytes.length, segment.end - segment.next);
+                count = is.read(bytes, 0, max);
+                if (count == -1) {
+                    break;
+                }
+                buffer.clear().limit(count);
+                long position = segment.next;
+                while (buffer.hasRemaining()) {
+                    position += ch.write(buffer, position);
+                }
+                segment.next += count;
+                advanceWatermark();
+            }
+        } finally {
+            connection.disconnect();
+        }
+        if (cancelled) {
+            throw new IOException("Download cancelled: " + url);
+        }
+        if (segment.end >= 0 && segment.next < segment.end) {
+            throw new IOException("Connection closed prematurely at byte " + segment.next + " of segment ending at " + segment.end + ": " + url);
+        }
+    }
+
+    /**
+     * Advances the watermark to the end of the contiguous run of downloaded bytes.
+     */
+    private void advanceWatermark() {
+        long value = watermark.get();
+        for (Segment segment : segments) {
+            if (segment.start > value) {
+                break;
+            }
+            value = Math.max(value, segment.next);
+            if (segment.end < 0 || segment.next < segment.end) {
+                break;
+            }
+        }
+        watermark.advance(value);
+    }
+
+    private long downloadedBytes() {
+        long start = segments.isEmpty() ? watermark.get() : segments.get(0).start;
+        long downloaded = start;
+        for (Segment segment : segments) {
+            downloaded += segment.next - segment.start;
+        }
+        return downloaded;
+    }
+
+    private String hash(Path source) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        try (InputStream is = new GrowingFileInputStream(source, watermark)) {
+            byte[] bytes = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = is.read(bytes, 0, bytes.length)) != -1) {
+                md.update(bytes, 0, count);
+            }
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    /**
+     * Extracts the package into the staging directory.
+     *
+     * @return The paths of the extracted files, relative to the staging directory.
+     */
+    private List<Path> extract(GrowingFileInputStream in) throws IOException {
+        List<Path> files = new ArrayList<>();
+        Path root = stagingDir;
+        try (TarInputStream tarIs = new TarInputStream(new GZIPInputStream(new BufferedInputStream(in, BUFFER_SIZE), BUFFER_SIZE))) {
+            TarEntry entry;
+            byte[] data = new byte[BUFFER_SIZE];
+            while (null != (entry = tarIs.getNextEntry())) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                Path target = root.resolve(entry.getName()).normalize();
+                if (!target.startsWith(root)) {
+                    throw new IOException("Archive entry outside of the target directory: " + entry.getName());
+                }
+                File curFile = target.toFile();
+                File parent = curFile.getParentFile();
+                if (!parent.exists() && !parent.mkdirs()) {
+                    logger.info("Parent directory not created, already exists: " + parent.toPath());
+                }
+                files.add(root.relativize(target));
+                try (OutputStream dest = new BufferedOutputStream(new FileOutputStream(curFile), BUFFER_SIZE)) {
+                    int count;
+                    while ((count = tarIs.read(data)) != -1) {
+                        dest.write(data, 0, count);
+                    }
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Moves the verified files from the staging directory into the output directory, replacing existing files.
+     *
+     * @param staged The paths of the files, relative to the staging directory.
+     *
+     * @return The installed files.
+     */
+    private List<File> install(List<Path> staged) throws IOException {
+        Path root = outDir.toPath().toAbsolutePath().normalize();
+        List<File> files = new ArrayList<>(staged.size());
+        for (Path relative : staged) {
+            Path target = root.resolve(relative);
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(stagingDir.resolve(relative), target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(stagingDir.resolve(relative), target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            files.add(target.toFile());
+        }
+        return files;
+    }
+
+    private void reportExtract(GrowingFileInputStream in, long total, long startTime) {
+        if (progressExtract != null) {
+            long read = in.getBytesRead();
+            long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+            progressExtract.run(read, total, percent(read, total), (double) read / elapsed);
+        }
+    }
+
+    private void abort(IOException e) {
+        if (watermark != null) {
+            watermark.fail(e);
+        }
+        for (HttpURLConnection connection : openConnections) {
+            connection.disconnect();
+        }
+    }
+
+    private void await(List<? extends Future<?>> futures, long timeoutMs) throws InterruptedException {
+        for (Future<?> future : futures) {
+            if (!future.isDone()) {
+                try {
+                    future.get(timeoutMs, TimeUnit.MILLISECONDS);
+                } catch (ExecutionException | TimeoutException ignored) {
+                    // Surfaced later on.
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Rethrows the failure of any of the given finished futures.
+     */
+    private void surface(List<? extends Future<?>> futures) throws ExecutionException, InterruptedException {
+        for (Future<?> future : futures) {
+            if (future.isDone()) {
+                future.get();
+            }
+        }
+    }
+
+    private IOException asIOException(Throwable t) {
+        return t instanceof IOException ioe ? ioe : new IOException(t);
+    }
+
+    private IOException rethrow(Throwable t) {
+        if (cancelled) {
+            throw new CancellationException("Download cancelled: " + url);
+        }
+        if (t instanceof RuntimeException re) {
+            throw re;
+        }
+        return asIOException(t);
+    }
+
+    private static double percent(long value, long total) {
+        return total > 0 ? ((double) value / (double) total) * 100.0 : 0.0;
+    }
+
+    private static void deleteTree(Path dir) {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(dir)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(DatasetDownloadUtils::deleteFile);
+        } catch (IOException e) {
+            logger.warn("Could not remove staging directory: " + dir);
+        }
+    }
+
+    /**
+     * A byte range of the package fetched by one connection.
+     */
+    private static class Segment {
+        final long start;
+        /** Exclusive end, or -1 if unknown. **/
+        final long end;
+        final HttpURLConnection connection;
+        volatile long next;
+
+        Segment(long start, long end, HttpURLConnection connection) {
+            this.start = start;
+            this.end = end;
+            this.connection = connection;
+            this.next = start;
+        }
+    }
+
+    /**
+     * The result of a successful installation.
+     *
+     * @param digest The hexadecimal SHA-256 digest of the package.
+     * @param files  The extracted files.
+     * @param bytes  The size of the package in bytes.
+     */
+    public record Result(String digest, List<File> files, long bytes) {
+    }
+
+    /**
+     * Thrown when the digest of the downloaded package does not match the expected one.
+     */
+    public static class DigestMismatchException extends IOException {
+        public DigestMismatchException(String expected, String actual) {
+            super("SHA-256 mismatch: expected " + expected + ", got " + actual);
+        }
+    }
+}
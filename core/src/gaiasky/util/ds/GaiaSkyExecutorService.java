@@ -9,84 +9,105 @@ package gaiasky.util.ds;
 
 import gaiasky.GaiaSky;
 import gaiasky.util.Logger;
+import gaiasky.util.concurrent.PriorityTaskExecutor;
+import gaiasky.util.concurrent.PriorityTaskExecutor.Priority;
 import net.jafama.FastMath;
 
-import java.util.concurrent.*;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
 
 /**
- * Executor service of Gaia Sky, backed by a {@link ThreadPoolExecutor}. It includes a blocking queue of tasks to be run.
+ * Executor service of Gaia Sky, backed by a {@link PriorityTaskExecutor}. Tasks run with {@link Priority#NORMAL}
+ * priority unless stated otherwise, and a task is not queued again while it is waiting to run.
  */
 public class GaiaSkyExecutorService {
     private static final Logger.Log logger = Logger.getLogger(GaiaSkyExecutorService.class);
     /**
-     * Thread pool executor.
+     * Prioritized executor.
      */
-    private ThreadPoolExecutor pool;
-    private BlockingQueue<Runnable> workQueue;
+    private PriorityTaskExecutor executor;
+
     public GaiaSkyExecutorService() {
         super();
         initialize();
     }
 
     public void initialize() {
-        workQueue = new LinkedBlockingQueue<>();
         int nThreads = !GaiaSky.settings().performance.multithreading ? 1 : FastMath.max(1, GaiaSky.settings().performance.getNumberOfThreads());
-        // Create fixed thread pool executor, with a static number of threads.
-        pool = new ThreadPoolExecutor(nThreads, nThreads, 0L, TimeUnit.SECONDS, workQueue);
-        pool.setThreadFactory(new DaemonThreadFactory());
+        executor = new PriorityTaskExecutor(nThreads, "gaiasky-worker-", e -> logger.error(e));
     }
 
     public boolean execute(Runnable r) {
-        if (pool != null && !pool.isShutdown() && !inQueue(r)) {
-            pool.execute(r);
-            return true;
-        }
-        return false;
+        return execute(r, Priority.NORMAL);
+    }
+
+    public boolean execute(Runnable r, Priority priority) {
+        return executor != null && executor.execute(r, priority);
     }
 
     public Future<?> submit(Runnable r) {
-        if (pool != null && !pool.isShutdown() && !inQueue(r)) {
-            return pool.submit(r);
-        }
-        return null;
+        return submit(r, Priority.NORMAL);
+    }
+
+    public Future<?> submit(Runnable r, Priority priority) {
+        return executor != null ? executor.submit(r, priority) : null;
+    }
+
+    /**
+     * Submits a task that replaces the queued task with the same key, if any.
+     *
+     * @param key      The key.
+     * @param r        The task.
+     * @param priority The priority.
+     *
+     * @return The future of the task, or null if the executor is shut down.
+     */
+    public Future<?> supersede(Object key, Runnable r, Priority priority) {
+        return executor != null ? executor.supersede(key, r, priority) : null;
+    }
+
+    /**
+     * Cancels the queued task with the given key, if it has not started yet.
+     *
+     * @param key The task, or the key it was superseded with.
+     *
+     * @return Whether a task was cancelled.
+     */
+    public boolean cancel(Object key) {
+        return executor != null && executor.cancel(key);
+    }
+
+    /**
+     * Runs a fork/join task in the compute pool of the executor, and waits for it.
+     *
+     * @param task The task.
+     *
+     * @return The result of the task.
+     */
+    public <T> T invoke(ForkJoinTask<T> task) {
+        return executor.invoke(task);
     }
 
-    public ThreadPoolExecutor getPool() {
-        return pool;
+    public PriorityTaskExecutor getExecutor() {
+        return executor;
     }
 
     public boolean inQueue(Runnable task) {
-        return workQueue != null && workQueue.contains(task);
+        return executor != null && executor.inQueue(task);
     }
 
     public void shutDownThreadPool() {
         // Shut down pool
-        if (pool != null && !pool.isShutdown()) {
-            pool.shutdown();
+        if (executor != null && !executor.isShutdown()) {
             try {
                 // Wait for task to end before proceeding
-                if (!pool.awaitTermination(500, TimeUnit.MILLISECONDS)) {
+                if (!executor.shutdown(500)) {
                     logger.debug("Timeout elapsed while waiting for the pool to shut down");
                 }
             } catch (Exception e) {
                 logger.error(e);
             }
         }
-        if (workQueue != null)
-            workQueue.clear();
-    }
-
-    private static class DaemonThreadFactory implements ThreadFactory {
-        private int sequence;
-
-        @Override
-        public Thread newThread(Runnable r) {
-            Thread t = new Thread(r, "gaiasky-worker-" + sequence);
-            sequence++;
-            t.setDaemon(true);
-            return t;
-        }
-
     }
 
 }
@@ -16,6 +16,7 @@ import gaiasky.util.BinarySearchTree;
 import gaiasky.util.Logger;
 import gaiasky.util.Logger.Log;
 import gaiasky.util.Nature;
+import gaiasky.util.SysUtils;
 import gaiasky.util.coord.AstroUtils;
 import gaiasky.util.gaia.time.Duration;
 import gaiasky.util.gaia.time.Hours;
@@ -178,6 +179,9 @@ public class AttitudeXmlParser {
             msl.initialize();
 
             MslAttitudeDataServer mslDatServ = new MslAttitudeDataServer(startTimeNsSince2010, duration, msl);
+            if (GaiaSky.settings().performance.attitudeCache) {
+                mslDatServ.setCacheDirectory(SysUtils.getDataCacheDir(GaiaSky.settings().data.location).resolve("attitude"));
+            }
             mslDatServ.initialize();
             result = mslDatServ;
 
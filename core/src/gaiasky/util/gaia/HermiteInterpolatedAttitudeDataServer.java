@@ -63,6 +63,27 @@ public abstract class HermiteInterpolatedAttitudeDataServer extends
                     + getStopTime();
             throw new RuntimeException(msg);
         }
+        return interpolate(t, left, tNs, qX, qY, qZ, qW, rateX, rateY, rateZ);
+    }
+
+    /**
+     * Interpolates the attitude between the nodes left and left + 1 of the given arrays.
+     *
+     * @param t    the time elapsed since the epoch of J2010 in ns (TCB)
+     * @param left the index of the node at or before t
+     *
+     * @return attitude for the given time
+     */
+    protected static IAttitude interpolate(long t,
+                                           int left,
+                                           long[] tNs,
+                                           double[] qX,
+                                           double[] qY,
+                                           double[] qZ,
+                                           double[] qW,
+                                           double[] rateX,
+                                           double[] rateY,
+                                           double[] rateZ) {
         double qXDotL = 0.5 * (qY[left] * rateZ[left] - qZ[left] * rateY[left] + qW[left]
                 * rateX[left]);
         double qYDotL = 0.5 * (-qX[left] * rateZ[left] + qZ[left] * rateX[left] + qW[left]
@@ -446,6 +446,47 @@ public class ModifiedScanningLaw {
         calcOmega();
     }
 
+    /**
+     * Reset the integrator to a previously computed state
+     * <p>
+     * The state is given by the time and the values of {@link #getNu()} and
+     * {@link #getDeltaOmega()} at that time. Integrating forward from the
+     * restored state gives the same results as the uninterrupted integration,
+     * so that the integration can be resumed at any checkpoint.
+     *
+     * @param t          time [ns]
+     * @param nu         revolving phase at t [rad]
+     * @param deltaOmega spin phase offset at t [rad]
+     */
+    public void resetTo(long t, double nu, double deltaOmega) {
+        if (!initialized) {
+            initialize();
+        }
+        tNow = t;
+        y = new double[] { nu, deltaOmega };
+        dydt = dn.derivn(tNow, y);
+        sun.setTime(tNow);
+        lSun = sun.getSolarLongitude();
+        lSunDot = sun.getSolarLongitudeDot();
+        this.nu = y[0];
+        this.deltaOmega = y[1];
+        nuDot = dydt[0];
+        deltaOmegaDot = dydt[1];
+        calcOmega();
+        tOld = tNow;
+        yOld[0] = y[0];
+        yOld[1] = y[1];
+    }
+
+    /**
+     * Get the current time of the integrator
+     *
+     * @return time [ns]
+     */
+    public long getTime() {
+        return tNow;
+    }
+
     public double getLSun() {
         return lSun;
     }
@@ -7,15 +7,68 @@
 
 package gaiasky.util.gaia;
 
+import gaiasky.util.Logger;
+import gaiasky.util.Logger.Log;
+import gaiasky.util.LruCache;
 import gaiasky.util.gaia.time.Duration;
-import gaiasky.util.gaia.utils.AttitudeUtils;
+import gaiasky.util.gaia.utils.Area;
+import gaiasky.util.gaia.utils.ComplexArea;
 import gaiasky.util.math.QuaternionDouble;
+import gaiasky.util.math.Vector3D;
 import net.jafama.FastMath;
 
-import java.util.ArrayList;
-import java.util.List;
-
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Attitude data server that interpolates the attitude given by a {@link ModifiedScanningLaw}.
+ * <p>
+ * The Hermite nodes are split into segments of {@link #DEFAULT_SEGMENT_LENGTH} intervals, which are integrated on
+ * first access in a background thread, and the neighbouring segment in the direction of the last access is
+ * integrated ahead of time. Only the last few segments used are kept in memory. The state of the integrator at the
+ * start of each segment is kept, so that the integration of a segment resumes from the closest segment before it
+ * integrated so far. Optionally, the segments are persisted to a cache directory, keyed by the parameters of the
+ * scanning law and the nodes, so that later sessions read them instead of integrating them again.
+ */
 public class MslAttitudeDataServer extends HermiteInterpolatedAttitudeDataServer {
+    private static final Log logger = Logger.getLogger(MslAttitudeDataServer.class);
+
+    /**
+     * Default number of Hermite intervals per segment, about three days with the default step.
+     */
+    public static final int DEFAULT_SEGMENT_LENGTH = 2048;
+    /**
+     * Default maximum number of segments kept in memory.
+     */
+    public static final int DEFAULT_MAX_SEGMENTS = 8;
+
+    private static final int MAGIC = 0x4753414D;
+    private static final int VERSION = 1;
+    private static final int KEY_LENGTH = 32;
+    private static final int HEADER_LENGTH = 4 * 4 + KEY_LENGTH + 2 * 8;
+
+    /**
+     * Integrates the segments of all servers. A single thread, as the scanning laws are not thread-safe.
+     */
+    private static ExecutorService integrator;
 
     protected ModifiedScanningLaw msl;
 
@@ -50,21 +103,47 @@ public class MslAttitudeDataServer extends HermiteInterpolatedAttitudeDataServer
     protected double extraOmega;
 
     /**
-     * Keep track of times when the precession rate is reduced
+     * The times when the precession rate changes, calculated from the
+     * precession state at the nodes.
+     */
+    protected volatile long[] precessionRateChanges;
+
+    /**
+     * Number of Hermite intervals per segment
      */
-    protected boolean[] reducedPrecession;
+    protected int segmentLength = DEFAULT_SEGMENT_LENGTH;
 
     /**
-     * Keep track of times when the precession rate is in a transition from
-     * nominal to reduced, or vice versa
+     * Maximum number of segments kept in memory
      */
-    protected boolean[] transitionPrecession;
+    protected int maxSegments = DEFAULT_MAX_SEGMENTS;
 
     /**
-     * The times when the precession rate changes, calculated from
-     * {@link #reducedPrecession}.
+     * First and last Hermite nodes, and number of segments
      */
-    protected volatile long[] precessionRateChanges;
+    protected long tBegNs, tEndNs;
+    protected int nSegments;
+
+    /**
+     * State of the integrator (nu, deltaOmega) at the first node of each
+     * segment, or NaN if it is not known yet. Only used by the integrator thread.
+     */
+    private double[] checkpointNu, checkpointDeltaOmega;
+
+    /**
+     * Segments in memory, and segments being integrated
+     */
+    private LruCache<Integer, Segment> segments;
+    private final Map<Integer, Future<Segment>> pending = new HashMap<>();
+    private int lastSegment;
+
+    /**
+     * Directory to persist the segments in, or null, and the key of the
+     * current parameters
+     */
+    private Path cacheDir;
+    private byte[] key;
+    private String cacheName;
 
     /**
      * Quaterniond corresponding to extraOmega
@@ -102,9 +181,14 @@ public class MslAttitudeDataServer extends HermiteInterpolatedAttitudeDataServer
 
     /**
      * @see gaiasky.util.gaia.HermiteInterpolatedAttitudeDataServer#initialize()
+     * <p>
+     * This only sets up the Hermite nodes and the segments. The segments are
+     * integrated on first access.
      */
     @Override
-    public void initialize() {
+    public synchronized void initialize() {
+        // wait for the integration of the previous segments
+        drain();
 
         long tBeg = super.getStartTime();
         long tEnd = super.getStopTime();
@@ -115,7 +199,7 @@ public class MslAttitudeDataServer extends HermiteInterpolatedAttitudeDataServer
         long refEpoch = getRefTime();
         long tBegNsFromRef = tBeg - refEpoch;
         tBegNsFromRef = timeGranularity * (tBegNsFromRef / timeGranularity);
-        long tBegNs = refEpoch + tBegNsFromRef;
+        tBegNs = refEpoch + tBegNsFromRef;
 
         // adjust tEndNs such that the interval since the reference epoch is a
         // multiple of the timeGranularity (the smallest such multiple not
@@ -123,7 +207,7 @@ public class MslAttitudeDataServer extends HermiteInterpolatedAttitudeDataServer
         long tEndNsFromRef = tEnd - refEpoch;
         tEndNsFromRef = timeGranularity * ((tEndNsFromRef - 1L) / timeGranularity + 1L);
 
-        long tEndNs = refEpoch + tEndNsFromRef;
+        tEndNs = refEpoch + tEndNsFromRef;
 
         // adjust step to be the largest integer fraction of the timeGranularity
         // less than or equal to the specified maximum step:
@@ -148,57 +232,208 @@ public class MslAttitudeDataServer extends HermiteInterpolatedAttitudeDataServer
         }
         msl.setMaxInternalTimeStep(stepForIntegrator);
 
-        tNs = new long[nT];
-        qX = new double[nT];
-        qY = new double[nT];
-        qZ = new double[nT];
-        qW = new double[nT];
-        rateX = new double[nT];
-        rateY = new double[nT];
-        rateZ = new double[nT];
-        reducedPrecession = new boolean[nT];
-        transitionPrecession = new boolean[nT];
-        double[] om = new double[nT];
+        nSegments = (nT - 2) / segmentLength + 1;
+        checkpointNu = new double[nSegments];
+        checkpointDeltaOmega = new double[nSegments];
+        Arrays.fill(checkpointNu, Double.NaN);
+        Arrays.fill(checkpointDeltaOmega, Double.NaN);
+        // the cache evicts when it reaches its capacity
+        segments = new LruCache<>(maxSegments + 1);
+        lastSegment = 0;
+        precessionRateChanges = null;
+
+        if (cacheDir != null) {
+            key = key();
+            cacheName = "msl-" + HexFormat.of().formatHex(key, 0, 12);
+        }
+
+        initialized = true;
+    }
 
-        tNs[0] = tBegNs;
-        for (int i = 1; i < nT - 1; i++) {
-            tNs[i] = tNs[0] + i * step;
+    /**
+     * Waits for the segments being integrated, and discards them.
+     */
+    private void drain() {
+        for (Future<Segment> future : pending.values()) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ignored) {
+            }
         }
-        tNs[nT - 1] = tEndNs;
+        pending.clear();
+    }
 
-        long tNowNs = msl.getGTimeBeg();
-        for (int i = 0; i < nT; i++) {
+    private synchronized static ExecutorService integrator() {
+        if (integrator == null) {
+            integrator = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "msl-attitude-integrator");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return integrator;
+    }
 
-            msl.stepForward(tNs[i] - tNowNs);
+    /**
+     * Returns the segment with the given index, integrating it if needed, and
+     * schedules the integration of the next segment in the direction of the
+     * last access.
+     *
+     * @param k index of the segment
+     *
+     * @return the segment
+     */
+    private Segment segment(int k) {
+        Future<Segment> future;
+        synchronized (this) {
+            Segment s = segments.get(k);
+            if (s != null) {
+                prefetch(k);
+                return s;
+            }
+            future = submit(k);
+        }
+        Segment s;
+        try {
+            s = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        synchronized (this) {
+            if (pending.get(k) == future) {
+                pending.remove(k);
+                segments.put(k, s);
+            }
+            prefetch(k);
+        }
+        return s;
+    }
 
-            double lSun = msl.getLSun();
-            double xi = msl.getXi();
-            double nu = msl.getNuMod4Pi();
-            om[i] = msl.getOmegaMod4Pi();
-            double omega = om[i];
-            double lSunDot = msl.getLSunDot();
-            double nuDot = msl.getNuDot();
-            double omegaDot = msl.getOmegaDot();
+    private Future<Segment> submit(int k) {
+        return pending.computeIfAbsent(k, i -> integrator().submit(() -> integrate(i)));
+    }
 
-            QuaternionDouble[] qq = AttitudeConverter.heliotropicToQuaternions(lSun, xi, nu, omega, lSunDot, nuDot, omegaDot);
-            QuaternionDouble q = qq[0];
-            QuaternionDouble qInvQDot = qq[1].mulLeftInverse(q);
-            qX[i] = q.x;
-            qY[i] = q.y;
-            qZ[i] = q.z;
-            qW[i] = q.w;
-            rateX[i] = 2 * qInvQDot.x;
-            rateY[i] = 2 * qInvQDot.y;
-            rateZ[i] = 2 * qInvQDot.z;
+    private void prefetch(int k) {
+        // move the segments integrated ahead of time to the cache
+        var it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            var entry = it.next();
+            var future = entry.getValue();
+            if (future.isDone()) {
+                it.remove();
+                if (!future.isCancelled()) {
+                    try {
+                        segments.put(entry.getKey(), future.get());
+                    } catch (InterruptedException | ExecutionException ignored) {
+                    }
+                }
+            }
+        }
+        int next = k < lastSegment ? k - 1 : k + 1;
+        lastSegment = k;
+        if (next >= 0 && next < nSegments && !segments.containsKey(next)) {
+            submit(next);
+        }
+    }
 
-            reducedPrecession[i] = (msl.getStatus() != ModifiedScanningLaw.ScanState.NOMINAL);
-            transitionPrecession[i] = (msl.getStatus() == ModifiedScanningLaw.ScanState.TRANSITION);
+    /**
+     * Integrates the segment with the given index, or reads it from the cache
+     * directory. Runs in the integrator thread.
+     *
+     * @param k index of the segment
+     *
+     * @return the segment
+     */
+    private Segment integrate(int k) {
+        Segment s = read(k);
+        if (s != null) {
+            if (k + 1 < nSegments) {
+                checkpointNu[k + 1] = s.nuEnd;
+                checkpointDeltaOmega[k + 1] = s.deltaOmegaEnd;
+            }
+            return s;
+        }
 
-            tNowNs = tNs[i];
+        // resume from the closest known state of the integrator
+        int j = k;
+        while (j > 0 && !restore(j)) {
+            j--;
+        }
+        if (j == 0 && Double.isNaN(checkpointNu[0])) {
+            // integrate from the start of the scanning law to the first node
+            msl.stepForward(tBegNs - msl.getTime());
+            checkpointNu[0] = msl.getNu();
+            checkpointDeltaOmega[0] = msl.getDeltaOmega();
+        }
+        msl.resetTo(node(j * segmentLength), checkpointNu[j], checkpointDeltaOmega[j]);
+        for (int i = j; i < k; i++) {
+            for (int n = 0; n < segmentLength; n++) {
+                msl.stepForward(step);
+            }
+            checkpointNu[i + 1] = msl.getNu();
+            checkpointDeltaOmega[i + 1] = msl.getDeltaOmega();
+        }
 
+        s = new Segment(k * segmentLength, Math.min(segmentLength, nT - 1 - k * segmentLength) + 1);
+        for (int n = 0; n < s.tNs.length; n++) {
+            if (n > 0) {
+                msl.stepForward(step);
+            }
+            s.tNs[n] = node(s.first + n);
+            s.set(n, msl);
         }
+        s.nuEnd = msl.getNu();
+        s.deltaOmegaEnd = msl.getDeltaOmega();
+        if (k + 1 < nSegments) {
+            checkpointNu[k + 1] = s.nuEnd;
+            checkpointDeltaOmega[k + 1] = s.deltaOmegaEnd;
+        }
+        write(k, s);
+        return s;
+    }
 
-        initialized = true;
+    /**
+     * Makes the state of the integrator at the start of the given segment
+     * available, from memory or from the previous segment in the cache
+     * directory.
+     *
+     * @return whether the state is available
+     */
+    private boolean restore(int k) {
+        if (!Double.isNaN(checkpointNu[k])) {
+            return true;
+        }
+        if (cacheDir == null) {
+            return false;
+        }
+        try (FileChannel fc = FileChannel.open(file(k - 1), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.BIG_ENDIAN);
+            while (header.hasRemaining() && fc.read(header) >= 0) {
+            }
+            header.flip();
+            if (!checkHeader(header, k - 1)) {
+                return false;
+            }
+            // skip the number of nodes
+            header.getInt();
+            checkpointNu[k] = header.getDouble();
+            checkpointDeltaOmega[k] = header.getDouble();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the time of the given Hermite node.
+     */
+    private long node(int i) {
+        return i == nT - 1 ? tEndNs : tBegNs + i * step;
     }
 
     /**
@@ -253,7 +488,7 @@ public class MslAttitudeDataServer extends HermiteInterpolatedAttitudeDataServer
      * @return { first node, increment, number of nodes }
      */
     public long[] getNodeParams() {
-        return new long[] { this.tNs[0], this.step, (long) this.nT };
+        return new long[] { this.tBegNs, this.step, (long) this.nT };
     }
 
     /**
@@ -315,15 +550,61 @@ public class MslAttitudeDataServer extends HermiteInterpolatedAttitudeDataServer
     }
 
     /**
-     * @see gaiasky.util.gaia.HermiteInterpolatedAttitudeDataServer#getAttitude(long)
+     * Sets the directory to persist the integrated segments in. The files are
+     * keyed by the parameters of the scanning law and the Hermite nodes.
+     *
+     * @param cacheDir the directory, or null to not persist the segments
      */
-    public IAttitude getAttitudeNative(long t) throws RuntimeException {
+    public void setCacheDirectory(Path cacheDir) {
+        this.cacheDir = cacheDir;
+        initialized = false;
+    }
+
+    /**
+     * Sets the number of Hermite intervals per segment.
+     *
+     * @param segmentLength number of intervals
+     */
+    public void setSegmentLength(int segmentLength) {
+        this.segmentLength = Math.max(1, segmentLength);
+        initialized = false;
+    }
 
+    /**
+     * Sets the maximum number of segments kept in memory.
+     *
+     * @param maxSegments number of segments
+     */
+    public void setMaxSegments(int maxSegments) {
+        this.maxSegments = Math.max(1, maxSegments);
+        initialized = false;
+    }
+
+    /**
+     * Returns the index of the Hermite node at or before t
+     */
+    private int left(long t) {
         if (!initialized) {
             initialize();
         }
+        if (t < tBegNs || t >= tEndNs) {
+            String msg = "t < tBeg or >= tEnd, t = + " + t
+                    + ", tBeg = " + getStartTime() + ", tEnd = "
+                    + getStopTime();
+            throw new RuntimeException(msg);
+        }
+        return (int) Math.min((t - tBegNs) / step, nT - 2);
+    }
+
+    /**
+     * @see gaiasky.util.gaia.HermiteInterpolatedAttitudeDataServer#getAttitude(long)
+     */
+    public IAttitude getAttitudeNative(long t) throws RuntimeException {
+
+        int left = left(t);
+        Segment s = segment(left / segmentLength);
 
-        IAttitude att = super.getAttitudeNative(t);
+        IAttitude att = interpolate(t, left - s.first, s.tNs, s.qX, s.qY, s.qZ, s.qW, s.rateX, s.rateY, s.rateZ);
 
         // modify attitude through post-multiplication by qExtraOmega
         if (extraOmega != 0.0) {
@@ -342,8 +623,10 @@ public class MslAttitudeDataServer extends HermiteInterpolatedAttitudeDataServer
      * interval containing t
      */
     public boolean isModified(long t) {
-        int left = AttitudeUtils.findLeftIndexVar(t, tNs, 0);
-        return (reducedPrecession[left] || reducedPrecession[left + 1]);
+        int left = left(t);
+        Segment s = segment(left / segmentLength);
+        int l = left - s.first;
+        return (s.reduced[l] || s.reduced[l + 1]);
     }
 
     /**
@@ -355,8 +638,10 @@ public class MslAttitudeDataServer extends HermiteInterpolatedAttitudeDataServer
      * @return Whether it is in a transition phase
      */
     public boolean isTransition(long t) {
-        int left = AttitudeUtils.findLeftIndexVar(t, tNs, 0);
-        return (transitionPrecession[left] || transitionPrecession[left + 1]);
+        int left = left(t);
+        Segment s = segment(left / segmentLength);
+        int l = left - s.first;
+        return (s.transition[l] || s.transition[l + 1]);
     }
 
     /**
@@ -384,17 +669,20 @@ public class MslAttitudeDataServer extends HermiteInterpolatedAttitudeDataServer
     private long[] calculatePrecessionRateChanges() {
         List<Long> changes = new ArrayList<>();
 
-        for (int i = 1; i < reducedPrecession.length; i++) {
+        // consecutive segments share a node, so all intervals are visited
+        for (int k = 0; k < nSegments; k++) {
+            Segment s = segment(k);
+            for (int i = 1; i < s.tNs.length; i++) {
 
-            // if (transitionPrecession[i - 1] != transitionPrecession[i]) {
-            if (reducedPrecession[i - 1] != reducedPrecession[i]) {
+                // if (s.transition[i - 1] != s.transition[i]) {
+                if (s.reduced[i - 1] != s.reduced[i]) {
 
-                long t_prev = tNs[i - 1];
-                long t_i = tNs[i];
+                    long t_prev = s.tNs[i - 1];
+                    long t_i = s.tNs[i];
 
-                changes.add((t_prev + t_i) / 2);
+                    changes.add((t_prev + t_i) / 2);
+                }
             }
-
         }
 
         // Convert List<Double> to double[]
@@ -411,4 +699,202 @@ public class MslAttitudeDataServer extends HermiteInterpolatedAttitudeDataServer
         return res;
     }
 
+    /**
+     * Computes the key of the cache files, from the parameters of the scanning
+     * law and the Hermite nodes.
+     */
+    private byte[] key() {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (DataOutputStream out = new DataOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), md))) {
+            out.writeInt(VERSION);
+            out.writeLong(msl.getRefEpoch());
+            out.writeLong(msl.getGTimeBeg());
+            out.writeDouble(msl.getRefNu());
+            out.writeDouble(msl.getRefOmega());
+            out.writeDouble(msl.getXi());
+            out.writeDouble(msl.getPrecRate());
+            out.writeDouble(msl.getScanRate());
+            out.writeDouble(msl.sFactor);
+            out.writeDouble(msl.zMax);
+            out.writeDouble(msl.zMin);
+            out.writeDouble(msl.s1min);
+            out.writeLong(msl.getMaxInternalTimeStep());
+            for (ComplexArea area : msl.getHighDensityAreas()) {
+                out.writeUTF(String.valueOf(area.getName()));
+                for (Area a : area.getListOfAreas()) {
+                    out.writeUTF(a.getClass().getName());
+                    Vector3D dir = a.getMidPoint().getDirection();
+                    out.writeDouble(dir.x);
+                    out.writeDouble(dir.y);
+                    out.writeDouble(dir.z);
+                    out.writeDouble(a.getWeight());
+                }
+            }
+            out.writeLong(tBegNs);
+            out.writeLong(step);
+            out.writeInt(nT);
+            out.writeInt(segmentLength);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return md.digest();
+    }
+
+    private Path file(int k) {
+        return cacheDir.resolve(cacheName + "-" + k + ".bin");
+    }
+
+    private boolean checkHeader(ByteBuffer header, int k) {
+        if (header.remaining() < HEADER_LENGTH || header.getInt() != MAGIC || header.getInt() != VERSION) {
+            return false;
+        }
+        byte[] k0 = new byte[KEY_LENGTH];
+        header.get(k0);
+        return Arrays.equals(k0, key) && header.getInt() == k;
+    }
+
+    /**
+     * Reads the segment with the given index from the cache directory.
+     *
+     * @return the segment, or null if it is not there or can't be read
+     */
+    private Segment read(int k) {
+        if (cacheDir == null) {
+            return null;
+        }
+        Path file = file(k);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mem = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+            mem.order(ByteOrder.BIG_ENDIAN);
+            if (!checkHeader(mem, k)) {
+                return null;
+            }
+            int nodes = mem.getInt();
+            Segment s = new Segment(k * segmentLength, nodes);
+            if (nodes != Math.min(segmentLength, nT - 1 - s.first) + 1) {
+                return null;
+            }
+            s.nuEnd = mem.getDouble();
+            s.deltaOmegaEnd = mem.getDouble();
+            for (double[] a : s.arrays()) {
+                mem.asDoubleBuffer().get(a);
+                mem.position(mem.position() + nodes * 8);
+            }
+            for (int n = 0; n < nodes; n++) {
+                byte flags = mem.get();
+                s.reduced[n] = (flags & 1) != 0;
+                s.transition[n] = (flags & 2) != 0;
+                s.tNs[n] = node(s.first + n);
+            }
+            return s;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Error reading attitude segment " + file + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the segment with the given index to the cache directory, if set.
+     */
+    private void write(int k, Segment s) {
+        if (cacheDir == null) {
+            return;
+        }
+        Path file = file(k);
+        try {
+            Files.createDirectories(cacheDir);
+            Path tmp = Files.createTempFile(cacheDir, file.getFileName().toString(), ".tmp");
+            try {
+                int nodes = s.tNs.length;
+                ByteBuffer buf = ByteBuffer.allocate(HEADER_LENGTH + nodes * (7 * 8 + 1)).order(ByteOrder.BIG_ENDIAN);
+                buf.putInt(MAGIC).putInt(VERSION).put(key).putInt(k).putInt(nodes);
+                buf.putDouble(s.nuEnd).putDouble(s.deltaOmegaEnd);
+                for (double[] a : s.arrays()) {
+                    buf.asDoubleBuffer().put(a);
+                    buf.position(buf.position() + nodes * 8);
+                }
+                for (int n = 0; n < nodes; n++) {
+                    buf.put((byte) ((s.reduced[n] ? 1 : 0) | (s.transition[n] ? 2 : 0)));
+                }
+                buf.flip();
+                try (FileChannel fc = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    while (buf.hasRemaining()) {
+                        fc.write(buf);
+                    }
+                }
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not cache attitude segment " + file + ": " + e);
+        }
+    }
+
+    /**
+     * The Hermite nodes of a segment, from node first to node first + length
+     * (inclusive), so that consecutive segments share a node.
+     */
+    private static final class Segment {
+        final int first;
+        final long[] tNs;
+        final double[] qX, qY, qZ, qW, rateX, rateY, rateZ;
+        final boolean[] reduced, transition;
+        /** State of the integrator at the last node **/
+        double nuEnd, deltaOmegaEnd;
+
+        Segment(int first, int nodes) {
+            this.first = first;
+            tNs = new long[nodes];
+            qX = new double[nodes];
+            qY = new double[nodes];
+            qZ = new double[nodes];
+            qW = new double[nodes];
+            rateX = new double[nodes];
+            rateY = new double[nodes];
+            rateZ = new double[nodes];
+            reduced = new boolean[nodes];
+            transition = new boolean[nodes];
+        }
+
+        double[][] arrays() {
+            return new double[][] { qX, qY, qZ, qW, rateX, rateY, rateZ };
+        }
+
+        /**
+         * Sets the node i from the current state of the scanning law.
+         */
+        void set(int i, ModifiedScanningLaw msl) {
+            double lSun = msl.getLSun();
+            double xi = msl.getXi();
+            double nu = msl.getNuMod4Pi();
+            double omega = msl.getOmegaMod4Pi();
+            double lSunDot = msl.getLSunDot();
+            double nuDot = msl.getNuDot();
+            double omegaDot = msl.getOmegaDot();
+
+            QuaternionDouble[] qq = AttitudeConverter.heliotropicToQuaternions(lSun, xi, nu, omega, lSunDot, nuDot, omegaDot);
+            QuaternionDouble q = qq[0];
+            QuaternionDouble qInvQDot = qq[1].mulLeftInverse(q);
+            qX[i] = q.x;
+            qY[i] = q.y;
+            qZ[i] = q.z;
+            qW[i] = q.w;
+            rateX[i] = 2 * qInvQDot.x;
+            rateY[i] = 2 * qInvQDot.y;
+            rateZ[i] = 2 * qInvQDot.z;
+
+            reduced[i] = (msl.getStatus() != ModifiedScanningLaw.ScanState.NOMINAL);
+            transition[i] = (msl.getStatus() == ModifiedScanningLaw.ScanState.TRANSITION);
+        }
+    }
+
 }
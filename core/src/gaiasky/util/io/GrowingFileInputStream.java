@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.util.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Input stream over a file that is still being written to. Reads never go past the current
+ * {@link Watermark}, and block until the writer advances it, so consumers can process the
+ * file concurrently with its production. The stream reports end-of-file only after the
+ * watermark has been {@link Watermark#finish() finished} and all bytes up to it have been read.
+ */
+public class GrowingFileInputStream extends InputStream {
+
+    private final FileChannel channel;
+    private final Watermark watermark;
+    private long position;
+
+    public GrowingFileInputStream(Path file, Watermark watermark) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.watermark = watermark;
+        this.position = 0;
+    }
+
+    /**
+     * @return The number of bytes read so far.
+     */
+    public long getBytesRead() {
+        return position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        long available;
+        try {
+            available = watermark.await(position);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for data");
+        }
+        if (available <= position) {
+            // Finished, and everything has been consumed.
+            return -1;
+        }
+        int toRead = (int) Math.min(len, available - position);
+        int n = channel.read(ByteBuffer.wrap(b, off, toRead), position);
+        if (n > 0) {
+            position += n;
+        }
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, watermark.get() - position));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Tracks the number of contiguous bytes, counted from the start of the file, that are
+     * already on disk and can be safely read. Writers advance it, readers wait on it.
+     */
+    public static class Watermark {
+        private long value;
+        private boolean finished;
+        private IOException failure;
+
+        public Watermark(long initial) {
+            this.value = initial;
+        }
+
+        public synchronized long get() {
+            return value;
+        }
+
+        public synchronized boolean isFinished() {
+            return finished;
+        }
+
+        /**
+         * Advances the watermark to the given value. Smaller values are ignored.
+         *
+         * @param newValue The new number of contiguous bytes available.
+         */
+        public synchronized void advance(long newValue) {
+            if (newValue > value) {
+                value = newValue;
+                notifyAll();
+            }
+        }
+
+        /**
+         * Marks the file as complete. Readers reaching the watermark get end-of-file.
+         */
+        public synchronized void finish() {
+            finished = true;
+            notifyAll();
+        }
+
+        /**
+         * Aborts the production of the file. Waiting and future readers get the given exception.
+         *
+         * @param e The cause.
+         */
+        public synchronized void fail(IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+            notifyAll();
+        }
+
+        /**
+         * Blocks until there are bytes available past the given position, or the file is finished.
+         *
+         * @param position The current read position.
+         *
+         * @return The current watermark. If it is not greater than position, the file is finished.
+         */
+        synchronized long await(long position) throws InterruptedException, IOException {
+            while (value <= position && !finished && failure == null) {
+                wait();
+            }
+            if (failure != null) {
+                throw new IOException(failure.getMessage(), failure);
+            }
+            return value;
+        }
+    }
+}
@@ -8,6 +8,7 @@ package gaiasky.util.parse;
 
 import net.jafama.FastMath;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
@@ -143,12 +144,24 @@ public final class Parser {
      * invalid input is necessary
      */
     public static double parseDouble(String input) {
+        return parseDouble(input, 0, input.length());
+    }
+
+    /**
+     * Same as {@link #parseDouble(String)}, on a range of a character sequence.
+     *
+     * @param input The characters.
+     * @param from  The start of the range, inclusive.
+     * @param to    The end of the range, exclusive.
+     * @return Parsed double or Double.NaN if the parsing fails.
+     */
+    public static double parseDouble(CharSequence input, int from, int to) {
         double result = 0;
-        int pos = 0;
-        int len = input.length();
-        if (len == 0)
+        int pos = from;
+        int len = to;
+        if (len <= from)
             return Double.NaN;
-        char c = input.charAt(0);
+        char c = input.charAt(from);
         double sign = 1;
 
         // skip any starting white space
@@ -613,4 +626,44 @@ public final class Parser {
         }
         return result;
     }
+
+    /**
+     * Character sequence view of the ASCII bytes of an array, to parse them without creating strings. The view can be
+     * pointed to a new array, so that one instance serves a whole file.
+     */
+    public static final class AsciiView implements CharSequence {
+        private byte[] bytes;
+
+        /**
+         * Points the view to the given array.
+         *
+         * @param bytes The ASCII bytes.
+         *
+         * @return This view.
+         */
+        public AsciiView of(byte[] bytes) {
+            this.bytes = bytes;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return bytes.length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) bytes[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, StandardCharsets.US_ASCII);
+        }
+    }
 }
@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.util.profile;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hierarchical frame-time profiler. Stages are registered once with a path-like name, such as
+ * <code>frame/update/OrbitUpdater</code>, where each level is contained in its parent. Code measures a stage with
+ * <pre>
+ *     long start = FrameProfiler.begin();
+ *     ...
+ *     FrameProfiler.end(stage, start);
+ * </pre>
+ * Scopes add up within a frame, also from several threads, and {@link #endFrame()} moves the total of each stage to a
+ * preallocated ring buffer of the last {@link #FRAMES} frames, so measuring allocates nothing. When the profiler is
+ * disabled, {@link #begin()} returns 0 without reading the clock, and {@link #end(int, long)} returns right away.
+ * <p>
+ * Statistics and histograms of each stage are computed on demand. They can be written to a CSV file, and they are
+ * committed as Java Flight Recorder events on dump. If a recording has the <code>gaiasky.FrameStage</code> event
+ * enabled, the time of each stage is also committed at the end of every frame.
+ */
+public final class FrameProfiler {
+    /** Maximum number of stages. **/
+    public static final int MAX_STAGES = 512;
+    /** Number of frames kept. **/
+    public static final int FRAMES = 600;
+    /** Number of histogram buckets. Bucket k counts the frames in [2^k, 2^(k+1)) microseconds. **/
+    public static final int BUCKETS = 20;
+
+    private static volatile boolean enabled;
+    private static final Map<String, Integer> ids = new HashMap<>();
+    private static final String[] names = new String[MAX_STAGES];
+    private static volatile int stages;
+    /** Time of each stage in the current frame, in nanoseconds. **/
+    private static final AtomicLongArray current = new AtomicLongArray(MAX_STAGES);
+    /** Time of each stage in the last frames, in nanoseconds. **/
+    private static final long[][] ring = new long[MAX_STAGES][];
+    /** Number of frames recorded. **/
+    private static long frames;
+
+    private FrameProfiler() {
+    }
+
+    /**
+     * Registers a stage, or returns the existing one with the same name.
+     *
+     * @param name The stage name. Levels are separated by '/'.
+     *
+     * @return The stage identifier.
+     */
+    public static synchronized int stage(String name) {
+        var id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        if (stages == MAX_STAGES) {
+            throw new IllegalStateException("Too many profiler stages: " + MAX_STAGES);
+        }
+        int stage = stages;
+        names[stage] = name;
+        ring[stage] = new long[FRAMES];
+        ids.put(name, stage);
+        stages = stage + 1;
+        return stage;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        FrameProfiler.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts a scope.
+     *
+     * @return The start time, or 0 if the profiler is disabled.
+     */
+    public static long begin() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Ends a scope of the given stage.
+     *
+     * @param stage The stage.
+     * @param start The value returned by {@link #begin()}.
+     */
+    public static void end(int stage, long start) {
+        if (start != 0L) {
+            current.getAndAdd(stage, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Closes the current frame. To call once per frame, on the main thread.
+     */
+    public static void endFrame() {
+        if (!enabled) {
+            return;
+        }
+        boolean jfr = StageEvents.FRAME_STAGE.isEnabled();
+        synchronized (ring) {
+            int slot = (int) (frames % FRAMES);
+            int n = stages;
+            for (int i = 0; i < n; i++) {
+                long time = current.getAndSet(i, 0);
+                ring[i][slot] = time;
+                if (jfr && time > 0) {
+                    var event = new StageEvents.FrameStage();
+                    event.stage = names[i];
+                    event.frame = frames;
+                    event.time = time;
+                    event.commit();
+                }
+            }
+            frames++;
+        }
+    }
+
+    /**
+     * Discards all the recorded frames.
+     */
+    public static void reset() {
+        synchronized (ring) {
+            for (int i = 0; i < stages; i++) {
+                current.set(i, 0);
+                Arrays.fill(ring[i], 0);
+            }
+            frames = 0;
+        }
+    }
+
+    /**
+     * Statistics of a stage over the recorded frames. Times in milliseconds.
+     *
+     * @param stage     The stage name.
+     * @param frames    The number of frames.
+     * @param mean      The mean time per frame.
+     * @param min       The minimum time.
+     * @param p50       The median.
+     * @param p95       The 95th percentile.
+     * @param p99       The 99th percentile.
+     * @param max       The maximum time.
+     * @param histogram The number of frames in each bucket, see {@link #BUCKETS}.
+     */
+    public record Stats(String stage, int frames, double mean, double min, double p50, double p95, double p99, double max,
+                        int[] histogram) {
+    }
+
+    /**
+     * Computes the statistics of all the stages, in registration order.
+     *
+     * @return The statistics.
+     */
+    public static List<Stats> stats() {
+        int n;
+        int count;
+        long[][] copy;
+        synchronized (ring) {
+            n = stages;
+            count = (int) Math.min(frames, FRAMES);
+            copy = new long[n][];
+            for (int i = 0; i < n; i++) {
+                copy[i] = Arrays.copyOf(ring[i], count);
+            }
+        }
+        List<Stats> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            result.add(stats(names[i], copy[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Computes the statistics of the given stage.
+     *
+     * @param name The stage name.
+     *
+     * @return The statistics, or null if there is no such stage.
+     */
+    public static Stats stats(String name) {
+        for (var s : stats()) {
+            if (s.stage.equals(name)) {
+                return s;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Computes the statistics of the given frame times.
+     *
+     * @param name  The stage name.
+     * @param times The time of each frame, in nanoseconds.
+     *
+     * @return The statistics.
+     */
+    public static Stats stats(String name, long[] times) {
+        int count = times.length;
+        var histogram = new int[BUCKETS];
+        if (count == 0) {
+            return new Stats(name, 0, 0, 0, 0, 0, 0, 0, histogram);
+        }
+        var sorted = times.clone();
+        Arrays.sort(sorted);
+        double sum = 0;
+        for (long t : sorted) {
+            sum += t;
+            long us = t / 1000;
+            int bucket = us <= 1 ? 0 : 63 - Long.numberOfLeadingZeros(us);
+            histogram[Math.min(bucket, BUCKETS - 1)]++;
+        }
+        return new Stats(name, count, sum / count * 1e-6, sorted[0] * 1e-6, percentile(sorted, 0.5), percentile(sorted, 0.95),
+                percentile(sorted, 0.99), sorted[count - 1] * 1e-6, histogram);
+    }
+
+    /** Nearest-rank percentile of sorted nanosecond times, in milliseconds. **/
+    private static double percentile(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, rank - 1)] * 1e-6;
+    }
+
+    /**
+     * Writes the statistics of all the stages to a CSV file, and commits them as Java Flight Recorder events.
+     *
+     * @param file The output file.
+     *
+     * @throws IOException If the file can't be written.
+     */
+    public static void dump(Path file) throws IOException {
+        var stats = stats();
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (BufferedWriter w = Files.newBufferedWriter(file)) {
+            w.write("stage,frames,mean_ms,min_ms,p50_ms,p95_ms,p99_ms,max_ms");
+            for (int b = 0; b < BUCKETS; b++) {
+                w.write(",lt_" + (2L << b) + "us");
+            }
+            w.newLine();
+            for (var s : stats) {
+                w.write(String.format(Locale.ROOT, "%s,%d,%.4f,%.4f,%.4f,%.4f,%.4f,%.4f", s.stage, s.frames, s.mean, s.min, s.p50, s.p95, s.p99,
+                        s.max));
+                for (int b = 0; b < BUCKETS; b++) {
+                    w.write("," + s.histogram[b]);
+                }
+                w.newLine();
+            }
+        }
+        for (var s : stats) {
+            var event = new StageEvents.StageStatistics();
+            if (event.isEnabled()) {
+                event.stage = s.stage;
+                event.frames = s.frames;
+                event.mean = (long) (s.mean * 1e6);
+                event.p50 = (long) (s.p50 * 1e6);
+                event.p95 = (long) (s.p95 * 1e6);
+                event.p99 = (long) (s.p99 * 1e6);
+                event.max = (long) (s.max * 1e6);
+                event.commit();
+            }
+        }
+    }
+}
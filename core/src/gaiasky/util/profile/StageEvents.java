@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.util.profile;
+
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder events of the {@link FrameProfiler}. They are only created when a recording has them enabled.
+ */
+final class StageEvents {
+
+    private StageEvents() {
+    }
+
+    /** Time spent in one stage during one frame. **/
+    @Name("gaiasky.FrameStage")
+    @Label("Frame Stage")
+    @Category({ "Gaia Sky", "Profiler" })
+    @Description("Time spent in one stage during one frame")
+    @StackTrace(false)
+    static final class FrameStage extends Event {
+        @Label("Stage")
+        String stage;
+        @Label("Frame")
+        long frame;
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+    }
+
+    /** Statistics of one stage over the frames in the profiler, committed on dump. **/
+    @Name("gaiasky.StageStatistics")
+    @Label("Stage Statistics")
+    @Category({ "Gaia Sky", "Profiler" })
+    @Description("Frame time statistics of one stage")
+    @StackTrace(false)
+    static final class StageStatistics extends Event {
+        @Label("Stage")
+        String stage;
+        @Label("Frames")
+        int frames;
+        @Label("Mean")
+        @Timespan(Timespan.NANOSECONDS)
+        long mean;
+        @Label("Median")
+        @Timespan(Timespan.NANOSECONDS)
+        long p50;
+        @Label("95th Percentile")
+        @Timespan(Timespan.NANOSECONDS)
+        long p95;
+        @Label("99th Percentile")
+        @Timespan(Timespan.NANOSECONDS)
+        long p99;
+        @Label("Maximum")
+        @Timespan(Timespan.NANOSECONDS)
+        long max;
+    }
+
+    static final EventType FRAME_STAGE = EventType.getEventType(FrameStage.class);
+}
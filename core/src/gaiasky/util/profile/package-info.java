@@ -0,0 +1,11 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+/**
+ * Contains the frame-time profiler of the update, extraction and render stages.
+ */
+package gaiasky.util.profile;
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.util.sync;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-size binary packet with the camera state and the simulation time of a master instance for a single frame.
+ * The layout, in network byte order, is:
+ * <ul>
+ *     <li>0: magic number, int.</li>
+ *     <li>4: protocol version, short.</li>
+ *     <li>6: flags, short (reserved).</li>
+ *     <li>8: session id, long.</li>
+ *     <li>16: sequence number, long.</li>
+ *     <li>24: master wall-clock time at send, in microseconds since the epoch, long.</li>
+ *     <li>32: simulation time, in milliseconds since the epoch, long.</li>
+ *     <li>40: camera position, 3 doubles, internal units.</li>
+ *     <li>64: camera direction, 3 doubles.</li>
+ *     <li>88: camera up, 3 doubles.</li>
+ * </ul>
+ * The session id is drawn at random by the master when it starts, and its sequence numbers restart with it.
+ */
+public class CameraSyncPacket {
+    /** "GSCY" in ASCII. **/
+    public static final int MAGIC = 0x47534359;
+    public static final short VERSION = 2;
+    /** Size of a packet in bytes. **/
+    public static final int SIZE = 112;
+
+    public long session;
+    public long sequence;
+    public long masterTimeUs;
+    public long simTimeMs;
+    public final double[] pos = new double[3];
+    public final double[] dir = new double[3];
+    public final double[] up = new double[3];
+
+    /**
+     * Writes this packet to the given buffer, starting at its position.
+     *
+     * @param buffer The buffer, with at least {@link #SIZE} bytes remaining.
+     */
+    public void write(ByteBuffer buffer) {
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) 0);
+        buffer.putLong(session);
+        buffer.putLong(sequence);
+        buffer.putLong(masterTimeUs);
+        buffer.putLong(simTimeMs);
+        put(buffer, pos);
+        put(buffer, dir);
+        put(buffer, up);
+    }
+
+    /**
+     * Reads a packet from the given buffer, starting at its position.
+     *
+     * @param buffer The buffer.
+     *
+     * @return True if the buffer contained a valid packet, false otherwise. In the latter case, the
+     *         contents of this packet are undefined.
+     */
+    public boolean read(ByteBuffer buffer) {
+        if (buffer.remaining() < SIZE || buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+            return false;
+        }
+        buffer.getShort();
+        session = buffer.getLong();
+        sequence = buffer.getLong();
+        masterTimeUs = buffer.getLong();
+        simTimeMs = buffer.getLong();
+        get(buffer, pos);
+        get(buffer, dir);
+        get(buffer, up);
+        return true;
+    }
+
+    public void set(CameraSyncPacket other) {
+        session = other.session;
+        sequence = other.sequence;
+        masterTimeUs = other.masterTimeUs;
+        simTimeMs = other.simTimeMs;
+        System.arraycopy(other.pos, 0, pos, 0, 3);
+        System.arraycopy(other.dir, 0, dir, 0, 3);
+        System.arraycopy(other.up, 0, up, 0, 3);
+    }
+
+    /**
+     * Sets this packet to the interpolation between a and b. Positions and simulation times are interpolated
+     * linearly, and direction and up vectors are interpolated linearly and re-normalized.
+     *
+     * @param a     The first packet.
+     * @param b     The second packet.
+     * @param alpha The interpolation factor in [0,1].
+     */
+    public void interpolate(CameraSyncPacket a, CameraSyncPacket b, double alpha) {
+        session = alpha < 0.5 ? a.session : b.session;
+        sequence = alpha < 0.5 ? a.sequence : b.sequence;
+        masterTimeUs = a.masterTimeUs + Math.round((b.masterTimeUs - a.masterTimeUs) * alpha);
+        simTimeMs = a.simTimeMs + Math.round((b.simTimeMs - a.simTimeMs) * alpha);
+        lerp(a.pos, b.pos, alpha, pos, false);
+        lerp(a.dir, b.dir, alpha, dir, true);
+        lerp(a.up, b.up, alpha, up, true);
+    }
+
+    private static void lerp(double[] a, double[] b, double alpha, double[] out, boolean normalize) {
+        for (int i = 0; i < 3; i++) {
+            out[i] = a[i] + (b[i] - a[i]) * alpha;
+        }
+        if (normalize) {
+            double len = Math.sqrt(out[0] * out[0] + out[1] * out[1] + out[2] * out[2]);
+            if (len > 0) {
+                out[0] /= len;
+                out[1] /= len;
+                out[2] /= len;
+            }
+        }
+    }
+
+    private static void put(ByteBuffer buffer, double[] v) {
+        buffer.putDouble(v[0]);
+        buffer.putDouble(v[1]);
+        buffer.putDouble(v[2]);
+    }
+
+    private static void get(ByteBuffer buffer, double[] v) {
+        v[0] = buffer.getDouble();
+        v[1] = buffer.getDouble();
+        v[2] = buffer.getDouble();
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.util.sync;
+
+import gaiasky.util.Logger;
+import gaiasky.util.Logger.Log;
+
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Slave side of the camera synchronization channel. Receives {@link CameraSyncPacket}s on a background thread,
+ * discards stale and duplicated packets, and keeps a short history that the main thread samples once per frame.
+ * When the master restarts, which the session id of its packets tells, the sequence and the history start over, and
+ * the late packets of the previous session are discarded.
+ * <p>
+ * Two modes are supported:
+ * <ul>
+ *     <li><b>Frame lock</b> (zero delay): each frame applies the newest packet, exactly as the master sent it.</li>
+ *     <li><b>Interpolation</b> (positive delay): the state is interpolated at the master time that lies the given
+ *     delay in the past, which absorbs network jitter at the cost of a fixed latency.</li>
+ * </ul>
+ * The receiver also tracks latency, jitter and packet loss statistics.
+ */
+public class CameraSyncReceiver {
+    private static final Log logger = Logger.getLogger(CameraSyncReceiver.class);
+
+    /** Number of packets kept for interpolation. **/
+    private static final int HISTORY = 16;
+
+    private final DatagramChannel channel;
+    private final long delayUs;
+    private Thread thread;
+
+    private final CameraSyncPacket[] history;
+    private int head = 0, count = 0;
+    private long session, previousSession;
+    private boolean restarted;
+    private long lastSequence = 0;
+    private long appliedSequence = 0;
+    /** Estimated offset between the master clock and the local clock, plus the minimum network delay. **/
+    private long offsetUs = Long.MAX_VALUE;
+
+    private long received, lost, dropped;
+    private double latencyMeanUs, jitterUs;
+    private long latencyMaxUs, lastTransitUs;
+
+    /**
+     * Creates a receiver bound to the given port.
+     *
+     * @param port           The UDP port, or 0 for an ephemeral port.
+     * @param multicastGroup The multicast group to join, or null to receive unicast packets only.
+     * @param delayMs        The interpolation delay in milliseconds, or 0 to lock to the newest master frame.
+     *
+     * @throws IOException If the socket can't be opened.
+     */
+    public CameraSyncReceiver(int port, String multicastGroup, long delayMs) throws IOException {
+        this.delayUs = Math.max(0, delayMs) * 1000L;
+        this.history = new CameraSyncPacket[HISTORY];
+        for (int i = 0; i < HISTORY; i++) {
+            history[i] = new CameraSyncPacket();
+        }
+        this.channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        this.channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        this.channel.bind(new InetSocketAddress(port));
+        if (multicastGroup != null && !multicastGroup.isBlank()) {
+            InetAddress group = InetAddress.getByName(multicastGroup);
+            NetworkInterface ni = multicastInterface();
+            if (ni != null) {
+                channel.join(group, ni);
+                logger.info("Joined camera sync multicast group " + multicastGroup + " on " + ni.getName());
+            } else {
+                logger.warn("No multicast interface found, can't join group " + multicastGroup);
+            }
+        }
+    }
+
+    /**
+     * Starts the receiving thread.
+     */
+    public void start() {
+        thread = new Thread(this::receiveLoop, "gaiasky-camera-sync");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Camera sync receiver listening on port " + getLocalPort() + (delayUs > 0 ? " (interpolation, delay " + delayUs / 1000 + " ms)" : " (frame lock)"));
+    }
+
+    public int getLocalPort() {
+        try {
+            return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private void receiveLoop() {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(CameraSyncPacket.SIZE * 2).order(ByteOrder.BIG_ENDIAN);
+        final CameraSyncPacket packet = new CameraSyncPacket();
+        while (channel.isOpen()) {
+            try {
+                buffer.clear();
+                channel.receive(buffer);
+                long arrival = CameraSyncSender.nowUs();
+                buffer.flip();
+                if (packet.read(buffer)) {
+                    offer(packet, arrival);
+                }
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                logger.error(e);
+            }
+        }
+    }
+
+    /**
+     * Adds a packet to the history. Called from the receiving thread.
+     *
+     * @param packet    The packet. It is copied.
+     * @param arrivalUs The arrival time, in microseconds since the epoch.
+     *
+     * @return Whether the packet was accepted. Stale and duplicated packets are rejected.
+     */
+    public synchronized boolean offer(CameraSyncPacket packet, long arrivalUs) {
+        if (lastSequence > 0 && packet.session != session) {
+            if (restarted && packet.session == previousSession) {
+                // Late packet of the previous session.
+                dropped++;
+                return false;
+            }
+            logger.info("Camera sync master restarted, new session " + Long.toHexString(packet.session));
+            restart();
+        }
+        if (packet.sequence <= lastSequence) {
+            dropped++;
+            return false;
+        }
+        boolean first = lastSequence == 0;
+        if (!first && packet.sequence > lastSequence + 1) {
+            lost += packet.sequence - lastSequence - 1;
+        }
+        session = packet.session;
+        lastSequence = packet.sequence;
+        received++;
+
+        // Latency is only meaningful if master and slave clocks are synchronized. Jitter (RFC 3550) is not affected.
+        long transit = arrivalUs - packet.masterTimeUs;
+        latencyMeanUs += (transit - latencyMeanUs) / received;
+        latencyMaxUs = received == 1 ? transit : Math.max(latencyMaxUs, transit);
+        if (!first) {
+            jitterUs += (Math.abs(transit - lastTransitUs) - jitterUs) / 16.0;
+        }
+        lastTransitUs = transit;
+        offsetUs = Math.min(offsetUs, transit);
+
+        history[head].set(packet);
+        head = (head + 1) % HISTORY;
+        count = Math.min(count + 1, HISTORY);
+        return true;
+    }
+
+    /**
+     * Starts a new session: clears the history, the sequence and the clock offset, which may have changed with the
+     * master. The statistics are kept.
+     */
+    private void restart() {
+        previousSession = session;
+        restarted = true;
+        lastSequence = 0;
+        appliedSequence = 0;
+        head = count = 0;
+        offsetUs = Long.MAX_VALUE;
+    }
+
+    /**
+     * Samples the camera state to apply in the current frame.
+     *
+     * @param nowUs The current time, in microseconds since the epoch.
+     * @param out   The packet to write the state to.
+     *
+     * @return Whether there is a new state to apply.
+     */
+    public synchronized boolean sample(long nowUs, CameraSyncPacket out) {
+        if (count == 0) {
+            return false;
+        }
+        CameraSyncPacket newest = get(count - 1);
+        if (delayUs <= 0) {
+            // Frame lock.
+            if (newest.sequence == appliedSequence) {
+                return false;
+            }
+            out.set(newest);
+            appliedSequence = newest.sequence;
+            return true;
+        }
+
+        // Interpolation at the delayed master time.
+        long target = nowUs - offsetUs - delayUs;
+        CameraSyncPacket oldest = get(0);
+        if (target <= oldest.masterTimeUs) {
+            out.set(oldest);
+        } else if (target >= newest.masterTimeUs) {
+            out.set(newest);
+        } else {
+            for (int i = count - 2; i >= 0; i--) {
+                CameraSyncPacket a = get(i);
+                if (a.masterTimeUs <= target) {
+                    CameraSyncPacket b = get(i + 1);
+                    long span = b.masterTimeUs - a.masterTimeUs;
+                    double alpha = span > 0 ? (double) (target - a.masterTimeUs) / span : 1.0;
+                    out.interpolate(a, b, alpha);
+                    break;
+                }
+            }
+        }
+        appliedSequence = out.sequence;
+        return true;
+    }
+
+    /**
+     * Gets the i-th packet in the history, from oldest (0) to newest (count - 1).
+     */
+    private CameraSyncPacket get(int i) {
+        return history[(head - count + i + HISTORY) % HISTORY];
+    }
+
+    /**
+     * @return A snapshot of the reception statistics.
+     */
+    public synchronized Statistics getStatistics() {
+        return new Statistics(received, lost, dropped, latencyMeanUs / 1000.0, latencyMaxUs / 1000.0, jitterUs / 1000.0);
+    }
+
+    public void dispose() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.error(e);
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+        logger.info("Camera sync statistics: " + getStatistics());
+    }
+
+    private static NetworkInterface multicastInterface() throws SocketException {
+        return NetworkInterface.networkInterfaces().filter(ni -> {
+            try {
+                return ni.isUp() && ni.supportsMulticast() && !ni.isLoopback();
+            } catch (SocketException e) {
+                return false;
+            }
+        }).findFirst().orElse(NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress()));
+    }
+
+    /**
+     * Reception statistics.
+     *
+     * @param received      Number of accepted packets.
+     * @param lost          Number of packets never received, according to sequence gaps.
+     * @param dropped       Number of stale or duplicated packets that were discarded.
+     * @param latencyMeanMs Mean one-way latency in milliseconds. Requires synchronized clocks.
+     * @param latencyMaxMs  Maximum one-way latency in milliseconds. Requires synchronized clocks.
+     * @param jitterMs      Inter-arrival jitter in milliseconds, as defined in RFC 3550.
+     */
+    public record Statistics(long received, long lost, long dropped, double latencyMeanMs, double latencyMaxMs, double jitterMs) {
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.util.sync;
+
+import gaiasky.util.Logger;
+import gaiasky.util.Logger.Log;
+import gaiasky.util.math.Vector3D;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Master side of the camera synchronization channel. Sends one {@link CameraSyncPacket} per frame over UDP,
+ * either to a multicast group or to each slave individually. Sending never blocks the calling thread, and
+ * does not allocate.
+ */
+public class CameraSyncSender {
+    private static final Log logger = Logger.getLogger(CameraSyncSender.class);
+
+    private static final long EPOCH_ANCHOR_US;
+    private static final long NANO_ANCHOR;
+
+    static {
+        Instant now = Instant.now();
+        NANO_ANCHOR = System.nanoTime();
+        EPOCH_ANCHOR_US = now.getEpochSecond() * 1_000_000L + now.getNano() / 1_000L;
+    }
+
+    private final DatagramChannel channel;
+    private final InetSocketAddress[] targets;
+    private final ByteBuffer buffer;
+    private final CameraSyncPacket packet;
+    private long sequence = 0;
+    private long errors = 0;
+
+    /**
+     * Creates a sender.
+     *
+     * @param targets The target addresses. Use a single multicast address to reach all slaves at once.
+     *
+     * @throws IOException If the socket can't be opened.
+     */
+    public CameraSyncSender(List<InetSocketAddress> targets) throws IOException {
+        this.targets = targets.toArray(new InetSocketAddress[0]);
+        this.channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        this.channel.configureBlocking(false);
+        this.channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+        this.buffer = ByteBuffer.allocateDirect(CameraSyncPacket.SIZE).order(ByteOrder.BIG_ENDIAN);
+        this.packet = new CameraSyncPacket();
+        this.packet.session = ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * Sends the given camera state and simulation time to all targets.
+     *
+     * @param pos       Camera position.
+     * @param dir       Camera direction.
+     * @param up        Camera up.
+     * @param simTimeMs Simulation time, in milliseconds since the epoch.
+     */
+    public void send(Vector3D pos, Vector3D dir, Vector3D up, long simTimeMs) {
+        packet.sequence = ++sequence;
+        packet.masterTimeUs = nowUs();
+        packet.simTimeMs = simTimeMs;
+        set(packet.pos, pos);
+        set(packet.dir, dir);
+        set(packet.up, up);
+        send(packet);
+    }
+
+    /**
+     * Sends the given packet to all targets as is.
+     *
+     * @param p The packet.
+     */
+    public void send(CameraSyncPacket p) {
+        buffer.clear();
+        p.write(buffer);
+        for (InetSocketAddress target : targets) {
+            buffer.flip();
+            try {
+                channel.send(buffer, target);
+            } catch (IOException e) {
+                // Log the first error, and then every 1000 to avoid flooding.
+                if (errors++ % 1000 == 0) {
+                    logger.warn("Camera sync packet could not be sent to " + target + ": " + e.getMessage());
+                }
+            }
+            buffer.position(CameraSyncPacket.SIZE);
+        }
+    }
+
+    private static void set(double[] out, Vector3D v) {
+        out[0] = v.x;
+        out[1] = v.y;
+        out[2] = v.z;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void dispose() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.error(e);
+        }
+    }
+
+    /**
+     * Returns the current wall-clock time in microseconds since the epoch. The wall clock is sampled
+     * once, and then advanced with the monotonic clock, so that calls do not allocate.
+     *
+     * @return The time in microseconds since the epoch.
+     */
+    public static long nowUs() {
+        return EPOCH_ANCHOR_US + (System.nanoTime() - NANO_ANCHOR) / 1_000L;
+    }
+}
@@ -215,6 +215,31 @@ public class GlobalClock implements IObserver, ITimeFrameProvider {
         }
     }
 
+    @Override
+    public Instant predictTime(double dt) {
+        var settings = GaiaSky.settings();
+        if (!settings.runtime.timeOn || dt == 0) {
+            return time;
+        }
+        if (fps > 0) {
+            dt = 1 / fps;
+        }
+        // Same steps as update(), without side effects.
+        int sign = (int) FastMath.signum(timeWarp);
+        double h = FastMath.abs(dt * timeWarp * Nature.S_TO_H);
+        double ms = sign * h * Nature.H_TO_MS;
+        long currentTime = time.toEpochMilli();
+        long newTime = currentTime + (long) ms;
+        if (targetTime != null) {
+            long target = targetTime.toEpochMilli();
+            if ((timeWarp > 0 && currentTime <= target && newTime > target) || (timeWarp < 0 && currentTime >= target && newTime < target)) {
+                newTime = target;
+            }
+        }
+        newTime = FastMath.max(settings.runtime.minTimeMs, FastMath.min(settings.runtime.maxTimeMs, newTime));
+        return Instant.ofEpochMilli(newTime);
+    }
+
     @Override
     public Instant getTime() {
         return time;
@@ -45,6 +45,16 @@ public interface ITimeFrameProvider {
      */
     void update(double dt);
 
+    /**
+     * Predicts the time after an update with the given system time difference, without updating. The prediction
+     * misses if the time is changed in between by other means, for instance by a script.
+     *
+     * @param dt System time difference in seconds.
+     *
+     * @return The predicted time, or null if it can't be predicted.
+     */
+    Instant predictTime(double dt);
+
     /**
      * Gets the current warp factor
      *
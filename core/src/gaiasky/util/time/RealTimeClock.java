@@ -61,6 +61,12 @@ public class RealTimeClock implements ITimeFrameProvider {
         }
     }
 
+    @Override
+    public Instant predictTime(double dt) {
+        // Follows the system clock, which can't be predicted to the millisecond.
+        return null;
+    }
+
     @Override
     public double getWarpFactor() {
         return SEC_TO_HOUR;
@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.util.tree;
+
+import gaiasky.data.api.IOctantLoader;
+import gaiasky.util.camera.rec.CameraPath;
+import gaiasky.util.math.MathUtilsDouble;
+import gaiasky.util.math.Vector3D;
+import net.jafama.FastMath;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Queues octants ahead of time, before the camera observes them.
+ * <p>
+ * The motion of the camera is estimated from its successive positions and directions, given every frame to
+ * {@link #observe(double, Vector3D, Vector3D, double)}. When a camera path is playing, its upcoming steps are used
+ * instead. At regular intervals, {@link #prefetch(OctreeNode, CameraPath, double)} predicts the views at a few
+ * look-ahead times, finds the octants that would be observed from them and are not loaded, and passes them to
+ * {@link IOctantLoader#prefetch(OctreeNode)}, which queues them with a lower priority than the observed octants.
+ * Prefetched octants that are no longer predicted while still in the queue, because the trajectory changed, are
+ * cancelled.
+ * <p>
+ * The prefetched octants are tracked until they are observed, so that the hit rate can be used to tune the look-ahead.
+ * An octant observed when loaded is a hit, an octant observed when still queued is a late hit, and an octant observed
+ * without being prefetched is a miss, reported by the loader with {@link #miss()}.
+ */
+public class OctantPrefetcher {
+    /** Default look-ahead times, in seconds. **/
+    public static final double[] DEFAULT_LOOK_AHEAD = { 0.5, 1.0, 2.0 };
+    /** Default maximum number of octants prefetched per prediction. **/
+    public static final int DEFAULT_MAX_PREFETCH = 16;
+    /** Default time between predictions, in seconds. **/
+    public static final double DEFAULT_INTERVAL = 0.25;
+    /** Time a loaded prefetched octant is tracked before it counts as wasted, in seconds. **/
+    private static final double TRACK_TIME = 10.0;
+    /** Maximum number of octants visited per predicted view. **/
+    private static final int MAX_VISITS = 4096;
+    /** Weight of the last frame in the motion estimate. **/
+    private static final double SMOOTHING = 0.3;
+    /** Frame rate assumed for camera paths with uncapped frame rate. **/
+    private static final double PATH_FPS = 60.0;
+    /** Maximum number of tracked octants, in units of the maximum per prediction. **/
+    private static final int MAX_TRACKED_FACTOR = 4;
+
+    private final IOctantLoader loader;
+    private final double[] lookAhead;
+    private final int maxPrefetch;
+    private final double interval;
+
+    // Motion estimate.
+    private final Vector3D pos = new Vector3D(), dir = new Vector3D(), velocity = new Vector3D(), omega = new Vector3D();
+    private double fov = 45;
+    private boolean hasPose;
+    private double time, lastPrefetch = Double.NEGATIVE_INFINITY;
+
+    // Predicted views of the current round.
+    private final List<Vector3D> predictedPos = new ArrayList<>(), predictedDir = new ArrayList<>();
+    private final ArrayDeque<OctreeNode> frontier = new ArrayDeque<>();
+    private final List<OctreeNode> wanted = new ArrayList<>();
+    private final Set<OctreeNode> wantedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+    /** Prefetched octants not observed yet, with the time they were prefetched. **/
+    private final Map<OctreeNode, Double> tracked = new IdentityHashMap<>();
+    private final Vector3D aux0 = new Vector3D(), aux1 = new Vector3D();
+
+    // Metrics.
+    private long issued, hits, lateHits, misses, cancelled, wasted;
+
+    public OctantPrefetcher(IOctantLoader loader) {
+        this(loader, DEFAULT_LOOK_AHEAD, DEFAULT_MAX_PREFETCH, DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Creates a prefetcher.
+     *
+     * @param loader      The octant loader.
+     * @param lookAhead   The look-ahead times, in seconds, in ascending order.
+     * @param maxPrefetch The maximum number of octants prefetched per prediction. At most four times as many are
+     *                    tracked at once.
+     * @param interval    The time between predictions, in seconds.
+     */
+    public OctantPrefetcher(IOctantLoader loader, double[] lookAhead, int maxPrefetch, double interval) {
+        this.loader = loader;
+        this.lookAhead = lookAhead;
+        this.maxPrefetch = maxPrefetch;
+        this.interval = interval;
+        for (int i = 0; i < lookAhead.length; i++) {
+            predictedPos.add(new Vector3D());
+            predictedDir.add(new Vector3D());
+        }
+    }
+
+    /**
+     * Updates the motion estimate with the camera of this frame.
+     *
+     * @param dt        The frame time, in seconds.
+     * @param position  The position of the camera.
+     * @param direction The direction of the camera.
+     * @param fovDeg    The vertical field of view, in degrees.
+     */
+    public void observe(double dt, Vector3D position, Vector3D direction, double fovDeg) {
+        time += dt;
+        fov = fovDeg;
+        if (hasPose && dt > 0) {
+            // Linear velocity.
+            var v = aux0.set(position).sub(pos).scl(1.0 / dt);
+            velocity.scl(1 - SMOOTHING).add(v.scl(SMOOTHING));
+            // Angular velocity of the direction, as axis times rate.
+            var d = aux1.set(direction).nor();
+            var w = aux0.set(dir).crs(d);
+            double sin = w.len();
+            double angle = FastMath.atan2(sin, dir.dot(d));
+            if (sin > 1e-12) {
+                w.scl(angle / (sin * dt));
+            } else {
+                w.setZero();
+            }
+            omega.scl(1 - SMOOTHING).add(w.scl(SMOOTHING));
+        }
+        pos.set(position);
+        dir.set(direction).nor();
+        hasPose = true;
+
+        checkTracked();
+    }
+
+    /**
+     * Predicts the views at the look-ahead times and prefetches the octants observed from them, if the prediction
+     * interval has passed.
+     *
+     * @param root The root of the octree.
+     * @param path The camera path being played, or null.
+     * @param th0  The view angle under which octants are not observed, as in {@link OctreeNode#update}.
+     *
+     * @return The number of octants prefetched in this call.
+     */
+    public int prefetch(OctreeNode root, CameraPath path, double th0) {
+        if (!hasPose || time - lastPrefetch < interval) {
+            return 0;
+        }
+        lastPrefetch = time;
+
+        int nViews = predict(path);
+        wanted.clear();
+        wantedSet.clear();
+        for (int v = 0; v < nViews && wanted.size() < maxPrefetch; v++) {
+            collect(root, predictedPos.get(v), predictedDir.get(v), th0);
+        }
+
+        // Cancel the queued octants that are not predicted anymore.
+        var it = tracked.entrySet().iterator();
+        while (it.hasNext()) {
+            var octant = it.next().getKey();
+            if (!wantedSet.contains(octant) && octant.getStatus() == LoadStatus.QUEUED && octant.prefetched) {
+                loader.cancelPrefetch(octant);
+                cancelled++;
+                it.remove();
+            }
+        }
+
+        int n = 0;
+        for (var octant : wanted) {
+            if (!tracked.containsKey(octant) && tracked.size() < maxPrefetch * MAX_TRACKED_FACTOR && loader.prefetch(octant)) {
+                tracked.put(octant, time);
+                issued++;
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Computes the predicted views, from the camera path if it is playing, or from the motion estimate otherwise.
+     *
+     * @return The number of predicted views.
+     */
+    private int predict(CameraPath path) {
+        if (path != null && path.i < path.n) {
+            double fps = path.frameRate > 0 ? path.frameRate : PATH_FPS;
+            for (int k = 0; k < lookAhead.length; k++) {
+                long step = Math.min(path.n - 1, path.i + Math.round(lookAhead[k] * fps));
+                int ip = (int) step * 9;
+                predictedPos.get(k).set(path.data.get(ip), path.data.get(ip + 1), path.data.get(ip + 2));
+                predictedDir.get(k).set(path.data.get(ip + 3), path.data.get(ip + 4), path.data.get(ip + 5)).nor();
+            }
+            return lookAhead.length;
+        }
+        double rate = omega.len();
+        if (velocity.len2() == 0 && rate == 0) {
+            // Not moving, the current view is all there is.
+            return 0;
+        }
+        for (int k = 0; k < lookAhead.length; k++) {
+            double t = lookAhead[k];
+            predictedPos.get(k).set(velocity).scl(t).add(pos);
+            var d = predictedDir.get(k).set(dir);
+            if (rate > 0) {
+                d.rotateRad(aux0.set(omega).scl(1.0 / rate), FastMath.min(rate * t, FastMath.PI));
+            }
+        }
+        return lookAhead.length;
+    }
+
+    /**
+     * Adds the octants observed from the given view that are not loaded to the wanted list, shallower first.
+     */
+    private void collect(OctreeNode root, Vector3D p, Vector3D d, double th0) {
+        // Octants are approximated by spheres, and the view by a cone that covers the diagonal of the screen.
+        double halfCone = FastMath.toRadians(FastMath.min(fov, 89.0));
+        frontier.clear();
+        frontier.add(root);
+        int visits = 0;
+        while (!frontier.isEmpty() && visits++ < MAX_VISITS && wanted.size() < maxPrefetch) {
+            var octant = frontier.poll();
+            var toCentre = aux1.set(octant.centre).sub(p);
+            double dist = toCentre.len();
+            double radius = octant.getRadius();
+            if (dist > radius) {
+                double viewAngle = FastMath.atan(radius / dist) * 2;
+                if (viewAngle < th0) {
+                    continue;
+                }
+                double angle = FastMath.acos(MathUtilsDouble.clamp(toCentre.dot(d) / dist, -1, 1));
+                if (angle > halfCone + FastMath.asin(radius / dist)) {
+                    continue;
+                }
+            }
+            if (octant.getStatus() == LoadStatus.NOT_LOADED && octant.numObjects > 0 && wantedSet.add(octant)) {
+                wanted.add(octant);
+            }
+            for (var child : octant.children) {
+                if (child != null) {
+                    frontier.add(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks the tracked octants for hits, and drops the ones that were dropped from the queue or that have been
+     * loaded for too long without being observed.
+     */
+    private void checkTracked() {
+        var it = tracked.entrySet().iterator();
+        while (it.hasNext()) {
+            var entry = it.next();
+            var octant = entry.getKey();
+            var status = octant.getStatus();
+            if (octant.isObserved()) {
+                if (status == LoadStatus.LOADED) {
+                    hits++;
+                } else {
+                    lateHits++;
+                }
+                it.remove();
+            } else if (status == LoadStatus.NOT_LOADED) {
+                // Dropped from the queue, or unloaded.
+                it.remove();
+            } else if (status == LoadStatus.LOADED && time - entry.getValue() > TRACK_TIME) {
+                wasted++;
+                it.remove();
+            }
+        }
+    }
+
+    /** Records an observed octant that had to be queued because it was not prefetched. **/
+    public void miss() {
+        misses++;
+    }
+
+    /** Clears the tracked octants, for instance after the load queue is emptied. **/
+    public void clear() {
+        tracked.clear();
+        lastPrefetch = Double.NEGATIVE_INFINITY;
+    }
+
+    public int getTrackedCount() {
+        return tracked.size();
+    }
+
+    /** Number of prefetched octants. **/
+    public long getIssued() {
+        return issued;
+    }
+
+    /** Number of prefetched octants that were loaded when observed. **/
+    public long getHits() {
+        return hits;
+    }
+
+    /** Number of prefetched octants that were still queued when observed. **/
+    public long getLateHits() {
+        return lateHits;
+    }
+
+    /** Number of observed octants that were not prefetched. **/
+    public long getMisses() {
+        return misses;
+    }
+
+    /** Number of prefetched octants removed from the queue because the prediction changed. **/
+    public long getCancelled() {
+        return cancelled;
+    }
+
+    /** Number of prefetched octants loaded but not observed in time. **/
+    public long getWasted() {
+        return wasted;
+    }
+
+    /** Fraction of the observed octants that were loaded ahead of time. **/
+    public double getHitRate() {
+        long observed = hits + lateHits + misses;
+        return observed > 0 ? (double) hits / observed : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("prefetch: %d issued, %d hits, %d late, %d misses, %d cancelled, %d wasted (hit rate %.1f%%)", issued, hits, lateHits,
+                             misses, cancelled, wasted, getHitRate() * 100);
+    }
+}
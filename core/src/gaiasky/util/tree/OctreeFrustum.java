@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2025 Gaia Sky - All rights reserved.
+ *  This file is part of Gaia Sky, which is released under the Mozilla Public License 2.0.
+ *  You may use, distribute and modify this code under the terms of MPL2.
+ *  See the file LICENSE.md in the project root for full license details.
+ */
+
+package gaiasky.util.tree;
+
+import gaiasky.util.math.Vector3D;
+import net.jafama.FastMath;
+
+/**
+ * View frustum in double precision and absolute coordinates, used to cull the nodes of an octree against their
+ * axis-aligned bounding boxes.
+ * <p>
+ * The frustum is made up of the four side planes and a near plane through the camera position. There is no far plane,
+ * since the octree is culled by view angle, not distance. The planes a box still has to be tested against are kept in
+ * a bit mask. When a box is fully inside a plane, the plane is cleared from the mask, and the children of the box,
+ * which are contained in it, skip the test. A mask of {@link #INSIDE} means the box is fully inside the frustum.
+ */
+public class OctreeFrustum {
+    /** Number of planes. **/
+    public static final int N_PLANES = 5;
+    /** Mask with all the planes, for the root node. **/
+    public static final int ALL = (1 << N_PLANES) - 1;
+    /** Mask of a box fully inside the frustum. **/
+    public static final int INSIDE = 0;
+    /** Mask of a box fully outside the frustum. **/
+    public static final int OUTSIDE = -1;
+
+    /** Plane normals, pointing inwards, and offsets. A point p is inside plane i if n_i·p + d_i ≥ 0. **/
+    private final double[] nx = new double[N_PLANES], ny = new double[N_PLANES], nz = new double[N_PLANES], d = new double[N_PLANES];
+    private final Vector3D dir = new Vector3D(), up = new Vector3D(), right = new Vector3D(), aux = new Vector3D();
+
+    /**
+     * Sets up the frustum of a perspective camera.
+     *
+     * @param pos       The position of the camera.
+     * @param direction The direction of the camera.
+     * @param upVector  The up vector of the camera.
+     * @param fovY      The vertical field of view, in degrees.
+     * @param aspect    The aspect ratio, width over height.
+     */
+    public void set(Vector3D pos, Vector3D direction, Vector3D upVector, double fovY, double aspect) {
+        dir.set(direction).nor();
+        right.set(dir).crs(upVector).nor();
+        up.set(right).crs(dir).nor();
+        double tanY = FastMath.tan(FastMath.toRadians(fovY) / 2);
+        double tanX = tanY * aspect;
+
+        // Near, through the camera position.
+        setPlane(0, pos, aux.set(dir));
+        // Left and right.
+        setPlane(1, pos, aux.set(dir).scl(tanX).add(right));
+        setPlane(2, pos, aux.set(dir).scl(tanX).sub(right));
+        // Bottom and top.
+        setPlane(3, pos, aux.set(dir).scl(tanY).add(up));
+        setPlane(4, pos, aux.set(dir).scl(tanY).sub(up));
+    }
+
+    private void setPlane(int i, Vector3D pos, Vector3D normal) {
+        normal.nor();
+        nx[i] = normal.x;
+        ny[i] = normal.y;
+        nz[i] = normal.z;
+        d[i] = -normal.dot(pos);
+    }
+
+    /**
+     * Tests a box against the planes in the given mask.
+     *
+     * @param cx   The x of the centre of the box.
+     * @param cy   The y of the centre of the box.
+     * @param cz   The z of the centre of the box.
+     * @param hx   The half-size of the box in x.
+     * @param hy   The half-size of the box in y.
+     * @param hz   The half-size of the box in z.
+     * @param mask The planes to test, usually the mask of the parent box.
+     *
+     * @return {@link #OUTSIDE} if the box is outside any of the planes, or the mask of the planes the box intersects
+     *         otherwise, which is {@link #INSIDE} if it is fully inside all of them.
+     */
+    public int test(double cx, double cy, double cz, double hx, double hy, double hz, int mask) {
+        if (mask <= 0) {
+            return mask;
+        }
+        int out = mask;
+        for (int i = 0; i < N_PLANES; i++) {
+            int bit = 1 << i;
+            if ((mask & bit) != 0) {
+                // Distance of the centre to the plane, and projected radius of the box on the normal.
+                double s = nx[i] * cx + ny[i] * cy + nz[i] * cz + d[i];
+                double e = FastMath.abs(nx[i]) * hx + FastMath.abs(ny[i]) * hy + FastMath.abs(nz[i]) * hz;
+                if (s + e < 0) {
+                    return OUTSIDE;
+                }
+                if (s - e >= 0) {
+                    out &= ~bit;
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Tests a box against the planes in the given mask.
+     *
+     * @param min  The minimum corner of the box.
+     * @param max  The maximum corner of the box.
+     * @param mask The planes to test.
+     *
+     * @return The mask, as in {@link #test(double, double, double, double, double, double, int)}.
+     */
+    public int test(Vector3D min, Vector3D max, int mask) {
+        return test((min.x + max.x) / 2, (min.y + max.y) / 2, (min.z + max.z) / 2, (max.x - min.x) / 2, (max.y - min.y) / 2, (max.z - min.z) / 2,
+                    mask);
+    }
+
+    /**
+     * Checks whether a point is inside all the planes.
+     *
+     * @param x The x of the point.
+     * @param y The y of the point.
+     * @param z The z of the point.
+     *
+     * @return Whether the point is inside the frustum.
+     */
+    public boolean contains(double x, double y, double z) {
+        for (int i = 0; i < N_PLANES; i++) {
+            if (nx[i] * x + ny[i] * y + nz[i] * z + d[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -36,6 +36,8 @@ public class OctreeNode implements ILineRenderable {
     private static final Vector3D auxD2 = new Vector3D();
     private static final Vector3D auxD3 = new Vector3D();
     private static final Vector3D auxD4 = new Vector3D();
+    private static final Vector3D auxD5 = new Vector3D();
+    private static final OctreeFrustum frustum = new OctreeFrustum();
     public static int nOctantsObserved;
     public static int nObjectsObserved;
     /**
@@ -111,6 +113,14 @@ public class OctreeNode implements ILineRenderable {
      * Is this octant observed in this frame?
      **/
     public boolean observed;
+    /**
+     * Whether this octant was queued ahead of time by the prefetcher, with a lower priority.
+     **/
+    public volatile boolean prefetched;
+    /**
+     * The frustum planes the children of this node must be tested against, or -1 if the frustum is not used.
+     **/
+    private int childPlaneMask = -1;
     /**
      * The opacity of this node.
      **/
@@ -623,6 +633,28 @@ public class OctreeNode implements ILineRenderable {
                        List<IOctreeObject> roulette,
                        float opacity,
                        boolean updateNumLabels) {
+        var settings = GaiaSky.settings();
+        int planeMask = -1;
+        if (settings.performance.octreeFrustumCulling && !settings.program.isStereoOrCubemap() && !settings.runtime.openXr) {
+            var pc = cam.getCamera();
+            frustum.set(cam.getPos().put(auxD5), cam.getDirection(), cam.getUp(), pc.fieldOfView, pc.viewportWidth / pc.viewportHeight);
+            planeMask = OctreeFrustum.ALL;
+        }
+        update(parentTransform, cam, roulette, opacity, updateNumLabels, planeMask);
+    }
+
+    /**
+     * Computes the observed value and the transform of this node and its children.
+     *
+     * @param planeMask The frustum planes this node must be tested against, inherited from the parent, or -1 to use
+     *                  the bounding sphere test.
+     */
+    private void update(Vector3Q parentTransform,
+                        ICamera cam,
+                        List<IOctreeObject> roulette,
+                        float opacity,
+                        boolean updateNumLabels,
+                        int planeMask) {
         this.opacity = opacity;
         this.observed = false;
 
@@ -639,7 +671,7 @@ public class OctreeNode implements ILineRenderable {
         if (viewAngle < th0 && !isCameraFocus) {
             // Not observed
             setChildrenObserved(false);
-        } else if ((this.observed = computeObserved(cam)) || isCameraFocus) {
+        } else if ((this.observed = computeObserved(cam, planeMask)) || isCameraFocus) {
             nOctantsObserved++;
             /*
              * Load lists of pages
@@ -659,7 +691,10 @@ public class OctreeNode implements ILineRenderable {
                     // Update the number of labels of star groups.
                     updateNumberLabels(th0);
                 }
-            }  // What do? Move first in queue?
+            } else if (status == LoadStatus.QUEUED && prefetched) {
+                // Observed before its prefetch was served, promote it.
+                loader.queue(this);
+            }
 
             double alpha = 1;
             if (GaiaSky.settings().scene.octree.fade && viewAngle < th1) {
@@ -674,7 +709,7 @@ public class OctreeNode implements ILineRenderable {
             for (int i = 0; i < 8; i++) {
                 OctreeNode child = children[i];
                 if (child != null) {
-                    child.update(parentTransform, cam, roulette, this.opacity, updateNumLabels);
+                    child.update(parentTransform, cam, roulette, this.opacity, updateNumLabels, childPlaneMask);
                 }
             }
 
@@ -750,6 +785,25 @@ public class OctreeNode implements ILineRenderable {
         return computeObservedFast(cam);
     }
 
+    /**
+     * Tests the bounding box of the octant against the planes of the view frustum given in the mask. The planes the box
+     * is fully inside of are not tested again for its children.
+     *
+     * @param cam       The camera.
+     * @param planeMask The planes to test, or -1 to use the bounding sphere test.
+     * @return Whether the octant is observed.
+     */
+    private boolean computeObserved(ICamera cam, int planeMask) {
+        if (planeMask < 0) {
+            childPlaneMask = -1;
+            return computeObserved(cam);
+        }
+        int mask = frustum.test(centre.x, centre.y, centre.z, size.x / 2, size.y / 2, size.z / 2, planeMask);
+        // Octants containing the focus are observed anyway, and their children are tested against all the planes.
+        childPlaneMask = mask == OctreeFrustum.OUTSIDE ? OctreeFrustum.ALL : mask;
+        return mask != OctreeFrustum.OUTSIDE;
+    }
+
     /**
      * Simplification to compute octant visibility. Angle between camera direction and octant centre
      * must be smaller than fov/2 plus a correction (approximates octants to spheres)
@@ -771,6 +825,10 @@ public class OctreeNode implements ILineRenderable {
         return distToCamera <= radius || angle2 < angle1;
     }
 
+    public double getRadius() {
+        return radius;
+    }
+
     public LoadStatus getStatus() {
         return status;
     }
@@ -0,0 +1,128 @@
+package gaiasky;
+
+import gaiasky.data.orbit.AdaptiveOrbitSampler;
+import gaiasky.data.orbit.OrbitalParametersProvider;
+import gaiasky.data.util.OrbitDataLoader.OrbitDataLoaderParameters;
+import gaiasky.data.util.PointCloudData;
+import gaiasky.scene.component.Trajectory.OrbitSamplingStrategy;
+import gaiasky.scene.record.OrbitComponent;
+import gaiasky.util.coord.AstroUtils;
+import gaiasky.util.math.Vector3D;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Samples a near-circular and a very eccentric orbit with {@link AdaptiveOrbitSampler}, and compares the geometric
+ * error and number of samples with the uniform sampling in time.
+ */
+public class AdaptiveOrbitSamplerTest {
+
+    private static OrbitComponent orbit(double period, double sma, double e) {
+        OrbitComponent oc = new OrbitComponent();
+        oc.period = period;
+        oc.epoch = 2451545.0;
+        oc.semiMajorAxis = sma;
+        oc.e = e;
+        oc.i = 12.0;
+        oc.ascendingNode = 58.4;
+        oc.argOfPericenter = 111.3;
+        oc.meanAnomaly = 38.4;
+        return oc;
+    }
+
+    private static PointCloudData sample(OrbitComponent oc, OrbitSamplingStrategy sampling, int numSamples) {
+        var provider = new OrbitalParametersProvider();
+        provider.load(null, new OrbitDataLoaderParameters("test", OrbitalParametersProvider.class, oc, 1, numSamples, sampling), true);
+        return provider.getData();
+    }
+
+    /** Maximum distance from the orbit to the polyline, relative to the semi-major axis. **/
+    private static double error(OrbitComponent oc, PointCloudData data) {
+        var p = new Vector3D();
+        var a = new Vector3D();
+        var b = new Vector3D();
+        var ab = new Vector3D();
+        var ap = new Vector3D();
+        double max = 0, scale = 0;
+        int n = 20_000;
+        for (int k = 0; k < n; k++) {
+            oc.loadDataPointNu(p, 2 * Math.PI * k / n);
+            scale = Math.max(scale, p.len());
+            double min = Double.MAX_VALUE;
+            for (int i = 0; i < data.getNumPoints() - 1; i++) {
+                data.loadPoint(a, i);
+                data.loadPoint(b, i + 1);
+                ab.set(b).sub(a);
+                ap.set(p).sub(a);
+                double t = ab.len2() > 0 ? Math.max(0, Math.min(1, ap.dot(ab) / ab.len2())) : 0;
+                min = Math.min(min, ap.sub(ab.scl(t)).len());
+            }
+            max = Math.max(max, min);
+        }
+        // The aphelion distance is a (1 + e).
+        return max / (scale / (1 + oc.e));
+    }
+
+    private static void checkTimes(OrbitComponent oc, PointCloudData data) {
+        for (int i = 1; i < data.getNumPoints(); i++) {
+            assertTrue(data.getDate(i).isAfter(data.getDate(i - 1)));
+        }
+        double days = (data.getEndMs() - data.getStartMs()) / 86400000.0;
+        assertEquals(oc.period, days, 1e-3);
+        // The first sample is at the epoch.
+        assertEquals(AstroUtils.julianDateToInstant(oc.epoch).toEpochMilli(), data.getStartMs(), 1000);
+        // Closed.
+        assertEquals(data.getX(0), data.getX(data.getNumPoints() - 1), 0);
+        // Samples are on the orbit at their times.
+        var expected = new Vector3D();
+        var actual = new Vector3D();
+        for (int i = 0; i < data.getNumPoints(); i += 7) {
+            double dt = (data.getDate(i).toEpochMilli() - data.getStartMs()) / 86400000.0;
+            oc.loadDataPoint(expected, dt);
+            data.loadPoint(actual, i);
+            assertEquals(0, expected.dst(actual) / expected.len(), 1e-6);
+        }
+    }
+
+    @Test
+    public void testNearCircular() {
+        var earth = orbit(365.25, 149597870.7, 0.0167);
+        var adaptive = sample(earth, OrbitSamplingStrategy.ADAPTIVE, 0);
+        checkTimes(earth, adaptive);
+        double error = error(earth, adaptive);
+        // The default sampling uses 200 samples.
+        assertTrue(adaptive.getNumPoints() < 200);
+        assertTrue(error < 2e-3);
+    }
+
+    @Test
+    public void testEccentric() {
+        // Halley-like.
+        var comet = orbit(27509.0, 2.667e9, 0.967);
+        var adaptive = sample(comet, OrbitSamplingStrategy.ADAPTIVE, 0);
+        checkTimes(comet, adaptive);
+        int n = adaptive.getNumPoints();
+        double error = error(comet, adaptive);
+        // Same number of samples, uniform in time: the pericenter is cut.
+        double uniformError = error(comet, sample(comet, OrbitSamplingStrategy.TIME, n));
+        assertTrue(error < 2e-3);
+        assertTrue(uniformError > 10 * error);
+    }
+
+    @Test
+    public void testBudget() {
+        var comet = orbit(27509.0, 2.667e9, 0.967);
+        var sampler = new AdaptiveOrbitSampler((nu, out) -> comet.loadDataPointNu(out, nu), 1e-9, 0.01, 100);
+        double[] last = { -1 };
+        int[] count = { 0 };
+        int samples = sampler.sample(0, 2 * Math.PI, (u, p) -> {
+            assertTrue(u > last[0]);
+            last[0] = u;
+            count[0]++;
+        });
+        assertEquals(100, samples);
+        assertEquals(100, count[0]);
+        assertEquals(2 * Math.PI, last[0], 0);
+    }
+}
@@ -0,0 +1,203 @@
+package gaiasky;
+
+import gaiasky.event.Event;
+import gaiasky.event.EventManager;
+import gaiasky.event.IObserver;
+import gaiasky.util.Logger;
+import gaiasky.util.Logger.Log;
+import gaiasky.util.Logger.LoggerLevel;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the asynchronous mode of {@link Logger}, its rate limiting, and compares the time producer threads spend
+ * logging in synchronous and asynchronous modes, with an observer that serializes its work like the GUI ones.
+ */
+public class AsyncLoggerTest {
+    private static final int THREADS = 8;
+    private static final int MESSAGES = 20_000;
+
+    /** Collects the notifications, under a lock. **/
+    private static class Collector implements IObserver {
+        final List<String> messages = new ArrayList<>();
+        final List<Thread> threads = new ArrayList<>();
+
+        @Override
+        public synchronized void notify(Event event, Object source, Object... data) {
+            var level = (LoggerLevel) data[0];
+            var msgs = (Object[]) data[1];
+            var sb = new StringBuilder(level.name());
+            for (var m : msgs) {
+                sb.append(" - ").append(m);
+            }
+            messages.add(sb.toString());
+            threads.add(Thread.currentThread());
+        }
+
+        synchronized int size() {
+            return messages.size();
+        }
+    }
+
+    private final Collector collector = new Collector();
+
+    private void subscribe() {
+        EventManager.instance.subscribe(collector, Event.POST_NOTIFICATION);
+    }
+
+    @After
+    public void tearDown() {
+        Logger.setAsynchronous(false);
+        EventManager.instance.unsubscribe(collector, Event.POST_NOTIFICATION);
+    }
+
+    @Test
+    public void testAsyncOrderAndFlush() throws Exception {
+        subscribe();
+        Logger.setAsynchronous(true);
+        assertTrue(Logger.isAsynchronous());
+        Log log = Logger.getLogger("AsyncTest");
+        assertSame(log, Logger.getLogger("AsyncTest"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    log.info("Producer {} message {}", thread, i);
+                }
+            }));
+        }
+        for (var f : futures) {
+            f.get();
+        }
+        executor.shutdown();
+        Logger.flush();
+
+        assertEquals(4000, collector.size());
+        // Messages are formatted and published by the logger thread, in order for each producer.
+        Map<String, Integer> last = new HashMap<>();
+        for (int k = 0; k < collector.messages.size(); k++) {
+            assertNotSame(Thread.currentThread(), collector.threads.get(k));
+            var parts = collector.messages.get(k).split(" ");
+            // INFO - AsyncTest - Producer t message i
+            assertEquals("AsyncTest", parts[2]);
+            int i = Integer.parseInt(parts[7]);
+            Integer previous = last.put(parts[5], i);
+            assertEquals(previous == null ? 0 : previous + 1, i);
+        }
+
+        // Disabling the asynchronous mode publishes the pending messages.
+        log.info("Last");
+        Logger.setAsynchronous(false);
+        assertEquals("INFO - AsyncTest - Last", collector.messages.get(collector.size() - 1));
+        log.info("Synchronous");
+        assertSame(Thread.currentThread(), collector.threads.get(collector.size() - 1));
+    }
+
+    @Test
+    public void testRateLimit() {
+        subscribe();
+        Log log = Logger.getLogger("RateTest");
+        for (int i = 0; i < 100; i++) {
+            log.warn("Repeated warning {}", i);
+        }
+        log.warn("Another warning");
+        assertEquals(Logger.MAX_REPEATS + 1, collector.size());
+        assertEquals("WARN - RateTest - Repeated warning 0", collector.messages.get(0));
+        assertEquals("WARN - RateTest - Another warning", collector.messages.get(Logger.MAX_REPEATS));
+        // Other levels are not limited.
+        for (int i = 0; i < 100; i++) {
+            log.info("Repeated info {}", i);
+        }
+        assertEquals(Logger.MAX_REPEATS + 101, collector.size());
+    }
+
+    private static long produce(ExecutorService executor) throws Exception {
+        Future<?>[] futures = new Future[THREADS];
+        long t0 = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            futures[t] = executor.submit(() -> {
+                Log log = Logger.getLogger("Bench" + thread);
+                for (int i = 0; i < MESSAGES; i++) {
+                    log.info("Loaded {} particles from file {} in {} ms", i, "file-" + thread, 12.5);
+                }
+            });
+        }
+        for (var f : futures) {
+            f.get();
+        }
+        return System.nanoTime() - t0;
+    }
+
+    @Test
+    public void testAsyncAccounting() throws Exception {
+        throughput(false);
+    }
+
+    @Test
+    public void testThroughput() throws Exception {
+        Assume.assumeTrue("Timing runs need -Pperf", Boolean.getBoolean("gaiasky.perf"));
+        throughput(true);
+    }
+
+    /**
+     * Logs from several threads, synchronously and asynchronously, and checks that every message is published or
+     * reported as dropped.
+     *
+     * @param print Whether to print the times.
+     */
+    private void throughput(boolean print) throws Exception {
+        subscribe();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            // Warm up.
+            produce(executor);
+
+            collector.messages.clear();
+            collector.threads.clear();
+            long syncTime = produce(executor);
+            assertEquals(THREADS * MESSAGES, collector.size());
+
+            collector.messages.clear();
+            collector.threads.clear();
+            Logger.setAsynchronous(true);
+            long asyncTime = produce(executor);
+            long t0 = System.nanoTime();
+            Logger.flush();
+            long flushTime = System.nanoTime() - t0;
+            Logger.setAsynchronous(false);
+
+            // Everything is published, or reported as dropped if the logger thread fell behind.
+            int published = 0;
+            long dropped = 0;
+            for (var m : collector.messages) {
+                if (m.contains("log messages dropped")) {
+                    dropped += Long.parseLong(m.split(" ")[4]);
+                } else {
+                    published++;
+                }
+            }
+            assertEquals(THREADS * MESSAGES, published + dropped);
+            if (print) {
+                System.out.printf("Logging %d x %d messages: synchronous %.2f ms, asynchronous %.2f ms (+%.2f ms flush, %d dropped)%n",
+                        THREADS, MESSAGES, syncTime * 1e-6, asyncTime * 1e-6, flushTime * 1e-6, dropped);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
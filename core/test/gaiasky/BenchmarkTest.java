@@ -0,0 +1,105 @@
+package gaiasky;
+
+import gaiasky.util.bench.Benchmark;
+import gaiasky.util.camera.rec.CameraPath;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the headless {@link Benchmark} twice over a recorded camera path and a synthetic catalog, and checks that the
+ * reports are written and that the replay is deterministic.
+ */
+public class BenchmarkTest {
+    private static final int FRAMES = 120;
+
+    private Path tmp;
+
+    @Before
+    public void setUp() throws IOException {
+        tmp = Files.createTempDirectory("gs-benchmark-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> walk = Files.walk(tmp)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    /** A straight flight from outside the catalog through its centre. **/
+    private Path recordPath() throws Exception {
+        var path = new CameraPath(60);
+        for (int i = 0; i < FRAMES; i++) {
+            double x = 3000.0 - i * 50.0;
+            path.add(Instant.ofEpochMilli(i * 16L), x, 10, 0, -1, 0, 0, 0, 0, 1);
+        }
+        var file = tmp.resolve("flight.gsc");
+        path.persist(file);
+        return file;
+    }
+
+    private Benchmark.Report run(Path path, String out) throws IOException {
+        var options = new Benchmark.Options();
+        options.path = path.toString();
+        options.out = tmp.resolve(out).toString();
+        options.stars = 20_000;
+        options.bodies = 5_000;
+        options.warmup = 10;
+        // Tests run in the core directory.
+        options.assets = "../assets";
+        return new Benchmark(options).run();
+    }
+
+    /** The columns of the frame report that do not depend on timing. **/
+    private List<String> replay(String out) throws IOException {
+        List<String> rows = new ArrayList<>();
+        for (var line : Files.readAllLines(tmp.resolve(out).resolve("frames.csv"))) {
+            var tokens = line.split(",");
+            rows.add(String.join(",", tokens[0], tokens[4], tokens[5], tokens[6], tokens[7]));
+        }
+        return rows;
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        var path = recordPath();
+        var a = run(path, "a");
+        var b = run(path, "b");
+
+        assertEquals(FRAMES, a.frames());
+        assertTrue(a.meanMs() > 0);
+        assertTrue(a.p50Ms() <= a.p95Ms() && a.p95Ms() <= a.p99Ms() && a.p99Ms() <= a.maxMs());
+        assertTrue(a.rendered() > 0);
+        // The flight crosses the core of the catalog, so octants are loaded.
+        assertTrue(a.octantsLoaded() > 0);
+        assertTrue(a.starsLoaded() > 0);
+        assertTrue(a.loaderBytesPerSecond() > 0);
+
+        // Same path, catalog and scene: same octants and renderables in every frame.
+        var rows = replay("a");
+        assertEquals(FRAMES + 1, rows.size());
+        assertEquals(rows, replay("b"));
+        assertEquals(a.octantsLoaded(), b.octantsLoaded());
+        assertEquals(a.starsLoaded(), b.starsLoaded());
+
+        var stages = Files.readAllLines(tmp.resolve("a").resolve("stages.csv"));
+        assertTrue(stages.stream().anyMatch(l -> l.startsWith("frame/octree,")));
+        assertTrue(stages.stream().anyMatch(l -> l.startsWith("frame/update/extract/OctreeExtractor,")));
+        assertTrue(stages.stream().anyMatch(l -> l.startsWith("frame/update/extract/ParticleExtractor,")));
+        var summary = Files.readString(tmp.resolve("a").resolve("summary.json"));
+        assertTrue(summary.contains("\"frames\": " + FRAMES));
+        assertTrue(summary.contains("\"loader\": {"));
+    }
+}
@@ -0,0 +1,121 @@
+package gaiasky;
+
+import gaiasky.scene.api.IParticleRecord;
+import gaiasky.scene.record.BillboardDataset;
+import gaiasky.scene.record.BillboardDataset.Distribution;
+import gaiasky.scene.record.CPUGalGenFallback;
+import gaiasky.scene.record.ParticleVector;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the packed, parallel generation of {@link CPUGalGenFallback} produces the same particles as the
+ * record-based generation, and that the distributions have the expected statistics.
+ */
+public class CPUGalGenFallbackTest {
+    private static final int STRIDE = CPUGalGenFallback.STRIDE;
+
+    private static BillboardDataset dataset(Distribution distribution, int count) {
+        var ds = new BillboardDataset();
+        ds.distribution = distribution;
+        ds.particleCount = count;
+        ds.layers = new int[]{0, 1, 2, 3};
+        ds.baseRadius = 1f;
+        ds.minRadius = 0f;
+        ds.colorNoise = 0.1f;
+        return ds;
+    }
+
+    @Test
+    public void testSameAsRecords() {
+        var generator = new CPUGalGenFallback(1.0);
+        for (var distribution : Distribution.values()) {
+            var ds = dataset(distribution, 20_000);
+            ds.rotation.set(10f, 20f, 30f);
+            ds.translation.set(0.1f, -0.2f, 0.3f);
+            List<IParticleRecord> records = generator.generate(ds, 42);
+            float[] packed = generator.generateArray(ds, 42);
+            assertEquals(records.size() * STRIDE, packed.length);
+            for (int i = 0; i < records.size(); i++) {
+                double[] data = ((ParticleVector) records.get(i)).data();
+                for (int j = 0; j < STRIDE; j++) {
+                    assertEquals(distribution + " particle " + i, (float) data[j], packed[i * STRIDE + j], 0f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDeterministic() {
+        var ds = dataset(Distribution.SPIRAL_LOG, 50_000);
+        assertArrayEquals(new CPUGalGenFallback(1.0).generateArray(ds, 7), new CPUGalGenFallback(1.0).generateArray(ds, 7), 0f);
+        assertFalse(java.util.Arrays.equals(new CPUGalGenFallback(1.0).generateArray(ds, 7), new CPUGalGenFallback(1.0).generateArray(ds, 8)));
+    }
+
+    @Test
+    public void testStatistics() {
+        final int n = 200_000;
+        var generator = new CPUGalGenFallback(1.0);
+
+        // Disk: r = R * sqrt(u) (plus a small symmetric jitter), so E[r] = 2R/3, and the height is uniform in
+        // [-heightScale, heightScale].
+        var disk = dataset(Distribution.DISK, n);
+        float[] d = generator.generateArray(disk, 3);
+        double sumR = 0, sumY = 0, maxY = 0;
+        for (int i = 0; i < n; i++) {
+            double x = d[i * STRIDE], y = d[i * STRIDE + 1], z = d[i * STRIDE + 2];
+            sumR += Math.sqrt(x * x + z * z);
+            sumY += y;
+            maxY = Math.max(maxY, Math.abs(y));
+        }
+        assertEquals(2.0 / 3.0, sumR / n, 0.01);
+        assertEquals(0.0, sumY / n, 1e-4);
+        assertTrue(maxY <= disk.heightScale + 1e-6);
+
+        // Sphere: isotropic, so every coordinate has zero mean and the same variance.
+        var sphere = dataset(Distribution.SPHERE, n);
+        float[] s = generator.generateArray(sphere, 3);
+        double[] mean = new double[3], var = new double[3];
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < 3; k++) {
+                double v = s[i * STRIDE + k];
+                mean[k] += v;
+                var[k] += v * v;
+            }
+        }
+        for (int k = 0; k < 3; k++) {
+            assertEquals(0.0, mean[k] / n, 0.01);
+            assertEquals(var[0] / n, var[k] / n, 0.01);
+        }
+
+        // Colors are clamped, layers come from the dataset, and types are the channel ordinal.
+        for (int i = 0; i < n; i++) {
+            for (int k = 3; k < 6; k++) {
+                assertTrue(s[i * STRIDE + k] >= 0f && s[i * STRIDE + k] <= 1f);
+            }
+            assertEquals(sphere.type.ordinal(), s[i * STRIDE + 7], 0f);
+            float layer = s[i * STRIDE + 8];
+            assertTrue(layer >= 0 && layer <= 3 && layer == (int) layer);
+        }
+    }
+
+    @Test
+    public void testThroughput() {
+        Assume.assumeTrue("Timing runs need -Pperf", Boolean.getBoolean("gaiasky.perf"));
+        final int n = 1_000_000;
+        var generator = new CPUGalGenFallback(1.0);
+        var ds = dataset(Distribution.SPIRAL_LOG, n);
+        // Warm up.
+        generator.generateArray(dataset(Distribution.SPIRAL_LOG, 100_000), 1);
+
+        long t0 = System.nanoTime();
+        float[] packed = generator.generateArray(ds, 1);
+        double seconds = (System.nanoTime() - t0) * 1e-9;
+        assertEquals(n * STRIDE, packed.length);
+        System.out.printf("CPU galaxy generation: %d particles in %.3f s (%.0f particles/s)%n", n, seconds, n / seconds);
+    }
+}
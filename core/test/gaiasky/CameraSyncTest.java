@@ -0,0 +1,181 @@
+package gaiasky;
+
+import gaiasky.util.math.Vector3D;
+import gaiasky.util.sync.CameraSyncPacket;
+import gaiasky.util.sync.CameraSyncReceiver;
+import gaiasky.util.sync.CameraSyncSender;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the binary master/slave camera sync channel, with master and slave on localhost.
+ */
+public class CameraSyncTest {
+
+    private static CameraSyncPacket packet(long seq, long masterTimeUs, double x) {
+        return packet(0, seq, masterTimeUs, x);
+    }
+
+    private static CameraSyncPacket packet(long session, long seq, long masterTimeUs, double x) {
+        CameraSyncPacket p = new CameraSyncPacket();
+        p.session = session;
+        p.sequence = seq;
+        p.masterTimeUs = masterTimeUs;
+        p.simTimeMs = masterTimeUs / 1000L;
+        p.pos[0] = x;
+        p.dir[2] = 1;
+        p.up[1] = 1;
+        return p;
+    }
+
+    @Test
+    public void testPacketRoundTrip() {
+        CameraSyncPacket p = packet(0x5eed5eedL, 42L, 123_456_789L, 1.5e12);
+        p.pos[1] = -3.25;
+        p.dir[0] = 0.6;
+        p.dir[2] = 0.8;
+        ByteBuffer buffer = ByteBuffer.allocate(CameraSyncPacket.SIZE);
+        p.write(buffer);
+        assertEquals(CameraSyncPacket.SIZE, buffer.position());
+        buffer.flip();
+
+        CameraSyncPacket q = new CameraSyncPacket();
+        assertTrue(q.read(buffer));
+        assertEquals(p.session, q.session);
+        assertEquals(p.sequence, q.sequence);
+        assertEquals(p.masterTimeUs, q.masterTimeUs);
+        assertEquals(p.simTimeMs, q.simTimeMs);
+        assertArrayEquals(p.pos, q.pos, 0);
+        assertArrayEquals(p.dir, q.dir, 0);
+        assertArrayEquals(p.up, q.up, 0);
+
+        // Garbage is rejected.
+        assertFalse(q.read(ByteBuffer.allocate(CameraSyncPacket.SIZE)));
+    }
+
+    @Test
+    public void testFrameLockDropsStalePackets() throws Exception {
+        CameraSyncReceiver receiver = new CameraSyncReceiver(0, null, 0);
+        try {
+            CameraSyncPacket out = new CameraSyncPacket();
+            assertFalse(receiver.sample(0, out));
+
+            assertTrue(receiver.offer(packet(1, 1000, 1), 1500));
+            assertTrue(receiver.offer(packet(4, 4000, 4), 4500));
+            // Stale and duplicated.
+            assertFalse(receiver.offer(packet(3, 3000, 3), 4600));
+            assertFalse(receiver.offer(packet(4, 4000, 4), 4700));
+
+            assertTrue(receiver.sample(5000, out));
+            assertEquals(4, out.sequence);
+            assertEquals(4.0, out.pos[0], 0);
+            // Nothing new to apply.
+            assertFalse(receiver.sample(5100, out));
+
+            var stats = receiver.getStatistics();
+            assertEquals(2, stats.received());
+            assertEquals(2, stats.lost());
+            assertEquals(2, stats.dropped());
+            assertEquals(0.5, stats.latencyMeanMs(), 1e-9);
+        } finally {
+            receiver.dispose();
+        }
+    }
+
+    @Test
+    public void testMasterRestart() throws Exception {
+        CameraSyncReceiver receiver = new CameraSyncReceiver(0, null, 0);
+        try {
+            CameraSyncPacket out = new CameraSyncPacket();
+            for (int i = 1; i <= 500; i++) {
+                assertTrue(receiver.offer(packet(7, i, i * 1000L, i), i * 1000L + 500));
+            }
+            assertTrue(receiver.sample(600_000, out));
+            assertEquals(500, out.sequence);
+
+            // The master restarts with a new session, and its sequence starts over.
+            assertTrue(receiver.offer(packet(9, 1, 700_000, -1), 700_500));
+            assertTrue(receiver.sample(701_000, out));
+            assertEquals(9, out.session);
+            assertEquals(1, out.sequence);
+            assertEquals(-1.0, out.pos[0], 0);
+
+            // A late packet of the old session is dropped, and does not restart it.
+            assertFalse(receiver.offer(packet(7, 501, 501_000, 501), 701_500));
+            assertTrue(receiver.offer(packet(9, 2, 701_000, -2), 701_600));
+            assertTrue(receiver.sample(702_000, out));
+            assertEquals(9, out.session);
+            assertEquals(2, out.sequence);
+
+            var stats = receiver.getStatistics();
+            assertEquals(502, stats.received());
+            assertEquals(0, stats.lost());
+            assertEquals(1, stats.dropped());
+        } finally {
+            receiver.dispose();
+        }
+    }
+
+    @Test
+    public void testInterpolation() throws Exception {
+        // 20 ms delay.
+        CameraSyncReceiver receiver = new CameraSyncReceiver(0, null, 20);
+        try {
+            // Packets every 10 ms, constant 1 ms transit.
+            for (int i = 1; i <= 5; i++) {
+                receiver.offer(packet(i, i * 10_000L, i * 10.0), i * 10_000L + 1_000L);
+            }
+            CameraSyncPacket out = new CameraSyncPacket();
+            // Target master time = now - 1 ms (offset) - 20 ms (delay) = 35 ms.
+            assertTrue(receiver.sample(56_000L, out));
+            assertEquals(35.0, out.pos[0], 1e-9);
+            assertEquals(35L, out.simTimeMs);
+            assertEquals(1.0, out.dir[2], 1e-12);
+
+            // Beyond the newest packet, hold the newest state.
+            assertTrue(receiver.sample(500_000L, out));
+            assertEquals(50.0, out.pos[0], 1e-9);
+            assertEquals(0.0, receiver.getStatistics().jitterMs(), 1e-12);
+        } finally {
+            receiver.dispose();
+        }
+    }
+
+    @Test
+    public void testLocalhostChannel() throws Exception {
+        CameraSyncReceiver receiver = new CameraSyncReceiver(0, null, 0);
+        receiver.start();
+        CameraSyncSender sender = new CameraSyncSender(List.of(new InetSocketAddress("127.0.0.1", receiver.getLocalPort())));
+        try {
+            Vector3D pos = new Vector3D(), dir = new Vector3D(0, 0, 1), up = new Vector3D(0, 1, 0);
+            final int n = 200;
+            for (int i = 1; i <= n; i++) {
+                pos.set(i, 2 * i, 3 * i);
+                sender.send(pos, dir, up, 1_000L * i);
+                Thread.sleep(1);
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (receiver.getStatistics().received() + receiver.getStatistics().lost() < n && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            CameraSyncPacket out = new CameraSyncPacket();
+            assertTrue(receiver.sample(CameraSyncSender.nowUs(), out));
+            assertEquals(n, out.sequence);
+            assertArrayEquals(new double[] { n, 2 * n, 3 * n }, out.pos, 0);
+            assertEquals(1_000L * n, out.simTimeMs);
+
+            var stats = receiver.getStatistics();
+            assertEquals(n, stats.received() + stats.lost());
+            assertTrue(stats.latencyMeanMs() >= 0);
+            assertTrue(stats.latencyMaxMs() < 1000);
+        } finally {
+            sender.dispose();
+            receiver.dispose();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package gaiasky;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import gaiasky.util.datadesc.DatasetInstallPipeline;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kamranzafar.jtar.TarEntry;
+import org.kamranzafar.jtar.TarHeader;
+import org.kamranzafar.jtar.TarOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link DatasetInstallPipeline} against a local HTTP stand-in server that supports range requests.
+ */
+public class DatasetInstallPipelineTest {
+
+    private HttpServer server;
+    private Path tmp;
+    private byte[] archive;
+    private byte[] fileA, fileB;
+    private String sha256;
+    private final AtomicInteger rangeRequests = new AtomicInteger();
+    /** If positive, the server closes plain (non-range) responses after this many bytes. **/
+    private volatile int truncateAfter = -1;
+
+    @Before
+    public void setUp() throws Exception {
+        tmp = Files.createTempDirectory("gs-install-test");
+        Random rnd = new Random(42L);
+        // Incompressible content, so that the archive is large enough to be split.
+        fileA = new byte[3_000_000];
+        rnd.nextBytes(fileA);
+        fileB = "Hello, dataset!".getBytes();
+        archive = createArchive();
+        sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(archive));
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/data.tar.gz", this::serve);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.stop(0);
+        try (Stream<Path> walk = Files.walk(tmp)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private byte[] createArchive() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (TarOutputStream tos = new TarOutputStream(new GZIPOutputStream(bos))) {
+            tos.putNextEntry(new TarEntry(TarHeader.createHeader("catalog/a.bin", fileA.length, System.currentTimeMillis() / 1000, false, 0644)));
+            tos.write(fileA);
+            tos.putNextEntry(new TarEntry(TarHeader.createHeader("catalog/sub/b.txt", fileB.length, System.currentTimeMillis() / 1000, false, 0644)));
+            tos.write(fileB);
+        }
+        return bos.toByteArray();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+        int from = 0, to = archive.length - 1;
+        if (range != null) {
+            rangeRequests.incrementAndGet();
+            String[] tokens = range.replace("bytes=", "").split("-", -1);
+            from = Integer.parseInt(tokens[0]);
+            if (!tokens[1].isEmpty()) {
+                to = Integer.parseInt(tokens[1]);
+            }
+            if (from >= archive.length) {
+                exchange.sendResponseHeaders(416, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + from + "-" + to + "/" + archive.length);
+        }
+        int length = to - from + 1;
+        exchange.sendResponseHeaders(range != null ? 206 : 200, length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            int limit = range == null && truncateAfter > 0 ? truncateAfter : length;
+            os.write(archive, from, limit);
+        } catch (IOException ignored) {
+            // Client disconnected.
+        }
+    }
+
+    private String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/data.tar.gz";
+    }
+
+    private void assertExtracted(Path out) throws IOException {
+        assertArrayEquals(fileA, Files.readAllBytes(out.resolve("catalog/a.bin")));
+        assertArrayEquals(fileB, Files.readAllBytes(out.resolve("catalog/sub/b.txt")));
+    }
+
+    @Test
+    public void testSingleConnection() throws Exception {
+        Path out = tmp.resolve("out");
+        var pipeline = new DatasetInstallPipeline(url(), tmp.resolve("data.tar.gz.part"), out.toFile());
+        pipeline.setExpectedSha256(sha256);
+        var result = pipeline.run();
+
+        assertEquals(sha256, result.digest());
+        assertEquals(2, result.files().size());
+        assertEquals(archive.length, result.bytes());
+        assertEquals(0, rangeRequests.get());
+        assertExtracted(out);
+    }
+
+    @Test
+    public void testParallelRanges() throws Exception {
+        Path out = tmp.resolve("out");
+        var pipeline = new DatasetInstallPipeline(url(), tmp.resolve("data.tar.gz.part"), out.toFile());
+        pipeline.setConnections(4);
+        pipeline.setMinSegmentSize(256 * 1024);
+        pipeline.setExpectedSha256(sha256);
+        var result = pipeline.run();
+
+        assertEquals(sha256, result.digest());
+        assertEquals(3, rangeRequests.get());
+        assertArrayEquals(archive, Files.readAllBytes(tmp.resolve("data.tar.gz.part")));
+        assertExtracted(out);
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        Path part = tmp.resolve("data.tar.gz.part");
+        Path out = tmp.resolve("out");
+        // First attempt is cut short by the server.
+        truncateAfter = archive.length / 3;
+        var first = new DatasetInstallPipeline(url(), part, out.toFile());
+        assertThrows(IOException.class, first::run);
+        assertTrue(Files.size(part) > 0);
+        assertTrue(Files.size(part) < archive.length);
+
+        // Second attempt only fetches the rest.
+        truncateAfter = -1;
+        var second = new DatasetInstallPipeline(url(), part, out.toFile());
+        second.setExpectedSha256(sha256);
+        var result = second.run();
+
+        assertEquals(sha256, result.digest());
+        assertEquals(1, rangeRequests.get());
+        assertExtracted(out);
+    }
+
+    @Test
+    public void testDigestMismatch() throws Exception {
+        Path out = tmp.resolve("out");
+        var pipeline = new DatasetInstallPipeline(url(), tmp.resolve("data.tar.gz.part"), out.toFile());
+        pipeline.setExpectedSha256("00");
+        assertThrows(DatasetInstallPipeline.DigestMismatchException.class, pipeline::run);
+        assertFalse(Files.exists(out.resolve("catalog/a.bin")));
+        assertFalse(Files.exists(pipeline.getStagingDir()));
+
+        // An existing installation is left untouched by a failed update.
+        byte[] old = "Old dataset".getBytes();
+        Files.createDirectories(out.resolve("catalog"));
+        Files.write(out.resolve("catalog/a.bin"), old);
+        var update = new DatasetInstallPipeline(url(), tmp.resolve("update.tar.gz.part"), out.toFile());
+        update.setExpectedSha256("00");
+        assertThrows(DatasetInstallPipeline.DigestMismatchException.class, update::run);
+        assertArrayEquals(old, Files.readAllBytes(out.resolve("catalog/a.bin")));
+        assertFalse(Files.exists(out.resolve("catalog/sub/b.txt")));
+        assertFalse(Files.exists(update.getStagingDir()));
+
+        // And replaced by a good one.
+        var good = new DatasetInstallPipeline(url(), tmp.resolve("good.tar.gz.part"), out.toFile());
+        good.setExpectedSha256(sha256);
+        good.run();
+        assertExtracted(out);
+        assertFalse(Files.exists(good.getStagingDir()));
+    }
+
+    @Test
+    public void testLocalFile() throws Exception {
+        Path source = tmp.resolve("local.tar.gz");
+        Files.write(source, archive);
+        Path out = tmp.resolve("out");
+        var pipeline = new DatasetInstallPipeline("file://" + source, tmp.resolve("local.tar.gz.part"), out.toFile());
+        var result = pipeline.run();
+
+        assertEquals(sha256, result.digest());
+        assertExtracted(out);
+    }
+}
@@ -0,0 +1,211 @@
+package gaiasky;
+
+import gaiasky.util.FramePipeline;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives a small synthetic scene through {@link FramePipeline} in serial and pipelined modes, and checks that every
+ * rendered frame is the same in both. In pipelined mode, the time-dependent part of the update of the next frame is
+ * prepared while the current frame renders.
+ */
+public class FramePipelineTest {
+    private static final int ENTITIES = 2_000;
+    private static final int FRAMES = 200;
+
+    /** Double-buffered frame state: translations, opacities and the render list of one frame. **/
+    private static class FrameState {
+        final double[] translation = new double[ENTITIES * 3];
+        final float[] opacity = new float[ENTITIES];
+        final List<Integer> renderList = new ArrayList<>();
+        long frame = -1;
+    }
+
+    /** The synthetic scene. Its time and camera are owned by the main thread, like in the application. **/
+    private static class Scene {
+        FrameState front = new FrameState(), back = new FrameState();
+        long frame;
+        double time, camera;
+        final List<Long> rendered = new ArrayList<>();
+        /** Time-dependent terms computed ahead of the update, for {@link #prefetchTime}. Not read by the render. **/
+        final double[] prefetched = new double[ENTITIES * 2];
+        double prefetchTime = Double.NaN;
+        int prefetchHits;
+
+        /** Front end of a frame: advance the time and move the camera. **/
+        void advance(double dt) {
+            frame++;
+            time += dt;
+            camera = Math.sin(time) * 10.0;
+        }
+
+        /** Computes the terms that only depend on the time, ahead of the update of that time. **/
+        void prefetch(double time) {
+            for (int i = 0; i < ENTITIES; i++) {
+                double a = time * (1.0 + i * 1e-3);
+                prefetched[i * 2] = Math.cos(a);
+                prefetched[i * 2 + 1] = Math.sin(a);
+            }
+            prefetchTime = time;
+        }
+
+        /** Update and extract, writes only the back buffer. **/
+        void update(long frame, double time, double camera) {
+            var s = back;
+            assertTrue("The back buffer must have been reset", s.renderList.isEmpty());
+            s.frame = frame;
+            boolean hit = time == prefetchTime;
+            if (hit) {
+                prefetchHits++;
+            }
+            for (int i = 0; i < ENTITIES; i++) {
+                double a = time * (1.0 + i * 1e-3);
+                s.translation[i * 3] = (hit ? prefetched[i * 2] : Math.cos(a)) * i - camera;
+                s.translation[i * 3 + 1] = (hit ? prefetched[i * 2 + 1] : Math.sin(a)) * i;
+                s.translation[i * 3 + 2] = i * 0.5;
+                s.opacity[i] = (float) (0.5 + 0.5 * Math.sin(a * 3.0));
+                if (s.opacity[i] > 0.1f && s.translation[i * 3] > 0) {
+                    s.renderList.add(i);
+                }
+            }
+        }
+
+        void swap() {
+            var f = front;
+            front = back;
+            back = f;
+        }
+
+        /** Reads only the front buffer, then resets it. **/
+        void render() {
+            var s = front;
+            long hash = s.frame;
+            for (int i : s.renderList) {
+                hash = hash * 31 + Double.doubleToLongBits(s.translation[i * 3]);
+                hash = hash * 31 + Double.doubleToLongBits(s.translation[i * 3 + 1]);
+                hash = hash * 31 + Float.floatToIntBits(s.opacity[i]);
+            }
+            rendered.add(hash);
+            s.renderList.clear();
+        }
+    }
+
+    private static FramePipeline pipeline(Scene scene) {
+        return new FramePipeline(() -> scene.update(scene.frame, scene.time, scene.camera), scene::swap, "test-pipeline");
+    }
+
+    private static List<Long> runSerial() {
+        var scene = new Scene();
+        var pipeline = pipeline(scene);
+        for (int i = 0; i < FRAMES; i++) {
+            // Nothing to overlap with in serial mode, the task does not run.
+            double next = scene.time + 0.016;
+            pipeline.prepare(() -> scene.prefetch(next));
+            scene.advance(0.016);
+            pipeline.launch();
+            scene.render();
+        }
+        pipeline.dispose();
+        assertEquals(0, scene.prefetchHits);
+        return scene.rendered;
+    }
+
+    private static List<Long> runPipelined() {
+        var scene = new Scene();
+        var pipeline = pipeline(scene);
+        pipeline.setPipelined(true);
+        // Prime.
+        scene.advance(0.016);
+        pipeline.launch();
+        pipeline.join();
+        for (int i = 0; i < FRAMES; i++) {
+            var front = scene.front;
+            long frame = front.frame;
+            if (i < FRAMES - 1) {
+                // Start the update of the next frame, overlapped with the render.
+                double next = scene.time + 0.016;
+                pipeline.prepare(() -> scene.prefetch(next));
+            }
+            scene.render();
+            if (i < FRAMES - 1) {
+                scene.advance(0.016);
+                pipeline.launch();
+                assertTrue(pipeline.isInFlight());
+                // Work overlapped with the update, which must not touch the front buffer.
+                assertSame(front, scene.front);
+                assertEquals(frame, front.frame);
+                pipeline.join();
+            }
+        }
+        pipeline.dispose();
+        assertEquals(FRAMES - 1, scene.prefetchHits);
+        return scene.rendered;
+    }
+
+    @Test
+    public void testSerialAndPipelinedAreIdentical() {
+        var serial = runSerial();
+        var pipelined = runPipelined();
+        assertEquals(FRAMES, serial.size());
+        assertEquals(serial, pipelined);
+    }
+
+    @Test
+    public void testErrorsReachTheCaller() {
+        var pipeline = new FramePipeline(() -> {
+            throw new IllegalStateException("boom");
+        }, () -> fail("Must not swap after a failed update"), "test-pipeline");
+        pipeline.setPipelined(true);
+        pipeline.launch();
+        try {
+            pipeline.join();
+            fail("Expected exception");
+        } catch (IllegalStateException e) {
+            assertEquals("boom", e.getMessage());
+        }
+        assertFalse(pipeline.isInFlight());
+        pipeline.dispose();
+    }
+
+    @Test
+    public void testPreparedTaskRunsBeforeTheUpdate() throws Exception {
+        List<String> stages = new ArrayList<>();
+        var release = new CountDownLatch(1);
+        var pipeline = new FramePipeline(() -> stages.add("update"), () -> stages.add("swap"), "test-pipeline");
+        pipeline.setPipelined(true);
+        pipeline.prepare(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            stages.add("prepare");
+        });
+        // The caller is not blocked by the prepared task.
+        pipeline.launch();
+        assertTrue(pipeline.isInFlight());
+        release.countDown();
+        pipeline.join();
+        assertEquals(List.of("prepare", "update", "swap"), stages);
+        pipeline.dispose();
+    }
+
+    @Test
+    public void testSwitchingModesCompletesInFlightUpdate() {
+        int[] swaps = new int[1];
+        var pipeline = new FramePipeline(() -> {
+        }, () -> swaps[0]++, "test-pipeline");
+        pipeline.setPipelined(true);
+        pipeline.launch();
+        pipeline.setPipelined(false);
+        assertEquals(1, swaps[0]);
+        pipeline.launch();
+        assertEquals(2, swaps[0]);
+        pipeline.dispose();
+    }
+}
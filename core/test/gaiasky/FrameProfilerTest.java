@@ -0,0 +1,178 @@
+package gaiasky;
+
+import gaiasky.util.profile.FrameProfiler;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link FrameProfiler} statistics and recording, and measures the cost of its scopes when disabled and enabled.
+ */
+public class FrameProfilerTest {
+
+    @Before
+    public void setUp() {
+        FrameProfiler.reset();
+    }
+
+    @After
+    public void tearDown() {
+        FrameProfiler.setEnabled(false);
+        FrameProfiler.reset();
+    }
+
+    /** Ends a scope that started the given number of milliseconds ago. **/
+    private static void spend(int stage, double ms) {
+        FrameProfiler.end(stage, System.nanoTime() - (long) (ms * 1e6));
+    }
+
+    @Test
+    public void testStats() {
+        // Frame times 0.02 ms apart, from 0.02 to 2 ms.
+        long[] times = new long[100];
+        for (int f = 1; f <= 100; f++) {
+            times[100 - f] = f * 20_000L;
+        }
+        var s = FrameProfiler.stats("test", times);
+        assertEquals("test", s.stage());
+        assertEquals(100, s.frames());
+        assertEquals(0.02, s.min(), 1e-12);
+        assertEquals(2.0, s.max(), 1e-12);
+        assertEquals(1.01, s.mean(), 1e-12);
+        assertEquals(1.0, s.p50(), 1e-12);
+        assertEquals(1.9, s.p95(), 1e-12);
+        assertEquals(1.98, s.p99(), 1e-12);
+        // Buckets of powers of two microseconds: [16, 32), [32, 64), ..., [1024, 2048).
+        int[] h = s.histogram();
+        assertEquals(1, h[4]);
+        assertEquals(2, h[5]);
+        assertEquals(3, h[6]);
+        assertEquals(6, h[7]);
+        assertEquals(13, h[8]);
+        assertEquals(26, h[9]);
+        assertEquals(49, h[10]);
+        assertEquals(100, Arrays.stream(h).sum());
+        // Times below 2 microseconds and above the last bucket are clamped.
+        var edges = FrameProfiler.stats("edges", new long[] { 0, 1_999, Long.MAX_VALUE / 2 });
+        assertEquals(2, edges.histogram()[0]);
+        assertEquals(1, edges.histogram()[FrameProfiler.BUCKETS - 1]);
+        assertEquals(0, FrameProfiler.stats("empty", new long[0]).frames());
+    }
+
+    @Test
+    public void testRecording() throws Exception {
+        int a = FrameProfiler.stage("test/a");
+        int b = FrameProfiler.stage("test/a/b");
+        assertEquals(a, FrameProfiler.stage("test/a"));
+
+        // Disabled: nothing is recorded.
+        assertEquals(0L, FrameProfiler.begin());
+        spend(a, 0);
+        FrameProfiler.endFrame();
+        assertEquals(0, FrameProfiler.stats("test/a").frames());
+
+        // Scopes only last longer than their nominal time, so the times are bounded from below.
+        FrameProfiler.setEnabled(true);
+        for (int f = 1; f <= 100; f++) {
+            // Two scopes of stage a per frame.
+            spend(a, 0.5);
+            spend(a, 0.5);
+            spend(b, 1);
+            FrameProfiler.endFrame();
+        }
+        assertEquals(100, FrameProfiler.stats("test/a").frames());
+        assertTrue(FrameProfiler.stats("test/a").min() >= 1.0);
+        assertTrue(FrameProfiler.stats("test/a/b").min() >= 1.0);
+        assertNull(FrameProfiler.stats("test/none"));
+
+        // Scopes from several threads add up.
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Future<?>[] futures = new Future[4];
+        for (int t = 0; t < 4; t++) {
+            futures[t] = executor.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    spend(b, 0.001);
+                }
+            });
+        }
+        for (var f : futures) {
+            f.get();
+        }
+        executor.shutdown();
+        FrameProfiler.endFrame();
+        assertEquals(101, FrameProfiler.stats("test/a/b").frames());
+        assertTrue(FrameProfiler.stats("test/a/b").max() >= 4.0);
+
+        // Only the last frames are kept.
+        for (int f = 0; f < FrameProfiler.FRAMES; f++) {
+            FrameProfiler.endFrame();
+        }
+        assertEquals(FrameProfiler.FRAMES, FrameProfiler.stats("test/a").frames());
+        assertEquals(0, FrameProfiler.stats("test/a").max(), 0);
+
+        var file = Files.createTempDirectory("gs-profiler").resolve("profile.csv");
+        FrameProfiler.dump(file);
+        var lines = Files.readAllLines(file);
+        assertTrue(lines.get(0).startsWith("stage,frames,mean_ms"));
+        assertTrue(lines.stream().anyMatch(l -> l.startsWith("test/a/b," + FrameProfiler.FRAMES + ",")));
+    }
+
+    @Test
+    public void testNoAllocation() {
+        measureScopes(1_000_000);
+    }
+
+    @Test
+    public void testOverhead() {
+        Assume.assumeTrue("Timing runs need -Pperf", Boolean.getBoolean("gaiasky.perf"));
+        int scopes = 10_000_000;
+        long[] times = measureScopes(scopes);
+        System.out.printf("Profiler scope cost: disabled %.2f ns, enabled %.2f ns%n", (double) times[0] / scopes, (double) times[1] / scopes);
+    }
+
+    /**
+     * Runs the given number of scopes with the profiler disabled and enabled, and checks that they allocate nothing.
+     *
+     * @param scopes The number of scopes.
+     *
+     * @return The times with the profiler disabled and enabled, in nanoseconds.
+     */
+    private static long[] measureScopes(int scopes) {
+        int stage = FrameProfiler.stage("test/overhead");
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+
+        long[] times = new long[2];
+        long[] allocated = new long[2];
+        for (int round = 0; round < 2; round++) {
+            for (int mode = 0; mode < 2; mode++) {
+                FrameProfiler.setEnabled(mode == 1);
+                long bytes = threads.getThreadAllocatedBytes(tid);
+                long t0 = System.nanoTime();
+                for (int i = 0; i < scopes; i++) {
+                    long start = FrameProfiler.begin();
+                    FrameProfiler.end(stage, start);
+                    if ((i & 0xfff) == 0) {
+                        FrameProfiler.endFrame();
+                    }
+                }
+                times[mode] = System.nanoTime() - t0;
+                allocated[mode] = threads.getThreadAllocatedBytes(tid) - bytes;
+            }
+        }
+        // Measuring allocates nothing.
+        assertEquals(0, allocated[0]);
+        assertEquals(0, allocated[1]);
+        return times;
+    }
+}
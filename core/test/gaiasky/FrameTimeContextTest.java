@@ -0,0 +1,141 @@
+package gaiasky;
+
+import gaiasky.util.LruCacheLong;
+import gaiasky.util.coord.AstroUtils;
+import gaiasky.util.coord.Coordinates;
+import gaiasky.util.coord.FrameTimeContext;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the per-frame {@link FrameTimeContext} gives the same quantities as {@link AstroUtils}, and that the
+ * lock-free Julian date lookup is correct under contention. With {@code -Pperf}, it also times the lookup against the
+ * previous synchronized LRU cache.
+ */
+public class FrameTimeContextTest {
+    private static final int THREADS = 4;
+    private static final int CALLS = 500_000;
+
+    /** The previous implementation of {@link AstroUtils#getJulianDateCache(Instant)}. **/
+    private static final LruCacheLong<Double> lru = new LruCacheLong<>(10);
+
+    private static synchronized double getJulianDateLru(Instant instant) {
+        long time = instant.toEpochMilli();
+        if (lru.containsKey(time)) {
+            return lru.get(time);
+        } else {
+            double jd = AstroUtils.getJulianDate(instant);
+            lru.put(time, jd);
+            return jd;
+        }
+    }
+
+    @Test
+    public void testContextMatchesAstroUtils() {
+        var instant = Instant.parse("2024-06-21T12:34:56.789Z");
+        var expectedSunLongitude = AstroUtils.getSunLongitude(instant);
+        var c = FrameTimeContext.update(instant);
+        assertSame(c, FrameTimeContext.current());
+        assertSame(c, FrameTimeContext.update(Instant.parse("2024-06-21T12:34:56.789Z")));
+
+        double jd = AstroUtils.getJulianDate(instant);
+        assertEquals(jd, c.jd, 0.0);
+        assertEquals(jd, AstroUtils.getJulianDateCache(instant), 0.0);
+        // 37 leap seconds since 2017, and TCB runs ahead of TT by about 23 seconds in 2024.
+        assertEquals(69.184, c.ttMinusUtc, 0.0);
+        assertEquals(23.2, c.tcbMinusTt, 0.1);
+        assertEquals(jd + 69.184 / 86400.0, c.jdTT, 1e-12);
+        assertEquals(c.jdTT + c.tcbMinusTt / 86400.0, c.jdTCB, 1e-12);
+        assertEquals(AstroUtils.tau(c.jdTT), c.tau, 0.0);
+        assertEquals(c.jdTT, FrameTimeContext.jdTT(instant), 0.0);
+        assertEquals(c.jdTCB, FrameTimeContext.jdTCB(instant), 0.0);
+        assertEquals(c.tau, FrameTimeContext.tau(instant), 0.0);
+        assertEquals(c.sunLongitude, FrameTimeContext.sunLongitude(instant), 0.0);
+        double obliquity = AstroUtils.obliquity(jd);
+        assertArrayEquals(Coordinates.getRotationMatrix(0, obliquity, 0).val, Coordinates.eclToEq(jd).val, 0.0);
+        assertArrayEquals(Coordinates.getRotationMatrix(0, -obliquity, 0).val, Coordinates.eqToEcl(jd).val, 0.0);
+        assertEquals(expectedSunLongitude, c.sunLongitude, 0.0);
+        assertEquals(expectedSunLongitude, AstroUtils.getSunLongitude(instant), 0.0);
+
+        // Other dates do not use the context.
+        var other = instant.plusSeconds(3600);
+        assertEquals(AstroUtils.getJulianDate(other), AstroUtils.getJulianDateCache(other), 0.0);
+        assertNotEquals(c.sunLongitude, AstroUtils.getSunLongitude(other), 0.0);
+        assertEquals(FrameTimeContext.of(other).jdTT, FrameTimeContext.jdTT(other), 1e-9);
+        assertEquals(FrameTimeContext.of(other).jdTCB, FrameTimeContext.jdTCB(other), 1e-9);
+        assertEquals(FrameTimeContext.of(other).tau, FrameTimeContext.tau(other), 1e-12);
+    }
+
+    @Test
+    public void testLeapSeconds() {
+        assertEquals(68.184, AstroUtils.getTTMinusUTC(Instant.parse("2016-12-31T23:59:59Z")), 0.0);
+        assertEquals(69.184, AstroUtils.getTTMinusUTC(Instant.parse("2017-01-01T00:00:00Z")), 0.0);
+        assertEquals(51.184, AstroUtils.getTTMinusUTC(Instant.parse("1981-06-30T12:00:00Z")), 0.0);
+        assertEquals(42.184, AstroUtils.getTTMinusUTC(Instant.parse("1960-01-01T00:00:00Z")), 0.0);
+        // TCB and TT coincide at 1977-01-01T00:00:32.184 TT, up to TDB0.
+        assertEquals(6.55e-5, AstroUtils.getTCBMinusTT(2443144.5003725), 1e-12);
+    }
+
+    private static long run(ExecutorService executor, Instant frame, boolean lruCache, int calls) throws Exception {
+        Future<?>[] futures = new Future[THREADS];
+        long t0 = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            futures[t] = executor.submit(() -> {
+                double expected = AstroUtils.getJulianDate(frame);
+                var own = frame.plusMillis(1000 + thread);
+                double ownExpected = AstroUtils.getJulianDate(own);
+                for (int i = 0; i < calls; i++) {
+                    // Mostly the frame time, sometimes a date of the thread's own (like an orbit refresh).
+                    var instant = (i & 7) == 0 ? own : frame;
+                    double jd = lruCache ? getJulianDateLru(instant) : AstroUtils.getJulianDateCache(instant);
+                    assertEquals(instant == own ? ownExpected : expected, jd, 0.0);
+                }
+            });
+        }
+        for (var f : futures) {
+            f.get();
+        }
+        return System.nanoTime() - t0;
+    }
+
+    @Test
+    public void testContention() throws Exception {
+        var frame = Instant.parse("2025-01-01T00:00:00.000Z");
+        FrameTimeContext.update(frame);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            // Every lookup is checked inside the run.
+            run(executor, frame, false, CALLS / 10);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testContentionTiming() throws Exception {
+        Assume.assumeTrue("Timing runs need -Pperf", Boolean.getBoolean("gaiasky.perf"));
+        var frame = Instant.parse("2025-01-01T00:00:00.000Z");
+        FrameTimeContext.update(frame);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            // Warm up.
+            run(executor, frame, true, CALLS);
+            run(executor, frame, false, CALLS);
+
+            long lruTime = run(executor, frame, true, CALLS);
+            long contextTime = run(executor, frame, false, CALLS);
+            System.out.printf("Julian date lookups (%d threads x %d): synchronized LRU %.2f ms, time context %.2f ms%n", THREADS, CALLS,
+                    lruTime * 1e-6, contextTime * 1e-6);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package gaiasky;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.PixmapIO;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import gaiasky.render.gdx.model.gltf.data.GLTF;
+import gaiasky.render.gdx.model.gltf.loaders.glb.BinaryDataFileResolver;
+import gaiasky.render.gdx.model.gltf.loaders.shared.data.DataResolver;
+import gaiasky.render.gdx.model.gltf.loaders.shared.texture.ImageResolver;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Loads a synthetic GLB file with geometry and embedded images through {@link BinaryDataFileResolver}, and checks
+ * that the geometry matches the source byte for byte, that the binary chunk is mapped instead of copied, and that the
+ * images decoded in parallel match the source pixels, in order.
+ */
+public class GLBLoaderTest {
+    private static final int VERTICES = 50_000;
+    private static final int INDICES = 3 * 40_000;
+    private static final int[][] IMAGES = { { 64, 32 }, { 128, 128 }, { 17, 33 }, { 256, 8 } };
+
+    private Path tmp;
+    private final List<Pixmap> sources = new ArrayList<>();
+    private float[] positions;
+    private int[] indices;
+    private final List<byte[]> views = new ArrayList<>();
+
+    @BeforeClass
+    public static void loadNatives() {
+        GdxNativesLoader.load();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        tmp = Files.createTempDirectory("gs-glb-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        sources.forEach(Pixmap::dispose);
+        try (Stream<Path> walk = Files.walk(tmp)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private byte[] png(int w, int h) throws IOException {
+        var pixmap = new Pixmap(w, h, Format.RGBA8888);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                pixmap.drawPixel(x, y, (x * 31 + y * 17) << 24 | (x ^ y) << 16 | (y * 7 + w) << 8 | 0xff);
+            }
+        }
+        sources.add(pixmap);
+        var file = tmp.resolve("image" + sources.size() + ".png");
+        PixmapIO.writePNG(new FileHandle(file.toFile()), pixmap);
+        return Files.readAllBytes(file);
+    }
+
+    private static void pad(ByteArrayOutputStream out, int value) {
+        while (out.size() % 4 != 0) {
+            out.write(value);
+        }
+    }
+
+    /** Writes a GLB with positions, indices and the images, each in its own buffer view. **/
+    private Path glb() throws IOException {
+        var rnd = new Random(3);
+        positions = new float[VERTICES * 3];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = (float) rnd.nextGaussian() * 100f;
+        }
+        indices = new int[INDICES];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = rnd.nextInt(VERTICES);
+        }
+        var p = ByteBuffer.allocate(positions.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        p.asFloatBuffer().put(positions);
+        views.add(p.array());
+        var idx = ByteBuffer.allocate(indices.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        idx.asIntBuffer().put(indices);
+        views.add(idx.array());
+        for (int[] size : IMAGES) {
+            views.add(png(size[0], size[1]));
+        }
+
+        var bin = new ByteArrayOutputStream();
+        var bufferViews = new StringBuilder();
+        for (byte[] view : views) {
+            pad(bin, 0);
+            if (!bufferViews.isEmpty()) {
+                bufferViews.append(',');
+            }
+            bufferViews.append("{\"buffer\":0,\"byteOffset\":").append(bin.size()).append(",\"byteLength\":").append(view.length).append('}');
+            bin.write(view);
+        }
+        pad(bin, 0);
+        var images = new StringBuilder();
+        for (int i = 0; i < IMAGES.length; i++) {
+            if (!images.isEmpty()) {
+                images.append(',');
+            }
+            images.append("{\"bufferView\":").append(i + 2).append(",\"mimeType\":\"image/png\"}");
+        }
+        String json = "{\"buffers\":[{\"byteLength\":" + bin.size() + "}],\"bufferViews\":[" + bufferViews + "],\"accessors\":["
+                + "{\"bufferView\":0,\"componentType\":5126,\"count\":" + VERTICES + ",\"type\":\"VEC3\"},"
+                + "{\"bufferView\":1,\"componentType\":5125,\"count\":" + INDICES + ",\"type\":\"SCALAR\"}],\"images\":[" + images + "]}";
+        var jsonChunk = new ByteArrayOutputStream();
+        jsonChunk.write(json.getBytes(StandardCharsets.UTF_8));
+        pad(jsonChunk, ' ');
+
+        var header = ByteBuffer.allocate(12 + 8).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0x46546C67).putInt(2).putInt(12 + 8 + jsonChunk.size() + 8 + bin.size());
+        header.putInt(jsonChunk.size()).putInt(0x4E4F534A);
+        var binHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putInt(bin.size()).putInt(0x004E4942);
+
+        var file = tmp.resolve("model.glb");
+        var out = new ByteArrayOutputStream();
+        out.write(header.array());
+        jsonChunk.writeTo(out);
+        out.write(binHeader.array());
+        bin.writeTo(out);
+        Files.write(file, out.toByteArray());
+        return file;
+    }
+
+    private void check(BinaryDataFileResolver resolver) {
+        GLTF glModel = resolver.getRoot();
+        var data = new DataResolver(glModel, resolver);
+
+        var floats = data.getBufferFloat(data.getAccessor(0));
+        for (int i = 0; i < positions.length; i++) {
+            assertEquals(Float.floatToRawIntBits(positions[i]), Float.floatToRawIntBits(floats.get()));
+        }
+        var ints = data.getBufferInt(data.getAccessor(1));
+        for (int index : indices) {
+            assertEquals(index, ints.get());
+        }
+        for (int v = 0; v < views.size(); v++) {
+            var bytes = data.getBufferByte(data.getBufferView(v));
+            byte[] actual = new byte[views.get(v).length];
+            bytes.get(actual);
+            assertArrayEquals(views.get(v), actual);
+        }
+
+        var images = new ImageResolver(resolver);
+        images.load(glModel.images);
+        try {
+            for (int i = 0; i < IMAGES.length; i++) {
+                var expected = sources.get(i);
+                var actual = images.get(i);
+                assertEquals(expected.getWidth(), actual.getWidth());
+                assertEquals(expected.getHeight(), actual.getHeight());
+                assertEquals(expected.getFormat(), actual.getFormat());
+                assertEquals(expected.getPixels().duplicate().clear(), actual.getPixels().duplicate().clear());
+            }
+        } finally {
+            images.dispose();
+        }
+    }
+
+    @Test
+    public void testMapped() throws IOException {
+        var file = glb();
+        var resolver = new BinaryDataFileResolver();
+        resolver.load(new FileHandle(file.toFile()));
+        // The binary chunk is a view of the mapped file.
+        assertTrue(resolver.getBuffer(0).isDirect());
+        assertEquals(ByteOrder.LITTLE_ENDIAN, resolver.getBuffer(0).order());
+        check(resolver);
+    }
+
+    @Test
+    public void testBytes() throws IOException {
+        var file = glb();
+        var resolver = new BinaryDataFileResolver();
+        resolver.load(Files.readAllBytes(file));
+        assertFalse(resolver.getBuffer(0).isDirect());
+        check(resolver);
+    }
+}
@@ -0,0 +1,211 @@
+package gaiasky;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import gaiasky.scene.record.BilinearInterpolator;
+import gaiasky.scene.record.BilinearInterpolator.GridModel;
+import gaiasky.scene.record.HeightField;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests point sampling, min/max queries and ray intersections of {@link HeightField} on synthetic height maps.
+ */
+public class HeightFieldTest {
+
+    @BeforeClass
+    public static void loadNatives() {
+        GdxNativesLoader.load();
+    }
+
+    /** Smooth hills with some noise. **/
+    private static HeightField synthetic(int w, int h, boolean wrapX, long seed) {
+        var rnd = new Random(seed);
+        var heights = new float[w * h];
+        for (int j = 0; j < h; j++) {
+            for (int i = 0; i < w; i++) {
+                double x = (double) i / w, y = (double) j / h;
+                double v = 0.5 + 0.25 * Math.sin(6 * Math.PI * x) * Math.cos(4 * Math.PI * y) + 0.1 * rnd.nextDouble();
+                heights[j * w + i] = (float) v;
+            }
+        }
+        return new HeightField(heights, w, h, wrapX);
+    }
+
+    @Test
+    public void testPixmapSampling() {
+        int w = 128, h = 64;
+        var pixmap = new Pixmap(w, h, Pixmap.Format.RGBA8888);
+        var rnd = new Random(3);
+        for (int j = 0; j < h; j++) {
+            for (int i = 0; i < w; i++) {
+                pixmap.drawPixel(i, j, rnd.nextInt());
+            }
+        }
+        // The sampling used before the height fields.
+        var color = new Color();
+        GridModel pixmapModel = new GridModel() {
+            @Override
+            public int getWidth() {
+                return pixmap.getWidth();
+            }
+
+            @Override
+            public int getHeight() {
+                return pixmap.getHeight();
+            }
+
+            @Override
+            public double getValue(int x, int y) {
+                return color.set(pixmap.getPixel(x, y)).r;
+            }
+        };
+
+        var field = HeightField.of(pixmap, true);
+        var rgb = new Pixmap(w, h, Pixmap.Format.RGB888);
+        rgb.setBlending(Pixmap.Blending.None);
+        rgb.drawPixmap(pixmap, 0, 0);
+        var fieldRgb = HeightField.of(rgb, true);
+        for (int k = 0; k < 10_000; k++) {
+            double u = rnd.nextDouble(), v = rnd.nextDouble();
+            double expected = BilinearInterpolator.interpolate(u, v, pixmapModel, true, false);
+            assertEquals(expected, field.sample(u, v, false), 0.0);
+            assertEquals(expected, fieldRgb.sample(u, v, false), 0.0);
+        }
+
+        // Sampling in texture coordinates matches the surface in field coordinates.
+        var square = synthetic(64, 64, true, 6);
+        for (int k = 0; k < 1_000; k++) {
+            double u = 0.01 + 0.98 * rnd.nextDouble(), v = 0.01 + 0.98 * rnd.nextDouble();
+            assertEquals(square.sample(u, v, false), square.heightAt(square.toX(u), square.toY(v)), 1e-6);
+        }
+
+        pixmap.dispose();
+        rgb.dispose();
+    }
+
+    @Test
+    public void testMinMax() {
+        var rnd = new Random(5);
+        for (var field : new HeightField[] { synthetic(100, 37, false, 1), synthetic(64, 64, true, 2), synthetic(1, 1, false, 3) }) {
+            int cw = field.isWrapX() ? field.getWidth() : Math.max(1, field.getWidth() - 1);
+            int ch = Math.max(1, field.getHeight() - 1);
+            var out = new float[2];
+            for (int k = 0; k < 500; k++) {
+                int x0 = rnd.nextInt(cw), x1 = x0 + rnd.nextInt(cw - x0);
+                int y0 = rnd.nextInt(ch), y1 = y0 + rnd.nextInt(ch - y0);
+                float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+                for (int j = y0; j <= Math.min(y1 + 1, field.getHeight() - 1); j++) {
+                    for (int i = x0; i <= x1 + 1; i++) {
+                        int ii = i < field.getWidth() ? i : (field.isWrapX() ? 0 : field.getWidth() - 1);
+                        min = Math.min(min, field.get(ii, j));
+                        max = Math.max(max, field.get(ii, j));
+                    }
+                }
+                field.minMax(x0 + 0.5, y0 + 0.5, x1 + 0.5, y1 + 0.5, out);
+                assertEquals(min, out[0], 0f);
+                assertEquals(max, out[1], 0f);
+            }
+            field.minMax(0, 0, cw, ch, out);
+            assertEquals(field.getMin(), out[0], 0f);
+            assertEquals(field.getMax(), out[1], 0f);
+            // The quadtree over blocks of cells is small compared to the heights.
+            long heightBytes = (long) field.getWidth() * field.getHeight() * Float.BYTES;
+            assertTrue(field.getSizeBytes() - heightBytes <= heightBytes / 4 + 2 * Float.BYTES);
+        }
+
+        // Ranges across the seam of a wrapping field.
+        var field = synthetic(64, 20, true, 4);
+        var out = new float[2];
+        field.minMax(60.5, 2.5, 66.5, 5.5, out);
+        float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+        for (int j = 2; j <= 6; j++) {
+            for (int i = 60; i <= 67; i++) {
+                min = Math.min(min, field.get(i % 64, j));
+                max = Math.max(max, field.get(i % 64, j));
+            }
+        }
+        assertEquals(min, out[0], 0f);
+        assertEquals(max, out[1], 0f);
+    }
+
+    /** Height of the surface, wrapping x if the field wraps. **/
+    private static double heightAt(HeightField f, double x, double y) {
+        return f.heightAt(f.isWrapX() ? x - Math.floor(x / f.getWidth()) * f.getWidth() : x, y);
+    }
+
+    /** First crossing of the surface, by marching in tiny steps. **/
+    private static double march(HeightField f, double ox, double oy, double oz, double dx, double dy, double dz, double tMax) {
+        double step = 1e-4;
+        double prev = oz - heightAt(f, ox, oy);
+        for (double t = step; t <= tMax; t += step) {
+            double d = oz + dz * t - heightAt(f, ox + dx * t, oy + dy * t);
+            if (d <= 0 && prev > 0) {
+                return t;
+            }
+            prev = d;
+        }
+        return -1;
+    }
+
+    @Test
+    public void testIntersect() {
+        var field = synthetic(50, 40, false, 7);
+        var rnd = new Random(11);
+
+        // Vertical rays hit the surface right below.
+        for (int k = 0; k < 1000; k++) {
+            double x = rnd.nextDouble() * 49, y = rnd.nextDouble() * 39;
+            double t = field.intersect(x, y, 2, 0, 0, -1, 10);
+            assertEquals(2 - field.heightAt(x, y), t, 1e-9);
+        }
+        // Rays above the maximum height miss.
+        assertEquals(-1, field.intersect(0, 0, field.getMax() + 0.01, 1, 1, 0, 100), 0);
+        // Rays pointing away miss.
+        assertEquals(-1, field.intersect(10, 10, 2, 0.3, 0.2, 1, 100), 0);
+
+        // Grazing rays, against marching.
+        int hits = 0;
+        for (int k = 0; k < 200; k++) {
+            double ox = rnd.nextDouble() * 10, oy = rnd.nextDouble() * 39, oz = 1.0;
+            double dx = 1, dy = (rnd.nextDouble() - 0.5) * 0.5, dz = -0.01 - rnd.nextDouble() * 0.03;
+            double tMax = Math.min(39 - ox, dy > 0 ? (39 - oy) / dy : -oy / dy);
+            double expected = march(field, ox, oy, oz, dx, dy, dz, tMax);
+            double t = field.intersect(ox, oy, oz, dx, dy, dz, tMax);
+            if (expected < 0) {
+                assertEquals(-1, t, 0);
+            } else {
+                hits++;
+                assertEquals(expected, t, 2e-4);
+                assertEquals(oz + dz * t, field.heightAt(ox + dx * t, oy + dy * t), 1e-6);
+            }
+        }
+        assertTrue(hits > 100);
+
+        // Rays across the seam of a wrapping field, in both directions.
+        var wrapping = synthetic(32, 20, true, 13);
+        hits = 0;
+        for (int k = 0; k < 200; k++) {
+            double ox = 20 + rnd.nextDouble() * 10, oy = 5 + rnd.nextDouble() * 10, oz = 1.0;
+            double dx = k % 2 == 0 ? 1 : -1, dz = -0.01 - rnd.nextDouble() * 0.03;
+            if (dx < 0) {
+                ox -= 20;
+            }
+            double tMax = 30;
+            double expected = march(wrapping, ox, oy, oz, dx, 0, dz, tMax);
+            double t = wrapping.intersect(ox, oy, oz, dx, 0, dz, tMax);
+            if (expected < 0) {
+                assertEquals(-1, t, 0);
+            } else {
+                hits++;
+                assertEquals(expected, t, 2e-4);
+            }
+        }
+        assertTrue(hits > 100);
+    }
+}
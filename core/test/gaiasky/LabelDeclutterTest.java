@@ -0,0 +1,112 @@
+package gaiasky;
+
+import gaiasky.scene.system.render.draw.text.LabelDeclutter;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Feeds synthetic projected label rectangles to {@link LabelDeclutter}, and checks that the accepted labels do not
+ * overlap, that higher priorities win, that the budget holds, and that forced labels are always drawn.
+ */
+public class LabelDeclutterTest {
+    private static final int W = 1920, H = 1080;
+
+    private static LabelDeclutter declutter(int budget) {
+        var declutter = new LabelDeclutter();
+        declutter.setBudget(budget);
+        declutter.setViewport(W, H);
+        return declutter;
+    }
+
+    @Test
+    public void testPriority() {
+        var declutter = declutter(100);
+        // Two overlapping labels, and one apart.
+        assertFalse(declutter.test(1, 100, 100, 80, 12, 0.5f, false));
+        assertFalse(declutter.test(2, 150, 105, 80, 12, 2f, false));
+        assertFalse(declutter.test(3, 500, 500, 80, 12, 0.1f, false));
+        // Not visible.
+        assertFalse(declutter.test(4, 800, 800, 80, 12, 0f, false));
+        // Off-screen.
+        assertFalse(declutter.test(5, W + 10, 100, 80, 12, 5f, false));
+        assertEquals(2, declutter.resolve());
+
+        // Decisions apply to the next frame.
+        assertFalse(declutter.test(1, 100, 100, 80, 12, 0.5f, false));
+        assertTrue(declutter.test(2, 150, 105, 80, 12, 2f, false));
+        assertTrue(declutter.test(3, 500, 500, 80, 12, 0.1f, false));
+        assertFalse(declutter.test(4, 800, 800, 80, 12, 0f, false));
+        assertFalse(declutter.test(5, W + 10, 100, 80, 12, 5f, false));
+        declutter.resolve();
+
+        // A slightly higher priority does not take over the accepted label, a much higher one does.
+        declutter.test(1, 100, 100, 80, 12, 2.5f, false);
+        declutter.test(2, 150, 105, 80, 12, 2f, false);
+        declutter.resolve();
+        assertTrue(declutter.isAccepted(2));
+        assertFalse(declutter.isAccepted(1));
+        declutter.test(1, 100, 100, 80, 12, 4f, false);
+        declutter.test(2, 150, 105, 80, 12, 2f, false);
+        declutter.resolve();
+        assertTrue(declutter.isAccepted(1));
+        assertFalse(declutter.isAccepted(2));
+
+        // Forced labels are drawn always, and win over the others.
+        assertTrue(declutter.test(2, 150, 105, 80, 12, 0f, true));
+        declutter.test(1, 100, 100, 80, 12, 4f, false);
+        declutter.resolve();
+        assertTrue(declutter.isAccepted(2));
+        assertFalse(declutter.isAccepted(1));
+    }
+
+    @Test
+    public void testCrowded() {
+        int budget = 300;
+        var declutter = declutter(budget);
+        var rnd = new Random(11);
+        int n = 20_000;
+        float[] x = new float[n], y = new float[n], w = new float[n], h = new float[n], p = new float[n];
+        for (int i = 0; i < n; i++) {
+            // A few large labels.
+            boolean large = i % 1000 == 0;
+            w[i] = large ? 400 + rnd.nextFloat() * 400 : 20 + rnd.nextFloat() * 100;
+            h[i] = large ? 40 : 10 + rnd.nextFloat() * 6;
+            x[i] = rnd.nextFloat() * W - w[i] / 2;
+            y[i] = rnd.nextFloat() * H - h[i] / 2;
+            p[i] = rnd.nextFloat();
+        }
+        for (int frame = 0; frame < 3; frame++) {
+            for (int i = 0; i < n; i++) {
+                declutter.test(i, x[i], y[i], w[i], h[i], p[i], false);
+            }
+            int accepted = declutter.resolve();
+            assertTrue(accepted <= budget);
+            assertTrue(accepted > 0);
+        }
+
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (declutter.isAccepted(i)) {
+                count++;
+                // Candidates over the capacity are dropped.
+                assertTrue(i < LabelDeclutter.MAX_CANDIDATES);
+                for (int j = i + 1; j < n; j++) {
+                    if (declutter.isAccepted(j)) {
+                        boolean overlap = x[i] < x[j] + w[j] && x[j] < x[i] + w[i] && y[i] < y[j] + h[j] && y[j] < y[i] + h[i];
+                        assertFalse("Labels " + i + " and " + j + " overlap", overlap);
+                    }
+                }
+            }
+        }
+        assertEquals(budget, count);
+
+        // With few candidates apart from each other, all of them are accepted.
+        for (int i = 0; i < 50; i++) {
+            declutter.test(i, (i % 10) * 150, (i / 10) * 100, 100, 20, 1f, false);
+        }
+        assertEquals(50, declutter.resolve());
+    }
+}
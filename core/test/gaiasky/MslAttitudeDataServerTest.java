@@ -0,0 +1,145 @@
+package gaiasky;
+
+import gaiasky.util.gaia.IAttitude;
+import gaiasky.util.gaia.ModifiedScanningLaw;
+import gaiasky.util.gaia.MslAttitudeDataServer;
+import gaiasky.util.gaia.time.Days;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the segmented, on-demand integration of {@link MslAttitudeDataServer} gives the same attitude as the
+ * integration of the whole span in one go, in any access order, and that persisted segments are read back instead of
+ * integrated again.
+ */
+public class MslAttitudeDataServerTest {
+    /** About five years after J2010, in ns. **/
+    private static final long T_START = (long) (5.0 * 365.25 * 86400e9) + 12_345_678_900L;
+    private static final double DAYS = 2.0;
+    private static final int SEGMENT = 64;
+
+    private Path tmp;
+
+    @Before
+    public void setUp() throws IOException {
+        tmp = Files.createTempDirectory("gs-msl-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> walk = Files.walk(tmp)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private static ModifiedScanningLaw msl() {
+        var msl = new ModifiedScanningLaw(T_START);
+        msl.setTypicalHighDensityArea();
+        return msl;
+    }
+
+    private static MslAttitudeDataServer server(ModifiedScanningLaw msl, int segmentLength, Path cacheDir) {
+        var server = new MslAttitudeDataServer(T_START, new Days(DAYS), msl);
+        server.setSegmentLength(segmentLength);
+        server.setMaxSegments(3);
+        server.setCacheDirectory(cacheDir);
+        server.initialize();
+        return server;
+    }
+
+    private static long[] times(MslAttitudeDataServer server, int n) {
+        long[] params = server.getNodeParams();
+        long span = params[1] * (params[2] - 1);
+        var rnd = new Random(7);
+        long[] times = new long[n];
+        for (int i = 0; i < n; i++) {
+            times[i] = params[0] + (long) (rnd.nextDouble() * span);
+        }
+        return times;
+    }
+
+    private static void assertSame(IAttitude expected, IAttitude actual) {
+        var q0 = expected.getQuaternion();
+        var q1 = actual.getQuaternion();
+        assertEquals(q0.x, q1.x, 0);
+        assertEquals(q0.y, q1.y, 0);
+        assertEquals(q0.z, q1.z, 0);
+        assertEquals(q0.w, q1.w, 0);
+        var d0 = expected.getQuaternionDot();
+        var d1 = actual.getQuaternionDot();
+        assertEquals(d0.x, d1.x, 0);
+        assertEquals(d0.w, d1.w, 0);
+    }
+
+    @Test
+    public void testSegments() {
+        // A single segment integrates the whole span in order.
+        var reference = server(msl(), Integer.MAX_VALUE / 2, null);
+        var segmented = server(msl(), SEGMENT, null);
+        long[] params = segmented.getNodeParams();
+        assertArrayEquals(reference.getNodeParams(), params);
+        assertTrue(params[2] > 10 * SEGMENT);
+
+        // Random order, so that segments are integrated out of order, evicted and integrated again.
+        for (long t : times(segmented, 500)) {
+            assertSame(reference.getAttitudeNative(t), segmented.getAttitudeNative(t));
+            assertEquals(reference.isModified(t), segmented.isModified(t));
+            assertEquals(reference.isTransition(t), segmented.isTransition(t));
+        }
+        // The nodes at the segment boundaries.
+        for (long i = 0; i < params[2] - 1; i += SEGMENT) {
+            long t = params[0] + i * params[1];
+            assertSame(reference.getAttitudeNative(t), segmented.getAttitudeNative(t));
+        }
+        assertArrayEquals(reference.getPrecessionRateChanges(), segmented.getPrecessionRateChanges());
+
+        try {
+            segmented.getAttitudeNative(params[0] - 1);
+            fail("Out of range");
+        } catch (RuntimeException ignored) {
+        }
+    }
+
+    @Test
+    public void testCache() throws IOException {
+        var reference = server(msl(), SEGMENT, null);
+        var first = server(msl(), SEGMENT, tmp);
+        long[] times = times(first, 200);
+        for (long t : times) {
+            assertSame(reference.getAttitudeNative(t), first.getAttitudeNative(t));
+        }
+        // Integrates the remaining segments.
+        first.getPrecessionRateChanges();
+        long[] params = first.getNodeParams();
+        try (Stream<Path> files = Files.list(tmp)) {
+            assertEquals((params[2] - 2) / SEGMENT + 1, files.filter(p -> p.toString().endsWith(".bin")).count());
+        }
+
+        // A new session reads all segments, so the scanning law is never integrated.
+        var msl = msl();
+        long t0 = msl.getTime();
+        var second = server(msl, SEGMENT, tmp);
+        for (int i = times.length - 1; i >= 0; i--) {
+            assertSame(reference.getAttitudeNative(times[i]), second.getAttitudeNative(times[i]));
+        }
+        assertArrayEquals(reference.getPrecessionRateChanges(), second.getPrecessionRateChanges());
+        assertEquals(t0, msl.getTime());
+
+        // Other parameters do not use the persisted segments.
+        msl = msl();
+        var other = server(msl, SEGMENT, tmp);
+        other.setMaxStep(100);
+        other.getAttitudeNative(times[0]);
+        assertNotEquals(t0, msl.getTime());
+    }
+}
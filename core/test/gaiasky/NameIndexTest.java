@@ -0,0 +1,155 @@
+package gaiasky;
+
+import gaiasky.util.MultiNameIndex;
+import gaiasky.util.NameIndex;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link NameIndex} against a {@link HashMap}, including its persisted form, and compares its size with the
+ * size of the names as strings. Checks that {@link MultiNameIndex} resolves names to the first index that has them
+ * while indices are added and removed.
+ */
+public class NameIndexTest {
+
+    private static String name(Random rnd, int i) {
+        return switch (i % 4) {
+            case 0 -> "hip " + i;
+            case 1 -> "gaia dr3 " + (4_000_000_000_000L + rnd.nextInt(1_000_000_000));
+            case 2 -> "α cen " + i;
+            default -> "tyc " + rnd.nextInt(10000) + "-" + rnd.nextInt(2000) + "-1";
+        };
+    }
+
+    @Test
+    public void testSameAsHashMap() throws IOException {
+        Random rnd = new Random(11L);
+        Map<String, Integer> reference = new HashMap<>();
+        NameIndex index = new NameIndex(16);
+        for (int i = 0; i < 200_000; i++) {
+            var name = name(rnd, i);
+            reference.put(name, i);
+            index.put(name, i);
+        }
+        // Overwrite some.
+        for (int i = 0; i < 1000; i++) {
+            var name = "hip " + (i * 4);
+            reference.put(name, -i - 2);
+            index.put(name, -i - 2);
+        }
+        index.trim();
+        check(reference, index);
+
+        // Persistence.
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(bytes)) {
+            index.write(out);
+        }
+        NameIndex read;
+        try (var in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read = NameIndex.read(in);
+        }
+        check(reference, read);
+
+        long stringBytes = 0;
+        for (var name : reference.keySet()) {
+            // Header and fields of the string, plus the header and contents of its array.
+            stringBytes += 24 + 16 + name.getBytes(StandardCharsets.UTF_8).length;
+        }
+        assertTrue(index.sizeBytes() < stringBytes);
+    }
+
+    private void check(Map<String, Integer> reference, NameIndex index) {
+        assertEquals(reference.size(), index.size());
+        for (var e : reference.entrySet()) {
+            assertTrue(index.containsKey(e.getKey()));
+            assertEquals((int) e.getValue(), index.get(e.getKey(), Integer.MIN_VALUE));
+            assertEquals((int) e.getValue(), index.get(NameIndex.Key.of(e.getKey()), Integer.MIN_VALUE));
+        }
+        for (int i = 0; i < index.size(); i++) {
+            assertEquals(index.value(i), (int) reference.get(index.key(i)));
+        }
+        assertFalse(index.containsKey("hip -1"));
+        assertEquals(-1, index.get("sirius"));
+    }
+
+    @Test
+    public void testCrossIndexAndSubstring() {
+        NameIndex a = new NameIndex(4), b = new NameIndex(4);
+        a.put("sirius", 0);
+        a.put("α cen a", 1);
+        b.put("α cen a", 7);
+        b.put("vega", 8);
+        assertTrue(a.containsKey(b, b.find("α cen a")));
+        assertFalse(a.containsKey(b, b.find("vega")));
+
+        var needle = "cen".getBytes(StandardCharsets.UTF_8);
+        assertTrue(a.keyContains(a.find("α cen a"), needle));
+        assertFalse(a.keyContains(a.find("sirius"), needle));
+        assertTrue(a.keyContains(a.find("sirius"), "irius".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(a.keyContains(a.find("sirius"), "siriusb".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testMultiIndex() {
+        Random rnd = new Random(5L);
+        MultiNameIndex<NameIndex> multi = new MultiNameIndex<>();
+        List<NameIndex> added = new ArrayList<>();
+        int[] conflicts = new int[1];
+        for (int round = 0; round < 200; round++) {
+            if (!added.isEmpty() && rnd.nextInt(3) == 0) {
+                var removed = added.remove(rnd.nextInt(added.size()));
+                multi.remove(removed);
+            } else {
+                // Overlapping ranges of names, so that many are in several indices.
+                var names = new NameIndex(16);
+                int from = rnd.nextInt(5000);
+                for (int i = from; i < from + rnd.nextInt(500); i++) {
+                    names.put("hip " + i, i);
+                }
+                int expected = 0;
+                for (int i = 0; i < names.size(); i++) {
+                    for (var other : added) {
+                        if (other.containsKey(names, i)) {
+                            expected++;
+                            break;
+                        }
+                    }
+                }
+                conflicts[0] = 0;
+                multi.add(names, names, (owner, entry) -> {
+                    assertTrue(owner.containsKey(names, entry));
+                    conflicts[0]++;
+                });
+                assertEquals(expected, conflicts[0]);
+                added.add(names);
+            }
+
+            int total = 0;
+            for (var names : added) {
+                total += names.size();
+            }
+            assertEquals(total, multi.size());
+            for (int i = 0; i < 5500; i += 7) {
+                var name = "hip " + i;
+                NameIndex first = null;
+                for (var names : added) {
+                    if (names.containsKey(name)) {
+                        first = names;
+                        break;
+                    }
+                }
+                assertSame(name, first, multi.get(name));
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package gaiasky;
+
+import gaiasky.data.api.IOctantLoader;
+import gaiasky.util.camera.rec.CameraPath;
+import gaiasky.util.math.Vector3D;
+import gaiasky.util.tree.LoadStatus;
+import gaiasky.util.tree.OctantPrefetcher;
+import gaiasky.util.tree.OctreeNode;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Moves a mock camera past a synthetic octree, and checks that {@link OctantPrefetcher} prefetches the octants ahead
+ * of the camera, cancels them when the trajectory changes, follows camera paths, and counts hits and misses.
+ */
+public class OctantPrefetcherTest {
+    private static final double FOV = 30;
+    private static final double TH0 = 1e-3;
+    private static final double DT = 0.1;
+
+    /** Loader that only keeps the queued octants in a list. **/
+    private static final class MockLoader implements IOctantLoader {
+        final List<OctreeNode> queue = new ArrayList<>();
+        int cancelled;
+
+        @Override
+        public void queue(OctreeNode octant) {
+            queue.add(octant);
+            octant.setStatus(LoadStatus.QUEUED);
+        }
+
+        @Override
+        public boolean prefetch(OctreeNode octant) {
+            octant.prefetched = true;
+            queue(octant);
+            return true;
+        }
+
+        @Override
+        public void cancelPrefetch(OctreeNode octant) {
+            queue.remove(octant);
+            octant.prefetched = false;
+            octant.setStatus(LoadStatus.NOT_LOADED);
+            cancelled++;
+        }
+
+        /** Loads all queued octants. **/
+        void load() {
+            queue.forEach(o -> o.setStatus(LoadStatus.LOADED));
+            queue.clear();
+        }
+
+        @Override
+        public void clearQueue() {
+        }
+
+        @Override
+        public void touch(OctreeNode octant) {
+        }
+
+        @Override
+        public int getLoadQueueSize() {
+            return queue.size();
+        }
+
+        @Override
+        public int getNLoadedStars() {
+            return 0;
+        }
+    }
+
+    /** Octree of the given depth centred at the origin, with one object per octant. **/
+    private static OctreeNode octree(double halfSize, int depth) {
+        return node(0, 0, 0, halfSize, 0, depth, null);
+    }
+
+    private static OctreeNode node(double x, double y, double z, double hs, int depth, int maxDepth, OctreeNode parent) {
+        var node = new OctreeNode(0, x, y, z, hs, hs, hs, depth);
+        node.parent = parent;
+        node.numObjects = 1;
+        if (depth < maxDepth) {
+            double h = hs / 2;
+            for (int i = 0; i < 8; i++) {
+                node.children[i] = node(x + ((i & 1) == 0 ? -h : h), y + ((i & 2) == 0 ? -h : h), z + ((i & 4) == 0 ? -h : h), h, depth + 1,
+                                        maxDepth, node);
+            }
+        }
+        return node;
+    }
+
+    private static void nodes(OctreeNode node, List<OctreeNode> out) {
+        out.add(node);
+        for (var child : node.children) {
+            if (child != null) {
+                nodes(child, out);
+            }
+        }
+    }
+
+    @Test
+    public void testLinearMotion() {
+        var loader = new MockLoader();
+        var prefetcher = new OctantPrefetcher(loader);
+        var root = octree(100, 2);
+        var dir = new Vector3D(1, 0, 0);
+
+        // The camera moves along y, looking at +x, and the octree only enters the view after a while.
+        var pos = new Vector3D(-400, -1000, 0);
+        int issued = 0;
+        for (int frame = 0; frame < 10; frame++) {
+            prefetcher.observe(DT, pos, dir, FOV);
+            issued += prefetcher.prefetch(root, null, TH0);
+            pos.add(0, 500 * DT, 0);
+        }
+        assertTrue(issued > 0);
+        assertTrue(issued <= OctantPrefetcher.DEFAULT_MAX_PREFETCH * 4);
+        assertEquals(issued, prefetcher.getIssued());
+        // Shallower octants go first, and none is prefetched twice.
+        assertTrue(root.prefetched);
+        assertEquals(loader.queue.size(), loader.queue.stream().distinct().count());
+
+        // The octants are loaded, and then observed.
+        var prefetched = new ArrayList<>(loader.queue);
+        loader.load();
+        var all = new ArrayList<OctreeNode>();
+        nodes(root, all);
+        all.forEach(o -> o.observed = true);
+        prefetcher.observe(DT, pos, dir, FOV);
+        prefetcher.miss();
+        assertEquals(prefetched.size(), prefetcher.getHits());
+        assertEquals(0, prefetcher.getLateHits());
+        assertEquals(1, prefetcher.getMisses());
+        assertEquals(0, prefetcher.getTrackedCount());
+        assertEquals(prefetched.size() / (prefetched.size() + 1.0), prefetcher.getHitRate(), 1e-9);
+
+        // Standing still, nothing is predicted.
+        var still = new OctantPrefetcher(loader);
+        for (int frame = 0; frame < 10; frame++) {
+            still.observe(DT, pos, dir, FOV);
+            assertEquals(0, still.prefetch(root, null, TH0));
+        }
+    }
+
+    @Test
+    public void testTrajectoryChange() {
+        var loader = new MockLoader();
+        var prefetcher = new OctantPrefetcher(loader);
+        var root = octree(100, 2);
+        var dir = new Vector3D(1, 0, 0);
+
+        var pos = new Vector3D(-400, -1000, 0);
+        for (int frame = 0; frame < 10; frame++) {
+            prefetcher.observe(DT, pos, dir, FOV);
+            prefetcher.prefetch(root, null, TH0);
+            pos.add(0, 500 * DT, 0);
+        }
+        assertFalse(loader.queue.isEmpty());
+
+        // The camera turns back before anything is loaded.
+        for (int frame = 0; frame < 20; frame++) {
+            prefetcher.observe(DT, pos, dir, FOV);
+            prefetcher.prefetch(root, null, TH0);
+            pos.add(0, -2000 * DT, 0);
+        }
+        assertTrue(prefetcher.getCancelled() > 0);
+        assertEquals(loader.cancelled, prefetcher.getCancelled());
+        assertTrue(loader.queue.isEmpty());
+        assertEquals(0, prefetcher.getTrackedCount());
+        assertFalse(root.prefetched);
+        assertEquals(LoadStatus.NOT_LOADED, root.getStatus());
+    }
+
+    @Test
+    public void testCameraPath() {
+        var loader = new MockLoader();
+        var prefetcher = new OctantPrefetcher(loader);
+        var root = octree(100, 2);
+
+        // The path looks away for a second, then turns to the octree.
+        var path = new CameraPath(60);
+        var now = Instant.now();
+        for (int i = 0; i < 120; i++) {
+            double dx = i < 60 ? -1 : 1;
+            path.add(now, -400, 0, 0, dx, 0, 0, 0, 1, 0);
+        }
+        var pos = new Vector3D(-400, 0, 0);
+        var away = new Vector3D(-1, 0, 0);
+
+        prefetcher.observe(DT, pos, away, FOV);
+        assertEquals(0, prefetcher.prefetch(root, null, TH0));
+        // Looking away, but the next prediction reads the path.
+        for (int frame = 0; frame < 3; frame++) {
+            prefetcher.observe(DT, pos, away, FOV);
+        }
+        assertTrue(prefetcher.prefetch(root, path, TH0) > 0);
+
+        // Observed while still queued.
+        loader.queue.forEach(o -> o.observed = true);
+        root.observed = true;
+        prefetcher.observe(DT, pos, away, FOV);
+        assertTrue(prefetcher.getLateHits() > 0);
+        assertEquals(0, prefetcher.getHits());
+    }
+}
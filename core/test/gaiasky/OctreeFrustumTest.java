@@ -0,0 +1,159 @@
+package gaiasky;
+
+import gaiasky.util.math.Vector3D;
+import gaiasky.util.tree.OctreeFrustum;
+import gaiasky.util.tree.OctreeNode;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Culls a synthetic octree with {@link OctreeFrustum} from random cameras, and checks that inheriting the plane masks
+ * gives the same nodes as testing every node against all planes, that no node containing a visible point is culled,
+ * and that boxes cull more nodes than bounding spheres.
+ */
+public class OctreeFrustumTest {
+    private static final int DEPTH = 4;
+
+    private static OctreeNode node(double x, double y, double z, double hs, int depth, OctreeNode parent) {
+        var node = new OctreeNode(0, x, y, z, hs, hs, hs, depth);
+        node.parent = parent;
+        if (depth < DEPTH) {
+            double h = hs / 2;
+            for (int i = 0; i < 8; i++) {
+                node.children[i] = node(x + ((i & 1) == 0 ? -h : h), y + ((i & 2) == 0 ? -h : h), z + ((i & 4) == 0 ? -h : h), h, depth + 1, node);
+            }
+        }
+        return node;
+    }
+
+    /** Hierarchical culling, with the masks inherited from the parents. Returns the number of plane tests. **/
+    private static int cull(OctreeFrustum frustum, OctreeNode node, int mask, Set<OctreeNode> out) {
+        int tests = Integer.bitCount(mask);
+        mask = frustum.test(node.min, node.max, mask);
+        if (mask == OctreeFrustum.OUTSIDE) {
+            return tests;
+        }
+        out.add(node);
+        for (var child : node.children) {
+            if (child != null) {
+                tests += cull(frustum, child, mask, out);
+            }
+        }
+        return tests;
+    }
+
+    /** Every node whose box and ancestor boxes are not outside, tested against all planes. **/
+    private static void bruteForce(OctreeFrustum frustum, OctreeNode node, Set<OctreeNode> out) {
+        if (frustum.test(node.min, node.max, OctreeFrustum.ALL) != OctreeFrustum.OUTSIDE) {
+            out.add(node);
+            for (var child : node.children) {
+                if (child != null) {
+                    bruteForce(frustum, child, out);
+                }
+            }
+        }
+    }
+
+    /** Culling with the cubes bounding the spheres of the nodes, a stand-in for the sphere test. **/
+    private static int spheres(OctreeFrustum frustum, OctreeNode node) {
+        var c = node.centre;
+        double r = node.getRadius();
+        if (frustum.test(c.x, c.y, c.z, r, r, r, OctreeFrustum.ALL) == OctreeFrustum.OUTSIDE) {
+            return 0;
+        }
+        int n = 1;
+        for (var child : node.children) {
+            if (child != null) {
+                n += spheres(frustum, child);
+            }
+        }
+        return n;
+    }
+
+    private static Set<OctreeNode> set() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    @Test
+    public void testAgainstBruteForce() {
+        var root = node(0, 0, 0, 1000, 0, null);
+        var rnd = new Random(47);
+        var frustum = new OctreeFrustum();
+        var pos = new Vector3D();
+        var dir = new Vector3D();
+        var up = new Vector3D();
+        int totalSphere = 0, totalBox = 0;
+        for (int cam = 0; cam < 50; cam++) {
+            // Cameras inside and outside the octree.
+            double range = cam % 2 == 0 ? 900 : 3000;
+            pos.set((rnd.nextDouble() * 2 - 1) * range, (rnd.nextDouble() * 2 - 1) * range, (rnd.nextDouble() * 2 - 1) * range);
+            if (cam % 2 == 0) {
+                dir.set(rnd.nextGaussian(), rnd.nextGaussian(), rnd.nextGaussian()).nor();
+            } else {
+                // Looking roughly at the octree.
+                dir.set(pos).scl(-1).nor().add(rnd.nextGaussian() * 0.3, rnd.nextGaussian() * 0.3, rnd.nextGaussian() * 0.3).nor();
+            }
+            up.set(rnd.nextGaussian(), rnd.nextGaussian(), rnd.nextGaussian());
+            double fov = 20 + rnd.nextDouble() * 60;
+            double aspect = 1 + rnd.nextDouble();
+            frustum.set(pos, dir, up, fov, aspect);
+
+            Set<OctreeNode> hierarchical = set(), brute = set();
+            cull(frustum, root, OctreeFrustum.ALL, hierarchical);
+            bruteForce(frustum, root, brute);
+            assertEquals(brute, hierarchical);
+
+            // Points in the view are in observed nodes at all depths.
+            for (int k = 0; k < 2000; k++) {
+                double x = (rnd.nextDouble() * 2 - 1) * 1000, y = (rnd.nextDouble() * 2 - 1) * 1000, z = (rnd.nextDouble() * 2 - 1) * 1000;
+                if (frustum.contains(x, y, z)) {
+                    var node = root;
+                    while (node != null) {
+                        assertTrue(hierarchical.contains(node));
+                        int i = (x < node.centre.x ? 0 : 1) | (y < node.centre.y ? 0 : 2) | (z < node.centre.z ? 0 : 4);
+                        node = node.children[i];
+                    }
+                }
+            }
+
+            int sphereCount = spheres(frustum, root);
+            assertTrue(hierarchical.size() <= sphereCount);
+            totalSphere += sphereCount;
+            totalBox += hierarchical.size();
+        }
+        assertTrue(totalBox < totalSphere);
+    }
+
+    @Test
+    public void testMaskInheritance() {
+        var root = node(0, 0, 0, 1000, 0, null);
+        var frustum = new OctreeFrustum();
+        // Far away, looking at the whole octree: the root is inside, and no child is tested.
+        frustum.set(new Vector3D(0, 0, -1e5), new Vector3D(0, 0, 1), new Vector3D(0, 1, 0), 45, 1.5);
+        assertEquals(OctreeFrustum.INSIDE, frustum.test(root.min, root.max, OctreeFrustum.ALL));
+        Set<OctreeNode> out = set();
+        assertEquals(OctreeFrustum.N_PLANES, cull(frustum, root, OctreeFrustum.ALL, out));
+        assertEquals(1 + 8 + 64 + 512 + 4096, out.size());
+
+        // Looking away.
+        frustum.set(new Vector3D(0, 0, -1e5), new Vector3D(0, 0, -1), new Vector3D(0, 1, 0), 45, 1.5);
+        assertEquals(OctreeFrustum.OUTSIDE, frustum.test(root.min, root.max, OctreeFrustum.ALL));
+
+        // Inside the octree, the root intersects the planes.
+        frustum.set(new Vector3D(10, 20, 30), new Vector3D(0, 0, 1), new Vector3D(0, 1, 0), 45, 1.5);
+        int mask = frustum.test(root.min, root.max, OctreeFrustum.ALL);
+        assertNotEquals(OctreeFrustum.OUTSIDE, mask);
+        assertNotEquals(OctreeFrustum.INSIDE, mask);
+        // Masks never grow.
+        for (var child : root.children) {
+            int m = frustum.test(child.min, child.max, mask);
+            assertTrue(m == OctreeFrustum.OUTSIDE || (m & ~mask) == 0);
+        }
+    }
+}
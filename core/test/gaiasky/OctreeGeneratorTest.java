@@ -0,0 +1,206 @@
+package gaiasky;
+
+import gaiasky.data.OctreeLoader;
+import gaiasky.data.group.BinaryDataProvider;
+import gaiasky.data.group.MetadataBinaryIO;
+import gaiasky.data.octreegen.OctreeGenerator;
+import gaiasky.scene.api.IParticleRecord;
+import gaiasky.scene.record.ParticleStar;
+import gaiasky.util.NameIndex;
+import gaiasky.util.tree.OctreeNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Generates an octree from a synthetic catalog with {@link OctreeGenerator}, and reads it back.
+ */
+public class OctreeGeneratorTest {
+    private static final int N = 6000;
+    private static final int MAX_PART = 50;
+
+    private Path tmp;
+    private final Map<Long, Float> magnitudes = new HashMap<>();
+
+    @Before
+    public void setUp() throws IOException {
+        tmp = Files.createTempDirectory("gs-octreegen-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> walk = Files.walk(tmp)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    /** Writes a catalog clustered around the origin, with a sparse halo, split in several files. **/
+    private List<Path> createCatalog(int files) throws IOException {
+        Random rnd = new Random(7L);
+        List<Path> paths = new ArrayList<>();
+        long id = 1;
+        for (int f = 0; f < files; f++) {
+            List<IParticleRecord> records = new ArrayList<>();
+            for (int i = 0; i < N / files; i++) {
+                double scale = rnd.nextDouble() < 0.9 ? 10.0 : 1000.0;
+                double x = rnd.nextGaussian() * scale, y = rnd.nextGaussian() * scale, z = rnd.nextGaussian() * scale;
+                // Magnitudes are stored in half precision.
+                float mag = Float.float16ToFloat(Float.floatToFloat16((float) (rnd.nextDouble() * 20.0 - 1.0)));
+                magnitudes.put(id, mag);
+                records.add(new ParticleStar(id, new String[] { "Star " + id }, x, y, z, 0, 0, 0, 0, 0, 0, mag, mag, 0.5f, 1e5f, -1, 5000f, null));
+                id++;
+            }
+            Path path = tmp.resolve("input_" + f + ".bin");
+            new BinaryDataProvider().writeData(records, Files.newOutputStream(path), 3);
+            paths.add(path);
+        }
+        return paths;
+    }
+
+    private List<IParticleRecord> readPage(Path out, OctreeNode node) throws IOException {
+        Path page = out.resolve("particles").resolve(String.format("particles_%06d.bin", node.pageId));
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(page))) {
+            return new BinaryDataProvider().readData(in, 1.0);
+        }
+    }
+
+    /**
+     * Checks the node contents and returns the faintest magnitude in the subtree.
+     */
+    private float check(Path out, OctreeNode node, Set<Long> seen) throws IOException {
+        List<IParticleRecord> own = readPage(out, node);
+        assertEquals(node.numObjects, own.size());
+        assertTrue(own.size() <= MAX_PART || node.depth == OctreeGenerator.MAX_DEPTH);
+        float brightestOwn = Float.POSITIVE_INFINITY, faintestOwn = Float.NEGATIVE_INFINITY;
+        for (IParticleRecord r : own) {
+            assertTrue("Duplicated star " + r.id(), seen.add(r.id()));
+            assertEquals(magnitudes.get(r.id()), r.appMag(), 0f);
+            // Single precision bounds.
+            double eps = node.size.x * 1e-5;
+            assertTrue(r.x() >= node.min.x - eps && r.x() <= node.max.x + eps);
+            assertTrue(r.y() >= node.min.y - eps && r.y() <= node.max.y + eps);
+            assertTrue(r.z() >= node.min.z - eps && r.z() <= node.max.z + eps);
+            brightestOwn = Math.min(brightestOwn, r.appMag());
+            faintestOwn = Math.max(faintestOwn, r.appMag());
+        }
+        int rec = own.size();
+        float faintest = faintestOwn;
+        for (OctreeNode child : node.children) {
+            if (child != null) {
+                assertEquals(node.depth + 1, child.depth);
+                // Stars in descendants are never brighter than stars in this node.
+                float brightestBelow = brightest(out, child);
+                assertTrue(faintestOwn <= brightestBelow);
+                faintest = Math.max(faintest, check(out, child, seen));
+                rec += child.numObjectsRec;
+            }
+        }
+        assertEquals(node.numObjectsRec, rec);
+        return faintest;
+    }
+
+    private float brightest(Path out, OctreeNode node) throws IOException {
+        float b = Float.POSITIVE_INFINITY;
+        for (IParticleRecord r : readPage(out, node)) {
+            b = Math.min(b, r.appMag());
+        }
+        for (OctreeNode child : node.children) {
+            if (child != null) {
+                b = Math.min(b, brightest(out, child));
+            }
+        }
+        return b;
+    }
+
+    private OctreeNode generate(int files, int maxInMemory, Path out) throws IOException {
+        OctreeGenerator generator = new OctreeGenerator(createCatalog(files), out);
+        generator.setMaxPart(MAX_PART);
+        generator.setMaxInMemory(maxInMemory);
+        generator.setThreads(4);
+        generator.setArchive(true);
+        var result = generator.run();
+        assertEquals(N, result.rows());
+        assertTrue(result.rowsPerSecond() > 0);
+        assertTrue(Files.size(result.archive()) > 0);
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(out.resolve("metadata.bin")))) {
+            OctreeNode root = new MetadataBinaryIO().readMetadata(in);
+            assertNotNull(root);
+            assertEquals(result.nodes(), root.numNodesRec());
+            return root;
+        }
+    }
+
+    @Test
+    public void testOutOfCore() throws IOException {
+        // Small memory budget: several runs, nodes above the partitions, and partitions built in parallel.
+        Path out = tmp.resolve("octree");
+        OctreeNode root = generate(3, 400, out);
+        assertEquals(N, root.numObjectsRec);
+        assertEquals(MAX_PART, root.numObjects);
+
+        Set<Long> seen = new HashSet<>();
+        check(out, root, seen);
+        assertEquals(N, seen.size());
+
+        // The name index points to the octant of every star.
+        NameIndex names;
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(out.resolve(OctreeLoader.NAMES_FILE))))) {
+            names = NameIndex.read(in);
+        }
+        assertEquals(N, names.size());
+        List<OctreeNode> nodes = new ArrayList<>();
+        nodes.add(root);
+        root.addChildrenToList((ArrayList<OctreeNode>) nodes);
+        for (OctreeNode node : nodes) {
+            for (IParticleRecord r : readPage(out, node)) {
+                assertEquals(node.pageId, names.get("star " + r.id()));
+            }
+        }
+
+        // The root holds the brightest stars overall.
+        List<Float> sorted = new ArrayList<>(magnitudes.values());
+        Collections.sort(sorted);
+        float faintestRoot = Float.NEGATIVE_INFINITY;
+        for (IParticleRecord r : readPage(out, root)) {
+            faintestRoot = Math.max(faintestRoot, r.appMag());
+        }
+        assertEquals(sorted.get(MAX_PART - 1), faintestRoot, 0f);
+    }
+
+    @Test
+    public void testSameAsInMemory() throws IOException {
+        // The layout does not depend on the memory budget.
+        OctreeNode a = generate(1, 1_000_000, tmp.resolve("a"));
+        magnitudes.clear();
+        OctreeNode b = generate(4, 300, tmp.resolve("b"));
+        assertEquals(a.numNodesRec(), b.numNodesRec());
+        assertEquals(a.getMaxDepth(), b.getMaxDepth());
+        assertEquals(ids(tmp.resolve("a"), a), ids(tmp.resolve("b"), b));
+    }
+
+    /** Star ids per octant position and depth. **/
+    private Map<String, Set<Long>> ids(Path out, OctreeNode root) throws IOException {
+        Map<String, Set<Long>> ids = new HashMap<>();
+        List<OctreeNode> nodes = new ArrayList<>();
+        nodes.add(root);
+        root.addChildrenToList((ArrayList<OctreeNode>) nodes);
+        for (OctreeNode node : nodes) {
+            Set<Long> set = new HashSet<>();
+            readPage(out, node).forEach(r -> set.add(r.id()));
+            ids.put(node.depth + ":" + node.centre, set);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,187 @@
+package gaiasky;
+
+import gaiasky.data.orbit.FileDataLoader;
+import gaiasky.data.orbit.OrbitDataCache;
+import gaiasky.data.util.PointCloudData;
+import gaiasky.util.Constants;
+import gaiasky.util.parse.Parser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Loads synthetic orbit files with the byte tokenizer of {@link FileDataLoader}, and checks that the points are
+ * bit-exact with those of the string parser, before and after a round trip through {@link OrbitDataCache}.
+ */
+public class OrbitDataCacheTest {
+    private Path tmp;
+
+    @Before
+    public void before() throws Exception {
+        tmp = Files.createTempDirectory("gs-orbit-cache");
+    }
+
+    @After
+    public void after() throws Exception {
+        try (Stream<Path> s = Files.walk(tmp)) {
+            s.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    /** The string parser, as the loader worked before the byte tokenizer. **/
+    private static PointCloudData reference(String text) {
+        FileDataLoader loader = new FileDataLoader();
+        PointCloudData data = new PointCloudData();
+        long last = 0L;
+        for (String line : text.split("\r\n|\r|\n", -1)) {
+            line = line.trim();
+            if (!line.isBlank() && !line.startsWith("#")) {
+                String[] tokens = line.split("\\s+");
+                if (tokens.length >= 4) {
+                    long t = loader.parseTime(tokens[0].trim());
+                    if (t != last) {
+                        data.addPoint(Parser.parseDouble(tokens[1]) * Constants.KM_TO_U,
+                                      Parser.parseDouble(tokens[2]) * Constants.KM_TO_U,
+                                      Parser.parseDouble(tokens[3]) * Constants.KM_TO_U,
+                                      Instant.ofEpochMilli(t));
+                        last = t;
+                    }
+                }
+            }
+        }
+        return data;
+    }
+
+    private static String number(Random rnd) {
+        double v = (rnd.nextDouble() * 2 - 1) * Math.pow(10, rnd.nextInt(12) - 3);
+        return switch (rnd.nextInt(5)) {
+            case 0 -> Double.toString(v);
+            case 1 -> String.format(Locale.ROOT, "%.6e", v);
+            case 2 -> String.format(Locale.ROOT, "%.3E", v);
+            case 3 -> Long.toString((long) v);
+            default -> String.format(Locale.ROOT, "%+.12f", v);
+        };
+    }
+
+    private static String time(Random rnd) {
+        int year = 1 + rnd.nextInt(9999);
+        String date = String.format(Locale.ROOT, "%04d-%02d-%02d_%02d:%02d:%02d", year, 1 + rnd.nextInt(12), 1 + rnd.nextInt(28),
+                                    rnd.nextInt(24), rnd.nextInt(60), rnd.nextInt(60));
+        return switch (rnd.nextInt(8)) {
+            case 0 -> date + "." + rnd.nextInt(10);
+            case 1 -> date + "." + String.format(Locale.ROOT, "%02d", rnd.nextInt(100));
+            case 2 -> date + "." + String.format(Locale.ROOT, "%03d", rnd.nextInt(1000));
+            // Julian dates.
+            case 3 -> Double.toString(2451545.0 + (rnd.nextDouble() * 2 - 1) * 1e5);
+            // Days out of range, adjusted by the formatter.
+            case 4 -> String.format(Locale.ROOT, "%04d-%02d-%02d_00:00:00", 1970 + rnd.nextInt(100), 2 + 2 * rnd.nextInt(5), 29 + rnd.nextInt(3));
+            // Years with more digits.
+            case 5 -> "+" + (10000 + rnd.nextInt(1000)) + date.substring(4);
+            default -> date;
+        };
+    }
+
+    private static String orbit(long seed, int n) {
+        Random rnd = new Random(seed);
+        String[] breaks = {"\n", "\r\n", "\r"};
+        String[] spaces = {" ", "\t", "  ", " \t "};
+        StringBuilder sb = new StringBuilder("# Synthetic orbit\n# time x y z\n");
+        String previous = "2000-01-01_00:00:00";
+        for (int i = 0; i < n; i++) {
+            String sep = spaces[rnd.nextInt(spaces.length)];
+            // Repeated times are skipped.
+            String t = rnd.nextInt(20) == 0 ? previous : time(rnd);
+            previous = t;
+            switch (rnd.nextInt(25)) {
+                case 0 -> sb.append("   ");
+                case 1 -> sb.append("# comment ").append(i);
+                case 2 -> sb.append(t).append(sep).append(number(rnd));
+                case 3 -> sb.append("  ").append(t).append(sep).append(number(rnd)).append(sep).append(number(rnd)).append(sep)
+                        .append(number(rnd)).append(sep).append("extraé µ");
+                default -> sb.append(t).append(sep).append(number(rnd)).append(sep).append(number(rnd)).append(sep).append(number(rnd))
+                        .append(rnd.nextBoolean() ? " " : "");
+            }
+            sb.append(breaks[rnd.nextInt(breaks.length)]);
+        }
+        return sb.toString();
+    }
+
+    private static void assertBitExact(PointCloudData expected, PointCloudData actual) {
+        assertEquals(expected.samples.size(), actual.samples.size());
+        for (int i = 0; i < expected.samples.size(); i++) {
+            var e = expected.samples.get(i);
+            var a = actual.samples.get(i);
+            assertEquals("x at " + i, Double.doubleToRawLongBits(e.x()), Double.doubleToRawLongBits(a.x()));
+            assertEquals("y at " + i, Double.doubleToRawLongBits(e.y()), Double.doubleToRawLongBits(a.y()));
+            assertEquals("z at " + i, Double.doubleToRawLongBits(e.z()), Double.doubleToRawLongBits(a.z()));
+            assertEquals("seconds at " + i, e.seconds(), a.seconds());
+            assertEquals("nanos at " + i, e.nanos(), a.nanos());
+        }
+    }
+
+    private static PointCloudData load(String text) throws Exception {
+        try (InputStream is = new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))) {
+            return new FileDataLoader().load(is);
+        }
+    }
+
+    @Test
+    public void testTokenizer() throws Exception {
+        for (long seed = 0; seed < 10; seed++) {
+            String text = orbit(seed, 5000);
+            PointCloudData expected = reference(text);
+            assertTrue(expected.samples.size() > 4000);
+            assertBitExact(expected, load(text));
+        }
+        // Last line without a break, and a line longer than the read buffer.
+        String text = "2020-02-29_12:00:00 1 2 3\n" + "#" + "x".repeat(200_000) + "\n2021-01-01_00:00:00.5 4e3 -5.5 6";
+        PointCloudData data = load(text);
+        assertEquals(2, data.samples.size());
+        assertBitExact(reference(text), data);
+    }
+
+    @Test
+    public void testCache() throws Exception {
+        Path source = tmp.resolve("orbit.dat");
+        Files.writeString(source, orbit(42, 20000));
+        PointCloudData parsed = load(Files.readString(source));
+
+        Path cacheDir = tmp.resolve("cache");
+        OrbitDataCache cache = OrbitDataCache.open(cacheDir, source);
+        assertNull(cache.read());
+        cache.write(parsed);
+        assertTrue(Files.isRegularFile(cache.getFile()));
+        assertBitExact(parsed, OrbitDataCache.open(cacheDir, source).read());
+
+        // A different source misses.
+        Path other = tmp.resolve("other.dat");
+        Files.copy(source, other);
+        assertNull(OrbitDataCache.open(cacheDir, other).read());
+
+        // A modified source misses.
+        Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 10_000));
+        assertNull(OrbitDataCache.open(cacheDir, source).read());
+
+        // A truncated entry misses.
+        cache = OrbitDataCache.open(cacheDir, source);
+        cache.write(parsed);
+        byte[] bytes = Files.readAllBytes(cache.getFile());
+        Files.write(cache.getFile(), Arrays.copyOf(bytes, bytes.length - 4));
+        assertNull(cache.read());
+    }
+}
@@ -0,0 +1,223 @@
+package gaiasky;
+
+import com.badlogic.ashley.core.Component;
+import com.badlogic.ashley.core.ComponentMapper;
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.Family;
+import gaiasky.render.RenderGroup;
+import gaiasky.render.api.IRenderable;
+import gaiasky.render.api.ISceneRenderer;
+import gaiasky.scene.camera.ICamera;
+import gaiasky.scene.component.Base;
+import gaiasky.scene.component.Body;
+import gaiasky.scene.component.GraphNode;
+import gaiasky.scene.component.Render;
+import gaiasky.scene.system.render.extract.AbstractExtractSystem;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Extracts a synthetic scene of 100k entities serially and in parallel, and checks that the render lists and the
+ * sequence of closest candidates submitted to the camera are identical. Also prints the extraction times of both
+ * modes, as a headless benchmark.
+ */
+public class ParallelExtractTest {
+    private static final int ENTITIES = 100_000;
+    private static final int WARMUP = 5;
+    private static final int FRAMES = 20;
+
+    public static class Value implements Component {
+        double v;
+    }
+
+    private static final ComponentMapper<Value> value = ComponentMapper.getFor(Value.class);
+    private static final ComponentMapper<Render> render = ComponentMapper.getFor(Render.class);
+
+    /** Adds entities to groups depending on their value, and submits some of them as closest candidates. **/
+    private static class SyntheticExtractor extends AbstractExtractSystem {
+        final List<Double> particles = new ArrayList<>();
+
+        SyntheticExtractor(ICamera camera) {
+            super(Family.all(Value.class, Render.class).get(), 0, camera);
+        }
+
+        @Override
+        protected boolean isParallelizable() {
+            return true;
+        }
+
+        /** Particle candidates are submitted with a focus view, which needs the full application. **/
+        @Override
+        protected void submitClosestParticle(Entity entity) {
+            camera.checkClosestParticle(null);
+            particles.add(value.get(entity).v);
+        }
+
+        @Override
+        protected void processEntity(Entity entity, float deltaTime) {
+            var v = value.get(entity).v;
+            var r = render.get(entity);
+            // Some busy work, like the solid angle tests of the real extractors.
+            double s = Math.abs(Math.sin(v * 12.9898) * 43758.5453) % 1.0;
+            if (s < 0.3) {
+                checkClosestParticle(entity);
+            }
+            if (s < 0.6) {
+                addToRender(r, RenderGroup.POINT_STAR);
+            } else if (s < 0.9) {
+                addToRender(r, RenderGroup.BILLBOARD_SSO);
+                if (s < 0.61) {
+                    addToRender(r, RenderGroup.MODEL_PBR);
+                    checkClosestBody(entity);
+                }
+            }
+            if (s > 0.5) {
+                addToRender(r, RenderGroup.FONT_LABEL);
+            }
+            // Looks up the render lists, which must include the entities buffered in this range.
+            if (s > 0.6 && s < 0.62 && isInRender(r, RenderGroup.MODEL_PBR, RenderGroup.MODEL_PBR_TESS)) {
+                addToRender(r, RenderGroup.MODEL_ATM);
+            }
+        }
+    }
+
+    private static class Output {
+        final List<List<IRenderable>> full = new ArrayList<>(), half = new ArrayList<>();
+        /** Values of the body candidates, or -1 for particles. **/
+        final List<Double> candidates = new ArrayList<>();
+
+        Output() {
+            for (int i = 0; i < RenderGroup.values().length; i++) {
+                full.add(new ArrayList<>());
+                half.add(new ArrayList<>());
+            }
+        }
+
+        void clear() {
+            full.forEach(List::clear);
+            half.forEach(List::clear);
+            candidates.clear();
+        }
+    }
+
+    private static ICamera camera(Output out) {
+        return (ICamera) Proxy.newProxyInstance(ICamera.class.getClassLoader(), new Class[] { ICamera.class }, (proxy, method, args) -> {
+            switch (method.getName()) {
+            case "checkClosestBody" -> out.candidates.add(value.get((Entity) args[0]).v + 1.0);
+            case "checkClosestParticle" -> out.candidates.add(-1.0);
+            case "hashCode" -> {
+                return System.identityHashCode(proxy);
+            }
+            default -> {
+            }
+            }
+            return null;
+        });
+    }
+
+    private static ISceneRenderer renderer(Output out) {
+        return (ISceneRenderer) Proxy.newProxyInstance(ISceneRenderer.class.getClassLoader(), new Class[] { ISceneRenderer.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getExtractLists")) {
+                        return (Boolean) args[0] ? out.full : out.half;
+                    }
+                    return method.getReturnType() == boolean.class ? false : null;
+                });
+    }
+
+    private static Engine scene(SyntheticExtractor extractor) {
+        var engine = new Engine();
+        for (int i = 0; i < ENTITIES; i++) {
+            var e = engine.createEntity();
+            var v = new Value();
+            v.v = i * 0.37;
+            e.add(v);
+            var r = new Render();
+            r.entity = e;
+            r.halfResolutionBuffer = i % 11 == 0;
+            e.add(r);
+            e.add(new Base());
+            e.add(new Body());
+            e.add(new GraphNode());
+            engine.addEntity(e);
+        }
+        engine.addSystem(extractor);
+        return engine;
+    }
+
+    @Test
+    public void testParallelMatchesSerial() {
+        compare(false);
+    }
+
+    @Test
+    public void testExtractionTiming() {
+        Assume.assumeTrue("Timing runs need -Pperf", Boolean.getBoolean("gaiasky.perf"));
+        compare(true);
+    }
+
+    /**
+     * Extracts the scene serially and in parallel for a number of frames, and checks that the outputs are the same.
+     *
+     * @param print Whether to print the extraction times.
+     */
+    private void compare(boolean print) {
+        var serialOut = new Output();
+        var serial = new SyntheticExtractor(camera(serialOut));
+        serial.setRenderer(renderer(serialOut));
+        var serialEngine = scene(serial);
+
+        var parallelOut = new Output();
+        var parallel = new SyntheticExtractor(camera(parallelOut));
+        parallel.setRenderer(renderer(parallelOut));
+        parallel.setParallelism(4);
+        var parallelEngine = scene(parallel);
+
+        long serialTime = 0, parallelTime = 0;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            serialOut.clear();
+            parallelOut.clear();
+            serial.particles.clear();
+            parallel.particles.clear();
+
+            long t0 = System.nanoTime();
+            serialEngine.update(0.016f);
+            long t1 = System.nanoTime();
+            parallelEngine.update(0.016f);
+            long t2 = System.nanoTime();
+            if (frame >= WARMUP) {
+                serialTime += t1 - t0;
+                parallelTime += t2 - t1;
+            }
+
+            assertFalse(serialOut.candidates.isEmpty());
+            assertFalse(serialOut.full.get(RenderGroup.MODEL_ATM.ordinal()).isEmpty());
+            assertEquals(serialOut.candidates, parallelOut.candidates);
+            assertEquals(serial.particles, parallel.particles);
+            for (int g = 0; g < RenderGroup.values().length; g++) {
+                assertEquals(ids(serialOut.full.get(g)), ids(parallelOut.full.get(g)));
+                assertEquals(ids(serialOut.half.get(g)), ids(parallelOut.half.get(g)));
+            }
+        }
+        if (print) {
+            System.out.printf("Extraction of %d entities: serial %.2f ms/frame, parallel %.2f ms/frame (%d cpus)%n", ENTITIES,
+                    serialTime * 1e-6 / (FRAMES - WARMUP), parallelTime * 1e-6 / (FRAMES - WARMUP), Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    /** Renderables of both scenes are different objects, so we compare their values. **/
+    private static List<Double> ids(List<IRenderable> list) {
+        List<Double> ids = new ArrayList<>(list.size());
+        for (var r : list) {
+            ids.add(value.get(((Render) r).entity).v);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,187 @@
+package gaiasky;
+
+import gaiasky.util.concurrent.PriorityTaskExecutor;
+import gaiasky.util.concurrent.PriorityTaskExecutor.Priority;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the ordering by priority, the starvation guard, the deduplication and supersession of queued tasks, the
+ * statistics and the fork/join support of {@link PriorityTaskExecutor}, with a single thread blocked while the tasks
+ * are queued.
+ */
+public class PriorityTaskExecutorTest {
+
+    /** Occupies the only thread of the executor until released. **/
+    private static CountDownLatch block(PriorityTaskExecutor executor) throws InterruptedException {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+        }, Priority.NORMAL);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private static void drain(PriorityTaskExecutor executor) throws Exception {
+        // Tasks run one at a time, so the last one queued with the lowest priority runs last.
+        var done = new CountDownLatch(1);
+        Thread.sleep(10);
+        executor.execute(done::countDown, Priority.BULK);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testPriorityOrder() throws Exception {
+        var executor = new PriorityTaskExecutor(1, "test-", 60_000, null);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        var release = block(executor);
+
+        executor.execute(() -> order.add("bulk0"), Priority.BULK);
+        executor.execute(() -> order.add("bulk1"), Priority.BULK);
+        executor.execute(() -> order.add("normal"), Priority.NORMAL);
+        executor.execute(() -> order.add("interactive"), Priority.INTERACTIVE);
+        assertEquals(2, executor.getStats(Priority.BULK).getQueueDepth());
+        assertEquals(1, executor.getStats(Priority.INTERACTIVE).getQueueDepth());
+
+        release.countDown();
+        drain(executor);
+        assertEquals(List.of("interactive", "normal", "bulk0", "bulk1"), order);
+        assertEquals(0, executor.getStats(Priority.BULK).getQueueDepth());
+        assertEquals(3, executor.getStats(Priority.BULK).getCompleted());
+        assertTrue(executor.getStats(Priority.BULK).getMeanWaitMs() > 0);
+        assertTrue(executor.shutdown(1000));
+        assertFalse(executor.execute(() -> order.add("late"), Priority.INTERACTIVE));
+    }
+
+    @Test
+    public void testStarvation() throws Exception {
+        var executor = new PriorityTaskExecutor(1, "test-", 50, null);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        var release = block(executor);
+
+        executor.execute(() -> order.add("bulk"), Priority.BULK);
+        Thread.sleep(100);
+        executor.execute(() -> order.add("interactive"), Priority.INTERACTIVE);
+
+        // The bulk task has waited for too long.
+        release.countDown();
+        drain(executor);
+        assertEquals(List.of("bulk", "interactive"), order);
+        executor.shutdown(1000);
+    }
+
+    @Test
+    public void testDeduplicationAndSupersession() throws Exception {
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        var executor = new PriorityTaskExecutor(1, "test-", 60_000, errors::add);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        var release = block(executor);
+
+        // The same task is only queued once.
+        Runnable task = () -> order.add("task");
+        assertTrue(executor.execute(task, Priority.NORMAL));
+        assertFalse(executor.execute(task, Priority.NORMAL));
+        assertNull(executor.submit(task, Priority.INTERACTIVE));
+        assertTrue(executor.inQueue(task));
+
+        // A newer task with the same key supersedes the queued one.
+        Object key = new Object();
+        Future<?> first = executor.supersede(key, () -> order.add("first"), Priority.BULK);
+        Future<?> second = executor.supersede(key, () -> order.add("second"), Priority.BULK);
+        assertTrue(first.isCancelled());
+        assertTrue(executor.inQueue(key));
+        assertEquals(1, executor.getStats(Priority.BULK).getCancelled());
+
+        // Explicit cancellation.
+        Runnable cancelled = () -> order.add("cancelled");
+        executor.execute(cancelled, Priority.INTERACTIVE);
+        assertTrue(executor.cancel(cancelled));
+        assertFalse(executor.cancel(cancelled));
+
+        // Errors go to the handler.
+        executor.execute(() -> {
+            throw new IllegalStateException("test");
+        }, Priority.NORMAL);
+
+        release.countDown();
+        drain(executor);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("task", "second"), order);
+        assertFalse(executor.inQueue(task));
+        assertFalse(executor.inQueue(key));
+        assertEquals(1, errors.size());
+        assertTrue(errors.getFirst() instanceof IllegalStateException);
+
+        // Once run, it can be queued again.
+        assertTrue(executor.execute(task, Priority.NORMAL));
+        drain(executor);
+        assertEquals(List.of("task", "second", "task"), order);
+        executor.shutdown(1000);
+    }
+
+    /** Sums a range of an array, splitting it in halves, and checks that it runs in the compute pool. **/
+    private static final class Sum extends RecursiveTask<Long> {
+        private final long[] values;
+        private final int from, to;
+
+        Sum(long[] values, int from, int to) {
+            this.values = values;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            assertTrue(Thread.currentThread().getName().startsWith("test-compute-"));
+            if (to - from <= 1000) {
+                long sum = 0;
+                for (int i = from; i < to; i++) {
+                    sum += values[i];
+                }
+                return sum;
+            }
+            int mid = (from + to) >>> 1;
+            var left = new Sum(values, from, mid);
+            left.fork();
+            return new Sum(values, mid, to).compute() + left.join();
+        }
+    }
+
+    @Test
+    public void testForkJoin() throws Exception {
+        var executor = new PriorityTaskExecutor(4, "test-", null);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i;
+        }
+        assertEquals(4, executor.getComputePool().getParallelism());
+        assertEquals(Long.valueOf((long) values.length * (values.length - 1) / 2), executor.invoke(new Sum(values, 0, values.length)));
+
+        // Also from a queued task, while the only other task thread is blocked.
+        var blocker = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException ignored) {
+            }
+        }, Priority.BULK);
+        Future<?> f = executor.submit(() -> assertEquals(Long.valueOf(4950), executor.invoke(new Sum(values, 0, 100))), Priority.NORMAL);
+        f.get(5, TimeUnit.SECONDS);
+        blocker.countDown();
+        executor.shutdown(1000);
+    }
+}
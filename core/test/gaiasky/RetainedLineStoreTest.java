@@ -0,0 +1,104 @@
+package gaiasky;
+
+import gaiasky.render.system.RetainedLineStore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the dirty tracking and the eviction of {@link RetainedLineStore}: the geometry is only rebuilt when the data,
+ * the number of points or the state change, or when it is explicitly marked, and unused entries are disposed.
+ */
+public class RetainedLineStoreTest {
+
+    /** Stands in for a mesh, and counts the times it is filled. **/
+    private static final class Handle {
+        int builds;
+        boolean disposed;
+    }
+
+    /** Acquires the entry and rebuilds it if dirty, like a renderer does. Returns whether it was rebuilt. **/
+    private static boolean render(RetainedLineStore<Object, Handle> store, Object key, Object data, int count, long state) {
+        var entry = store.acquire(key, data, count, state);
+        assertEquals(count, entry.getCount());
+        if (entry.isDirty()) {
+            if (entry.handle == null) {
+                entry.handle = new Handle();
+            }
+            entry.handle.builds++;
+            store.uploaded(entry);
+            return true;
+        }
+        return false;
+    }
+
+    @Test
+    public void testDirtyTracking() {
+        var store = new RetainedLineStore<Object, Handle>(h -> h.disposed = true);
+        Object key = new Object();
+        Object data = new Object();
+
+        // First use builds, then it stays resident over frames.
+        assertTrue(render(store, key, data, 100, 7));
+        for (int i = 0; i < 50; i++) {
+            store.endFrame();
+            assertFalse(render(store, key, data, 100, 7));
+        }
+        assertEquals(1, store.getUploads());
+
+        // New data object, same size.
+        Object other = new Object();
+        assertTrue(render(store, key, other, 100, 7));
+        assertFalse(render(store, key, other, 100, 7));
+        // Points added to the same data object.
+        assertTrue(render(store, key, other, 101, 7));
+        // Color change.
+        assertTrue(render(store, key, other, 101, 8));
+        assertFalse(render(store, key, other, 101, 8));
+        // Explicit invalidation, e.g. points changed in place.
+        store.markDirty(key);
+        assertTrue(render(store, key, other, 101, 8));
+        assertFalse(render(store, key, other, 101, 8));
+        // Unknown keys are ignored.
+        store.markDirty(new Object());
+
+        assertEquals(5, store.getUploads());
+        assertEquals(1, store.size());
+
+        // Keys are compared by identity, and each has its own geometry.
+        Object key2 = new Object();
+        assertTrue(render(store, key2, other, 101, 8));
+        assertEquals(2, store.size());
+        assertFalse(render(store, key, other, 101, 8));
+    }
+
+    @Test
+    public void testEviction() {
+        List<Handle> disposed = new ArrayList<>();
+        var store = new RetainedLineStore<Object, Handle>(disposed::add, 10);
+        Object used = new Object(), unused = new Object(), data = new Object();
+        render(store, used, data, 10, 0);
+        render(store, unused, data, 10, 0);
+        Handle unusedHandle = store.acquire(unused, data, 10, 0).handle;
+
+        // Only one of them keeps being rendered.
+        for (int frame = 0; frame < 10; frame++) {
+            assertEquals(0, store.endFrame());
+            assertFalse(render(store, used, data, 10, 0));
+        }
+        assertEquals(1, store.endFrame());
+        assertEquals(List.of(unusedHandle), disposed);
+        assertFalse(store.contains(unused));
+        assertTrue(store.contains(used));
+
+        // Comes back, and is built again.
+        assertTrue(render(store, unused, data, 10, 0));
+
+        store.clear();
+        assertEquals(0, store.size());
+        assertEquals(3, disposed.size());
+    }
+}
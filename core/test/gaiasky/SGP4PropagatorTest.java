@@ -0,0 +1,160 @@
+package gaiasky;
+
+import gaiasky.util.concurrent.PriorityTaskExecutor;
+import gaiasky.util.coord.SGP4Propagator;
+import gaiasky.util.coord.TLECatalog;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link TLECatalog} and {@link SGP4Propagator} against the published SGP4 verification vectors of Vallado et
+ * al. (2006), computed with WGS-72, and checks that the parallel batch propagation agrees with the propagation of
+ * single objects.
+ */
+public class SGP4PropagatorTest {
+    private static final List<String> TLE = List.of(
+            "0 VANGUARD 1",
+            "1 00005U 58002B   00179.78495062  .00000023  00000-0  28098-4 0  4753",
+            "2 00005  34.2682 348.7242 1859667 331.7664  19.3264 10.82419157413667",
+            "1 08195U 75081A   06176.33215444  .00000099  00000-0  11873-3 0   813",
+            "2 08195  64.1586 279.0717 6877146 264.7651  20.2257  2.00491383225656",
+            "garbage",
+            "1 A0005U 58002B   00179.78495062  .00000023  00000-0  28098-4 0  4753",
+            "2 A0005  34.2682 348.7242 1859667 331.7664  19.3264 10.82419157413667",
+            "1 00011U 59001A   xxxxx.xxxxxxxx  .00000000  00000-0  00000-0 0  0000",
+            "2 00011  32.8601 107.1567 1458290 292.7245  51.2426 11.86011478 00000");
+
+    /** Minutes since epoch, position (km) and velocity (km/s) of 00005. **/
+    private static final double[][] VECTORS_00005 = {
+            {0.0, 7022.46529266, -1400.08296755, 0.03995155, 1.893841015, 6.405893759, 4.534807250},
+            {360.0, -7154.03120202, -3783.17682504, -3536.19412294, 4.741887409, -4.151817765, -2.093935425},
+            {720.0, -7134.59340119, 6531.68641334, 3260.27186483, -4.113793027, -2.911922039, -2.557327851},
+            {1080.0, 5568.53901181, 4492.06992591, 3863.87641983, -4.209106476, 5.159719888, 2.744852980},
+            {1440.0, -938.55923943, -6268.18748831, -4294.02924751, 7.536105209, -0.427127707, 0.989878080},};
+
+    /** Position and velocity of 08195 at epoch. **/
+    private static final double[] VECTOR_08195 = {0.0, 2349.89483350, -14785.93811562, 0.02119378, 2.721488096, -3.256811655, 4.498416672};
+
+    private static void assertVector(double[] expected, double[] r, double[] v) {
+        for (int j = 0; j < 3; j++) {
+            assertEquals("r" + j + " at " + expected[0], expected[1 + j], r[j], 1.0e-5);
+            assertEquals("v" + j + " at " + expected[0], expected[4 + j], v[j], 1.0e-8);
+        }
+    }
+
+    @Test
+    public void testParse() {
+        TLECatalog catalog = TLECatalog.parse(TLE);
+        assertEquals(3, catalog.size);
+        assertEquals("VANGUARD 1", catalog.names[0]);
+        assertEquals("8195", catalog.names[1]);
+        assertEquals(5, catalog.catalogNumbers[0]);
+        assertEquals(100005, catalog.catalogNumbers[2]);
+        assertEquals(2, catalog.indexOf(100005));
+        assertEquals(-1, catalog.indexOf(11));
+        assertEquals(0.28098e-4, catalog.bstar[0], 1.0e-15);
+        assertEquals(0.1859667, catalog.eccentricity[0], 0.0);
+        // 2000 June 27, day 179, at 18:50:19.733568 UTC.
+        assertEquals(2451723.28495062, catalog.epochJD[0], 1.0e-8);
+        assertEquals(-0.12e-4, TLECatalog.parse(List.of("1 00001U 00000A   00001.00000000  .00000000  00000-0 -12000-4 0  0000",
+                                                       "2 00001  10.0000  10.0000 0000001  10.0000  10.0000  1.00000000 00000")).bstar[0], 1.0e-15);
+    }
+
+    @Test
+    public void testNearEarth() {
+        SGP4Propagator sgp4 = new SGP4Propagator(TLECatalog.parse(TLE));
+        assertFalse(sgp4.isDeepSpace(0));
+        double[] r = new double[3], v = new double[3];
+        for (double[] expected : VECTORS_00005) {
+            assertEquals(SGP4Propagator.OK, sgp4.propagate(0, expected[0], r, v));
+            assertVector(expected, r, v);
+        }
+    }
+
+    @Test
+    public void testDeepSpace() {
+        SGP4Propagator sgp4 = new SGP4Propagator(TLECatalog.parse(TLE));
+        assertTrue(sgp4.isDeepSpace(1));
+        double[] r = new double[3], v = new double[3];
+        assertEquals(SGP4Propagator.OK, sgp4.propagate(1, 0.0, r, v));
+        assertVector(VECTOR_08195, r, v);
+
+        // Out to two days, with the resonance integrator taking several steps, the osculating orbit stays on the mean
+        // orbit of the element set, and the node regresses at the J2 rate.
+        final double mu = 398600.8, j2 = 0.001082616, radius = 6378.135;
+        double n = 2.00491383 * 2.0 * Math.PI / 86400.0;
+        double a = Math.cbrt(mu / (n * n));
+        double e = 0.6877146, inc = Math.toRadians(64.1586);
+        double p = a * (1.0 - e * e);
+        double nodeRate = -1.5 * n * j2 * (radius / p) * (radius / p) * Math.cos(inc) * 60.0;
+        double node0 = Double.NaN;
+        for (double t = 0.0; t <= 2880.0; t += 120.0) {
+            assertEquals(SGP4Propagator.OK, sgp4.propagate(1, t, r, v));
+            double rn = Math.sqrt(r[0] * r[0] + r[1] * r[1] + r[2] * r[2]);
+            double v2 = v[0] * v[0] + v[1] * v[1] + v[2] * v[2];
+            double sma = 1.0 / (2.0 / rn - v2 / mu);
+            double hx = r[1] * v[2] - r[2] * v[1], hy = r[2] * v[0] - r[0] * v[2], hz = r[0] * v[1] - r[1] * v[0];
+            double h = Math.sqrt(hx * hx + hy * hy + hz * hz);
+            double node = Math.atan2(hx, -hy);
+            if (t == 0.0) {
+                node0 = node;
+            }
+            assertEquals("a at " + t, a, sma, 20.0);
+            assertEquals("e at " + t, e, Math.sqrt(1.0 - h * h / (mu * sma)), 2.0e-3);
+            assertEquals("i at " + t, inc, Math.acos(hz / h), Math.toRadians(0.05));
+            assertEquals("node at " + t, nodeRate * t, node - node0, Math.toRadians(0.01));
+        }
+
+        // The resonance integrator restarts when going back in time, so the state does not depend on the history.
+        double[] r1 = new double[3], v1 = new double[3];
+        assertEquals(SGP4Propagator.OK, sgp4.propagate(1, 2880.0, r1, v1));
+        sgp4.propagate(1, 10000.0, r, v);
+        sgp4.propagate(1, -1000.0, r, v);
+        assertEquals(SGP4Propagator.OK, sgp4.propagate(1, 2880.0, r, v));
+        assertArrayEquals(r1, r, 1.0e-9);
+        assertArrayEquals(v1, v, 1.0e-12);
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        // Many copies of the two orbits, with epochs spread over 20 days.
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String epoch = String.format(Locale.ROOT, "06%012.8f", 100.0 + i * 0.01);
+            lines.add(TLE.get(1).substring(0, 18) + epoch + TLE.get(1).substring(32));
+            lines.add(TLE.get(2));
+            lines.add(TLE.get(3).substring(0, 18) + epoch + TLE.get(3).substring(32));
+            lines.add(TLE.get(4));
+        }
+        TLECatalog catalog = TLECatalog.parse(lines);
+        assertEquals(4000, catalog.size);
+        double jd = catalog.epochJD[0] + 15.3;
+
+        SGP4Propagator parallel = new SGP4Propagator(catalog);
+        var executor = new PriorityTaskExecutor(4, "test-", null);
+        assertEquals(0, parallel.propagateAll(jd, executor.getComputePool()));
+        executor.shutdown(1000);
+
+        SGP4Propagator sequential = new SGP4Propagator(catalog);
+        assertEquals(0, sequential.propagateAll(jd, null));
+
+        SGP4Propagator single = new SGP4Propagator(catalog);
+        double[] r = new double[3], v = new double[3];
+        for (int i = 0; i < catalog.size; i++) {
+            assertEquals(SGP4Propagator.OK, single.propagate(i, (jd - catalog.epochJD[i]) * 1440.0, r, v));
+            assertEquals(r[0], parallel.x[i], 0.0);
+            assertEquals(r[1], parallel.y[i], 0.0);
+            assertEquals(r[2], parallel.z[i], 0.0);
+            assertEquals(v[0], parallel.vx[i], 0.0);
+            assertEquals(v[1], parallel.vy[i], 0.0);
+            assertEquals(v[2], parallel.vz[i], 0.0);
+            assertEquals(r[0], sequential.x[i], 0.0);
+            assertEquals(v[2], sequential.vz[i], 0.0);
+        }
+    }
+}
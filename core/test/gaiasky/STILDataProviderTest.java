@@ -0,0 +1,157 @@
+package gaiasky;
+
+import com.badlogic.gdx.files.FileHandle;
+import gaiasky.data.group.STILDataProvider;
+import gaiasky.scene.api.IParticleRecord;
+import gaiasky.util.i18n.I18n;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.StarTableOutput;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.util.FileDataSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Loads a synthetic catalog with {@link STILDataProvider} sequentially (CSV), in parallel (FITS), and from the
+ * binary cache, and checks that the results are the same.
+ */
+public class STILDataProviderTest {
+    private static final int N = 120_000;
+
+    private Path tmp;
+
+    @BeforeClass
+    public static void beforeClass() {
+        I18n.initialize(null, new FileHandle("../assets/i18n/gsbundle"), new FileHandle("../assets/i18n/objects"));
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        tmp = Files.createTempDirectory("gs-stil-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> walk = Files.walk(tmp)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private static ArrayColumn column(String name, String unit, Object data) {
+        ArrayColumn col = ArrayColumn.makeColumn(name, data);
+        ColumnInfo info = col.getColumnInfo();
+        if (unit != null) {
+            info.setUnitString(unit);
+        }
+        return col;
+    }
+
+    private void writeCatalog(Path fits, Path csv) throws IOException {
+        Random rnd = new Random(11L);
+        String[] ids = new String[N];
+        double[] ra = new double[N], dec = new double[N], plx = new double[N], mag = new double[N], ruwe = new double[N];
+        String[] names = new String[N];
+        for (int i = 0; i < N; i++) {
+            // Every tenth star has no identifier.
+            ids[i] = i % 10 == 0 ? "" : Long.toString(1_000_000L + i);
+            ra[i] = rnd.nextDouble() * 360.0;
+            dec[i] = rnd.nextDouble() * 180.0 - 90.0;
+            plx[i] = i % 100 == 0 ? -1.0 : 0.1 + rnd.nextDouble() * 10.0;
+            mag[i] = rnd.nextDouble() * 20.0;
+            ruwe[i] = rnd.nextDouble() * 2.0;
+            names[i] = i % 7 == 0 ? "Star " + i + "|Alias " + i : "";
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows(N);
+        table.addColumn(column("source_id", null, ids));
+        table.addColumn(column("ra", "deg", ra));
+        table.addColumn(column("dec", "deg", dec));
+        table.addColumn(column("parallax", "mas", plx));
+        table.addColumn(column("phot_g_mean_mag", "mag", mag));
+        table.addColumn(column("ruwe", null, ruwe));
+        table.addColumn(column("name", null, names));
+
+        StarTableOutput out = new StarTableOutput();
+        out.writeStarTable(table, fits.toString(), "fits");
+        out.writeStarTable(table, csv.toString(), "csv");
+    }
+
+    private List<IParticleRecord> load(Path file, int threads, Path cacheDir) throws IOException {
+        STILDataProvider provider = new STILDataProvider();
+        provider.setNumThreads(threads);
+        provider.setCacheEnabled(cacheDir != null);
+        provider.setCacheDir(cacheDir);
+        List<IParticleRecord> list = provider.loadData(new FileDataSource(file.toFile()), 1.0, null, null, null);
+        assertEquals(7, provider.getColumnInfoList().size());
+        return list;
+    }
+
+    private static void assertSame(List<IParticleRecord> expected, List<IParticleRecord> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            IParticleRecord e = expected.get(i), a = actual.get(i);
+            assertEquals(e.id(), a.id());
+            assertArrayEquals(e.names(), a.names());
+            assertEquals(e.x(), a.x(), 0.0);
+            assertEquals(e.y(), a.y(), 0.0);
+            assertEquals(e.z(), a.z(), 0.0);
+            assertEquals(e.appMag(), a.appMag(), 0f);
+            assertEquals(e.absMag(), a.absMag(), 0f);
+            assertEquals(e.color(), a.color(), 0f);
+            assertEquals(e.size(), a.size(), 0f);
+            assertEquals(e.tEff(), a.tEff(), 0f);
+            assertEquals(e.hip(), a.hip());
+            assertEquals(e.getExtraNumber("ruwe"), a.getExtraNumber("ruwe"), 0.0);
+            assertEquals(e.getExtraNumber("teff"), a.getExtraNumber("teff"), 0.0);
+        }
+    }
+
+    @Test
+    public void testParallelAndCache() throws Exception {
+        Path fits = tmp.resolve("catalog.fits");
+        Path csv = tmp.resolve("catalog.csv");
+        writeCatalog(fits, csv);
+
+        // CSV tables are not random-access, so this is decoded sequentially.
+        List<IParticleRecord> sequential = load(csv, 4, null);
+        // Stars with negative parallaxes are placed at the default distance, none is dropped.
+        assertEquals(N, sequential.size());
+        assertArrayEquals(new String[]{"Star 7", "Alias 7"}, sequential.get(7).names());
+        assertEquals(1_000_001L, sequential.get(1).id());
+        // Stars without identifier get one from their row index.
+        assertNotEquals(sequential.get(0).id(), sequential.get(10).id());
+
+        Path cacheDir = tmp.resolve("cache");
+        List<IParticleRecord> parallel = load(fits, 4, cacheDir);
+        assertSame(sequential, parallel);
+
+        // The cache is written in the background, the sidecar goes last.
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!hasCacheEntry(cacheDir) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(hasCacheEntry(cacheDir));
+        assertSame(sequential, load(fits, 1, cacheDir));
+    }
+
+    private static boolean hasCacheEntry(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return false;
+        }
+        try (Stream<Path> list = Files.list(dir)) {
+            return list.anyMatch(p -> p.getFileName().toString().endsWith(".meta"));
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package gaiasky;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.PixmapIO;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import gaiasky.render.gdx.loader.TextureCache;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the texture cache returns the pixels and mipmap levels of the source images, and compares the time to
+ * decode a small set of textures with the time to read them from the cache. The timing run needs -Pperf.
+ */
+public class TextureCacheTest {
+
+    @BeforeClass
+    public static void loadNatives() {
+        GdxNativesLoader.load();
+    }
+
+    private static Path png(Path dir, String name, int w, int h) {
+        var pixmap = new Pixmap(w, h, Format.RGBA8888);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                pixmap.drawPixel(x, y, (x * 31 + y * 17) << 24 | (x ^ y) << 16 | (y * 7) << 8 | 0xff);
+            }
+        }
+        var file = dir.resolve(name);
+        PixmapIO.writePNG(new FileHandle(file.toFile()), pixmap);
+        pixmap.dispose();
+        return file;
+    }
+
+    private static Path jpg(Path dir, String name, int w, int h) throws IOException {
+        var image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                image.setRGB(x, y, (x & 0xff) << 16 | (y & 0xff) << 8 | ((x + y) & 0xff));
+            }
+        }
+        var file = dir.resolve(name);
+        ImageIO.write(image, "jpg", file.toFile());
+        return file;
+    }
+
+    private static ByteBuffer pixels(Pixmap pixmap) {
+        var pixels = pixmap.getPixels().duplicate();
+        pixels.clear();
+        return pixels;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        var dir = Files.createTempDirectory("gs-texcache");
+        var cacheDir = dir.resolve("cache");
+        var source = png(dir, "tex.png", 100, 60);
+
+        var cache = TextureCache.open(cacheDir, source, Format.RGB888, true);
+        assertNull(cache.read());
+        cache.writeAsync(source).get();
+
+        var data = cache.read();
+        assertNotNull(data);
+        assertEquals(Format.RGB888, data.getFormat());
+        assertTrue(data.useMipMaps());
+        // 100x60, 50x30, 25x15, 12x7, 6x3, 3x1, 1x1.
+        assertEquals(7, data.getLevels());
+        assertEquals(100, data.getWidth(0));
+        assertEquals(60, data.getHeight(0));
+        assertEquals(3, data.getWidth(5));
+        assertEquals(1, data.getHeight(5));
+        assertEquals(1, data.getWidth(6));
+        assertEquals(1, data.getHeight(6));
+        for (int l = 0; l < data.getLevels(); l++) {
+            assertEquals(data.getWidth(l) * data.getHeight(l) * 3, data.getPixels(l).remaining());
+        }
+
+        var decoded = new Pixmap(new FileHandle(source.toFile()));
+        var expected = new Pixmap(decoded.getWidth(), decoded.getHeight(), Format.RGB888);
+        expected.setBlending(Pixmap.Blending.None);
+        expected.drawPixmap(decoded, 0, 0);
+        assertEquals(pixels(expected), data.getPixels(0));
+        decoded.dispose();
+        expected.dispose();
+
+        // Other options have their own entries.
+        assertNull(TextureCache.open(cacheDir, source, Format.RGB888, false).read());
+        assertNull(TextureCache.open(cacheDir, source, null, true).read());
+
+        // A modified source misses the cache, and its old entry is removed.
+        Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 10_000));
+        assertNull(TextureCache.open(cacheDir, source, Format.RGB888, true).read());
+        assertEquals(0, entries(cacheDir));
+    }
+
+    private static long entries(Path cacheDir) throws IOException {
+        try (var files = Files.list(cacheDir)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(".tex")).count();
+        }
+    }
+
+    private static void write(TextureCache cache, Path source) throws IOException {
+        var pixmap = new Pixmap(new FileHandle(source.toFile()));
+        try {
+            cache.write(pixmap);
+        } finally {
+            pixmap.dispose();
+        }
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        var dir = Files.createTempDirectory("gs-texcache");
+        var cacheDir = dir.resolve("cache");
+        var a = png(dir, "a.png", 100, 60);
+        var b = png(dir, "b.png", 100, 60);
+        var c = png(dir, "c.png", 100, 60);
+        // About 24 KiB per entry with mipmaps, so that two entries fit.
+        TextureCache.setMaxBytes(60_000);
+        try {
+            var ca = TextureCache.open(cacheDir, a, Format.RGB888, true);
+            var cb = TextureCache.open(cacheDir, b, Format.RGB888, true);
+            write(ca, a);
+            write(cb, b);
+            assertEquals(2, entries(cacheDir));
+            long now = System.currentTimeMillis();
+            try (var files = Files.list(cacheDir)) {
+                for (var f : files.toList()) {
+                    Files.setLastModifiedTime(f, FileTime.fromMillis(now - 60_000));
+                }
+            }
+            // Reading a makes b the least recently used entry.
+            assertNotNull(ca.read());
+
+            write(TextureCache.open(cacheDir, c, Format.RGB888, true), c);
+            assertEquals(2, entries(cacheDir));
+            assertNotNull(ca.read());
+            assertNull(cb.read());
+            assertNotNull(TextureCache.open(cacheDir, c, Format.RGB888, true).read());
+        } finally {
+            TextureCache.setMaxBytes(2L * 1024 * 1024 * 1024);
+        }
+    }
+
+    @Test
+    public void testStartupTime() throws Exception {
+        Assume.assumeTrue("Timing runs need -Pperf", Boolean.getBoolean("gaiasky.perf"));
+        var dir = Files.createTempDirectory("gs-texcache");
+        var cacheDir = dir.resolve("cache");
+        List<Path> sources = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            sources.add(png(dir, "tex" + i + ".png", 1024, 512));
+            sources.add(jpg(dir, "tex" + i + ".jpg", 1024, 512));
+        }
+
+        // Cold: decode every source and let the workers fill the cache.
+        List<Future<?>> writes = new ArrayList<>();
+        long t0 = System.nanoTime();
+        for (var source : sources) {
+            var cache = TextureCache.open(cacheDir, source, null, true);
+            assertNull(cache.read());
+            new Pixmap(new FileHandle(source.toFile())).dispose();
+            writes.add(cache.writeAsync(source));
+        }
+        long decodeTime = System.nanoTime() - t0;
+        for (var f : writes) {
+            f.get();
+        }
+
+        // Warm: read the mapped entries, including all levels.
+        t0 = System.nanoTime();
+        long bytes = 0, sum = 0;
+        for (var source : sources) {
+            var data = TextureCache.open(cacheDir, source, null, true).read();
+            assertNotNull(data);
+            assertEquals(11, data.getLevels());
+            for (int l = 0; l < data.getLevels(); l++) {
+                var level = data.getPixels(l);
+                bytes += level.remaining();
+                // Touch every page, as the upload would.
+                for (int i = 0; i < level.limit(); i += 4096) {
+                    sum += level.get(i);
+                }
+            }
+        }
+        long cacheTime = System.nanoTime() - t0;
+        System.out.printf("Loading %d textures (1024x512): decode %.2f ms, cache %.2f ms (%d MiB mapped with mipmaps, %d)%n", sources.size(),
+                decodeTime * 1e-6, cacheTime * 1e-6, bytes >> 20, sum & 0xff);
+    }
+}
@@ -0,0 +1,377 @@
+package gaiasky;
+
+import com.badlogic.ashley.core.Component;
+import com.badlogic.ashley.core.ComponentMapper;
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.gdx.utils.Array;
+import gaiasky.scene.component.GraphNode;
+import gaiasky.scene.system.update.AbstractUpdateSystem;
+import gaiasky.scene.system.update.EntityUpdater;
+import gaiasky.scene.system.update.SystemAccess;
+import gaiasky.scene.system.update.UpdateScheduler;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs a synthetic scene with the serial engine and with the {@link UpdateScheduler} in parallel mode, and checks that
+ * the resulting component values are identical. The systems are chosen so that any reordering of conflicting systems
+ * changes the results.
+ */
+public class UpdateSchedulerTest {
+    private static final int FRAMES = 20;
+
+    public static class Pos implements Component {
+        double p;
+    }
+
+    public static class A implements Component {
+        double a;
+    }
+
+    public static class B implements Component {
+        double b;
+    }
+
+    public static class C implements Component {
+        double c;
+    }
+
+    public static class D implements Component {
+        double d;
+    }
+
+    private static final ComponentMapper<Pos> pos = ComponentMapper.getFor(Pos.class);
+    private static final ComponentMapper<A> ma = ComponentMapper.getFor(A.class);
+    private static final ComponentMapper<B> mb = ComponentMapper.getFor(B.class);
+    private static final ComponentMapper<C> mc = ComponentMapper.getFor(C.class);
+    private static final ComponentMapper<D> md = ComponentMapper.getFor(D.class);
+    private static final ComponentMapper<GraphNode> graph = ComponentMapper.getFor(GraphNode.class);
+
+    /** Exclusive: advances every position. **/
+    private static class Advance extends AbstractUpdateSystem {
+        Advance(int priority) {
+            super(Family.all(Pos.class).get(), priority);
+        }
+
+        @Override
+        protected void processEntity(Entity entity, float deltaTime) {
+            updateEntity(entity, deltaTime);
+        }
+
+        @Override
+        public void updateEntity(Entity entity, float deltaTime) {
+            var p = pos.get(entity);
+            p.p = p.p * 0.99 + deltaTime;
+        }
+    }
+
+    /** Large, splittable: A from the own position. **/
+    private static class UpdateA extends AbstractUpdateSystem {
+        UpdateA(int priority) {
+            super(Family.all(A.class, Pos.class).get(), priority);
+        }
+
+        @Override
+        public SystemAccess getAccess() {
+            return SystemAccess.of().reads(Pos.class).writes(A.class).splittable();
+        }
+
+        @Override
+        protected void processEntity(Entity entity, float deltaTime) {
+            updateEntity(entity, deltaTime);
+        }
+
+        @Override
+        public void updateEntity(Entity entity, float deltaTime) {
+            var a = ma.get(entity);
+            a.a = a.a * 0.5 + Math.sin(pos.get(entity).p);
+        }
+    }
+
+    /** Reads A, so it must run after {@link UpdateA} on the shared entities. **/
+    private static class UpdateB extends AbstractUpdateSystem {
+        UpdateB(int priority) {
+            super(Family.all(B.class).get(), priority);
+        }
+
+        @Override
+        public SystemAccess getAccess() {
+            return SystemAccess.of().reads(A.class).writes(B.class);
+        }
+
+        @Override
+        protected void processEntity(Entity entity, float deltaTime) {
+            updateEntity(entity, deltaTime);
+        }
+
+        @Override
+        public void updateEntity(Entity entity, float deltaTime) {
+            var b = mb.get(entity);
+            var a = ma.get(entity);
+            b.b = b.b * 0.9 + (a != null ? a.a * 2.0 : 1.0);
+        }
+    }
+
+    /** Adds to the position of the parents. **/
+    private static class PushParent extends AbstractUpdateSystem {
+        PushParent(int priority) {
+            super(Family.all(C.class, GraphNode.class).get(), priority);
+        }
+
+        @Override
+        public SystemAccess getAccess() {
+            return SystemAccess.of().reads(C.class).writesParent(Pos.class);
+        }
+
+        @Override
+        protected void processEntity(Entity entity, float deltaTime) {
+            updateEntity(entity, deltaTime);
+        }
+
+        @Override
+        public void updateEntity(Entity entity, float deltaTime) {
+            var parent = graph.get(entity).parent;
+            pos.get(parent).p += mc.get(entity).c;
+        }
+    }
+
+    /** Reads the own position, which {@link PushParent} writes for parents. **/
+    private static class UpdateD extends AbstractUpdateSystem {
+        UpdateD(int priority) {
+            super(Family.all(D.class, Pos.class).get(), priority);
+        }
+
+        @Override
+        public SystemAccess getAccess() {
+            return SystemAccess.of().reads(Pos.class).writes(D.class);
+        }
+
+        @Override
+        protected void processEntity(Entity entity, float deltaTime) {
+            updateEntity(entity, deltaTime);
+        }
+
+        @Override
+        public void updateEntity(Entity entity, float deltaTime) {
+            var d = md.get(entity);
+            d.d = d.d * 0.7 + pos.get(entity).p;
+        }
+    }
+
+    /** Independent of everything else. **/
+    private static class UpdateC extends AbstractUpdateSystem {
+        UpdateC(int priority) {
+            super(Family.all(C.class).exclude(GraphNode.class).get(), priority);
+        }
+
+        @Override
+        public SystemAccess getAccess() {
+            return SystemAccess.of().writes(C.class).splittable();
+        }
+
+        @Override
+        protected void processEntity(Entity entity, float deltaTime) {
+            updateEntity(entity, deltaTime);
+        }
+
+        @Override
+        public void updateEntity(Entity entity, float deltaTime) {
+            mc.get(entity).c += 1.0;
+        }
+    }
+
+    private static Array<EntityUpdater> systems() {
+        int priority = 0;
+        Array<EntityUpdater> systems = new Array<>();
+        systems.add(new Advance(priority++));
+        systems.add(new UpdateA(priority++));
+        systems.add(new UpdateC(priority++));
+        systems.add(new UpdateB(priority++));
+        systems.add(new PushParent(priority++));
+        systems.add(new UpdateD(priority));
+        return systems;
+    }
+
+    private static List<Entity> populate(Engine engine) {
+        List<Entity> entities = new ArrayList<>();
+        List<Entity> parents = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            var e = engine.createEntity();
+            e.add(new Pos());
+            e.add(new D());
+            pos.get(e).p = i;
+            engine.addEntity(e);
+            parents.add(e);
+            entities.add(e);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            var e = engine.createEntity();
+            e.add(new Pos());
+            pos.get(e).p = i * 1e-3;
+            e.add(new A());
+            if (i % 3 == 0) {
+                e.add(new B());
+            }
+            if (i % 5 == 0) {
+                var c = new C();
+                c.c = i * 1e-4;
+                e.add(c);
+                var g = new GraphNode();
+                g.parent = parents.get(i % parents.size());
+                e.add(g);
+            }
+            if (i % 7 == 0) {
+                e.add(new C());
+            }
+            engine.addEntity(e);
+            entities.add(e);
+        }
+        return entities;
+    }
+
+    private static double[] state(List<Entity> entities) {
+        double[] s = new double[entities.size() * 5];
+        for (int i = 0; i < entities.size(); i++) {
+            var e = entities.get(i);
+            s[i * 5] = pos.get(e).p;
+            s[i * 5 + 1] = ma.has(e) ? ma.get(e).a : 0;
+            s[i * 5 + 2] = mb.has(e) ? mb.get(e).b : 0;
+            s[i * 5 + 3] = mc.has(e) ? mc.get(e).c : 0;
+            s[i * 5 + 4] = md.has(e) ? md.get(e).d : 0;
+        }
+        return s;
+    }
+
+    @Test
+    public void testParallelMatchesSerialEngine() {
+        // Reference: the systems added to the engine one by one.
+        var serial = new Engine();
+        var serialEntities = populate(serial);
+        for (var system : systems()) {
+            serial.addSystem((AbstractUpdateSystem) system);
+        }
+
+        // Scheduler, in parallel mode.
+        var parallel = new Engine();
+        var parallelEntities = populate(parallel);
+        var scheduler = new UpdateScheduler(systems(), 0);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        scheduler.setParallel(executor, 4);
+        parallel.addSystem(scheduler);
+
+        try {
+            for (int frame = 0; frame < FRAMES; frame++) {
+                float dt = 0.016f * (1 + frame % 3);
+                serial.update(dt);
+                parallel.update(dt);
+                assertArrayEquals("Frame " + frame, state(serialEntities), state(parallelEntities), 0.0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        var timings = scheduler.getTimings();
+        assertEquals(6, timings.size());
+        for (var t : timings.values()) {
+            assertTrue(t >= 0);
+        }
+    }
+
+    @Test
+    public void testFamilyChanges() {
+        // PushParent starts with no entities, so it conflicts with nothing until its family changes.
+        var serial = new Engine();
+        var serialEntities = populate(serial);
+        for (var system : systems()) {
+            serial.addSystem((AbstractUpdateSystem) system);
+        }
+        var parallel = new Engine();
+        var parallelEntities = populate(parallel);
+        var scheduler = new UpdateScheduler(systems(), 0);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        scheduler.setParallel(executor, 4);
+        parallel.addSystem(scheduler);
+        List<C> removed = new ArrayList<>();
+        for (var entities : List.of(serialEntities, parallelEntities)) {
+            for (var e : entities) {
+                if (graph.has(e)) {
+                    removed.add(e.remove(C.class));
+                }
+            }
+        }
+
+        try {
+            for (int frame = 0; frame < FRAMES; frame++) {
+                if (frame == FRAMES / 2) {
+                    int i = 0;
+                    for (var entities : List.of(serialEntities, parallelEntities)) {
+                        for (var e : entities) {
+                            if (graph.has(e)) {
+                                e.add(removed.get(i++));
+                            }
+                        }
+                    }
+                }
+                serial.update(0.016f);
+                parallel.update(0.016f);
+                assertArrayEquals("Frame " + frame, state(serialEntities), state(parallelEntities), 0.0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSerialSchedulerMatchesEngine() {
+        var serial = new Engine();
+        var serialEntities = populate(serial);
+        for (var system : systems()) {
+            serial.addSystem((AbstractUpdateSystem) system);
+        }
+        var scheduled = new Engine();
+        var scheduledEntities = populate(scheduled);
+        var scheduler = new UpdateScheduler(systems(), 0);
+        scheduled.addSystem(scheduler);
+        assertFalse(scheduler.isParallel());
+
+        for (int frame = 0; frame < FRAMES; frame++) {
+            serial.update(0.016f);
+            scheduled.update(0.016f);
+        }
+        assertArrayEquals(state(serialEntities), state(scheduledEntities), 0.0);
+    }
+
+    @Test
+    public void testErrorsReachTheCaller() {
+        var engine = new Engine();
+        populate(engine);
+        Array<EntityUpdater> systems = new Array<>();
+        systems.add(new UpdateA(0) {
+            @Override
+            public void updateEntity(Entity entity, float deltaTime) {
+                throw new IllegalStateException("boom");
+            }
+        });
+        systems.add(new UpdateC(1));
+        var scheduler = new UpdateScheduler(systems, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        scheduler.setParallel(executor, 2);
+        engine.addSystem(scheduler);
+        try {
+            engine.update(0.016f);
+            fail("Expected exception");
+        } catch (IllegalStateException e) {
+            assertEquals("boom", e.getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}